@@ -75,35 +75,35 @@ public class AdjacencyMatrixTest {
 	public void test003() {
 		FastGraph g;
 		g = FastGraph.jsonStringGraphFactory(TestRunner.get1Node0Edge(),false);
-		assertEquals(Arrays.toString(new double[]{0}),Arrays.toString((new AdjacencyMatrix(g)).findEigenvalues((new AdjacencyMatrix(g)).buildIntDirectedAdjacencyMatrix())));
+		assertEquals(Arrays.toString(new double[]{0}),Arrays.toString(AdjacencyMatrix.findEigenvalues((new AdjacencyMatrix(g)).buildIntDirectedAdjacencyMatrix())));
 		g = FastGraph.jsonStringGraphFactory(TestRunner.get2Node1Edge(),false);
-		assertEquals(Arrays.toString(new double[]{0,0}),Arrays.toString((new AdjacencyMatrix(g)).findEigenvalues((new AdjacencyMatrix(g)).buildIntDirectedAdjacencyMatrix())));
+		assertEquals(Arrays.toString(new double[]{0,0}),Arrays.toString(AdjacencyMatrix.findEigenvalues((new AdjacencyMatrix(g)).buildIntDirectedAdjacencyMatrix())));
 		g = FastGraph.jsonStringGraphFactory(TestRunner.get2Node2Edge(),false);
-		assertEquals(Arrays.toString(new double[]{0,1}),Arrays.toString((new AdjacencyMatrix(g)).findEigenvalues((new AdjacencyMatrix(g)).buildIntDirectedAdjacencyMatrix())));
+		assertEquals(Arrays.toString(new double[]{0,1}),Arrays.toString(AdjacencyMatrix.findEigenvalues((new AdjacencyMatrix(g)).buildIntDirectedAdjacencyMatrix())));
 		g = FastGraph.jsonStringGraphFactory(TestRunner.get4Node5Edge(),false);
-		assertEquals(Arrays.toString(new double[]{0,0,0,0}),Arrays.toString((new AdjacencyMatrix(g)).findEigenvalues((new AdjacencyMatrix(g)).buildIntDirectedAdjacencyMatrix())));
+		assertEquals(Arrays.toString(new double[]{0,0,0,0}),Arrays.toString(AdjacencyMatrix.findEigenvalues((new AdjacencyMatrix(g)).buildIntDirectedAdjacencyMatrix())));
 	}
 	
 	@Test
 	public void test003b() {
 		FastGraph g;
 		g = FastGraph.jsonStringGraphFactory(TestRunner.get1Node0Edge(),false);
-		assertEquals(Arrays.toString(new double[]{0}),Arrays.toString((new AdjacencyMatrix(g)).findEigenvalues((new AdjacencyMatrix(g)).buildBooleanDirectedAdjacencyMatrix())));
+		assertEquals(Arrays.toString(new double[]{0}),Arrays.toString(AdjacencyMatrix.findEigenvalues((new AdjacencyMatrix(g)).buildBooleanDirectedAdjacencyMatrix())));
 		g = FastGraph.jsonStringGraphFactory(TestRunner.get2Node1Edge(),false);
-		assertEquals(Arrays.toString(new double[]{0,0}),Arrays.toString((new AdjacencyMatrix(g)).findEigenvalues((new AdjacencyMatrix(g)).buildBooleanDirectedAdjacencyMatrix())));
+		assertEquals(Arrays.toString(new double[]{0,0}),Arrays.toString(AdjacencyMatrix.findEigenvalues((new AdjacencyMatrix(g)).buildBooleanDirectedAdjacencyMatrix())));
 		g = FastGraph.jsonStringGraphFactory(TestRunner.get2Node2Edge(),false);
-		assertEquals(Arrays.toString(new double[]{0,1}),Arrays.toString((new AdjacencyMatrix(g)).findEigenvalues((new AdjacencyMatrix(g)).buildBooleanDirectedAdjacencyMatrix())));
+		assertEquals(Arrays.toString(new double[]{0,1}),Arrays.toString(AdjacencyMatrix.findEigenvalues((new AdjacencyMatrix(g)).buildBooleanDirectedAdjacencyMatrix())));
 		g = FastGraph.jsonStringGraphFactory(TestRunner.get4Node5Edge(),false);
-		assertEquals(Arrays.toString(new double[]{0,0,0,0}),Arrays.toString((new AdjacencyMatrix(g)).findEigenvalues((new AdjacencyMatrix(g)).buildBooleanDirectedAdjacencyMatrix())));
+		assertEquals(Arrays.toString(new double[]{0,0,0,0}),Arrays.toString(AdjacencyMatrix.findEigenvalues((new AdjacencyMatrix(g)).buildBooleanDirectedAdjacencyMatrix())));
 	}
 	
 	@Test
 	public void test003c() {
 		FastGraph g;
 		g = FastGraph.jsonStringGraphFactory(TestRunner.get1Node0Edge(),false);
-		assertEquals(Arrays.toString(new int[]{0,3,3,5,5}),Arrays.toString(Util.roundArray((new AdjacencyMatrix(g)).findEigenvalues(new int[][]{{4,-1,-1,-1,-1},{-1,3,-1,0,1},{-1,-1,3,-1,0},{-1,0,-1,3,-1},{-1,-1,0,-1,3}}))));
+		assertEquals(Arrays.toString(new int[]{0,3,3,5,5}),Arrays.toString(Util.roundArray(AdjacencyMatrix.findEigenvalues(new int[][]{{4,-1,-1,-1,-1},{-1,3,-1,0,1},{-1,-1,3,-1,0},{-1,0,-1,3,-1},{-1,-1,0,-1,3}}))));
 		g = FastGraph.jsonStringGraphFactory(TestRunner.get1Node0Edge(),false);
-		assertEquals(Arrays.toString(new int[]{-2,-1,1,2}),Arrays.toString(Util.roundArray((new AdjacencyMatrix(g)).findEigenvalues(new int[][]{{0,1,0,0},{1,0,1,0},{0,1,0,1},{0,0,1,0}}))));
+		assertEquals(Arrays.toString(new int[]{-2,-1,1,2}),Arrays.toString(Util.roundArray(AdjacencyMatrix.findEigenvalues(new int[][]{{0,1,0,0},{1,0,1,0},{0,1,0,1},{0,0,1,0}}))));
 	}
 
 }
@@ -2,6 +2,7 @@ package test.uk.ac.kent.dover.fastGraph;
 
 import static org.junit.Assert.*;
 
+import java.io.File;
 import java.util.*;
 
 import org.junit.Test;
@@ -2032,4 +2033,329 @@ public class ExactIsomorphismTest {
 
 		
 	
+	@Test
+	public void test044() throws FastGraphException {
+		// canonical forms agree with the backtracking search
+		for(int i = 0; i < 200; i++) {
+			FastGraph g1 = FastGraph.randomGraphFactory(4, 5, i*7777L, false);
+			FastGraph g2 = FastGraph.randomGraphFactory(4, 5, i*111L, false);
+			assertEquals(ExactIsomorphism.isomorphic(g1, g2, false), CanonicalLabelling.isomorphic(g1, g2, false, false, false));
+			assertEquals(ExactIsomorphism.isomorphic(g1, g2, true), CanonicalLabelling.isomorphic(g1, g2, true, false, false));
+		}
+		
+		// a renumbered graph has the same form, and the mapping found is an isomorphism
+		FastGraph g1 = FastGraph.randomGraphFactory(20, 45, 17L, false);
+		FastGraph g2 = ExactIsomorphism.generateRandomIsomorphicGraph(g1, 3L, false);
+		for(boolean directed : new boolean[] {false, true}) {
+			ExactIsomorphism ei = new ExactIsomorphism(g1, directed, true);
+			assertTrue(ei.canonicallyIsomorphic(g2));
+			assertEquals(ei.getCanonicalLabelling().getCanonicalString(), new CanonicalLabelling(g2, directed, true, true).getCanonicalString());
+			int[] match = ei.getLastMatch();
+			int[][] m1 = new AdjacencyMatrix(g1).buildIntAdjacencyMatrix();
+			int[][] m2 = new AdjacencyMatrix(g2).buildIntAdjacencyMatrix();
+			for(int n1 = 0; n1 < 20; n1++) {
+				assertEquals(g1.getNodeLabel(n1), g2.getNodeLabel(match[n1]));
+				for(int n2 = 0; n2 < 20; n2++) {
+					assertEquals(m1[n1][n2], m2[match[n1]][match[n2]]);
+				}
+			}
+		}
+		
+		// a different label, or reversing an edge in a directed graph, changes the form
+		String[] labels = new String[g2.getNumberOfNodes()];
+		for(int n = 0; n < labels.length; n++) {
+			labels[n] = g2.getNodeLabel(n);
+		}
+		labels[4] = "different";
+		g2.setAllNodeLabels(labels);
+		assertFalse(CanonicalLabelling.isomorphic(g1, g2, false, true, false));
+		assertTrue(CanonicalLabelling.isomorphic(g1, g2, false, false, false));
+		FastGraph path1 = graphFromEdges(3, new int[][] {{0,1},{1,2}});
+		FastGraph path2 = graphFromEdges(3, new int[][] {{0,1},{2,1}});
+		assertTrue(CanonicalLabelling.isomorphic(path1, path2, false, false, false));
+		assertFalse(CanonicalLabelling.isomorphic(path1, path2, true, false, false));
+		
+		// a star and a square with a lone node have the same eigenvalues, but are not isomorphic
+		FastGraph star = graphFromEdges(5, new int[][] {{0,1},{0,2},{0,3},{0,4}});
+		FastGraph square = graphFromEdges(5, new int[][] {{0,1},{1,2},{2,3},{3,0}});
+		assertFalse(CanonicalLabelling.isomorphic(star, square, false, false, false));
+		
+		// highly symmetric graphs need few leaves, as automorphisms prune the search
+		int dimension = 5;
+		ArrayList<int[]> cubeEdges = new ArrayList<int[]>();
+		for(int n = 0; n < (1 << dimension); n++) {
+			for(int b = 0; b < dimension; b++) {
+				if(n < (n ^ (1 << b))) {
+					cubeEdges.add(new int[] {n, n ^ (1 << b)});
+				}
+			}
+		}
+		FastGraph cube = graphFromEdges(1 << dimension, cubeEdges.toArray(new int[0][]));
+		CanonicalLabelling cubeLabelling = new CanonicalLabelling(cube, false, false, false);
+		assertTrue(cubeLabelling.getNumberOfLeaves() < 100);
+		assertFalse(cubeLabelling.getAutomorphisms().isEmpty());
+		FastGraph renumberedCube = ExactIsomorphism.generateRandomIsomorphicGraph(cube, 9L, false);
+		assertTrue(cubeLabelling.sameForm(new CanonicalLabelling(renumberedCube, false, false, false)));
+	}
+	
+	
+	@Test
+	public void test045() throws FastGraphException {
+		// neighbour rows and sorted neighbour arrays, across more than one word
+		FastGraph g = graphFromEdges(70, new int[][] {{0,1},{1,0},{0,65},{65,69},{3,3},{2,65},{65,2},{2,65}});
+		SubgraphView view = SubgraphView.whole(g);
+		BitsetAdjacency undirected = BitsetAdjacency.build(view, true, true);
+		assertEquals(2, undirected.getWordsPerRow());
+		assertTrue(undirected.hasMultipleEdges());
+		assertArrayEquals(new int[] {1,65}, undirected.getNeighbours(0));
+		assertArrayEquals(new int[] {0,2,69}, undirected.getNeighbours(65));
+		assertArrayEquals(new int[0], undirected.getNeighbours(3));
+		assertTrue(undirected.isNeighbour(69, 65));
+		assertFalse(undirected.isNeighbour(69, 0));
+		assertEquals(2, undirected.edgeCount(0, 1));
+		assertEquals(3, undirected.edgeCount(65, 2));
+		assertEquals(0, undirected.edgeCount(0, 2));
+		BitsetAdjacency in = BitsetAdjacency.build(view, true, false);
+		BitsetAdjacency out = BitsetAdjacency.build(view, false, true);
+		assertArrayEquals(new int[] {0,2}, in.getNeighbours(65));
+		assertArrayEquals(new int[] {2,69}, out.getNeighbours(65));
+		assertEquals(2, out.edgeCount(2, 65));
+		assertEquals(1, in.edgeCount(2, 65));
+		long[] nodes = new long[2];
+		BitsetAdjacency.set(nodes, 2);
+		BitsetAdjacency.set(nodes, 69);
+		BitsetAdjacency.set(nodes, 0);
+		BitsetAdjacency.clear(nodes, 0);
+		assertEquals(2, undirected.countNeighboursIn(65, nodes));
+		assertEquals(1, in.countNeighboursIn(65, nodes));
+		
+		// the search agrees with canonical forms on graphs bigger than one word, with multiple edges
+		for(int i = 0; i < 20; i++) {
+			FastGraph g1 = FastGraph.randomGraphFactory(70+i, 400+i*3, i*31L, false);
+			FastGraph g2 = ExactIsomorphism.generateRandomIsomorphicGraph(g1, i*53L, false);
+			FastGraph g3 = FastGraph.randomGraphFactory(70+i, 400+i*3, i*31L+1, false);
+			for(boolean directed : new boolean[] {false, true}) {
+				ExactIsomorphism ei = new ExactIsomorphism(g1, directed);
+				assertTrue(ei.isomorphic(g2));
+				assertEquals(CanonicalLabelling.isomorphic(g1, g3, directed, false, false), ei.isomorphic(g3));
+			}
+		}
+		for(int i = 0; i < 200; i++) {
+			FastGraph g1 = FastGraph.randomGraphFactory(6, 9, i*7L, false);
+			FastGraph g2 = FastGraph.randomGraphFactory(6, 9, i*13L+5, false);
+			assertEquals(CanonicalLabelling.isomorphic(g1, g2, false, false, false), ExactIsomorphism.isomorphic(g1, g2, false));
+			assertEquals(CanonicalLabelling.isomorphic(g1, g2, true, false, false), ExactIsomorphism.isomorphic(g1, g2, true));
+		}
+	}
+	
+	
+	@Test
+	public void test046() throws FastGraphException {
+		// classes agree with pairwise tests, and do not depend on the number of threads
+		ArrayList<FastGraph> graphs = new ArrayList<FastGraph>();
+		for(int i = 0; i < 1500; i++) {
+			graphs.add(FastGraph.randomGraphFactory(5, 5, i*101L, false));
+		}
+		for(boolean directed : new boolean[] {false, true}) {
+			ArrayList<IsomorphismClassifier.IsomorphismClass<FastGraph>> classes = new IsomorphismClassifier(directed, false, 1).partition(graphs);
+			ArrayList<IsomorphismClassifier.IsomorphismClass<FastGraph>> parallelClasses = new IsomorphismClassifier(directed, false, 4).partition(graphs);
+			assertEquals(classes.size(), parallelClasses.size());
+			int total = 0;
+			int previous = -1;
+			for(int c = 0; c < classes.size(); c++) {
+				IsomorphismClassifier.IsomorphismClass<FastGraph> ic = classes.get(c);
+				assertArrayEquals(ic.getMembers(), parallelClasses.get(c).getMembers());
+				assertTrue(ic.getRepresentativeIndex() > previous);
+				previous = ic.getRepresentativeIndex();
+				assertSame(graphs.get(ic.getRepresentativeIndex()), ic.getRepresentative());
+				assertEquals(ic.getCount(), ic.getMembers().length);
+				total += ic.getCount();
+				ExactIsomorphism ei = new ExactIsomorphism(ic.getRepresentative(), directed);
+				for(int member : ic.getMembers()) {
+					assertTrue(ei.isomorphic(graphs.get(member)));
+				}
+				for(int other = c+1; other < classes.size(); other++) {
+					assertFalse(ei.isomorphic(classes.get(other).getRepresentative()));
+				}
+			}
+			assertEquals(graphs.size(), total);
+		}
+		
+		// subgraphs, and labels
+		FastGraph path = graphFromEdges(4, new int[][] {{0,1},{1,2},{2,3}});
+		ArrayList<SubgraphView> views = new ArrayList<SubgraphView>();
+		views.add(SubgraphView.induced(path, new int[] {0,1,2}));
+		views.add(SubgraphView.induced(path, new int[] {1,2,3}));
+		views.add(SubgraphView.induced(path, new int[] {0,1,3}));
+		ArrayList<IsomorphismClassifier.IsomorphismClass<SubgraphView>> viewClasses = new IsomorphismClassifier().partitionViews(views);
+		assertEquals(2, viewClasses.size());
+		assertArrayEquals(new int[] {0,1}, viewClasses.get(0).getMembers());
+		assertArrayEquals(new int[] {2}, viewClasses.get(1).getMembers());
+		path.setAllNodeLabels(new String[] {"a","b","b","a"});
+		assertEquals(2, new IsomorphismClassifier(false, true, 1).partitionViews(views).size());
+		path.setAllNodeLabels(new String[] {"a","b","c","d"});
+		assertEquals(3, new IsomorphismClassifier(false, true, 1).partitionViews(views).size());
+		assertTrue(new IsomorphismClassifier().partition(new ArrayList<FastGraph>()).isEmpty());
+	}
+	
+	
+	@Test
+	public void test047() throws Exception {
+		// counts go to the stage that rejected each test
+		FastGraph triangle = graphFromEdges(3, new int[][] {{0,1},{1,2},{2,0}});
+		FastGraph path = graphFromEdges(3, new int[][] {{0,1},{1,2}});
+		FastGraph star = graphFromEdges(4, new int[][] {{0,1},{0,2},{0,3}});
+		FastGraph line = graphFromEdges(4, new int[][] {{0,1},{1,2},{2,3}});
+		FastGraph split = graphFromEdges(4, new int[][] {{0,1},{2,3}});
+		IsomorphismStats stats = new IsomorphismStats();
+		ExactIsomorphism ei = new ExactIsomorphism(star);
+		ei.setStats(stats);
+		assertSame(stats, ei.getStats());
+		assertFalse(ei.isomorphic(triangle));
+		assertFalse(ei.isomorphic(line));
+		assertFalse(ei.isomorphic(split));
+		assertTrue(ei.isomorphic(ExactIsomorphism.generateRandomIsomorphicGraph(star, 1L, false)));
+		assertEquals(4, stats.getNumberOfTests());
+		assertEquals(1, stats.getNumberOfFailures(IsomorphismStats.Stage.NODE_COUNT));
+		assertEquals(1, stats.getNumberOfFailures(IsomorphismStats.Stage.DEGREES));
+		assertEquals(1, stats.getNumberOfFailures(IsomorphismStats.Stage.EDGE_COUNT));
+		assertEquals(0, stats.getNumberOfFailures(IsomorphismStats.Stage.CONNECTEDNESS));
+		assertEquals(1, stats.getNumberOfSucceeded());
+		assertEquals(1, stats.getNumberOfBruteForceSearches());
+		assertEquals(4, stats.getNumberOfOutcomes());
+		ExactIsomorphism split2 = new ExactIsomorphism(split);
+		split2.setStats(stats);
+		assertFalse(split2.isomorphic(line));
+		assertEquals(1, stats.getNumberOfFailures(IsomorphismStats.Stage.CONNECTEDNESS));
+		assertFalse(split2.isomorphic(graphFromEdges(4, new int[][] {{0,1},{1,2}})));
+		assertEquals(3, stats.getNumberOfFailures(IsomorphismStats.Stage.NODE_COUNT)); // a component is tested against each component, with the same stats
+		stats.reset();
+		assertEquals(0, stats.getNumberOfTests());
+		assertEquals(0, stats.getNumberOfOutcomes());
+		assertTrue(stats != new ExactIsomorphism(path).getStats());
+		assertSame(ExactIsomorphism.getGlobalStats(), new ExactIsomorphism(path).getStats());
+		
+		// no counts are lost when tests run on many threads
+		final IsomorphismStats shared = new IsomorphismStats();
+		final FastGraph g1 = FastGraph.randomGraphFactory(12, 20, 5L, false);
+		final FastGraph g2 = ExactIsomorphism.generateRandomIsomorphicGraph(g1, 6L, false);
+		final int testsPerThread = 500;
+		IsomorphismStats single = new IsomorphismStats();
+		ExactIsomorphism singleEi = new ExactIsomorphism(g1);
+		singleEi.setStats(single);
+		assertTrue(singleEi.isomorphic(g2));
+		long testsPerCall = single.getNumberOfTests(); // one for each component
+		long succeededPerCall = single.getNumberOfSucceeded();
+		ArrayList<Thread> threads = new ArrayList<Thread>();
+		for(int t = 0; t < 4; t++) {
+			threads.add(new Thread(() -> {
+				ExactIsomorphism threadEi = new ExactIsomorphism(g1);
+				threadEi.setStats(shared);
+				for(int i = 0; i < testsPerThread; i++) {
+					threadEi.isomorphic(g2);
+				}
+			}));
+		}
+		for(Thread thread : threads) {
+			thread.start();
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(4*testsPerThread*testsPerCall, shared.getNumberOfTests());
+		assertEquals(4*testsPerThread*succeededPerCall, shared.getNumberOfSucceeded());
+		
+		// each test is a flight recorder event
+		File recordingFile = File.createTempFile("isomorphism", ".jfr");
+		try(jdk.jfr.Recording recording = new jdk.jfr.Recording()) {
+			recording.enable("uk.ac.kent.dover.fastGraph.IsomorphismTest");
+			recording.enable("uk.ac.kent.dover.fastGraph.IsomorphismBruteForce");
+			recording.start();
+			ei.isomorphic(triangle);
+			ei.isomorphic(ExactIsomorphism.generateRandomIsomorphicGraph(star, 2L, false));
+			recording.stop();
+			recording.dump(recordingFile.toPath());
+		}
+		ArrayList<String> stages = new ArrayList<String>();
+		int bruteForce = 0;
+		for(jdk.jfr.consumer.RecordedEvent re : jdk.jfr.consumer.RecordingFile.readAllEvents(recordingFile.toPath())) {
+			if(re.getEventType().getName().equals("uk.ac.kent.dover.fastGraph.IsomorphismTest")) {
+				stages.add(re.getString("stage"));
+			} else if(re.getEventType().getName().equals("uk.ac.kent.dover.fastGraph.IsomorphismBruteForce")) {
+				bruteForce++;
+			}
+		}
+		recordingFile.delete();
+		assertEquals(Arrays.asList("Node Count", "Isomorphic"), stages);
+		assertEquals(1, bruteForce);
+	}
+	
+	
+	@Test
+	public void test048() throws Exception {
+		// the time of each stage is added up, and is part of the flight recorder event
+		FastGraph star = graphFromEdges(4, new int[][] {{0,1},{0,2},{0,3}});
+		FastGraph split = graphFromEdges(4, new int[][] {{0,1},{2,3}});
+		IsomorphismStats stats = new IsomorphismStats();
+		ExactIsomorphism ei = new ExactIsomorphism(star);
+		ei.setStats(stats);
+		assertTrue(ei.isomorphic(ExactIsomorphism.generateRandomIsomorphicGraph(star, 1L, false)));
+		assertTrue(stats.getStageNanos(IsomorphismStats.Stage.DEGREES) > 0);
+		assertTrue(stats.getStageNanos(IsomorphismStats.Stage.EIGENVALUES) > 0);
+		assertTrue(stats.getStageNanos(IsomorphismStats.Stage.BRUTE_FORCE) > 0);
+		assertEquals(0, stats.getStageNanos(IsomorphismStats.Stage.CONNECTEDNESS));
+		long eigenvalueNanos = stats.getStageNanos(IsomorphismStats.Stage.EIGENVALUES);
+		assertFalse(ei.isomorphic(graphFromEdges(4, new int[][] {{0,1},{1,2},{2,3}})));
+		assertEquals(eigenvalueNanos, stats.getStageNanos(IsomorphismStats.Stage.EIGENVALUES)); // rejected on degrees
+		ExactIsomorphism split2 = new ExactIsomorphism(split);
+		split2.setStats(stats);
+		assertFalse(split2.isomorphic(star));
+		assertTrue(stats.getStageNanos(IsomorphismStats.Stage.CONNECTEDNESS) > 0);
+		stats.reset();
+		for(IsomorphismStats.Stage stage : IsomorphismStats.Stage.values()) {
+			assertEquals(0, stats.getStageNanos(stage));
+		}
+		
+		File recordingFile = File.createTempFile("isomorphismStages", ".jfr");
+		try(jdk.jfr.Recording recording = new jdk.jfr.Recording()) {
+			recording.enable("uk.ac.kent.dover.fastGraph.IsomorphismTest");
+			recording.start();
+			ei.isomorphic(ExactIsomorphism.generateRandomIsomorphicGraph(star, 2L, false));
+			recording.stop();
+			recording.dump(recordingFile.toPath());
+		}
+		int events = 0;
+		for(jdk.jfr.consumer.RecordedEvent re : jdk.jfr.consumer.RecordingFile.readAllEvents(recordingFile.toPath())) {
+			if(re.getEventType().getName().equals("uk.ac.kent.dover.fastGraph.IsomorphismTest")) {
+				events++;
+				assertTrue(re.getDuration("eigenvalueTime").toNanos() > 0);
+				assertTrue(re.getDuration("bruteForceTime").toNanos() > 0);
+				assertEquals(0, re.getDuration("connectednessTime").toNanos());
+				long stageTotal = re.getDuration("countTime").toNanos()+re.getDuration("degreeTime").toNanos()+re.getDuration("eigenvalueTime").toNanos()
+						+re.getDuration("nodeMatchTime").toNanos()+re.getDuration("bruteForceTime").toNanos();
+				assertTrue(stageTotal <= re.getDuration().toNanos());
+			}
+		}
+		recordingFile.delete();
+		assertEquals(1, events);
+	}
+	
+	
+	/**
+	 * @param numberOfNodes the number of nodes
+	 * @param edges the two ends of each edge
+	 * @return a graph with empty labels
+	 */
+	private static FastGraph graphFromEdges(int numberOfNodes, int[][] edges) {
+		List<NodeStructure> nodes = new ArrayList<NodeStructure>();
+		for(int n = 0; n < numberOfNodes; n++) {
+			nodes.add(new NodeStructure(n, "", 0, (byte)0, (byte)0));
+		}
+		List<EdgeStructure> edgeList = new ArrayList<EdgeStructure>();
+		for(int e = 0; e < edges.length; e++) {
+			edgeList.add(new EdgeStructure(e, "", 0, (byte)0, (byte)0, edges[e][0], edges[e][1]));
+		}
+		return FastGraph.structureFactory("edges", (byte)0, nodes, edgeList, false);
+	}
+
 }
@@ -1,18 +1,30 @@
 package test.uk.ac.kent.dover.fastGraph;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
 
 import org.junit.Test;
 
 import test.uk.ac.kent.dover.TestRunner;
+import uk.ac.kent.dover.fastGraph.CanonicalLabelling;
+import uk.ac.kent.dover.fastGraph.EdgeStructure;
+import uk.ac.kent.dover.fastGraph.EigenvalueHasher;
 import uk.ac.kent.dover.fastGraph.ExactMotifFinder;
+import uk.ac.kent.dover.fastGraph.ExactMotifFinder.IsoHolder;
 import uk.ac.kent.dover.fastGraph.ExactMotifFinder.MotifResultHolder;
 import uk.ac.kent.dover.fastGraph.FastGraph;
 import uk.ac.kent.dover.fastGraph.FastGraphException;
+import uk.ac.kent.dover.fastGraph.GraphContainer;
 import uk.ac.kent.dover.fastGraph.Gui.MotifTaskDummy;
+import uk.ac.kent.dover.fastGraph.NodeStructure;
 
 /**
  * 
@@ -88,4 +100,118 @@ public class ExactMotifFinderTest {
 		ArrayList<MotifResultHolder> results = emf.compareAndExportResults(4, 4, 4);
 		assertEquals(15.16, results.get(0).generateDifference(), 0.1);
 	}
+	
+	@Test
+	public void test005() throws IOException {
+		// two paths of three nodes, the second with a node of a later age
+		FastGraph g1 = pathsGraph("temporal paths", new int[] {0,1,2,3,4,5}, new byte[] {0,0,0,0,0,1});
+		// the same graph with the nodes renumbered
+		FastGraph g2 = pathsGraph("temporal paths", new int[] {5,3,4,1,0,2}, new byte[] {0,0,1,0,0,0});
+		
+		HashMap<Long,LinkedList<IsoHolder>> hashBuckets = new HashMap<Long,LinkedList<IsoHolder>>();
+		ExactMotifFinder emf = new ExactMotifFinder(g1, false);
+		emf.findMotifs(3, 0, hashBuckets);
+		assertEquals(2, hashBuckets.size());
+		String sameAge = ExactMotifFinder.motifKey(new CanonicalLabelling(pathsGraph("path", new int[] {0,1,2}, new byte[] {0,0,0}), false, false, true));
+		String laterAge = ExactMotifFinder.motifKey(new CanonicalLabelling(pathsGraph("path", new int[] {0,1,2}, new byte[] {1,0,0}), false, false, true));
+		HashMap<String,IsoHolder> motifs = emf.extractGraphLists(hashBuckets);
+		assertEquals(2, motifs.size());
+		assertTrue(motifs.containsKey(sameAge));
+		assertTrue(motifs.containsKey(laterAge));
+		for(LinkedList<IsoHolder> bucket : hashBuckets.values()) {
+			assertEquals(1, bucket.size());
+		}
+		int found = 0;
+		for(LinkedList<IsoHolder> bucket : hashBuckets.values()) {
+			found += bucket.getFirst().getNumber();
+		}
+		
+		// the keys do not depend on the node order, so no new motifs are found
+		new ExactMotifFinder(g2, false).findMotifs(3, 0, hashBuckets);
+		assertEquals(2, hashBuckets.size());
+		int foundAgain = 0;
+		for(LinkedList<IsoHolder> bucket : hashBuckets.values()) {
+			assertEquals(1, bucket.size());
+			foundAgain += bucket.getFirst().getNumber();
+		}
+		assertTrue(foundAgain > found);
+		
+		// the key of a motif depends on the ages of its nodes
+		assertFalse(sameAge.equals(laterAge));
+	}
+	
+	@Test
+	public void test006() throws IOException {
+		// two paths of three nodes, one with a later end node, one with a later middle node
+		FastGraph g = pathsGraph("temporal paths middle", new int[] {0,1,2,3,4,5}, new byte[] {1,0,0,0,1,0});
+		
+		// the invariant hash ignores which node is later, so the canonical forms separate the motifs in the bucket
+		HashMap<Long,LinkedList<IsoHolder>> hashBuckets = new HashMap<Long,LinkedList<IsoHolder>>();
+		ExactMotifFinder emf = new ExactMotifFinder(g, false);
+		emf.findMotifs(3, 0, hashBuckets);
+		assertEquals(1, hashBuckets.size());
+		assertEquals(2, hashBuckets.values().iterator().next().size());
+		HashMap<String,IsoHolder> motifs = emf.extractGraphLists(hashBuckets);
+		String laterEnd = ExactMotifFinder.motifKey(new CanonicalLabelling(pathsGraph("path", new int[] {0,1,2}, new byte[] {1,0,0}), false, false, true));
+		String laterMiddle = ExactMotifFinder.motifKey(new CanonicalLabelling(pathsGraph("path", new int[] {0,1,2}, new byte[] {0,1,0}), false, false, true));
+		assertTrue(motifs.containsKey(laterEnd));
+		assertTrue(motifs.containsKey(laterMiddle));
+		
+		// the eigenvalue hasher finds the same motifs
+		HashMap<Long,LinkedList<IsoHolder>> eigenvalueBuckets = new HashMap<Long,LinkedList<IsoHolder>>();
+		emf.findMotifs(3, 0, eigenvalueBuckets, new EigenvalueHasher());
+		assertEquals(motifs.keySet(), emf.extractGraphLists(eigenvalueBuckets).keySet());
+		assertEquals(motifs.get(laterEnd).getNumber(), emf.extractGraphLists(eigenvalueBuckets).get(laterEnd).getNumber());
+	}
+	
+	@Test
+	public void test007() throws IOException {
+		FastGraph g = FastGraph.jsonStringGraphFactory(TestRunner.get5Node5Edge(),false);
+		g.setName("rewire containers test");
+		File folder = new File("motifs"+File.separatorChar+g.getName());
+		for(int i = 0; i < 3; i++) {
+			new File(folder, "-rewire-"+i+GraphContainer.EXTENSION).delete();
+		}
+		ExactMotifFinder emf = new ExactMotifFinder(g, new MotifTaskDummy(), false);
+		assertFalse(emf.isSerialRewiring());
+		emf.buildRewires(3);
+		
+		// each rewire is a container, keeping the degrees of the nodes
+		for(int i = 0; i < 3; i++) {
+			assertTrue(new File(folder, "-rewire-"+i+GraphContainer.EXTENSION).exists());
+			FastGraph rewire = FastGraph.loadContainerGraphFactory(folder.getPath(), "-rewire-"+i, false);
+			assertEquals(g.getNumberOfNodes(), rewire.getNumberOfNodes());
+			assertEquals(g.getNumberOfEdges(), rewire.getNumberOfEdges());
+			for(int n = 0; n < g.getNumberOfNodes(); n++) {
+				assertEquals(g.getNodeInDegree(n), rewire.getNodeInDegree(n));
+				assertEquals(g.getNodeOutDegree(n), rewire.getNodeOutDegree(n));
+			}
+		}
+		
+		// existing rewires are kept
+		long modified = new File(folder, "-rewire-0"+GraphContainer.EXTENSION).lastModified();
+		new ExactMotifFinder(g, new MotifTaskDummy(), false).buildRewires(3);
+		assertEquals(modified, new File(folder, "-rewire-0"+GraphContainer.EXTENSION).lastModified());
+	}
+	
+	
+	/**
+	 * Paths of three nodes, 0-1-2, 3-4-5 and so on, with nodes renumbered
+	 * @param name the name of the graph
+	 * @param index the new index of each node, a multiple of three in length
+	 * @param ages the age of each new node index
+	 * @return the graph
+	 */
+	private static FastGraph pathsGraph(String name, int[] index, byte[] ages) {
+		List<NodeStructure> nodes = new ArrayList<NodeStructure>();
+		for(int n = 0; n < index.length; n++) {
+			nodes.add(new NodeStructure(n,"n"+n, 0, (byte)0, ages[n]));
+		}
+		List<EdgeStructure> edges = new ArrayList<EdgeStructure>();
+		for(int p = 0; p < index.length/3; p++) {
+			edges.add(new EdgeStructure(p*2,"e"+(p*2), 0, (byte)0, (byte)0, index[p*3], index[p*3+1]));
+			edges.add(new EdgeStructure(p*2+1,"e"+(p*2+1), 0, (byte)0, (byte)0, index[p*3+1], index[p*3+2]));
+		}
+		return FastGraph.structureFactory(name, (byte)0, nodes, edges, false);
+	}
 }
@@ -2,9 +2,13 @@ package test.uk.ac.kent.dover.fastGraph;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.util.*;
 
 import org.junit.*;
@@ -12,12 +16,36 @@ import org.junit.rules.ExpectedException;
 
 import test.uk.ac.kent.dover.TestRunner;
 import uk.ac.kent.displayGraph.*;
+import uk.ac.kent.dover.fastGraph.AdjacencyListImporter;
+import uk.ac.kent.dover.fastGraph.AdjacencyMatrix;
+import uk.ac.kent.dover.fastGraph.BufferArena;
 import uk.ac.kent.dover.fastGraph.Connected;
+import uk.ac.kent.dover.fastGraph.ConnectedComponents;
+import uk.ac.kent.dover.fastGraph.ConnectionIterator;
+import uk.ac.kent.dover.fastGraph.CsrGraph;
+import uk.ac.kent.dover.fastGraph.DegreePreservingRewirer;
 import uk.ac.kent.dover.fastGraph.EdgeStructure;
+import uk.ac.kent.dover.fastGraph.EigenvalueHasher;
+import uk.ac.kent.dover.fastGraph.ExactIsomorphism;
+import uk.ac.kent.dover.fastGraph.ExactSubgraphIsomorphism;
 import uk.ac.kent.dover.fastGraph.FastGraph;
 import uk.ac.kent.dover.fastGraph.FastGraphEdgeType;
+import uk.ac.kent.dover.fastGraph.FastGraphException;
+import uk.ac.kent.dover.fastGraph.GraphContainer;
+import uk.ac.kent.dover.fastGraph.InvariantHasher;
+import uk.ac.kent.dover.fastGraph.JsonGraphStream;
+import uk.ac.kent.dover.fastGraph.LabelDictionary;
 import uk.ac.kent.dover.fastGraph.Launcher;
+import uk.ac.kent.dover.fastGraph.LongIntHashMap;
+import uk.ac.kent.dover.fastGraph.NodeReordering;
 import uk.ac.kent.dover.fastGraph.NodeStructure;
+import uk.ac.kent.dover.fastGraph.ParallelGraphGenerator;
+import uk.ac.kent.dover.fastGraph.SegmentedBuffer;
+import uk.ac.kent.dover.fastGraph.SubgraphView;
+import uk.ac.kent.dover.fastGraph.TemporalGraph;
+import uk.ac.kent.dover.fastGraph.WeisfeilerLehmanHasher;
+import uk.ac.kent.dover.fastGraph.comparators.SimpleEdgeLabelComparator;
+import uk.ac.kent.dover.fastGraph.comparators.SimpleNodeLabelComparator;
 
 
 /**
@@ -1646,13 +1674,13 @@ public class FastGraphTest {
 		g = FastGraph.jsonStringGraphFactory(TestRunner.get5Node5Edge(),false);
 		nodeBuf = g.getNodeBuf();
 		offset = FastGraph.NODE_IN_CONNECTION_START_OFFSET+2*FastGraph.NODE_BYTE_SIZE;
-		nodeBuf.putInt(offset,5);
+		nodeBuf.putLong(offset,5);
 		assertFalse(g.checkConsistency());
 		
 		g = FastGraph.jsonStringGraphFactory(TestRunner.get5Node5Edge(),false);
 		nodeBuf = g.getNodeBuf();
 		offset = FastGraph.NODE_OUT_CONNECTION_START_OFFSET+1*FastGraph.NODE_BYTE_SIZE;
-		nodeBuf.putInt(offset,3);
+		nodeBuf.putLong(offset,3);
 		assertFalse(g.checkConsistency());
 		
 		g = FastGraph.jsonStringGraphFactory(TestRunner.get5Node5Edge(),false);
@@ -4708,4 +4736,1729 @@ public class FastGraphTest {
 	}
 
 
+	@Test
+	public void test187() throws Exception {
+		FastGraph g = FastGraph.jsonStringGraphFactory(TestRunner.get4Node5Edge(),false);
+		g.saveBuffers(null,"testMapped");
+		FastGraph g2 = FastGraph.loadBuffersGraphFactory(null,"testMapped",true);
+		assertEquals("four nodes, five edges",g2.getName());
+		assertEquals(4,g2.getNumberOfNodes());
+		assertEquals(5,g2.getNumberOfEdges());
+		assertTrue(g2.getNodeBuf().isReadOnly());
+		assertTrue(g2.getDirect());
+		assertEquals(2,g2.getNodeInDegree(3));
+		assertEquals("node label 3",g2.getNodeLabel(3));
+		assertEquals("edge label 4",g2.getEdgeLabel(4));
+		assertEquals(4,g2.getEdgeWeight(4));
+		assertArrayEquals(g.getNodeConnectingNodes(2),g2.getNodeConnectingNodes(2));
+		assertTrue(g2.checkConsistency());
+		FastGraph g3 = g2.generateGraphByDeletingEdge(0);
+		assertEquals(4,g3.getNumberOfEdges());
+		assertTrue(g3.checkConsistency());
+	}
+
+	@Test
+	public void test188() throws Exception {
+		SegmentedBuffer buf = SegmentedBuffer.allocate(16);
+		assertEquals(16,buf.capacity());
+		assertEquals(1,buf.numberOfSegments());
+		buf.putInt(0,-2);
+		assertEquals(-2,buf.getInt(0));
+		assertEquals(0xFFFFFFFEL,buf.getUnsignedInt(0));
+		buf.putChar(4,'x');
+		buf.putShort(6,(short)7);
+		buf.putInt(8,11);
+		assertEquals('x',buf.getChar(4));
+		assertEquals(7,buf.getShort(6));
+		SegmentedBuffer copy = buf.copy();
+		buf.putInt(8,12);
+		assertEquals(11,copy.getInt(8));
+		assertEquals(12,buf.getInt(8));
+		copy.rewind();
+		assertEquals(-2,copy.getInt());
+		assertEquals(12,copy.remaining());
+		
+		FastGraph g = FastGraph.jsonStringGraphFactory(TestRunner.get4Node5Edge(),false);
+		assertEquals(4L*FastGraph.NODE_BYTE_SIZE,g.getSegmentedNodeBuf().capacity());
+		assertEquals(10L*FastGraph.CONNECTION_PAIR_SIZE,g.getSegmentedConnectionBuf().capacity());
+		g.saveBuffers(null,"testSegmented");
+		FastGraph g2 = FastGraph.loadBuffersGraphFactory(null,"testSegmented");
+		assertEquals("node label 3",g2.getNodeLabel(3));
+		assertArrayEquals(g.getNodeConnectingEdges(1),g2.getNodeConnectingEdges(1));
+		assertTrue(g2.checkConsistency());
+	}
+
+	@Test
+	public void test189() throws Exception {
+		FastGraph raw = FastGraph.randomGraphFactory(200, 800, 7L, false, false);
+		FastGraph g = FastGraph.randomGraphFactory(200, 800, 7L, false, false);
+		long rawSize = g.getSegmentedConnectionBuf().capacity();
+		g.compressConnections();
+		assertTrue(g.isConnectionsCompressed());
+		assertTrue(g.getSegmentedConnectionBuf().capacity() < rawSize/2);
+		assertTrue(g.checkConsistency());
+		for(int n = 0; n < g.getNumberOfNodes(); n++) {
+			int[] expected = raw.getNodeConnectingOutNodes(n);
+			int[] actual = g.getNodeConnectingOutNodes(n);
+			Arrays.sort(expected);
+			assertArrayEquals(expected,actual);
+			expected = raw.getNodeConnectingInEdges(n);
+			actual = g.getNodeConnectingInEdges(n);
+			Arrays.sort(expected);
+			Arrays.sort(actual);
+			assertArrayEquals(expected,actual);
+			assertEquals(raw.getNodeDegree(n),g.getNodeConnectingEdges(n).length);
+		}
+		assertEquals(new Connected().connected(raw),new Connected().connected(g));
+		
+		g.saveBuffers(null,"testCompressed");
+		FastGraph g2 = FastGraph.loadBuffersGraphFactory(null,"testCompressed");
+		assertTrue(g2.isConnectionsCompressed());
+		assertArrayEquals(g.getNodeConnectingNodes(5),g2.getNodeConnectingNodes(5));
+		FastGraph g3 = FastGraph.loadBuffersGraphFactory(null,"testCompressed",true);
+		assertArrayEquals(g.getNodeConnectingNodes(5),g3.getNodeConnectingNodes(5));
+		
+		FastGraph g4 = g.generateGraphByDeletingEdge(3);
+		assertFalse(g4.isConnectionsCompressed());
+		assertEquals(799,g4.getNumberOfEdges());
+		assertTrue(g4.checkConsistency());
+		assertTrue(g.isConnectionsCompressed());
+		
+		g.decompressConnections();
+		assertFalse(g.isConnectionsCompressed());
+		assertEquals(rawSize,g.getSegmentedConnectionBuf().capacity());
+		assertTrue(g.checkConsistency());
+	}
+
+	@Test
+	public void test190() throws Exception {
+		FastGraph g = FastGraph.randomGraphFactory(50, 120, 3L, false, false);
+		g.setName("container test");
+		g.saveContainer(null,"testContainer",false);
+		String fileName = Launcher.startingWorkingDirectory+File.separatorChar+"data"+File.separatorChar+"testContainer"+File.separatorChar+"testContainer"+GraphContainer.EXTENSION;
+		assertTrue(GraphContainer.verify(fileName));
+		assertEquals(0,new File(fileName).length()%GraphContainer.PAGE_SIZE);
+		
+		FastGraph g2 = FastGraph.loadContainerGraphFactory(null,"testContainer",false);
+		assertEquals("container test",g2.getName());
+		assertEquals(50,g2.getNumberOfNodes());
+		assertEquals(120,g2.getNumberOfEdges());
+		assertFalse(g2.getDirect());
+		for(int n = 0; n < 50; n++) {
+			assertEquals(g.getNodeLabel(n),g2.getNodeLabel(n));
+			assertArrayEquals(g.getNodeConnectingEdges(n),g2.getNodeConnectingEdges(n));
+		}
+		assertEquals(g.getEdgeLabel(119),g2.getEdgeLabel(119));
+		assertTrue(g2.checkConsistency());
+		
+		g.compressConnections();
+		g.saveContainer(null,"testContainer",true);
+		assertTrue(GraphContainer.verify(fileName));
+		FastGraph g3 = FastGraph.loadContainerGraphFactory(null,"testContainer",true);
+		assertTrue(g3.isConnectionsCompressed());
+		assertTrue(g3.getSegmentedNodeBuf().isReadOnly());
+		assertArrayEquals(g.getNodeConnectingNodes(7),g3.getNodeConnectingNodes(7));
+		assertEquals(g.getEdgeLabel(3),g3.getEdgeLabel(3));
+		assertTrue(g3.checkConsistency());
+		
+		FastGraph empty = FastGraph.randomGraphFactory(0, 0, false);
+		empty.saveContainer(null,"testContainerEmpty",false);
+		FastGraph g4 = FastGraph.loadContainerGraphFactory(null,"testContainerEmpty",true);
+		assertEquals(0,g4.getNumberOfNodes());
+	}
+
+
+	@Rule
+	public ExpectedException thrown191 = ExpectedException.none();
+	@Test
+	public void test191() throws Exception {
+		FastGraph g = FastGraph.randomGraphFactory(20, 40, 4L, false, false);
+		g.saveContainer(null,"testContainerCorrupt",false);
+		String fileName = Launcher.startingWorkingDirectory+File.separatorChar+"data"+File.separatorChar+"testContainerCorrupt"+File.separatorChar+"testContainerCorrupt"+GraphContainer.EXTENSION;
+		java.io.RandomAccessFile file = new java.io.RandomAccessFile(fileName,"rw");
+		long position = 2*GraphContainer.PAGE_SIZE+5; // inside the node section
+		file.seek(position);
+		int b = file.read();
+		file.seek(position);
+		file.write(b^0xFF);
+		file.close();
+		assertFalse(GraphContainer.verify(fileName));
+		thrown191.expect(IOException.class);
+		FastGraph.loadContainerGraphFactory(null,"testContainerCorrupt",false);
+	}
+
+	@Test
+	public void test192() throws Exception {
+		String dir = Launcher.startingWorkingDirectory+File.separatorChar+"testData";
+		FastGraph g = FastGraph.adjacencyListGraphFactory(dir, "testAdj1.txt", false);
+		assertEquals(0,g.getNumberOfNodes());
+		assertEquals(0,g.getNumberOfEdges());
+		
+		g = FastGraph.adjacencyListGraphFactory(dir, "testAdj2.txt", true);
+		assertEquals("testAdj2.txt",g.getName());
+		assertEquals(2,g.getNumberOfNodes());
+		assertEquals(1,g.getNumberOfEdges());
+		assertEquals("45",g.getNodeLabel(0));
+		assertEquals("76",g.getNodeLabel(1));
+		assertEquals("e0",g.getEdgeLabel(0));
+		assertTrue(g.checkConsistency());
+		
+		FastGraph expected = FastGraph.adjacencyListGraphFactory(5, 7, dir, "testAdj4.txt", false);
+		g = FastGraph.adjacencyListGraphFactory(dir, "testAdj4.txt", false);
+		assertEquals(expected.getNumberOfNodes(),g.getNumberOfNodes());
+		assertEquals(expected.getNumberOfEdges(),g.getNumberOfEdges());
+		for(int n = 0; n < g.getNumberOfNodes(); n++) {
+			assertEquals(expected.getNodeLabel(n),g.getNodeLabel(n));
+			assertArrayEquals(expected.getNodeConnectingInEdges(n),g.getNodeConnectingInEdges(n));
+			assertArrayEquals(expected.getNodeConnectingOutNodes(n),g.getNodeConnectingOutNodes(n));
+			assertEquals(expected.getNodeWeight(n),g.getNodeWeight(n));
+		}
+		for(int e = 0; e < g.getNumberOfEdges(); e++) {
+			assertEquals(expected.getEdgeLabel(e),g.getEdgeLabel(e));
+			assertEquals(expected.getEdgeNode1(e),g.getEdgeNode1(e));
+			assertEquals(expected.getEdgeType(e),g.getEdgeType(e));
+		}
+		assertTrue(g.checkConsistency());
+	}
+
+
+	@Test
+	public void test193() throws Exception {
+		// big enough to be split into several chunks
+		File file = new File(Launcher.startingWorkingDirectory+File.separatorChar+"testAdjLarge.txt");
+		java.io.PrintWriter writer = new java.io.PrintWriter(file);
+		writer.print("# generated\n");
+		Random r = new Random(9);
+		int edges = 200000;
+		for(int i = 0; i < edges; i++) {
+			writer.print((1000000000L+r.nextInt(30000))+"\t"+r.nextInt(30000)+"\r\n");
+		}
+		writer.close();
+		FastGraph g = new AdjacencyListImporter(4).importGraph(file.getPath(), "large", false);
+		assertEquals(edges,g.getNumberOfEdges());
+		FastGraph expected = FastGraph.adjacencyListGraphFactory(g.getNumberOfNodes(), edges, Launcher.startingWorkingDirectory, "testAdjLarge.txt", false);
+		assertEquals(expected.getNumberOfNodes(),g.getNumberOfNodes());
+		for(int n = 0; n < g.getNumberOfNodes(); n += 97) {
+			assertEquals(expected.getNodeLabel(n),g.getNodeLabel(n));
+			assertArrayEquals(expected.getNodeConnectingEdges(n),g.getNodeConnectingEdges(n));
+		}
+		for(int e = 0; e < edges; e += 101) {
+			assertEquals(expected.getEdgeNode2(e),g.getEdgeNode2(e));
+			assertEquals(expected.getEdgeLabel(e),g.getEdgeLabel(e));
+		}
+		assertTrue(g.checkConsistency());
+		file.delete();
+		
+		LongIntHashMap map = new LongIntHashMap(0);
+		for(int i = 0; i < 1000; i++) {
+			assertEquals(-1,map.putIfAbsent(i*7919L-3000,i));
+		}
+		assertEquals(-1,map.putIfAbsent(Long.MIN_VALUE,1000));
+		assertEquals(1001,map.size());
+		assertEquals(5,map.putIfAbsent(5*7919L-3000,99));
+		assertEquals(999,map.get(999*7919L-3000));
+		assertEquals(1000,map.get(Long.MIN_VALUE));
+		assertEquals(-1,map.get(1));
+	}
+
+
+	@Test
+	public void test194() throws Exception {
+		String json = TestRunner.get4Node5Edge();
+		FastGraph expected = FastGraph.jsonStringGraphFactory(json,false);
+		FastGraph g = FastGraph.jsonStreamGraphFactory(new ByteArrayInputStream(json.getBytes("UTF-8")),true);
+		assertEquals(expected.getName(),g.getName());
+		assertEquals(expected.getNumberOfNodes(),g.getNumberOfNodes());
+		assertEquals(expected.getNumberOfEdges(),g.getNumberOfEdges());
+		for(int n = 0; n < g.getNumberOfNodes(); n++) {
+			assertEquals(expected.getNodeLabel(n),g.getNodeLabel(n));
+			assertEquals(expected.getNodeWeight(n),g.getNodeWeight(n));
+			assertEquals(expected.getNodeType(n),g.getNodeType(n));
+			assertEquals(expected.getNodeAge(n),g.getNodeAge(n));
+			assertArrayEquals(expected.getNodeConnectingInEdges(n),g.getNodeConnectingInEdges(n));
+			assertArrayEquals(expected.getNodeConnectingOutNodes(n),g.getNodeConnectingOutNodes(n));
+		}
+		for(int e = 0; e < g.getNumberOfEdges(); e++) {
+			assertEquals(expected.getEdgeNode1(e),g.getEdgeNode1(e));
+			assertEquals(expected.getEdgeNode2(e),g.getEdgeNode2(e));
+			assertEquals(expected.getEdgeLabel(e),g.getEdgeLabel(e));
+			assertEquals(expected.getEdgeWeight(e),g.getEdgeWeight(e));
+			assertEquals(expected.getEdgeType(e),g.getEdgeType(e));
+			assertEquals(expected.getEdgeAge(e),g.getEdgeAge(e));
+		}
+		assertTrue(g.checkConsistency());
+
+		// keys in any order, plain numbers, unknown keys, nodes after edges
+		String reordered = "{\"edges\": [{\"node2\": 0, \"edgeLabel\": \"x\", \"edgeIndex\": 0, \"node1\": 1, \"edgeWeight\": -3, \"edgeType\": 2, \"edgeAge\": 1, \"colour\": [1,2]}],"
+				+ " \"nodes\": [{\"nodeLabel\": \"b\", \"nodeIndex\": \"1\", \"nodeWeight\": 7, \"nodeType\": 1, \"nodeAge\": 2},"
+				+ " {\"nodeIndex\": 0, \"nodeLabel\": \"\u00e9a\", \"nodeWeight\": 8, \"nodeType\": 3, \"nodeAge\": 4}], \"name\": \"reordered\"}";
+		g = JsonGraphStream.read(new ByteArrayInputStream(reordered.getBytes("UTF-8")),false);
+		assertEquals("reordered",g.getName());
+		assertEquals(2,g.getNumberOfNodes());
+		assertEquals(1,g.getNumberOfEdges());
+		assertEquals("\u00e9a",g.getNodeLabel(0));
+		assertEquals("b",g.getNodeLabel(1));
+		assertEquals(7,g.getNodeWeight(1));
+		assertEquals(-3,g.getEdgeWeight(0));
+		assertEquals(1,g.getEdgeNode1(0));
+		assertArrayEquals(new int[]{0},g.getNodeConnectingInEdges(0));
+		assertArrayEquals(new int[]{0},g.getNodeConnectingOutNodes(1));
+		assertTrue(g.checkConsistency());
+	}
+
+
+	@Test
+	public void test195() throws Exception {
+		FastGraph g = FastGraph.randomGraphFactory(300, 1200, 11L, false, false);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		g.writeJson(out);
+		byte[] bytes = out.toByteArray();
+
+		FastGraph fromString = FastGraph.jsonStringGraphFactory(new String(bytes,"UTF-8"),false);
+		FastGraph streamed = FastGraph.jsonStreamGraphFactory(new ByteArrayInputStream(bytes),true);
+		FastGraph hinted = JsonGraphStream.read(new ByteArrayInputStream(bytes),300,1200,false);
+		for(FastGraph h : new FastGraph[]{fromString, streamed, hinted}) {
+			assertEquals(g.getName(),h.getName());
+			assertEquals(g.getNumberOfNodes(),h.getNumberOfNodes());
+			assertEquals(g.getNumberOfEdges(),h.getNumberOfEdges());
+			for(int n = 0; n < g.getNumberOfNodes(); n++) {
+				assertEquals(g.getNodeLabel(n),h.getNodeLabel(n));
+				assertEquals(g.getNodeWeight(n),h.getNodeWeight(n));
+				assertEquals(g.getNodeType(n),h.getNodeType(n));
+				assertEquals(g.getNodeAge(n),h.getNodeAge(n));
+				assertEquals(g.getNodeDegree(n),h.getNodeDegree(n));
+			}
+			for(int e = 0; e < g.getNumberOfEdges(); e++) {
+				assertEquals(g.getEdgeNode1(e),h.getEdgeNode1(e));
+				assertEquals(g.getEdgeNode2(e),h.getEdgeNode2(e));
+				assertEquals(g.getEdgeLabel(e),h.getEdgeLabel(e));
+				assertEquals(g.getEdgeWeight(e),h.getEdgeWeight(e));
+				assertEquals(g.getEdgeType(e),h.getEdgeType(e));
+				assertEquals(g.getEdgeAge(e),h.getEdgeAge(e));
+			}
+			assertTrue(h.checkConsistency());
+		}
+		for(int n = 0; n < g.getNumberOfNodes(); n++) {
+			assertArrayEquals(fromString.getNodeConnectingEdges(n),streamed.getNodeConnectingEdges(n));
+			assertArrayEquals(fromString.getNodeConnectingNodes(n),hinted.getNodeConnectingNodes(n));
+		}
+
+		ByteArrayOutputStream again = new ByteArrayOutputStream();
+		streamed.writeJson(again);
+		assertArrayEquals(bytes,again.toByteArray());
+	}
+
+
+	@Rule
+	public ExpectedException thrown196 = ExpectedException.none();
+	@Test
+	public void test196() throws Exception {
+		String missing = "{\"name\": \"bad\", \"nodes\": [{\"nodeIndex\": 0, \"nodeLabel\": \"a\"}], \"edges\": []}";
+		thrown196.expect(org.json.JSONException.class);
+		JsonGraphStream.read(new ByteArrayInputStream(missing.getBytes("UTF-8")),false);
+	}
+
+
+
+	@Test
+	public void test197() throws Exception {
+		FastGraph g = FastGraph.randomGraphFactory(40, 80, 5L, false, false);
+		String[] nodeLabels = new String[40];
+		for(int n = 0; n < 40; n++) {
+			nodeLabels[n] = "n"+(n%7);
+		}
+		nodeLabels[3] = "";
+		g.setAllNodeLabels(nodeLabels);
+		String[] edgeLabels = new String[80];
+		for(int e = 0; e < 80; e++) {
+			edgeLabels[e] = "e"+(e%5);
+		}
+		g.setAllEdgeLabels(edgeLabels);
+
+		assertFalse(g.hasLabelDictionaries());
+		assertEquals(8,g.getNodeLabelDictionary().size());
+		assertTrue(g.hasLabelDictionaries());
+		assertEquals(5,g.getEdgeLabelDictionary().size());
+		assertEquals(0,g.getNodeLabelId(3)); // the empty label sorts first
+		for(int n1 = 0; n1 < 40; n1++) {
+			assertEquals(nodeLabels[n1],g.getNodeLabel(n1));
+			assertEquals(nodeLabels[n1],g.getNodeLabelDictionary().getLabel(g.getNodeLabelId(n1)));
+			for(int n2 = 0; n2 < 40; n2++) {
+				assertEquals(Integer.signum(nodeLabels[n1].compareTo(nodeLabels[n2])),Integer.signum(g.getNodeLabelId(n1)-g.getNodeLabelId(n2)));
+			}
+		}
+		for(int e = 0; e < 80; e++) {
+			assertEquals(edgeLabels[e],g.getEdgeLabel(e));
+		}
+
+		// changing labels discards the dictionary
+		nodeLabels[0] = "new";
+		g.setAllNodeLabels(nodeLabels);
+		assertFalse(g.hasLabelDictionaries());
+		assertEquals("new",g.getNodeLabel(0));
+		assertEquals(9,g.getNodeLabelDictionary().size());
+
+		// saved and loaded with the container
+		g.saveContainer(null,"testContainerLabels",false);
+		for(boolean mapped : new boolean[]{false, true}) {
+			FastGraph g2 = FastGraph.loadContainerGraphFactory(null,"testContainerLabels",mapped);
+			assertTrue(g2.hasLabelDictionaries());
+			assertEquals(9,g2.getNodeLabelDictionary().size());
+			for(int n = 0; n < 40; n++) {
+				assertEquals(g.getNodeLabelId(n),g2.getNodeLabelId(n));
+				assertEquals(nodeLabels[n],g2.getNodeLabel(n));
+			}
+			for(int e = 0; e < 80; e++) {
+				assertEquals(g.getEdgeLabelId(e),g2.getEdgeLabelId(e));
+			}
+		}
+	}
+
+
+	@Test
+	public void test198() throws Exception {
+		String[] labels1 = {"b","d","a","","f","d"};
+		String[] labels2 = {"c","","d","a","g","a","z"};
+		FastGraph g1 = FastGraph.randomGraphFactory(labels1.length, labels1.length, 1L, false, false);
+		FastGraph g2 = FastGraph.randomGraphFactory(labels2.length, labels2.length, 2L, false, true);
+		g1.setAllNodeLabels(labels1);
+		g2.setAllNodeLabels(labels2);
+		g1.setAllEdgeLabels(labels1);
+		g2.setAllEdgeLabels(labels2);
+
+		int[] positions = g2.getNodeLabelDictionary().positionsIn(g1.getNodeLabelDictionary());
+		int[] ids = g2.getNodeLabelDictionary().idsIn(g1.getNodeLabelDictionary());
+		SimpleNodeLabelComparator nc = new SimpleNodeLabelComparator(g1, g2);
+		SimpleEdgeLabelComparator ec = new SimpleEdgeLabelComparator(g1, g2);
+		for(int n1 = 0; n1 < labels1.length; n1++) {
+			for(int n2 = 0; n2 < labels2.length; n2++) {
+				int expected = Integer.signum(labels1[n1].compareTo(labels2[n2]));
+				if(labels2[n2].equals("")) {
+					expected = 0;
+				} else {
+					assertEquals(expected,Integer.signum(2*g1.getNodeLabelId(n1)-positions[g2.getNodeLabelId(n2)]));
+				}
+				assertEquals(expected,Integer.signum(nc.compare(n1, n2)));
+				assertEquals(expected,Integer.signum(ec.compare(n1, n2)));
+				assertEquals(labels1[n1].equals(labels2[n2]),ids[g2.getNodeLabelId(n2)] == g1.getNodeLabelId(n1));
+			}
+		}
+		assertEquals(-1,g2.getNodeLabelDictionary().idsIn(g1.getNodeLabelDictionary())[g2.getNodeLabelId(6)]);
+
+		LabelDictionary copy = LabelDictionary.fromBuffer(g2.getNodeLabelDictionary().toBuffer(true));
+		assertEquals(g2.getNodeLabelDictionary().size(),copy.size());
+		for(int i = 0; i < copy.size(); i++) {
+			assertEquals(g2.getNodeLabelDictionary().getLabel(i),copy.getLabel(i));
+			assertEquals(i,copy.getId(copy.getLabel(i)));
+		}
+		assertEquals(-1,copy.getId("missing"));
+	}
+
+
+
+	@Test
+	public void test199() throws Exception {
+		FastGraph g = FastGraph.randomGraphFactory(60, 300, 9L, false, false);
+		for(int n = 0; n < g.getNumberOfNodes(); n++) {
+			g.setNodeAge(n, (byte)(n%3));
+			g.setNodeType(n, (byte)(n%2));
+		}
+		for(int e = 0; e < g.getNumberOfEdges(); e++) {
+			g.setEdgeAge(e, (byte)(e%4));
+			g.setEdgeType(e, (byte)(e%5));
+		}
+		for(boolean compress : new boolean[]{false, true}) {
+			if(compress) {
+				g.compressConnections();
+			}
+			ConnectionIterator it = g.getConnectionIterator();
+			for(int n = 0; n < g.getNumberOfNodes(); n++) {
+				// no filters gives the same as the array methods
+				int[] edges = g.getNodeConnectingEdges(n);
+				int[] nodes = g.getNodeConnectingNodes(n);
+				it.reset(n);
+				for(int i = 0; i < edges.length; i++) {
+					assertTrue(it.hasNext());
+					it.next();
+					assertEquals(edges[i],it.getEdge());
+					assertEquals(nodes[i],it.getNode());
+				}
+				assertFalse(it.hasNext());
+				assertEquals(g.getNodeInDegree(n),it.resetIn(n).countRemaining());
+				assertEquals(g.getNodeOutDegree(n),it.resetOut(n).countRemaining());
+
+				// same age nodes
+				int[] sameAge = g.getNodeConnectingNodesOfSameAge(n);
+				int expected = 0;
+				for(int node : nodes) {
+					if(g.getNodeAge(node) == g.getNodeAge(n)) {
+						assertEquals(node,sameAge[expected]);
+						expected++;
+					}
+				}
+				assertEquals(expected,sameAge.length);
+				int[] sameAgeOut = g.getNodeConnectingOutNodesOfSameAge(n);
+				assertEquals(it.clearFilters().filterNodeAge(g.getNodeAge(n)).resetOut(n).countRemaining(),sameAgeOut.length);
+				assertEquals(sameAge.length-sameAgeOut.length,g.getNodeConnectingInNodesOfSameAge(n).length);
+
+				// combined filters, hasNext can be called repeatedly
+				it.clearFilters().filterEdgeType((byte)2).filterEdgeAge((byte)3).filterNodeType((byte)1);
+				it.reset(n);
+				for(int i = 0; i < edges.length; i++) {
+					int e = edges[i];
+					if(g.getEdgeType(e) == 2 && g.getEdgeAge(e) == 3 && g.getNodeType(nodes[i]) == 1) {
+						assertTrue(it.hasNext());
+						assertTrue(it.hasNext());
+						it.next();
+						assertEquals(e,it.getEdge());
+					}
+				}
+				assertFalse(it.hasNext());
+				it.clearFilters();
+			}
+		}
+	}
+
+
+	@Test
+	public void test200() throws Exception {
+		// small and dense, so parallel edges and self loops
+		FastGraph g = FastGraph.randomGraphFactory(30, 400, 11L, false, false);
+		int n = g.getNumberOfNodes();
+		int[][][] expected = new int[n][n][];
+		for(int n1 = 0; n1 < n; n1++) {
+			for(int n2 = 0; n2 < n; n2++) {
+				ArrayList<Integer> between = g.edgesBetween(n1, n2);
+				expected[n1][n2] = new int[between.size()];
+				for(int i = 0; i < between.size(); i++) {
+					expected[n1][n2][i] = between.get(i);
+				}
+				assertEquals(between.size() > 0,g.hasEdge(n1, n2));
+				assertEquals(between.size() > 0 ? between.get(0) : -1,g.firstEdgeBetween(n1, n2));
+			}
+		}
+		assertFalse(g.isConnectionsSorted());
+		
+		g.sortConnections();
+		assertTrue(g.isConnectionsSorted());
+		assertTrue(g.checkConsistency());
+		for(int i = 0; i < n; i++) {
+			int[] nodes = g.getNodeConnectingInNodes(i);
+			for(int j = 1; j < nodes.length; j++) {
+				assertTrue(nodes[j-1] <= nodes[j]);
+			}
+		}
+		
+		FastGraph g2 = null;
+		for(int state = 0; state < 3; state++) {
+			FastGraph check = g;
+			if(state == 1) {
+				g.saveBuffers(null,"testSorted");
+				g2 = FastGraph.loadBuffersGraphFactory(null,"testSorted");
+				check = g2;
+			}
+			if(state == 2) {
+				g.compressConnections();
+				check = g;
+			}
+			assertTrue(check.isConnectionsSorted());
+			ConnectionIterator it = check.getConnectionIterator();
+			for(int n1 = 0; n1 < n; n1++) {
+				for(int n2 = 0; n2 < n; n2++) {
+					int[] actual = new int[expected[n1][n2].length];
+					ArrayList<Integer> between = check.edgesBetween(n1, n2);
+					assertEquals(actual.length,between.size());
+					for(int i = 0; i < actual.length; i++) {
+						actual[i] = between.get(i);
+					}
+					int[] sortedExpected = expected[n1][n2].clone();
+					Arrays.sort(sortedExpected);
+					Arrays.sort(actual);
+					assertArrayEquals(sortedExpected,actual);
+					assertEquals(actual.length > 0,check.hasEdge(n1, n2));
+					assertEquals(actual.length > 0 ? between.get(0) : -1,check.firstEdgeBetween(n1, n2));
+					assertEquals(actual.length,it.resetBetween(n1, n2).countRemaining());
+				}
+				// a reset after resetBetween visits everything again
+				assertEquals(check.getNodeDegree(n1),it.reset(n1).countRemaining());
+			}
+		}
+		
+		g2.saveContainer(null,"testSorted",false);
+		FastGraph g3 = FastGraph.loadContainerGraphFactory(null,"testSorted",false);
+		assertTrue(g3.isConnectionsSorted());
+		assertEquals(g2.edgesBetween(3, 4),g3.edgesBetween(3, 4));
+		
+		FastGraph g4 = g2.generateGraphByDeletingEdge(0);
+		assertFalse(g4.isConnectionsSorted());
+	}
+
+
+	@Test
+	public void test201() throws Exception {
+		FastGraph g = FastGraph.randomGraphFactory(60, 200, 5L, false, false);
+		Random r = new Random(3);
+		for(int test = 0; test < 50; test++) {
+			int[] nodes = new int[2+r.nextInt(8)];
+			for(int i = 0; i < nodes.length; i++) {
+				nodes[i] = r.nextInt(g.getNumberOfNodes());
+			}
+			SubgraphView view = SubgraphView.induced(g, nodes);
+			FastGraph sub = view.toFastGraph();
+			assertTrue(sub.checkConsistency());
+			assertEquals(view.getNumberOfNodes(),sub.getNumberOfNodes());
+			assertEquals(view.getNumberOfEdges(),sub.getNumberOfEdges());
+			for(int n = 0; n < view.getNumberOfNodes(); n++) {
+				assertEquals(g.getNodeLabel(nodes[n]),view.getNodeLabel(n));
+				assertEquals(sub.getNodeLabel(n),view.getNodeLabel(n));
+				assertEquals(sub.getNodeInDegree(n),view.getNodeInDegree(n));
+				assertEquals(sub.getNodeOutDegree(n),view.getNodeOutDegree(n));
+				int[] expected = sub.getNodeConnectingNodes(n);
+				int[] actual = view.getNodeConnectingNodes(n);
+				Arrays.sort(expected);
+				Arrays.sort(actual);
+				assertArrayEquals(expected,actual);
+			}
+			for(int e = 0; e < view.getNumberOfEdges(); e++) {
+				assertEquals(sub.getEdgeNode1(e),view.getEdgeNode1(e));
+				assertEquals(sub.getEdgeNode2(e),view.getEdgeNode2(e));
+				assertEquals(g.getEdgeNode1(view.getParentEdge(e)),view.getParentNode(view.getEdgeNode1(e)));
+			}
+			assertEquals(new Connected().connected(sub),view.isConnected());
+			assertEquals(sub.breakIntoConnectedComponents().size(),view.breakIntoConnectedComponents().size());
+			
+			SubgraphView same = SubgraphView.of(g, view.getParentNodes(), view.getParentEdges());
+			for(boolean directed : new boolean[] {false, true}) {
+				ExactIsomorphism ei = new ExactIsomorphism(view,directed);
+				assertTrue(ei.isomorphic(sub));
+				assertTrue(ei.isomorphic(same));
+				assertTrue(new ExactIsomorphism(sub,directed).isomorphic(view));
+				FastGraph shuffled = ExactIsomorphism.generateRandomIsomorphicGraph(sub, test, false);
+				assertTrue(ei.isomorphic(shuffled));
+				assertTrue(new ExactIsomorphism(view,directed,true).isomorphic(shuffled));
+				if(view.getNumberOfEdges() > 0) {
+					FastGraph fewer = sub.generateGraphByDeletingEdge(0);
+					assertFalse(ei.isomorphic(fewer));
+				}
+			}
+		}
+		
+		SubgraphView whole = SubgraphView.whole(g);
+		assertEquals(g.getNumberOfEdges(),whole.getNumberOfEdges());
+		assertArrayEquals(g.findDegrees(),whole.findDegrees());
+		assertEquals(Arrays.deepToString(new AdjacencyMatrix(g).buildIntAdjacencyMatrix()),Arrays.deepToString(whole.buildIntAdjacencyMatrix()));
+		assertEquals(Arrays.deepToString(new AdjacencyMatrix(g).buildIntInAdjacencyMatrix()),Arrays.deepToString(whole.buildIntInAdjacencyMatrix()));
+		assertEquals(Arrays.deepToString(new AdjacencyMatrix(g).buildIntOutAdjacencyMatrix()),Arrays.deepToString(whole.buildIntOutAdjacencyMatrix()));
+	}
+
+
+	@Test
+	public void test202() throws Exception {
+		FastGraph g = FastGraph.randomGraphFactory(40, 150, 9L, false, false);
+		for(int state = 0; state < 2; state++) {
+			if(state == 1) {
+				g.compressConnections();
+			}
+			CsrGraph csr = g.toCsr();
+			assertEquals(g.getNumberOfNodes(),csr.getNumberOfNodes());
+			assertEquals(g.getNumberOfEdges(),csr.getNumberOfEdges());
+			assertArrayEquals(g.findDegrees(),csr.getDegrees());
+			assertArrayEquals(g.findInDegrees(),csr.getInDegrees());
+			assertArrayEquals(g.findOutDegrees(),csr.getOutDegrees());
+			for(int n = 0; n < g.getNumberOfNodes(); n++) {
+				assertArrayEquals(g.getNodeConnectingInNodes(n),Arrays.copyOfRange(csr.getInTargets(),csr.getInOffsets()[n],csr.getInOffsets()[n+1]));
+				assertArrayEquals(g.getNodeConnectingInEdges(n),Arrays.copyOfRange(csr.getInEdgeIds(),csr.getInOffsets()[n],csr.getInOffsets()[n+1]));
+				assertArrayEquals(g.getNodeConnectingOutNodes(n),Arrays.copyOfRange(csr.getOutTargets(),csr.getOutOffsets()[n],csr.getOutOffsets()[n+1]));
+				assertArrayEquals(g.getNodeConnectingOutEdges(n),Arrays.copyOfRange(csr.getOutEdgeIds(),csr.getOutOffsets()[n],csr.getOutOffsets()[n+1]));
+				assertArrayEquals(g.getNodeConnectingNodes(n),Arrays.copyOfRange(csr.getTargets(),csr.getOffsets()[n],csr.getOffsets()[n+1]));
+				assertArrayEquals(g.getNodeConnectingEdges(n),Arrays.copyOfRange(csr.getEdgeIds(),csr.getOffsets()[n],csr.getOffsets()[n+1]));
+			}
+			for(int e = 0; e < g.getNumberOfEdges(); e++) {
+				assertEquals(g.getEdgeNode1(e),csr.getEdgeNode1s()[e]);
+				assertEquals(g.getEdgeNode2(e),csr.getEdgeNode2s()[e]);
+			}
+			
+			AdjacencyMatrix am = new AdjacencyMatrix(g);
+			AdjacencyMatrix csrAm = new AdjacencyMatrix(csr);
+			assertEquals(Arrays.deepToString(am.buildIntAdjacencyMatrix()),Arrays.deepToString(csrAm.buildIntAdjacencyMatrix()));
+			assertEquals(Arrays.deepToString(am.buildIntInAdjacencyMatrix()),Arrays.deepToString(csrAm.buildIntInAdjacencyMatrix()));
+			assertEquals(Arrays.deepToString(am.buildIntOutAdjacencyMatrix()),Arrays.deepToString(csrAm.buildIntOutAdjacencyMatrix()));
+			assertEquals(Arrays.deepToString(am.buildIntDirectedAdjacencyMatrix()),Arrays.deepToString(csrAm.buildIntDirectedAdjacencyMatrix()));
+			assertEquals(Arrays.deepToString(am.buildBooleanAdjacencyMatrix()),Arrays.deepToString(csrAm.buildBooleanAdjacencyMatrix()));
+			assertEquals(Arrays.deepToString(am.buildBooleanDirectedAdjacencyMatrix()),Arrays.deepToString(csrAm.buildBooleanDirectedAdjacencyMatrix()));
+			
+			Connected c = new Connected();
+			boolean connected = c.connected(g);
+			LinkedList<Integer> visited = c.getVisitedNodes();
+			assertEquals(connected,c.connected(csr));
+			assertEquals(visited,c.getVisitedNodes());
+		}
+		
+		// disconnected, and empty
+		FastGraph g2 = FastGraph.randomGraphFactory(20, 3, 2L, false, false);
+		assertFalse(new Connected().connected(g2.toCsr()));
+		FastGraph g3 = FastGraph.randomGraphFactory(0, 0, 2L, false, false);
+		assertTrue(new Connected().connected(g3.toCsr()));
+		assertEquals(0,g3.toCsr().getTargets().length);
+		
+		// rewiring reads the csr snapshot, degrees are kept
+		FastGraph rewired = g.generateRandomRewiredGraph(2, 4L);
+		assertArrayEquals(g.findInDegrees(),rewired.findInDegrees());
+		assertArrayEquals(g.findOutDegrees(),rewired.findOutDegrees());
+	}
+
+
+	@Test
+	public void test203() throws Exception {
+		// sparse, so many components
+		FastGraph g = FastGraph.randomGraphFactory(300, 200, 6L, false, false);
+		ConnectedComponents components = new ConnectedComponents(g, 1);
+		ArrayList<SubgraphView> expected = SubgraphView.whole(g).breakIntoConnectedComponents();
+		assertEquals(expected.size(),components.getNumberOfComponents());
+		int totalEdges = 0;
+		for(int c = 0; c < components.getNumberOfComponents(); c++) {
+			int[] nodes = components.getComponentNodes(c);
+			int[] expectedNodes = expected.get(c).getParentNodes();
+			Arrays.sort(expectedNodes);
+			assertArrayEquals(expectedNodes,nodes);
+			assertEquals(nodes.length,components.getComponentSizes()[c]);
+			for(int n : nodes) {
+				assertEquals(c,components.getComponentId(n));
+			}
+			int[] edges = components.getComponentEdges(c);
+			int[] expectedEdges = expected.get(c).getParentEdges();
+			Arrays.sort(expectedEdges);
+			assertArrayEquals(expectedEdges,edges);
+			totalEdges += edges.length;
+			
+			FastGraph component = components.getComponentGraph(c);
+			assertTrue(component.checkConsistency());
+			assertEquals(g.getName()+"-"+c,component.getName());
+			assertTrue(new Connected().connected(component));
+			assertTrue(ExactIsomorphism.isomorphic(component, components.getComponentView(c).toFastGraph(), true));
+			assertEquals(g.getNodeLabel(nodes[0]),component.getNodeLabel(0));
+		}
+		assertEquals(g.getNumberOfEdges(),totalEdges);
+		
+		ArrayList<FastGraph> broken = g.breakIntoConnectedComponents();
+		assertEquals(components.getNumberOfComponents(),broken.size());
+		for(int c = 0; c < broken.size(); c++) {
+			assertEquals(components.getComponentSizes()[c],broken.get(c).getNumberOfNodes());
+		}
+		
+		// large enough to use threads, which must give the same numbering
+		FastGraph big = FastGraph.randomGraphFactory(200000, 150000, 7L, false, false);
+		int[] single = new ConnectedComponents(big, 1).getComponentIds();
+		ConnectedComponents parallel = new ConnectedComponents(big, 4);
+		assertArrayEquals(single,parallel.getComponentIds());
+		assertEquals(big.getNumberOfNodes(),Arrays.stream(parallel.getComponentSizes()).sum());
+		
+		FastGraph empty = FastGraph.randomGraphFactory(0, 0, 2L, false, false);
+		assertEquals(0,new ConnectedComponents(empty).getNumberOfComponents());
+	}
+
+
+	@Test
+	public void test204() throws Exception {
+		FastGraph g = FastGraph.randomGraphFactory(200, 600, 8L, false, false);
+		Random r = new Random(3L);
+		for(int n = 0; n < g.getNumberOfNodes(); n++) {
+			g.setNodeAge(n, (byte)(r.nextInt(4)-1));
+		}
+		for(int e = 0; e < g.getNumberOfEdges(); e++) {
+			g.setEdgeAge(e, (byte)(r.nextInt(3)));
+		}
+		assertEquals(-1,g.findMinimumNodeAge());
+		assertEquals(2,g.findMaximumNodeAge());
+		assertEquals(0,g.findMinimumEdgeAge());
+		assertEquals(2,g.findMaximumEdgeAge());
+		
+		int total = 0;
+		for(int age = -2; age <= 3; age++) {
+			ArrayList<Integer> nodes = new ArrayList<Integer>();
+			int[] degreeProfile = new int[g.maximumDegree()+1];
+			for(int n = 0; n < g.getNumberOfNodes(); n++) {
+				if(g.getNodeAge(n) == age) {
+					nodes.add(n);
+					degreeProfile[g.getNodeDegree(n)]++;
+				}
+			}
+			ArrayList<Integer> edges = new ArrayList<Integer>();
+			for(int e = 0; e < g.getNumberOfEdges(); e++) {
+				if(g.getEdgeAge(e) == age) {
+					edges.add(e);
+				}
+			}
+			assertEquals(nodes,g.findAllNodesOfAge(age));
+			assertEquals(edges,g.findAllEdgesOfAge(age));
+			assertEquals(nodes.size(),g.countNodesOfAge(age));
+			assertEquals(edges.size(),g.getAgeIndex().countEdgesOfAge(age));
+			assertArrayEquals(degreeProfile,g.findDegreeProfileAtAge(age));
+			total += nodes.size();
+		}
+		assertEquals(g.getNumberOfNodes(),total);
+		assertEquals(0,g.countNodesOfAge(200));
+		
+		g.sortConnections();
+		for(int n = 0; n < g.getNumberOfNodes(); n++) {
+			ArrayList<Integer> in = new ArrayList<Integer>();
+			for(int c : g.getNodeConnectingInNodes(n)) {
+				if(g.getNodeAge(c) == g.getNodeAge(n)) {
+					in.add(c);
+				}
+			}
+			ArrayList<Integer> out = new ArrayList<Integer>();
+			for(int c : g.getNodeConnectingOutNodes(n)) {
+				if(g.getNodeAge(c) == g.getNodeAge(n)) {
+					out.add(c);
+				}
+			}
+			ArrayList<Integer> all = new ArrayList<Integer>(in);
+			all.addAll(out);
+			assertEquals(in,toList(g.getNodeConnectingInNodesOfSameAge(n)));
+			assertEquals(out,toList(g.getNodeConnectingOutNodesOfSameAge(n)));
+			assertEquals(all,toList(g.getNodeConnectingNodesOfSameAge(n)));
+		}
+		
+		// changing an age drops the index
+		int count = g.countNodesOfAge(0);
+		g.setNodeAge(g.findAllNodesOfAge(0).get(0), (byte)3);
+		assertEquals(count-1,g.countNodesOfAge(0));
+		assertEquals(1,g.countNodesOfAge(3));
+		assertEquals(3,g.findMaximumNodeAge());
+		g.setEdgeAge(0, (byte)5);
+		assertEquals(5,g.findMaximumEdgeAge());
+		assertEquals(0,g.findAllEdgesOfAge(5).get(0).intValue());
+	}
+
+
+	private static ArrayList<Integer> toList(int[] array) {
+		ArrayList<Integer> ret = new ArrayList<Integer>(array.length);
+		for(int i : array) {
+			ret.add(i);
+		}
+		return ret;
+	}
+
+
+	@Test
+	public void test205() throws Exception {
+		FastGraph g1 = FastGraph.randomGraphFactory(60, 150, 9L, false, false);
+		TemporalGraph store = new TemporalGraph(g1);
+		
+		Collection<Integer> deleteNodes = new ArrayList<Integer>(Arrays.asList(3, 7));
+		Collection<Integer> deleteEdges = new ArrayList<Integer>(Arrays.asList(5, 10));
+		Collection<NodeStructure> addNodes = new ArrayList<NodeStructure>();
+		addNodes.add(new NodeStructure(1000, "new1", 4, (byte)2, (byte)0));
+		addNodes.add(new NodeStructure(1001, "new2", 5, (byte)3, (byte)0));
+		Collection<EdgeStructure> addEdges = new ArrayList<EdgeStructure>();
+		addEdges.add(new EdgeStructure(0, "ae1", 6, (byte)1, (byte)0, 1000, 2));
+		addEdges.add(new EdgeStructure(1, "ae2", 7, (byte)1, (byte)0, 4, 1001));
+		addEdges.add(new EdgeStructure(2, "ae3", 8, (byte)1, (byte)0, 1000, 1001));
+		FastGraph g2 = g1.addNewTimeSlice(deleteNodes, deleteEdges, addNodes, addEdges, false);
+		assertEquals(1,store.appendTimeSlice(deleteNodes, deleteEdges, addNodes, addEdges));
+		assertTemporalGraphEquals(g2, store);
+		assertArrayEquals(new int[] {3, 7},store.getDeletedNodes((byte)1));
+		assertArrayEquals(g2.getAgeIndex().getNodesOfAge(1),store.getLatestNodes());
+		
+		int[] latest = store.getLatestNodes();
+		int[] latestEdges = store.getLatestEdges();
+		deleteNodes = new ArrayList<Integer>(Arrays.asList(latest[0], latest[latest.length-1]));
+		deleteEdges = new ArrayList<Integer>(Arrays.asList(latestEdges[3]));
+		addNodes = new ArrayList<NodeStructure>();
+		addNodes.add(new NodeStructure(5000, "new3", 1, (byte)1, (byte)0));
+		addEdges = new ArrayList<EdgeStructure>();
+		addEdges.add(new EdgeStructure(0, "ae4", 9, (byte)2, (byte)0, latest[1], 5000));
+		FastGraph g3 = g2.addNewTimeSlice(deleteNodes, deleteEdges, addNodes, addEdges, false);
+		store.appendTimeSlice(deleteNodes, deleteEdges, addNodes, addEdges);
+		assertTemporalGraphEquals(g3, store);
+		assertEquals(2,store.getNumberOfSegments());
+		
+		FastGraph compacted = store.compactInBackground(false).get();
+		assertEquals(0,store.getNumberOfSegments());
+		assertSame(compacted,store.getSnapshot());
+		assertTrue(compacted.checkConsistency());
+		assertEquals(g3.getName(),compacted.getName());
+		assertEquals(g3.getGeneration(),compacted.getGeneration());
+		assertTemporalGraphEquals(g3, new TemporalGraph(compacted));
+		for(int n = 0; n < g3.getNumberOfNodes(); n++) {
+			assertArrayEquals(g3.getNodeConnectingInEdges(n),compacted.getNodeConnectingInEdges(n));
+			assertArrayEquals(g3.getNodeConnectingOutEdges(n),compacted.getNodeConnectingOutEdges(n));
+		}
+		
+		// segments go on after the compacted snapshot
+		Collection<Integer> none = new ArrayList<Integer>();
+		FastGraph g4 = g3.addNewTimeSlice(none, none, new ArrayList<NodeStructure>(), new ArrayList<EdgeStructure>(), false);
+		store.appendTimeSlice(none, none, new ArrayList<NodeStructure>(), new ArrayList<EdgeStructure>());
+		assertTemporalGraphEquals(g4, store);
+		
+		addEdges = new ArrayList<EdgeStructure>();
+		addEdges.add(new EdgeStructure(0, "bad", 0, (byte)1, (byte)0, 0, 1));
+		try {
+			store.appendTimeSlice(none, none, new ArrayList<NodeStructure>(), addEdges);
+			fail("edge to an old generation node should not be added");
+		} catch(FastGraphException e) {
+		}
+		assertTemporalGraphEquals(g4, store);
+	}
+
+
+	private static void assertTemporalGraphEquals(FastGraph expected, TemporalGraph actual) {
+		assertEquals(expected.getName(),actual.getName());
+		assertEquals(expected.getGeneration(),actual.getGeneration());
+		assertEquals(expected.getNumberOfNodes(),actual.getNumberOfNodes());
+		assertEquals(expected.getNumberOfEdges(),actual.getNumberOfEdges());
+		for(int n = 0; n < expected.getNumberOfNodes(); n++) {
+			assertEquals(expected.getNodeLabel(n),actual.getNodeLabel(n));
+			assertEquals(expected.getNodeWeight(n),actual.getNodeWeight(n));
+			assertEquals(expected.getNodeType(n),actual.getNodeType(n));
+			assertEquals(expected.getNodeAge(n),actual.getNodeAge(n));
+		}
+		for(int e = 0; e < expected.getNumberOfEdges(); e++) {
+			assertEquals(expected.getEdgeLabel(e),actual.getEdgeLabel(e));
+			assertEquals(expected.getEdgeWeight(e),actual.getEdgeWeight(e));
+			assertEquals(expected.getEdgeType(e),actual.getEdgeType(e));
+			assertEquals(expected.getEdgeAge(e),actual.getEdgeAge(e));
+			assertEquals(expected.getEdgeNode1(e),actual.getEdgeNode1(e));
+			assertEquals(expected.getEdgeNode2(e),actual.getEdgeNode2(e));
+		}
+	}
+
+
+	@Test
+	public void test206() throws Exception {
+		FastGraph g = FastGraph.randomGraphFactory(100, 400, 10L, false, false);
+		DegreePreservingRewirer rewirer = new DegreePreservingRewirer(g);
+		FastGraph r1 = rewirer.rewire(4000, 5L);
+		assertTrue(r1.checkConsistency());
+		assertEquals(g.getName()+"-rewire",r1.getName());
+		assertArrayEquals(g.findInDegrees(),r1.findInDegrees());
+		assertArrayEquals(g.findOutDegrees(),r1.findOutDegrees());
+		assertEquals(g.getNodeLabel(3),r1.getNodeLabel(3));
+		assertEquals(g.getEdgeLabel(3),r1.getEdgeLabel(3));
+		
+		FastGraph r2 = rewirer.rewire(4000, 5L);
+		FastGraph r3 = rewirer.rewire(4000, 6L);
+		boolean different = false;
+		for(int e = 0; e < g.getNumberOfEdges(); e++) {
+			assertEquals(g.getEdgeNode1(e),r1.getEdgeNode1(e));
+			assertEquals(r1.getEdgeNode2(e),r2.getEdgeNode2(e));
+			if(r1.getEdgeNode2(e) != r3.getEdgeNode2(e)) {
+				different = true;
+			}
+		}
+		assertTrue(different);
+		for(int n = 0; n < g.getNumberOfNodes(); n++) {
+			assertArrayEquals(r1.getNodeConnectingInEdges(n),r2.getNodeConnectingInEdges(n));
+		}
+		
+		// the same graphs for any number of threads
+		List<String> parallel = rewirer.rewireToContainers(4, 4000, 7L, null, "testRewire", 3);
+		List<String> single = rewirer.rewireToContainers(4, 4000, 7L, null, "testRewireSingle", 1);
+		assertEquals(Arrays.asList("testRewire-rewire-0","testRewire-rewire-1","testRewire-rewire-2","testRewire-rewire-3"),parallel);
+		for(int i = 0; i < 4; i++) {
+			FastGraph p = FastGraph.loadContainerGraphFactory(null, parallel.get(i), false);
+			FastGraph q = FastGraph.loadContainerGraphFactory(null, single.get(i), false);
+			assertTrue(p.checkConsistency());
+			assertEquals(g.getName()+"-rewire-"+i,p.getName());
+			assertArrayEquals(g.findInDegrees(),p.findInDegrees());
+			assertArrayEquals(g.findOutDegrees(),p.findOutDegrees());
+			for(int e = 0; e < g.getNumberOfEdges(); e++) {
+				assertEquals(q.getEdgeNode2(e),p.getEdgeNode2(e));
+			}
+		}
+		
+		// too few edges to swap
+		FastGraph one = FastGraph.randomGraphFactory(3, 1, 2L, false, false);
+		FastGraph oneRewired = new DegreePreservingRewirer(one).rewire(10, 1L);
+		assertEquals(one.getEdgeNode2(0),oneRewired.getEdgeNode2(0));
+	}
+
+
+	@Test
+	public void test207() throws Exception {
+		// more edges than one chunk, so several threads share the work
+		FastGraph g1 = new ParallelGraphGenerator(1).randomGraph(1000, 150000, 3L, false);
+		FastGraph g4 = new ParallelGraphGenerator(4).randomGraph(1000, 150000, 3L, false);
+		assertTrue(g4.checkConsistency());
+		assertEquals(1000,g4.getNumberOfNodes());
+		assertEquals(150000,g4.getNumberOfEdges());
+		assertEquals("n999",g4.getNodeLabel(999));
+		assertEquals("e0",g4.getEdgeLabel(0));
+		assertEquals("e149999",g4.getEdgeLabel(149999));
+		List<List<Integer>> outEdges = new ArrayList<>();
+		List<List<Integer>> inEdges = new ArrayList<>();
+		for(int n = 0; n < 1000; n++) {
+			outEdges.add(new ArrayList<>());
+			inEdges.add(new ArrayList<>());
+		}
+		for(int e = 0; e < g4.getNumberOfEdges(); e++) {
+			assertEquals(g1.getEdgeNode1(e),g4.getEdgeNode1(e));
+			assertEquals(g1.getEdgeNode2(e),g4.getEdgeNode2(e));
+			outEdges.get(g4.getEdgeNode1(e)).add(e);
+			inEdges.get(g4.getEdgeNode2(e)).add(e);
+		}
+		// connection lists in edge order
+		for(int n = 0; n < 1000; n++) {
+			assertEquals(outEdges.get(n),toList(g4.getNodeConnectingOutEdges(n)));
+			assertEquals(inEdges.get(n),toList(g4.getNodeConnectingInEdges(n)));
+			assertArrayEquals(g1.getNodeConnectingInEdges(n),g4.getNodeConnectingInEdges(n));
+		}
+		FastGraph other = new ParallelGraphGenerator(4).randomGraph(1000, 150000, 4L, false);
+		boolean different = false;
+		for(int e = 0; e < other.getNumberOfEdges(); e++) {
+			if(other.getEdgeNode2(e) != g4.getEdgeNode2(e)) {
+				different = true;
+			}
+		}
+		assertTrue(different);
+		
+		// G(n,p) is simple, with about the expected number of edges
+		FastGraph gnp1 = new ParallelGraphGenerator(1).erdosRenyi(3000, 0.01, 5L, false);
+		FastGraph gnp3 = new ParallelGraphGenerator(3).erdosRenyi(3000, 0.01, 5L, false);
+		assertTrue(gnp3.checkConsistency());
+		assertEquals(gnp1.getNumberOfEdges(),gnp3.getNumberOfEdges());
+		double expected = 0.01*3000*2999/2;
+		assertTrue(Math.abs(gnp3.getNumberOfEdges()-expected) < expected*0.05);
+		HashSet<Long> pairs = new HashSet<>();
+		for(int e = 0; e < gnp3.getNumberOfEdges(); e++) {
+			int n1 = gnp3.getEdgeNode1(e);
+			int n2 = gnp3.getEdgeNode2(e);
+			assertEquals(gnp1.getEdgeNode2(e),n2);
+			assertTrue(n1 < n2);
+			assertTrue(pairs.add((long)n1*3000+n2));
+		}
+		assertEquals(0,new ParallelGraphGenerator(2).erdosRenyi(50, 0.0, 5L, false).getNumberOfEdges());
+		assertEquals(45,new ParallelGraphGenerator(2).erdosRenyi(10, 1.0, 5L, false).getNumberOfEdges());
+		try {
+			new ParallelGraphGenerator(2).erdosRenyi(10, 1.5, 5L, false);
+			fail("probability above 1 accepted");
+		} catch(FastGraphException e) {
+		}
+		
+		// Barabasi-Albert, every node adds the same number of edges, and early nodes gather the most
+		FastGraph ba1 = new ParallelGraphGenerator(1).barabasiAlbert(40000, 3, 6L, false);
+		FastGraph ba4 = new ParallelGraphGenerator(4).barabasiAlbert(40000, 3, 6L, false);
+		assertTrue(ba4.checkConsistency());
+		assertEquals(120000,ba4.getNumberOfEdges());
+		for(int n = 0; n < ba4.getNumberOfNodes(); n++) {
+			assertEquals(3,ba4.getNodeOutDegree(n));
+		}
+		for(int e = 0; e < ba4.getNumberOfEdges(); e++) {
+			assertEquals(ba1.getEdgeNode2(e),ba4.getEdgeNode2(e));
+			assertTrue(ba4.getEdgeNode2(e) <= ba4.getEdgeNode1(e));
+		}
+		assertTrue(ba4.maximumDegree() > 100);
+		
+		// configuration model keeps the degrees
+		int[] degrees = new int[30000];
+		Random r = new Random(8L);
+		for(int n = 0; n < degrees.length; n++) {
+			degrees[n] = r.nextInt(10);
+		}
+		degrees[0] += Arrays.stream(degrees).sum()%2;
+		FastGraph c1 = new ParallelGraphGenerator(1).configurationModel(degrees, 9L, false);
+		FastGraph c4 = new ParallelGraphGenerator(4).configurationModel(degrees, 9L, false);
+		assertTrue(c4.checkConsistency());
+		for(int n = 0; n < degrees.length; n++) {
+			assertEquals(degrees[n],c4.getNodeDegree(n));
+			assertArrayEquals(c1.getNodeConnectingOutEdges(n),c4.getNodeConnectingOutEdges(n));
+		}
+		try {
+			new ParallelGraphGenerator(2).configurationModel(new int[] {1,2,2}, 9L, false);
+			fail("odd degree sum accepted");
+		} catch(FastGraphException e) {
+		}
+	}
+
+
+	@Test
+	public void test208() throws Exception {
+		FastGraph g = FastGraph.randomGraphFactory(200, 600, 11L, false, false);
+		g.setNodeAge(5, (byte)3);
+		g.buildLabelDictionaries();
+		List<NodeReordering> reorderings = Arrays.asList(NodeReordering.breadthFirst(g), NodeReordering.reverseCuthillMcKee(g), NodeReordering.degreeSorted(g));
+		for(NodeReordering reordering : reorderings) {
+			FastGraph r = g.generateReorderedGraph(reordering);
+			assertTrue(r.checkConsistency());
+			assertEquals(g.getName()+"-reordered",r.getName());
+			assertEquals(g.getNumberOfNodes(),r.getNumberOfNodes());
+			assertEquals(g.getNumberOfEdges(),r.getNumberOfEdges());
+			for(int n = 0; n < g.getNumberOfNodes(); n++) {
+				int m = reordering.getNewNode(n);
+				assertEquals(n,reordering.getOriginalNode(m));
+				assertEquals(g.getNodeLabel(n),r.getNodeLabel(m));
+				assertEquals(g.getNodeLabelId(n),r.getNodeLabelId(m));
+				assertEquals(g.getNodeWeight(n),r.getNodeWeight(m));
+				assertEquals(g.getNodeAge(n),r.getNodeAge(m));
+				assertEquals(g.getNodeInDegree(n),r.getNodeInDegree(m));
+				assertEquals(g.getNodeOutDegree(n),r.getNodeOutDegree(m));
+				assertArrayEquals(g.getNodeConnectingOutEdges(n),r.getNodeConnectingOutEdges(m));
+				assertArrayEquals(g.getNodeConnectingOutNodes(n),reordering.toOriginalNodes(r.getNodeConnectingOutNodes(m)));
+			}
+			for(int e = 0; e < g.getNumberOfEdges(); e++) {
+				assertEquals(g.getEdgeLabel(e),r.getEdgeLabel(e));
+				assertEquals(reordering.getNewNode(g.getEdgeNode1(e)),r.getEdgeNode1(e));
+				assertEquals(reordering.getNewNode(g.getEdgeNode2(e)),r.getEdgeNode2(e));
+			}
+		}
+		
+		// highest degree first
+		NodeReordering degree = reorderings.get(2);
+		for(int n = 1; n < g.getNumberOfNodes(); n++) {
+			int previous = g.getNodeDegree(degree.getOriginalNode(n-1));
+			int current = g.getNodeDegree(degree.getOriginalNode(n));
+			assertTrue(previous >= current);
+			if(previous == current) {
+				assertTrue(degree.getOriginalNode(n-1) < degree.getOriginalNode(n));
+			}
+		}
+		
+		// a path numbered at random is renumbered with neighbours next to each other
+		int[] scramble = new int[100];
+		for(int i = 0; i < scramble.length; i++) {
+			scramble[i] = (i*37)%100;
+		}
+		List<NodeStructure> nodes = new ArrayList<>();
+		List<EdgeStructure> edges = new ArrayList<>();
+		for(int i = 0; i < 100; i++) {
+			nodes.add(new NodeStructure(i, "n"+i, 0, (byte)0, (byte)0));
+		}
+		for(int i = 0; i < 99; i++) {
+			edges.add(new EdgeStructure(i, "e"+i, 0, (byte)0, (byte)0, scramble[i], scramble[i+1]));
+		}
+		FastGraph path = FastGraph.structureFactory("path", (byte)0, nodes, edges, false);
+		for(NodeReordering reordering : Arrays.asList(NodeReordering.breadthFirst(path), NodeReordering.reverseCuthillMcKee(path))) {
+			FastGraph r = path.generateReorderedGraph(reordering);
+			int bandwidth = 0;
+			for(int e = 0; e < r.getNumberOfEdges(); e++) {
+				bandwidth = Math.max(bandwidth, Math.abs(r.getEdgeNode1(e)-r.getEdgeNode2(e)));
+			}
+			assertTrue(bandwidth <= 2);
+		}
+		FastGraph rcm = path.generateReorderedGraph(NodeReordering.reverseCuthillMcKee(path));
+		for(int e = 0; e < rcm.getNumberOfEdges(); e++) {
+			assertEquals(1, Math.abs(rcm.getEdgeNode1(e)-rcm.getEdgeNode2(e)));
+		}
+		
+		// saved beside the graph and loaded back
+		NodeReordering bfs = reorderings.get(0);
+		bfs.save(null, "testReordering");
+		NodeReordering loaded = NodeReordering.load(null, "testReordering");
+		assertArrayEquals(bfs.getOrder(),loaded.getOrder());
+		assertArrayEquals(new int[] {bfs.getOriginalNode(7),bfs.getOriginalNode(3)},loaded.toOriginalNodes(new int[] {7,3}));
+		assertArrayEquals(new int[] {7,3},loaded.toNewNodes(loaded.toOriginalNodes(new int[] {7,3})));
+		
+		try {
+			new NodeReordering(new int[] {0,2,2});
+			fail("not a permutation accepted");
+		} catch(FastGraphException e) {
+		}
+		try {
+			g.generateReorderedGraph(new NodeReordering(new int[] {1,0}));
+			fail("wrong size accepted");
+		} catch(FastGraphException e) {
+		}
+	}
+
+
+	@Test
+	public void test209() throws Exception {
+		FastGraph g = FastGraph.randomGraphFactory(50, 200, 12L, false, true);
+		FastGraph heap = FastGraph.randomGraphFactory(50, 200, 12L, false, false);
+		int[] nodes = {0,1,2,3,4,5,6,7,8,9};
+		ArrayList<Integer> subEdges = new ArrayList<>();
+		for(int e = 0; e < g.getNumberOfEdges(); e++) {
+			if(g.getEdgeNode1(e) < 10 && g.getEdgeNode2(e) < 10) {
+				subEdges.add(e);
+			}
+		}
+		int[] edges = subEdges.stream().mapToInt(Integer::intValue).toArray();
+		FastGraph expected = heap.generateGraphFromSubgraph(nodes, edges);
+		
+		assertNull(BufferArena.current());
+		long allocated;
+		try(BufferArena arena = BufferArena.open()) {
+			assertSame(arena,BufferArena.current());
+			FastGraph sub = g.generateGraphFromSubgraph(nodes, edges);
+			assertTrue(sub.checkConsistency());
+			assertTrue(arena.getAllocatedBytes() > 0);
+			assertEquals(1,arena.getNumberOfSlabs());
+			assertTrue(sub.getSegmentedNodeBuf().isDirect());
+			assertEquals(expected.getNumberOfEdges(),sub.getNumberOfEdges());
+			for(int n = 0; n < sub.getNumberOfNodes(); n++) {
+				assertEquals(expected.getNodeLabel(n),sub.getNodeLabel(n));
+				assertArrayEquals(expected.getNodeConnectingEdges(n),sub.getNodeConnectingEdges(n));
+			}
+			// added buffers of a graph made in the arena come from it
+			allocated = arena.getAllocatedBytes();
+			sub.buildLabelDictionaries();
+			assertTrue(arena.getAllocatedBytes() > allocated);
+			// but not those of a graph made outside it
+			allocated = arena.getAllocatedBytes();
+			g.buildLabelDictionaries();
+			g.compressConnections();
+			assertEquals(allocated,arena.getAllocatedBytes());
+			
+			try(BufferArena inner = BufferArena.open()) {
+				assertSame(inner,BufferArena.current());
+				FastGraph innerSub = sub.generateGraphFromSubgraph(new int[] {0,1}, new int[0]);
+				assertEquals(2,innerSub.getNumberOfNodes());
+				assertTrue(inner.getAllocatedBytes() > 0);
+				assertEquals(allocated,arena.getAllocatedBytes());
+			}
+			assertSame(arena,BufferArena.current());
+		}
+		assertNull(BufferArena.current());
+		assertTrue(BufferArena.getNumberOfPooledSlabs() > 0);
+		assertTrue(g.checkConsistency());
+		assertEquals(heap.getNodeLabel(3),g.getNodeLabel(3));
+		
+		// slabs are reused, and cleared before reuse
+		int pooled = BufferArena.getNumberOfPooledSlabs();
+		try(BufferArena arena = BufferArena.open()) {
+			SegmentedBuffer buf = SegmentedBuffer.allocateDirect(1000);
+			assertEquals(pooled-1,BufferArena.getNumberOfPooledSlabs());
+			for(int i = 0; i < 1000; i++) {
+				buf.put(i, (byte)7);
+			}
+			assertEquals(1000,arena.getAllocatedBytes());
+		}
+		try(BufferArena arena = BufferArena.open()) {
+			SegmentedBuffer buf = SegmentedBuffer.allocateDirect(1000);
+			for(int i = 0; i < 1000; i++) {
+				assertEquals(0,buf.get(i));
+			}
+			// on heap and large stores are not carved from the arena
+			SegmentedBuffer.allocate(1000, false);
+			SegmentedBuffer.allocateDirect(BufferArena.MAX_ARENA_ALLOCATION+1);
+			assertEquals(1000,arena.getAllocatedBytes());
+		}
+	}
+
+
+	@Test
+	public void test210() throws Exception {
+		String[] nodeLabels = {"a","b","c",""};
+		List<NodeStructure> nodes = new ArrayList<>();
+		List<EdgeStructure> edges = new ArrayList<>();
+		for(int i = 0; i < 60; i++) {
+			nodes.add(new NodeStructure(i, nodeLabels[i%4], 0, (byte)0, (byte)0));
+		}
+		Random r = new Random(3);
+		for(int i = 0; i < 150; i++) {
+			edges.add(new EdgeStructure(i, (i%3 == 0) ? "x" : "y", 0, (byte)0, (byte)0, r.nextInt(60), r.nextInt(60)));
+		}
+		FastGraph g = FastGraph.structureFactory("labelIndex", (byte)0, nodes, edges, false);
+		
+		List<Integer> expectedA = new ArrayList<>();
+		for(int i = 0; i < 60; i += 4) {
+			expectedA.add(i);
+		}
+		assertEquals(expectedA,toList(g.nodesWithLabel("a")));
+		assertEquals(15,g.nodesWithLabel("").length);
+		assertEquals(0,g.nodesWithLabel("d").length);
+		assertEquals(0,g.nodesWithLabel("x").length);
+		int[] x = g.edgesWithLabel("x");
+		assertEquals(50,x.length);
+		for(int i = 0; i < x.length; i++) {
+			assertEquals(i*3,x[i]);
+		}
+		assertEquals(100,g.edgesWithLabel("y").length);
+		assertEquals(4,g.getNodeLabelIndex().getNumberOfLabels());
+		assertEquals(60,g.getNodeLabelIndex().getNumberOfElements());
+		assertEquals(15,g.getNodeLabelIndex().count(g.getNodeLabelDictionary().getId("b")));
+		
+		// saved with the graph, and mapped or read back
+		g.saveContainer(null,"testLabelIndex",false);
+		FastGraph mapped = FastGraph.loadContainerGraphFactory(null,"testLabelIndex",true);
+		FastGraph read = FastGraph.loadContainerGraphFactory(null,"testLabelIndex",false);
+		for(String label : nodeLabels) {
+			assertArrayEquals(g.nodesWithLabel(label),mapped.nodesWithLabel(label));
+			assertArrayEquals(g.nodesWithLabel(label),read.nodesWithLabel(label));
+		}
+		assertArrayEquals(x,mapped.edgesWithLabel("x"));
+		assertArrayEquals(x,read.edgesWithLabel("x"));
+		assertTrue(mapped.getNodeLabelIndex().getBuffer().isDirect());
+		
+		// discarded when labels change
+		String[] newLabels = new String[60];
+		Arrays.fill(newLabels, "z");
+		newLabels[7] = "a";
+		read.setAllNodeLabels(newLabels);
+		assertEquals(Arrays.asList(7),toList(read.nodesWithLabel("a")));
+		assertEquals(59,read.nodesWithLabel("z").length);
+		assertEquals(0,read.nodesWithLabel("b").length);
+		assertArrayEquals(x,read.edgesWithLabel("x"));
+		
+		// subgraph isomorphism finds the same mappings from the indexed candidates as from a full scan
+		List<NodeStructure> patternNodes = new ArrayList<>();
+		patternNodes.add(new NodeStructure(0, "a", 0, (byte)0, (byte)0));
+		patternNodes.add(new NodeStructure(1, "", 0, (byte)0, (byte)0));
+		patternNodes.add(new NodeStructure(2, "b", 0, (byte)0, (byte)0));
+		List<EdgeStructure> patternEdges = new ArrayList<>();
+		patternEdges.add(new EdgeStructure(0, "", 0, (byte)0, (byte)0, 0, 1));
+		patternEdges.add(new EdgeStructure(1, "", 0, (byte)0, (byte)0, 1, 2));
+		FastGraph pattern = FastGraph.structureFactory("pattern", (byte)0, patternNodes, patternEdges, false);
+		ExactSubgraphIsomorphism indexed = new ExactSubgraphIsomorphism(g, pattern, new SimpleNodeLabelComparator(g, pattern), null);
+		ExactSubgraphIsomorphism scanned = new ExactSubgraphIsomorphism(g, pattern, new SimpleNodeLabelComparator(g, pattern) {}, null);
+		assertEquals(scanned.subgraphIsomorphismFinder(),indexed.subgraphIsomorphismFinder());
+		assertTrue(indexed.getFoundMappings().size() > 0);
+		assertEquals(scanned.getFoundMappings().size(),indexed.getFoundMappings().size());
+	}
+
+
+	@Test
+	public void test211() throws Exception {
+		WeisfeilerLehmanHasher wl = new WeisfeilerLehmanHasher();
+		WeisfeilerLehmanHasher directedWl = new WeisfeilerLehmanHasher(true, false);
+		EigenvalueHasher eigenvalue = new EigenvalueHasher();
+		for(long seed = 0; seed < 20; seed++) {
+			FastGraph g1 = FastGraph.randomGraphFactory(12, 20, seed, false);
+			FastGraph g2 = ExactIsomorphism.generateRandomIsomorphicGraph(g1, seed+100, false);
+			assertEquals(wl.hash(g1),wl.hash(g2));
+			assertArrayEquals(wl.hash128(SubgraphView.whole(g1)),wl.hash128(SubgraphView.whole(g2)));
+			assertEquals(directedWl.hash(g1),directedWl.hash(g2));
+			assertEquals(eigenvalue.hash(g1),eigenvalue.hash(g2));
+			assertEquals(wl.hash(g1),wl.hash128(SubgraphView.whole(g1))[0]);
+		}
+		
+		List<NodeStructure> nodes = new ArrayList<>();
+		for(int i = 0; i < 5; i++) {
+			nodes.add(new NodeStructure(i, "", 0, (byte)0, (byte)0));
+		}
+		List<EdgeStructure> starEdges = new ArrayList<>();
+		List<EdgeStructure> squareEdges = new ArrayList<>();
+		for(int i = 0; i < 4; i++) {
+			starEdges.add(new EdgeStructure(i, "", 0, (byte)0, (byte)0, 0, i+1));
+			squareEdges.add(new EdgeStructure(i, "", 0, (byte)0, (byte)0, i, (i+1)%4));
+		}
+		FastGraph star = FastGraph.structureFactory("star", (byte)0, nodes, starEdges, false);
+		FastGraph square = FastGraph.structureFactory("square", (byte)0, nodes, squareEdges, false);
+		assertNotEquals(wl.hash(star),wl.hash(square));
+		assertNotEquals(eigenvalue.hash(star),eigenvalue.hash(square));
+		
+		// reversing an edge only matters to the directed hash
+		List<EdgeStructure> reversed = new ArrayList<>(starEdges);
+		reversed.set(0, new EdgeStructure(0, "", 0, (byte)0, (byte)0, 1, 0));
+		FastGraph star2 = FastGraph.structureFactory("star2", (byte)0, nodes, reversed, false);
+		assertEquals(wl.hash(star),wl.hash(star2));
+		assertNotEquals(directedWl.hash(star),directedWl.hash(star2));
+		
+		assertEquals("000000000000001f",InvariantHasher.toKey(31));
+		assertEquals(16,InvariantHasher.toKey(wl.hash(star)).length());
+	}
+
+
+	@Rule
+	public ExpectedException thrown212 = ExpectedException.none();
+	@Test
+	public void test212() throws Exception {
+		// edge 1 is missing, it must not be read as a self sourcing edge on node 0
+		String gap = "{\"name\": \"gap\", \"nodes\": [{\"nodeIndex\": 0, \"nodeLabel\": \"a\", \"nodeWeight\": 0, \"nodeType\": 0, \"nodeAge\": 0},"
+				+ " {\"nodeIndex\": 1, \"nodeLabel\": \"b\", \"nodeWeight\": 0, \"nodeType\": 0, \"nodeAge\": 0}],"
+				+ " \"edges\": [{\"edgeIndex\": 0, \"node1\": 0, \"node2\": 1, \"edgeLabel\": \"x\", \"edgeWeight\": 0, \"edgeType\": 0, \"edgeAge\": 0},"
+				+ " {\"edgeIndex\": 2, \"node1\": 1, \"node2\": 0, \"edgeLabel\": \"y\", \"edgeWeight\": 0, \"edgeType\": 0, \"edgeAge\": 0}]}";
+		thrown212.expect(IOException.class);
+		thrown212.expectMessage("edgeIndex 1");
+		JsonGraphStream.read(new ByteArrayInputStream(gap.getBytes("UTF-8")),false);
+	}
+
+
+	@Rule
+	public ExpectedException thrown213 = ExpectedException.none();
+	@Test
+	public void test213() throws Exception {
+		String gap = "{\"name\": \"gap\", \"nodes\": [{\"nodeIndex\": 0, \"nodeLabel\": \"a\", \"nodeWeight\": 0, \"nodeType\": 0, \"nodeAge\": 0},"
+				+ " {\"nodeIndex\": 2, \"nodeLabel\": \"c\", \"nodeWeight\": 0, \"nodeType\": 0, \"nodeAge\": 0}], \"edges\": []}";
+		thrown213.expect(IOException.class);
+		thrown213.expectMessage("nodeIndex 1");
+		JsonGraphStream.read(new ByteArrayInputStream(gap.getBytes("UTF-8")),false);
+	}
+
+
+	@Rule
+	public ExpectedException thrown214 = ExpectedException.none();
+	@Test
+	public void test214() throws Exception {
+		String repeated = "{\"name\": \"repeated\", \"nodes\": [{\"nodeIndex\": 0, \"nodeLabel\": \"a\", \"nodeWeight\": 0, \"nodeType\": 0, \"nodeAge\": 0},"
+				+ " {\"nodeIndex\": 0, \"nodeLabel\": \"b\", \"nodeWeight\": 0, \"nodeType\": 0, \"nodeAge\": 0}], \"edges\": []}";
+		thrown214.expect(IOException.class);
+		thrown214.expectMessage("Repeated nodeIndex 0");
+		JsonGraphStream.read(new ByteArrayInputStream(repeated.getBytes("UTF-8")),false);
+	}
+
+
+	@Rule
+	public ExpectedException thrown215 = ExpectedException.none();
+	@Test
+	public void test215() throws Exception {
+		String repeated = "{\"name\": \"repeated\", \"nodes\": [{\"nodeIndex\": 0, \"nodeLabel\": \"a\", \"nodeWeight\": 0, \"nodeType\": 0, \"nodeAge\": 0},"
+				+ " {\"nodeIndex\": 1, \"nodeLabel\": \"b\", \"nodeWeight\": 0, \"nodeType\": 0, \"nodeAge\": 0}],"
+				+ " \"edges\": [{\"edgeIndex\": 0, \"node1\": 0, \"node2\": 1, \"edgeLabel\": \"x\", \"edgeWeight\": 0, \"edgeType\": 0, \"edgeAge\": 0},"
+				+ " {\"edgeIndex\": 0, \"node1\": 1, \"node2\": 0, \"edgeLabel\": \"y\", \"edgeWeight\": 0, \"edgeType\": 0, \"edgeAge\": 0}]}";
+		thrown215.expect(IOException.class);
+		thrown215.expectMessage("Repeated edgeIndex 0");
+		JsonGraphStream.read(new ByteArrayInputStream(repeated.getBytes("UTF-8")),false);
+	}
+
+
+	@Test
+	public void test216() throws Exception {
+		FastGraph g = FastGraph.randomGraphFactory(30, 60, 6L, false, false);
+		
+		// saving does not build the label dictionaries or indexes
+		g.saveContainer(null,"testContainerNoLabels",false);
+		assertFalse(g.hasLabelDictionaries());
+		assertFalse(g.hasLabelIndexes());
+		FastGraph g2 = FastGraph.loadContainerGraphFactory(null,"testContainerNoLabels",false);
+		assertFalse(g2.hasLabelDictionaries());
+		assertEquals(g.getNodeLabel(5),g2.getNodeLabel(5));
+		assertArrayEquals(g.nodesWithLabel(g.getNodeLabel(5)),g2.nodesWithLabel(g.getNodeLabel(5)));
+		
+		// dictionaries without indexes
+		assertTrue(g.hasLabelDictionaries());
+		FastGraph g3 = FastGraph.randomGraphFactory(30, 60, 6L, false, false);
+		g3.buildLabelDictionaries();
+		g3.saveContainer(null,"testContainerNoLabels",true);
+		assertFalse(g3.hasLabelIndexes());
+		FastGraph g4 = FastGraph.loadContainerGraphFactory(null,"testContainerNoLabels",true);
+		assertTrue(g4.hasLabelDictionaries());
+		assertFalse(g4.hasLabelIndexes());
+		assertArrayEquals(g.nodesWithLabel(g.getNodeLabel(5)),g4.nodesWithLabel(g.getNodeLabel(5)));
+		
+		// both, once the edge index is built as well as the node index
+		assertFalse(g.hasLabelIndexes());
+		int[] edges = g.edgesWithLabel(g.getEdgeLabel(7));
+		assertTrue(g.hasLabelIndexes());
+		g.saveContainer(null,"testContainerNoLabels",false);
+		FastGraph g5 = FastGraph.loadContainerGraphFactory(null,"testContainerNoLabels",false);
+		assertTrue(g5.hasLabelIndexes());
+		assertArrayEquals(edges,g5.edgesWithLabel(g.getEdgeLabel(7)));
+	}
+
+
+	@Test
+	public void test217() throws Exception {
+		// a non empty directory where the file should go, so the final move fails
+		String fileName = Launcher.startingWorkingDirectory+File.separatorChar+"data"+File.separatorChar+"testContainerBlocked"+File.separatorChar+"testContainerBlocked"+GraphContainer.EXTENSION;
+		File blocking = new File(fileName,"blocking");
+		blocking.getParentFile().mkdirs();
+		blocking.createNewFile();
+		
+		FastGraph g = FastGraph.randomGraphFactory(10, 20, 7L, false, false);
+		try {
+			g.saveContainer(null,"testContainerBlocked",false);
+			fail("Expected the move over a directory to fail");
+		} catch(IOException e) {
+			assertFalse(new File(fileName+".tmp").exists());
+		}
+		assertTrue(blocking.exists());
+	}
+
+
+	@Test
+	public void test218() throws Exception {
+		// absolute bulk put, regions at different offsets in each store
+		SegmentedBuffer src = SegmentedBuffer.allocate(12);
+		for(int i = 0; i < 12; i++) {
+			src.put(i,(byte)(i+1));
+		}
+		src.position(5);
+		SegmentedBuffer dst = SegmentedBuffer.allocateDirect(10);
+		dst.put(2,src,4,6);
+		assertEquals(0,dst.get(1));
+		assertEquals(5,dst.get(2));
+		assertEquals(10,dst.get(7));
+		assertEquals(0,dst.get(8));
+		assertEquals(5,src.position());
+		assertEquals(0,dst.position());
+		try {
+			dst.put(5,src,0,6);
+			fail("Expected the copy past the end of dst to fail");
+		} catch(IndexOutOfBoundsException e) {
+			assertEquals(0,dst.get(9));
+		}
+		
+		// the generate paths copy with it
+		FastGraph g = FastGraph.randomGraphFactory(20, 40, 3L, false, false);
+		FastGraph g2 = g.generateGraphByDeletingEdge(7);
+		assertEquals(39,g2.getNumberOfEdges());
+		assertEquals(g.getEdgeLabel(6),g2.getEdgeLabel(6));
+		assertEquals(g.getEdgeLabel(8),g2.getEdgeLabel(7));
+		assertEquals(g.getEdgeNode1(39),g2.getEdgeNode1(38));
+		assertTrue(g2.checkConsistency());
+		
+		FastGraph g3 = g2.generateGraphByAddingNode(new NodeStructure(20,"new", 1, (byte)0, (byte)0));
+		FastGraph g4 = g3.generateGraphByDeletingSingletonNode(20);
+		assertEquals(20,g4.getNumberOfNodes());
+		assertEquals(g.getNodeLabel(19),g4.getNodeLabel(19));
+		assertTrue(g4.checkConsistency());
+	}
+
+
+	@Test
+	public void test219() throws Exception {
+		// connection lists beyond 4GB, in a sparse file that is mapped, so the connection starts need more than 32 bits
+		FastGraph g = FastGraph.jsonStringGraphFactory(TestRunner.get4Node5Edge(),false);
+		g.saveBuffers(null,"testLongOffsets");
+		String base = Launcher.startingWorkingDirectory+File.separatorChar+"data"+File.separatorChar+"testLongOffsets"+File.separatorChar+"testLongOffsets";
+		long shift = 5L*1024*1024*1024;
+		SegmentedBuffer nodes = g.getSegmentedNodeBuf().copy();
+		for(int n = 0; n < g.getNumberOfNodes(); n++) {
+			long inOffset = FastGraph.NODE_IN_CONNECTION_START_OFFSET+(long)n*FastGraph.NODE_BYTE_SIZE;
+			long outOffset = FastGraph.NODE_OUT_CONNECTION_START_OFFSET+(long)n*FastGraph.NODE_BYTE_SIZE;
+			nodes.putLong(inOffset,nodes.getLong(inOffset)+shift);
+			nodes.putLong(outOffset,nodes.getLong(outOffset)+shift);
+		}
+		RandomAccessFile nodeFile = new RandomAccessFile(base+".nodeBuf","rw");
+		try {
+			nodes.writeTo(nodeFile.getChannel(),0);
+		} finally {
+			nodeFile.close();
+		}
+		RandomAccessFile connectionFile = new RandomAccessFile(base+".connectionBuf","rw");
+		try {
+			connectionFile.setLength(shift+g.getSegmentedConnectionBuf().capacity());
+			g.getSegmentedConnectionBuf().writeTo(connectionFile.getChannel(),shift);
+		} finally {
+			connectionFile.close();
+		}
+		
+		FastGraph g2 = FastGraph.loadBuffersGraphFactory(null,"testLongOffsets",true);
+		assertEquals(shift,g2.getSegmentedNodeBuf().getLong(FastGraph.NODE_IN_CONNECTION_START_OFFSET));
+		assertEquals(shift+g.getSegmentedConnectionBuf().capacity(),g2.getSegmentedConnectionBuf().capacity());
+		for(int n = 0; n < g.getNumberOfNodes(); n++) {
+			assertArrayEquals(g.getNodeConnectingInEdges(n),g2.getNodeConnectingInEdges(n));
+			assertArrayEquals(g.getNodeConnectingOutNodes(n),g2.getNodeConnectingOutNodes(n));
+		}
+		new File(base+".connectionBuf").delete();
+	}
+
+
+	@Test
+	public void test220() throws Exception {
+		// buffers saved with 32 bit label and connection offsets are converted when loaded
+		FastGraph g = FastGraph.randomGraphFactory(30, 60, 11L, false, false);
+		g.saveBuffers(null,"testIntOffsets");
+		String base = Launcher.startingWorkingDirectory+File.separatorChar+"data"+File.separatorChar+"testIntOffsets"+File.separatorChar+"testIntOffsets";
+		SegmentedBuffer newNodes = g.getSegmentedNodeBuf();
+		SegmentedBuffer nodes = SegmentedBuffer.allocate(30L*28); // the 28 byte node records of the old layout
+		for(int n = 0; n < 30; n++) {
+			long from = (long)n*FastGraph.NODE_BYTE_SIZE;
+			long to = (long)n*28;
+			nodes.putInt(to,(int)newNodes.getLong(FastGraph.NODE_LABEL_START_OFFSET+from));
+			nodes.putShort(to+4,newNodes.getShort(FastGraph.NODE_LABEL_LENGTH_OFFSET+from));
+			nodes.putInt(to+6,(int)newNodes.getLong(FastGraph.NODE_IN_CONNECTION_START_OFFSET+from));
+			nodes.putInt(to+10,newNodes.getInt(FastGraph.NODE_IN_DEGREE_OFFSET+from));
+			nodes.putInt(to+14,(int)newNodes.getLong(FastGraph.NODE_OUT_CONNECTION_START_OFFSET+from));
+			nodes.putInt(to+18,newNodes.getInt(FastGraph.NODE_OUT_DEGREE_OFFSET+from));
+			nodes.putInt(to+22,newNodes.getInt(FastGraph.NODE_WEIGHT_OFFSET+from));
+			nodes.put(to+26,newNodes.get(FastGraph.NODE_TYPE_OFFSET+from));
+			nodes.put(to+27,newNodes.get(FastGraph.NODE_AGE_OFFSET+from));
+		}
+		// an offset above 2GB, which must be read as unsigned
+		nodes.putInt(28*29+6,0xFFFFFFF8);
+		SegmentedBuffer newEdges = g.getSegmentedEdgeBuf();
+		SegmentedBuffer edges = SegmentedBuffer.allocate(60L*20); // the 20 byte edge records of the old layout
+		for(int e = 0; e < 60; e++) {
+			long from = (long)e*FastGraph.EDGE_BYTE_SIZE;
+			long to = (long)e*20;
+			edges.putInt(to,newEdges.getInt(FastGraph.EDGE_NODE1_OFFSET+from));
+			edges.putInt(to+4,newEdges.getInt(FastGraph.EDGE_NODE2_OFFSET+from));
+			edges.putInt(to+8,(int)newEdges.getLong(FastGraph.EDGE_LABEL_START_OFFSET+from));
+			edges.putShort(to+12,newEdges.getShort(FastGraph.EDGE_LABEL_LENGTH_OFFSET+from));
+			edges.putInt(to+14,newEdges.getInt(FastGraph.EDGE_WEIGHT_OFFSET+from));
+			edges.put(to+18,newEdges.get(FastGraph.EDGE_TYPE_OFFSET+from));
+			edges.put(to+19,newEdges.get(FastGraph.EDGE_AGE_OFFSET+from));
+		}
+		new File(base+".nodeBuf").delete();
+		new File(base+".edgeBuf").delete();
+		RandomAccessFile nodeFile = new RandomAccessFile(base+".nodeBuf","rw");
+		RandomAccessFile edgeFile = new RandomAccessFile(base+".edgeBuf","rw");
+		try {
+			nodes.writeTo(nodeFile.getChannel(),0);
+			edges.writeTo(edgeFile.getChannel(),0);
+		} finally {
+			nodeFile.close();
+			edgeFile.close();
+		}
+		// older info files end before the longOffsets line
+		File info = new File(base+".info");
+		List<String> lines = Files.readAllLines(info.toPath());
+		assertEquals("longOffsets~true",lines.get(lines.size()-1));
+		Files.write(info.toPath(),lines.subList(0,lines.size()-1));
+		
+		FastGraph g2 = FastGraph.loadBuffersGraphFactory(null,"testIntOffsets",false);
+		FastGraph g3 = FastGraph.loadBuffersGraphFactory(null,"testIntOffsets",true);
+		assertEquals(0xFFFFFFF8L,g2.getSegmentedNodeBuf().getLong(FastGraph.NODE_IN_CONNECTION_START_OFFSET+29L*FastGraph.NODE_BYTE_SIZE));
+		assertEquals(0xFFFFFFF8L,g3.getSegmentedNodeBuf().getLong(FastGraph.NODE_IN_CONNECTION_START_OFFSET+29L*FastGraph.NODE_BYTE_SIZE));
+		for(int n = 0; n < 29; n++) {
+			assertEquals(g.getNodeLabel(n),g2.getNodeLabel(n));
+			assertEquals(g.getNodeWeight(n),g3.getNodeWeight(n));
+			assertArrayEquals(g.getNodeConnectingEdges(n),g2.getNodeConnectingEdges(n));
+			assertArrayEquals(g.getNodeConnectingEdges(n),g3.getNodeConnectingEdges(n));
+		}
+		for(int e = 0; e < 60; e++) {
+			assertEquals(g.getEdgeLabel(e),g2.getEdgeLabel(e));
+			assertEquals(g.getEdgeNode2(e),g3.getEdgeNode2(e));
+			assertEquals(g.getEdgeAge(e),g3.getEdgeAge(e));
+		}
+		assertEquals(g.getRandomSeed(0),g2.getRandomSeed(0));
+	}
+
+
+	@Test
+	public void test221() throws Exception {
+		// simple random graphs, the same for any number of threads, with no self sourcing or parallel edges
+		FastGraph g1 = new ParallelGraphGenerator(1).randomGraph(1000, 150000, 3L, true, false);
+		FastGraph g4 = new ParallelGraphGenerator(4).randomGraph(1000, 150000, 3L, true, false);
+		assertTrue(g4.checkConsistency());
+		assertEquals(150000,g4.getNumberOfEdges());
+		HashSet<Long> pairs = new HashSet<>();
+		for(int e = 0; e < g4.getNumberOfEdges(); e++) {
+			assertEquals(g1.getEdgeNode1(e),g4.getEdgeNode1(e));
+			assertEquals(g1.getEdgeNode2(e),g4.getEdgeNode2(e));
+			int n1 = g4.getEdgeNode1(e);
+			int n2 = g4.getEdgeNode2(e);
+			assertNotEquals(n1,n2);
+			assertTrue(pairs.add((long)Math.min(n1,n2)*1000+Math.max(n1,n2)));
+		}
+		
+		// nearly complete, so many rounds of redrawing
+		FastGraph dense = new ParallelGraphGenerator(3).randomGraph(60, 1760, 8L, true, false);
+		assertTrue(dense.checkConsistency());
+		pairs.clear();
+		for(int e = 0; e < dense.getNumberOfEdges(); e++) {
+			int n1 = dense.getEdgeNode1(e);
+			int n2 = dense.getEdgeNode2(e);
+			assertNotEquals(n1,n2);
+			assertTrue(pairs.add((long)Math.min(n1,n2)*60+Math.max(n1,n2)));
+		}
+		assertEquals(1770,new ParallelGraphGenerator(2).randomGraph(60, 1770, 8L, true, false).getNumberOfEdges());
+		
+		// the non simple graph is unchanged by the option
+		FastGraph multi = new ParallelGraphGenerator(2).randomGraph(1000, 150000, 3L, false, false);
+		FastGraph old = new ParallelGraphGenerator(2).randomGraph(1000, 150000, 3L, false);
+		for(int e = 0; e < multi.getNumberOfEdges(); e++) {
+			assertEquals(old.getEdgeNode2(e),multi.getEdgeNode2(e));
+		}
+		
+		try {
+			new ParallelGraphGenerator(2).randomGraph(60, 1771, 8L, true, false);
+			fail();
+		} catch(FastGraphException e) {
+		}
+	}
+
+
+	@Test
+	public void test222() throws Exception {
+		// components keep the breadth first node order of the earlier search and rebuild
+		for(long seed = 0; seed < 5; seed++) {
+			FastGraph g = FastGraph.randomGraphFactory(120, 100, seed, false, false);
+			ArrayList<FastGraph> broken = g.breakIntoConnectedComponents();
+			ArrayList<FastGraph> expected = searchAndRebuildComponents(g);
+			assertEquals(expected.size(),broken.size());
+			for(int c = 0; c < broken.size(); c++) {
+				FastGraph component = broken.get(c);
+				FastGraph expectedComponent = expected.get(c);
+				assertTrue(component.checkConsistency());
+				assertEquals(expectedComponent.getNumberOfNodes(),component.getNumberOfNodes());
+				assertEquals(expectedComponent.getNumberOfEdges(),component.getNumberOfEdges());
+				for(int n = 0; n < component.getNumberOfNodes(); n++) {
+					assertEquals(expectedComponent.getNodeLabel(n),component.getNodeLabel(n));
+				}
+				for(int e = 0; e < component.getNumberOfEdges(); e++) {
+					assertEquals(expectedComponent.getEdgeLabel(e),component.getEdgeLabel(e));
+					assertEquals(expectedComponent.getEdgeNode1(e),component.getEdgeNode1(e));
+					assertEquals(expectedComponent.getEdgeNode2(e),component.getEdgeNode2(e));
+				}
+			}
+		}
+		
+		// a path 0-3-1 and a path 2-5-4, so breadth first order is not node order
+		LinkedList<NodeStructure> addNodes = new LinkedList<NodeStructure>();
+		for(int n = 0; n < 6; n++) {
+			addNodes.add(new NodeStructure(n,"ns"+n, 1, (byte)0, (byte)0));
+		}
+		LinkedList<EdgeStructure> addEdges = new LinkedList<EdgeStructure>();
+		addEdges.add(new EdgeStructure(0,"es0", 1, (byte)0, (byte)0, 3, 1));
+		addEdges.add(new EdgeStructure(1,"es1", 1, (byte)0, (byte)0, 0, 3));
+		addEdges.add(new EdgeStructure(2,"es2", 1, (byte)0, (byte)0, 5, 4));
+		addEdges.add(new EdgeStructure(3,"es3", 1, (byte)0, (byte)0, 2, 5));
+		FastGraph g = FastGraph.structureFactory("paths",(byte)0,addNodes,addEdges,false);
+		ArrayList<FastGraph> broken = g.breakIntoConnectedComponents();
+		assertEquals(2,broken.size());
+		assertEquals("ns0",broken.get(0).getNodeLabel(0));
+		assertEquals("ns3",broken.get(0).getNodeLabel(1));
+		assertEquals("ns1",broken.get(0).getNodeLabel(2));
+		assertEquals("es0",broken.get(0).getEdgeLabel(0));
+		assertEquals(1,broken.get(0).getEdgeNode1(0));
+		assertEquals(2,broken.get(0).getEdgeNode2(0));
+		assertEquals("ns2",broken.get(1).getNodeLabel(0));
+		assertEquals("ns5",broken.get(1).getNodeLabel(1));
+		assertEquals("ns4",broken.get(1).getNodeLabel(2));
+		assertEquals(1,broken.get(1).getEdgeNode1(0));
+		assertEquals(2,broken.get(1).getEdgeNode2(0));
+	}
+	
+	
+	/**
+	 * Components found by repeatedly searching from the first node and rebuilding the rest of the graph,
+	 * as breakIntoConnectedComponents did before ConnectedComponents.
+	 * 
+	 * @param g the graph to break
+	 * @return the components
+	 */
+	private static ArrayList<FastGraph> searchAndRebuildComponents(FastGraph g) {
+		ArrayList<FastGraph> ret = new ArrayList<>();
+		Connected c = new Connected();
+		int i = 0;
+		while(g.getNumberOfNodes() > 0) {
+			c.connected(g);
+			LinkedList<Integer> connectedNodes = c.getVisitedNodes();
+			HashMap<Integer,Integer> nodeMapping = new HashMap<>();
+			ArrayList<NodeStructure> nsList = new ArrayList<>();
+			for(Integer n : connectedNodes) {
+				NodeStructure ns = g.generateNodeStructure(n);
+				ns.setId(nodeMapping.size());
+				nodeMapping.put(n, nsList.size());
+				nsList.add(ns);
+			}
+			ArrayList<EdgeStructure> esList = new ArrayList<>();
+			for(int e = 0; e < g.getNumberOfEdges(); e++) {
+				if(nodeMapping.containsKey(g.getEdgeNode1(e))) {
+					EdgeStructure es = g.generateEdgeStructure(e);
+					es.setNode1(nodeMapping.get(es.getNode1()));
+					es.setNode2(nodeMapping.get(es.getNode2()));
+					esList.add(es);
+				}
+			}
+			ret.add(FastGraph.structureFactory(g.getName()+"-"+i,g.getGeneration(),nsList,esList,g.getDirect()));
+			
+			HashMap<Integer,Integer> restMapping = new HashMap<>();
+			ArrayList<NodeStructure> restNodes = new ArrayList<>();
+			for(int n = 0; n < g.getNumberOfNodes(); n++) {
+				if(!nodeMapping.containsKey(n)) {
+					NodeStructure ns = g.generateNodeStructure(n);
+					ns.setId(restNodes.size());
+					restMapping.put(n, restNodes.size());
+					restNodes.add(ns);
+				}
+			}
+			ArrayList<EdgeStructure> restEdges = new ArrayList<>();
+			for(int e = 0; e < g.getNumberOfEdges(); e++) {
+				if(!nodeMapping.containsKey(g.getEdgeNode1(e))) {
+					EdgeStructure es = g.generateEdgeStructure(e);
+					es.setNode1(restMapping.get(es.getNode1()));
+					es.setNode2(restMapping.get(es.getNode2()));
+					restEdges.add(es);
+				}
+			}
+			g = FastGraph.structureFactory(g.getName(),g.getGeneration(),restNodes,restEdges,g.getDirect());
+			i++;
+		}
+		return ret;
+	}
 }
\ No newline at end of file
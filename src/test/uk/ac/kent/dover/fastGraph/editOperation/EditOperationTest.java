@@ -3,9 +3,12 @@ package test.uk.ac.kent.dover.fastGraph.editOperation;
 import static org.junit.Assert.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 
 import uk.ac.kent.dover.fastGraph.*;
 import uk.ac.kent.dover.fastGraph.editOperation.*;
@@ -338,8 +341,109 @@ public class EditOperationTest {
 
 	}
 	
+	@Test
+	public void test008() throws Exception {
+		ArrayList<String> labels = new ArrayList<>();
+		labels.add("blue");
+		labels.add("black");
+		labels.add("green");
 
+		HashMap<Integer,Double> editCosts = new HashMap<>();
+		editCosts.put(EditOperation.DELETE_NODE,1.0);
+		editCosts.put(EditOperation.ADD_NODE,1.0);
+		editCosts.put(EditOperation.DELETE_EDGE,1.0);
+		editCosts.put(EditOperation.ADD_EDGE,1.0);
+		editCosts.put(EditOperation.RELABEL_NODE,1.0);
+
+		// the overlay gives the same graph as copying for each edit
+		for(int i = 1; i <= 15; i++) {
+			FastGraph g = FastGraph.randomGraphFactory(12, 20, i*31, false);
+			EditList el = EditList.generateEditList(g,i,labels,editCosts, i*101);
+			
+			FastGraph copied = g;
+			for(EditOperation eo : el.getEditList()) {
+				copied = eo.edit(copied);
+			}
+			DeltaGraph delta = new DeltaGraph(g);
+			assertTrue(el.applyOperations(delta));
+			FastGraph compacted = delta.toFastGraph();
+			assertTrue(compacted.checkConsistency());
+			
+			assertEquals(copied.getNumberOfNodes(),delta.getNumberOfNodes());
+			assertEquals(copied.getNumberOfEdges(),delta.getNumberOfEdges());
+			assertEquals(copied.getNumberOfNodes(),compacted.getNumberOfNodes());
+			assertEquals(copied.getNumberOfEdges(),compacted.getNumberOfEdges());
+			for(int n = 0; n < copied.getNumberOfNodes(); n++) {
+				assertEquals(copied.getNodeLabel(n),delta.getNodeLabel(n));
+				assertEquals(copied.getNodeLabel(n),compacted.getNodeLabel(n));
+				assertEquals(copied.getNodeInDegree(n),delta.getNodeInDegree(n));
+				assertEquals(copied.getNodeOutDegree(n),delta.getNodeOutDegree(n));
+				int[] expected = copied.getNodeConnectingEdges(n);
+				int[] actual = delta.getNodeConnectingEdges(n);
+				Arrays.sort(expected);
+				Arrays.sort(actual);
+				assertArrayEquals(expected,actual);
+				expected = copied.getNodeConnectingOutNodes(n);
+				actual = delta.getNodeConnectingOutNodes(n);
+				Arrays.sort(expected);
+				Arrays.sort(actual);
+				assertArrayEquals(expected,actual);
+			}
+			for(int e = 0; e < copied.getNumberOfEdges(); e++) {
+				assertEquals(copied.getEdgeNode1(e),delta.getEdgeNode1(e));
+				assertEquals(copied.getEdgeNode2(e),delta.getEdgeNode2(e));
+				assertEquals(copied.getEdgeNode1(e),compacted.getEdgeNode1(e));
+				assertEquals(copied.getEdgeNode2(e),compacted.getEdgeNode2(e));
+				assertEquals(copied.getEdgeLabel(e),compacted.getEdgeLabel(e));
+			}
+		}
+	}
+	
+	@Test
+	public void test009() throws Exception {
+		FastGraph g = FastGraph.randomGraphFactory(0, 0, false);
+		DeltaGraph delta = new DeltaGraph(g);
+		assertFalse(delta.isModified());
+		assertTrue(g == delta.toFastGraph());
+		
+		assertEquals(0,delta.addNode(new NodeStructure(-1,"a",0,(byte)0,(byte)0)));
+		assertEquals(1,delta.addNode(new NodeStructure(-1,"b",0,(byte)0,(byte)0)));
+		assertEquals(2,delta.addNode(new NodeStructure(-1,"c",0,(byte)0,(byte)0)));
+		assertEquals(0,delta.addEdge(new EdgeStructure(-1,"ab",0,(byte)0,(byte)0,0,1)));
+		assertEquals(1,delta.addEdge(new EdgeStructure(-1,"bc",0,(byte)0,(byte)0,1,2)));
+		assertTrue(delta.isModified());
+		FastGraph g2 = delta.toFastGraph();
+		assertEquals(0,g.getNumberOfNodes());
+		
+		// edits to a copy do not change the original
+		DeltaGraph copy = new DeltaGraph(delta);
+		copy.deleteEdge(0);
+		assertFalse(copy.deleteSingletonNode(1));
+		assertTrue(copy.deleteSingletonNode(0));
+		assertEquals("b",copy.getNodeLabel(0));
+		assertEquals(0,copy.getEdgeNode1(0));
+		assertEquals(1,copy.getEdgeNode2(0));
+		assertEquals("bc",copy.getEdgeLabel(0));
+		copy.relabelNode(1, "z");
+		assertEquals(3,delta.getNumberOfNodes());
+		assertEquals("c",delta.getNodeLabel(2));
+		assertEquals(2,delta.getNumberOfEdges());
+		
+		// an overlay over a compacted graph, with deletions before added items
+		DeltaGraph delta2 = new DeltaGraph(g2);
+		delta2.deleteEdge(0);
+		assertTrue(delta2.deleteSingletonNode(0));
+		assertEquals(2,delta2.addNode(new NodeStructure(-1,"d",0,(byte)0,(byte)0)));
+		assertEquals(1,delta2.addEdge(new EdgeStructure(-1,"db",0,(byte)0,(byte)0,2,0)));
+		assertArrayEquals(new int[] {2},delta2.getNodeConnectingInNodes(0));
+		assertArrayEquals(new int[] {1},delta2.getNodeConnectingOutEdges(2));
+		assertEquals(2,delta2.oppositeEnd(1,0));
+		
+		thrown009.expect(FastGraphException.class);
+		delta2.addEdge(new EdgeStructure(-1,"bad",0,(byte)0,(byte)0,0,3));
+	}
+	
+	@Rule
+	public ExpectedException thrown009 = ExpectedException.none();
 	
 }
-
-
@@ -0,0 +1,402 @@
+package uk.ac.kent.dover.fastGraph;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Builds a FastGraph from a SNAP style adjacency list file, where each line is a pair of integer
+ * node ids separated by spaces or tabs, and lines starting with # are comments. Unlike
+ * {@link FastGraph#adjacencyListGraphFactory(int, int, String, String, boolean)} the node and edge
+ * counts are found from the file.
+ * <p>
+ * The file is memory mapped and split into line aligned chunks, which are parsed on several threads.
+ * A first pass counts the edges in each chunk, which gives every chunk its first edge index, and a second
+ * pass stores the external ids. External ids are then mapped to node indexes in order of first appearance
+ * with a {@link LongIntHashMap}, so the graph is the same as the one built by adjacencyListGraphFactory.
+ * The connection lists are built with a counting sort over the node degrees, so no per edge objects
+ * are created.
+ * </p>
+ *
+ * @author Peter Rodgers
+ *
+ */
+public class AdjacencyListImporter {
+
+	public static final int NODE_WEIGHT = -55; // as in the other adjacency list loader
+	public static final byte NODE_TYPE = -77;
+	public static final int EDGE_WEIGHT = -51;
+	public static final byte EDGE_TYPE = -53;
+
+	private static final long MINIMUM_CHUNK_SIZE = 1 << 20;
+
+	private int threads;
+
+
+	/**
+	 * Parse with one thread per available processor.
+	 */
+	public AdjacencyListImporter() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+
+	/**
+	 * @param threads the number of threads used to parse the file
+	 */
+	public AdjacencyListImporter(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+
+	/**
+	 * Build a graph from an adjacency list file.
+	 *
+	 * @param path the file
+	 * @param name the name of the new graph
+	 * @param direct if true the buffers are off heap, if false on the heap
+	 * @return the new graph
+	 * @throws IOException if the file cannot be read or has too many edges or label characters for a FastGraph
+	 */
+	public FastGraph importGraph(String path, String name, boolean direct) throws IOException {
+
+long time = Debugger.createTime();
+		FileInputStream fis = new FileInputStream(new File(path));
+		FileChannel channel = fis.getChannel();
+		SegmentedBuffer text;
+		try {
+			text = SegmentedBuffer.map(channel, FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			channel.close();
+			fis.close();
+		}
+
+		long[] chunkStarts = chunkStarts(text);
+		int chunks = chunkStarts.length-1;
+
+		// pass one, count edges in each chunk
+		int[] chunkEdges = new int[chunks];
+		List<Callable<Integer>> counts = new ArrayList<Callable<Integer>>(chunks);
+		for(int c = 0; c < chunks; c++) {
+			final long start = chunkStarts[c];
+			final long end = chunkStarts[c+1];
+			counts.add(() -> parse(text, start, end, null, null, 0));
+		}
+		List<Integer> countResults = runAll(counts);
+		long totalEdges = 0;
+		int[] chunkEdgeStart = new int[chunks];
+		for(int c = 0; c < chunks; c++) {
+			chunkEdges[c] = countResults.get(c);
+			if(totalEdges+chunkEdges[c] > Integer.MAX_VALUE) {
+				throw new IOException("Too many edges in "+path+" for a FastGraph");
+			}
+			chunkEdgeStart[c] = (int)totalEdges;
+			totalEdges += chunkEdges[c];
+		}
+		int numberOfEdges = (int)totalEdges;
+Debugger.outputTime("counted "+numberOfEdges+" edges in "+chunks+" chunks", time);
+
+		// pass two, store the external ids
+		final long[] node1Ids = new long[numberOfEdges];
+		final long[] node2Ids = new long[numberOfEdges];
+		List<Callable<Integer>> fills = new ArrayList<Callable<Integer>>(chunks);
+		for(int c = 0; c < chunks; c++) {
+			final long start = chunkStarts[c];
+			final long end = chunkStarts[c+1];
+			final int edgeStart = chunkEdgeStart[c];
+			fills.add(() -> parse(text, start, end, node1Ids, node2Ids, edgeStart));
+		}
+		runAll(fills);
+Debugger.outputTime("parsed edges", time);
+
+		// map external ids to node indexes in order of first appearance, and fill the edge buffer
+		SegmentedBuffer edgeBuf = SegmentedBuffer.allocate((long)numberOfEdges*FastGraph.EDGE_BYTE_SIZE, direct);
+		LongIntHashMap idMap = new LongIntHashMap(numberOfEdges/2+16);
+		long[] externalIds = new long[1024];
+		int numberOfNodes = 0;
+		for(int e = 0; e < numberOfEdges; e++) {
+			int n1 = idMap.putIfAbsent(node1Ids[e], numberOfNodes);
+			if(n1 == -1) {
+				n1 = numberOfNodes;
+				externalIds = addId(externalIds, numberOfNodes, node1Ids[e]);
+				numberOfNodes++;
+			}
+			int n2 = idMap.putIfAbsent(node2Ids[e], numberOfNodes);
+			if(n2 == -1) {
+				n2 = numberOfNodes;
+				externalIds = addId(externalIds, numberOfNodes, node2Ids[e]);
+				numberOfNodes++;
+			}
+			long edgeOffset = (long)e*FastGraph.EDGE_BYTE_SIZE;
+			edgeBuf.putInt(FastGraph.EDGE_NODE1_OFFSET+edgeOffset, n1);
+			edgeBuf.putInt(FastGraph.EDGE_NODE2_OFFSET+edgeOffset, n2);
+			edgeBuf.putInt(FastGraph.EDGE_WEIGHT_OFFSET+edgeOffset, EDGE_WEIGHT);
+			edgeBuf.put(FastGraph.EDGE_TYPE_OFFSET+edgeOffset, EDGE_TYPE);
+			edgeBuf.put(FastGraph.EDGE_AGE_OFFSET+edgeOffset, (byte)0);
+		}
+		idMap = null;
+Debugger.outputTime("mapped "+numberOfNodes+" nodes", time);
+
+		SegmentedBuffer nodeBuf = SegmentedBuffer.allocate((long)numberOfNodes*FastGraph.NODE_BYTE_SIZE, direct);
+		for(int n = 0; n < numberOfNodes; n++) {
+			long nodeOffset = (long)n*FastGraph.NODE_BYTE_SIZE;
+			nodeBuf.putInt(FastGraph.NODE_WEIGHT_OFFSET+nodeOffset, NODE_WEIGHT);
+			nodeBuf.put(FastGraph.NODE_TYPE_OFFSET+nodeOffset, NODE_TYPE);
+			nodeBuf.put(FastGraph.NODE_AGE_OFFSET+nodeOffset, (byte)0);
+		}
+		SegmentedBuffer connectionBuf = FastGraph.buildConnections(nodeBuf, edgeBuf, numberOfNodes, numberOfEdges, direct);
+Debugger.outputTime("built connections", time);
+
+		// labels are the external ids for nodes and e followed by the index for edges, written straight to the buffers
+		long nodeLabelSize = 0;
+		for(int n = 0; n < numberOfNodes; n++) {
+			nodeLabelSize += decimalLength(externalIds[n])*2L;
+		}
+		long edgeLabelSize = 0;
+		for(int e = 0; e < numberOfEdges; e++) {
+			edgeLabelSize += (decimalLength(e)+1)*2L;
+		}
+		SegmentedBuffer nodeLabelBuf = SegmentedBuffer.allocate(nodeLabelSize, direct);
+		long labelOffset = 0;
+		for(int n = 0; n < numberOfNodes; n++) {
+			long nodeOffset = (long)n*FastGraph.NODE_BYTE_SIZE;
+			nodeBuf.putLong(FastGraph.NODE_LABEL_START_OFFSET+nodeOffset, labelOffset);
+			nodeBuf.putShort(FastGraph.NODE_LABEL_LENGTH_OFFSET+nodeOffset, (short)decimalLength(externalIds[n]));
+			labelOffset = putDecimal(nodeLabelBuf, labelOffset, externalIds[n]);
+		}
+		SegmentedBuffer edgeLabelBuf = SegmentedBuffer.allocate(edgeLabelSize, direct);
+		labelOffset = 0;
+		for(int e = 0; e < numberOfEdges; e++) {
+			long edgeOffset = (long)e*FastGraph.EDGE_BYTE_SIZE;
+			edgeBuf.putLong(FastGraph.EDGE_LABEL_START_OFFSET+edgeOffset, labelOffset);
+			edgeBuf.putShort(FastGraph.EDGE_LABEL_LENGTH_OFFSET+edgeOffset, (short)(decimalLength(e)+1));
+			edgeLabelBuf.putChar(labelOffset, 'e');
+			labelOffset = putDecimal(edgeLabelBuf, labelOffset+2, e);
+		}
+Debugger.outputTime("created labels, import complete", time);
+
+		return FastGraph.buffersGraphFactory(name, (byte)0, numberOfNodes, numberOfEdges, direct, false, nodeBuf, edgeBuf, connectionBuf, nodeLabelBuf, edgeLabelBuf);
+	}
+
+
+	/**
+	 * Split the text into chunks that start at the beginning of a line.
+	 *
+	 * @param text the file contents
+	 * @return the chunk start offsets, with the text length as an extra final entry
+	 */
+	private long[] chunkStarts(SegmentedBuffer text) {
+		long size = text.capacity();
+		int chunks = (int)Math.max(1, Math.min((long)threads*4, size/MINIMUM_CHUNK_SIZE));
+		long[] starts = new long[chunks+1];
+		for(int c = 1; c < chunks; c++) {
+			long start = Math.max(starts[c-1], size*c/chunks);
+			while(start < size && start > 0 && text.get(start-1) != '\n') {
+				start++;
+			}
+			starts[c] = start;
+		}
+		starts[chunks] = size;
+		return starts;
+	}
+
+
+	/**
+	 * Parse the edges in a chunk. If the id arrays are null the edges are only counted.
+	 *
+	 * @param text the file contents
+	 * @param start first byte of the chunk, the start of a line
+	 * @param end the byte after the chunk
+	 * @param node1Ids populated with the first external id of each edge, or null to count only
+	 * @param node2Ids populated with the second external id of each edge, or null to count only
+	 * @param edgeStart index in the id arrays of the first edge in the chunk
+	 * @return the number of edges in the chunk
+	 */
+	private static int parse(SegmentedBuffer text, long start, long end, long[] node1Ids, long[] node2Ids, int edgeStart) {
+		int count = 0;
+		long p = start;
+		while(p < end) {
+			long lineStart = p;
+			long lineEnd = p;
+			while(lineEnd < end && text.get(lineEnd) != '\n') {
+				lineEnd++;
+			}
+			p = lineEnd+1;
+
+			long q = skipSpace(text, lineStart, lineEnd);
+			if(q == lineEnd || text.get(q) == '#' || text.get(q) == '\r') {
+				continue;
+			}
+			long node1End = numberEnd(text, q, lineEnd);
+			long node2Start = skipSpace(text, node1End, lineEnd);
+			long node2End = numberEnd(text, node2Start, lineEnd);
+			if(node1End == q || node2Start == node1End || node2End == node2Start) {
+				if(node1Ids == null) { // only report once, in the counting pass
+					Debugger.log("FAILED TO RECOGNISE LINE at byte "+lineStart+" in AdjacencyListImporter");
+				}
+				continue;
+			}
+			if(node1Ids != null) {
+				node1Ids[edgeStart+count] = parseNumber(text, q, node1End);
+				node2Ids[edgeStart+count] = parseNumber(text, node2Start, node2End);
+			}
+			count++;
+		}
+		return count;
+	}
+
+
+	/**
+	 * @return the first position at or after p that is not a space or tab
+	 */
+	private static long skipSpace(SegmentedBuffer text, long p, long end) {
+		while(p < end) {
+			byte b = text.get(p);
+			if(b != ' ' && b != '\t') {
+				break;
+			}
+			p++;
+		}
+		return p;
+	}
+
+
+	/**
+	 * @return the position after an optionally signed integer starting at p, or p if there is none
+	 */
+	private static long numberEnd(SegmentedBuffer text, long p, long end) {
+		long q = p;
+		if(q < end && text.get(q) == '-') {
+			q++;
+		}
+		long digitsStart = q;
+		while(q < end && text.get(q) >= '0' && text.get(q) <= '9') {
+			q++;
+		}
+		if(q == digitsStart) {
+			return p;
+		}
+		return q;
+	}
+
+
+	/**
+	 * @return the integer value of the text from p to end, which has been checked by numberEnd
+	 */
+	private static long parseNumber(SegmentedBuffer text, long p, long end) {
+		boolean negative = false;
+		if(text.get(p) == '-') {
+			negative = true;
+			p++;
+		}
+		long ret = 0;
+		while(p < end) {
+			ret = ret*10+(text.get(p)-'0');
+			p++;
+		}
+		if(negative) {
+			return -ret;
+		}
+		return ret;
+	}
+
+
+	/**
+	 * @return the number of characters in the decimal representation of value
+	 */
+	static int decimalLength(long value) {
+		if(value == Long.MIN_VALUE) {
+			return 20;
+		}
+		int length = 1;
+		if(value < 0) {
+			length++;
+			value = -value;
+		}
+		while(value >= 10) {
+			value /= 10;
+			length++;
+		}
+		return length;
+	}
+
+
+	/**
+	 * Write the decimal representation of value as chars.
+	 *
+	 * @return the offset after the last char
+	 */
+	static long putDecimal(SegmentedBuffer buf, long offset, long value) {
+		if(value == Long.MIN_VALUE) { // cannot be negated
+			String digits = Long.toString(value);
+			for(int i = 0; i < digits.length(); i++) {
+				buf.putChar(offset, digits.charAt(i));
+				offset += 2;
+			}
+			return offset;
+		}
+		if(value < 0) {
+			buf.putChar(offset, '-');
+			offset += 2;
+			value = -value;
+		}
+		int length = decimalLength(value);
+		long end = offset+length*2L;
+		long p = end;
+		do {
+			p -= 2;
+			buf.putChar(p, (char)('0'+value%10));
+			value /= 10;
+		} while(value != 0);
+		return end;
+	}
+
+
+	/**
+	 * @return ids, or a larger copy if index is past its end, with value at index
+	 */
+	private static long[] addId(long[] ids, int index, long value) {
+		if(index == ids.length) {
+			ids = Arrays.copyOf(ids, (int)Math.min(Integer.MAX_VALUE-8, ids.length*2L));
+		}
+		ids[index] = value;
+		return ids;
+	}
+
+
+	/**
+	 * Run the tasks on the thread pool and wait for them all.
+	 *
+	 * @param tasks the work
+	 * @return the results, in the same order as the tasks
+	 * @throws IOException if a task fails or the thread is interrupted
+	 */
+	private <T> List<T> runAll(List<Callable<T>> tasks) throws IOException {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, tasks.size()));
+		try {
+			List<Future<T>> futures = executor.invokeAll(tasks);
+			List<T> ret = new ArrayList<T>(futures.size());
+			for(Future<T> f : futures) {
+				ret.add(f.get());
+			}
+			return ret;
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while importing", e);
+		} catch(ExecutionException e) {
+			throw new IOException("Failed importing", e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}
@@ -14,6 +14,7 @@ import Jama.Matrix;
 public class AdjacencyMatrix {
 	
 	FastGraph g; //the FastGraph
+	CsrGraph csr; //used instead of g if not null
 	
 	/**
 	 * Constructor.
@@ -23,6 +24,14 @@ public class AdjacencyMatrix {
 	public AdjacencyMatrix(FastGraph g) {
 		this.g = g;
 	}
+	
+	/**
+	 * Constructor for building the matrices from int arrays, rather than the graph buffers.
+	 * @param csr The snapshot of the graph to be used, from {@link FastGraph#toCsr()}.
+	 */
+	public AdjacencyMatrix(CsrGraph csr) {
+		this.csr = csr;
+	}
 
 	
 	/**
@@ -56,12 +65,18 @@ public class AdjacencyMatrix {
 	 * @return A 2D array of ints representing the graph
 	 */
 	public int[][] buildIntAdjacencyMatrix() {
+		if(csr != null) {
+			return buildIntMatrixFromCsr(true, true);
+		}
 		
 		int[][] matrix = new int[g.getNumberOfNodes()][g.getNumberOfNodes()]; //create an 2D array that has the dimensions of the current graph 
+		ConnectionIterator it = g.getConnectionIterator();
 		
 		for (int n = 0; n < g.getNumberOfNodes(); n++) {
-			int[] connectingNodeIndexes = g.getNodeConnectingOutNodes(n);
-			for (int i : connectingNodeIndexes) {
+			it.resetOut(n);
+			while(it.hasNext()) {
+				it.next();
+				int i = it.getNode();
 				matrix[n][i]++;
 				matrix[i][n]++;
 			}			
@@ -77,12 +92,18 @@ public class AdjacencyMatrix {
 	 * @return A 2D array of ints
 	 */
 	public int[][] buildIntOutAdjacencyMatrix() {
+		if(csr != null) {
+			return buildIntMatrixFromCsr(true, false);
+		}
 		
 		int[][] matrix = new int[g.getNumberOfNodes()][g.getNumberOfNodes()]; //create an 2D array that has the dimensions of the current graph 
+		ConnectionIterator it = g.getConnectionIterator();
 		
 		for (int n = 0; n < g.getNumberOfNodes(); n++) {
-			int[] connectingNodeIndexes = g.getNodeConnectingOutNodes(n);
-			for (int i : connectingNodeIndexes) {
+			it.resetOut(n);
+			while(it.hasNext()) {
+				it.next();
+				int i = it.getNode();
 				matrix[n][i]++;
 			}			
 		}		
@@ -97,12 +118,18 @@ public class AdjacencyMatrix {
 	 * @return A 2D array of ints
 	 */
 	public int[][] buildIntInAdjacencyMatrix() {
+		if(csr != null) {
+			return buildIntMatrixFromCsr(false, false);
+		}
 		
 		int[][] matrix = new int[g.getNumberOfNodes()][g.getNumberOfNodes()]; //create an 2D array that has the dimensions of the current graph 
+		ConnectionIterator it = g.getConnectionIterator();
 		
 		for (int n = 0; n < g.getNumberOfNodes(); n++) {
-			int[] connectingNodeIndexes = g.getNodeConnectingInNodes(n);
-			for (int i : connectingNodeIndexes) {
+			it.resetIn(n);
+			while(it.hasNext()) {
+				it.next();
+				int i = it.getNode();
 				matrix[n][i]++;
 			}			
 		}		
@@ -118,11 +145,17 @@ public class AdjacencyMatrix {
 	 * @return A 2D array of booleans representing the graph
 	 */
 	public boolean[][] buildBooleanAdjacencyMatrix() {
+		if(csr != null) {
+			return buildBooleanMatrixFromCsr(true);
+		}
 		
 		boolean[][] matrix = new boolean[g.getNumberOfNodes()][g.getNumberOfNodes()]; //create an 2D array that has the dimensions of the current graph 
+		ConnectionIterator it = g.getConnectionIterator();
 		for (int n = 0; n < g.getNumberOfNodes(); n++) {
-			int[] connectingNodeIndexes = g.getNodeConnectingOutNodes(n);
-			for (int i : connectingNodeIndexes) {
+			it.resetOut(n);
+			while(it.hasNext()) {
+				it.next();
+				int i = it.getNode();
 				matrix[n][i] = true;
 				matrix[i][n] = true;
 			}			
@@ -139,12 +172,18 @@ public class AdjacencyMatrix {
 	 * @return A 2D array of ints representing the graph
 	 */
 	public int[][] buildIntDirectedAdjacencyMatrix() {
+		if(csr != null) {
+			return buildIntMatrixFromCsr(true, false);
+		}
 		
 		int[][] matrix = new int[g.getNumberOfNodes()][g.getNumberOfNodes()]; //create an 2D array that has the dimensions of the current graph 
+		ConnectionIterator it = g.getConnectionIterator();
 		
 		for (int n = 0; n < g.getNumberOfNodes(); n++) {
-			int[] connectingNodeIndexes = g.getNodeConnectingOutNodes(n);
-			for (int i : connectingNodeIndexes) {
+			it.resetOut(n);
+			while(it.hasNext()) {
+				it.next();
+				int i = it.getNode();
 				matrix[n][i]++;
 			}			
 		}		
@@ -160,12 +199,18 @@ public class AdjacencyMatrix {
 	 * @return A 2D array of booleans representing the graph
 	 */
 	public boolean[][] buildBooleanDirectedAdjacencyMatrix() {
+		if(csr != null) {
+			return buildBooleanMatrixFromCsr(false);
+		}
 		
 		boolean[][] matrix = new boolean[g.getNumberOfNodes()][g.getNumberOfNodes()]; //create an 2D array that has the dimensions of the current graph 
+		ConnectionIterator it = g.getConnectionIterator();
 		
 		for (int n = 0; n < g.getNumberOfNodes(); n++) {
-			int[] connectingNodeIndexes = g.getNodeConnectingOutNodes(n);
-			for (int i : connectingNodeIndexes) {
+			it.resetOut(n);
+			while(it.hasNext()) {
+				it.next();
+				int i = it.getNode();
 				matrix[n][i] = true;
 			}			
 		}		
@@ -173,13 +218,57 @@ public class AdjacencyMatrix {
 		return matrix;
 	}
 	
+	/**
+	 * Builds a matrix from the out or in lists of csr.
+	 * 
+	 * @param out if true, count the out connections of each node, if false the in connections
+	 * @param symmetric if true, also count each connection from the other end
+	 * @return A 2D array of ints
+	 */
+	private int[][] buildIntMatrixFromCsr(boolean out, boolean symmetric) {
+		int[] offsets = out ? csr.getOutOffsets() : csr.getInOffsets();
+		int[] targets = out ? csr.getOutTargets() : csr.getInTargets();
+		int[][] matrix = new int[csr.getNumberOfNodes()][csr.getNumberOfNodes()];
+		for (int n = 0; n < csr.getNumberOfNodes(); n++) {
+			int[] row = matrix[n];
+			for (int i = offsets[n]; i < offsets[n+1]; i++) {
+				row[targets[i]]++;
+				if (symmetric) {
+					matrix[targets[i]][n]++;
+				}
+			}
+		}
+		return matrix;
+	}
+	
+	/**
+	 * Builds a boolean matrix from the out lists of csr.
+	 * 
+	 * @param symmetric if true, also set each connection from the other end
+	 * @return A 2D array of booleans
+	 */
+	private boolean[][] buildBooleanMatrixFromCsr(boolean symmetric) {
+		int[] offsets = csr.getOutOffsets();
+		int[] targets = csr.getOutTargets();
+		boolean[][] matrix = new boolean[csr.getNumberOfNodes()][csr.getNumberOfNodes()];
+		for (int n = 0; n < csr.getNumberOfNodes(); n++) {
+			for (int i = offsets[n]; i < offsets[n+1]; i++) {
+				matrix[n][targets[i]] = true;
+				if (symmetric) {
+					matrix[targets[i]][n] = true;
+				}
+			}
+		}
+		return matrix;
+	}
+	
 	/**
 	 * Converts an int[][] into a double[][]
 	 * Used when creating eigenvalues
 	 * @param inputMatrix The input 2D array
 	 * @return The output 2D array
 	 */
-	private double[][] convertMatrix(int[][] inputMatrix) {
+	private static double[][] convertMatrix(int[][] inputMatrix) {
 		//have to convert the int[][] input into a double[][]
 		double[][] dArray = new double[inputMatrix.length][inputMatrix.length];
 		for (int row = 0; row < inputMatrix.length; row++) {
@@ -196,7 +285,7 @@ public class AdjacencyMatrix {
 	 * @param inputMatrix The input 2D array
 	 * @return The output 2D array
 	 */
-	private double[][] convertMatrix(boolean[][] inputMatrix) {
+	private static double[][] convertMatrix(boolean[][] inputMatrix) {
 		//have to convert the boolean[][] input into a double[][]
 		double[][] dArray = new double[inputMatrix.length][inputMatrix.length];
 		for (int row = 0; row < inputMatrix.length; row++) {
@@ -218,7 +307,7 @@ public class AdjacencyMatrix {
 	 * @param inputMatrix int[][] is required. This is converted to a double[][]
 	 * @return double[][] of Eigenvalues
 	 */
-	public double[] findEigenvalues(int[][] inputMatrix) {		
+	public static double[] findEigenvalues(int[][] inputMatrix) {		
 		return findEigenvalues(convertMatrix(inputMatrix));	
 	}
 	
@@ -229,7 +318,7 @@ public class AdjacencyMatrix {
 	 * @param inputMatrix boolean[][] is required. This is converted to a double[][]
 	 * @return double[][] of Eigenvalues
 	 */
-	public double[] findEigenvalues(boolean[][] inputMatrix) {		
+	public static double[] findEigenvalues(boolean[][] inputMatrix) {		
 		return findEigenvalues(convertMatrix(inputMatrix));	
 	}
 	
@@ -240,7 +329,7 @@ public class AdjacencyMatrix {
 	 * @param inputMatrix A double[][]
 	 * @return double[][] of Eigenvalues
 	 */
-	public double[] findEigenvalues(double[][] inputMatrix) {
+	public static double[] findEigenvalues(double[][] inputMatrix) {
 		Matrix A = new Matrix(inputMatrix);
 		
 		// compute the spectral decomposition
@@ -0,0 +1,340 @@
+package uk.ac.kent.dover.fastGraph;
+
+import java.util.Arrays;
+
+/**
+ * The nodes and edges of a FastGraph grouped by age, so the time slices of a temporal graph can be
+ * found without scanning the whole graph. Within an age, nodes and edges are in index order. Also
+ * holds, for each node, its connecting nodes of the same age, in the order of a
+ * {@link ConnectionIterator} filtered on the node's age, with the in list before the out list.
+ * <p>
+ * Create with {@link FastGraph#getAgeIndex()}, which keeps the index until the ages or connection
+ * lists of the graph change. The arrays are returned directly, without copying, and must not be changed.
+ * </p>
+ *
+ * @author Peter Rodgers
+ *
+ */
+public class AgeIndex {
+
+	private static final int AGES = 256; // every value of a byte
+
+	// the nodes of age a are from nodeStart[a-Byte.MIN_VALUE] to nodeStart[a-Byte.MIN_VALUE+1]-1 of nodesByAge
+	private final int[] nodeStart;
+	private final int[] nodesByAge;
+	private final int[] edgeStart;
+	private final int[] edgesByAge;
+
+	// the same age in connections of node n are from sameAgeStart[n] to sameAgeStart[n]+sameAgeInCount[n]-1, followed by the out connections
+	private final int[] sameAgeStart;
+	private final int[] sameAgeInCount;
+	private final int[] sameAgeNodes;
+
+	private final int maximumDegree;
+	private final int maximumInDegree;
+	private final int maximumOutDegree;
+
+
+	/**
+	 * Groups the nodes and edges with a counting sort on age, then reads each node's connections once.
+	 *
+	 * @param g the graph to index
+	 */
+	AgeIndex(FastGraph g) {
+		int numberOfNodes = g.getNumberOfNodes();
+		int numberOfEdges = g.getNumberOfEdges();
+
+		byte[] nodeAges = new byte[numberOfNodes];
+		nodeStart = new int[AGES+1];
+		for(int n = 0; n < numberOfNodes; n++) {
+			nodeAges[n] = g.getNodeAge(n);
+			nodeStart[nodeAges[n]-Byte.MIN_VALUE+1]++;
+		}
+		nodesByAge = new int[numberOfNodes];
+		groupByAge(nodeAges, nodeStart, nodesByAge);
+
+		byte[] edgeAges = new byte[numberOfEdges];
+		edgeStart = new int[AGES+1];
+		for(int e = 0; e < numberOfEdges; e++) {
+			edgeAges[e] = g.getEdgeAge(e);
+			edgeStart[edgeAges[e]-Byte.MIN_VALUE+1]++;
+		}
+		edgesByAge = new int[numberOfEdges];
+		groupByAge(edgeAges, edgeStart, edgesByAge);
+
+		// count first, so the same age lists are in one array of the right size
+		sameAgeStart = new int[numberOfNodes+1];
+		sameAgeInCount = new int[numberOfNodes];
+		ConnectionIterator connections = g.getConnectionIterator();
+		int maxDegree = 0;
+		int maxInDegree = 0;
+		int maxOutDegree = 0;
+		for(int n = 0; n < numberOfNodes; n++) {
+			int inCount = 0;
+			connections.resetIn(n);
+			while(connections.hasNext()) {
+				connections.next();
+				if(nodeAges[connections.getNode()] == nodeAges[n]) {
+					inCount++;
+				}
+			}
+			int outCount = 0;
+			connections.resetOut(n);
+			while(connections.hasNext()) {
+				connections.next();
+				if(nodeAges[connections.getNode()] == nodeAges[n]) {
+					outCount++;
+				}
+			}
+			sameAgeInCount[n] = inCount;
+			sameAgeStart[n+1] = sameAgeStart[n]+inCount+outCount;
+
+			int inDegree = g.getNodeInDegree(n);
+			int outDegree = g.getNodeOutDegree(n);
+			maxInDegree = Math.max(maxInDegree, inDegree);
+			maxOutDegree = Math.max(maxOutDegree, outDegree);
+			maxDegree = Math.max(maxDegree, inDegree+outDegree);
+		}
+		maximumDegree = maxDegree;
+		maximumInDegree = maxInDegree;
+		maximumOutDegree = maxOutDegree;
+
+		sameAgeNodes = new int[sameAgeStart[numberOfNodes]];
+		for(int n = 0; n < numberOfNodes; n++) {
+			int i = sameAgeStart[n];
+			connections.reset(n);
+			while(connections.hasNext()) {
+				connections.next();
+				if(nodeAges[connections.getNode()] == nodeAges[n]) {
+					sameAgeNodes[i] = connections.getNode();
+					i++;
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Fill ret with the indexes of ages, grouped by age and in index order within an age.
+	 *
+	 * @param ages the age of each element
+	 * @param start on entry, the count of age a at a-Byte.MIN_VALUE+1, on exit the start of each age
+	 * @param ret populated with the grouped elements
+	 */
+	private static void groupByAge(byte[] ages, int[] start, int[] ret) {
+		for(int a = 0; a < AGES; a++) {
+			start[a+1] += start[a];
+		}
+		int[] position = Arrays.copyOf(start, AGES);
+		for(int i = 0; i < ages.length; i++) {
+			ret[position[ages[i]-Byte.MIN_VALUE]++] = i;
+		}
+	}
+
+
+	/**
+	 * @param age the age
+	 * @return the position in the grouped arrays of the age, or -1 if no byte has the value
+	 */
+	private static int ageSlot(int age) {
+		if(age < Byte.MIN_VALUE || age > Byte.MAX_VALUE) {
+			return -1;
+		}
+		return age-Byte.MIN_VALUE;
+	}
+
+
+	/**
+	 * @param age the age
+	 * @return the number of nodes of the age
+	 */
+	public int countNodesOfAge(int age) {
+		int slot = ageSlot(age);
+		if(slot == -1) {
+			return 0;
+		}
+		return nodeStart[slot+1]-nodeStart[slot];
+	}
+
+
+	/**
+	 * @param age the age
+	 * @return the number of edges of the age
+	 */
+	public int countEdgesOfAge(int age) {
+		int slot = ageSlot(age);
+		if(slot == -1) {
+			return 0;
+		}
+		return edgeStart[slot+1]-edgeStart[slot];
+	}
+
+
+	/**
+	 * @param age the age
+	 * @return the nodes of the age, in node order
+	 */
+	public int[] getNodesOfAge(int age) {
+		int slot = ageSlot(age);
+		if(slot == -1) {
+			return new int[0];
+		}
+		return Arrays.copyOfRange(nodesByAge, nodeStart[slot], nodeStart[slot+1]);
+	}
+
+
+	/**
+	 * @param age the age
+	 * @return the edges of the age, in edge order
+	 */
+	public int[] getEdgesOfAge(int age) {
+		int slot = ageSlot(age);
+		if(slot == -1) {
+			return new int[0];
+		}
+		return Arrays.copyOfRange(edgesByAge, edgeStart[slot], edgeStart[slot+1]);
+	}
+
+
+	/**
+	 * @return all nodes grouped by age, youngest age first. Not copied, so must not be changed
+	 */
+	public int[] getNodesByAge() {
+		return nodesByAge;
+	}
+
+
+	/**
+	 * @param age the age
+	 * @return the position in {@link #getNodesByAge()} of the first node of the age. The nodes of
+	 * the age end at the start of the age above
+	 */
+	public int getNodeStart(int age) {
+		return nodeStart[age-Byte.MIN_VALUE];
+	}
+
+
+	/**
+	 * @return all edges grouped by age, youngest age first. Not copied, so must not be changed
+	 */
+	public int[] getEdgesByAge() {
+		return edgesByAge;
+	}
+
+
+	/**
+	 * @param age the age
+	 * @return the position in {@link #getEdgesByAge()} of the first edge of the age. The edges of
+	 * the age end at the start of the age above
+	 */
+	public int getEdgeStart(int age) {
+		return edgeStart[age-Byte.MIN_VALUE];
+	}
+
+
+	/**
+	 * @return the age of the youngest node, or Byte.MAX_VALUE if there are no nodes
+	 */
+	public byte getMinimumNodeAge() {
+		return (byte)(firstFilled(nodeStart, Byte.MAX_VALUE-Byte.MIN_VALUE)+Byte.MIN_VALUE);
+	}
+
+
+	/**
+	 * @return the age of the oldest node, or Byte.MIN_VALUE if there are no nodes
+	 */
+	public byte getMaximumNodeAge() {
+		return (byte)(lastFilled(nodeStart, 0)+Byte.MIN_VALUE);
+	}
+
+
+	/**
+	 * @return the age of the youngest edge, or Byte.MAX_VALUE if there are no edges
+	 */
+	public byte getMinimumEdgeAge() {
+		return (byte)(firstFilled(edgeStart, Byte.MAX_VALUE-Byte.MIN_VALUE)+Byte.MIN_VALUE);
+	}
+
+
+	/**
+	 * @return the age of the oldest edge, or Byte.MIN_VALUE if there are no edges
+	 */
+	public byte getMaximumEdgeAge() {
+		return (byte)(lastFilled(edgeStart, 0)+Byte.MIN_VALUE);
+	}
+
+
+	/**
+	 * @param start the start of each age
+	 * @param empty returned if there are no elements
+	 * @return the first age slot with an element
+	 */
+	private static int firstFilled(int[] start, int empty) {
+		for(int a = 0; a < AGES; a++) {
+			if(start[a+1] > start[a]) {
+				return a;
+			}
+		}
+		return empty;
+	}
+
+
+	/**
+	 * @param start the start of each age
+	 * @param empty returned if there are no elements
+	 * @return the last age slot with an element
+	 */
+	private static int lastFilled(int[] start, int empty) {
+		for(int a = AGES-1; a >= 0; a--) {
+			if(start[a+1] > start[a]) {
+				return a;
+			}
+		}
+		return empty;
+	}
+
+
+	/**
+	 * @param nodeIndex the node
+	 * @param in include the in list
+	 * @param out include the out list
+	 * @return the connecting nodes with the same age as nodeIndex, in list before out list
+	 */
+	public int[] getConnectingNodesOfSameAge(int nodeIndex, boolean in, boolean out) {
+		int start = sameAgeStart[nodeIndex];
+		int middle = start+sameAgeInCount[nodeIndex];
+		int end = sameAgeStart[nodeIndex+1];
+		if(!in) {
+			start = middle;
+		}
+		if(!out) {
+			end = middle;
+		}
+		return Arrays.copyOfRange(sameAgeNodes, start, end);
+	}
+
+
+	/**
+	 * @return the largest node degree in the graph
+	 */
+	public int getMaximumDegree() {
+		return maximumDegree;
+	}
+
+
+	/**
+	 * @return the largest node in degree in the graph
+	 */
+	public int getMaximumInDegree() {
+		return maximumInDegree;
+	}
+
+
+	/**
+	 * @return the largest node out degree in the graph
+	 */
+	public int getMaximumOutDegree() {
+		return maximumOutDegree;
+	}
+
+}
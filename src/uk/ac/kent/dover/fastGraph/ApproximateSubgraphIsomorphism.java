@@ -74,7 +74,7 @@ public class ApproximateSubgraphIsomorphism extends SubgraphIsomorphism {
 		
 		mainDir.mkdirs(); //make directories if needed
 		
-		Random r = new Random(target.getNodeBuf().getLong(0));
+		Random r = new Random(target.getRandomSeed(0));
 		int count = 0;
 		long time = Debugger.createTime();
 		
@@ -83,14 +83,20 @@ public class ApproximateSubgraphIsomorphism extends SubgraphIsomorphism {
 				Debugger.outputTime("Completed node: " + i + " Found subs: "+count+" Unique subs: " + uniqueSubgraphs.size(),time);
 			}
 			
-			//generate set of subgraphs
-			EnumerateSubgraphNeighbourhood esn = new EnumerateSubgraphNeighbourhood(target);
-			HashSet<FastGraph> subs = new HashSet<FastGraph>();
-			esn.enumerateSubgraphsFromNode(patternNodes, subgraphsPerNode, 100, i, r, subs);
-			
-			subgraphsTested += subs.size();
-			
-			count = testSubgraphs(subs, count, mainDir);
+			// the subgraphs of a node are not needed once tested, so off heap ones are freed straight away
+			BufferArena arena = BufferArena.open();
+			try {
+				//generate set of subgraphs
+				EnumerateSubgraphNeighbourhood esn = new EnumerateSubgraphNeighbourhood(target);
+				HashSet<FastGraph> subs = new HashSet<FastGraph>();
+				esn.enumerateSubgraphsFromNode(patternNodes, subgraphsPerNode, 100, i, r, subs);
+				
+				subgraphsTested += subs.size();
+				
+				count = testSubgraphs(subs, count, mainDir);
+			} finally {
+				arena.close();
+			}
 			
 			//Debugger.log("number of generated subs: " + subs.size());
 
@@ -0,0 +1,266 @@
+package uk.ac.kent.dover.fastGraph;
+
+/**
+ * Compact neighbour sets for motif sized graphs, as used by {@link ExactIsomorphism}. Each node has
+ * a row of bits, one for every node of the graph, set for its neighbours, and a sorted array of its
+ * neighbours with the number of edges to each. Testing whether two nodes are neighbours is then a
+ * bit test, and counting the neighbours in a set of nodes held as bits is an AND and popcount of
+ * each word, with no boxed Integers.
+ * <p>
+ * As in the isomorphism tests, only neighbours of the same age as the node are included, without
+ * duplicates and without self sourcing edges. The rows take n*n bits, so this is meant for graphs
+ * small enough to have an adjacency matrix.
+ * </p>
+ * Immutable once built.
+ *
+ * @author Peter Rodgers
+ *
+ */
+public class BitsetAdjacency {
+
+	private final int numberOfNodes;
+	private final int wordsPerRow;
+	private final long[] rows; // the row of node n starts at n*wordsPerRow
+	private final int[] start; // the neighbours of node n are from start[n] to start[n+1]
+	private final int[] neighbours;
+	private final int[] edgeCounts; // the number of edges to each entry in neighbours
+	private final boolean multipleEdges; // true if any edge count is more than one
+
+
+	/**
+	 * Use {@link #build(SubgraphView, boolean, boolean)} to create.
+	 */
+	private BitsetAdjacency(int numberOfNodes, int wordsPerRow, long[] rows, int[] start, int[] neighbours, int[] edgeCounts, boolean multipleEdges) {
+		this.numberOfNodes = numberOfNodes;
+		this.wordsPerRow = wordsPerRow;
+		this.rows = rows;
+		this.start = start;
+		this.neighbours = neighbours;
+		this.edgeCounts = edgeCounts;
+		this.multipleEdges = multipleEdges;
+	}
+
+
+	/**
+	 * Gives the neighbours of nodes in g of the same age as the node, without duplicates and without self sourcing.
+	 * Pass both in and out to treat the graph as undirected.
+	 *
+	 * @param g the graph
+	 * @param in include nodes connected by edges pointing at the node
+	 * @param out include nodes connected by edges pointing away from the node
+	 * @return the neighbours of each node
+	 * @throws IllegalArgumentException if the graph is too big for a bit for every pair of nodes
+	 */
+	public static BitsetAdjacency build(SubgraphView g, boolean in, boolean out) {
+		int numberOfNodes = g.getNumberOfNodes();
+		int wordsPerRow = words(numberOfNodes);
+		if((long)numberOfNodes*wordsPerRow > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Too many nodes for bitset rows: "+numberOfNodes);
+		}
+		byte[] ages = new byte[numberOfNodes];
+		for(int n = 0; n < numberOfNodes; n++) {
+			ages[n] = g.getNodeAge(n);
+		}
+
+		long[] rows = new long[numberOfNodes*wordsPerRow];
+		for(int e = 0; e < g.getNumberOfEdges(); e++) {
+			int n1 = g.getEdgeNode1(e);
+			int n2 = g.getEdgeNode2(e);
+			if(n1 == n2 || ages[n1] != ages[n2]) {
+				continue;
+			}
+			if(out) {
+				rows[n1*wordsPerRow+(n2 >>> 6)] |= 1L << n2;
+			}
+			if(in) {
+				rows[n2*wordsPerRow+(n1 >>> 6)] |= 1L << n1;
+			}
+		}
+
+		// the neighbour arrays in node order, from the bits
+		int[] start = new int[numberOfNodes+1];
+		for(int n = 0; n < numberOfNodes; n++) {
+			int count = 0;
+			for(int w = 0; w < wordsPerRow; w++) {
+				count += Long.bitCount(rows[n*wordsPerRow+w]);
+			}
+			start[n+1] = start[n]+count;
+		}
+		int[] neighbours = new int[start[numberOfNodes]];
+		for(int n = 0; n < numberOfNodes; n++) {
+			int position = start[n];
+			for(int w = 0; w < wordsPerRow; w++) {
+				long bits = rows[n*wordsPerRow+w];
+				while(bits != 0) {
+					neighbours[position++] = (w << 6)+Long.numberOfTrailingZeros(bits);
+					bits &= bits-1;
+				}
+			}
+		}
+
+		int[] edgeCounts = new int[neighbours.length];
+		boolean multipleEdges = false;
+		for(int e = 0; e < g.getNumberOfEdges(); e++) {
+			int n1 = g.getEdgeNode1(e);
+			int n2 = g.getEdgeNode2(e);
+			if(n1 == n2 || ages[n1] != ages[n2]) {
+				continue;
+			}
+			if(out) {
+				int i = indexOf(neighbours, start[n1], start[n1+1], n2);
+				edgeCounts[i]++;
+				multipleEdges |= edgeCounts[i] > 1;
+			}
+			if(in) {
+				int i = indexOf(neighbours, start[n2], start[n2+1], n1);
+				edgeCounts[i]++;
+				multipleEdges |= edgeCounts[i] > 1;
+			}
+		}
+
+		return new BitsetAdjacency(numberOfNodes, wordsPerRow, rows, start, neighbours, edgeCounts, multipleEdges);
+	}
+
+
+	/**
+	 * @param numberOfBits the number of bits needed
+	 * @return the number of longs to hold the bits
+	 */
+	public static int words(int numberOfBits) {
+		return (numberOfBits+63) >>> 6;
+	}
+
+
+	/**
+	 * @param bits a bitset
+	 * @param index the bit to set
+	 */
+	public static void set(long[] bits, int index) {
+		bits[index >>> 6] |= 1L << index;
+	}
+
+
+	/**
+	 * @param bits a bitset
+	 * @param index the bit to clear
+	 */
+	public static void clear(long[] bits, int index) {
+		bits[index >>> 6] &= ~(1L << index);
+	}
+
+
+	/**
+	 * @param neighbours sorted lists
+	 * @param from the start of the list to search
+	 * @param to the end of the list to search
+	 * @param node the node to find
+	 * @return the index of node, or -1 if it is not in the list
+	 */
+	private static int indexOf(int[] neighbours, int from, int to, int node) {
+		int low = from;
+		int high = to-1;
+		while(low <= high) {
+			int mid = (low+high) >>> 1;
+			if(neighbours[mid] < node) {
+				low = mid+1;
+			} else if(neighbours[mid] > node) {
+				high = mid-1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+
+	/**
+	 * @return the number of nodes in the graph
+	 */
+	public int getNumberOfNodes() {
+		return numberOfNodes;
+	}
+
+
+	/**
+	 * @return the number of longs in the row of each node
+	 */
+	public int getWordsPerRow() {
+		return wordsPerRow;
+	}
+
+
+	/**
+	 * @return the rows of all the nodes, the row of node n starting at n*{@link #getWordsPerRow()}, not copied
+	 */
+	long[] getRows() {
+		return rows;
+	}
+
+
+	/**
+	 * @return true if any node has more than one edge to a neighbour
+	 */
+	public boolean hasMultipleEdges() {
+		return multipleEdges;
+	}
+
+
+	/**
+	 * @param node a node
+	 * @return the number of distinct neighbours of the node
+	 */
+	public int getNumberOfNeighbours(int node) {
+		return start[node+1]-start[node];
+	}
+
+
+	/**
+	 * @param node a node
+	 * @return the neighbours of the node, in increasing order, a new array
+	 */
+	public int[] getNeighbours(int node) {
+		int[] ret = new int[start[node+1]-start[node]];
+		System.arraycopy(neighbours, start[node], ret, 0, ret.length);
+		return ret;
+	}
+
+
+	/**
+	 * @param node a node
+	 * @param other another node
+	 * @return true if other is a neighbour of node
+	 */
+	public boolean isNeighbour(int node, int other) {
+		return (rows[node*wordsPerRow+(other >>> 6)] & (1L << other)) != 0;
+	}
+
+
+	/**
+	 * @param node a node
+	 * @param other another node
+	 * @return the number of edges between node and other, 0 if they are not neighbours
+	 */
+	public int edgeCount(int node, int other) {
+		int i = indexOf(neighbours, start[node], start[node+1], other);
+		if(i == -1) {
+			return 0;
+		}
+		return edgeCounts[i];
+	}
+
+
+	/**
+	 * @param node a node
+	 * @param nodes a bitset of at least {@link #getWordsPerRow()} longs
+	 * @return the number of neighbours of node in the bitset
+	 */
+	public int countNeighboursIn(int node, long[] nodes) {
+		int base = node*wordsPerRow;
+		int ret = 0;
+		for(int w = 0; w < wordsPerRow; w++) {
+			ret += Long.bitCount(rows[base+w] & nodes[w]);
+		}
+		return ret;
+	}
+
+}
@@ -0,0 +1,213 @@
+package uk.ac.kent.dover.fastGraph;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+/**
+ * A scope for short lived off heap graphs. Off heap ByteBuffers are only freed when the garbage
+ * collector happens to collect their small heap objects, so making many temporary direct graphs,
+ * as motif and subgraph searches do, can run out of direct memory while the heap is almost empty.
+ * While an arena is open on a thread, small off heap stores made on that thread by
+ * {@link SegmentedBuffer#allocate(long, boolean)}, and so every direct FastGraph generated there, are
+ * carved from large pooled slabs. Closing the arena returns its slabs to the pool straight away,
+ * so off heap use is bounded by the slabs in use plus the pool.
+ * <p>
+ * Use in a try with resources block. Graphs made while the arena is open must not be used after it
+ * is closed, as their memory is reused. Buffers added later to a graph, such as label dictionaries,
+ * come from the arena the graph was made in, so graphs made before the arena opened are not affected by it.
+ * Arenas nest, closing an arena makes the enclosing one current again. An arena belongs to the thread
+ * that opened it, other threads allocate as usual.
+ * </p>
+ *
+ * @author Peter Rodgers
+ *
+ */
+public class BufferArena implements AutoCloseable {
+
+	public static final int SLAB_SIZE = 1 << 20; // 1MB
+	public static final int MAX_ARENA_ALLOCATION = SLAB_SIZE/4; // bigger stores are allocated directly, as without an arena
+	public static final int MAX_POOLED_SLABS = 64;
+	private static final int ALIGNMENT = 8;
+
+	private static final ArrayDeque<ByteBuffer> pool = new ArrayDeque<ByteBuffer>(); // guarded by itself
+	private static final ThreadLocal<BufferArena> current = new ThreadLocal<BufferArena>();
+	private static final byte[] ZEROS = new byte[4096];
+
+	private final BufferArena enclosing;
+	private final Thread owner;
+	private final ArrayList<ByteBuffer> slabs = new ArrayList<ByteBuffer>();
+	private ByteBuffer slab = null; // the slab being carved
+	private int slabPosition = 0;
+	private long allocatedBytes = 0;
+	private boolean closed = false;
+
+
+	/**
+	 * Use {@link #open()} to create.
+	 *
+	 * @param enclosing the arena open on the thread before this one, or null
+	 */
+	private BufferArena(BufferArena enclosing) {
+		this.enclosing = enclosing;
+		this.owner = Thread.currentThread();
+	}
+
+
+	/**
+	 * Open an arena on the current thread, which stays current until it is closed.
+	 *
+	 * @return the new arena
+	 */
+	public static BufferArena open() {
+		BufferArena ret = new BufferArena(current.get());
+		current.set(ret);
+		return ret;
+	}
+
+
+	/**
+	 * @return the arena open on the current thread, or null if there is none
+	 */
+	public static BufferArena current() {
+		return current.get();
+	}
+
+
+	/**
+	 * Make an arena current on this thread, so that buffers added to a graph come from the arena the graph was
+	 * created in. Pair with a second call to put back the arena returned.
+	 *
+	 * @param arena the arena to make current, or null for none
+	 * @return the arena that was current, or null
+	 */
+	static BufferArena use(BufferArena arena) {
+		BufferArena ret = current.get();
+		if(arena == null) {
+			current.remove();
+		} else {
+			current.set(arena);
+		}
+		return ret;
+	}
+
+
+	/**
+	 * Carve a zero filled off heap buffer from the arena's slabs. Synchronized, as a graph made
+	 * in the arena can be given more buffers on another thread, see {@link #use(BufferArena)}.
+	 *
+	 * @param size the number of bytes, no more than MAX_ARENA_ALLOCATION
+	 * @return a buffer of the given capacity, big endian
+	 */
+	synchronized ByteBuffer allocate(int size) {
+		if(closed) {
+			throw new IllegalStateException("Arena is closed");
+		}
+		if(size > MAX_ARENA_ALLOCATION) {
+			throw new IllegalArgumentException("Too large for an arena: "+size);
+		}
+		if(slab == null || slabPosition+size > SLAB_SIZE) {
+			slab = takeSlab();
+			slabs.add(slab);
+			slabPosition = 0;
+		}
+		ByteBuffer ret = slab.duplicate();
+		ret.clear();
+		ret.position(slabPosition);
+		ret.limit(slabPosition+size);
+		ret = ret.slice();
+		// slabs are reused, so clear what was there
+		while(ret.hasRemaining()) {
+			ret.put(ZEROS, 0, Math.min(ZEROS.length, ret.remaining()));
+		}
+		ret.clear();
+		slabPosition += (size+ALIGNMENT-1) & -ALIGNMENT;
+		allocatedBytes += size;
+		return ret;
+	}
+
+
+	/**
+	 * @return a slab from the pool, or a new one if the pool is empty
+	 */
+	private static ByteBuffer takeSlab() {
+		synchronized(pool) {
+			ByteBuffer ret = pool.poll();
+			if(ret != null) {
+				return ret;
+			}
+		}
+		return ByteBuffer.allocateDirect(SLAB_SIZE);
+	}
+
+
+	/**
+	 * Return the arena's slabs to the pool, and make the enclosing arena current. Slabs beyond
+	 * MAX_POOLED_SLABS are left for the garbage collector. Closing again does nothing.
+	 *
+	 * @throws IllegalStateException if called from another thread, or an arena opened inside this one is still open
+	 */
+	@Override
+	public synchronized void close() {
+		if(closed) {
+			return;
+		}
+		if(Thread.currentThread() != owner) {
+			throw new IllegalStateException("Arena closed by a thread that did not open it");
+		}
+		if(current.get() != this) {
+			throw new IllegalStateException("An arena opened inside this one is still open");
+		}
+		closed = true;
+		if(enclosing == null) {
+			current.remove();
+		} else {
+			current.set(enclosing);
+		}
+		synchronized(pool) {
+			for(ByteBuffer s : slabs) {
+				if(pool.size() >= MAX_POOLED_SLABS) {
+					break;
+				}
+				pool.push(s);
+			}
+		}
+		slabs.clear();
+		slab = null;
+	}
+
+
+	/**
+	 * @return the number of bytes given out by this arena
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+
+	/**
+	 * @return the number of slabs held by this arena
+	 */
+	public int getNumberOfSlabs() {
+		return slabs.size();
+	}
+
+
+	/**
+	 * @return true if the arena has been closed
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+
+	/**
+	 * @return the number of free slabs waiting in the pool
+	 */
+	public static int getNumberOfPooledSlabs() {
+		synchronized(pool) {
+			return pool.size();
+		}
+	}
+
+}
@@ -0,0 +1,634 @@
+package uk.ac.kent.dover.fastGraph;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Finds a canonical form of a graph, a byte string that is equal for two graphs exactly when they
+ * are isomorphic, so isomorphism testing is an equality test and isomorphism classes can be found
+ * with a hash map rather than pairwise tests. Multiple edges and self sourcing edges are counted,
+ * as in {@link ExactIsomorphism}. Optionally the graph is directed, node labels must match, and
+ * node ages must match.
+ * <p>
+ * The method follows nauty and bliss. Nodes are coloured by label, age and number of self sourcing
+ * edges, and the colouring is refined until every node in a colour class has the same number of edges
+ * to each class. If a class has more than one node, each of its nodes in turn is given its own class and
+ * the refinement repeated, giving a search tree whose leaves order all the nodes. The canonical form is the
+ * smallest graph encoding over the leaves. Two leaves with the same encoding give an automorphism
+ * of the graph, and automorphisms are used to skip branches known to give the same leaves.
+ * </p>
+ * Intended for the small graphs of motif and subgraph searches. The graph must not change while the
+ * labelling is being made.
+ *
+ * @author Peter Rodgers
+ *
+ */
+public class CanonicalLabelling {
+
+	private final int numberOfNodes;
+	private final int numberOfEdges;
+	private final boolean directed;
+	private final boolean nodeLabels;
+	private final boolean ages;
+
+	// neighbours in increasing order, with the number of edges to each
+	private final int[][] outNeighbours; // all neighbours if undirected
+	private final int[][] outCounts;
+	private final int[][] inNeighbours; // null if undirected
+	private final int[][] inCounts;
+	private final int[] selfSourcing; // number of self sourcing edges of each node
+	private final String[] labels; // null if labels are ignored
+	private final byte[] nodeAges; // null if ages are ignored
+
+	private byte[] bestForm = null;
+	private int[] bestOrder = null; // node at each canonical position
+	private final ArrayList<int[]> automorphisms = new ArrayList<int[]>();
+	private long numberOfLeaves = 0;
+
+	// refinement workspace
+	private final int[] cellCounts;
+	private final int[] touchedCells;
+
+
+	/**
+	 * Find the canonical form of a whole graph.
+	 *
+	 * @param g the graph
+	 * @param directed true if the graph is treated as directed, false if undirected
+	 * @param nodeLabels if true node labels are part of the form, if false they are ignored
+	 * @param ages if true node ages are part of the form, if false they are ignored
+	 */
+	public CanonicalLabelling(FastGraph g, boolean directed, boolean nodeLabels, boolean ages) {
+		this(SubgraphView.whole(g), directed, nodeLabels, ages);
+	}
+
+
+	/**
+	 * Find the canonical form of a subgraph, without building a FastGraph for it.
+	 *
+	 * @param view the graph
+	 * @param directed true if the graph is treated as directed, false if undirected
+	 * @param nodeLabels if true node labels are part of the form, if false they are ignored
+	 * @param ages if true node ages are part of the form, if false they are ignored
+	 */
+	public CanonicalLabelling(SubgraphView view, boolean directed, boolean nodeLabels, boolean ages) {
+		this.directed = directed;
+		this.nodeLabels = nodeLabels;
+		this.ages = ages;
+		numberOfNodes = view.getNumberOfNodes();
+		numberOfEdges = view.getNumberOfEdges();
+
+		selfSourcing = new int[numberOfNodes];
+		int[][] out = new int[numberOfNodes][];
+		int[][] in = new int[numberOfNodes][];
+		for(int n = 0; n < numberOfNodes; n++) {
+			if(directed) {
+				out[n] = view.getNodeConnectingOutNodes(n);
+				in[n] = view.getNodeConnectingInNodes(n);
+			} else {
+				out[n] = view.getNodeConnectingNodes(n);
+			}
+		}
+		outNeighbours = new int[numberOfNodes][];
+		outCounts = new int[numberOfNodes][];
+		countNeighbours(out, outNeighbours, outCounts);
+		if(directed) {
+			inNeighbours = new int[numberOfNodes][];
+			inCounts = new int[numberOfNodes][];
+			countNeighbours(in, inNeighbours, inCounts);
+		} else {
+			inNeighbours = null;
+			inCounts = null;
+		}
+		for(int e = 0; e < numberOfEdges; e++) {
+			if(view.getEdgeNode1(e) == view.getEdgeNode2(e)) {
+				selfSourcing[view.getEdgeNode1(e)]++;
+			}
+		}
+
+		labels = nodeLabels ? new String[numberOfNodes] : null;
+		nodeAges = ages ? new byte[numberOfNodes] : null;
+		for(int n = 0; n < numberOfNodes; n++) {
+			if(nodeLabels) {
+				labels[n] = view.getNodeLabel(n);
+			}
+			if(ages) {
+				nodeAges[n] = view.getNodeAge(n);
+			}
+		}
+
+		cellCounts = new int[numberOfNodes*2];
+		touchedCells = new int[numberOfNodes*2];
+
+		search();
+	}
+
+
+	/**
+	 * Turn connecting node lists, with repeats for multiple edges, into sorted distinct neighbours
+	 * and counts. Self sourcing edges are left out, they are counted separately.
+	 *
+	 * @param connecting the connecting nodes of each node
+	 * @param neighbours populated with the distinct neighbours of each node
+	 * @param counts populated with the number of edges to each neighbour
+	 */
+	private static void countNeighbours(int[][] connecting, int[][] neighbours, int[][] counts) {
+		for(int n = 0; n < connecting.length; n++) {
+			int[] sorted = connecting[n].clone();
+			Arrays.sort(sorted);
+			int[] distinct = new int[sorted.length];
+			int[] number = new int[sorted.length];
+			int size = 0;
+			for(int i = 0; i < sorted.length; i++) {
+				if(sorted[i] == n) {
+					continue;
+				}
+				if(size > 0 && distinct[size-1] == sorted[i]) {
+					number[size-1]++;
+				} else {
+					distinct[size] = sorted[i];
+					number[size] = 1;
+					size++;
+				}
+			}
+			neighbours[n] = Arrays.copyOf(distinct, size);
+			counts[n] = Arrays.copyOf(number, size);
+		}
+	}
+
+
+	/**
+	 * Colour the nodes, then search the tree of refined colourings.
+	 */
+	private void search() {
+		Integer[] sorted = new Integer[numberOfNodes];
+		for(int n = 0; n < numberOfNodes; n++) {
+			sorted[n] = n;
+		}
+		Comparator<Integer> colour = (a, b) -> compareColours(a, b);
+		Arrays.sort(sorted, colour);
+
+		// the partition is held as the nodes in order of cell, with each cell a run of positions
+		int[] lab = new int[numberOfNodes]; // node at each position
+		int[] cellOf = new int[numberOfNodes]; // first position of the cell of each node
+		int[] cellEnd = new int[numberOfNodes]; // for the first position of a cell, the position after its end
+		int start = 0;
+		for(int i = 0; i < numberOfNodes; i++) {
+			lab[i] = sorted[i];
+			if(i > 0 && colour.compare(sorted[i-1], sorted[i]) != 0) {
+				cellEnd[start] = i;
+				start = i;
+			}
+			cellOf[sorted[i]] = start;
+		}
+		if(numberOfNodes > 0) {
+			cellEnd[start] = numberOfNodes;
+		}
+
+		searchNode(lab, cellOf, cellEnd, new int[numberOfNodes], 0);
+	}
+
+
+	/**
+	 * @param a a node
+	 * @param b another node
+	 * @return the order of the starting colours of the nodes
+	 */
+	private int compareColours(int a, int b) {
+		if(nodeLabels) {
+			int ret = labels[a].compareTo(labels[b]);
+			if(ret != 0) {
+				return ret;
+			}
+		}
+		if(ages) {
+			int ret = Byte.compare(nodeAges[a], nodeAges[b]);
+			if(ret != 0) {
+				return ret;
+			}
+		}
+		return Integer.compare(selfSourcing[a], selfSourcing[b]);
+	}
+
+
+	/**
+	 * Refine the partition, then either record a leaf or branch on the first cell with more than one node.
+	 *
+	 * @param lab the node at each position, changed
+	 * @param cellOf the cell of each node, changed
+	 * @param cellEnd the end of each cell, changed
+	 * @param fixed the nodes given their own cells on the way to this tree node
+	 * @param depth the number of fixed nodes
+	 */
+	private void searchNode(int[] lab, int[] cellOf, int[] cellEnd, int[] fixed, int depth) {
+		refine(lab, cellOf, cellEnd);
+
+		int target = 0;
+		while(target < numberOfNodes && cellEnd[target] == target+1) {
+			target++;
+		}
+		if(target == numberOfNodes) {
+			leaf(lab);
+			return;
+		}
+
+		int end = cellEnd[target];
+		int[] cell = Arrays.copyOfRange(lab, target, end);
+		Arrays.sort(cell);
+		int[] tried = new int[cell.length];
+		int numberTried = 0;
+		for(int v : cell) {
+			if(numberTried > 0 && inTriedOrbit(v, tried, numberTried, fixed, depth)) {
+				continue;
+			}
+			tried[numberTried++] = v;
+
+			int[] childLab = lab.clone();
+			int[] childCellOf = cellOf.clone();
+			int[] childCellEnd = cellEnd.clone();
+			// v first in its own cell, the rest of the old cell after it
+			int position = target;
+			while(childLab[position] != v) {
+				position++;
+			}
+			childLab[position] = childLab[target];
+			childLab[target] = v;
+			childCellEnd[target] = target+1;
+			childCellEnd[target+1] = end;
+			for(int i = target+1; i < end; i++) {
+				childCellOf[childLab[i]] = target+1;
+			}
+			fixed[depth] = v;
+			searchNode(childLab, childCellOf, childCellEnd, fixed, depth+1);
+		}
+	}
+
+
+	/**
+	 * Tests whether a node is mapped to an already tried node by the automorphisms found so far that
+	 * fix the nodes on the path to the current tree node. If so, its branch gives the same leaves.
+	 *
+	 * @param v the node
+	 * @param tried the nodes already tried in the cell
+	 * @param numberTried the number of tried nodes
+	 * @param fixed the nodes fixed on the path
+	 * @param depth the number of fixed nodes
+	 * @return true if v is in the orbit of a tried node
+	 */
+	private boolean inTriedOrbit(int v, int[] tried, int numberTried, int[] fixed, int depth) {
+		int[] parent = null;
+		for(int[] automorphism : automorphisms) {
+			boolean fixesPath = true;
+			for(int i = 0; i < depth; i++) {
+				if(automorphism[fixed[i]] != fixed[i]) {
+					fixesPath = false;
+					break;
+				}
+			}
+			if(!fixesPath) {
+				continue;
+			}
+			if(parent == null) {
+				parent = new int[numberOfNodes];
+				for(int n = 0; n < numberOfNodes; n++) {
+					parent[n] = n;
+				}
+			}
+			for(int n = 0; n < numberOfNodes; n++) {
+				int a = find(parent, n);
+				int b = find(parent, automorphism[n]);
+				if(a != b) {
+					parent[Math.max(a, b)] = Math.min(a, b);
+				}
+			}
+		}
+		if(parent == null) {
+			return false;
+		}
+		int orbit = find(parent, v);
+		for(int i = 0; i < numberTried; i++) {
+			if(find(parent, tried[i]) == orbit) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+
+	/**
+	 * @param parent the union find forest
+	 * @param n a node
+	 * @return the root of the node's tree
+	 */
+	private static int find(int[] parent, int n) {
+		while(parent[n] != n) {
+			parent[n] = parent[parent[n]];
+			n = parent[n];
+		}
+		return n;
+	}
+
+
+	/**
+	 * Split cells until every node in a cell has the same number of edges to each cell. All cells are
+	 * split at once from the counts of the previous partition, and the parts are put in order of their
+	 * counts, so the result depends only on the structure, not on node ids.
+	 *
+	 * @param lab the node at each position, changed
+	 * @param cellOf the cell of each node, changed
+	 * @param cellEnd the end of each cell, changed
+	 */
+	private void refine(int[] lab, int[] cellOf, int[] cellEnd) {
+		long[][] signatures = new long[numberOfNodes][];
+		boolean changed = true;
+		while(changed) {
+			changed = false;
+			for(int n = 0; n < numberOfNodes; n++) {
+				signatures[n] = signature(n, cellOf);
+			}
+			Comparator<Integer> bySignature = (a, b) -> compareSignatures(signatures[a], signatures[b]);
+			int start = 0;
+			while(start < numberOfNodes) {
+				int end = cellEnd[start];
+				if(end-start > 1) {
+					Integer[] cell = new Integer[end-start];
+					for(int i = start; i < end; i++) {
+						cell[i-start] = lab[i];
+					}
+					Arrays.sort(cell, bySignature);
+					int cellStart = start;
+					for(int i = start; i < end; i++) {
+						lab[i] = cell[i-start];
+						if(i > start && bySignature.compare(cell[i-start-1], cell[i-start]) != 0) {
+							cellEnd[cellStart] = i;
+							cellStart = i;
+							changed = true;
+						}
+						cellOf[lab[i]] = cellStart;
+					}
+					cellEnd[cellStart] = end;
+				}
+				start = end;
+			}
+		}
+	}
+
+
+	/**
+	 * @param n a node
+	 * @param cellOf the cell of each node
+	 * @return the number of edges from the node to each cell, as cell and count pairs packed in longs, in
+	 * cell order. In edges of directed graphs use cells offset by the number of nodes.
+	 */
+	private long[] signature(int n, int[] cellOf) {
+		int touched = 0;
+		for(int i = 0; i < outNeighbours[n].length; i++) {
+			int cell = cellOf[outNeighbours[n][i]];
+			if(cellCounts[cell] == 0) {
+				touchedCells[touched++] = cell;
+			}
+			cellCounts[cell] += outCounts[n][i];
+		}
+		if(directed) {
+			for(int i = 0; i < inNeighbours[n].length; i++) {
+				int cell = cellOf[inNeighbours[n][i]]+numberOfNodes;
+				if(cellCounts[cell] == 0) {
+					touchedCells[touched++] = cell;
+				}
+				cellCounts[cell] += inCounts[n][i];
+			}
+		}
+		Arrays.sort(touchedCells, 0, touched);
+		long[] ret = new long[touched];
+		for(int i = 0; i < touched; i++) {
+			int cell = touchedCells[i];
+			ret[i] = ((long)cell << 32) | cellCounts[cell];
+			cellCounts[cell] = 0;
+		}
+		return ret;
+	}
+
+
+	/**
+	 * @param a a signature
+	 * @param b another signature
+	 * @return the lexicographic order of the signatures
+	 */
+	private static int compareSignatures(long[] a, long[] b) {
+		int length = Math.min(a.length, b.length);
+		for(int i = 0; i < length; i++) {
+			if(a[i] != b[i]) {
+				return Long.compare(a[i], b[i]);
+			}
+		}
+		return Integer.compare(a.length, b.length);
+	}
+
+
+	/**
+	 * Compare the encoding of the graph in the leaf order with the best so far. Keep the smaller,
+	 * and record an automorphism if they are equal.
+	 *
+	 * @param lab the node at each position, every cell has one node
+	 */
+	private void leaf(int[] lab) {
+		numberOfLeaves++;
+		byte[] form = encode(lab);
+		if(bestForm == null) {
+			bestForm = form;
+			bestOrder = lab.clone();
+			return;
+		}
+		int comparison = compareForms(form, bestForm);
+		if(comparison < 0) {
+			bestForm = form;
+			bestOrder = lab.clone();
+		} else if(comparison == 0) {
+			int[] automorphism = new int[numberOfNodes];
+			boolean identity = true;
+			for(int i = 0; i < numberOfNodes; i++) {
+				automorphism[bestOrder[i]] = lab[i];
+				if(bestOrder[i] != lab[i]) {
+					identity = false;
+				}
+			}
+			if(!identity) {
+				automorphisms.add(automorphism);
+			}
+		}
+	}
+
+
+	/**
+	 * The encoding, as unsigned variable length ints: the options, the number of nodes and edges, then for
+	 * each position the label chars, the age and the number of self sourcing edges of the node there, then
+	 * for each position the number of neighbours and the position and number of edges of each neighbour
+	 * in increasing order. For undirected graphs only neighbours at later positions are listed, for directed
+	 * graphs the nodes pointed at.
+	 *
+	 * @param lab the node at each position
+	 * @return the encoding
+	 */
+	private byte[] encode(int[] lab) {
+		int[] position = new int[numberOfNodes];
+		for(int i = 0; i < numberOfNodes; i++) {
+			position[lab[i]] = i;
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream(16+numberOfNodes*4+numberOfEdges*4);
+		int options = (directed ? 1 : 0) | (nodeLabels ? 2 : 0) | (ages ? 4 : 0);
+		writeVarint(out, options);
+		writeVarint(out, numberOfNodes);
+		writeVarint(out, numberOfEdges);
+		for(int i = 0; i < numberOfNodes; i++) {
+			int n = lab[i];
+			if(nodeLabels) {
+				byte[] label = labels[n].getBytes(StandardCharsets.UTF_8);
+				writeVarint(out, label.length);
+				out.write(label, 0, label.length);
+			}
+			if(ages) {
+				out.write(nodeAges[n]);
+			}
+			writeVarint(out, selfSourcing[n]);
+		}
+		long[] pairs = new long[numberOfNodes];
+		for(int i = 0; i < numberOfNodes; i++) {
+			int n = lab[i];
+			int size = 0;
+			for(int j = 0; j < outNeighbours[n].length; j++) {
+				int p = position[outNeighbours[n][j]];
+				if(directed || p > i) {
+					pairs[size++] = ((long)p << 32) | outCounts[n][j];
+				}
+			}
+			Arrays.sort(pairs, 0, size);
+			writeVarint(out, size);
+			for(int j = 0; j < size; j++) {
+				writeVarint(out, (int)(pairs[j] >>> 32));
+				writeVarint(out, (int)pairs[j]);
+			}
+		}
+		return out.toByteArray();
+	}
+
+
+	/**
+	 * @param out where to write
+	 * @param value a non negative int, written seven bits at a time, low bits first
+	 */
+	private static void writeVarint(ByteArrayOutputStream out, int value) {
+		while((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+
+	/**
+	 * @param a a form
+	 * @param b another form
+	 * @return the order of the forms, comparing bytes as unsigned, then length
+	 */
+	private static int compareForms(byte[] a, byte[] b) {
+		int length = Math.min(a.length, b.length);
+		for(int i = 0; i < length; i++) {
+			if(a[i] != b[i]) {
+				return Integer.compare(a[i] & 0xFF, b[i] & 0xFF);
+			}
+		}
+		return Integer.compare(a.length, b.length);
+	}
+
+
+	/**
+	 * @return the canonical form, equal for two graphs labelled with the same options exactly when they are isomorphic. A copy
+	 */
+	public byte[] getCanonicalForm() {
+		return bestForm.clone();
+	}
+
+
+	/**
+	 * @return the canonical form as a String of one char per byte, for use as a hash map key
+	 */
+	public String getCanonicalString() {
+		return new String(bestForm, StandardCharsets.ISO_8859_1);
+	}
+
+
+	/**
+	 * @param other a labelling made with the same options
+	 * @return true if the graphs are isomorphic
+	 */
+	public boolean sameForm(CanonicalLabelling other) {
+		return Arrays.equals(bestForm, other.bestForm);
+	}
+
+
+	/**
+	 * @return the node at each canonical position, a copy
+	 */
+	public int[] getCanonicalOrder() {
+		return bestOrder.clone();
+	}
+
+
+	/**
+	 * If the graphs are isomorphic, this is an isomorphism between them.
+	 *
+	 * @param other a labelling of another graph with the same form
+	 * @return for each node of this graph, the node of the other graph at the same canonical position
+	 */
+	public int[] mappingTo(CanonicalLabelling other) {
+		int[] ret = new int[numberOfNodes];
+		for(int i = 0; i < numberOfNodes; i++) {
+			ret[bestOrder[i]] = other.bestOrder[i];
+		}
+		return ret;
+	}
+
+
+	/**
+	 * @return the automorphisms found by the search, each giving the image of every node. Together they generate the automorphism group
+	 */
+	public ArrayList<int[]> getAutomorphisms() {
+		ArrayList<int[]> ret = new ArrayList<int[]>(automorphisms.size());
+		for(int[] a : automorphisms) {
+			ret.add(a.clone());
+		}
+		return ret;
+	}
+
+
+	/**
+	 * @return the number of leaves of the search tree visited, a measure of the work done
+	 */
+	public long getNumberOfLeaves() {
+		return numberOfLeaves;
+	}
+
+
+	/**
+	 * Check whether two graphs are isomorphic by comparing canonical forms.
+	 *
+	 * @param g1 one graph
+	 * @param g2 the other graph
+	 * @param directed true if the graphs are treated as directed, false if undirected
+	 * @param nodeLabels if true the node labels must be equal for a match, if false they are ignored
+	 * @param ages if true the node ages must be equal for a match, if false they are ignored
+	 * @return true if the graphs are isomorphic
+	 */
+	public static boolean isomorphic(FastGraph g1, FastGraph g2, boolean directed, boolean nodeLabels, boolean ages) {
+		if(g1.getNumberOfNodes() != g2.getNumberOfNodes() || g1.getNumberOfEdges() != g2.getNumberOfEdges()) {
+			return false;
+		}
+		CanonicalLabelling c1 = new CanonicalLabelling(g1, directed, nodeLabels, ages);
+		CanonicalLabelling c2 = new CanonicalLabelling(g2, directed, nodeLabels, ages);
+		return c1.sameForm(c2);
+	}
+
+}
@@ -0,0 +1,129 @@
+package uk.ac.kent.dover.fastGraph;
+
+import java.util.Arrays;
+
+/**
+ * Encoding for the compressed connectionBuf format, see {@link FastGraph#compressConnections()}.
+ * <p>
+ * Each in and each out connection list of a node is an independent block, starting at the
+ * offset held in the node record. A block is sorted by connecting node, then by edge, and each
+ * edge/node pair is stored as two varints (7 bits per byte, high bit set on all but the last byte).
+ * The node is the difference from the previous node in the block, except the first node which
+ * is the zigzag encoded difference from the node owning the list. The edge is the zigzag encoded
+ * difference from the previous edge in the block, starting from 0. Sparse graphs with locally
+ * numbered nodes usually need 2 to 4 bytes per pair rather than 8.
+ * </p>
+ * Decoding is done by {@link ConnectionIterator}.
+ *
+ * @author Peter Rodgers
+ *
+ */
+public class CompressedConnections {
+
+	/**
+	 * No instances, static methods only.
+	 */
+	private CompressedConnections() {
+	}
+
+
+	/**
+	 * Maps signed values to unsigned so that small negative differences have short encodings.
+	 *
+	 * @param value the signed value
+	 * @return the zigzag encoding
+	 */
+	public static int zigZag(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+
+	/**
+	 * @param value a zigzag encoded value
+	 * @return the original signed value
+	 */
+	public static int unZigZag(int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+
+	/**
+	 * @param value treated as unsigned
+	 * @return the number of bytes the varint encoding of value takes
+	 */
+	public static int varIntSize(int value) {
+		int size = 1;
+		while((value & ~0x7F) != 0) {
+			value >>>= 7;
+			size++;
+		}
+		return size;
+	}
+
+
+	/**
+	 * Write value as a varint.
+	 *
+	 * @param buf the buffer to write to
+	 * @param offset the position of the first byte
+	 * @param value treated as unsigned
+	 * @return the offset after the last byte written
+	 */
+	public static long writeVarInt(SegmentedBuffer buf, long offset, int value) {
+		while((value & ~0x7F) != 0) {
+			buf.put(offset++,(byte)((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buf.put(offset++,(byte)value);
+		return offset;
+	}
+
+
+	/**
+	 * Packs an edge/node pair into a long so that sorting orders by node, then by edge.
+	 *
+	 * @param node the connecting node, must not be negative
+	 * @param edge the connecting edge, must not be negative
+	 * @return the packed pair
+	 */
+	public static long pack(int node, int edge) {
+		return ((long)node << 32) | (edge & 0xFFFFFFFFL);
+	}
+
+
+	/**
+	 * Sorts and encodes one connection list. If buf is null nothing is written, which
+	 * allows the size of the compressed buffer to be found before it is allocated.
+	 *
+	 * @param pairs the list as packed pairs from {@link #pack(int, int)}, this is sorted in place
+	 * @param length the number of pairs in the list
+	 * @param owner the node the list belongs to
+	 * @param buf the buffer to write to, or null to just measure
+	 * @param offset the position in buf to write the block
+	 * @return the offset after the end of the block
+	 */
+	public static long encodeList(long[] pairs, int length, int owner, SegmentedBuffer buf, long offset) {
+		Arrays.sort(pairs,0,length);
+		int previousNode = owner;
+		int previousEdge = 0;
+		for(int i = 0; i < length; i++) {
+			int node = (int)(pairs[i] >>> 32);
+			int edge = (int)pairs[i];
+			int nodeCode = node-previousNode;
+			if(i == 0) {
+				nodeCode = zigZag(nodeCode);
+			}
+			int edgeCode = zigZag(edge-previousEdge);
+			if(buf == null) {
+				offset += varIntSize(nodeCode)+varIntSize(edgeCode);
+			} else {
+				offset = writeVarInt(buf,offset,nodeCode);
+				offset = writeVarInt(buf,offset,edgeCode);
+			}
+			previousNode = node;
+			previousEdge = edge;
+		}
+		return offset;
+	}
+
+}
@@ -0,0 +1,345 @@
+package uk.ac.kent.dover.fastGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * The connected components of a FastGraph, ignoring edge direction, found in one pass over the
+ * edges with a union-find. Large graphs split the edges between threads, which join nodes in a
+ * shared lock free union-find. Components are numbered in order of their lowest node.
+ * <p>
+ * The nodes and edges of a component are only gathered, and a component only built as a
+ * subgraph, when asked for. The graph must not change while this is in use.
+ * </p>
+ *
+ * @author Peter Rodgers
+ *
+ */
+public class ConnectedComponents {
+
+	private static final int PARALLEL_THRESHOLD = 100000; // graphs with fewer edges are done on the calling thread
+
+	private final FastGraph g;
+	private final int[] componentIds;
+	private final int[] componentSizes;
+
+	// gathered on first request, the nodes and edges of component c are from start[c] to start[c+1]-1
+	private int[] nodeStart;
+	private int[] componentNodes;
+	private int[] edgeStart;
+	private int[] componentEdges;
+
+
+	/**
+	 * Find the components, using a thread for each processor if the graph is large.
+	 *
+	 * @param g the graph
+	 */
+	public ConnectedComponents(FastGraph g) {
+		this(g, Runtime.getRuntime().availableProcessors());
+	}
+
+
+	/**
+	 * Find the components.
+	 *
+	 * @param g the graph
+	 * @param threads the most threads to use, the calling thread is used alone if this is 1 or the graph is small
+	 */
+	public ConnectedComponents(FastGraph g, int threads) {
+		this.g = g;
+long time = Debugger.createTime();
+		int numberOfNodes = g.getNumberOfNodes();
+		AtomicIntegerArray parent = new AtomicIntegerArray(numberOfNodes);
+		for(int n = 0; n < numberOfNodes; n++) {
+			parent.set(n, n);
+		}
+
+		if(threads <= 1 || g.getNumberOfEdges() < PARALLEL_THRESHOLD) {
+			unionEdges(parent, 0, g.getNumberOfEdges());
+		} else {
+			unionEdgesInParallel(parent, threads);
+		}
+
+		// number the roots in node order, so components are in order of their lowest node
+		componentIds = new int[numberOfNodes];
+		int count = 0;
+		for(int n = 0; n < numberOfNodes; n++) {
+			int root = find(parent, n);
+			if(root == n) {
+				componentIds[n] = count;
+				count++;
+			} else {
+				componentIds[n] = componentIds[root]; // roots are the lowest node in their component, so already numbered
+			}
+		}
+		componentSizes = new int[count];
+		for(int n = 0; n < numberOfNodes; n++) {
+			componentSizes[componentIds[n]]++;
+		}
+Debugger.outputTime("found "+count+" connected components",time);
+	}
+
+
+	/**
+	 * Join the ends of each edge, splitting the edges between threads.
+	 *
+	 * @param parent the union-find
+	 * @param threads the number of threads
+	 */
+	private void unionEdgesInParallel(final AtomicIntegerArray parent, int threads) {
+		int numberOfEdges = g.getNumberOfEdges();
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(threads);
+		long chunk = (numberOfEdges+threads-1)/threads;
+		for(int t = 0; t < threads; t++) {
+			final int start = (int)Math.min(numberOfEdges, t*chunk);
+			final int end = (int)Math.min(numberOfEdges, (t+1)*chunk);
+			tasks.add(() -> {
+				unionEdges(parent, start, end);
+				return null;
+			});
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			for(Future<Void> f : executor.invokeAll(tasks)) {
+				f.get();
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			// joining is idempotent, so finish on this thread whatever the tasks got through
+			unionEdges(parent, 0, numberOfEdges);
+		} catch(ExecutionException e) {
+			if(e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException)e.getCause();
+			}
+			throw new IllegalStateException("Failed finding connected components", e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+
+	/**
+	 * @param parent the union-find
+	 * @param start the first edge to join
+	 * @param end one past the last edge to join
+	 */
+	private void unionEdges(AtomicIntegerArray parent, int start, int end) {
+		for(int e = start; e < end; e++) {
+			union(parent, g.getEdgeNode1(e), g.getEdgeNode2(e));
+		}
+	}
+
+
+	/**
+	 * Join the sets of two nodes. The root with the larger index is pointed at the smaller, so the
+	 * root of a set is always its lowest node, and a failed compare and set means another thread
+	 * joined first, so the roots are found again.
+	 *
+	 * @param parent the union-find
+	 * @param a a node
+	 * @param b another node
+	 */
+	private static void union(AtomicIntegerArray parent, int a, int b) {
+		while(true) {
+			a = find(parent, a);
+			b = find(parent, b);
+			if(a == b) {
+				return;
+			}
+			if(a < b) {
+				int temp = a;
+				a = b;
+				b = temp;
+			}
+			if(parent.compareAndSet(a, a, b)) {
+				return;
+			}
+		}
+	}
+
+
+	/**
+	 * Find the root of a node, halving the path on the way.
+	 *
+	 * @param parent the union-find
+	 * @param n a node
+	 * @return the root of the set containing n
+	 */
+	private static int find(AtomicIntegerArray parent, int n) {
+		while(true) {
+			int p = parent.get(n);
+			if(p == n) {
+				return n;
+			}
+			int grandparent = parent.get(p);
+			if(grandparent != p) {
+				parent.compareAndSet(n, p, grandparent);
+			}
+			n = grandparent;
+		}
+	}
+
+
+	/**
+	 * @return the number of components, 0 for an empty graph
+	 */
+	public int getNumberOfComponents() {
+		return componentSizes.length;
+	}
+
+
+	/**
+	 * @return the component of each node. Not copied, so must not be changed
+	 */
+	public int[] getComponentIds() {
+		return componentIds;
+	}
+
+
+	/**
+	 * @param nodeIndex a node
+	 * @return the component of the node
+	 */
+	public int getComponentId(int nodeIndex) {
+		return componentIds[nodeIndex];
+	}
+
+
+	/**
+	 * @return the number of nodes in each component. Not copied, so must not be changed
+	 */
+	public int[] getComponentSizes() {
+		return componentSizes;
+	}
+
+
+	/**
+	 * @param component a component
+	 * @return the nodes of the component, in node order
+	 */
+	public int[] getComponentNodes(int component) {
+		gather();
+		return Arrays.copyOfRange(componentNodes, nodeStart[component], nodeStart[component+1]);
+	}
+
+
+	/**
+	 * @param component a component
+	 * @return the edges of the component, in edge order
+	 */
+	public int[] getComponentEdges(int component) {
+		gather();
+		return Arrays.copyOfRange(componentEdges, edgeStart[component], edgeStart[component+1]);
+	}
+
+
+	/**
+	 * @param component a component
+	 * @return a view of the component, with nodes and edges in the order of the graph
+	 */
+	public SubgraphView getComponentView(int component) {
+		return SubgraphView.of(g, getComponentNodes(component), getComponentEdges(component));
+	}
+
+
+	/**
+	 * Build a component as a new graph, named after the graph with the component number appended.
+	 * Nodes are in breadth first order from the lowest node of the component, following the
+	 * connection lists of the graph, in edges first, as {@link Connected} visits them. Edges
+	 * are in the order of the graph.
+	 *
+	 * @param component a component
+	 * @return a new graph of the component
+	 */
+	public FastGraph getComponentGraph(int component) {
+		int[] nodes = getComponentNodes(component);
+		int[] edges = getComponentEdges(component);
+		// nodes are sorted, so a node is found by binary search, then given its new index in breadth first order
+		int[] newIndex = new int[nodes.length];
+		int[] queue = new int[nodes.length];
+		boolean[] visited = new boolean[nodes.length];
+		int head = 0;
+		int tail = 0;
+		if(nodes.length > 0) {
+			queue[tail++] = nodes[0];
+			visited[0] = true;
+		}
+		ConnectionIterator connections = g.getConnectionIterator();
+		while(head < tail) {
+			int n = queue[head];
+			newIndex[Arrays.binarySearch(nodes, n)] = head;
+			head++;
+			connections.reset(n);
+			while(connections.hasNext()) {
+				connections.next();
+				int connectingNode = connections.getNode();
+				int position = Arrays.binarySearch(nodes, connectingNode);
+				if(!visited[position]) {
+					queue[tail++] = connectingNode;
+					visited[position] = true;
+				}
+			}
+		}
+		ArrayList<NodeStructure> nsList = new ArrayList<NodeStructure>(nodes.length);
+		for(int i = 0; i < nodes.length; i++) {
+			NodeStructure ns = g.generateNodeStructure(queue[i]);
+			ns.setId(i);
+			nsList.add(ns);
+		}
+		ArrayList<EdgeStructure> esList = new ArrayList<EdgeStructure>(edges.length);
+		for(int i = 0; i < edges.length; i++) {
+			EdgeStructure es = g.generateEdgeStructure(edges[i]);
+			es.setId(i);
+			es.setNode1(newIndex[Arrays.binarySearch(nodes, es.getNode1())]);
+			es.setNode2(newIndex[Arrays.binarySearch(nodes, es.getNode2())]);
+			esList.add(es);
+		}
+		return FastGraph.structureFactory(g.getName()+"-"+component, g.getGeneration(), nsList, esList, g.getDirect());
+	}
+
+
+	/**
+	 * Group the nodes and edges by component, if not already done. Edges are in the component of their first node.
+	 */
+	private synchronized void gather() {
+		if(nodeStart != null) {
+			return;
+		}
+		int components = componentSizes.length;
+		int[] starts = new int[components+1];
+		for(int c = 0; c < components; c++) {
+			starts[c+1] = starts[c]+componentSizes[c];
+		}
+		int[] position = Arrays.copyOf(starts, components);
+		componentNodes = new int[componentIds.length];
+		for(int n = 0; n < componentIds.length; n++) {
+			componentNodes[position[componentIds[n]]++] = n;
+		}
+
+		int numberOfEdges = g.getNumberOfEdges();
+		int[] edgeComponent = new int[numberOfEdges];
+		edgeStart = new int[components+1];
+		for(int e = 0; e < numberOfEdges; e++) {
+			edgeComponent[e] = componentIds[g.getEdgeNode1(e)];
+			edgeStart[edgeComponent[e]+1]++;
+		}
+		for(int c = 0; c < components; c++) {
+			edgeStart[c+1] += edgeStart[c];
+		}
+		position = Arrays.copyOf(edgeStart, components);
+		componentEdges = new int[numberOfEdges];
+		for(int e = 0; e < numberOfEdges; e++) {
+			componentEdges[position[edgeComponent[e]]++] = e;
+		}
+		nodeStart = starts;
+	}
+
+}
@@ -0,0 +1,379 @@
+package uk.ac.kent.dover.fastGraph;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Steps through the edge/node pairs connecting a node, reading connectionBuf directly.
+ * Works with both the plain and the compressed connection formats, decoding the compressed
+ * format as it goes. One iterator can be reused for many nodes with the reset methods, so
+ * no objects are created while iterating.
+ * <p>
+ * Usage:
+ * <pre>
+ * ConnectionIterator it = new ConnectionIterator(g);
+ * it.reset(n);
+ * while(it.hasNext()) {
+ *     it.next();
+ *     int edge = it.getEdge();
+ *     int node = it.getNode();
+ * }
+ * </pre>
+ * In edges come before out edges. The connections visited can be restricted by node and edge
+ * age and type with the filter methods, which apply until cleared, so a filtered iterator can be
+ * set up once and reset for each node. {@link #resetBetween(int, int)} visits just the connections
+ * between two nodes, with a binary search when the graph's connections are sorted.
+ * Not thread safe, use one iterator per thread.
+ *
+ * @author Peter Rodgers
+ *
+ */
+public class ConnectionIterator {
+
+	private final FastGraph g;
+
+	private SegmentedBuffer nodeBuf;
+	private SegmentedBuffer connectionBuf;
+	private boolean compressed;
+
+	private int owner; // the node whose connections are being visited
+	private long offset; // position of the next pair in connectionBuf
+	private int listRemaining; // pairs left in the current list
+	private int pendingOut; // size of the out list still to visit after the in list, 0 if none
+	private long pendingOutOffset; // start of the out list still to visit
+	private boolean firstInList;
+	private int node = -1;
+	private int edge = -1;
+	private boolean ready = false; // true if hasNext() has moved to a pair that next() has not yet returned
+
+	private boolean filtered = false; // true if any filter applies, including onlyNode
+	private int onlyNode = -1; // if not -1, only visit connections to this node, cleared on reset
+	private boolean filterNodeAge = false;
+	private byte nodeAge;
+	private boolean filterNodeType = false;
+	private byte nodeType;
+	private boolean filterEdgeAge = false;
+	private byte edgeAge;
+	private boolean filterEdgeType = false;
+	private byte edgeType;
+
+
+	/**
+	 * @param g the graph to iterate over
+	 */
+	public ConnectionIterator(FastGraph g) {
+		this.g = g;
+	}
+
+
+	/**
+	 * Only visit connections to nodes of the given age.
+	 *
+	 * @param age the age of the connecting nodes to visit
+	 * @return this iterator
+	 */
+	public ConnectionIterator filterNodeAge(byte age) {
+		filterNodeAge = true;
+		nodeAge = age;
+		filtered = true;
+		return this;
+	}
+
+
+	/**
+	 * Only visit connections to nodes of the given type.
+	 *
+	 * @param type the type of the connecting nodes to visit
+	 * @return this iterator
+	 */
+	public ConnectionIterator filterNodeType(byte type) {
+		filterNodeType = true;
+		nodeType = type;
+		filtered = true;
+		return this;
+	}
+
+
+	/**
+	 * Only visit connections on edges of the given age.
+	 *
+	 * @param age the age of the edges to visit
+	 * @return this iterator
+	 */
+	public ConnectionIterator filterEdgeAge(byte age) {
+		filterEdgeAge = true;
+		edgeAge = age;
+		filtered = true;
+		return this;
+	}
+
+
+	/**
+	 * Only visit connections on edges of the given type.
+	 *
+	 * @param type the type of the edges to visit
+	 * @return this iterator
+	 */
+	public ConnectionIterator filterEdgeType(byte type) {
+		filterEdgeType = true;
+		edgeType = type;
+		filtered = true;
+		return this;
+	}
+
+
+	/**
+	 * Remove all filters.
+	 *
+	 * @return this iterator
+	 */
+	public ConnectionIterator clearFilters() {
+		filtered = false;
+		onlyNode = -1;
+		filterNodeAge = false;
+		filterNodeType = false;
+		filterEdgeAge = false;
+		filterEdgeType = false;
+		return this;
+	}
+
+
+	/**
+	 * Start iterating over all the connections of a node, in then out.
+	 *
+	 * @param nodeIndex the node
+	 * @return this iterator
+	 */
+	public ConnectionIterator reset(int nodeIndex) {
+		return reset(nodeIndex, true, true);
+	}
+
+
+	/**
+	 * Start iterating over the connections on edges entering a node.
+	 *
+	 * @param nodeIndex the node
+	 * @return this iterator
+	 */
+	public ConnectionIterator resetIn(int nodeIndex) {
+		return reset(nodeIndex, true, false);
+	}
+
+
+	/**
+	 * Start iterating over the connections on edges leaving a node.
+	 *
+	 * @param nodeIndex the node
+	 * @return this iterator
+	 */
+	public ConnectionIterator resetOut(int nodeIndex) {
+		return reset(nodeIndex, false, true);
+	}
+
+
+	/**
+	 * Start iterating over the connections between two nodes, in either direction, so the
+	 * edges visited are those of {@link FastGraph#edgesBetween(int, int)}. If the graph's
+	 * connections are sorted and not compressed, the start and end of the pairs with the other
+	 * node are found with a binary search of each list, otherwise the lists are scanned.
+	 * Any filters also apply.
+	 *
+	 * @param nodeIndex the node whose connections are visited
+	 * @param other the node at the other end of the edges to visit
+	 * @return this iterator
+	 */
+	public ConnectionIterator resetBetween(int nodeIndex, int other) {
+		reset(nodeIndex, true, true);
+		if(!g.isConnectionsSorted() || compressed) {
+			onlyNode = other;
+			filtered = true;
+			return this;
+		}
+		int first = g.searchSortedConnections(offset, listRemaining, other, false);
+		int end = g.searchSortedConnections(offset, listRemaining, other, true);
+		offset += (long)first*FastGraph.CONNECTION_PAIR_SIZE;
+		listRemaining = end-first;
+		first = g.searchSortedConnections(pendingOutOffset, pendingOut, other, false);
+		end = g.searchSortedConnections(pendingOutOffset, pendingOut, other, true);
+		pendingOutOffset += (long)first*FastGraph.CONNECTION_PAIR_SIZE;
+		pendingOut = end-first;
+		return this;
+	}
+
+
+	/**
+	 * @param nodeIndex the node
+	 * @param in include the in list
+	 * @param out include the out list
+	 * @return this iterator
+	 */
+	ConnectionIterator reset(int nodeIndex, boolean in, boolean out) {
+		// fetched each time as compressing the graph replaces the buffers
+		nodeBuf = g.getSegmentedNodeBuf();
+		connectionBuf = g.getSegmentedConnectionBuf();
+		compressed = g.isConnectionsCompressed();
+		owner = nodeIndex;
+		pendingOut = 0;
+		if(onlyNode != -1) {
+			onlyNode = -1;
+			filtered = filterNodeAge || filterNodeType || filterEdgeAge || filterEdgeType;
+		}
+		if(in) {
+			offset = nodeBuf.getLong(FastGraph.NODE_IN_CONNECTION_START_OFFSET+(long)nodeIndex*FastGraph.NODE_BYTE_SIZE);
+			listRemaining = g.getNodeInDegree(nodeIndex);
+			if(out) {
+				pendingOutOffset = nodeBuf.getLong(FastGraph.NODE_OUT_CONNECTION_START_OFFSET+(long)nodeIndex*FastGraph.NODE_BYTE_SIZE);
+				pendingOut = g.getNodeOutDegree(nodeIndex);
+			}
+		} else {
+			offset = nodeBuf.getLong(FastGraph.NODE_OUT_CONNECTION_START_OFFSET+(long)nodeIndex*FastGraph.NODE_BYTE_SIZE);
+			listRemaining = g.getNodeOutDegree(nodeIndex);
+		}
+		firstInList = true;
+		node = -1;
+		edge = -1;
+		ready = false;
+		return this;
+	}
+
+
+	/**
+	 * @return true if there is another pair to visit
+	 */
+	public boolean hasNext() {
+		if(!filtered) {
+			return listRemaining > 0 || pendingOut > 0;
+		}
+		if(ready) {
+			return true;
+		}
+		while(listRemaining > 0 || pendingOut > 0) {
+			advance();
+			if(passesFilters()) {
+				ready = true;
+				return true;
+			}
+		}
+		return false;
+	}
+
+
+	/**
+	 * Move to the next edge/node pair, read it with {@link #getEdge()} and {@link #getNode()}.
+	 *
+	 * @throws NoSuchElementException if there are no more pairs
+	 */
+	public void next() {
+		if(!filtered) {
+			advance();
+			return;
+		}
+		if(!hasNext()) {
+			throw new NoSuchElementException("No more connections for node "+owner);
+		}
+		ready = false;
+	}
+
+
+	/**
+	 * @return the number of pairs left to visit, this visits them all when filtered
+	 */
+	public int countRemaining() {
+		int ret = 0;
+		while(hasNext()) {
+			next();
+			ret++;
+		}
+		return ret;
+	}
+
+
+	/**
+	 * @return true if the current pair passes all filters
+	 */
+	private boolean passesFilters() {
+		if(onlyNode != -1 && node != onlyNode) {
+			return false;
+		}
+		if(filterNodeAge && g.getNodeAge(node) != nodeAge) {
+			return false;
+		}
+		if(filterNodeType && g.getNodeType(node) != nodeType) {
+			return false;
+		}
+		if(filterEdgeAge && g.getEdgeAge(edge) != edgeAge) {
+			return false;
+		}
+		if(filterEdgeType && g.getEdgeType(edge) != edgeType) {
+			return false;
+		}
+		return true;
+	}
+
+
+	/**
+	 * Move to the next pair, ignoring filters.
+	 */
+	private void advance() {
+		if(listRemaining == 0) {
+			if(pendingOut == 0) {
+				throw new NoSuchElementException("No more connections for node "+owner);
+			}
+			offset = pendingOutOffset;
+			listRemaining = pendingOut;
+			pendingOut = 0;
+			firstInList = true;
+		}
+		listRemaining--;
+
+		if(!compressed) {
+			edge = connectionBuf.getInt(offset+FastGraph.CONNECTION_EDGE_OFFSET);
+			node = connectionBuf.getInt(offset+FastGraph.CONNECTION_NODE_OFFSET);
+			offset += FastGraph.CONNECTION_PAIR_SIZE;
+			return;
+		}
+
+		int nodeCode = readVarInt();
+		int edgeCode = readVarInt();
+		if(firstInList) {
+			node = owner+CompressedConnections.unZigZag(nodeCode);
+			edge = CompressedConnections.unZigZag(edgeCode);
+			firstInList = false;
+		} else {
+			node += nodeCode;
+			edge += CompressedConnections.unZigZag(edgeCode);
+		}
+	}
+
+
+	/**
+	 * @return the edge of the current pair
+	 */
+	public int getEdge() {
+		return edge;
+	}
+
+
+	/**
+	 * @return the node at the other end of the edge of the current pair
+	 */
+	public int getNode() {
+		return node;
+	}
+
+
+	/**
+	 * @return the varint at offset, offset is moved past it
+	 */
+	private int readVarInt() {
+		int ret = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = connectionBuf.get(offset++);
+			ret |= (b & 0x7F) << shift;
+			shift += 7;
+		} while(b < 0);
+		return ret;
+	}
+
+}
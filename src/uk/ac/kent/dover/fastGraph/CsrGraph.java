@@ -0,0 +1,239 @@
+package uk.ac.kent.dover.fastGraph;
+
+/**
+ * A snapshot of the structure of a FastGraph in compressed sparse row form, held in plain int arrays
+ * for compute heavy algorithms. The connections of node n in a direction are at positions
+ * offsets[n] to offsets[n+1]-1 of the targets and edge id arrays of that direction, in the same order
+ * as the FastGraph connection lists. The undirected lists hold the in connections of a node followed
+ * by its out connections, as {@link FastGraph#getNodeConnectingNodes(int)}.
+ * <p>
+ * Create with {@link FastGraph#toCsr()}. Labels, weights, types and ages are not copied. The arrays
+ * are returned directly, without copying, and must not be changed. The snapshot does not change
+ * if the graph does.
+ * </p>
+ *
+ * @author Peter Rodgers
+ *
+ */
+public class CsrGraph {
+
+	/** The longest array the undirected lists can be, a little under Integer.MAX_VALUE as some VMs reserve header words */
+	static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE-8;
+
+	private final int numberOfNodes;
+	private final int numberOfEdges;
+
+	private final int[] edgeNode1;
+	private final int[] edgeNode2;
+
+	private final int[] inOffsets;
+	private final int[] inTargets;
+	private final int[] inEdgeIds;
+	private final int[] outOffsets;
+	private final int[] outTargets;
+	private final int[] outEdgeIds;
+	private final int[] offsets;
+	private final int[] targets;
+	private final int[] edgeIds;
+
+	private final int[] inDegrees;
+	private final int[] outDegrees;
+	private final int[] degrees;
+
+
+	/**
+	 * Reads the connection lists of g with a {@link ConnectionIterator}, so works for compressed connections.
+	 *
+	 * @param g the graph to copy
+	 * @throws IllegalArgumentException if the graph has too many edges for the undirected lists, which hold each edge twice
+	 */
+	CsrGraph(FastGraph g) {
+		numberOfNodes = g.getNumberOfNodes();
+		numberOfEdges = g.getNumberOfEdges();
+		long undirectedLength = numberOfEdges*2L;
+		if(undirectedLength > MAX_ARRAY_LENGTH) {
+			throw new IllegalArgumentException("Too many edges for a CsrGraph, the undirected lists need "+undirectedLength+" entries, the maximum is "+MAX_ARRAY_LENGTH);
+		}
+
+		edgeNode1 = new int[numberOfEdges];
+		edgeNode2 = new int[numberOfEdges];
+		for(int e = 0; e < numberOfEdges; e++) {
+			edgeNode1[e] = g.getEdgeNode1(e);
+			edgeNode2[e] = g.getEdgeNode2(e);
+		}
+
+		inDegrees = new int[numberOfNodes];
+		outDegrees = new int[numberOfNodes];
+		degrees = new int[numberOfNodes];
+		inOffsets = new int[numberOfNodes+1];
+		outOffsets = new int[numberOfNodes+1];
+		offsets = new int[numberOfNodes+1];
+		for(int n = 0; n < numberOfNodes; n++) {
+			inDegrees[n] = g.getNodeInDegree(n);
+			outDegrees[n] = g.getNodeOutDegree(n);
+			degrees[n] = inDegrees[n]+outDegrees[n];
+			inOffsets[n+1] = inOffsets[n]+inDegrees[n];
+			outOffsets[n+1] = outOffsets[n]+outDegrees[n];
+			offsets[n+1] = offsets[n]+degrees[n];
+		}
+
+		inTargets = new int[numberOfEdges];
+		inEdgeIds = new int[numberOfEdges];
+		outTargets = new int[numberOfEdges];
+		outEdgeIds = new int[numberOfEdges];
+		targets = new int[(int)undirectedLength];
+		edgeIds = new int[(int)undirectedLength];
+		ConnectionIterator connections = g.getConnectionIterator();
+		for(int n = 0; n < numberOfNodes; n++) {
+			int i = inOffsets[n];
+			connections.resetIn(n);
+			while(connections.hasNext()) {
+				connections.next();
+				inTargets[i] = connections.getNode();
+				inEdgeIds[i] = connections.getEdge();
+				i++;
+			}
+			i = outOffsets[n];
+			connections.resetOut(n);
+			while(connections.hasNext()) {
+				connections.next();
+				outTargets[i] = connections.getNode();
+				outEdgeIds[i] = connections.getEdge();
+				i++;
+			}
+			System.arraycopy(inTargets, inOffsets[n], targets, offsets[n], inDegrees[n]);
+			System.arraycopy(inEdgeIds, inOffsets[n], edgeIds, offsets[n], inDegrees[n]);
+			System.arraycopy(outTargets, outOffsets[n], targets, offsets[n]+inDegrees[n], outDegrees[n]);
+			System.arraycopy(outEdgeIds, outOffsets[n], edgeIds, offsets[n]+inDegrees[n], outDegrees[n]);
+		}
+	}
+
+
+	/**
+	 * @return the number of nodes
+	 */
+	public int getNumberOfNodes() {
+		return numberOfNodes;
+	}
+
+
+	/**
+	 * @return the number of edges
+	 */
+	public int getNumberOfEdges() {
+		return numberOfEdges;
+	}
+
+
+	/**
+	 * @return the first node of each edge
+	 */
+	public int[] getEdgeNode1s() {
+		return edgeNode1;
+	}
+
+
+	/**
+	 * @return the second node of each edge
+	 */
+	public int[] getEdgeNode2s() {
+		return edgeNode2;
+	}
+
+
+	/**
+	 * @return the start of each node's in connections, with a final entry for the end of the last node's
+	 */
+	public int[] getInOffsets() {
+		return inOffsets;
+	}
+
+
+	/**
+	 * @return the node at the other end of each in connection
+	 */
+	public int[] getInTargets() {
+		return inTargets;
+	}
+
+
+	/**
+	 * @return the edge of each in connection
+	 */
+	public int[] getInEdgeIds() {
+		return inEdgeIds;
+	}
+
+
+	/**
+	 * @return the start of each node's out connections, with a final entry for the end of the last node's
+	 */
+	public int[] getOutOffsets() {
+		return outOffsets;
+	}
+
+
+	/**
+	 * @return the node at the other end of each out connection
+	 */
+	public int[] getOutTargets() {
+		return outTargets;
+	}
+
+
+	/**
+	 * @return the edge of each out connection
+	 */
+	public int[] getOutEdgeIds() {
+		return outEdgeIds;
+	}
+
+
+	/**
+	 * @return the start of each node's connections in both directions, with a final entry for the end of the last node's
+	 */
+	public int[] getOffsets() {
+		return offsets;
+	}
+
+
+	/**
+	 * @return the node at the other end of each connection in both directions
+	 */
+	public int[] getTargets() {
+		return targets;
+	}
+
+
+	/**
+	 * @return the edge of each connection in both directions
+	 */
+	public int[] getEdgeIds() {
+		return edgeIds;
+	}
+
+
+	/**
+	 * @return the number of edges entering each node
+	 */
+	public int[] getInDegrees() {
+		return inDegrees;
+	}
+
+
+	/**
+	 * @return the number of edges leaving each node
+	 */
+	public int[] getOutDegrees() {
+		return outDegrees;
+	}
+
+
+	/**
+	 * @return the number of edges connecting to each node, self sourcing edges count twice
+	 */
+	public int[] getDegrees() {
+		return degrees;
+	}
+
+}
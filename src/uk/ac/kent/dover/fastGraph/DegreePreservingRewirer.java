@@ -0,0 +1,154 @@
+package uk.ac.kent.dover.fastGraph;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generates random graphs with the same in and out degree of every node as a graph, for null models
+ * such as motif significance. Each rewire copies the ends of the edges into plain int arrays and makes a
+ * number of edge swaps in place: two random edges a to b and c to d become a to d and c to b. Only the
+ * finished graph is built as a FastGraph, once.
+ * <p>
+ * Many rewires are made at once by {@link #rewireToContainers(int, long, long, String, String, int)},
+ * each from its own random stream split from one seed, so the results do not depend on the number of
+ * threads. Each graph is written to a container file as soon as it is made, so at most one graph per
+ * thread is held in memory. Parallel edges and self sourcing edges may be created, as with
+ * {@link FastGraph#generateRandomRewiredGraph(int, long)}.
+ * </p>
+ * The graph must not change while this is in use.
+ *
+ * @author Peter Rodgers
+ *
+ */
+public class DegreePreservingRewirer {
+
+	private final FastGraph g;
+	private final int[] node1;
+	private final int[] node2;
+
+
+	/**
+	 * @param g the graph to rewire, this is not changed
+	 */
+	public DegreePreservingRewirer(FastGraph g) {
+		this.g = g;
+		int numberOfEdges = g.getNumberOfEdges();
+		node1 = new int[numberOfEdges];
+		node2 = new int[numberOfEdges];
+		for(int e = 0; e < numberOfEdges; e++) {
+			node1[e] = g.getEdgeNode1(e);
+			node2[e] = g.getEdgeNode2(e);
+		}
+	}
+
+
+	/**
+	 * Swap the second nodes of pairs of random edges in place, which keeps the in and out degree of every node.
+	 * Does nothing if there are fewer than two edges.
+	 *
+	 * @param ends1 the first node of each edge, not changed by a swap
+	 * @param ends2 the second node of each edge, changed by the swaps
+	 * @param swaps the number of swaps to make
+	 * @param random the random stream
+	 */
+	public static void swapEdgeEnds(int[] ends1, int[] ends2, long swaps, SplittableRandom random) {
+		int numberOfEdges = ends2.length;
+		if(numberOfEdges < 2) {
+			return;
+		}
+		for(long i = 0; i < swaps; i++) {
+			int a = random.nextInt(numberOfEdges);
+			int b = random.nextInt(numberOfEdges-1);
+			if(b >= a) { // a different edge to a, chosen evenly
+				b++;
+			}
+			int temp = ends2[a];
+			ends2[a] = ends2[b];
+			ends2[b] = temp;
+		}
+	}
+
+
+	/**
+	 * @param swaps the number of edge swaps, ten times the number of edges is usually enough to randomise the graph
+	 * @param seed random number generator seed
+	 * @return a new rewired graph, named after the graph with "-rewire" appended
+	 */
+	public FastGraph rewire(long swaps, long seed) {
+		return rewire(swaps, new SplittableRandom(seed), g.getName()+"-rewire");
+	}
+
+
+	/**
+	 * @param swaps the number of edge swaps
+	 * @param random the random stream
+	 * @param name the name of the new graph
+	 * @return a new rewired graph
+	 */
+	private FastGraph rewire(long swaps, SplittableRandom random, String name) {
+		int[] ends2 = node2.clone();
+		swapEdgeEnds(node1, ends2, swaps, random);
+		// node1 is never changed by a swap, so can be shared
+		return g.generateGraphWithEdgeEnds(node1, ends2, name);
+	}
+
+
+	/**
+	 * Make several independent rewires at once, and save each as a container file named after the graph
+	 * with "-rewire-" and the number of the rewire appended, see {@link FastGraph#saveContainer(String, String, boolean)}.
+	 * Rewire i always uses the i-th stream split from the seed, so the files are the same for any number of threads.
+	 *
+	 * @param count the number of rewired graphs
+	 * @param swaps the number of edge swaps for each graph
+	 * @param seed random number generator seed
+	 * @param directory where the files are saved, or if null under data under the current working directory
+	 * @param fileBaseName the start of the name of each file
+	 * @param threads the most threads to use
+	 * @return the base names of the saved files, in order of rewire
+	 * @throws IOException if a file cannot be written
+	 */
+	public List<String> rewireToContainers(int count, final long swaps, long seed, final String directory, String fileBaseName, int threads) throws IOException {
+		SplittableRandom root = new SplittableRandom(seed);
+		List<Callable<String>> tasks = new ArrayList<Callable<String>>(count);
+		for(int i = 0; i < count; i++) {
+			final SplittableRandom random = root.split(); // split in order, before any thread starts
+			final String baseName = fileBaseName+"-rewire-"+i;
+			final String name = g.getName()+"-rewire-"+i;
+			tasks.add(() -> {
+				FastGraph rewired = rewire(swaps, random, name);
+				rewired.saveContainer(directory, baseName, false);
+				return baseName;
+			});
+		}
+
+		List<String> ret = new ArrayList<String>(count);
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, count)));
+		try {
+			for(Future<String> f : executor.invokeAll(tasks)) {
+				ret.add(f.get());
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while rewiring", e);
+		} catch(ExecutionException e) {
+			if(e.getCause() instanceof IOException) {
+				throw (IOException)e.getCause();
+			}
+			if(e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException)e.getCause();
+			}
+			throw new IOException("Failed rewiring", e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+		return ret;
+	}
+
+}
@@ -0,0 +1,768 @@
+package uk.ac.kent.dover.fastGraph;
+
+import java.util.*;
+
+/**
+ * A copy-on-write overlay that records edits to a FastGraph as small deltas, without
+ * changing or copying the base graph. Nodes and edges can be added, singleton nodes and
+ * edges deleted, and nodes relabelled, each costing time in the size of the deltas rather
+ * than the size of the graph. The read methods mirror those of FastGraph and give the
+ * graph as if the edits had been made with the FastGraph generate methods, including the
+ * renumbering of nodes and edges after a deletion. {@link #toFastGraph()} compacts the
+ * result into a real FastGraph.
+ * <p>
+ * Internally every node and edge has a fixed slot: base items keep their base index and added
+ * items follow on from the end of the base. Deleting an item marks its slot, and the index of
+ * an item is its slot less the number of deleted slots below it.
+ * </p>
+ * The base graph must not be changed while an overlay is in use. Not thread safe.
+ *
+ * @author Peter Rodgers
+ *
+ */
+public class DeltaGraph {
+
+	private static final int INITIAL_CAPACITY = 8;
+
+	private final FastGraph base;
+	private final int baseNodes;
+	private final int baseEdges;
+
+	private int addedNodeCount = 0;
+	private String[] addedNodeLabels;
+	private int[] addedNodeWeights;
+	private byte[] addedNodeTypes;
+	private byte[] addedNodeAges;
+
+	private int addedEdgeCount = 0;
+	private int[] addedEdgeNode1; // node slots
+	private int[] addedEdgeNode2; // node slots
+	private String[] addedEdgeLabels;
+	private int[] addedEdgeWeights;
+	private byte[] addedEdgeTypes;
+	private byte[] addedEdgeAges;
+
+	private int deletedNodeCount = 0;
+	private int[] deletedNodes; // sorted node slots
+	private int deletedEdgeCount = 0;
+	private int[] deletedEdges; // sorted edge slots
+
+	private HashMap<Integer,String> relabelledNodes; // base node slot to new label
+	private HashMap<Integer,Integer> inDegreeChange; // node slot to change in in degree
+	private HashMap<Integer,Integer> outDegreeChange; // node slot to change in out degree
+
+
+	/**
+	 * An overlay with no edits.
+	 *
+	 * @param base the graph to edit, this is not changed
+	 */
+	public DeltaGraph(FastGraph base) {
+		this.base = base;
+		baseNodes = base.getNumberOfNodes();
+		baseEdges = base.getNumberOfEdges();
+
+		addedNodeLabels = new String[INITIAL_CAPACITY];
+		addedNodeWeights = new int[INITIAL_CAPACITY];
+		addedNodeTypes = new byte[INITIAL_CAPACITY];
+		addedNodeAges = new byte[INITIAL_CAPACITY];
+
+		addedEdgeNode1 = new int[INITIAL_CAPACITY];
+		addedEdgeNode2 = new int[INITIAL_CAPACITY];
+		addedEdgeLabels = new String[INITIAL_CAPACITY];
+		addedEdgeWeights = new int[INITIAL_CAPACITY];
+		addedEdgeTypes = new byte[INITIAL_CAPACITY];
+		addedEdgeAges = new byte[INITIAL_CAPACITY];
+
+		deletedNodes = new int[INITIAL_CAPACITY];
+		deletedEdges = new int[INITIAL_CAPACITY];
+
+		relabelledNodes = new HashMap<>();
+		inDegreeChange = new HashMap<>();
+		outDegreeChange = new HashMap<>();
+	}
+
+
+	/**
+	 * A copy of another overlay, sharing its base graph. Later edits to either do not affect
+	 * the other. Takes time in the size of the deltas.
+	 *
+	 * @param other the overlay to copy
+	 */
+	public DeltaGraph(DeltaGraph other) {
+		base = other.base;
+		baseNodes = other.baseNodes;
+		baseEdges = other.baseEdges;
+
+		addedNodeCount = other.addedNodeCount;
+		addedNodeLabels = other.addedNodeLabels.clone();
+		addedNodeWeights = other.addedNodeWeights.clone();
+		addedNodeTypes = other.addedNodeTypes.clone();
+		addedNodeAges = other.addedNodeAges.clone();
+
+		addedEdgeCount = other.addedEdgeCount;
+		addedEdgeNode1 = other.addedEdgeNode1.clone();
+		addedEdgeNode2 = other.addedEdgeNode2.clone();
+		addedEdgeLabels = other.addedEdgeLabels.clone();
+		addedEdgeWeights = other.addedEdgeWeights.clone();
+		addedEdgeTypes = other.addedEdgeTypes.clone();
+		addedEdgeAges = other.addedEdgeAges.clone();
+
+		deletedNodeCount = other.deletedNodeCount;
+		deletedNodes = other.deletedNodes.clone();
+		deletedEdgeCount = other.deletedEdgeCount;
+		deletedEdges = other.deletedEdges.clone();
+
+		relabelledNodes = new HashMap<>(other.relabelledNodes);
+		inDegreeChange = new HashMap<>(other.inDegreeChange);
+		outDegreeChange = new HashMap<>(other.outDegreeChange);
+	}
+
+
+	/**
+	 * @return the graph the edits are made over
+	 */
+	public FastGraph getBase() {
+		return base;
+	}
+
+
+	/**
+	 * @return true if any edit has been made
+	 */
+	public boolean isModified() {
+		return addedNodeCount > 0 || addedEdgeCount > 0 || deletedNodeCount > 0 || deletedEdgeCount > 0 || !relabelledNodes.isEmpty();
+	}
+
+
+	/**
+	 * @return the number of nodes in the edited graph
+	 */
+	public int getNumberOfNodes() {
+		return baseNodes+addedNodeCount-deletedNodeCount;
+	}
+
+
+	/**
+	 * @return the number of edges in the edited graph
+	 */
+	public int getNumberOfEdges() {
+		return baseEdges+addedEdgeCount-deletedEdgeCount;
+	}
+
+
+	/**
+	 * @return the name of the base graph
+	 */
+	public String getName() {
+		return base.getName();
+	}
+
+
+	/**
+	 * Add a node. Ignores the id of ns, the new node will have the id of the number of nodes,
+	 * as with {@link FastGraph#generateGraphByAddingNode(NodeStructure)}.
+	 *
+	 * @param ns the node to add
+	 * @return the index of the new node
+	 */
+	public int addNode(NodeStructure ns) {
+		int ret = getNumberOfNodes();
+		if(addedNodeCount == addedNodeLabels.length) {
+			int capacity = addedNodeCount*2;
+			addedNodeLabels = Arrays.copyOf(addedNodeLabels, capacity);
+			addedNodeWeights = Arrays.copyOf(addedNodeWeights, capacity);
+			addedNodeTypes = Arrays.copyOf(addedNodeTypes, capacity);
+			addedNodeAges = Arrays.copyOf(addedNodeAges, capacity);
+		}
+		addedNodeLabels[addedNodeCount] = ns.getLabel();
+		addedNodeWeights[addedNodeCount] = ns.getWeight();
+		addedNodeTypes[addedNodeCount] = ns.getType();
+		addedNodeAges[addedNodeCount] = ns.getAge();
+		addedNodeCount++;
+		return ret;
+	}
+
+
+	/**
+	 * Delete a node with no connecting edges. Nodes with a higher index move down by one,
+	 * as with {@link FastGraph#generateGraphByDeletingSingletonNode(int)}.
+	 *
+	 * @param n the node to delete
+	 * @return true if the node was deleted, false if it has connecting edges
+	 * @throws FastGraphException if the node is not in the graph
+	 */
+	public boolean deleteSingletonNode(int n) throws FastGraphException {
+		checkNode(n);
+		int slot = nodeSlot(n);
+		if(slotDegree(slot) != 0) {
+			return false;
+		}
+		deletedNodes = insertSorted(deletedNodes, deletedNodeCount, slot);
+		deletedNodeCount++;
+		relabelledNodes.remove(slot);
+		return true;
+	}
+
+
+	/**
+	 * Add an edge. Ignores the id of es, the new edge will have the id of the number of edges,
+	 * as with {@link FastGraph#generateGraphByAddingEdge(EdgeStructure)}.
+	 *
+	 * @param es the edge to add, node1 and node2 are node indexes in the edited graph
+	 * @return the index of the new edge
+	 * @throws FastGraphException if either end of the edge is not in the graph
+	 */
+	public int addEdge(EdgeStructure es) throws FastGraphException {
+		checkNode(es.getNode1());
+		checkNode(es.getNode2());
+		int ret = getNumberOfEdges();
+		if(addedEdgeCount == addedEdgeLabels.length) {
+			int capacity = addedEdgeCount*2;
+			addedEdgeNode1 = Arrays.copyOf(addedEdgeNode1, capacity);
+			addedEdgeNode2 = Arrays.copyOf(addedEdgeNode2, capacity);
+			addedEdgeLabels = Arrays.copyOf(addedEdgeLabels, capacity);
+			addedEdgeWeights = Arrays.copyOf(addedEdgeWeights, capacity);
+			addedEdgeTypes = Arrays.copyOf(addedEdgeTypes, capacity);
+			addedEdgeAges = Arrays.copyOf(addedEdgeAges, capacity);
+		}
+		int node1Slot = nodeSlot(es.getNode1());
+		int node2Slot = nodeSlot(es.getNode2());
+		addedEdgeNode1[addedEdgeCount] = node1Slot;
+		addedEdgeNode2[addedEdgeCount] = node2Slot;
+		addedEdgeLabels[addedEdgeCount] = es.getLabel();
+		addedEdgeWeights[addedEdgeCount] = es.getWeight();
+		addedEdgeTypes[addedEdgeCount] = es.getType();
+		addedEdgeAges[addedEdgeCount] = es.getAge();
+		addedEdgeCount++;
+		outDegreeChange.merge(node1Slot, 1, Integer::sum);
+		inDegreeChange.merge(node2Slot, 1, Integer::sum);
+		return ret;
+	}
+
+
+	/**
+	 * Delete an edge. Edges with a higher index move down by one,
+	 * as with {@link FastGraph#generateGraphByDeletingEdge(int)}.
+	 *
+	 * @param e the edge to delete
+	 * @throws FastGraphException if the edge is not in the graph
+	 */
+	public void deleteEdge(int e) throws FastGraphException {
+		if(e < 0 || e >= getNumberOfEdges()) {
+			throw new FastGraphException("edge "+e+" is not in the graph");
+		}
+		int slot = edgeSlot(e);
+		outDegreeChange.merge(edgeNode1Slot(slot), -1, Integer::sum);
+		inDegreeChange.merge(edgeNode2Slot(slot), -1, Integer::sum);
+		deletedEdges = insertSorted(deletedEdges, deletedEdgeCount, slot);
+		deletedEdgeCount++;
+	}
+
+
+	/**
+	 * Change the label of a node.
+	 *
+	 * @param n the node to relabel
+	 * @param label the new label
+	 * @throws FastGraphException if the node is not in the graph
+	 */
+	public void relabelNode(int n, String label) throws FastGraphException {
+		checkNode(n);
+		int slot = nodeSlot(n);
+		if(slot >= baseNodes) {
+			addedNodeLabels[slot-baseNodes] = label;
+		} else {
+			relabelledNodes.put(slot, label);
+		}
+	}
+
+
+	/**
+	 * @param n the node
+	 * @return the node label
+	 */
+	public String getNodeLabel(int n) {
+		int slot = nodeSlot(n);
+		if(slot >= baseNodes) {
+			return addedNodeLabels[slot-baseNodes];
+		}
+		String ret = relabelledNodes.get(slot);
+		if(ret != null) {
+			return ret;
+		}
+		return base.getNodeLabel(slot);
+	}
+
+
+	/**
+	 * @param n the node
+	 * @return the node weight
+	 */
+	public int getNodeWeight(int n) {
+		int slot = nodeSlot(n);
+		if(slot >= baseNodes) {
+			return addedNodeWeights[slot-baseNodes];
+		}
+		return base.getNodeWeight(slot);
+	}
+
+
+	/**
+	 * @param n the node
+	 * @return the node type
+	 */
+	public byte getNodeType(int n) {
+		int slot = nodeSlot(n);
+		if(slot >= baseNodes) {
+			return addedNodeTypes[slot-baseNodes];
+		}
+		return base.getNodeType(slot);
+	}
+
+
+	/**
+	 * @param n the node
+	 * @return the node age
+	 */
+	public byte getNodeAge(int n) {
+		int slot = nodeSlot(n);
+		if(slot >= baseNodes) {
+			return addedNodeAges[slot-baseNodes];
+		}
+		return base.getNodeAge(slot);
+	}
+
+
+	/**
+	 * @param e the edge
+	 * @return the edge label
+	 */
+	public String getEdgeLabel(int e) {
+		int slot = edgeSlot(e);
+		if(slot >= baseEdges) {
+			return addedEdgeLabels[slot-baseEdges];
+		}
+		return base.getEdgeLabel(slot);
+	}
+
+
+	/**
+	 * @param e the edge
+	 * @return the edge weight
+	 */
+	public int getEdgeWeight(int e) {
+		int slot = edgeSlot(e);
+		if(slot >= baseEdges) {
+			return addedEdgeWeights[slot-baseEdges];
+		}
+		return base.getEdgeWeight(slot);
+	}
+
+
+	/**
+	 * @param e the edge
+	 * @return the edge type
+	 */
+	public byte getEdgeType(int e) {
+		int slot = edgeSlot(e);
+		if(slot >= baseEdges) {
+			return addedEdgeTypes[slot-baseEdges];
+		}
+		return base.getEdgeType(slot);
+	}
+
+
+	/**
+	 * @param e the edge
+	 * @return the edge age
+	 */
+	public byte getEdgeAge(int e) {
+		int slot = edgeSlot(e);
+		if(slot >= baseEdges) {
+			return addedEdgeAges[slot-baseEdges];
+		}
+		return base.getEdgeAge(slot);
+	}
+
+
+	/**
+	 * @param e the edge
+	 * @return the first node of the edge
+	 */
+	public int getEdgeNode1(int e) {
+		return nodeIndex(edgeNode1Slot(edgeSlot(e)));
+	}
+
+
+	/**
+	 * @param e the edge
+	 * @return the second node of the edge
+	 */
+	public int getEdgeNode2(int e) {
+		return nodeIndex(edgeNode2Slot(edgeSlot(e)));
+	}
+
+
+	/**
+	 * @param edge the edge
+	 * @param node a node at one end of the edge
+	 * @return the node at the other end of the edge
+	 */
+	public int oppositeEnd(int edge, int node) {
+		int n1 = getEdgeNode1(edge);
+		if(n1 == node) {
+			return getEdgeNode2(edge);
+		}
+		return n1;
+	}
+
+
+	/**
+	 * @param n the node
+	 * @return the number of edges entering the node
+	 */
+	public int getNodeInDegree(int n) {
+		return slotInDegree(nodeSlot(n));
+	}
+
+
+	/**
+	 * @param n the node
+	 * @return the number of edges leaving the node
+	 */
+	public int getNodeOutDegree(int n) {
+		return slotOutDegree(nodeSlot(n));
+	}
+
+
+	/**
+	 * @param n the node
+	 * @return the number of edges connecting the node
+	 */
+	public int getNodeDegree(int n) {
+		return slotDegree(nodeSlot(n));
+	}
+
+
+	/**
+	 * @param n the node
+	 * @return the edges connecting the node, in edges then out edges
+	 */
+	public int[] getNodeConnectingEdges(int n) {
+		return connecting(n, true, true, false);
+	}
+
+
+	/**
+	 * @param n the node
+	 * @return the edges entering the node
+	 */
+	public int[] getNodeConnectingInEdges(int n) {
+		return connecting(n, true, false, false);
+	}
+
+
+	/**
+	 * @param n the node
+	 * @return the edges leaving the node
+	 */
+	public int[] getNodeConnectingOutEdges(int n) {
+		return connecting(n, false, true, false);
+	}
+
+
+	/**
+	 * @param n the node
+	 * @return the nodes at the other end of the connecting edges, in the order of {@link #getNodeConnectingEdges(int)}
+	 */
+	public int[] getNodeConnectingNodes(int n) {
+		return connecting(n, true, true, true);
+	}
+
+
+	/**
+	 * @param n the node
+	 * @return the nodes at the other end of the edges entering the node
+	 */
+	public int[] getNodeConnectingInNodes(int n) {
+		return connecting(n, true, false, true);
+	}
+
+
+	/**
+	 * @param n the node
+	 * @return the nodes at the other end of the edges leaving the node
+	 */
+	public int[] getNodeConnectingOutNodes(int n) {
+		return connecting(n, false, true, true);
+	}
+
+
+	/**
+	 * Compact the edited graph into a new FastGraph, with the name and storage type of the base.
+	 * Takes time in the size of the graph, so call once after all the edits.
+	 *
+	 * @return the edited graph, or the base graph itself if there have been no edits
+	 */
+	public FastGraph toFastGraph() {
+		if(!isModified()) {
+			return base;
+		}
+		int nodeCount = getNumberOfNodes();
+		ArrayList<NodeStructure> nodes = new ArrayList<>(nodeCount);
+		for(int n = 0; n < nodeCount; n++) {
+			nodes.add(new NodeStructure(n, getNodeLabel(n), getNodeWeight(n), getNodeType(n), getNodeAge(n)));
+		}
+		int edgeCount = getNumberOfEdges();
+		ArrayList<EdgeStructure> edges = new ArrayList<>(edgeCount);
+		for(int e = 0; e < edgeCount; e++) {
+			edges.add(new EdgeStructure(e, getEdgeLabel(e), getEdgeWeight(e), getEdgeType(e), getEdgeAge(e), getEdgeNode1(e), getEdgeNode2(e)));
+		}
+		return FastGraph.structureFactory(base.getName(), base.getGeneration(), nodes, edges, base.getDirect());
+	}
+
+
+	/**
+	 * @param n a node index
+	 * @throws FastGraphException if the node is not in the graph
+	 */
+	private void checkNode(int n) throws FastGraphException {
+		if(n < 0 || n >= getNumberOfNodes()) {
+			throw new FastGraphException("node "+n+" is not in the graph");
+		}
+	}
+
+
+	/**
+	 * Finds the connections of a node: the surviving base connections, then the added
+	 * edges, for the in list and then the out list.
+	 *
+	 * @param n the node
+	 * @param in include edges entering the node
+	 * @param out include edges leaving the node
+	 * @param nodes if true return the nodes at the other end, if false the edges
+	 * @return the connecting edges or nodes
+	 */
+	private int[] connecting(int n, boolean in, boolean out, boolean nodes) {
+		int slot = nodeSlot(n);
+		int size = 0;
+		if(in) {
+			size += slotInDegree(slot);
+		}
+		if(out) {
+			size += slotOutDegree(slot);
+		}
+		int[] ret = new int[size];
+		int position = 0;
+		if(in) {
+			position = connectingList(slot, true, nodes, ret, position);
+		}
+		if(out) {
+			connectingList(slot, false, nodes, ret, position);
+		}
+		return ret;
+	}
+
+
+	/**
+	 * @param slot the node slot
+	 * @param in if true the in list, if false the out list
+	 * @param nodes if true add the nodes at the other end, if false the edges
+	 * @param ret the array to populate
+	 * @param position the position in ret to start
+	 * @return the position after the last added
+	 */
+	private int connectingList(int slot, boolean in, boolean nodes, int[] ret, int position) {
+		if(slot < baseNodes) {
+			int[] baseEdgeList;
+			if(in) {
+				baseEdgeList = base.getNodeConnectingInEdges(slot);
+			} else {
+				baseEdgeList = base.getNodeConnectingOutEdges(slot);
+			}
+			for(int edgeSlot : baseEdgeList) {
+				if(isDeleted(deletedEdges, deletedEdgeCount, edgeSlot)) {
+					continue;
+				}
+				if(nodes) {
+					int otherSlot = in ? base.getEdgeNode1(edgeSlot) : base.getEdgeNode2(edgeSlot);
+					ret[position] = nodeIndex(otherSlot);
+				} else {
+					ret[position] = edgeIndex(edgeSlot);
+				}
+				position++;
+			}
+		}
+		for(int i = 0; i < addedEdgeCount; i++) {
+			int end = in ? addedEdgeNode2[i] : addedEdgeNode1[i];
+			if(end != slot) {
+				continue;
+			}
+			int edgeSlot = baseEdges+i;
+			if(isDeleted(deletedEdges, deletedEdgeCount, edgeSlot)) {
+				continue;
+			}
+			if(nodes) {
+				int otherSlot = in ? addedEdgeNode1[i] : addedEdgeNode2[i];
+				ret[position] = nodeIndex(otherSlot);
+			} else {
+				ret[position] = edgeIndex(edgeSlot);
+			}
+			position++;
+		}
+		return position;
+	}
+
+
+	/**
+	 * @param slot a node slot
+	 * @return the in degree of the node in the slot
+	 */
+	private int slotInDegree(int slot) {
+		int ret = inDegreeChange.getOrDefault(slot, 0);
+		if(slot < baseNodes) {
+			ret += base.getNodeInDegree(slot);
+		}
+		return ret;
+	}
+
+
+	/**
+	 * @param slot a node slot
+	 * @return the out degree of the node in the slot
+	 */
+	private int slotOutDegree(int slot) {
+		int ret = outDegreeChange.getOrDefault(slot, 0);
+		if(slot < baseNodes) {
+			ret += base.getNodeOutDegree(slot);
+		}
+		return ret;
+	}
+
+
+	/**
+	 * @param slot a node slot
+	 * @return the degree of the node in the slot
+	 */
+	private int slotDegree(int slot) {
+		return slotInDegree(slot)+slotOutDegree(slot);
+	}
+
+
+	/**
+	 * @param edgeSlot an edge slot
+	 * @return the slot of the first node of the edge
+	 */
+	private int edgeNode1Slot(int edgeSlot) {
+		if(edgeSlot >= baseEdges) {
+			return addedEdgeNode1[edgeSlot-baseEdges];
+		}
+		return base.getEdgeNode1(edgeSlot);
+	}
+
+
+	/**
+	 * @param edgeSlot an edge slot
+	 * @return the slot of the second node of the edge
+	 */
+	private int edgeNode2Slot(int edgeSlot) {
+		if(edgeSlot >= baseEdges) {
+			return addedEdgeNode2[edgeSlot-baseEdges];
+		}
+		return base.getEdgeNode2(edgeSlot);
+	}
+
+
+	/**
+	 * @param n a node index
+	 * @return the slot of the node
+	 */
+	private int nodeSlot(int n) {
+		return slot(n, deletedNodes, deletedNodeCount);
+	}
+
+
+	/**
+	 * @param e an edge index
+	 * @return the slot of the edge
+	 */
+	private int edgeSlot(int e) {
+		return slot(e, deletedEdges, deletedEdgeCount);
+	}
+
+
+	/**
+	 * @param slot a node slot that is not deleted
+	 * @return the index of the node
+	 */
+	private int nodeIndex(int slot) {
+		return index(slot, deletedNodes, deletedNodeCount);
+	}
+
+
+	/**
+	 * @param slot an edge slot that is not deleted
+	 * @return the index of the edge
+	 */
+	private int edgeIndex(int slot) {
+		return index(slot, deletedEdges, deletedEdgeCount);
+	}
+
+
+	/**
+	 * @param index an index in the edited graph
+	 * @param deleted the sorted deleted slots
+	 * @param deletedCount the number of deleted slots
+	 * @return the slot holding the index
+	 */
+	private static int slot(int index, int[] deleted, int deletedCount) {
+		int ret = index;
+		for(int i = 0; i < deletedCount && deleted[i] <= ret; i++) {
+			ret++;
+		}
+		return ret;
+	}
+
+
+	/**
+	 * @param slot a slot that is not deleted
+	 * @param deleted the sorted deleted slots
+	 * @param deletedCount the number of deleted slots
+	 * @return the index of the slot in the edited graph
+	 */
+	private static int index(int slot, int[] deleted, int deletedCount) {
+		int position = Arrays.binarySearch(deleted, 0, deletedCount, slot);
+		return slot-(-position-1);
+	}
+
+
+	/**
+	 * @param deleted the sorted deleted slots
+	 * @param deletedCount the number of deleted slots
+	 * @param slot the slot to test
+	 * @return true if the slot is deleted
+	 */
+	private static boolean isDeleted(int[] deleted, int deletedCount, int slot) {
+		return deletedCount > 0 && Arrays.binarySearch(deleted, 0, deletedCount, slot) >= 0;
+	}
+
+
+	/**
+	 * @param deleted the sorted deleted slots
+	 * @param deletedCount the number of deleted slots
+	 * @param slot the slot to add, must not already be in deleted
+	 * @return deleted with slot inserted, a new array if deleted was full
+	 */
+	private static int[] insertSorted(int[] deleted, int deletedCount, int slot) {
+		int position = -Arrays.binarySearch(deleted, 0, deletedCount, slot)-1;
+		int[] ret = deleted;
+		if(deletedCount == deleted.length) {
+			ret = Arrays.copyOf(deleted, deletedCount*2);
+		}
+		System.arraycopy(deleted, position, ret, position+1, deletedCount-position);
+		ret[position] = slot;
+		return ret;
+	}
+
+}
@@ -0,0 +1,24 @@
+package uk.ac.kent.dover.fastGraph;
+
+/**
+ * The original motif bucket hash: the number of nodes and edges, the number of nodes of each degree,
+ * the adjacency matrix eigenvalues and the node age counts, from {@link ExactIsomorphism#generateStringForHash()},
+ * reduced to a long. Builds a dense matrix and an eigendecomposition for every graph, so is much slower
+ * than {@link WeisfeilerLehmanHasher}, kept for comparison.
+ *
+ * @author Peter Rodgers
+ *
+ */
+public class EigenvalueHasher extends InvariantHasher {
+
+	@Override
+	public long hash(SubgraphView g) {
+		String hashString = new ExactIsomorphism(g).generateStringForHash();
+		long ret = 0xcbf29ce484222325L; // FNV-1a
+		for(int i = 0; i < hashString.length(); i++) {
+			ret = (ret ^ hashString.charAt(i)) * 0x100000001b3L;
+		}
+		return mix64(ret);
+	}
+
+}
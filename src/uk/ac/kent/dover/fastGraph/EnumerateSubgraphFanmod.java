@@ -29,7 +29,7 @@ public class EnumerateSubgraphFanmod {
 	 */
 	public HashSet<FastGraph> enumerateSubgraphs(int k, double q) {
 		this.q = q;
-		r = new Random(g.getNodeBuf().getLong(0));
+		r = new Random(g.getRandomSeed(0));
 		Debugger.log("testing enumerateSubgraph");
 		Debugger.log("k " + k);
 		Debugger.resetTime();
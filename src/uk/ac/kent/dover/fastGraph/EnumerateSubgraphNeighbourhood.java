@@ -1,6 +1,8 @@
 package uk.ac.kent.dover.fastGraph;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
 
 /**
@@ -12,6 +14,7 @@ import java.util.Random;
 public class EnumerateSubgraphNeighbourhood {
 	
 	private FastGraph g;
+	private ConnectionIterator connections; // reused for every neighbourhood, so no arrays are created
 	
 	/**
 	 * Trivial constructor
@@ -19,6 +22,7 @@ public class EnumerateSubgraphNeighbourhood {
 	 */
 	public EnumerateSubgraphNeighbourhood(FastGraph g) {
 		this.g = g;
+		connections = g.getConnectionIterator();
 	}
 	
 	/**
@@ -35,7 +39,7 @@ public class EnumerateSubgraphNeighbourhood {
 	 * @return A set of FastGraphs
 	 */
 	public HashSet<FastGraph> enumerateSubgraphs(int subgraphSize, int subgraphsPerNode, int attemptsToFindSubgraph) {
-		Random r = new Random(g.getNodeBuf().getLong(0));
+		Random r = new Random(g.getRandomSeed(0));
 		HashSet<FastGraph> subgraphs = new HashSet<FastGraph>();
 		
 		//for each node
@@ -57,6 +61,28 @@ public class EnumerateSubgraphNeighbourhood {
 	 * @param subgraphs A set of FastGraphs to populate
 	 */
 	public void enumerateSubgraphsFromNode(int subgraphSize, int subgraphsPerNode, int attemptsToFindSubgraph, int n, Random r, HashSet<FastGraph> subgraphs) {
+		ArrayList<SubgraphView> views = new ArrayList<SubgraphView>(subgraphsPerNode);
+		enumerateSubgraphViewsFromNode(subgraphSize, subgraphsPerNode, attemptsToFindSubgraph, n, r, views);
+		for(SubgraphView view : views) {
+			FastGraph subgraph = view.toFastGraph();
+			subgraph.setName("subgraph");
+			subgraphs.add(subgraph);
+		}
+	}
+	
+	/**
+	 * Generates subgraphs from a given node as views of the graph, so no FastGraph is built for them.
+	 * The same subgraphs are found as {@link #enumerateSubgraphsFromNode(int, int, int, int, Random, HashSet)}
+	 * given the same random number generator state.
+	 * 
+	 * @param subgraphSize The number of nodes in each subgraph
+	 * @param subgraphsPerNode The number of subgraphs per node
+	 * @param attemptsToFindSubgraph The number of attempts to find a connected subgraph.
+	 * @param n The id of the node to build from
+	 * @param r A random number generator
+	 * @param subgraphs A list of views to add to
+	 */
+	public void enumerateSubgraphViewsFromNode(int subgraphSize, int subgraphsPerNode, int attemptsToFindSubgraph, int n, Random r, List<SubgraphView> subgraphs) {
 		//skip if the node has no connections
 		if(g.getNodeDegree(n) == 0) {
 			return;
@@ -71,8 +97,13 @@ public class EnumerateSubgraphNeighbourhood {
 			int attempts = 0; //in case we happen to pick one already in the list, but also to stop when there are no more to pick
 			while(nodes.size() < subgraphSize && attempts < attemptsToFindSubgraph) {
 				int nextNode = Util.getFromHashSet(nodes,r.nextInt(nodes.size()));
-				int[] cn = g.getNodeConnectingNodes(nextNode);
-				int nextToAdd = cn[r.nextInt(cn.length)];
+				int steps = r.nextInt(g.getNodeDegree(nextNode));
+				connections.reset(nextNode);
+				connections.next();
+				for(int i = 0; i < steps; i++) {
+					connections.next();
+				}
+				int nextToAdd = connections.getNode();
 				int nSize = nodes.size();
 				nodes.add(nextToAdd);
 				if(nSize == nodes.size()) {
@@ -87,41 +118,12 @@ public class EnumerateSubgraphNeighbourhood {
 				//Debugger.log("neighbourhood too small: " + nodes.size());
 				break; //don't check this node again
 			} else {
-				//add subgraph
-				HashSet<Integer> edges = new HashSet<Integer>();
-				addMissingEdges(nodes, edges);
-				FastGraph subgraph = g.generateGraphFromSubgraph(Util.convertHashSet(nodes), Util.convertHashSet(edges));
+				//add subgraph, with any edges that connect between any two of the nodes
+				SubgraphView subgraph = SubgraphView.induced(g, Util.convertHashSet(nodes));
 				foundSubgraphs++;
-				subgraph.setName("subgraph");
 				subgraphs.add(subgraph);
 			}
 		}
 	}
-	
-	
-	/**
-	 * When given an HashSet of nodes will induce any edges that connect between any two of the given nodes.
-	 * 
-	 * @param nodes The HashSet of nodes in the graph
-	 * @param edges The HashSet of edges in the graph - to be expanded with the newly induced edges.
-	 */
-	private void addMissingEdges(HashSet<Integer> nodes, HashSet<Integer> edges) {
-	
-		//for every node in the graph
-		for(int n : nodes) {
-			//find what edges it connects to
-			int[] edgeConnections = g.getNodeConnectingEdges(n);
-			//for each of these connecting edges
-			for (int ce : edgeConnections) {
-				//find the other node
-				int cn = g.oppositeEnd(ce,n);
-				//if that node is also in the graph, then add the edge
-				if (nodes.contains(cn)) {
-					edges.add(ce);
-				}
-			}
-			
-		}
-	}
 
 }
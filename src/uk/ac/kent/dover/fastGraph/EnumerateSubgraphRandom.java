@@ -51,11 +51,11 @@ public class EnumerateSubgraphRandom {
 			}
 			//Debugger.log("adding subgraph " + (subs.size()+1));
 			//convert and add FastGraph
-			FastGraph sub = g.generateGraphFromSubgraph(Util.convertLinkedList(nodes), Util.convertHashSet(edges));
+			//only build a FastGraph for connected subgraphs
+			SubgraphView sub = SubgraphView.of(g, Util.convertLinkedList(nodes), Util.convertHashSet(edges));
 			
-			Connected c = new Connected();
-			if(c.connected(sub)) {
-				ret.add(sub);
+			if(sub.isConnected()) {
+				ret.add(sub.toFastGraph());
 				subgraphsFound++;
 			} else {
 				discards++;
@@ -9,6 +9,11 @@ import uk.ac.kent.displayGraph.Graph;
 /**
  * Testing the structural similarity of two FastGraphs. Now splits the graph
  * into connected components and tests individual components.
+ * Graphs are tested through a {@link SubgraphView}, so subgraphs can be tested
+ * without building a FastGraph for each.
+ * Counts and times of tests go to an {@link IsomorphismStats}, so separate
+ * ExactIsomorphisms can test on separate threads. One ExactIsomorphism must
+ * only be used by one thread at a time.
  * 
  * @author Peter Rodgers
  *
@@ -17,27 +22,26 @@ public class ExactIsomorphism {
 
 	private int DECIMAL_PLACES = 6; // number of decimal places to round to
 	
-	private FastGraph fastGraph;
+	private FastGraph fastGraph; // null if created from a view
+	private SubgraphView view; // the graph to be tested
 	private boolean directed; // if true, treat the graph as directed, false undirected
 	private boolean nodeLabels; // if true, use node label comparison, if false ignore node labels
-	ArrayList<FastGraph> connectedList1;
+	ArrayList<SubgraphView> connectedList1;
 	ArrayList<ExactIsomorphism> eiList1;
-	private AdjacencyMatrix am1;
-	private AdjacencyMatrix am2;
 	private int[][] matrix1;
 	private int[][] matrix2;
-	private int[][] inMatrix1;
-	private int[][] inMatrix2;
-	private int[][] outMatrix1;
-	private int[][] outMatrix2;
 	private double[] eigenvalues1;
 	private double[] eigenvalues2;
 	
 	private boolean connected; // set in init() if the graph is connected
 	private SimpleNodeLabelComparator nodeLabelComparator;
+	private SubgraphView view2; // the graph compared in the last test, when comparing node labels
+	private CanonicalLabelling canonicalLabelling = null; // built when first needed
 	
 	private int[] matches1;
 	private int[] matches2;
+	private long[] matchedBits1; // the nodes set in matches1, as a bitset
+	private long[] matchedBits2; // the nodes set in matches2, as a bitset
 
 	private int[] degrees1;
 	private int[] degrees2;
@@ -63,33 +67,16 @@ public class ExactIsomorphism {
 	private int maxOutDegree1;
 	private int maxOutDegree2;
 
-	private ArrayList<HashSet<Integer>> neighbours1;  // Non self-sourcing neighbour nodes for each node
-	private ArrayList<HashSet<Integer>> neighbours2;  // Non self-sourcing neighbour nodes for each node
+	private BitsetAdjacency neighbours1;  // Non self-sourcing neighbour nodes for each node
+	private BitsetAdjacency neighbours2;  // Non self-sourcing neighbour nodes for each node
 
-	private ArrayList<HashSet<Integer>> inNeighbours1;  // Non self-sourcing neighbour nodes for each node
-	private ArrayList<HashSet<Integer>> inNeighbours2;  // Non self-sourcing neighbour nodes for each node
-	private ArrayList<HashSet<Integer>> outNeighbours1;  // Non self-sourcing neighbour nodes for each node
-	private ArrayList<HashSet<Integer>> outNeighbours2;  // Non self-sourcing neighbour nodes for each node
+	private BitsetAdjacency inNeighbours1;  // Non self-sourcing neighbour nodes for each node
+	private BitsetAdjacency inNeighbours2;  // Non self-sourcing neighbour nodes for each node
+	private BitsetAdjacency outNeighbours1;  // Non self-sourcing neighbour nodes for each node
+	private BitsetAdjacency outNeighbours2;  // Non self-sourcing neighbour nodes for each node
 
-	private static int numberOfIsomorphismTests = 0;
-	private static int numberOfOldIsomorphismTests = 0;
-	private static int numberOfEigenvalueTests = 0;
-	
-	private static long timeForIsomorphismTests = 0;
-	private static long timeForBruteForceTests = 0;
-	private static long timeForOldIsomorphismTests = 0;
-	private static long timeForEigenvalueTests = 0;
-	private static long isomorphismStartTime = -1;
-	private static long bruteForceStartTime = -1;
-	
-	private static int failOnConnectedness = 0;
-	private static int failOnNodeCount = 0;
-	private static int failOnEdgeCount = 0;
-	private static int failOnEigenvalues = 0;
-	private static int failOnDegreeComparison = 0;
-	private static int failOnNodeMatches = 0;
-	private static int failOnBruteForce = 0;
-	private static int succeed = 0;
+	private static final IsomorphismStats globalStats = new IsomorphismStats();
+	private IsomorphismStats stats = globalStats; // where the counts and times of tests go
 
 	
 	public static void main(String [] args) {
@@ -150,6 +137,7 @@ public class ExactIsomorphism {
 	public ExactIsomorphism(FastGraph fastGraph) {
 
 		this.fastGraph = fastGraph;
+		this.view = SubgraphView.whole(fastGraph);
 		this.directed = false;
 		this.nodeLabels = false;
 		init();
@@ -168,6 +156,7 @@ public class ExactIsomorphism {
 	public ExactIsomorphism(FastGraph fastGraph, boolean directed) {
 
 		this.fastGraph = fastGraph;
+		this.view = SubgraphView.whole(fastGraph);
 		this.directed = directed;
 		this.nodeLabels = false;
 		init();
@@ -188,6 +177,47 @@ public class ExactIsomorphism {
 	public ExactIsomorphism(FastGraph fastGraph, boolean directed, boolean nodeLabels) {
 
 		this.fastGraph = fastGraph;
+		this.view = SubgraphView.whole(fastGraph);
+		this.directed = directed;
+		this.nodeLabels = nodeLabels;
+		init();
+	}
+	
+
+	/**
+	 *
+	 * Create an ExactIsomorphism for a subgraph, without building a FastGraph for it.
+	 * 
+	 * @param view one graph to be tested.
+	 */
+	public ExactIsomorphism(SubgraphView view) {
+		this(view, false, false);
+	}
+
+	/**
+	 *
+	 * Create an ExactIsomorphism for a subgraph, without building a FastGraph for it.
+	 * 
+	 * @param view one graph to be tested.
+	 * @param directed true if the graphs should be treated as directed, false if they are undirected
+	 */
+	public ExactIsomorphism(SubgraphView view, boolean directed) {
+		this(view, directed, false);
+	}
+
+	/**
+	 *
+	 * Create an ExactIsomorphism for a subgraph, without building a FastGraph for it.
+	 * Node labels are read from the parent graph of the view.
+	 * 
+	 * @param view one graph to be tested.
+	 * @param directed true if the graphs should be treated as directed, false if they are undirected
+	 * @param nodeLabels if true compares node labels for a match, if false ignores node labels.
+	 */
+	public ExactIsomorphism(SubgraphView view, boolean directed, boolean nodeLabels) {
+
+		this.fastGraph = null;
+		this.view = view;
 		this.directed = directed;
 		this.nodeLabels = nodeLabels;
 		init();
@@ -199,60 +229,55 @@ public class ExactIsomorphism {
 	 */
 	private void init() {
 
-		Connected c = new Connected();
-		connected = c.connected(fastGraph);
+		connected = view.isConnected();
 		
 		if(!connected) {
-			connectedList1 = fastGraph.breakIntoConnectedComponents();
+			connectedList1 = view.breakIntoConnectedComponents();
 			eiList1 = new ArrayList<>();
-			for(FastGraph g : connectedList1) {
+			for(SubgraphView g : connectedList1) {
 				ExactIsomorphism ei = new ExactIsomorphism(g,directed,nodeLabels);
 				eiList1.add(ei);
 				
 			}
 		}
 		
-		am1 = new AdjacencyMatrix(fastGraph);
-		if(fastGraph.getNumberOfNodes() == 0) {
+		if(view.getNumberOfNodes() == 0) {
 			matrix1 = new int[0][0];
 			eigenvalues1 = new double[0];
 		} else {
-			matrix1 = am1.buildIntAdjacencyMatrix();
-			eigenvalues1 = am1.findEigenvalues(matrix1);
+			matrix1 = view.buildIntAdjacencyMatrix();
+			eigenvalues1 = AdjacencyMatrix.findEigenvalues(matrix1);
 			eigenvalues1 = Util.roundArray(eigenvalues1,DECIMAL_PLACES);
-			
-			if(directed) {
-				inMatrix1 = am1.buildIntInAdjacencyMatrix();
-				outMatrix1 = am1.buildIntOutAdjacencyMatrix();
-			}
 		}
 
-		matches1 = new int[fastGraph.getNumberOfNodes()];
-		matches2 = new int[fastGraph.getNumberOfNodes()];
+		matches1 = new int[view.getNumberOfNodes()];
+		matches2 = new int[view.getNumberOfNodes()];
+		matchedBits1 = new long[BitsetAdjacency.words(view.getNumberOfNodes())];
+		matchedBits2 = new long[BitsetAdjacency.words(view.getNumberOfNodes())];
 
 		if(!directed) {
-			degrees1 = fastGraph.findDegrees();
+			degrees1 = view.findDegrees();
 			
-			maxDegree1 = fastGraph.maximumDegree();
+			maxDegree1 = SubgraphView.maximum(degrees1);
 	
 			degreeBuckets1 = new int[maxDegree1+1];
-			fastGraph.findDegreeBuckets(degreeBuckets1,degrees1);
+			findDegreeBuckets(degreeBuckets1,degrees1);
 			
-			neighbours1 = findNeighbours(fastGraph,maxDegree1);
+			neighbours1 = BitsetAdjacency.build(view,true,true);
 		} else {
-			inDegrees1 = fastGraph.findInDegrees();
-			outDegrees1 = fastGraph.findOutDegrees();
+			inDegrees1 = view.findInDegrees();
+			outDegrees1 = view.findOutDegrees();
 			
-			maxInDegree1 = fastGraph.maximumInDegree();
-			maxOutDegree1 = fastGraph.maximumOutDegree();
+			maxInDegree1 = SubgraphView.maximum(inDegrees1);
+			maxOutDegree1 = SubgraphView.maximum(outDegrees1);
 	
 			inDegreeBuckets1 = new int[maxInDegree1+1];
-			fastGraph.findDegreeBuckets(inDegreeBuckets1,inDegrees1);
+			findDegreeBuckets(inDegreeBuckets1,inDegrees1);
 			outDegreeBuckets1 = new int[maxOutDegree1+1];
-			fastGraph.findDegreeBuckets(outDegreeBuckets1,outDegrees1);
+			findDegreeBuckets(outDegreeBuckets1,outDegrees1);
 			
-			inNeighbours1 = findInNeighbours(fastGraph,maxInDegree1);
-			outNeighbours1 = findOutNeighbours(fastGraph,maxOutDegree1);
+			inNeighbours1 = BitsetAdjacency.build(view,true,false);
+			outNeighbours1 = BitsetAdjacency.build(view,false,true);
 		}
 	}
 	
@@ -276,19 +301,36 @@ public class ExactIsomorphism {
 	 * @return true if there is an equality with the given graph, null if is not.
 	 */
 	public boolean isomorphic(FastGraph g) {
+		if(g == fastGraph) {
+			return isomorphic(view);
+		}
+		return isomorphic(SubgraphView.whole(g));
+	}
+	
+
+	/**
+	 * Equality of graphs, where the graph to compare is a subgraph that has not been built
+	 * as a FastGraph. Resultant mapping on returning
+	 * true can be found with {@link #getLastMatch()}
+	 *
+	 * @param g the subgraph to compare
+	 * @return true if there is an equality with the given graph, null if is not.
+	 */
+	public boolean isomorphic(SubgraphView g) {
 		
 		if(connected) {
 			return(isomorphicConnected(g));
 		}
 
-		ArrayList<FastGraph> connectedList2 = g.breakIntoConnectedComponents();
+long startTime = System.nanoTime();
+IsomorphismStats.TestEvent event = new IsomorphismStats.TestEvent();
+event.begin();
+		ArrayList<SubgraphView> connectedList2 = g.breakIntoConnectedComponents();
 		if(connectedList1.size() != connectedList2.size()) {
 Debugger.log("Not isomorphic: different number of connected components");
-failOnConnectedness++;
-timeForIsomorphismTests += System.currentTimeMillis()-isomorphismStartTime;
-isomorphismStartTime = -1;
-			return false;
+			return testFailed(IsomorphismStats.Stage.CONNECTEDNESS, startTime, startTime, event, g);
 		}
+stageFinished(IsomorphismStats.Stage.CONNECTEDNESS, startTime, event);
 		
 		// if there are multiple components, we have to iterate through them
 		// this discards all the speed up in init(), which might be fixed later
@@ -299,7 +341,7 @@ isomorphismStartTime = -1;
 			
 			boolean found = false;
 			int foundIndex = 0;
-			for(FastGraph g2 : connectedList2) {
+			for(SubgraphView g2 : connectedList2) {
 				if(ei.isomorphic(g2)) {
 					found = true;
 					break;
@@ -318,6 +360,61 @@ isomorphismStartTime = -1;
 		
 	}
 	
+	/**
+	 * The canonical labelling of the graph passed to the constructor, with the same directed and node
+	 * label options, and with node ages, which the hash string also counts. Built on the first call.
+	 *
+	 * @return the canonical labelling
+	 */
+	public CanonicalLabelling getCanonicalLabelling() {
+		if(canonicalLabelling == null) {
+			canonicalLabelling = new CanonicalLabelling(view, directed, nodeLabels, true);
+		}
+		return canonicalLabelling;
+	}
+
+
+	/**
+	 * Equality of graphs by comparing canonical forms, which avoids the backtracking search on
+	 * regular and symmetric graphs. Node ages must match. Resultant mapping on returning
+	 * true can be found with {@link #getLastMatch()}
+	 *
+	 * @param g the graph to compare
+	 * @return true if there is an equality with the given graph, false if not.
+	 */
+	public boolean canonicallyIsomorphic(FastGraph g) {
+		if(g == fastGraph) {
+			return canonicallyIsomorphic(view);
+		}
+		return canonicallyIsomorphic(SubgraphView.whole(g));
+	}
+
+
+	/**
+	 * Equality of graphs by comparing canonical forms, where the graph to compare is a subgraph that
+	 * has not been built as a FastGraph. Resultant mapping on returning true can be found with {@link #getLastMatch()}
+	 *
+	 * @param g the subgraph to compare
+	 * @return true if there is an equality with the given graph, false if not.
+	 */
+	public boolean canonicallyIsomorphic(SubgraphView g) {
+		if(g.getNumberOfNodes() != view.getNumberOfNodes() || g.getNumberOfEdges() != view.getNumberOfEdges()) {
+			return false;
+		}
+		CanonicalLabelling labelling = getCanonicalLabelling();
+		CanonicalLabelling other = new CanonicalLabelling(g, directed, nodeLabels, true);
+		if(!labelling.sameForm(other)) {
+			return false;
+		}
+		int[] mapping = labelling.mappingTo(other);
+		System.arraycopy(mapping, 0, matches1, 0, mapping.length);
+		for(int n = 0; n < mapping.length; n++) {
+			matches2[mapping[n]] = n;
+		}
+		return true;
+	}
+
+
 	/**
 	 * Will actually return isomorphism of any graph, connected or disconnected
 	 * but is inefficient for sparse graphs.
@@ -325,11 +422,12 @@ isomorphismStartTime = -1;
 	 * @param g
 	 * @return
 	 */
-	private boolean isomorphicConnected(FastGraph g) {
+	private boolean isomorphicConnected(SubgraphView g) {
 		
 		nodeLabelComparator = null;
 		if(nodeLabels) {
-			nodeLabelComparator = new SimpleNodeLabelComparator(fastGraph, g);
+			nodeLabelComparator = new SimpleNodeLabelComparator(view.getParent(), g.getParent());
+			view2 = g;
 		}
 		
 		boolean ret = true;
@@ -352,11 +450,29 @@ isomorphismStartTime = -1;
 	 * @return true if there is an equality with the given graph, null if is not.
 	 */
 	public boolean undirectedIsomorphic(FastGraph g) {
-numberOfIsomorphismTests++;
-isomorphismStartTime = System.currentTimeMillis();
+		if(g == fastGraph) {
+			return undirectedIsomorphic(view);
+		}
+		return undirectedIsomorphic(SubgraphView.whole(g));
+	}
 
-		FastGraph g1 = fastGraph;
-		FastGraph g2 = g;
+
+	/**
+	 * Equality of undirected graphs. Returns a mapping if this graph is equal
+	 * to the given graph.
+	 *
+	 * @param g the graph to compare
+	 * @return true if there is an equality with the given graph, null if is not.
+	 */
+	private boolean undirectedIsomorphic(SubgraphView g) {
+stats.testStarted();
+long startTime = System.nanoTime();
+IsomorphismStats.TestEvent event = new IsomorphismStats.TestEvent();
+event.begin();
+long stageStart = startTime;
+
+		SubgraphView g1 = view;
+		SubgraphView g2 = g;
 
 		int numberOfNodes1 = g1.getNumberOfNodes();
 		int numberOfNodes2 = g2.getNumberOfNodes();
@@ -371,10 +487,7 @@ isomorphismStartTime = System.currentTimeMillis();
 		
 		if(numberOfNodes1 == 0 && numberOfNodes2 == 0) {
 Debugger.log("Isomorphic: empty graphs");
-succeed++;
-timeForIsomorphismTests += System.currentTimeMillis()-isomorphismStartTime;
-isomorphismStartTime = -1;		
-			return true;
+			return testSucceeded(startTime, event, g);
 		}
 
 		// commented out because the connected components code subsumes this
@@ -388,54 +501,42 @@ isomorphismStartTime = -1;
 
 		if(numberOfNodes1 != numberOfNodes2) {
 Debugger.log("Not isomorphic: different number of nodes");
-failOnNodeCount++;
-timeForIsomorphismTests += System.currentTimeMillis()-isomorphismStartTime;
-isomorphismStartTime = -1;		
-			return false;
+			return testFailed(IsomorphismStats.Stage.NODE_COUNT, startTime, stageStart, event, g);
 		}
+stageStart = stageFinished(IsomorphismStats.Stage.NODE_COUNT, stageStart, event);
 				
 		if(numberOfEdges1 != numberOfEdges2) {
 Debugger.log("Not isomorphic: different number of edges");
-failOnEdgeCount++;
-timeForIsomorphismTests += System.currentTimeMillis()-isomorphismStartTime;
-isomorphismStartTime = -1;		
-			return false;
+			return testFailed(IsomorphismStats.Stage.EDGE_COUNT, startTime, stageStart, event, g);
 		}
+stageStart = stageFinished(IsomorphismStats.Stage.EDGE_COUNT, stageStart, event);
 		
 		degrees2 = g.findDegrees();
 		
-		maxDegree2 = g.maximumDegree();
+		maxDegree2 = SubgraphView.maximum(degrees2);
 
 		// check the number of nodes at each degree
 		degreeBuckets2 = new int[maxDegree2+1];
-		g.findDegreeBuckets(degreeBuckets2,degrees2);
+		findDegreeBuckets(degreeBuckets2,degrees2);
 		if(!Arrays.equals(degreeBuckets1, degreeBuckets2)) {
 Debugger.log("Not isomorphic: different quantities of nodes with the same degree");
-failOnDegreeComparison++;
-timeForIsomorphismTests += System.currentTimeMillis()-isomorphismStartTime;
-isomorphismStartTime = -1;		
-			return false;
+			return testFailed(IsomorphismStats.Stage.DEGREES, startTime, stageStart, event, g);
 		}
 
 		
 		
-		am2 = new AdjacencyMatrix(g);
-		matrix2 = am2.buildIntAdjacencyMatrix();
-		eigenvalues2 = am2.findEigenvalues(matrix2);
+stageStart = stageFinished(IsomorphismStats.Stage.DEGREES, stageStart, event);
+		matrix2 = g.buildIntAdjacencyMatrix();
+		eigenvalues2 = AdjacencyMatrix.findEigenvalues(matrix2);
 		eigenvalues2 = Util.roundArray(eigenvalues2, DECIMAL_PLACES);
 		if(!compareEigenValues(eigenvalues2)) {
 Debugger.log("Not isomorphic: eigenvalues are different");
-failOnEigenvalues++;
-timeForIsomorphismTests += System.currentTimeMillis()-isomorphismStartTime;
-isomorphismStartTime = -1;		
-			return false;
+			return testFailed(IsomorphismStats.Stage.EIGENVALUES, startTime, stageStart, event, g);
 		}
+stageStart = stageFinished(IsomorphismStats.Stage.EIGENVALUES, stageStart, event);
+
 		
-if(isomorphismStartTime == -1) {
-	isomorphismStartTime = System.currentTimeMillis();
-}
-		
-		neighbours2 = findNeighbours(g,maxDegree2);
+		neighbours2 = BitsetAdjacency.build(g,true,true);
 		
 		int[] numberOfMatches = new int[numberOfNodes1]; // gives the number of relevant elements in the second array of possibleMatches 
 		int[][] possibleMatches = new int[numberOfNodes1][numberOfNodes1]; // first element is the node, second is a list of potential matches
@@ -450,7 +551,7 @@ if(isomorphismStartTime == -1) {
 					continue;
 				}
 				if(nodeLabels) {
-					if(nodeLabelComparator.compare(n1, n2) != 0) {
+					if(compareNodeLabels(n1, n2) != 0) {
 						continue;
 					}
 				}
@@ -459,21 +560,23 @@ if(isomorphismStartTime == -1) {
 			}
 			if(i == 0) {
 Debugger.log("Not isomorphic: no possible match for node "+n1+" from g1");
-failOnNodeMatches++;
-timeForIsomorphismTests += System.currentTimeMillis()-isomorphismStartTime;
-isomorphismStartTime = -1;		
-				return false;
+				return testFailed(IsomorphismStats.Stage.NODE_MATCHES, startTime, stageStart, event, g);
 			}
 			numberOfMatches[n1] = i;
 //System.out.println("node "+n1+" number of matches "+numberOfMatches[n1]+" possibleMatches "+Arrays.toString(possibleMatches[n1]));
 		}
 
-		bruteForceStartTime = System.currentTimeMillis();
+stageStart = stageFinished(IsomorphismStats.Stage.NODE_MATCHES, stageStart, event);
+long bruteForceStartTime = System.nanoTime();
+IsomorphismStats.BruteForceEvent bruteForceEvent = new IsomorphismStats.BruteForceEvent();
+bruteForceEvent.begin();
 		
 		int[] matchesIndex = new int[numberOfNodes1]; // current indexes for the search
 		Arrays.fill(matchesIndex,-1);
 		Arrays.fill(matches1,-1);
 		Arrays.fill(matches2,-1);
+		Arrays.fill(matchedBits1,0);
+		Arrays.fill(matchedBits2,0);
 
 		// backtracking search here
 		int currentNode = 0;
@@ -484,26 +587,16 @@ isomorphismStartTime = -1;
 
 			if(matchesIndex[currentNode] == numberOfMatches[currentNode]) { // backtrack here to previous node if all nodes have been tried
 //System.out.println("Backtracking from node "+ currentNode+ " matched node "+matches1[currentNode]);
-				if(matches1[currentNode] != -1) {
-					matches2[matches1[currentNode]] = -1;
-				}
-				matches1[currentNode] = -1;
+				clearMatch(currentNode);
 				matchesIndex[currentNode] = -1;
 				matchesIndex[currentNode]= 0;
 				currentNode--;
 				if(currentNode == -1) {
 Debugger.log("Not isomorphic: brute force");
-failOnBruteForce++;
-timeForIsomorphismTests += System.currentTimeMillis()-isomorphismStartTime;
-isomorphismStartTime = -1;		
-timeForBruteForceTests += System.currentTimeMillis()-bruteForceStartTime;
-bruteForceStartTime = -1;		
-					return false;
-				}
-				if(matches1[currentNode] != -1) { // reset the previous match
-					matches2[matches1[currentNode]] = -1;
+bruteForceFinished(bruteForceStartTime, bruteForceEvent, false);
+					return testFailed(IsomorphismStats.Stage.BRUTE_FORCE, startTime, stageStart, event, g);
 				}
-				matches1[currentNode] = -1; // reset the previous match
+				clearMatch(currentNode); // reset the previous match
 				matchesIndex[currentNode]++; // increment to the next node of the previous
 				continue; // might have to happen multiple times
 			}
@@ -512,17 +605,13 @@ bruteForceStartTime = -1;
 			int possibleMatch = possibleMatches[currentNode][matchesIndex[currentNode]];
 			if(isAnUndirectedMatch(currentNode,possibleMatch)) { // successful match, try the next node
 //System.out.println("SUCCESSFUL match node "+ currentNode+" with node "+possibleMatch);
-				matches1[currentNode] = possibleMatch;
-				matches2[possibleMatch] = currentNode;
+				setMatch(currentNode,possibleMatch);
 				currentNode++;
 				if(currentNode == numberOfNodes1) {
 Debugger.log("Isomorphic");
-succeed++;
-timeForIsomorphismTests += System.currentTimeMillis()-isomorphismStartTime;
-isomorphismStartTime = -1;		
-timeForBruteForceTests += System.currentTimeMillis()-bruteForceStartTime;
-bruteForceStartTime = -1;		
-					return true;
+bruteForceFinished(bruteForceStartTime, bruteForceEvent, true);
+stageFinished(IsomorphismStats.Stage.BRUTE_FORCE, stageStart, event);
+					return testSucceeded(startTime, event, g);
 				}
 				matchesIndex[currentNode] = 0;
 			} else {
@@ -534,12 +623,9 @@ bruteForceStartTime = -1;
 
 // Never gets to here
 System.out.println("Isomorphic - Should never get to here");
-succeed++;
-timeForIsomorphismTests += System.currentTimeMillis()-isomorphismStartTime;
-isomorphismStartTime = -1;		
-timeForBruteForceTests += System.currentTimeMillis()-bruteForceStartTime;
-bruteForceStartTime = -1;		
-		return true;
+bruteForceFinished(bruteForceStartTime, bruteForceEvent, true);
+stageFinished(IsomorphismStats.Stage.BRUTE_FORCE, stageStart, event);
+		return testSucceeded(startTime, event, g);
 		
 	}
 	
@@ -567,55 +653,17 @@ bruteForceStartTime = -1;
 			return false;
 		}
 		
-		HashSet<Integer> n1Neighbours = neighbours1.get(n1);
-		HashSet<Integer> n2Neighbours = neighbours2.get(n2);
-		
-		int numberOfn1NeigboursMatched = 0;
-		for(int node : n1Neighbours) {
-			
-			int matchNode = matches1[node];
-			if(matchNode == -1) { // no match, so nothing to do here
-				continue;
-			}
-			if(!n2Neighbours.contains(matchNode)) { // a neighbour of n1 has a matched node that is not a neigbour of n2
-				return false;
-			}
-			
-			if(nodeLabels) {
-				if(nodeLabelComparator.compare(node, matchNode) != 0) { // the matched neighbours have different labels
-					return false;
-				}
-			}
-
-			// removed edges Count check, never seems to be used
-			int edgeCount = matrix1[n1][node];
-			int matchedEdgeCount = matrix2[n2][matchNode];
-			if(edgeCount != matchedEdgeCount) { // different number of edge between the nodes and the matched nodes
-				return false;
-			}
-			
-			numberOfn1NeigboursMatched++;
+		int numberOfn1NeigboursMatched = countMatchedNeighbours(neighbours1, neighbours2, n1, n2);
+		if(numberOfn1NeigboursMatched == -1) {
+			return false;
 		}
 
-		// now test it the other way - are all matched neighbours of n2 neighbours of n1
-		int numberOfn2NeigboursMatched = 0;
-		for(int node : n2Neighbours) {
-			int matchNode = matches2[node];
-			if(matchNode == -1) { // no match, so nothing to do here
-				continue;
-			}
-			if(!n1Neighbours.contains(matchNode)) { // a neighbour of n2 has a matched node that is not a neighbour of n1
-				return false;
-			}
-			numberOfn2NeigboursMatched++;
-		}
-		
-		// test the same number of matches
-		if(numberOfn1NeigboursMatched != numberOfn2NeigboursMatched) {
+		// now test it the other way - every matched neighbour of n1 has a match that is a neighbour of n2,
+		// so n2 has no other matched neighbours if the counts are the same
+		if(numberOfn1NeigboursMatched != neighbours2.countNeighboursIn(n2, matchedBits2)) {
 			return false;
 		}
 
-
 		return true;
 	}
 	
@@ -628,11 +676,14 @@ bruteForceStartTime = -1;
 	 * @param g the graph to compare
 	 * @return true if there is an equality with the given graph, null if is not.
 	 */
-	private boolean directedIsomorphic(FastGraph g) {
-numberOfIsomorphismTests++;
-isomorphismStartTime = System.currentTimeMillis();
-		FastGraph g1 = fastGraph;
-		FastGraph g2 = g;
+	private boolean directedIsomorphic(SubgraphView g) {
+stats.testStarted();
+long startTime = System.nanoTime();
+IsomorphismStats.TestEvent event = new IsomorphismStats.TestEvent();
+event.begin();
+long stageStart = startTime;
+		SubgraphView g1 = view;
+		SubgraphView g2 = g;
 		
 		int numberOfNodes1 = g1.getNumberOfNodes();
 		int numberOfNodes2 = g2.getNumberOfNodes();
@@ -647,10 +698,7 @@ isomorphismStartTime = System.currentTimeMillis();
 		
 		if(numberOfNodes1 == 0 && numberOfNodes2 == 0) {
 Debugger.log("Isomorphic: empty graphs");
-succeed++;
-timeForIsomorphismTests += System.currentTimeMillis()-isomorphismStartTime;
-isomorphismStartTime = -1;		
-			return true;
+			return testSucceeded(startTime, event, g);
 		}
 
 		// commented out because the connected components code subsumes this
@@ -664,69 +712,51 @@ isomorphismStartTime = -1;
 
 		if(numberOfNodes1 != numberOfNodes2) {
 Debugger.log("Not isomorphic: different number of nodes");
-failOnNodeCount++;
-timeForIsomorphismTests += System.currentTimeMillis()-isomorphismStartTime;
-isomorphismStartTime = -1;		
-			return false;
+			return testFailed(IsomorphismStats.Stage.NODE_COUNT, startTime, stageStart, event, g);
 		}
+stageStart = stageFinished(IsomorphismStats.Stage.NODE_COUNT, stageStart, event);
 				
 		if(numberOfEdges1 != numberOfEdges2) {
 Debugger.log("Not isomorphic: different number of edges");
-failOnEdgeCount++;
-timeForIsomorphismTests += System.currentTimeMillis()-isomorphismStartTime;
-isomorphismStartTime = -1;		
-			return false;
+			return testFailed(IsomorphismStats.Stage.EDGE_COUNT, startTime, stageStart, event, g);
 		}
+stageStart = stageFinished(IsomorphismStats.Stage.EDGE_COUNT, stageStart, event);
 		
 		inDegrees2 = g.findInDegrees();
 		outDegrees2 = g.findOutDegrees();
 		
-		maxInDegree2 = g.maximumInDegree();
-		maxOutDegree2 = g.maximumOutDegree();
+		maxInDegree2 = SubgraphView.maximum(inDegrees2);
+		maxOutDegree2 = SubgraphView.maximum(outDegrees2);
 
 		// check the number of nodes at each degree
 		inDegreeBuckets2 = new int[maxInDegree2+1];
-		g.findDegreeBuckets(inDegreeBuckets2,inDegrees2);
+		findDegreeBuckets(inDegreeBuckets2,inDegrees2);
 		if(!Arrays.equals(inDegreeBuckets1, inDegreeBuckets2)) {
 Debugger.log("Not isomorphic: different quantities of nodes with the same indegree");
-failOnDegreeComparison++;
-timeForIsomorphismTests += System.currentTimeMillis()-isomorphismStartTime;
-isomorphismStartTime = -1;		
-			return false;
+			return testFailed(IsomorphismStats.Stage.DEGREES, startTime, stageStart, event, g);
 		}
 
 		outDegreeBuckets2 = new int[maxOutDegree2+1];
-		g.findDegreeBuckets(outDegreeBuckets2,outDegrees2);
+		findDegreeBuckets(outDegreeBuckets2,outDegrees2);
 		if(!Arrays.equals(outDegreeBuckets1, outDegreeBuckets2)) {
 //System.out.println("Not isomorphic: different quantities of nodes with the same outdegree");
-failOnDegreeComparison++;
-timeForIsomorphismTests += System.currentTimeMillis()-isomorphismStartTime;
-isomorphismStartTime = -1;		
-			return false;
+			return testFailed(IsomorphismStats.Stage.DEGREES, startTime, stageStart, event, g);
 		}
 		
-		am2 = new AdjacencyMatrix(g);
-		matrix2 = am2.buildIntAdjacencyMatrix();
-		eigenvalues2 = am2.findEigenvalues(matrix2);
+stageStart = stageFinished(IsomorphismStats.Stage.DEGREES, stageStart, event);
+		matrix2 = g.buildIntAdjacencyMatrix();
+		eigenvalues2 = AdjacencyMatrix.findEigenvalues(matrix2);
 		eigenvalues2 = Util.roundArray(eigenvalues2, DECIMAL_PLACES);
 		if(!compareEigenValues(eigenvalues2)) {
 Debugger.log("Not isomorphic: eigenvalues are different");
-failOnEigenvalues++;
-timeForIsomorphismTests += System.currentTimeMillis()-isomorphismStartTime;
-isomorphismStartTime = -1;		
-			return false;
+			return testFailed(IsomorphismStats.Stage.EIGENVALUES, startTime, stageStart, event, g);
 		}
-		
-		inMatrix2 = am2.buildIntInAdjacencyMatrix();
-		outMatrix2 = am2.buildIntOutAdjacencyMatrix();
+stageStart = stageFinished(IsomorphismStats.Stage.EIGENVALUES, stageStart, event);
+
 
 		
-if(isomorphismStartTime == -1) {
-	isomorphismStartTime = System.currentTimeMillis();
-}
-		
-		inNeighbours2 = findInNeighbours(g,maxInDegree2);
-		outNeighbours2 = findOutNeighbours(g,maxOutDegree2);
+		inNeighbours2 = BitsetAdjacency.build(g,true,false);
+		outNeighbours2 = BitsetAdjacency.build(g,false,true);
 		
 		int[] numberOfMatches = new int[numberOfNodes1]; // gives the number of relevant elements in the second array of possibleMatches 
 		int[][] possibleMatches = new int[numberOfNodes1][numberOfNodes1]; // first element is the node, second is a list of potential matches
@@ -744,7 +774,7 @@ if(isomorphismStartTime == -1) {
 					continue;
 				}
 				if(nodeLabels) {
-					if(nodeLabelComparator.compare(n1, n2) != 0) {
+					if(compareNodeLabels(n1, n2) != 0) {
 						continue;
 					}
 				}
@@ -753,21 +783,23 @@ if(isomorphismStartTime == -1) {
 			}
 			if(i == 0) {
 Debugger.log("Not isomorphic: no possible match for node "+n1+" from g1");
-failOnNodeMatches++;
-timeForIsomorphismTests += System.currentTimeMillis()-isomorphismStartTime;
-isomorphismStartTime = -1;		
-				return false;
+				return testFailed(IsomorphismStats.Stage.NODE_MATCHES, startTime, stageStart, event, g);
 			}
 			numberOfMatches[n1] = i;
 //System.out.println("node "+n1+" number of matches "+numberOfMatches[n1]+" possibleMatches "+Arrays.toString(possibleMatches[n1]));
 		}
 
-		bruteForceStartTime = System.currentTimeMillis();
+stageStart = stageFinished(IsomorphismStats.Stage.NODE_MATCHES, stageStart, event);
+long bruteForceStartTime = System.nanoTime();
+IsomorphismStats.BruteForceEvent bruteForceEvent = new IsomorphismStats.BruteForceEvent();
+bruteForceEvent.begin();
 		
 		int[] matchesIndex = new int[numberOfNodes1]; // current indexes for the search
 		Arrays.fill(matchesIndex,-1);
 		Arrays.fill(matches1,-1);
 		Arrays.fill(matches2,-1);
+		Arrays.fill(matchedBits1,0);
+		Arrays.fill(matchedBits2,0);
 
 		// backtracking search here
 		int currentNode = 0;
@@ -778,26 +810,16 @@ isomorphismStartTime = -1;
 
 			if(matchesIndex[currentNode] == numberOfMatches[currentNode]) { // backtrack here to previous node if all nodes have been tried
 //System.out.println("Backtracking from node "+ currentNode+ " matched node "+matches1[currentNode]);
-				if(matches1[currentNode] != -1) {
-					matches2[matches1[currentNode]] = -1;
-				}
-				matches1[currentNode] = -1;
+				clearMatch(currentNode);
 				matchesIndex[currentNode] = -1;
 				matchesIndex[currentNode]= 0;
 				currentNode--;
 				if(currentNode == -1) {
 Debugger.log("Not isomorphic: brute force");
-failOnBruteForce++;
-timeForIsomorphismTests += System.currentTimeMillis()-isomorphismStartTime;
-isomorphismStartTime = -1;		
-timeForBruteForceTests += System.currentTimeMillis()-bruteForceStartTime;
-bruteForceStartTime = -1;		
-					return false;
-				}
-				if(matches1[currentNode] != -1) { // reset the previous match
-					matches2[matches1[currentNode]] = -1;
+bruteForceFinished(bruteForceStartTime, bruteForceEvent, false);
+					return testFailed(IsomorphismStats.Stage.BRUTE_FORCE, startTime, stageStart, event, g);
 				}
-				matches1[currentNode] = -1; // reset the previous match
+				clearMatch(currentNode); // reset the previous match
 				matchesIndex[currentNode]++; // increment to the next node of the previous
 				continue; // might have to happen multiple times
 			}
@@ -806,17 +828,13 @@ bruteForceStartTime = -1;
 			int possibleMatch = possibleMatches[currentNode][matchesIndex[currentNode]];
 			if(isADirectedMatch(currentNode,possibleMatch)) { // successful match, try the next node
 //System.out.println("SUCCESSFUL match node "+ currentNode+" with node "+possibleMatch);
-				matches1[currentNode] = possibleMatch;
-				matches2[possibleMatch] = currentNode;
+				setMatch(currentNode,possibleMatch);
 				currentNode++;
 				if(currentNode == numberOfNodes1) {
 Debugger.log("Isomorphic");
-succeed++;
-timeForIsomorphismTests += System.currentTimeMillis()-isomorphismStartTime;
-isomorphismStartTime = -1;		
-timeForBruteForceTests += System.currentTimeMillis()-bruteForceStartTime;
-bruteForceStartTime = -1;		
-					return true;
+bruteForceFinished(bruteForceStartTime, bruteForceEvent, true);
+stageFinished(IsomorphismStats.Stage.BRUTE_FORCE, stageStart, event);
+					return testSucceeded(startTime, event, g);
 				}
 				matchesIndex[currentNode] = 0;
 			} else {
@@ -828,12 +846,9 @@ bruteForceStartTime = -1;
 
 // Never gets to here
 //System.out.println("Isomorphic - Should never get to here");
-succeed++;
-timeForIsomorphismTests += System.currentTimeMillis()-isomorphismStartTime;
-isomorphismStartTime = -1;		
-timeForBruteForceTests += System.currentTimeMillis()-bruteForceStartTime;
-bruteForceStartTime = -1;		
-		return true;
+bruteForceFinished(bruteForceStartTime, bruteForceEvent, true);
+stageFinished(IsomorphismStats.Stage.BRUTE_FORCE, stageStart, event);
+		return testSucceeded(startTime, event, g);
 		
 	}
 
@@ -857,99 +872,25 @@ bruteForceStartTime = -1;
 		
 		// InNeighbours first
 		
-		HashSet<Integer> n1InNeighbours = inNeighbours1.get(n1);
-		HashSet<Integer> n2InNeighbours = inNeighbours2.get(n2);
-
-		int numberOfn1NeigboursMatched = 0;
-		for(int node : n1InNeighbours) {
-			
-			int matchNode = matches1[node];
-			if(matchNode == -1) { // no match, so nothing to do here
-				continue;
-			}
-			if(!n2InNeighbours.contains(matchNode)) { // a neighbour of n1 has a matched node that is not a neigbour of n2
-				return false;
-			}
-			
-			if(nodeLabels) {
-				if(nodeLabelComparator.compare(node, matchNode) != 0) { // the matched neighbours have different labels
-					return false;
-				}
-			}
-
-			int edgeCount = inMatrix1[n1][node];
-			int matchedEdgeCount = inMatrix2[n2][matchNode];
-			if(edgeCount != matchedEdgeCount) { // different number of edge between the nodes and the matched nodes
-				return false;
-			}
-			
-			numberOfn1NeigboursMatched++;
+		int numberOfn1NeigboursMatched = countMatchedNeighbours(inNeighbours1, inNeighbours2, n1, n2);
+		if(numberOfn1NeigboursMatched == -1) {
+			return false;
 		}
 
-		// now test it the other way - are all matched neighbours of n2 neighbours of n1
-		int numberOfn2NeigboursMatched = 0;
-		for(int node : n2InNeighbours) {
-			int matchNode = matches2[node];
-			if(matchNode == -1) { // no match, so nothing to do here
-				continue;
-			}
-			if(!n1InNeighbours.contains(matchNode)) { // a neighbour of n2 has a matched node that is not a neighbour of n1
-				return false;
-			}
-			numberOfn2NeigboursMatched++;
-		}
-		
 		// test the same number of in node matches
-		if(numberOfn1NeigboursMatched != numberOfn2NeigboursMatched) {
+		if(numberOfn1NeigboursMatched != inNeighbours2.countNeighboursIn(n2, matchedBits2)) {
 			return false;
 		}
 
 		// Now test OutNeighbours
 		
-		HashSet<Integer> n1OutNeighbours = outNeighbours1.get(n1);
-		HashSet<Integer> n2OutNeighbours = outNeighbours2.get(n2);
-
-		numberOfn1NeigboursMatched = 0;
-		for(int node : n1OutNeighbours) {
-			
-			int matchNode = matches1[node];
-			if(matchNode == -1) { // no match, so nothing to do here
-				continue;
-			}
-			if(!n2OutNeighbours.contains(matchNode)) { // a neighbour of n1 has a matched node that is not a neigbour of n2
-				return false;
-			}
-			
-			if(nodeLabels) {
-				if(nodeLabelComparator.compare(node, matchNode) != 0) { // the matched neighbours have different labels
-					return false;
-				}
-			}
-			int edgeCount = outMatrix1[n1][node];
-			int matchedEdgeCount = outMatrix2[n2][matchNode];
-			if(edgeCount != matchedEdgeCount) { // different number of edge between the nodes and the matched nodes
-				return false;
-			}
-			
-			
-			numberOfn1NeigboursMatched++;
+		numberOfn1NeigboursMatched = countMatchedNeighbours(outNeighbours1, outNeighbours2, n1, n2);
+		if(numberOfn1NeigboursMatched == -1) {
+			return false;
 		}
 
-		// now test it the other way - are all matched neighbours of n2 neighbours of n1
-		numberOfn2NeigboursMatched = 0;
-		for(int node : n2OutNeighbours) {
-			int matchNode = matches2[node];
-			if(matchNode == -1) { // no match, so nothing to do here
-				continue;
-			}
-			if(!n1OutNeighbours.contains(matchNode)) { // a neighbour of n2 has a matched node that is not a neighbour of n1
-				return false;
-			}
-			numberOfn2NeigboursMatched++;
-		}
-		
 		// test the same number of out node matches
-		if(numberOfn1NeigboursMatched != numberOfn2NeigboursMatched) {
+		if(numberOfn1NeigboursMatched != outNeighbours2.countNeighboursIn(n2, matchedBits2)) {
 			return false;
 		}
 
@@ -958,6 +899,83 @@ bruteForceStartTime = -1;
 
 
 
+	/**
+	 * Check that the matched neighbours of n1 have matches that are neighbours of n2, with the same
+	 * number of connecting edges and, if node labels are compared, the same labels. Only the
+	 * matched neighbours are visited, found by an AND of the neighbour row with the matched nodes.
+	 *
+	 * @param a1 neighbours in fastGraph
+	 * @param a2 neighbours in g
+	 * @param n1 node in fastGraph
+	 * @param n2 node in g
+	 * @return the number of matched neighbours of n1, or -1 if one does not match
+	 */
+	private int countMatchedNeighbours(BitsetAdjacency a1, BitsetAdjacency a2, int n1, int n2) {
+
+		long[] rows1 = a1.getRows();
+		long[] rows2 = a2.getRows();
+		int words = a1.getWordsPerRow();
+		int base1 = n1*words;
+		int base2 = n2*words;
+		boolean compareEdgeCounts = a1.hasMultipleEdges() || a2.hasMultipleEdges(); // otherwise every count is one
+		int ret = 0;
+		for(int w = 0; w < words; w++) {
+			long bits = rows1[base1+w] & matchedBits1[w];
+			while(bits != 0) {
+				int node = (w << 6)+Long.numberOfTrailingZeros(bits);
+				bits &= bits-1;
+				int matchNode = matches1[node];
+				if((rows2[base2+(matchNode >>> 6)] & (1L << matchNode)) == 0) { // a neighbour of n1 has a matched node that is not a neigbour of n2
+					return -1;
+				}
+				
+				if(nodeLabels) {
+					if(compareNodeLabels(node, matchNode) != 0) { // the matched neighbours have different labels
+						return -1;
+					}
+				}
+
+				if(compareEdgeCounts && a1.edgeCount(n1, node) != a2.edgeCount(n2, matchNode)) { // different number of edge between the nodes and the matched nodes
+					return -1;
+				}
+				
+				ret++;
+			}
+		}
+		return ret;
+	}
+
+
+	/**
+	 * Match n1 to n2 in the search.
+	 *
+	 * @param n1 node in fastGraph
+	 * @param n2 node in g
+	 */
+	private void setMatch(int n1, int n2) {
+		matches1[n1] = n2;
+		matches2[n2] = n1;
+		BitsetAdjacency.set(matchedBits1, n1);
+		BitsetAdjacency.set(matchedBits2, n2);
+	}
+
+
+	/**
+	 * Remove any match of n1 in the search.
+	 *
+	 * @param n1 node in fastGraph
+	 */
+	private void clearMatch(int n1) {
+		int n2 = matches1[n1];
+		if(n2 != -1) {
+			matches2[n2] = -1;
+			BitsetAdjacency.clear(matchedBits2, n2);
+		}
+		matches1[n1] = -1;
+		BitsetAdjacency.clear(matchedBits1, n1);
+	}
+
+
 	/**
 	 * Generate a string that can be used to put graph in buckets before final brute force comparison.
 	 * 
@@ -966,9 +984,9 @@ bruteForceStartTime = -1;
 	protected String generateStringForHash() {
 		
 		StringBuffer sb = new StringBuffer();
-		sb.append(Integer.toString(fastGraph.getNumberOfNodes()));
+		sb.append(Integer.toString(view.getNumberOfNodes()));
 		sb.append(",");
-		sb.append(Integer.toString(fastGraph.getNumberOfEdges()));
+		sb.append(Integer.toString(view.getNumberOfEdges()));
 		sb.append(Arrays.toString(degreeBuckets1));
 		sb.append(Arrays.toString(eigenvalues1));
 		sb.append(generateTimeString());
@@ -982,21 +1000,46 @@ bruteForceStartTime = -1;
 	 * @return The age string
 	 */
 	protected String generateTimeString() {
-		int maxAge = fastGraph.findMaximumNodeAge();
-		int minAge = fastGraph.findMinimumNodeAge();
+		int maxAge = view.findMaximumNodeAge();
+		int minAge = view.findMinimumNodeAge();
 		//Debugger.log("minAge: " + minAge + " maxAge: " + maxAge);
+		int[] ageCounts = view.countNodesAtEachAge();
 		StringBuffer sb = new StringBuffer();
 		sb.append("[");
 		for(int i = minAge; i < maxAge; i++) {
-			sb.append(fastGraph.countNodesOfAge(i));
+			sb.append(ageCounts[i-Byte.MIN_VALUE]);
 			sb.append(",");
 		}
-		sb.append(fastGraph.countNodesOfAge(maxAge));
+		sb.append(ageCounts[maxAge-Byte.MIN_VALUE]);
 		sb.append("]");
 		return sb.toString();
 	}
 
 
+	/**
+	 * populate buckets index with the number of nodes that have degree index
+	 * 
+	 * @param buckets big enough to hold all degrees, should be at least maxDegree+1
+	 * @param degrees the degree of each node
+	 */
+	private static void findDegreeBuckets(int[] buckets, int[] degrees) {
+		for(int i = 0; i < degrees.length; i++) {
+			buckets[degrees[i]]++;
+		}
+	}
+	
+	/**
+	 * Compare node labels of the two graphs in the last test, by their index in the parents of the views.
+	 * 
+	 * @param n1 node in view
+	 * @param n2 node in view2
+	 * @return the comparison from nodeLabelComparator
+	 */
+	private int compareNodeLabels(int n1, int n2) {
+		return nodeLabelComparator.compare(view.getParentNode(n1), view2.getParentNode(n2));
+	}
+
+
 	/**
 	 * gives the neighbours of nodes in g, without duplicates and without self sourcing.
 	 * 
@@ -1092,7 +1135,7 @@ bruteForceStartTime = -1;
 	 */
 	public boolean isomorphic(FastGraph g, int[] nodes, int[] edges) {
 
-		FastGraph subGraph = g.generateGraphFromSubgraph(nodes,edges);
+		SubgraphView subGraph = SubgraphView.of(g,nodes,edges);
 		
 		boolean iso = isomorphic(subGraph);
 
@@ -1156,7 +1199,11 @@ bruteForceStartTime = -1;
 	 */
 	public boolean isomorphicOld(FastGraph g) {
 		
-		Graph displayGraph = fastGraph.generateDisplayGraph();
+		FastGraph g1 = fastGraph;
+		if(g1 == null) {
+			g1 = view.toFastGraph();
+		}
+		Graph displayGraph = g1.generateDisplayGraph();
 		Graph dg = g.generateDisplayGraph();
 		boolean iso = displayGraph.isomorphic(dg);
 		return iso;
@@ -1171,7 +1218,7 @@ bruteForceStartTime = -1;
 	public boolean compareByEigenvalues(FastGraph g) {
 		AdjacencyMatrix gam = new AdjacencyMatrix(g);
 		int[][] gMatrix = gam.buildIntAdjacencyMatrix();
-		double[] gEigenvalues = gam.findEigenvalues(gMatrix);
+		double[] gEigenvalues = AdjacencyMatrix.findEigenvalues(gMatrix);
 		gam = null;
 		//System.gc();
 		return compareEigenValues(gEigenvalues);
@@ -1256,44 +1303,136 @@ bruteForceStartTime = -1;
 	
 
 	/**
-	 * Output timing
+	 * Add the time of a stage of a test to the stats and the flight recorder event.
+	 *
+	 * @param stage the stage that has finished
+	 * @param stageStart the start of the stage, from System.nanoTime()
+	 * @param event the event begun at the start of the test
+	 * @return the end of the stage, from System.nanoTime(), which is the start of the next stage
 	 */
-	public static void reportTimes() {
-		if(numberOfIsomorphismTests > 0) {
-			System.out.println("Isomorphism test average "+(timeForIsomorphismTests/(1000.0*numberOfIsomorphismTests))+" seconds total tests "+numberOfIsomorphismTests+" total time "+(timeForIsomorphismTests/1000.0)+" seconds");
-		} else {
-			System.out.println("Isomorphism total tests "+numberOfIsomorphismTests);
-		}
-/*		if(numberOfOldIsomorphismTests > 0) {
-			System.out.println("Old Isomorphism test average "+(timeForOldIsomorphismTests/(1000.0*numberOfOldIsomorphismTests))+" seconds total tests "+numberOfOldIsomorphismTests+" total time "+(timeForOldIsomorphismTests/1000.0)+" seconds");
+	private long stageFinished(IsomorphismStats.Stage stage, long stageStart, IsomorphismStats.TestEvent event) {
+		long now = System.nanoTime();
+		stats.stageFinished(stage, now-stageStart);
+		event.addStageTime(stage, now-stageStart);
+		return now;
+	}
+
+
+	/**
+	 * Count a test rejected by a filter stage, and record it for the flight recorder.
+	 *
+	 * @param stage the stage that rejected the graph
+	 * @param startTime the start of the test, from System.nanoTime()
+	 * @param stageStart the start of the rejecting stage, from System.nanoTime()
+	 * @param event the event begun at the start of the test
+	 * @param g the graph tested
+	 * @return false, for the test to return
+	 */
+	private boolean testFailed(IsomorphismStats.Stage stage, long startTime, long stageStart, IsomorphismStats.TestEvent event, SubgraphView g) {
+		long now = stageFinished(stage, stageStart, event);
+		stats.failed(stage, now-startTime);
+		commitTestEvent(event, stage.getDescription(), false, g);
+		return false;
+	}
+
+
+	/**
+	 * Count a test that found an isomorphism, and record it for the flight recorder.
+	 *
+	 * @param startTime the start of the test, from System.nanoTime()
+	 * @param event the event begun at the start of the test
+	 * @param g the graph tested
+	 * @return true, for the test to return
+	 */
+	private boolean testSucceeded(long startTime, IsomorphismStats.TestEvent event, SubgraphView g) {
+		stats.succeeded(System.nanoTime()-startTime);
+		commitTestEvent(event, "Isomorphic", true, g);
+		return true;
+	}
+
+
+	/**
+	 * @param event the event begun at the start of the test
+	 * @param stage the stage that decided the test
+	 * @param isomorphic the result of the test
+	 * @param g the graph tested
+	 */
+	private void commitTestEvent(IsomorphismStats.TestEvent event, String stage, boolean isomorphic, SubgraphView g) {
+		event.end();
+		if(event.shouldCommit()) {
+			event.stage = stage;
+			event.isomorphic = isomorphic;
+			event.directed = directed;
+			event.nodes = g.getNumberOfNodes();
+			event.edges = g.getNumberOfEdges();
+			event.commit();
 		}
-		if(numberOfEigenvalueTests > 0) {
-			System.out.println("Eigenvalue test average "+(timeForEigenvalueTests/(1000.0*numberOfEigenvalueTests))+" total tests "+numberOfEigenvalueTests+" total time "+(timeForEigenvalueTests/1000.0)+" seconds");
-		} else {
-			System.out.println("Eigenvalue total tests "+numberOfEigenvalueTests);
+	}
+
+
+	/**
+	 * Count a finished brute force search, and record it for the flight recorder.
+	 *
+	 * @param bruteForceStartTime the start of the search, from System.nanoTime()
+	 * @param event the event begun at the start of the search
+	 * @param isomorphic the result of the search
+	 */
+	private void bruteForceFinished(long bruteForceStartTime, IsomorphismStats.BruteForceEvent event, boolean isomorphic) {
+		stats.bruteForceFinished(System.nanoTime()-bruteForceStartTime);
+		event.end();
+		if(event.shouldCommit()) {
+			event.isomorphic = isomorphic;
+			event.directed = directed;
+			event.nodes = view.getNumberOfNodes();
+			event.commit();
 		}
-		if(numberOfSubgraphsGenerated > 0) {
-			System.out.println("Subgraph generation average "+(timeForSubgraphsGenerated/(1000.0*numberOfSubgraphsGenerated))+" seconds total generated "+numberOfSubgraphsGenerated+" total time "+(timeForSubgraphsGenerated/1000.0)+" seconds");
+	}
+
+
+	/**
+	 * @return the stats that tests made by this object are counted in, shared by all ExactIsomorphisms unless set
+	 */
+	public IsomorphismStats getStats() {
+		return stats;
+	}
+
+
+	/**
+	 * Count the tests made by this object separately, for instance to profile one search.
+	 *
+	 * @param stats the stats to count tests in
+	 */
+	public void setStats(IsomorphismStats stats) {
+		this.stats = stats;
+		if(eiList1 != null) {
+			for(ExactIsomorphism ei : eiList1) {
+				ei.setStats(stats);
+			}
 		}
-*/	}
+	}
+
+
+	/**
+	 * @return the stats shared by all ExactIsomorphisms that have not been given their own, safe to read while tests run on other threads
+	 */
+	public static IsomorphismStats getGlobalStats() {
+		return globalStats;
+	}
+
+
+	/**
+	 * Output timing
+	 */
+	public static void reportTimes() {
+		globalStats.reportTimes();
+	}
 
 	
 	/**
 	 * Output counts
 	 */
 	public static void reportFailRatios() {
-		
-		double total = failOnConnectedness+failOnNodeCount+failOnEdgeCount+failOnEigenvalues+failOnDegreeComparison+failOnNodeMatches+failOnBruteForce+succeed;
-		
-		System.out.println("fail on Connectedness "+failOnConnectedness+" "+(100.0*failOnConnectedness/total)+" % of calls");
-		System.out.println("fail on Node Count "+failOnNodeCount+" "+(100.0*failOnNodeCount/total)+" % of calls");
-		System.out.println("fail on Edge Count "+failOnEdgeCount+" "+(100.0*failOnEdgeCount/total)+" % of calls");
-		System.out.println("fail on Degree Comparison "+failOnDegreeComparison+" "+(100.0*failOnDegreeComparison/total)+" % of calls");
-		System.out.println("fail on Eigenvalues "+failOnEigenvalues+" "+(100.0*failOnEigenvalues/total)+" % of calls");
-		System.out.println("fail on Node Matches "+failOnNodeMatches+" "+(100.0*failOnNodeMatches/total)+" % of calls");
-		System.out.println("fail on Brute Force "+failOnBruteForce+" "+(100.0*failOnBruteForce/total)+" % of calls");
-		System.out.println("succeed "+succeed+" "+(100.0*succeed/total)+" "+" % of calls");
-
+		globalStats.reportFailRatios();
 	}
 
 
@@ -1301,25 +1440,7 @@ bruteForceStartTime = -1;
 	 * sets all the profiling counts and timing to zero
 	 */
 	public static void resetProfiling() {
-		numberOfIsomorphismTests = 0;
-		numberOfOldIsomorphismTests = 0;
-		numberOfEigenvalueTests = 0;
-		
-		timeForIsomorphismTests = 0;
-		timeForBruteForceTests = 0;
-		timeForOldIsomorphismTests = 0;
-		timeForEigenvalueTests = 0;
-		isomorphismStartTime = -1;
-		bruteForceStartTime = -1;
-		
-		failOnNodeCount = 0;
-		failOnEdgeCount = 0;
-		failOnEigenvalues = 0;
-		failOnDegreeComparison = 0;
-		failOnNodeMatches = 0;
-		failOnBruteForce = 0;
-		succeed = 0;
-	
+		globalStats.reset();
 	}
 
 }
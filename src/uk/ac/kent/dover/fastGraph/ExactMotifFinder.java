@@ -21,11 +21,11 @@ import uk.ac.kent.dover.fastGraph.Gui.MotifTask;
 public class ExactMotifFinder {
 	
 	/**
-	 *  string is the hash value of the fastGraph, first list is the
-	 *  list of FastGraphs with the same hash value, second linked list is the list
-	 *  of FastGraphs that are isomorphic
+	 *  long is the invariant hash of the fastGraph, the list holds the
+	 *  motifs with the same hash value, each with a count of the isomorphic
+	 *  FastGraphs found
 	 */
-	private static HashMap<String,LinkedList<IsoHolder>> hashBuckets;
+	private static HashMap<Long,LinkedList<IsoHolder>> hashBuckets;
 	
 	private FastGraph g;
 	private MotifTask mt = null;
@@ -33,6 +33,8 @@ public class ExactMotifFinder {
 	private boolean saveAll = false;
 	private int numOfResults = 0;
 	private FastGraph referenceGraph = null;
+	private InvariantHasher hasher = new WeisfeilerLehmanHasher(); // puts subgraphs in buckets before the canonical forms are compared
+	private boolean serialRewiring = false;
 	
 	/**
 	 * Trivial contructor
@@ -96,6 +98,41 @@ public class ExactMotifFinder {
 		this.saveAll = saveAll;
 	}
 
+	/**
+	 * Gets the hasher that puts subgraphs into buckets
+	 * @return the hasher
+	 */
+	public InvariantHasher getInvariantHasher() {
+		return hasher;
+	}
+
+	/**
+	 * Sets the hasher that puts subgraphs into buckets. Motifs are named from their canonical
+	 * form, so the hasher only changes the speed of the search, not the results.
+	 * @param hasher the hasher, {@link WeisfeilerLehmanHasher} by default
+	 */
+	public void setInvariantHasher(InvariantHasher hasher) {
+		this.hasher = hasher;
+	}
+
+	/**
+	 * If the reference set is made by the older serial rewiring
+	 * @return serialRewiring
+	 */
+	public boolean isSerialRewiring() {
+		return serialRewiring;
+	}
+
+	/**
+	 * Sets how the reference set is made, see {@link #buildRewires(int)}. Rewires already saved
+	 * are used whichever way they were made.
+	 * @param serialRewiring true for the older serial rewiring, saved as buffers, false for edge swaps
+	 * on several threads, saved as containers
+	 */
+	public void setSerialRewiring(boolean serialRewiring) {
+		this.serialRewiring = serialRewiring;
+	}
+
 	/**
 	 * Runs the comparison of motif data for each size given
 	 * @param minSize The minimum size of motifs found
@@ -181,7 +218,7 @@ public class ExactMotifFinder {
 			}
 			
 			HashMap<String,IsoHolder> isoLists = new HashMap<>();	
-			HashMap<String,LinkedList<IsoHolder>> hashBuckets = new HashMap<String,LinkedList<IsoHolder>>();
+			HashMap<Long,LinkedList<IsoHolder>> hashBuckets = new HashMap<Long,LinkedList<IsoHolder>>();
 			
 			try {
 				if(referenceSet) {
@@ -190,8 +227,7 @@ public class ExactMotifFinder {
 					if(referenceGraph == null) {
 						//for each rewired graph
 						for(int i = 0; i < rewiresNeeded; i++) {
-							FastGraph graph = FastGraph.loadBuffersGraphFactory("motifs"+File.separatorChar+graphName+File.separatorChar+"-rewire-"+i,
-									"-rewire-"+i);
+							FastGraph graph = loadRewire(graphName, i);
 							
 							mt.publish((int) ((((double) i)/rewiresNeeded)*100), "From rewire " + (i+1) + " of " + rewiresNeeded, false);	
 							//find motifs
@@ -225,12 +261,12 @@ public class ExactMotifFinder {
 	 * @param referenceSet If the graph is the referenceSet
 	 * @throws IOException If the graph cannot be loaded
 	 */
-	private void findMotifsInGraph(HashMap<String,IsoHolder> isoLists, HashMap<String,LinkedList<IsoHolder>> hashBuckets, 
+	private void findMotifsInGraph(HashMap<String,IsoHolder> isoLists, HashMap<Long,LinkedList<IsoHolder>> hashBuckets, 
 			int size, FastGraph graph, boolean referenceSet) throws IOException {
 	
 		ExactMotifFinder emf = new ExactMotifFinder(graph,saveAll && !referenceSet);
 		Debugger.log("    finding motifs");
-		emf.findMotifs(size, 0, hashBuckets);
+		emf.findMotifs(size, 0, hashBuckets, hasher);
 		HashMap<String,IsoHolder> newIsoLists = emf.extractGraphLists(hashBuckets);
 		Debugger.log("    merging lists");
 		isoLists = mergeIsoLists(isoLists, newIsoLists);
@@ -249,7 +285,7 @@ public class ExactMotifFinder {
 	 * @throws IOException If the graph cannot be loaded
 	 */
 	private void exportMotifData(HashMap<String,IsoHolder> isoLists, boolean referenceSet, int motifSize, String graphName, 
-			File output, HashMap<String,LinkedList<IsoHolder>> hashBuckets) throws IOException {
+			File output, HashMap<Long,LinkedList<IsoHolder>> hashBuckets) throws IOException {
 		
 		long time = Debugger.createTime();
 		
@@ -270,9 +306,7 @@ public class ExactMotifFinder {
 		StringBuilder sb = new StringBuilder();
 		int outputCounter = 0;
 		long outputTime = Debugger.createTime();
-		for(String key : hashBuckets.keySet()) {
-			LinkedList<IsoHolder> holders = hashBuckets.get(key);
-			int count = 1;
+		for(LinkedList<IsoHolder> holders : hashBuckets.values()) {
 			outputCounter++;
 			
 			int outputPercentage = (int) ( ((double) outputCounter/hashBuckets.size())*100);
@@ -281,7 +315,7 @@ public class ExactMotifFinder {
 			for (IsoHolder holder : holders) {
 		//		Debugger.log("    "+holder.getKey() + " num: " + holder.getNumber() + " total: " + totalSize);
 				double percentage = ((double) holder.getNumber()/totalSize)*100;
-				sb.append(key+"-"+count+"\t"+holder.getNumber() + "\t" + String.format( "%.10f", percentage ) +"\n");
+				sb.append(holder.getKey()+"\t"+holder.getNumber() + "\t" + String.format( "%.10f", percentage ) +"\n");
 				
 				//save buffer
 				//if(referenceSet) {
@@ -290,10 +324,8 @@ public class ExactMotifFinder {
 				//	gOut.saveBuffers("motifs"+File.separatorChar+graphName+File.separatorChar+key+"-"+count, key+"-"+count);
 					
 					//save SVG
-					exportSVG(key, holder.getGraph(), count, false);
+					exportSVG(holder.getKey(), holder.getGraph(), false);
 				//}
-
-				count++;
 			}
 			
 			if(outputCounter % 1000 == 0) {
@@ -311,11 +343,47 @@ public class ExactMotifFinder {
 	}
 	
 	/**
-	 * Builds a list of rewired graphs, each one built from the previous and saved to disk
+	 * Builds the rewired graphs of the reference set and saves them to disk. Unless serial rewiring is set, or
+	 * the graph has more than one generation, the rewires are made by a {@link DegreePreservingRewirer} on several
+	 * threads, each independently from the graph, and saved as containers. Edge swaps keep the in and out degree
+	 * of every node, but may create parallel edges and self sourcing edges, so the reference set can hold motifs with
+	 * these that the graph cannot. Graphs with later generations use the serial rewiring, which adds random generations.
 	 * @param numOfRewires The number of rewires to perform
-	 * @throws IOException If the rewired graph cannot be saved
+	 * @throws IOException If the rewired graphs cannot be saved
 	 */
 	public void buildRewires(int numOfRewires) throws IOException  {
+		if(serialRewiring || g.findMaximumNodeAge() > 0) {
+			buildSerialRewires(numOfRewires);
+			return;
+		}
+		String graphName = g.getName();
+		boolean allExist = true;
+		for(int i = 0; i < numOfRewires; i++) {
+			if(!rewireContainer(graphName, i).exists() && !rewireFolder(graphName, i).exists()) {
+				allExist = false;
+			}
+		}
+		//if all the output exists, do nothing
+		if(allExist) {
+			return;
+		}
+		
+		mt.publish(0, "Rewiring "+numOfRewires+" times",false);
+		Debugger.log("    rewiring "+numOfRewires+" times");
+		new File("motifs"+File.separatorChar+graphName).mkdirs();
+		new DegreePreservingRewirer(g).rewireToContainers(numOfRewires, 10L*g.getNumberOfEdges(), g.getRandomSeed(0),
+				"motifs"+File.separatorChar+graphName, "", Runtime.getRuntime().availableProcessors());
+	}
+	
+	
+	/**
+	 * Builds a list of rewired graphs, each one built from the previous and saved to disk as buffers.
+	 * Generation 0 is rewired, then random later generations are added, see
+	 * {@link FastGraph#generateRewiredBehaviourGraphWithRandomGenerations(int, long, double, double, int, int, boolean, boolean)}.
+	 * @param numOfRewires The number of rewires to perform
+	 * @throws IOException If the rewired graph cannot be saved
+	 */
+	private void buildSerialRewires(int numOfRewires) throws IOException  {
 		String graphName = g.getName();
 		FastGraph last = g;
 		for(int i = 0; i < numOfRewires; i++) {
@@ -336,7 +404,7 @@ public class ExactMotifFinder {
 			FastGraph newG = null;
 			try{
 			newG = last.generateRewiredBehaviourGraphWithRandomGenerations(
-					1, last.getNodeBuf().getLong(0), 0.1, 0.1, last.getNumberOfNodes()/10, last.getNumberOfEdges()/10, 
+					1, last.getRandomSeed(0), 0.1, 0.1, last.getNumberOfNodes()/10, last.getNumberOfEdges()/10, 
 					true, false);
 			} catch(Exception e) {
 				e.printStackTrace();
@@ -345,22 +413,60 @@ public class ExactMotifFinder {
 			newG.setName(graphName);
 			mt.publish(rewirePercentage, "Saving Rewire "+(i+1),false);	
 			newG.saveBuffers("motifs"+File.separatorChar+graphName+File.separatorChar+"-rewire-"+i, "-rewire-"+i);
-			exportSVG(Launcher.startingWorkingDirectory+File.separatorChar+"motifs"+File.separatorChar+graphName+File.separatorChar+"-rewire-"+i, newG, 0, true);
+			exportSVG(Launcher.startingWorkingDirectory+File.separatorChar+"motifs"+File.separatorChar+graphName+File.separatorChar+"-rewire-"+i, newG, true);
 			
 			
 			last = newG;
 		}
 	}	
 	
+	/**
+	 * Loads a rewired graph of the reference set, from its container if there is one, or else from buffers
+	 * @param graphName The name of the graph that was rewired
+	 * @param rewire The number of the rewire
+	 * @return The rewired graph, named after the graph, so its motifs are saved with the graph's
+	 * @throws IOException If the graph cannot be loaded
+	 */
+	private FastGraph loadRewire(String graphName, int rewire) throws IOException {
+		FastGraph ret;
+		if(rewireContainer(graphName, rewire).exists()) {
+			ret = FastGraph.loadContainerGraphFactory("motifs"+File.separatorChar+graphName, "-rewire-"+rewire, false);
+		} else {
+			ret = FastGraph.loadBuffersGraphFactory("motifs"+File.separatorChar+graphName+File.separatorChar+"-rewire-"+rewire,
+					"-rewire-"+rewire);
+		}
+		ret.setName(graphName);
+		return ret;
+	}
+	
+	/**
+	 * @param graphName The name of the graph that was rewired
+	 * @param rewire The number of the rewire
+	 * @return The container file of a rewire made by edge swaps
+	 */
+	private static File rewireContainer(String graphName, int rewire) {
+		return new File(Launcher.startingWorkingDirectory+File.separatorChar+"motifs"+File.separatorChar+graphName+File.separatorChar+"-rewire-"+rewire+GraphContainer.EXTENSION);
+	}
+	
+	/**
+	 * @param graphName The name of the graph that was rewired
+	 * @param rewire The number of the rewire
+	 * @return The folder of the buffers of a rewire made by serial rewiring
+	 */
+	private static File rewireFolder(String graphName, int rewire) {
+		return new File(Launcher.startingWorkingDirectory+File.separatorChar+"motifs"+File.separatorChar+graphName+File.separatorChar+"-rewire-"+rewire);
+	}
+	
 	/**
 	 * Outputs a given map hashBuckets to the screen. Note: Not to a file!
 	 * 
 	 * @param hashBuckets The hashbuckets to output
 	 */
-	public void outputHashBuckets(HashMap<String,LinkedList<IsoHolder>> hashBuckets) {
+	public void outputHashBuckets(HashMap<Long,LinkedList<IsoHolder>> hashBuckets) {
 		int count = 0;
-		for(String key : hashBuckets.keySet()) {
-			LinkedList<IsoHolder> sameHashList = hashBuckets.get(key);
+		for(Long hash : hashBuckets.keySet()) {
+			String key = InvariantHasher.toKey(hash);
+			LinkedList<IsoHolder> sameHashList = hashBuckets.get(hash);
 //			Debugger.log("hash string \""+key+"\" number of different isomorphic groups "+sameHashList.size());
 			for(IsoHolder isoList: sameHashList) {
 Debugger.log("hash string \t"+key+"\tnum of diff isom groups\t"+sameHashList.size()+"\tnum of nodes in iso list\t"+isoList.getNumber());
@@ -414,7 +520,7 @@ Debugger.log("hash string \t"+key+"\tnum of diff isom groups\t"+sameHashList.siz
 	 * Returns the hashbuckets from this instance
 	 * @return The hashbuckets
 	 */
-	public HashMap<String,LinkedList<IsoHolder>> getHashBuckets() {
+	public HashMap<Long,LinkedList<IsoHolder>> getHashBuckets() {
 		return hashBuckets;
 	}
 	
@@ -426,18 +532,13 @@ Debugger.log("hash string \t"+key+"\tnum of diff isom groups\t"+sameHashList.siz
  	 * @param hashBuckets The buckets to store the results in
 	 * @return collection of lists, all graphs in a single list are isomorphic
 	 */
-	public HashMap<String,IsoHolder> extractGraphLists(HashMap<String,LinkedList<IsoHolder>> hashBuckets) {
+	public HashMap<String,IsoHolder> extractGraphLists(HashMap<Long,LinkedList<IsoHolder>> hashBuckets) {
 		
 		HashMap<String,IsoHolder> ret = new HashMap<String,IsoHolder>(hashBuckets.size()*2);
 		
-		for(String key : hashBuckets.keySet()) {
-			LinkedList<IsoHolder> bucket = hashBuckets.get(key);
-			int count = 0;
+		for(LinkedList<IsoHolder> bucket : hashBuckets.values()) {
 			for(IsoHolder list : bucket) {
-				count++;
-				
-				String retKey = key+"-"+count;
-				ret.put(retKey,new IsoHolder(retKey, list.getNumber()));
+				ret.put(list.getKey(),new IsoHolder(list.getKey(), list.getNumber()));
 			}
 		}
 		
@@ -446,17 +547,33 @@ Debugger.log("hash string \t"+key+"\tnum of diff isom groups\t"+sameHashList.siz
 
 	
 	/**
-	 * Run the motif finder.
+	 * Run the motif finder, with subgraphs put in buckets by a {@link WeisfeilerLehmanHasher}.
+	 * 
+	 * @param k the size of motifs in terms of number of nodes.
+	 * @param q the fraction of nodes to sample.
+	 * @param hashBuckets The buckets to store the results in
+	 * @throws IOException If the output files cannot be written
+	 */
+	public void findMotifs(int k, double q, HashMap<Long,LinkedList<IsoHolder>> hashBuckets) throws IOException {
+		findMotifs(k, q, hashBuckets, new WeisfeilerLehmanHasher());
+	}
+	
+	
+	/**
+	 * Run the motif finder. Subgraphs are put in buckets by their invariant hash, then the canonical
+	 * form, with node ages part of the form, is compared against the motifs already in the bucket. Motifs
+	 * are named by a hash of their canonical form, so the name of a motif is the same in every graph searched.
+	 * The same hasher must be used for every graph whose motifs are put in the same buckets.
 	 * 
 	 * @param k the size of motifs in terms of number of nodes.
 	 * @param q the fraction of nodes to sample.
 	 * @param hashBuckets The buckets to store the results in
+	 * @param hasher puts the subgraphs in buckets, such as a {@link WeisfeilerLehmanHasher} or the slower {@link EigenvalueHasher}
 	 * @throws IOException If the output files cannot be written
 	 */
-	public void findMotifs(int k, double q, HashMap<String,LinkedList<IsoHolder>> hashBuckets) throws IOException {
+	public void findMotifs(int k, double q, HashMap<Long,LinkedList<IsoHolder>> hashBuckets, InvariantHasher hasher) throws IOException {
 		
-		//hashBuckets = new HashMap<String,LinkedList<LinkedList<FastGraph>>> (g.getNumberOfNodes());
-		Random r = new Random(g.getNodeBuf().getLong(0));
+		Random r = new Random(g.getRandomSeed(0));
 		long time = Debugger.createTime();
 		
 		for(int n = 0; n < g.getNumberOfNodes(); n++) {
@@ -465,62 +582,60 @@ Debugger.log("hash string \t"+key+"\tnum of diff isom groups\t"+sameHashList.siz
 				Debugger.outputTime("done node" + n, time);
 			}
 			
-			HashSet<FastGraph> subgraphs = new HashSet<FastGraph>();
-			enumerator.enumerateSubgraphsFromNode(k, 5, 10, n, r, subgraphs);
+			ArrayList<SubgraphView> subgraphs = new ArrayList<SubgraphView>();
+			enumerator.enumerateSubgraphViewsFromNode(k, 5, 10, n, r, subgraphs);
 			
-			for(FastGraph subgraph : subgraphs) {
-				ExactIsomorphism ei = null;
-				ei = new ExactIsomorphism(subgraph);
-				String hashString = ei.generateStringForHash();
-	//Debugger.log("new subgraph, hash value "+hashString);			
-				if(hashBuckets.containsKey(hashString)) {
-					LinkedList<IsoHolder> sameHashList = hashBuckets.get(hashString); // all of the FastGraphs with the given hash value
-					boolean found = false;
-					for(IsoHolder isoList : sameHashList) { // now need to test all the same hash value buckets for isomorphism
-						// only need to test the first Graph in an isomorphic list!
-						FastGraph comparisonGraph = isoList.getGraph();
-
-						if(ei.isomorphic(comparisonGraph)) {
-							isoList.incrementNumber();
-							found = true;
-							
-							if(saveAll) {
-								//Debugger.log("saving all");
-								subgraph.setName(hashString);
-								File saveFolder = new File("motifs"+File.separatorChar+g.getName()+File.separatorChar+hashString+"-"+
-										sameHashList.size()+File.separatorChar+isoList.getNumber());
-								saveFolder.mkdirs();
-								subgraph.saveBuffers(saveFolder.getAbsolutePath(),hashString+"-"+sameHashList.size());
-								exportSVG(saveFolder.getAbsolutePath(), subgraph, 0, true);
-							}
-							
-							break;
+			// subgraphs are only built as FastGraphs when they are saved
+			for(SubgraphView subgraphView : subgraphs) {
+				long hash = hasher.hash(subgraphView);
+				LinkedList<IsoHolder> sameHashList = hashBuckets.get(hash); // all of the motifs with the given hash value
+				if(sameHashList == null) {
+					sameHashList = new LinkedList<IsoHolder>();
+					hashBuckets.put(hash, sameHashList);
+				}
+				
+				CanonicalLabelling labelling = new CanonicalLabelling(subgraphView, false, false, true);
+				IsoHolder found = null;
+				for(IsoHolder isoList : sameHashList) { // only the motifs with the same hash value can be isomorphic
+					if(labelling.sameForm(isoList.getCanonicalLabelling())) {
+						found = isoList;
+						break;
+					}
+				}
+				
+				if(found != null) {
+					found.incrementNumber();
+					if(saveAll) {
+						//Debugger.log("saving all");
+						BufferArena arena = BufferArena.open(); // the subgraph is only needed until saved
+						try {
+							FastGraph subgraph = subgraphView.toFastGraph();
+							subgraph.setName(found.getKey());
+							File saveFolder = new File("motifs"+File.separatorChar+g.getName()+File.separatorChar+found.getKey()+
+									File.separatorChar+found.getNumber());
+							saveFolder.mkdirs();
+							subgraph.saveBuffers(saveFolder.getAbsolutePath(),found.getKey());
+							exportSVG(saveFolder.getAbsolutePath(), subgraph, true);
+						} finally {
+							arena.close();
 						}
 					}
-					
-					if(!found) { // no isomorphic graphs found, so need to create a new list
-						IsoHolder newIsoList = new IsoHolder(hashString+"-"+(sameHashList.size()+1), 1);
-						
-						subgraph.setName(hashString);
-						subgraph.saveBuffers("motifs"+File.separatorChar+g.getName()+File.separatorChar+hashString+"-"+(sameHashList.size()+1), hashString+"-"+(sameHashList.size()+1));
-						
-						//newIsoList.setGraph(subgraph);
-						sameHashList.add(newIsoList);
+				} else { // no isomorphic graphs found, so need to create a new motif
+					String key = motifKey(labelling);
+					BufferArena arena = BufferArena.open(); // the subgraph is only needed until saved
+					try {
+						FastGraph subgraph = subgraphView.toFastGraph();
+						subgraph.setName(key);
+						subgraph.saveBuffers("motifs"+File.separatorChar+g.getName()+File.separatorChar+key, key);
+					} finally {
+						arena.close();
 					}
-				} else {
-					LinkedList<IsoHolder> newHashList = new LinkedList<IsoHolder>();
-					hashBuckets.put(hashString, newHashList);
-					
-					subgraph.setName(hashString);
-					subgraph.saveBuffers("motifs"+File.separatorChar+g.getName()+File.separatorChar+hashString+"-1", hashString+"-1");
 					
-					IsoHolder newIsoList = new IsoHolder(hashString+"-1", 1);
-					//newIsoList.add(subgraph);
-					newHashList.add(newIsoList);
+					IsoHolder newIsoList = new IsoHolder(key, 1);
+					newIsoList.setCanonicalLabelling(labelling);
+					sameHashList.add(newIsoList);
 				}
 
-				ei = null; //GC
-				//System.gc();
 			}
 		}
 
@@ -529,16 +644,32 @@ Debugger.log("hash string \t"+key+"\tnum of diff isom groups\t"+sameHashList.siz
 	
 	
 	/**
-	 * Exports the given IsoHolder (and isomorphic count) to SVG.<br>
-	 * Saves as motifs/[graph name]/[iso key]-count/motif.svg
+	 * Gives the key of a motif, a hash of its canonical form, so isomorphic motifs get the same
+	 * key whichever graph they are found in and in whatever order.
+	 * 
+	 * @param labelling The canonical labelling of the motif
+	 * @return The key, as a fixed width hexadecimal String, used to name the saved motif
+	 */
+	public static String motifKey(CanonicalLabelling labelling) {
+		long hash = 0xcbf29ce484222325L; // FNV-1a, then mixed so all bits depend on the form
+		for(byte b : labelling.getCanonicalForm()) {
+			hash ^= b & 0xFF;
+			hash *= 0x100000001b3L;
+		}
+		return InvariantHasher.toKey(InvariantHasher.mix64(hash));
+	}
+
+	
+	/**
+	 * Exports the given IsoHolder to SVG.<br>
+	 * Saves as motifs/[graph name]/[motif key]/motif.svg
 	 * 
-	 * @param key The hashkey for this graph
+	 * @param key The motif key for this graph, or the folder to save in if saveAll
 	 * @param graph The graph to be exported
-	 * @param count The isomorphic count
 	 * @param saveAll If this is for saving every motif found
 	 * @throws IOException If there is a problem saving the file
 	 */
-	private void exportSVG(String key, FastGraph graph, int count, boolean saveAll) throws IOException {
+	private void exportSVG(String key, FastGraph graph, boolean saveAll) throws IOException {
 		//int count = isoList.getNumber();
 		uk.ac.kent.displayGraph.Graph dg = graph.generateDisplayGraph();
 		dg.randomizeNodePoints(new Point(20,20),300,300);
@@ -554,7 +685,7 @@ Debugger.log("hash string \t"+key+"\tnum of diff isom groups\t"+sameHashList.siz
 		if (saveAll) {
 			saveLocation = new File(key+File.separatorChar+"motif.svg");
 		} else {
-			saveLocation = new File(Launcher.startingWorkingDirectory+File.separatorChar+"motifs"+File.separatorChar+g.getName()+File.separatorChar+key+"-"+count+File.separatorChar+"motif.svg");
+			saveLocation = new File(Launcher.startingWorkingDirectory+File.separatorChar+"motifs"+File.separatorChar+g.getName()+File.separatorChar+key+File.separatorChar+"motif.svg");
 		}
 		//Debugger.log("exporting SVG to: " + saveLocation.getAbsolutePath() + " (count: " + count + ")");
 		uk.ac.kent.displayGraph.ExportSVG exSVG = new uk.ac.kent.displayGraph.ExportSVG(dg);
@@ -963,6 +1094,7 @@ Debugger.log("hash string \t"+key+"\tnum of diff isom groups\t"+sameHashList.siz
 		
 		private String key; //The key
 		private int number; //The number of graphs
+		private CanonicalLabelling labelling = null; //Of the saved graph, found when first needed
 		
 		/**
 		 * Trivial constructor
@@ -1023,6 +1155,26 @@ Debugger.log("hash string \t"+key+"\tnum of diff isom groups\t"+sameHashList.siz
 			return FastGraph.loadBuffersGraphFactory("motifs"+File.separatorChar+g.getName()+File.separatorChar+key, key);
 		}
 
+		/**
+		 * Gets the canonical labelling of the graph, undirected and ignoring labels, with node ages
+		 * @return the labelling, from the saved graph if not already known
+		 * @throws IOException If the buffers cannot be loaded
+		 */
+		public CanonicalLabelling getCanonicalLabelling() throws IOException {
+			if(labelling == null) {
+				labelling = new CanonicalLabelling(getGraph(), false, false, true);
+			}
+			return labelling;
+		}
+
+		/**
+		 * Sets the canonical labelling, so the graph need not be loaded to find it
+		 * @param labelling the labelling of the graph
+		 */
+		public void setCanonicalLabelling(CanonicalLabelling labelling) {
+			this.labelling = labelling;
+		}
+
 		
 		public String toString() {
 			return key+"|"+number;
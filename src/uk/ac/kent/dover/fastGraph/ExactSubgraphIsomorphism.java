@@ -6,7 +6,6 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashSet;
 import java.util.LinkedList;
 
 import uk.ac.kent.dover.fastGraph.comparators.AlwaysTrueEdgeComparator;
@@ -44,6 +43,14 @@ public class ExactSubgraphIsomorphism extends SubgraphIsomorphism {
 	
 	private boolean resultPossible; // set to false if a pattern node has no possible mappings in the target graph
 
+	// reused by isAMatch so that no objects are created for each test
+	private ConnectionIterator patternConnections;
+	private ConnectionIterator targetConnections;
+	private int[] targetNeighbourStamp; // equal to stamp if the target node is a neighbour in the current test
+	private int[] targetNeighbourEdge; // the first edge to each target neighbour in the current test
+	private int[] patternNeighbourStamp; // equal to stamp if the pattern node has been tested in the current test
+	private int stamp = 0;
+
 	/**
 	 * Create an ExactSubgraphIsomorphism before running {@link #getFoundMappings() getFoundMappings}.
 	 * 
@@ -75,6 +82,12 @@ public class ExactSubgraphIsomorphism extends SubgraphIsomorphism {
 		
 		patternToTargetEdgeMatches = new int[patternGraph.getNumberOfEdges()];
 		
+		patternConnections = patternGraph.getConnectionIterator();
+		targetConnections = targetGraph.getConnectionIterator();
+		targetNeighbourStamp = new int[targetGraph.getNumberOfNodes()];
+		targetNeighbourEdge = new int[targetGraph.getNumberOfNodes()];
+		patternNeighbourStamp = new int[patternGraph.getNumberOfNodes()];
+		
 		resultPossible = findPossibleNodeMappings();
 		
 		foundMappings = new LinkedList<SubgraphMapping>();
@@ -218,28 +231,29 @@ public class ExactSubgraphIsomorphism extends SubgraphIsomorphism {
 			return false;
 		}
 		
-		int[] patternConnectingEdges = patternGraph.getNodeConnectingEdges(patternNode);
-		int[] targetConnectingEdges = targetGraph.getNodeConnectingEdges(targetNode);
-		
-		int[] targetConnectingNodes = targetGraph.getNodeConnectingNodes(targetNode);
+		nextStamp();
 
-		// this used for efficient containment test
-		HashSet<Integer> targetConnectingNodeSet = new HashSet<Integer>(targetConnectingEdges.length*2);
-		for(int i : targetConnectingNodes) {
-			targetConnectingNodeSet.add(i);
+		// mark the target neighbours for an efficient containment test, recording the first edge to each
+		targetConnections.reset(targetNode);
+		while(targetConnections.hasNext()) {
+			targetConnections.next();
+			int targetNeighbour = targetConnections.getNode();
+			if(targetNeighbourStamp[targetNeighbour] != stamp) {
+				targetNeighbourStamp[targetNeighbour] = stamp;
+				targetNeighbourEdge[targetNeighbour] = targetConnections.getEdge();
+			}
 		}
-				
-		// this allows duplicates to be discarded
-		HashSet<Integer> testedPatternNodeNeighbours = new HashSet<Integer>(patternConnectingEdges.length*2);
 		
 		// for each pattern neighbour check that it matches to an equivalent neighbour of the target node
-		for(int i = 0; i < patternConnectingEdges.length; i++) {
-			int patternEdge = patternConnectingEdges[i];
-			int patternNeighbour = patternGraph.oppositeEnd(patternEdge, patternNode);
-			if(testedPatternNodeNeighbours.contains(patternNeighbour)) { // this is a test for duplicate connecting nodes (parallel edges), we don't test node more than once
+		patternConnections.reset(patternNode);
+		while(patternConnections.hasNext()) {
+			patternConnections.next();
+			int patternEdge = patternConnections.getEdge();
+			int patternNeighbour = patternConnections.getNode();
+			if(patternNeighbourStamp[patternNeighbour] == stamp) { // this is a test for duplicate connecting nodes (parallel edges), we don't test node more than once
 				continue;
 			}
-			testedPatternNodeNeighbours.add(patternNeighbour);
+			patternNeighbourStamp[patternNeighbour] = stamp;
 			
 			int targetMatch = patternToTargetNodeMatches[patternNeighbour];
 //Debugger.log("pattern neighbour "+patternNeighbour+" matches with target "+targetMatch);
@@ -247,14 +261,14 @@ public class ExactSubgraphIsomorphism extends SubgraphIsomorphism {
 				// pattern neighbouring node is not matched with anything, so can continue
 				continue;
 			}
-			if(!targetConnectingNodeSet.contains(targetMatch)) {
+			if(targetNeighbourStamp[targetMatch] != stamp) {
 //Debugger.log("isAMatch fail on target neigbour already matched with non-neighbour");
 				// pattern neighbour has a match that is not a neighbour of target node, so the patternNode and targetNode cannot match
 				return false;
 			}
 
 			// get the edge between the target and target neighbour
-			int targetEdge = targetGraph.edgesBetween(targetNode,targetMatch).get(0);
+			int targetEdge = targetNeighbourEdge[targetMatch];
 			
 			if(edgeComparator.compare(targetEdge,patternEdge) != 0) {
 //Debugger.log("isAMatch fail on edge comparator between the target nodes");
@@ -266,25 +280,56 @@ public class ExactSubgraphIsomorphism extends SubgraphIsomorphism {
 		
 		return true;
 	}
+
+
+	/**
+	 * Start a new isAMatch test, so marks from earlier tests no longer count.
+	 */
+	private void nextStamp() {
+		stamp++;
+		if(stamp == Integer.MAX_VALUE) { // wrapped, so clear the old marks
+			Arrays.fill(targetNeighbourStamp, 0);
+			Arrays.fill(patternNeighbourStamp, 0);
+			stamp = 1;
+		}
+	}
 	
 	
 
 
 	/**
 	 * Get the possible target node mappings for all nodes in the pattern graph based on target nodes that have
-	 * the same or greater degree and also comparator between pattern node and target node.
+	 * the same or greater degree and also comparator between pattern node and target node. With a
+	 * SimpleNodeLabelComparator only the target nodes with the pattern node label are tested, found
+	 * from the target label index.
 	 * 
 	 * @return true if all nodes have at least one possible mapping, false if one or more node has none.
 	 */
 	private boolean findPossibleNodeMappings() {
 		possibleNodeMappings = new ArrayList<int[]>(patternGraph.getNumberOfNodes());
 
+		boolean labelMatch = nodeComparator.getClass() == SimpleNodeLabelComparator.class;
 		for(int p = 0; p < patternGraph.getNumberOfNodes(); p++) {
-			int[] oversizeCandidates = new int[targetGraph.getNumberOfNodes()];
+			int[] labelled = null; // if not null, the only target nodes that can match
+			if(labelMatch) {
+				String label = patternGraph.getNodeLabel(p);
+				if(label.length() != 0) { // an empty pattern label matches any target node
+					labelled = targetGraph.nodesWithLabel(label);
+				}
+			}
+			int numberToTest = targetGraph.getNumberOfNodes();
+			if(labelled != null) {
+				numberToTest = labelled.length;
+			}
+			int[] oversizeCandidates = new int[numberToTest];
 			
 			// find all the candidate matches for the node in the pattern graph
 			int candidatePos = 0;
-			for(int t = 0; t < targetGraph.getNumberOfNodes(); t++) {
+			for(int i = 0; i < numberToTest; i++) {
+				int t = i;
+				if(labelled != null) {
+					t = labelled[i];
+				}
 				if(targetGraph.getNodeDegree(t) < patternGraph.getNodeDegree(p)) { // don't match if the target has fewer connecting edges
 					continue;
 				}
@@ -325,7 +370,7 @@ public class ExactSubgraphIsomorphism extends SubgraphIsomorphism {
 			 
 			// there will be at least one of these, as the target nodes cannot have mappings
 			// in isAMatch without a connecting edge
-			int targetEdge = targetGraph.edgesBetween(targetNode1, targetNode2).get(0);
+			int targetEdge = targetGraph.firstEdgeBetween(targetNode1, targetNode2);
 			edgeMatches[patternEdge] = targetEdge;
 		}
 		
@@ -348,8 +393,13 @@ public class ExactSubgraphIsomorphism extends SubgraphIsomorphism {
 			//Debugger.log(map.toString());						
 			int[] nodeMapping = map.getNodeMapping();
 			int[] edgeMapping = map.getEdgeMapping();
-			FastGraph newSub = targetGraph.generateGraphFromSubgraph(nodeMapping, edgeMapping);
-			saveSubgraph(targetGraph, newSub, count, mainDir);
+			BufferArena arena = BufferArena.open(); // the subgraph is only needed until saved
+			try {
+				FastGraph newSub = targetGraph.generateGraphFromSubgraph(nodeMapping, edgeMapping);
+				saveSubgraph(targetGraph, newSub, count, mainDir);
+			} finally {
+				arena.close();
+			}
 			
 			count++;
 		}
@@ -35,6 +35,10 @@ import uk.ac.kent.displayGraph.drawers.GraphDrawerGravitySpringEmbedder;
  * <li>edgeBuf stores offset of label start in edgeLabelBuf and size (in chars) of labels.</li>
  * <li>connectionBuf stores pairs of edgeIndex-nodeIndex (both are stored for fastest access) which form a
  * list of connecting items, with the in edge-nodes first, then out edge-nodes</li>
+ * <li>each buffer is a {@link SegmentedBuffer}, so can grow beyond the 2GB limit of a single ByteBuffer. Label and
+ * connection start offsets are longs, so label and connection buffers can be any size. Files saved before the offsets
+ * were widened from 32 bit values are converted when loaded.</li>
+ * <li>connectionBuf can optionally be compressed, see compressConnections().</li>
  * </ul>
  * json from <a href="https://github.com/stleary/JSON-java"> json library </a>
  * 
@@ -43,42 +47,54 @@ import uk.ac.kent.displayGraph.drawers.GraphDrawerGravitySpringEmbedder;
  */
 public class FastGraph {
 
-	public static final int NODE_LABEL_START_OFFSET = 0; // integer
-	public static final int NODE_LABEL_LENGTH_OFFSET = 4; // short
-	public static final int NODE_IN_CONNECTION_START_OFFSET = 6; // integer
-	public static final int NODE_IN_DEGREE_OFFSET = 10; // integer
-	public static final int NODE_OUT_CONNECTION_START_OFFSET = 14; // integer
-	public static final int NODE_OUT_DEGREE_OFFSET = 18; // integer
-	public static final int NODE_WEIGHT_OFFSET = 22; // integer
-	public static final int NODE_TYPE_OFFSET = 26; // byte
-	public static final int NODE_AGE_OFFSET = 27; // byte
+	public static final int NODE_LABEL_START_OFFSET = 0; // long
+	public static final int NODE_LABEL_LENGTH_OFFSET = 8; // short
+	public static final int NODE_IN_CONNECTION_START_OFFSET = 10; // long
+	public static final int NODE_IN_DEGREE_OFFSET = 18; // integer
+	public static final int NODE_OUT_CONNECTION_START_OFFSET = 22; // long
+	public static final int NODE_OUT_DEGREE_OFFSET = 30; // integer
+	public static final int NODE_WEIGHT_OFFSET = 34; // integer
+	public static final int NODE_TYPE_OFFSET = 38; // byte
+	public static final int NODE_AGE_OFFSET = 39; // byte
 	
 	public static final int EDGE_NODE1_OFFSET = 0; // integer
 	public static final int EDGE_NODE2_OFFSET = 4; // integer
-	public static final int EDGE_LABEL_START_OFFSET = 8; // integer
-	public static final int EDGE_LABEL_LENGTH_OFFSET = 12; // short
-	public static final int EDGE_WEIGHT_OFFSET = 14; // integer
-	public static final int EDGE_TYPE_OFFSET = 18; // byte
-	public static final int EDGE_AGE_OFFSET = 19; // byte
+	public static final int EDGE_LABEL_START_OFFSET = 8; // long
+	public static final int EDGE_LABEL_LENGTH_OFFSET = 16; // short
+	public static final int EDGE_WEIGHT_OFFSET = 18; // integer
+	public static final int EDGE_TYPE_OFFSET = 22; // byte
+	public static final int EDGE_AGE_OFFSET = 23; // byte
 	
 	public static final int CONNECTION_EDGE_OFFSET = 0; // integer, edge is first of the pair
 	public static final int CONNECTION_NODE_OFFSET = 4; // integer, node is straight after the edge
 	
 	public static final int DEFAULT_AVERAGE_LABEL_LENGTH = 20;
 	
-	public static final int NODE_BYTE_SIZE = 28;
-	public static final int EDGE_BYTE_SIZE = 20;
+	public static final int NODE_BYTE_SIZE = 40;
+	public static final int EDGE_BYTE_SIZE = 24;
+	// records saved before the label and connection start offsets were widened from 32 bit values
+	static final int INT_OFFSET_NODE_BYTE_SIZE = 28;
+	static final int INT_OFFSET_EDGE_BYTE_SIZE = 20;
 	public static final int CONNECTION_PAIR_SIZE = 8; // this is an edge index plus an node index
 	
 	public static final String INFO_SPLIT_STRING = "~";
 	
 	public static final int MAX_BYTE_BUFFER_SIZE = Integer.MAX_VALUE-5000;
 
-	private ByteBuffer nodeBuf;
-	private ByteBuffer edgeBuf;
-	private ByteBuffer connectionBuf;
-	private ByteBuffer nodeLabelBuf;
-	private ByteBuffer edgeLabelBuf;
+	private SegmentedBuffer nodeBuf;
+	private SegmentedBuffer edgeBuf;
+	private SegmentedBuffer connectionBuf;
+	private SegmentedBuffer nodeLabelBuf;
+	private SegmentedBuffer edgeLabelBuf;
+
+	// built on demand by buildLabelDictionaries(), the id buffers hold one int label id per node or edge
+	private volatile LabelDictionary nodeLabelDictionary = null;
+	private volatile LabelDictionary edgeLabelDictionary = null;
+	private SegmentedBuffer nodeLabelIdBuf = null;
+	private SegmentedBuffer edgeLabelIdBuf = null;
+	// built on demand from the label ids, the nodes or edges with each label id, discarded with the dictionaries
+	private volatile LabelIndex nodeLabelIndex = null;
+	private volatile LabelIndex edgeLabelIndex = null;
 
 	private int numberOfNodes;
 	private int numberOfEdges;
@@ -86,6 +102,10 @@ public class FastGraph {
 	
 	private String name = "";
 	private boolean direct; // true if off heap storage for byte buffers, false if on heap
+	private boolean compressedConnections = false; // true if connectionBuf holds the encoding from CompressedConnections
+	private boolean sortedConnections = false; // true if each in and out list is in order of connecting node then edge
+	private volatile AgeIndex ageIndex = null; // built on first use, dropped when ages or connection lists change
+	private final BufferArena arena; // open on the creating thread when this graph was created, or null
 	
 	private byte generation = 0; // the oldest generation time slice
 	
@@ -138,12 +158,29 @@ g1.outputInternalData();
 	 * @param direct if true then off heap ByteBuffers, if false then on heap ByteBuffers
 	 */
 	private FastGraph(int nodeTotal, int edgeTotal, boolean direct) {
+		this(nodeTotal, edgeTotal, direct, true);
+	}
+
+
+	/**
+	 * As the other constructor, but allows the buffer allocation to be skipped for
+	 * when the buffers are provided by some other means, such as memory mapping.
+	 * 
+	 * @param nodeTotal the number of nodes in the graph
+	 * @param edgeTotal the number of edges in the graph
+	 * @param direct if true then off heap ByteBuffers, if false then on heap ByteBuffers
+	 * @param allocate if true the node, edge and connection buffers are allocated, if false they are left null
+	 */
+	private FastGraph(int nodeTotal, int edgeTotal, boolean direct, boolean allocate) {
 		
 		this.numberOfNodes = nodeTotal;
 		this.numberOfEdges = edgeTotal;
 		this.direct = direct;
+		this.arena = BufferArena.current();
 		
-		init();
+		if(allocate) {
+			init();
+		}
 	}
 
 	
@@ -156,14 +193,14 @@ g1.outputInternalData();
 	private void init() {
 
 		if(!direct) {
-			nodeBuf = ByteBuffer.allocate(numberOfNodes*NODE_BYTE_SIZE);
-			edgeBuf = ByteBuffer.allocate(numberOfEdges*EDGE_BYTE_SIZE);
-			connectionBuf = ByteBuffer.allocate(numberOfEdges*2*CONNECTION_PAIR_SIZE);
+			nodeBuf = SegmentedBuffer.allocate((long)numberOfNodes*NODE_BYTE_SIZE);
+			edgeBuf = SegmentedBuffer.allocate((long)numberOfEdges*EDGE_BYTE_SIZE);
+			connectionBuf = SegmentedBuffer.allocate((long)numberOfEdges*2*CONNECTION_PAIR_SIZE);
 			// nodeLabelBuf and edgeLabelBuf now created in Factories by setAllNodeLabels and setAllEdgeLabels
 		} else {
-			nodeBuf = ByteBuffer.allocateDirect(numberOfNodes*NODE_BYTE_SIZE);
-			edgeBuf = ByteBuffer.allocateDirect(numberOfEdges*EDGE_BYTE_SIZE);
-			connectionBuf = ByteBuffer.allocateDirect(numberOfEdges*2*CONNECTION_PAIR_SIZE);
+			nodeBuf = SegmentedBuffer.allocateDirect((long)numberOfNodes*NODE_BYTE_SIZE);
+			edgeBuf = SegmentedBuffer.allocateDirect((long)numberOfEdges*EDGE_BYTE_SIZE);
+			connectionBuf = SegmentedBuffer.allocateDirect((long)numberOfEdges*2*CONNECTION_PAIR_SIZE);
 			// nodeLabelBuf and edgeLabelBuf now created in Factories by setAllNodeLabels and setAllEdgeLabels
 		}
 		
@@ -280,7 +317,7 @@ g1.outputInternalData();
 		
 		//Leave node types as they are - these are not used
 		
-		Random r = new Random(nodeBuf.getLong(0));
+		Random r = new Random(getRandomSeed(0));
 		//replace the blanks with other edge types
 		FastGraphEdgeType[] values = FastGraphEdgeType.values();
 		for(int j = 0; j < edgeTypes.length; j++) {						
@@ -408,7 +445,7 @@ g1.outputInternalData();
 		Debugger.log("# Starting STEP TWO");
 		time = Debugger.createTime();
 		if(nodeReductionAmount > nodesToRemove.size()) { //could we thread these to make this quicker?
-			Random r = new Random(nodeBuf.getLong(1));
+			Random r = new Random(getRandomSeed(1));
 			
 			//make local stores, as we might not want to remove these nodes if they are too big
 			LinkedHashSet<Integer> localEdgesToRemove = new LinkedHashSet<Integer>(); //edges that need removing
@@ -456,7 +493,7 @@ g1.outputInternalData();
 		Debugger.log("# Starting STEP THREE");
 		time = Debugger.createTime();
 		if(nodeReductionAmount > nodesToRemove.size()) {
-			Random r = new Random(nodeBuf.getLong(2));		
+			Random r = new Random(getRandomSeed(2));		
 			while(nodeReductionAmount > nodesToRemove.size()) {
 				int n = r.nextInt(this.getNumberOfNodes());
 				nodesToRemove.add(n);
@@ -575,46 +612,127 @@ g1.outputInternalData();
 	}
 	
 	/**
+	 * Only available when the buffer fits in a single segment, use {@link #getSegmentedNodeBuf()} for large graphs.
 	 * 
 	 * @return the node ByteBuffer
 	 */
 	public ByteBuffer getNodeBuf() {
-		return nodeBuf;
+		return singleSegment(nodeBuf);
 	}
 
 
 	/**
+	 * Only available when the buffer fits in a single segment, use {@link #getSegmentedEdgeBuf()} for large graphs.
 	 * 
 	 * @return the edge ByteBuffer
 	 */
 	public ByteBuffer getEdgeBuf() {
-		return edgeBuf;
+		return singleSegment(edgeBuf);
 	}
 
 
 	/**
+	 * Only available when the buffer fits in a single segment, use {@link #getSegmentedNodeLabelBuf()} for large graphs.
 	 * 
 	 * @return the node label ByteBuffer
 	 */
 	public ByteBuffer getNodeLabelBuf() {
-		return nodeLabelBuf;
+		return singleSegment(nodeLabelBuf);
 	}
 
 
 	/**
+	 * Only available when the buffer fits in a single segment, use {@link #getSegmentedEdgeLabelBuf()} for large graphs.
 	 * 
 	 * @return the edge label ByteBuffer
 	 */
 	public ByteBuffer getEdgeLabelBuf() {
-		return edgeLabelBuf;
+		return singleSegment(edgeLabelBuf);
 	}
 
 
 	/**
+	 * Only available when the buffer fits in a single segment, use {@link #getSegmentedConnectionBuf()} for large graphs.
+	 * The contents are in the compressed format if {@link #isConnectionsCompressed()} is true.
 	 * 
 	 * @return the connections ByteBuffer
 	 */
 	public ByteBuffer getConnectionBuf() {
+		return singleSegment(connectionBuf);
+	}
+
+
+	/**
+	 * @param buf the store
+	 * @return the ByteBuffer backing buf
+	 * @throws UnsupportedOperationException if buf has more than one segment
+	 */
+	private static ByteBuffer singleSegment(SegmentedBuffer buf) {
+		if(buf.numberOfSegments() != 1) {
+			throw new UnsupportedOperationException("Buffer is split into "+buf.numberOfSegments()+" segments, use the segmented buffer accessor");
+		}
+		return buf.getSegment(0);
+	}
+
+
+	/**
+	 * 
+	 * @return the node store, for graphs of any size
+	 */
+	public SegmentedBuffer getSegmentedNodeBuf() {
+		return nodeBuf;
+	}
+
+
+	/**
+	 * A seed for a Random that depends on the graph. It is taken from the start of the first node record as
+	 * laid out with 32 bit label and connection offsets, so graphs give the same random sequences as before
+	 * the offsets were widened to longs.
+	 * 
+	 * @param index the first byte of the seed, 0, 1 or 2
+	 * @return eight bytes from the start of the first node record
+	 */
+	public long getRandomSeed(int index) {
+		ByteBuffer record = ByteBuffer.allocate(INT_OFFSET_NODE_BYTE_SIZE);
+		record.putInt(0, (int)nodeBuf.getLong(NODE_LABEL_START_OFFSET));
+		record.putShort(4, nodeBuf.getShort(NODE_LABEL_LENGTH_OFFSET));
+		record.putInt(6, (int)nodeBuf.getLong(NODE_IN_CONNECTION_START_OFFSET));
+		return record.getLong(index);
+	}
+
+
+	/**
+	 * 
+	 * @return the edge store, for graphs of any size
+	 */
+	public SegmentedBuffer getSegmentedEdgeBuf() {
+		return edgeBuf;
+	}
+
+
+	/**
+	 * 
+	 * @return the node label store, for graphs of any size
+	 */
+	public SegmentedBuffer getSegmentedNodeLabelBuf() {
+		return nodeLabelBuf;
+	}
+
+
+	/**
+	 * 
+	 * @return the edge label store, for graphs of any size
+	 */
+	public SegmentedBuffer getSegmentedEdgeLabelBuf() {
+		return edgeLabelBuf;
+	}
+
+
+	/**
+	 * 
+	 * @return the connections store, for graphs of any size
+	 */
+	public SegmentedBuffer getSegmentedConnectionBuf() {
 		return connectionBuf;
 	}
 
@@ -626,11 +744,15 @@ g1.outputInternalData();
 	 */
 	public String getNodeLabel(int nodeIndex) {
 		
-		int labelStart = nodeBuf.getInt(NODE_LABEL_START_OFFSET+nodeIndex*NODE_BYTE_SIZE);
-		int labelLength = nodeBuf.getShort(NODE_LABEL_LENGTH_OFFSET+nodeIndex*NODE_BYTE_SIZE);
+		LabelDictionary dictionary = nodeLabelDictionary;
+		if(dictionary != null) {
+			return dictionary.getLabel(nodeLabelIdBuf.getInt((long)nodeIndex*LabelDictionary.ID_BYTE_SIZE));
+		}
+		long labelStart = nodeBuf.getLong(NODE_LABEL_START_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE);
+		int labelLength = nodeBuf.getShort(NODE_LABEL_LENGTH_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE);
 		char[] label = new char[labelLength];
 		for(int i = 0; i < labelLength; i++) {
-			int offset = labelStart+i*2;
+			long offset = labelStart+i*2;
 			char c = nodeLabelBuf.getChar(offset);
 			label[i] = c;
 		}
@@ -644,7 +766,7 @@ g1.outputInternalData();
 	 * @return the node weight
 	 */
 	public int getNodeWeight(int nodeIndex) {
-		int weight = nodeBuf.getInt(NODE_WEIGHT_OFFSET+nodeIndex*NODE_BYTE_SIZE);
+		int weight = nodeBuf.getInt(NODE_WEIGHT_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE);
 		return weight;
 	}
 	
@@ -654,7 +776,7 @@ g1.outputInternalData();
 	 * @return the node type
 	 */
 	public byte getNodeType(int nodeIndex) {
-		byte type = nodeBuf.get(NODE_TYPE_OFFSET+nodeIndex*NODE_BYTE_SIZE);
+		byte type = nodeBuf.get(NODE_TYPE_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE);
 		return type;
 	}
 	
@@ -664,7 +786,7 @@ g1.outputInternalData();
 	 * @return the node age
 	 */
 	public byte getNodeAge(int nodeIndex) {
-		byte age = nodeBuf.get(NODE_AGE_OFFSET+nodeIndex*NODE_BYTE_SIZE);
+		byte age = nodeBuf.get(NODE_AGE_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE);
 		return age;
 	}
 	
@@ -684,7 +806,7 @@ g1.outputInternalData();
 	 * @return the node in-degree (number of edges entering the node)
 	 */
 	public int getNodeInDegree(int nodeIndex) {
-		int degree = nodeBuf.getInt(NODE_IN_DEGREE_OFFSET+nodeIndex*NODE_BYTE_SIZE);
+		int degree = nodeBuf.getInt(NODE_IN_DEGREE_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE);
 		return degree;
 	}
 
@@ -694,7 +816,7 @@ g1.outputInternalData();
 	 * @return the node out-degree (number of edges leaving the node)
 	 */
 	public int getNodeOutDegree(int nodeIndex) {
-		int degree = nodeBuf.getInt(NODE_OUT_DEGREE_OFFSET+nodeIndex*NODE_BYTE_SIZE);
+		int degree = nodeBuf.getInt(NODE_OUT_DEGREE_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE);
 		return degree;
 	}
 	
@@ -704,13 +826,15 @@ g1.outputInternalData();
 	 * @return all connecting edges
 	 */
 	public int[] getNodeConnectingEdges(int nodeIndex) {
-		
-		int connectionOffset = nodeBuf.getInt(NODE_IN_CONNECTION_START_OFFSET+nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
+		if(compressedConnections) {
+			return compressedConnecting(nodeIndex,true,true,false);
+		}
+		long connectionOffset = nodeBuf.getLong(NODE_IN_CONNECTION_START_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
 		int degree = getNodeDegree(nodeIndex);
 		int[] ret = new int[degree];
 		
 		for(int i = 0; i < degree; i++) {
-			int edgeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_EDGE_OFFSET;
+			long edgeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_EDGE_OFFSET;
 			int edge = connectionBuf.getInt(edgeOffset);
 			ret[i] = edge;
 		}
@@ -728,12 +852,15 @@ g1.outputInternalData();
 	 * @param nodeIndex the node
 	 */
 	public void getNodeConnectingEdges(int[] ret, int nodeIndex) {
-		
-		int connectionOffset = nodeBuf.getInt(NODE_IN_CONNECTION_START_OFFSET+nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
+		if(compressedConnections) {
+			compressedConnecting(ret,nodeIndex,true,true,false);
+			return;
+		}
+		long connectionOffset = nodeBuf.getLong(NODE_IN_CONNECTION_START_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
 		int degree = getNodeDegree(nodeIndex);
 		
 		for(int i = 0; i < degree; i++) {
-			int edgeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_EDGE_OFFSET;
+			long edgeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_EDGE_OFFSET;
 			int edge = connectionBuf.getInt(edgeOffset);
 			ret[i] = edge;
 		}
@@ -747,21 +874,7 @@ g1.outputInternalData();
 	 * @return all node neighbours. 
 	 */
 	public int[] getNodeConnectingNodesOfSameAge(int nodeIndex) {
-		int connectionOffset = nodeBuf.getInt(NODE_IN_CONNECTION_START_OFFSET+nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
-		int degree = getNodeDegree(nodeIndex);
-		ArrayList<Integer> ret = new ArrayList<Integer>(degree);
-		int age = this.getNodeAge(nodeIndex);
-		
-		for(int i = 0; i < degree; i++) {
-			// don't need the edge, so step over edge/node pairs and the edge
-			int nodeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_NODE_OFFSET;
-			int node = connectionBuf.getInt(nodeOffset);
-			if(age == this.getNodeAge(node)) {
-				ret.add(node);
-			}
-		}
-		
-		return Util.convertArrayList(ret);
+		return connectingOfSameAge(nodeIndex,true,true);
 	}
 	
 	
@@ -772,21 +885,7 @@ g1.outputInternalData();
 	 * @return all node neighbours. 
 	 */
 	public int[] getNodeConnectingInNodesOfSameAge(int nodeIndex) {
-		int connectionOffset = nodeBuf.getInt(NODE_IN_CONNECTION_START_OFFSET+nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
-		int degree = getNodeInDegree(nodeIndex);
-		ArrayList<Integer> ret = new ArrayList<Integer>(degree);
-		int age = this.getNodeAge(nodeIndex);
-		
-		for(int i = 0; i < degree; i++) {
-			// don't need the edge, so step over edge/node pairs and the edge
-			int nodeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_NODE_OFFSET;
-			int node = connectionBuf.getInt(nodeOffset);
-			if(age == this.getNodeAge(node)) {
-				ret.add(node);
-			}
-		}
-		
-		return Util.convertArrayList(ret);
+		return connectingOfSameAge(nodeIndex,true,false);
 	}
 	
 	/**
@@ -796,21 +895,7 @@ g1.outputInternalData();
 	 * @return all node neighbours. 
 	 */
 	public int[] getNodeConnectingOutNodesOfSameAge(int nodeIndex) {
-		int connectionOffset = nodeBuf.getInt(NODE_OUT_CONNECTION_START_OFFSET+nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
-		int degree = getNodeOutDegree(nodeIndex);
-		ArrayList<Integer> ret = new ArrayList<Integer>(degree);
-		int age = this.getNodeAge(nodeIndex);
-		
-		for(int i = 0; i < degree; i++) {
-			// don't need the edge, so step over edge/node pairs and the edge
-			int nodeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_NODE_OFFSET;
-			int node = connectionBuf.getInt(nodeOffset);
-			if(age == this.getNodeAge(node)) {
-				ret.add(node);
-			}
-		}
-		
-		return Util.convertArrayList(ret);
+		return connectingOfSameAge(nodeIndex,false,true);
 	}
 	
 	
@@ -820,13 +905,16 @@ g1.outputInternalData();
 	 * @return all node neighbours. 
 	 */
 	public int[] getNodeConnectingNodes(int nodeIndex) {
-		int connectionOffset = nodeBuf.getInt(NODE_IN_CONNECTION_START_OFFSET+nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
+		if(compressedConnections) {
+			return compressedConnecting(nodeIndex,true,true,true);
+		}
+		long connectionOffset = nodeBuf.getLong(NODE_IN_CONNECTION_START_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
 		int degree = getNodeDegree(nodeIndex);
 		int[] ret = new int[degree];
 		
 		for(int i = 0; i < degree; i++) {
 			// don't need the edge, so step over edge/node pairs and the ege
-			int nodeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_NODE_OFFSET;
+			long nodeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_NODE_OFFSET;
 			int node = connectionBuf.getInt(nodeOffset);
 			ret[i] = node;
 		}
@@ -844,13 +932,16 @@ g1.outputInternalData();
 	 * @param nodeIndex the node
 	 */
 	public void getNodeConnectingNodes(int[] ret, int nodeIndex) {
-		
-		int connectionOffset = nodeBuf.getInt(NODE_IN_CONNECTION_START_OFFSET+nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
+		if(compressedConnections) {
+			compressedConnecting(ret,nodeIndex,true,true,true);
+			return;
+		}
+		long connectionOffset = nodeBuf.getLong(NODE_IN_CONNECTION_START_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
 		int degree = getNodeDegree(nodeIndex);
 		
 		for(int i = 0; i < degree; i++) {
 			// don't need the edge, so step over edge/node pairs and the ege
-			int nodeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_NODE_OFFSET;
+			long nodeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_NODE_OFFSET;
 			int node = connectionBuf.getInt(nodeOffset);
 			ret[i] = node;
 		}
@@ -864,13 +955,15 @@ g1.outputInternalData();
 	 * @return all connecting edges for the node
 	 */
 	public int[] getNodeConnectingInEdges(int nodeIndex) {
-		
-		int connectionOffset = nodeBuf.getInt(NODE_IN_CONNECTION_START_OFFSET+nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
+		if(compressedConnections) {
+			return compressedConnecting(nodeIndex,true,false,false);
+		}
+		long connectionOffset = nodeBuf.getLong(NODE_IN_CONNECTION_START_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
 		int degree = getNodeInDegree(nodeIndex);
 		int[] ret = new int[degree];
 		
 		for(int i = 0; i < degree; i++) {
-			int edgeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_EDGE_OFFSET;
+			long edgeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_EDGE_OFFSET;
 			int edge = connectionBuf.getInt(edgeOffset);
 			ret[i] = edge;
 		}
@@ -889,12 +982,15 @@ g1.outputInternalData();
 	 * @param nodeIndex the node
 	 */
 	public void getNodeConnectingInEdges(int[] ret, int nodeIndex) {
-		
-		int connectionOffset = nodeBuf.getInt(NODE_IN_CONNECTION_START_OFFSET+nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
+		if(compressedConnections) {
+			compressedConnecting(ret,nodeIndex,true,false,false);
+			return;
+		}
+		long connectionOffset = nodeBuf.getLong(NODE_IN_CONNECTION_START_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
 		int degree = getNodeInDegree(nodeIndex);
 		
 		for(int i = 0; i < degree; i++) {
-			int edgeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_EDGE_OFFSET;
+			long edgeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_EDGE_OFFSET;
 			int edge = connectionBuf.getInt(edgeOffset);
 			ret[i] = edge;
 		}
@@ -908,15 +1004,17 @@ g1.outputInternalData();
 	 * @return all node neighbours that are on the end of edges that enter the node. 
 	 */
 	public int[] getNodeConnectingInNodes(int nodeIndex) {
-		
-		int connectionOffset = nodeBuf.getInt(NODE_IN_CONNECTION_START_OFFSET+nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
+		if(compressedConnections) {
+			return compressedConnecting(nodeIndex,true,false,true);
+		}
+		long connectionOffset = nodeBuf.getLong(NODE_IN_CONNECTION_START_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
 		int degree = getNodeInDegree(nodeIndex);
 		
 		int[] ret = new int[degree];
 		
 		for(int i = 0; i < degree; i++) {
 			// don't need the edge, so step over edge/node pairs and the ege
-			int nodeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_NODE_OFFSET;
+			long nodeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_NODE_OFFSET;
 			int node = connectionBuf.getInt(nodeOffset);
 			ret[i] = node;
 		}
@@ -934,13 +1032,16 @@ g1.outputInternalData();
 	 * @param nodeIndex the node
 	 */
 	public void getNodeConnectingInNodes(int[] ret, int nodeIndex) {
-		
-		int connectionOffset = nodeBuf.getInt(NODE_IN_CONNECTION_START_OFFSET+nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
+		if(compressedConnections) {
+			compressedConnecting(ret,nodeIndex,true,false,true);
+			return;
+		}
+		long connectionOffset = nodeBuf.getLong(NODE_IN_CONNECTION_START_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
 		int degree = getNodeInDegree(nodeIndex);
 		
 		for(int i = 0; i < degree; i++) {
 			// don't need the edge, so step over edge/node pairs and the ege
-			int nodeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_NODE_OFFSET;
+			long nodeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_NODE_OFFSET;
 			int node = connectionBuf.getInt(nodeOffset);
 			ret[i] = node;
 		}
@@ -953,13 +1054,15 @@ g1.outputInternalData();
 	 * @return all edges that leave the node. 
 	 */
 	public int[] getNodeConnectingOutEdges(int nodeIndex) {
-		
-		int connectionOffset = nodeBuf.getInt(NODE_OUT_CONNECTION_START_OFFSET+nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
+		if(compressedConnections) {
+			return compressedConnecting(nodeIndex,false,true,false);
+		}
+		long connectionOffset = nodeBuf.getLong(NODE_OUT_CONNECTION_START_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
 		int degree = getNodeOutDegree(nodeIndex);
 		int[] ret = new int[degree];
 		
 		for(int i = 0; i < degree; i++) {
-			int edgeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_EDGE_OFFSET;
+			long edgeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_EDGE_OFFSET;
 			int edge = connectionBuf.getInt(edgeOffset);
 			ret[i] = edge;
 		}
@@ -977,12 +1080,15 @@ g1.outputInternalData();
 	 * @param nodeIndex the node
 	 */
 	public void getNodeConnectingOutEdges(int[] ret, int nodeIndex) {
-		
-		int connectionOffset = nodeBuf.getInt(NODE_OUT_CONNECTION_START_OFFSET+nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
+		if(compressedConnections) {
+			compressedConnecting(ret,nodeIndex,false,true,false);
+			return;
+		}
+		long connectionOffset = nodeBuf.getLong(NODE_OUT_CONNECTION_START_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
 		int degree = getNodeOutDegree(nodeIndex);
 		
 		for(int i = 0; i < degree; i++) {
-			int edgeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_EDGE_OFFSET;
+			long edgeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_EDGE_OFFSET;
 			int edge = connectionBuf.getInt(edgeOffset);
 			ret[i] = edge;
 		}
@@ -996,15 +1102,17 @@ g1.outputInternalData();
  	 * @return all node neighbours that are on the end of edges that leave the passed node. 
 	 */
 	public int[] getNodeConnectingOutNodes(int nodeIndex) {
-		
-		int connectionOffset = nodeBuf.getInt(NODE_OUT_CONNECTION_START_OFFSET+nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
+		if(compressedConnections) {
+			return compressedConnecting(nodeIndex,false,true,true);
+		}
+		long connectionOffset = nodeBuf.getLong(NODE_OUT_CONNECTION_START_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
 		int degree = getNodeOutDegree(nodeIndex);
 		
 		int[] ret = new int[degree];
 		
 		for(int i = 0; i < degree; i++) {
 			// don't need the edge, so step over edge/node pairs and the ege
-			int nodeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_NODE_OFFSET;
+			long nodeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_NODE_OFFSET;
 			int node = connectionBuf.getInt(nodeOffset);
 			ret[i] = node;
 		}
@@ -1023,29 +1131,445 @@ g1.outputInternalData();
 	 * @param nodeIndex the node
 	 */
 	public void getNodeConnectingOutNodes(int[] ret, int nodeIndex) {
-		
-		int connectionOffset = nodeBuf.getInt(NODE_OUT_CONNECTION_START_OFFSET+nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
+		if(compressedConnections) {
+			compressedConnecting(ret,nodeIndex,false,true,true);
+			return;
+		}
+		long connectionOffset = nodeBuf.getLong(NODE_OUT_CONNECTION_START_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
 		int degree = getNodeOutDegree(nodeIndex);
 		
 		for(int i = 0; i < degree; i++) {
 			// don't need the edge, so step over edge/node pairs and the ege
-			int nodeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_NODE_OFFSET;
+			long nodeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_NODE_OFFSET;
 			int node = connectionBuf.getInt(nodeOffset);
 			ret[i] = node;
 		}
 	}
 
 
+	/**
+	 * Connections for the compressed format, decoded with a {@link ConnectionIterator}.
+	 * 
+	 * @param nodeIndex the node
+	 * @param in include the in list
+	 * @param out include the out list
+	 * @param nodes if true return the connecting nodes, if false the connecting edges
+	 * @return the connecting nodes or edges
+	 */
+	private int[] compressedConnecting(int nodeIndex, boolean in, boolean out, boolean nodes) {
+		int degree = 0;
+		if(in) {
+			degree += getNodeInDegree(nodeIndex);
+		}
+		if(out) {
+			degree += getNodeOutDegree(nodeIndex);
+		}
+		int[] ret = new int[degree];
+		compressedConnecting(ret, nodeIndex, in, out, nodes);
+		return ret;
+	}
+
+
+	/**
+	 * Connections for the compressed format, decoded with a {@link ConnectionIterator}.
+	 * 
+	 * @param ret populated with the connecting nodes or edges
+	 * @param nodeIndex the node
+	 * @param in include the in list
+	 * @param out include the out list
+	 * @param nodes if true find the connecting nodes, if false the connecting edges
+	 */
+	private void compressedConnecting(int[] ret, int nodeIndex, boolean in, boolean out, boolean nodes) {
+		ConnectionIterator it = new ConnectionIterator(this);
+		if(in && out) {
+			it.reset(nodeIndex);
+		} else if(in) {
+			it.resetIn(nodeIndex);
+		} else {
+			it.resetOut(nodeIndex);
+		}
+		int i = 0;
+		while(it.hasNext()) {
+			it.next();
+			if(nodes) {
+				ret[i] = it.getNode();
+			} else {
+				ret[i] = it.getEdge();
+			}
+			i++;
+		}
+	}
+
+
+	/**
+	 * Connecting nodes of the same age, from the age index if it is built, otherwise found with a
+	 * filtered {@link ConnectionIterator}, so works for both connection formats and needs no intermediate list.
+	 * 
+	 * @param nodeIndex the node
+	 * @param in include the in list
+	 * @param out include the out list
+	 * @return the connecting nodes with the same age as nodeIndex
+	 */
+	private int[] connectingOfSameAge(int nodeIndex, boolean in, boolean out) {
+		AgeIndex index = ageIndex;
+		if(index != null) {
+			return index.getConnectingNodesOfSameAge(nodeIndex, in, out);
+		}
+		ConnectionIterator it = new ConnectionIterator(this).filterNodeAge(getNodeAge(nodeIndex));
+		int[] ret = new int[it.reset(nodeIndex,in,out).countRemaining()];
+		it.reset(nodeIndex,in,out);
+		for(int i = 0; it.hasNext(); i++) {
+			it.next();
+			ret[i] = it.getNode();
+		}
+		return ret;
+	}
+
+
+	/**
+	 * A cursor that visits the edge/node pairs of a node straight from connectionBuf, in either
+	 * connection format and without creating arrays. Reuse it for many nodes with its reset methods.
+	 * 
+	 * @return a new cursor over the connections of this graph
+	 */
+	public ConnectionIterator getConnectionIterator() {
+		return new ConnectionIterator(this);
+	}
+
+
+	/**
+	 * A snapshot of the structure of the graph in int arrays, for algorithms that make many passes
+	 * over the connections of nodes. Takes a little over 8 ints per edge.
+	 * 
+	 * @return the in, out and undirected connection lists and degrees of the graph
+	 * @throws IllegalArgumentException if the graph has more than {@code (Integer.MAX_VALUE-8)/2} edges
+	 */
+	public CsrGraph toCsr() {
+long time = Debugger.createTime();
+		CsrGraph ret = new CsrGraph(this);
+Debugger.outputTime("built csr snapshot of "+getNumberOfNodes()+" nodes and "+getNumberOfEdges()+" edges",time);
+		return ret;
+	}
+
+
+	/**
+	 * The nodes and edges grouped by age, and the connecting nodes of the same age of each node.
+	 * Built on the first call and kept until {@link #setNodeAge(int, byte)}, {@link #setEdgeAge(int, byte)}
+	 * or a change to the connection lists, so the age queries of a temporal graph take time in proportion
+	 * to the size of the time slice rather than the graph. Takes a little over 2 ints per node and edge.
+	 * 
+	 * @return the age index of the graph
+	 */
+	public AgeIndex getAgeIndex() {
+		AgeIndex index = ageIndex;
+		if(index == null) {
+long time = Debugger.createTime();
+			index = new AgeIndex(this);
+			ageIndex = index;
+Debugger.outputTime("built age index of "+getNumberOfNodes()+" nodes and "+getNumberOfEdges()+" edges",time);
+		}
+		return index;
+	}
+
+
+	/**
+	 * @return true if connectionBuf is in the compressed format, see {@link #compressConnections()}
+	 */
+	public boolean isConnectionsCompressed() {
+		return compressedConnections;
+	}
+
+
+	/**
+	 * @return true if each in and out list is in order of connecting node then edge, see {@link #sortConnections()}
+	 */
+	public boolean isConnectionsSorted() {
+		return sortedConnections;
+	}
+
+
+	/**
+	 * Set when the connection buffer is loaded from a file that records the lists as sorted.
+	 * 
+	 * @param sorted true if each in and out list is in order of connecting node then edge
+	 */
+	void setConnectionsSorted(boolean sorted) {
+		sortedConnections = sorted;
+	}
+
+
+	/**
+	 * Sorts each in and out list of connectionBuf in place by connecting node, then by edge.
+	 * Once sorted, {@link #hasEdge(int, int)}, {@link #firstEdgeBetween(int, int)}, {@link #edgesBetween(int, int)}
+	 * and {@link ConnectionIterator#resetBetween(int, int)} find the connections between two nodes with
+	 * a binary search of each list rather than a scan, so take O(log d) rather than O(d) for a node of degree d.
+	 * The getNodeConnecting methods then return connections in sorted order rather than the order they were added.
+	 * Compressed lists are always sorted, so this only records the fact for a compressed graph. If the
+	 * connection buffer is read only, such as in a memory mapped graph, it is copied before sorting.
+	 * The generate methods that edit a graph return an unsorted graph.
+	 */
+	public void sortConnections() {
+		if(sortedConnections) {
+			return;
+		}
+		if(compressedConnections) {
+			sortedConnections = true;
+			return;
+		}
+long time = Debugger.createTime();
+		if(connectionBuf.isReadOnly()) {
+			connectionBuf = copyOwnBuffer(connectionBuf);
+		}
+		long[] pairs = new long[maximumDegree()];
+		for(int i = 0; i < numberOfNodes; i++) {
+			sortConnectionList(pairs, i, true);
+			sortConnectionList(pairs, i, false);
+		}
+		sortedConnections = true;
+		ageIndex = null;
+Debugger.outputTime("sortConnections", time);
+	}
+
+
+	/**
+	 * Sorts one list of the uncompressed format in place.
+	 * 
+	 * @param pairs workspace, must be at least the size of the list
+	 * @param nodeIndex the node
+	 * @param in if true the in list, if false the out list
+	 */
+	private void sortConnectionList(long[] pairs, int nodeIndex, boolean in) {
+		int length = readConnectionPairs(pairs, nodeIndex, in);
+		if(length < 2) {
+			return;
+		}
+		Arrays.sort(pairs, 0, length);
+		long connectionOffset;
+		if(in) {
+			connectionOffset = nodeBuf.getLong(NODE_IN_CONNECTION_START_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE);
+		} else {
+			connectionOffset = nodeBuf.getLong(NODE_OUT_CONNECTION_START_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE);
+		}
+		for(int i = 0; i < length; i++) {
+			long pairOffset = connectionOffset+(long)i*CONNECTION_PAIR_SIZE;
+			connectionBuf.putInt(pairOffset+CONNECTION_EDGE_OFFSET, (int)pairs[i]);
+			connectionBuf.putInt(pairOffset+CONNECTION_NODE_OFFSET, (int)(pairs[i] >>> 32));
+		}
+	}
+
+
+	/**
+	 * Binary search of a sorted uncompressed list for the connections to a node.
+	 * 
+	 * @param connectionOffset the start of the list in connectionBuf
+	 * @param length the number of pairs in the list
+	 * @param target the connecting node to find
+	 * @param after if false, find the first pair with a node of at least target, if true, find the first pair with a node greater than target
+	 * @return the position in the list of the found pair, or length if there is none
+	 */
+	int searchSortedConnections(long connectionOffset, int length, int target, boolean after) {
+		int low = 0;
+		int high = length;
+		while(low < high) {
+			int mid = (low+high) >>> 1;
+			int node = connectionBuf.getInt(connectionOffset+(long)mid*CONNECTION_PAIR_SIZE+CONNECTION_NODE_OFFSET);
+			if(node < target || (after && node == target)) {
+				low = mid+1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+
+	/**
+	 * Replaces connectionBuf with a compressed version, where each in and out list is sorted by
+	 * connecting node and stored as delta and varint encoded blocks, see {@link CompressedConnections}.
+	 * On sparse graphs this takes a quarter to a half of the space of the 8 byte edge/node pairs.
+	 * The getNodeConnecting methods decode the lists as they go with a {@link ConnectionIterator},
+	 * so return connections in sorted order rather than the order they were added.
+	 * The generate methods that edit a graph work on a decompressed copy, and return an uncompressed graph.
+	 * Does nothing if the connections are already compressed. If the node buffer is read only,
+	 * such as in a memory mapped graph, it is copied before the connection offsets are changed.
+	 */
+	public void compressConnections() {
+		if(compressedConnections) {
+			return;
+		}
+		if(nodeBuf.isReadOnly()) {
+			nodeBuf = copyOwnBuffer(nodeBuf);
+		}
+		long[] pairs = new long[maximumDegree()];
+		
+		// find the size first, so the buffer is allocated once at the right size
+		long size = 0;
+		for(int i = 0; i < numberOfNodes; i++) {
+			int length = readConnectionPairs(pairs, i, true);
+			size = CompressedConnections.encodeList(pairs, length, i, null, size);
+			length = readConnectionPairs(pairs, i, false);
+			size = CompressedConnections.encodeList(pairs, length, i, null, size);
+		}
+		
+		SegmentedBuffer compressedBuf = allocateOwnBuffer(size);
+		long offset = 0;
+		for(int i = 0; i < numberOfNodes; i++) {
+			// the node's offsets are only overwritten after both its lists are read
+			long inStart = offset;
+			int length = readConnectionPairs(pairs, i, true);
+			offset = CompressedConnections.encodeList(pairs, length, i, compressedBuf, offset);
+			long outStart = offset;
+			length = readConnectionPairs(pairs, i, false);
+			offset = CompressedConnections.encodeList(pairs, length, i, compressedBuf, offset);
+			nodeBuf.putLong(NODE_IN_CONNECTION_START_OFFSET+(long)i*NODE_BYTE_SIZE,inStart);
+			nodeBuf.putLong(NODE_OUT_CONNECTION_START_OFFSET+(long)i*NODE_BYTE_SIZE,outStart);
+		}
+		
+		connectionBuf = compressedBuf;
+		compressedConnections = true;
+		sortedConnections = true;
+		ageIndex = null;
+	}
+
+
+	/**
+	 * Replaces a compressed connectionBuf with the standard edge/node pair format.
+	 * Connections stay in the sorted order of the compressed lists.
+	 * Does nothing if the connections are not compressed.
+	 */
+	public void decompressConnections() {
+		if(!compressedConnections) {
+			return;
+		}
+		if(nodeBuf.isReadOnly()) {
+			nodeBuf = copyOwnBuffer(nodeBuf);
+		}
+		SegmentedBuffer pairBuf = allocateOwnBuffer((long)numberOfEdges*2*CONNECTION_PAIR_SIZE);
+		long offset = 0;
+		for(int i = 0; i < numberOfNodes; i++) {
+			int[] inEdges = compressedConnecting(i, true, false, false);
+			int[] inNodes = compressedConnecting(i, true, false, true);
+			int[] outEdges = compressedConnecting(i, false, true, false);
+			int[] outNodes = compressedConnecting(i, false, true, true);
+			nodeBuf.putLong(NODE_IN_CONNECTION_START_OFFSET+(long)i*NODE_BYTE_SIZE,offset);
+			for(int j = 0; j < inEdges.length; j++) {
+				pairBuf.putInt(CONNECTION_EDGE_OFFSET+offset,inEdges[j]);
+				pairBuf.putInt(CONNECTION_NODE_OFFSET+offset,inNodes[j]);
+				offset += CONNECTION_PAIR_SIZE;
+			}
+			nodeBuf.putLong(NODE_OUT_CONNECTION_START_OFFSET+(long)i*NODE_BYTE_SIZE,offset);
+			for(int j = 0; j < outEdges.length; j++) {
+				pairBuf.putInt(CONNECTION_EDGE_OFFSET+offset,outEdges[j]);
+				pairBuf.putInt(CONNECTION_NODE_OFFSET+offset,outNodes[j]);
+				offset += CONNECTION_PAIR_SIZE;
+			}
+		}
+		connectionBuf = pairBuf;
+		compressedConnections = false;
+		sortedConnections = true;
+	}
+
+
+	/**
+	 * Reads one list of the uncompressed format as packed pairs.
+	 * 
+	 * @param pairs populated with the packed pairs, must be at least the size of the list
+	 * @param nodeIndex the node
+	 * @param in if true the in list, if false the out list
+	 * @return the length of the list
+	 */
+	private int readConnectionPairs(long[] pairs, int nodeIndex, boolean in) {
+		long connectionOffset;
+		int degree;
+		if(in) {
+			connectionOffset = nodeBuf.getLong(NODE_IN_CONNECTION_START_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE);
+			degree = getNodeInDegree(nodeIndex);
+		} else {
+			connectionOffset = nodeBuf.getLong(NODE_OUT_CONNECTION_START_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE);
+			degree = getNodeOutDegree(nodeIndex);
+		}
+		for(int i = 0; i < degree; i++) {
+			long pairOffset = connectionOffset+(long)i*CONNECTION_PAIR_SIZE;
+			int edge = connectionBuf.getInt(pairOffset+CONNECTION_EDGE_OFFSET);
+			int node = connectionBuf.getInt(pairOffset+CONNECTION_NODE_OFFSET);
+			pairs[i] = CompressedConnections.pack(node, edge);
+		}
+		return degree;
+	}
+
+
+	/**
+	 * For the generate methods that edit connectionBuf directly.
+	 * 
+	 * @return this graph if the connections are not compressed, otherwise a copy with uncompressed connections that shares the other buffers
+	 */
+	private FastGraph uncompressedCopy() {
+		if(!compressedConnections) {
+			return this;
+		}
+		FastGraph g = new FastGraph(numberOfNodes, numberOfEdges, direct, false);
+		g.nodeBuf = nodeBuf.copy();
+		g.edgeBuf = edgeBuf;
+		g.nodeLabelBuf = nodeLabelBuf;
+		g.edgeLabelBuf = edgeLabelBuf;
+		g.connectionBuf = connectionBuf;
+		g.setLabelDictionaries(nodeLabelDictionary, nodeLabelIdBuf, edgeLabelDictionary, edgeLabelIdBuf);
+		g.setLabelIndexes(nodeLabelIndex, edgeLabelIndex);
+		g.compressedConnections = true;
+		g.name = name;
+		g.generation = generation;
+		g.decompressConnections();
+		return g;
+	}
+
+
+	/**
+	 * For buffers that replace or add to those of this graph. They come from the {@link BufferArena}
+	 * this graph was created in, if any, rather than whichever arena is open now, which this graph may outlive.
+	 * 
+	 * @param capacity the number of bytes
+	 * @return the new buffer, on or off heap matching this graph
+	 */
+	private SegmentedBuffer allocateOwnBuffer(long capacity) {
+		BufferArena previous = BufferArena.use(arena);
+		try {
+			return SegmentedBuffer.allocate(capacity, direct);
+		} finally {
+			BufferArena.use(previous);
+		}
+	}
+
+
+	/**
+	 * As {@link #allocateOwnBuffer(long)}, for a copy of one of this graph's buffers.
+	 * 
+	 * @param buf the buffer to copy
+	 * @return the copy
+	 */
+	private SegmentedBuffer copyOwnBuffer(SegmentedBuffer buf) {
+		BufferArena previous = BufferArena.use(arena);
+		try {
+			return buf.copy();
+		} finally {
+			BufferArena.use(previous);
+		}
+	}
+
+
 	/**
 	 * @param edgeIndex the edge
 	 * @return the edge label
 	 */
 	public String getEdgeLabel(int edgeIndex) {
-		int labelStart = edgeBuf.getInt(EDGE_LABEL_START_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
-		int labelLength = edgeBuf.getShort(EDGE_LABEL_LENGTH_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
+		LabelDictionary dictionary = edgeLabelDictionary;
+		if(dictionary != null) {
+			return dictionary.getLabel(edgeLabelIdBuf.getInt((long)edgeIndex*LabelDictionary.ID_BYTE_SIZE));
+		}
+		long labelStart = edgeBuf.getLong(EDGE_LABEL_START_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE);
+		int labelLength = edgeBuf.getShort(EDGE_LABEL_LENGTH_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE);
 		char[] label = new char[labelLength];
 		for(int i = 0; i < labelLength; i++) {
-			int offset = labelStart+i*2;
+			long offset = labelStart+i*2;
 			char c = edgeLabelBuf.getChar(offset);
 			label[i] = c;
 		}
@@ -1053,13 +1577,242 @@ g1.outputInternalData();
 		return ret;
 	}
 
+
+	/**
+	 * Ids from the same graph compare in the same way as the labels. The label dictionaries
+	 * are built on the first call if needed.
+	 *
+	 * @param nodeIndex the node
+	 * @return the id of the node label in {@link #getNodeLabelDictionary()}
+	 */
+	public int getNodeLabelId(int nodeIndex) {
+		if(nodeLabelDictionary == null) {
+			buildLabelDictionaries();
+		}
+		return nodeLabelIdBuf.getInt((long)nodeIndex*LabelDictionary.ID_BYTE_SIZE);
+	}
+
+
+	/**
+	 * Ids from the same graph compare in the same way as the labels. The label dictionaries
+	 * are built on the first call if needed.
+	 *
+	 * @param edgeIndex the edge
+	 * @return the id of the edge label in {@link #getEdgeLabelDictionary()}
+	 */
+	public int getEdgeLabelId(int edgeIndex) {
+		if(edgeLabelDictionary == null) {
+			buildLabelDictionaries();
+		}
+		return edgeLabelIdBuf.getInt((long)edgeIndex*LabelDictionary.ID_BYTE_SIZE);
+	}
+
+
+	/**
+	 * @return the distinct node labels, built if needed
+	 */
+	public LabelDictionary getNodeLabelDictionary() {
+		if(nodeLabelDictionary == null) {
+			buildLabelDictionaries();
+		}
+		return nodeLabelDictionary;
+	}
+
+
+	/**
+	 * @return the distinct edge labels, built if needed
+	 */
+	public LabelDictionary getEdgeLabelDictionary() {
+		if(edgeLabelDictionary == null) {
+			buildLabelDictionaries();
+		}
+		return edgeLabelDictionary;
+	}
+
+
+	/**
+	 * @return true if the label dictionaries have been built and the labels not changed since
+	 */
+	public boolean hasLabelDictionaries() {
+		return nodeLabelDictionary != null && edgeLabelDictionary != null;
+	}
+
+
+	/**
+	 * @return true if the node and edge label indexes have been built or loaded and the labels not changed since
+	 */
+	public boolean hasLabelIndexes() {
+		return nodeLabelIndex != null && edgeLabelIndex != null;
+	}
+
+
+	/**
+	 * Find the distinct node and edge labels and give every node and edge the int id of its label.
+	 * Called automatically by the label id methods, and discarded when labels are changed. Once built,
+	 * {@link #getNodeLabel(int)} and {@link #getEdgeLabel(int)} return the dictionary Strings rather than
+	 * creating new ones.
+	 */
+	public synchronized void buildLabelDictionaries() {
+		if(nodeLabelDictionary == null) {
+			SegmentedBuffer ids = allocateOwnBuffer((long)numberOfNodes*LabelDictionary.ID_BYTE_SIZE);
+			LabelDictionary dictionary = LabelDictionary.build(numberOfNodes, this::getNodeLabel, ids);
+			nodeLabelIdBuf = ids;
+			nodeLabelDictionary = dictionary; // volatile write after the ids, so readers see complete ids
+		}
+		if(edgeLabelDictionary == null) {
+			SegmentedBuffer ids = allocateOwnBuffer((long)numberOfEdges*LabelDictionary.ID_BYTE_SIZE);
+			LabelDictionary dictionary = LabelDictionary.build(numberOfEdges, this::getEdgeLabel, ids);
+			edgeLabelIdBuf = ids;
+			edgeLabelDictionary = dictionary;
+		}
+	}
+
+
+	/**
+	 * Use previously built or saved label dictionaries, for loading. Any label indexes are discarded.
+	 *
+	 * @param nodeDictionary the node label dictionary
+	 * @param nodeIds the node label ids, one int per node
+	 * @param edgeDictionary the edge label dictionary
+	 * @param edgeIds the edge label ids, one int per edge
+	 */
+	synchronized void setLabelDictionaries(LabelDictionary nodeDictionary, SegmentedBuffer nodeIds, LabelDictionary edgeDictionary, SegmentedBuffer edgeIds) {
+		nodeLabelIndex = null;
+		edgeLabelIndex = null;
+		nodeLabelIdBuf = nodeIds;
+		nodeLabelDictionary = nodeDictionary;
+		edgeLabelIdBuf = edgeIds;
+		edgeLabelDictionary = edgeDictionary;
+	}
+
+
+	/**
+	 * Use previously built or saved label indexes, for loading. Call after {@link #setLabelDictionaries},
+	 * the indexes must be for the label ids set there.
+	 *
+	 * @param nodeIndex the node label index, or null to build when needed
+	 * @param edgeIndex the edge label index, or null to build when needed
+	 */
+	synchronized void setLabelIndexes(LabelIndex nodeIndex, LabelIndex edgeIndex) {
+		nodeLabelIndex = nodeIndex;
+		edgeLabelIndex = edgeIndex;
+	}
+
+
+	/**
+	 * @return the nodes with each node label id, built with the label dictionaries if needed
+	 */
+	public LabelIndex getNodeLabelIndex() {
+		LabelIndex ret = nodeLabelIndex;
+		if(ret == null) {
+			ret = buildNodeLabelIndex();
+		}
+		return ret;
+	}
+
+
+	/**
+	 * @return the edges with each edge label id, built with the label dictionaries if needed
+	 */
+	public LabelIndex getEdgeLabelIndex() {
+		LabelIndex ret = edgeLabelIndex;
+		if(ret == null) {
+			ret = buildEdgeLabelIndex();
+		}
+		return ret;
+	}
+
+
+	/**
+	 * @return the node label index, built if not already there
+	 */
+	private synchronized LabelIndex buildNodeLabelIndex() {
+		if(nodeLabelIndex == null) {
+			buildLabelDictionaries();
+			int labels = nodeLabelDictionary.size();
+			SegmentedBuffer buf = allocateOwnBuffer(LabelIndex.byteSize(numberOfNodes, labels));
+			nodeLabelIndex = LabelIndex.build(numberOfNodes, labels, nodeLabelIdBuf, buf);
+		}
+		return nodeLabelIndex;
+	}
+
+
+	/**
+	 * @return the edge label index, built if not already there
+	 */
+	private synchronized LabelIndex buildEdgeLabelIndex() {
+		if(edgeLabelIndex == null) {
+			buildLabelDictionaries();
+			int labels = edgeLabelDictionary.size();
+			SegmentedBuffer buf = allocateOwnBuffer(LabelIndex.byteSize(numberOfEdges, labels));
+			edgeLabelIndex = LabelIndex.build(numberOfEdges, labels, edgeLabelIdBuf, buf);
+		}
+		return edgeLabelIndex;
+	}
+
+
+	/**
+	 * Finds the nodes with a label without testing every node. The label index is built on the
+	 * first call if it was not loaded with the graph.
+	 *
+	 * @param label the label to find
+	 * @return the nodes with the label in increasing order, empty if no node has the label
+	 */
+	public int[] nodesWithLabel(String label) {
+		LabelIndex index = getNodeLabelIndex();
+		int id = getNodeLabelDictionary().getId(label);
+		if(id == -1) {
+			return new int[0];
+		}
+		return index.getElements(id);
+	}
+
+
+	/**
+	 * Finds the edges with a label without testing every edge. The label index is built on the
+	 * first call if it was not loaded with the graph.
+	 *
+	 * @param label the label to find
+	 * @return the edges with the label in increasing order, empty if no edge has the label
+	 */
+	public int[] edgesWithLabel(String label) {
+		LabelIndex index = getEdgeLabelIndex();
+		int id = getEdgeLabelDictionary().getId(label);
+		if(id == -1) {
+			return new int[0];
+		}
+		return index.getElements(id);
+	}
+
+
+	/**
+	 * @return the node label id buffer, one int per node, built if needed
+	 */
+	public SegmentedBuffer getSegmentedNodeLabelIdBuf() {
+		if(nodeLabelDictionary == null) {
+			buildLabelDictionaries();
+		}
+		return nodeLabelIdBuf;
+	}
+
+
+	/**
+	 * @return the edge label id buffer, one int per edge, built if needed
+	 */
+	public SegmentedBuffer getSegmentedEdgeLabelIdBuf() {
+		if(edgeLabelDictionary == null) {
+			buildLabelDictionaries();
+		}
+		return edgeLabelIdBuf;
+	}
+
 	
 	/**
 	 * @param edgeIndex the edge
 	 * @return the first connecting node (the node the edge leaves for directed graphs).
 	 */
 	public int getEdgeNode1(int edgeIndex) {
-		int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
+		int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE);
 		return n1;
 	}
 	
@@ -1069,7 +1822,7 @@ g1.outputInternalData();
 	 * @return the second connecting node (the node the edge enters for directed graphs).
 	 */
 	public int getEdgeNode2(int edgeIndex) {
-		int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
+		int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE);
 		return n2;
 	}
 	
@@ -1079,7 +1832,7 @@ g1.outputInternalData();
 	 * @return the edge weight
 	 */
 	public int getEdgeWeight(int edgeIndex) {
-		int type = edgeBuf.getInt(EDGE_WEIGHT_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
+		int type = edgeBuf.getInt(EDGE_WEIGHT_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE);
 		return type;
 	}
 	
@@ -1089,7 +1842,7 @@ g1.outputInternalData();
 	 * @return the edge type
 	 */
 	public byte getEdgeType(int edgeIndex) {
-		byte type= edgeBuf.get(EDGE_TYPE_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
+		byte type= edgeBuf.get(EDGE_TYPE_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE);
 		return type;
 	}
 	
@@ -1099,7 +1852,7 @@ g1.outputInternalData();
 	 * @return the edge age
 	 */
 	public byte getEdgeAge(int edgeIndex) {
-		byte age = edgeBuf.get(EDGE_AGE_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
+		byte age = edgeBuf.get(EDGE_AGE_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE);
 		return age;
 	}
 	
@@ -1118,7 +1871,7 @@ g1.outputInternalData();
 	 * @param weight the new node weight
 	 */
 	public void setNodeWeight(int nodeIndex, int weight) {
-		nodeBuf.putInt(NODE_WEIGHT_OFFSET+nodeIndex*NODE_BYTE_SIZE, weight);
+		nodeBuf.putInt(NODE_WEIGHT_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE, weight);
 	}
 	
 	
@@ -1127,7 +1880,7 @@ g1.outputInternalData();
 	 * @param type the new node type
 	 */
 	public void setNodeType(int nodeIndex, byte type) {
-		nodeBuf.put(NODE_TYPE_OFFSET+nodeIndex*NODE_BYTE_SIZE, type);
+		nodeBuf.put(NODE_TYPE_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE, type);
 	}
 	
 	
@@ -1136,7 +1889,8 @@ g1.outputInternalData();
 	 * @param age The new age of the node
 	 */
 	public void setNodeAge(int nodeIndex, byte age) {
-		nodeBuf.put(NODE_AGE_OFFSET+nodeIndex*NODE_BYTE_SIZE, age);
+		nodeBuf.put(NODE_AGE_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE, age);
+		ageIndex = null;
 	}
 	
 
@@ -1146,7 +1900,7 @@ g1.outputInternalData();
 	 * @param weight the new edge weight
 	 */
 	public void setEdgeWeight(int edgeIndex, int weight) {
-		edgeBuf.putInt(EDGE_WEIGHT_OFFSET+edgeIndex*EDGE_BYTE_SIZE, weight);
+		edgeBuf.putInt(EDGE_WEIGHT_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE, weight);
 	}
 	
 	
@@ -1155,7 +1909,7 @@ g1.outputInternalData();
 	 * @param type the new edge type
 	 */
 	public void setEdgeType(int edgeIndex, byte type) {
-		edgeBuf.put(EDGE_TYPE_OFFSET+edgeIndex*EDGE_BYTE_SIZE, type);
+		edgeBuf.put(EDGE_TYPE_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE, type);
 	}
 	
 	
@@ -1164,7 +1918,8 @@ g1.outputInternalData();
 	 * @param age the new edge age
 	 */
 	public void setEdgeAge(int edgeIndex, byte age) {
-		edgeBuf.put(EDGE_AGE_OFFSET+edgeIndex*EDGE_BYTE_SIZE, age);
+		edgeBuf.put(EDGE_AGE_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE, age);
+		ageIndex = null;
 	}
 	
 
@@ -1173,33 +1928,30 @@ g1.outputInternalData();
 	 * 
 	 * @param labels Must contain the same number of labels as number of nodes in the graph
 	 */
-	public void setAllNodeLabels(String[] labels) {
+	public synchronized void setAllNodeLabels(String[] labels) {
 		
+		nodeLabelDictionary = null;
+		nodeLabelIdBuf = null;
+		nodeLabelIndex = null;
+
 		long totalLabelLength = 0;
 		
 		for(int i = 0; i < numberOfNodes; i++) {
 			totalLabelLength += labels[i].length();
 		}
 		
-		if(totalLabelLength*2 > MAX_BYTE_BUFFER_SIZE) {
-			throw new OutOfMemoryError("Tried to create a nodeLabelBuf with too many chars");
-		}
-		int bufSize = (int)(totalLabelLength*2); // this cast is safe because of the previous test
+		long bufSize = totalLabelLength*2;
 		
-		if(!direct) {
-			nodeLabelBuf = ByteBuffer.allocate(bufSize);
-		} else {
-			nodeLabelBuf = ByteBuffer.allocateDirect(bufSize);
-		}
+		nodeLabelBuf = allocateOwnBuffer(bufSize);
 		nodeLabelBuf.clear();
-		int labelOffset = 0;
+		long labelOffset = 0;
 		for(int i = 0; i < numberOfNodes; i++) {
 			String label = labels[i];
 			char[] labelArray = label.toCharArray();
 			short labelLength = (short)(labelArray.length);
 	
-			nodeBuf.putInt(NODE_LABEL_START_OFFSET+i*NODE_BYTE_SIZE,labelOffset); // label start
-			nodeBuf.putShort(NODE_LABEL_LENGTH_OFFSET+i*NODE_BYTE_SIZE,labelLength); // label size
+			nodeBuf.putLong(NODE_LABEL_START_OFFSET+(long)i*NODE_BYTE_SIZE,labelOffset); // label start
+			nodeBuf.putShort(NODE_LABEL_LENGTH_OFFSET+(long)i*NODE_BYTE_SIZE,labelLength); // label size
 	
 			for(int j = 0; j < labelArray.length; j++) {
 				char c = labelArray[j];
@@ -1216,34 +1968,31 @@ g1.outputInternalData();
 	 * 
 	 * @param labels Must contain the same number of labels as there are edges in the graph
 	 */
-	public void setAllEdgeLabels(String[] labels)  {
+	public synchronized void setAllEdgeLabels(String[] labels)  {
 		
+		edgeLabelDictionary = null;
+		edgeLabelIdBuf = null;
+		edgeLabelIndex = null;
+
 		long totalLabelLength = 0;
 		
 		for(int i = 0; i < numberOfEdges; i++) {
 			totalLabelLength += labels[i].length();
 		}
 		
-		if(totalLabelLength*2 > MAX_BYTE_BUFFER_SIZE) {
-			throw new OutOfMemoryError("Tried to create a edgeLabelBuf with too many chars");
-		}
-		int bufSize = (int)(totalLabelLength*2); // this cast is safe because of the previous test
+		long bufSize = totalLabelLength*2;
 		
-		if(!direct) {
-			edgeLabelBuf = ByteBuffer.allocate(bufSize);
-		} else {
-			edgeLabelBuf = ByteBuffer.allocateDirect(bufSize);
-		}
+		edgeLabelBuf = allocateOwnBuffer(bufSize);
 		edgeLabelBuf.clear();
 
-		int labelOffset = 0;
+		long labelOffset = 0;
 		for(int i = 0; i < numberOfEdges; i++) {
 			String label = labels[i];
 			char[] labelArray = label.toCharArray();
 			short labelLength = (short)(labelArray.length);
 	
-			edgeBuf.putInt(EDGE_LABEL_START_OFFSET+i*EDGE_BYTE_SIZE,labelOffset); // label start
-			edgeBuf.putShort(EDGE_LABEL_LENGTH_OFFSET+i*EDGE_BYTE_SIZE,labelLength); // label size
+			edgeBuf.putLong(EDGE_LABEL_START_OFFSET+(long)i*EDGE_BYTE_SIZE,labelOffset); // label start
+			edgeBuf.putShort(EDGE_LABEL_LENGTH_OFFSET+(long)i*EDGE_BYTE_SIZE,labelLength); // label size
 	
 			for(int j = 0; j < labelArray.length; j++) {
 				char c = labelArray[j];
@@ -1276,26 +2025,79 @@ g1.outputInternalData();
 
 
 	/**
-	 * Find the edges between two nodes
+	 * Find the edges between two nodes, in either direction. Uses a binary search
+	 * if the connections are sorted, see {@link #sortConnections()}.
 	 * 
 	 * @param n1 a node in the graph
 	 * @param n2 a node in the graph
-	 * @return the edges connecting the two nodes
+	 * @return the edges connecting the two nodes, in the order of the connections of n1
 	 */
 	public ArrayList<Integer> edgesBetween(int n1, int n2) {
 		
 		ArrayList<Integer> ret = new ArrayList<Integer>();
 		
-		int[] n1Edges = getNodeConnectingEdges(n1); 
-		for(int i = 0; i < n1Edges.length; i++) {
-			int edge = n1Edges[i];
-			if(oppositeEnd(edge, n1) == n2) {
-				ret.add(edge);
-			}
+		ConnectionIterator it = new ConnectionIterator(this).resetBetween(n1, n2);
+		while(it.hasNext()) {
+			it.next();
+			ret.add(it.getEdge());
 		}
 
 		return ret;
 	}
+
+
+	/**
+	 * Test for an edge between two nodes, in either direction. Takes O(log d) for a node of
+	 * degree d if the connections are sorted, see {@link #sortConnections()}, otherwise O(d).
+	 * 
+	 * @param n1 a node in the graph
+	 * @param n2 a node in the graph
+	 * @return true if there is at least one edge between the nodes
+	 */
+	public boolean hasEdge(int n1, int n2) {
+		return firstEdgeBetween(n1, n2) != -1;
+	}
+
+
+	/**
+	 * Find an edge between two nodes, in either direction. Takes O(log d) for a node of
+	 * degree d if the connections are sorted, see {@link #sortConnections()}, otherwise O(d).
+	 * 
+	 * @param n1 a node in the graph
+	 * @param n2 a node in the graph
+	 * @return the first edge that {@link #edgesBetween(int, int)} would return, or -1 if there is no edge between the nodes
+	 */
+	public int firstEdgeBetween(int n1, int n2) {
+		if(sortedConnections && !compressedConnections) {
+			// search directly, so no cursor is created
+			long base = (long)n1*NODE_BYTE_SIZE;
+			long inStart = nodeBuf.getLong(NODE_IN_CONNECTION_START_OFFSET+base);
+			int inDegree = getNodeInDegree(n1);
+			int position = searchSortedConnections(inStart, inDegree, n2, false);
+			if(position < inDegree) {
+				long pairOffset = inStart+(long)position*CONNECTION_PAIR_SIZE;
+				if(connectionBuf.getInt(pairOffset+CONNECTION_NODE_OFFSET) == n2) {
+					return connectionBuf.getInt(pairOffset+CONNECTION_EDGE_OFFSET);
+				}
+			}
+			long outStart = nodeBuf.getLong(NODE_OUT_CONNECTION_START_OFFSET+base);
+			int outDegree = getNodeOutDegree(n1);
+			position = searchSortedConnections(outStart, outDegree, n2, false);
+			if(position < outDegree) {
+				long pairOffset = outStart+(long)position*CONNECTION_PAIR_SIZE;
+				if(connectionBuf.getInt(pairOffset+CONNECTION_NODE_OFFSET) == n2) {
+					return connectionBuf.getInt(pairOffset+CONNECTION_EDGE_OFFSET);
+				}
+			}
+			return -1;
+		}
+		ConnectionIterator it = new ConnectionIterator(this).resetBetween(n1, n2);
+		if(it.hasNext()) {
+			it.next();
+			return it.getEdge();
+		}
+		return -1;
+	}
 		
 
 
@@ -1336,11 +2138,37 @@ g1.outputInternalData();
 			}
 		}
 
-		FastGraph g = new FastGraph(nodeCount,edgeCount,direct);
-		g.populateFromJsonString(jsonObj);
-		g.setName(graphName);
-		
-		return g;
+		FastGraph g = new FastGraph(nodeCount,edgeCount,direct);
+		g.populateFromJsonString(jsonObj);
+		g.setName(graphName);
+		
+		return g;
+	}
+	
+
+	/**
+	 * Create a FastGraph from a json stream, in the format of {@link #jsonStringGraphFactory(String, boolean)},
+	 * without holding the whole text or a JSONObject tree in memory. See {@link JsonGraphStream}.
+	 *
+	 * @param in the json source, read to the end of the graph object but not closed
+	 * @param direct if true then off heap ByteBuffers, if false then on heap ByteBuffers
+	 * @return the created FastGraph.
+	 * @throws IOException if the stream cannot be read, or the graph is too big for a FastGraph
+	 */
+	public static FastGraph jsonStreamGraphFactory(InputStream in, boolean direct) throws IOException {
+		return JsonGraphStream.read(in, direct);
+	}
+
+
+	/**
+	 * Write the graph as json, one node or edge at a time, in the format read by {@link #jsonStringGraphFactory(String, boolean)}
+	 * and {@link #jsonStreamGraphFactory(InputStream, boolean)}.
+	 *
+	 * @param out the destination, flushed but not closed
+	 * @throws IOException if the stream cannot be written
+	 */
+	public void writeJson(OutputStream out) throws IOException {
+		JsonGraphStream.write(this, out);
 	}
 	
 
@@ -1404,10 +2232,218 @@ g1.outputInternalData();
 	 * @see loadBuffers
 	 */
 	public static FastGraph loadBuffersGraphFactory(String directory, String fileBaseName) throws IOException {
-		FastGraph g = loadBuffers(directory,fileBaseName);
+		FastGraph g = loadBuffers(directory,fileBaseName,false);
+		return g;
+	}
+
+
+	/**
+	 * creates a FastGraph by loading in various files from the given directory, or data under
+	 * current working directory if directory is null. If mapped is true the buffer files are
+	 * memory mapped read only rather than copied into new ByteBuffers, so loading is near instant,
+	 * pages are faulted in when accessed and several processes can share the same copy of the graph.
+	 * A mapped graph cannot be altered with the set methods, but can be used as the source of the
+	 * generate methods, which create new graphs. Do not save a mapped graph over the files it was mapped from.
+	 * 
+	 * @param directory where the files are held, or if null fileBaseName under data under the current working directory
+	 * @param fileBaseName the name of the files, to which extensions are added
+	 * @param mapped if true the buffer files are memory mapped read only, if false they are copied into new ByteBuffers
+	 * @return the created FastGraph
+	 * @throws IOException If the buffers cannot be loaded
+	 * @see loadBuffers
+	 */
+	public static FastGraph loadBuffersGraphFactory(String directory, String fileBaseName, boolean mapped) throws IOException {
+		FastGraph g = loadBuffers(directory,fileBaseName,mapped);
+		return g;
+	}
+
+
+	/**
+	 * creates a FastGraph from a single container file written by saveContainer, in the given directory,
+	 * or data under current working directory if directory is null. If mapped is true the sections are memory
+	 * mapped read only, as with {@link #loadBuffersGraphFactory(String, String, boolean)}, otherwise they are
+	 * read into new buffers and their checksums are tested.
+	 * 
+	 * @param directory where the file is held, or if null fileBaseName under data under the current working directory
+	 * @param fileBaseName the name of the file, to which {@link GraphContainer#EXTENSION} is added
+	 * @param mapped if true the sections are memory mapped read only, if false they are copied into new buffers
+	 * @return the created FastGraph
+	 * @throws IOException If the file cannot be loaded, is not a container, or fails a checksum
+	 * @see GraphContainer
+	 */
+	public static FastGraph loadContainerGraphFactory(String directory, String fileBaseName, boolean mapped) throws IOException {
+		FastGraph g = GraphContainer.read(containerFileName(directory,fileBaseName),mapped);
 		return g;
 	}
 
+
+	/**
+	 * Creates a FastGraph around buffers that already hold a graph, for loaders outside this class.
+	 * 
+	 * @param inName the graph name
+	 * @param inGeneration the oldest generation time slice
+	 * @param nodeTotal the number of nodes
+	 * @param edgeTotal the number of edges
+	 * @param inDirect if true off heap, if false on heap
+	 * @param compressed true if inConnectionBuf is in the compressed format
+	 * @param inNodeBuf the node buffer
+	 * @param inEdgeBuf the edge buffer
+	 * @param inConnectionBuf the connection buffer
+	 * @param inNodeLabelBuf the node label buffer
+	 * @param inEdgeLabelBuf the edge label buffer
+	 * @return the new graph, using the passed buffers
+	 */
+	static FastGraph buffersGraphFactory(String inName, byte inGeneration, int nodeTotal, int edgeTotal, boolean inDirect, boolean compressed,
+			SegmentedBuffer inNodeBuf, SegmentedBuffer inEdgeBuf, SegmentedBuffer inConnectionBuf, SegmentedBuffer inNodeLabelBuf, SegmentedBuffer inEdgeLabelBuf) {
+		FastGraph g = new FastGraph(nodeTotal, edgeTotal, inDirect, false);
+		g.nodeBuf = inNodeBuf;
+		g.edgeBuf = inEdgeBuf;
+		g.connectionBuf = inConnectionBuf;
+		g.nodeLabelBuf = inNodeLabelBuf;
+		g.edgeLabelBuf = inEdgeLabelBuf;
+		g.compressedConnections = compressed;
+		g.sortedConnections = compressed;
+		g.generation = inGeneration;
+		g.setName(inName);
+		return g;
+	}
+
+
+	/**
+	 * @param directory where the file is held, or if null fileBaseName under data under the current working directory
+	 * @param fileBaseName the name of the file, to which {@link GraphContainer#EXTENSION} is added
+	 * @return the full container file name
+	 */
+	private static String containerFileName(String directory, String fileBaseName) {
+		return directoryAndBaseName(directory,fileBaseName)+GraphContainer.EXTENSION;
+	}
+
+
+	/**
+	 * @param directory where the files are held, or if null fileBaseName under data under the current working directory
+	 * @param fileBaseName the name of the files, without extension
+	 * @return the directory and base name to which file extensions are added, as used by {@link #saveBuffers(String, String)}
+	 */
+	static String directoryAndBaseName(String directory, String fileBaseName) {
+		String directoryAndBaseName = Launcher.startingWorkingDirectory+File.separatorChar+"data"+File.separatorChar+fileBaseName+File.separatorChar+fileBaseName;
+		if(directory != null) {
+			if(directory.charAt(directory.length()-1)== File.separatorChar) {
+				directoryAndBaseName = directory+fileBaseName;
+			} else {
+				directoryAndBaseName = directory+File.separatorChar+fileBaseName;
+			}
+		}
+		return directoryAndBaseName;
+	}
+
+	
+	
+	/**
+	 * Convert node records saved with 32 bit label and connection start offsets, which are read as
+	 * unsigned, to the current layout with long offsets.
+	 *
+	 * @param old the node records in the old layout
+	 * @param numberOfNodes the number of nodes
+	 * @param direct if true then off heap ByteBuffers, if false then on heap ByteBuffers
+	 * @return the node records in the current layout
+	 */
+	static SegmentedBuffer widenNodeRecords(SegmentedBuffer old, int numberOfNodes, boolean direct) {
+		SegmentedBuffer ret = SegmentedBuffer.allocate((long)numberOfNodes*NODE_BYTE_SIZE, direct);
+		for(int n = 0; n < numberOfNodes; n++) {
+			long oldOffset = (long)n*INT_OFFSET_NODE_BYTE_SIZE;
+			long nodeOffset = (long)n*NODE_BYTE_SIZE;
+			ret.putLong(NODE_LABEL_START_OFFSET+nodeOffset, old.getUnsignedInt(oldOffset));
+			ret.putShort(NODE_LABEL_LENGTH_OFFSET+nodeOffset, old.getShort(oldOffset+4));
+			ret.putLong(NODE_IN_CONNECTION_START_OFFSET+nodeOffset, old.getUnsignedInt(oldOffset+6));
+			ret.putInt(NODE_IN_DEGREE_OFFSET+nodeOffset, old.getInt(oldOffset+10));
+			ret.putLong(NODE_OUT_CONNECTION_START_OFFSET+nodeOffset, old.getUnsignedInt(oldOffset+14));
+			ret.putInt(NODE_OUT_DEGREE_OFFSET+nodeOffset, old.getInt(oldOffset+18));
+			ret.putInt(NODE_WEIGHT_OFFSET+nodeOffset, old.getInt(oldOffset+22));
+			ret.put(NODE_TYPE_OFFSET+nodeOffset, old.get(oldOffset+26));
+			ret.put(NODE_AGE_OFFSET+nodeOffset, old.get(oldOffset+27));
+		}
+		return ret;
+	}
+
+
+	/**
+	 * Convert edge records saved with a 32 bit label start offset, which is read as unsigned,
+	 * to the current layout with a long offset.
+	 *
+	 * @param old the edge records in the old layout
+	 * @param numberOfEdges the number of edges
+	 * @param direct if true then off heap ByteBuffers, if false then on heap ByteBuffers
+	 * @return the edge records in the current layout
+	 */
+	static SegmentedBuffer widenEdgeRecords(SegmentedBuffer old, int numberOfEdges, boolean direct) {
+		SegmentedBuffer ret = SegmentedBuffer.allocate((long)numberOfEdges*EDGE_BYTE_SIZE, direct);
+		for(int e = 0; e < numberOfEdges; e++) {
+			long oldOffset = (long)e*INT_OFFSET_EDGE_BYTE_SIZE;
+			long edgeOffset = (long)e*EDGE_BYTE_SIZE;
+			ret.putInt(EDGE_NODE1_OFFSET+edgeOffset, old.getInt(oldOffset));
+			ret.putInt(EDGE_NODE2_OFFSET+edgeOffset, old.getInt(oldOffset+4));
+			ret.putLong(EDGE_LABEL_START_OFFSET+edgeOffset, old.getUnsignedInt(oldOffset+8));
+			ret.putShort(EDGE_LABEL_LENGTH_OFFSET+edgeOffset, old.getShort(oldOffset+12));
+			ret.putInt(EDGE_WEIGHT_OFFSET+edgeOffset, old.getInt(oldOffset+14));
+			ret.put(EDGE_TYPE_OFFSET+edgeOffset, old.get(oldOffset+18));
+			ret.put(EDGE_AGE_OFFSET+edgeOffset, old.get(oldOffset+19));
+		}
+		return ret;
+	}
+
+
+	/**
+	 * Build connectionBuf from the node ends held in edgeBuf with a counting sort over the
+	 * node degrees, so no per edge objects are created. The in and out connection starts and
+	 * degrees are written to nodeBuf, other node fields are not changed. Each connection list
+	 * is in edge index order.
+	 *
+	 * @param nodeBuf the node records, with space for numberOfNodes nodes
+	 * @param edgeBuf the edge records, node1 and node2 must be set
+	 * @param numberOfNodes the number of nodes
+	 * @param numberOfEdges the number of edges
+	 * @param direct if true then off heap ByteBuffers, if false then on heap ByteBuffers
+	 * @return the new connectionBuf
+	 */
+	static SegmentedBuffer buildConnections(SegmentedBuffer nodeBuf, SegmentedBuffer edgeBuf, int numberOfNodes, int numberOfEdges, boolean direct) {
+		int[] inDegree = new int[numberOfNodes];
+		int[] outDegree = new int[numberOfNodes];
+		for(int e = 0; e < numberOfEdges; e++) {
+			long edgeOffset = (long)e*EDGE_BYTE_SIZE;
+			outDegree[edgeBuf.getInt(EDGE_NODE1_OFFSET+edgeOffset)]++;
+			inDegree[edgeBuf.getInt(EDGE_NODE2_OFFSET+edgeOffset)]++;
+		}
+		long[] inCursor = new long[numberOfNodes];
+		long[] outCursor = new long[numberOfNodes];
+		long offset = 0;
+		for(int n = 0; n < numberOfNodes; n++) {
+			long nodeOffset = (long)n*NODE_BYTE_SIZE;
+			inCursor[n] = offset;
+			nodeBuf.putLong(NODE_IN_CONNECTION_START_OFFSET+nodeOffset, offset);
+			nodeBuf.putInt(NODE_IN_DEGREE_OFFSET+nodeOffset, inDegree[n]);
+			offset += (long)inDegree[n]*CONNECTION_PAIR_SIZE;
+			outCursor[n] = offset;
+			nodeBuf.putLong(NODE_OUT_CONNECTION_START_OFFSET+nodeOffset, offset);
+			nodeBuf.putInt(NODE_OUT_DEGREE_OFFSET+nodeOffset, outDegree[n]);
+			offset += (long)outDegree[n]*CONNECTION_PAIR_SIZE;
+		}
+		inDegree = null;
+		outDegree = null;
+		SegmentedBuffer ret = SegmentedBuffer.allocate(offset, direct);
+		for(int e = 0; e < numberOfEdges; e++) {
+			long edgeOffset = (long)e*EDGE_BYTE_SIZE;
+			int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+edgeOffset);
+			int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+edgeOffset);
+			ret.putInt(CONNECTION_EDGE_OFFSET+outCursor[n1], e);
+			ret.putInt(CONNECTION_NODE_OFFSET+outCursor[n1], n2);
+			outCursor[n1] += CONNECTION_PAIR_SIZE;
+			ret.putInt(CONNECTION_EDGE_OFFSET+inCursor[n2], e);
+			ret.putInt(CONNECTION_NODE_OFFSET+inCursor[n2], n1);
+			inCursor[n2] += CONNECTION_PAIR_SIZE;
+		}
+		return ret;
+	}
+
 	
 	
 	/**
@@ -1442,13 +2478,13 @@ g1.outputInternalData();
 			age = (byte)(node.getInt("nodeAge"));
 			label = node.getString("nodeLabel");
 			
-			nodeBuf.putInt(NODE_IN_CONNECTION_START_OFFSET+index*NODE_BYTE_SIZE,inStart); // offset for inward connecting edges/nodes
-			nodeBuf.putInt(NODE_IN_DEGREE_OFFSET+index*NODE_BYTE_SIZE,inLength); // number of inward connecting edges/nodes
-			nodeBuf.putInt(NODE_OUT_CONNECTION_START_OFFSET+index*NODE_BYTE_SIZE,outStart); // offset for outward connecting edges/nodes
-			nodeBuf.putInt(NODE_OUT_DEGREE_OFFSET+index*NODE_BYTE_SIZE,outLength); // number of outward connecting edges/nodes
-			nodeBuf.putInt(NODE_WEIGHT_OFFSET+index*NODE_BYTE_SIZE,weight); // weight
-			nodeBuf.put(NODE_TYPE_OFFSET+index*NODE_BYTE_SIZE,type); // type
-			nodeBuf.put(NODE_AGE_OFFSET+index*NODE_BYTE_SIZE,age); // age
+			nodeBuf.putLong(NODE_IN_CONNECTION_START_OFFSET+(long)index*NODE_BYTE_SIZE,inStart); // offset for inward connecting edges/nodes
+			nodeBuf.putInt(NODE_IN_DEGREE_OFFSET+(long)index*NODE_BYTE_SIZE,inLength); // number of inward connecting edges/nodes
+			nodeBuf.putLong(NODE_OUT_CONNECTION_START_OFFSET+(long)index*NODE_BYTE_SIZE,outStart); // offset for outward connecting edges/nodes
+			nodeBuf.putInt(NODE_OUT_DEGREE_OFFSET+(long)index*NODE_BYTE_SIZE,outLength); // number of outward connecting edges/nodes
+			nodeBuf.putInt(NODE_WEIGHT_OFFSET+(long)index*NODE_BYTE_SIZE,weight); // weight
+			nodeBuf.put(NODE_TYPE_OFFSET+(long)index*NODE_BYTE_SIZE,type); // type
+			nodeBuf.put(NODE_AGE_OFFSET+(long)index*NODE_BYTE_SIZE,age); // age
 			
 			// save labels for later
 			nodeLabels[index] = label;
@@ -1493,11 +2529,11 @@ g1.outputInternalData();
 			age = (byte)(edge.getInt("edgeAge"));
 			label = edge.getString("edgeLabel");
 			
-			edgeBuf.putInt(EDGE_NODE1_OFFSET+index*EDGE_BYTE_SIZE,node1); // one end of edge
-			edgeBuf.putInt(EDGE_NODE2_OFFSET+index*EDGE_BYTE_SIZE,node2); // other end of edge
-			edgeBuf.putInt(EDGE_WEIGHT_OFFSET+index*EDGE_BYTE_SIZE,weight); // weight
-			edgeBuf.put(EDGE_TYPE_OFFSET+index*EDGE_BYTE_SIZE,type); // type
-			edgeBuf.put(EDGE_AGE_OFFSET+index*EDGE_BYTE_SIZE,age); // age
+			edgeBuf.putInt(EDGE_NODE1_OFFSET+(long)index*EDGE_BYTE_SIZE,node1); // one end of edge
+			edgeBuf.putInt(EDGE_NODE2_OFFSET+(long)index*EDGE_BYTE_SIZE,node2); // other end of edge
+			edgeBuf.putInt(EDGE_WEIGHT_OFFSET+(long)index*EDGE_BYTE_SIZE,weight); // weight
+			edgeBuf.put(EDGE_TYPE_OFFSET+(long)index*EDGE_BYTE_SIZE,type); // type
+			edgeBuf.put(EDGE_AGE_OFFSET+(long)index*EDGE_BYTE_SIZE,age); // age
 			
 			// save labels for later
 			edgeLabels[index] = label;
@@ -1514,18 +2550,18 @@ g1.outputInternalData();
 		setAllEdgeLabels(edgeLabels);
 	
 		// Initialise the connection buffer, modifying the node buffer connection data
-		int offset = 0;
+		long offset = 0;
 		for(int i = 0; i < numberOfNodes; i++) {
 			// setting the in connection offset and length
 			ArrayList<Integer> inEdges = nodeIn.get(i);
 			int inEdgeLength = inEdges.size();
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_IN_CONNECTION_START_OFFSET,offset);
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_IN_DEGREE_OFFSET,inEdgeLength);
+			nodeBuf.putLong((long)i*NODE_BYTE_SIZE+NODE_IN_CONNECTION_START_OFFSET,offset);
+			nodeBuf.putInt((long)i*NODE_BYTE_SIZE+NODE_IN_DEGREE_OFFSET,inEdgeLength);
 			// now put the in edge/node pairs
 			for(int edgeIndex : inEdges) {
 				int n = -1;
-				int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
-				int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
+				int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE);
+				int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE);
 				if(n1 == i) {
 					n = n2;
 				} else if(n2 == i) {
@@ -1541,14 +2577,14 @@ g1.outputInternalData();
 			// setting the out connection offset and length
 			ArrayList<Integer> outEdges = nodeOut.get(i);
 			int outEdgeLength = outEdges.size();
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_OUT_CONNECTION_START_OFFSET,offset);
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_OUT_DEGREE_OFFSET,outEdgeLength);
+			nodeBuf.putLong((long)i*NODE_BYTE_SIZE+NODE_OUT_CONNECTION_START_OFFSET,offset);
+			nodeBuf.putInt((long)i*NODE_BYTE_SIZE+NODE_OUT_DEGREE_OFFSET,outEdgeLength);
 
 			// now put the out edge/node pairs
 			for(int edgeIndex : outEdges) {
 				int n = -1;
-				int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
-				int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
+				int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE);
+				int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE);
 				if(n1 == i) {
 					n = n2;
 				} else if(n2 == i) {
@@ -1614,6 +2650,9 @@ g1.outputInternalData();
 				directValue = "true";
 			}
 			writer.write("direct"+INFO_SPLIT_STRING+directValue+"\n");
+			writer.write("compressedConnections"+INFO_SPLIT_STRING+compressedConnections+"\n");
+			writer.write("sortedConnections"+INFO_SPLIT_STRING+sortedConnections+"\n");
+			writer.write("longOffsets"+INFO_SPLIT_STRING+"true\n");
 
 			writer.close();
 			fos.close();
@@ -1636,6 +2675,30 @@ g1.outputInternalData();
 	}
 	
 
+	/**
+	 * Saves the graph as a single container file, see {@link GraphContainer}. The file is written in full
+	 * to a temporary file, then moved over any existing file, so a snapshot can be replaced while others read it.
+	 * If directory is null, then to a directory named data under current working directory.
+	 * 
+	 * @param directory where the file is to be stored, or if null fileBaseName under data under the current working directory
+	 * @param fileBaseName the name of the file, to which {@link GraphContainer#EXTENSION} is added
+	 * @param parallel if true the sections are written by several threads
+	 * @throws IOException If the file cannot be written
+	 */
+	public void saveContainer(String directory, String fileBaseName, boolean parallel) throws IOException {
+		if(fileBaseName == null) {
+			throw new IOException("null fileBaseName");
+		}
+		if(fileBaseName.length() == 0) {
+			throw new IOException("empty fileBaseName");
+		}
+		if(name == null || name.length() == 0) { // as in saveBuffers, prevents an empty name being saved
+			name = fileBaseName;
+		}
+		GraphContainer.write(this,containerFileName(directory,fileBaseName),parallel);
+	}
+	
+
 	/**
 	 * Debugging info
 	 */
@@ -1651,33 +2714,33 @@ g1.outputInternalData();
 		System.out.println("Graph name: "+getName());
 		for(int i = 0; i< numberOfNodes; i++) {
 			System.out.println("node "+i+" "+getNodeLabel(i));
-			System.out.println("  LABEL_START: "+nodeBuf.getInt(NODE_LABEL_START_OFFSET+i*NODE_BYTE_SIZE));
-			System.out.println("  LABEL_LENGTH: "+nodeBuf.getShort(NODE_LABEL_LENGTH_OFFSET+i*NODE_BYTE_SIZE));
-			System.out.println("  IN_CONNECTION_START: "+nodeBuf.getInt(NODE_IN_CONNECTION_START_OFFSET+i*NODE_BYTE_SIZE));
-			System.out.println("  IN_DEGREE: "+nodeBuf.getInt(NODE_IN_DEGREE_OFFSET+i*NODE_BYTE_SIZE));
-			System.out.println("  OUT_CONNECTION_START: "+nodeBuf.getInt(NODE_OUT_CONNECTION_START_OFFSET+i*NODE_BYTE_SIZE));
-			System.out.println("  OUT_DEGREE: "+nodeBuf.getInt(NODE_OUT_DEGREE_OFFSET+i*NODE_BYTE_SIZE));
-			System.out.println("  WEIGHT: "+nodeBuf.getInt(NODE_WEIGHT_OFFSET+i*NODE_BYTE_SIZE));
-			System.out.println("  TYPE: "+nodeBuf.get(NODE_TYPE_OFFSET+i*NODE_BYTE_SIZE));
-			System.out.println("  AGE: "+nodeBuf.get(NODE_AGE_OFFSET+i*NODE_BYTE_SIZE));
-
-			outConnectionMap.put("node"+i+"out",nodeBuf.getInt(NODE_OUT_CONNECTION_START_OFFSET+i*NODE_BYTE_SIZE));
-			inConnectionMap.put("node"+i+"in",nodeBuf.getInt(NODE_IN_CONNECTION_START_OFFSET+i*NODE_BYTE_SIZE));
-			nodeLabelIndex.add(nodeBuf.getInt(NODE_LABEL_START_OFFSET+i*NODE_BYTE_SIZE));
+			System.out.println("  LABEL_START: "+nodeBuf.getLong(NODE_LABEL_START_OFFSET+(long)i*NODE_BYTE_SIZE));
+			System.out.println("  LABEL_LENGTH: "+nodeBuf.getShort(NODE_LABEL_LENGTH_OFFSET+(long)i*NODE_BYTE_SIZE));
+			System.out.println("  IN_CONNECTION_START: "+nodeBuf.getLong(NODE_IN_CONNECTION_START_OFFSET+(long)i*NODE_BYTE_SIZE));
+			System.out.println("  IN_DEGREE: "+nodeBuf.getInt(NODE_IN_DEGREE_OFFSET+(long)i*NODE_BYTE_SIZE));
+			System.out.println("  OUT_CONNECTION_START: "+nodeBuf.getLong(NODE_OUT_CONNECTION_START_OFFSET+(long)i*NODE_BYTE_SIZE));
+			System.out.println("  OUT_DEGREE: "+nodeBuf.getInt(NODE_OUT_DEGREE_OFFSET+(long)i*NODE_BYTE_SIZE));
+			System.out.println("  WEIGHT: "+nodeBuf.getInt(NODE_WEIGHT_OFFSET+(long)i*NODE_BYTE_SIZE));
+			System.out.println("  TYPE: "+nodeBuf.get(NODE_TYPE_OFFSET+(long)i*NODE_BYTE_SIZE));
+			System.out.println("  AGE: "+nodeBuf.get(NODE_AGE_OFFSET+(long)i*NODE_BYTE_SIZE));
+
+			outConnectionMap.put("node"+i+"out",(int)nodeBuf.getLong(NODE_OUT_CONNECTION_START_OFFSET+(long)i*NODE_BYTE_SIZE));
+			inConnectionMap.put("node"+i+"in",(int)nodeBuf.getLong(NODE_IN_CONNECTION_START_OFFSET+(long)i*NODE_BYTE_SIZE));
+			nodeLabelIndex.add((int)nodeBuf.getLong(NODE_LABEL_START_OFFSET+(long)i*NODE_BYTE_SIZE));
 			nodeLabelNode.add(i);
 		}
 		
 		for(int i = 0; i< numberOfEdges; i++) {
 			System.out.println("edge "+i+" "+getEdgeLabel(i));
-			System.out.println("  NODE1: "+edgeBuf.getInt(EDGE_NODE1_OFFSET+i*EDGE_BYTE_SIZE));
-			System.out.println("  NODE2: "+edgeBuf.getInt(EDGE_NODE2_OFFSET+i*EDGE_BYTE_SIZE));
-			System.out.println("  LABEL_START: "+edgeBuf.getInt(EDGE_LABEL_START_OFFSET+i*EDGE_BYTE_SIZE));
-			System.out.println("  LABEL_LENGTH: "+edgeBuf.getShort(EDGE_LABEL_LENGTH_OFFSET+i*EDGE_BYTE_SIZE));
-			System.out.println("  WEIGHT: "+edgeBuf.getInt(EDGE_WEIGHT_OFFSET+i*EDGE_BYTE_SIZE));
-			System.out.println("  TYPE: "+edgeBuf.get(EDGE_TYPE_OFFSET+i*EDGE_BYTE_SIZE));
-			System.out.println("  AGE: "+edgeBuf.get(EDGE_AGE_OFFSET+i*EDGE_BYTE_SIZE));
+			System.out.println("  NODE1: "+edgeBuf.getInt(EDGE_NODE1_OFFSET+(long)i*EDGE_BYTE_SIZE));
+			System.out.println("  NODE2: "+edgeBuf.getInt(EDGE_NODE2_OFFSET+(long)i*EDGE_BYTE_SIZE));
+			System.out.println("  LABEL_START: "+edgeBuf.getLong(EDGE_LABEL_START_OFFSET+(long)i*EDGE_BYTE_SIZE));
+			System.out.println("  LABEL_LENGTH: "+edgeBuf.getShort(EDGE_LABEL_LENGTH_OFFSET+(long)i*EDGE_BYTE_SIZE));
+			System.out.println("  WEIGHT: "+edgeBuf.getInt(EDGE_WEIGHT_OFFSET+(long)i*EDGE_BYTE_SIZE));
+			System.out.println("  TYPE: "+edgeBuf.get(EDGE_TYPE_OFFSET+(long)i*EDGE_BYTE_SIZE));
+			System.out.println("  AGE: "+edgeBuf.get(EDGE_AGE_OFFSET+(long)i*EDGE_BYTE_SIZE));
 			
-			edgeLabelIndex.add(edgeBuf.getInt(EDGE_LABEL_START_OFFSET+i*EDGE_BYTE_SIZE));
+			edgeLabelIndex.add((int)edgeBuf.getLong(EDGE_LABEL_START_OFFSET+(long)i*EDGE_BYTE_SIZE));
 			edgeLabelEdge.add(i);
 		}
 		
@@ -1692,11 +2755,11 @@ g1.outputInternalData();
 			}
 			System.out.print(nodeLabelBuf.getChar()+" ");
 		}
-		int index = nodeLabelIndex.indexOf(nodeLabelBuf.capacity());
+		int index = nodeLabelIndex.indexOf((int)nodeLabelBuf.capacity());
 		while(index != -1) {
 			System.out.print("node"+nodeLabelNode.get(index)+" ");
 			nodeLabelIndex.set(index,-1);
-			index = nodeLabelIndex.indexOf(nodeLabelBuf.capacity());
+			index = nodeLabelIndex.indexOf((int)nodeLabelBuf.capacity());
 		}
 		
 		System.out.println();
@@ -1712,15 +2775,21 @@ g1.outputInternalData();
 			}
 			System.out.print(edgeLabelBuf.getChar()+" ");
 		}
-		index = edgeLabelIndex.indexOf(edgeLabelBuf.capacity());
+		index = edgeLabelIndex.indexOf((int)edgeLabelBuf.capacity());
 		while(index != -1) {
 			System.out.print("edge"+edgeLabelEdge.get(index)+" ");
 			edgeLabelIndex.set(index,-1);
-			index = edgeLabelIndex.indexOf(edgeLabelBuf.capacity());
+			index = edgeLabelIndex.indexOf((int)edgeLabelBuf.capacity());
 		}
 		
 		System.out.println();
 		
+		if(compressedConnections) {
+			System.out.println("connectionBuf: compressed, "+connectionBuf.capacity()+" bytes");
+			System.out.println("consistent: "+checkConsistency());
+			return;
+		}
+		
 		connectionBuf.rewind();
 		System.out.print("connectionBuf: ");
 		for(int i = 0; i< connectionBuf.capacity(); i+= 4) {
@@ -1755,19 +2824,18 @@ g1.outputInternalData();
 
 	
 	/**
-	 * Save a ByteBuffer to a file.
+	 * Save a buffer to a file.
 	 * 
 	 * @param file name to write to
 	 * @param buf buffer to be written
 	 * @throws Exception if file save fails
 	 */
-	private void writeBuf(String fileName, ByteBuffer buf) throws IOException {
+	private void writeBuf(String fileName, SegmentedBuffer buf) throws IOException {
 		
-		buf.rewind();
 		File file = new File(fileName);
 		FileOutputStream fos = new FileOutputStream(file, false);
 		FileChannel wChannel = fos.getChannel();
-		wChannel.write(buf);
+		buf.writeTo(wChannel);
 		fos.flush();
 		wChannel.close();
 		fos.close();
@@ -1798,6 +2866,38 @@ g1.outputInternalData();
 	}
 
 
+	/**
+	 * Creates a graph from a SNAP .txt adjacency list file, finding the number of nodes and edges from the file.
+	 * The file is memory mapped and parsed on all available processors by an {@link AdjacencyListImporter},
+	 * which is much faster and uses far less memory than the version that takes counts on large files.
+	 * Node ids in the file must be integers. Looks for the file in given directory. If directory is null,
+	 * then to a directory named data/snap under current working directory.
+	 * 
+	 * @param dir the directory for the file, if null then a directory called data/snap under the current working directory
+	 * @param fileName the file name for the file
+	 * @param direct if true the ByteBuffers are direct, if false they are allocated on the heap
+	 * @return The new FastGraph
+	 * @throws IOException If the file cannot be found or read
+	 */
+	public static FastGraph adjacencyListGraphFactory(String dir, String fileName, boolean direct) throws IOException {
+		String directory = dir;
+		if(directory == null) {
+			directory = Launcher.startingWorkingDirectory+File.separatorChar+"data"+File.separatorChar+"snap";
+		}
+		String path = null;
+		if(directory.charAt(directory.length()-1)== File.separatorChar) {
+			path = directory+fileName;
+		} else {
+			path = directory+File.separatorChar+fileName;
+		}
+		if(!new File(path).exists()) {
+			throw new IOException("Problem loading file "+path+". If you expect to access a SNAP file try downloading the file from:\nhttps://snap.stanford.edu/data/\nthen unzipping it and placing it in the directory "+directory);
+		}
+		FastGraph g = new AdjacencyListImporter().importGraph(path,fileName,direct);
+		return g;
+	}
+
+
 	
 	/**
      * Assumes edges represented by one node index pair per line delimited by
@@ -1896,13 +2996,13 @@ if(edgeIndex%1000000==0 ) {
 		byte type = -77;
 		byte age = 0;
 		for(int i = 0; i < numberOfNodes; i++) {
-			nodeBuf.putInt(NODE_IN_CONNECTION_START_OFFSET+i*NODE_BYTE_SIZE,inStart); // offset for inward connecting edges/nodes
-			nodeBuf.putInt(NODE_IN_DEGREE_OFFSET+i*NODE_BYTE_SIZE,inLength); // number of inward connecting edges/nodes
-			nodeBuf.putInt(NODE_OUT_CONNECTION_START_OFFSET+i*NODE_BYTE_SIZE,outStart); // offset for outward connecting edges/nodes
-			nodeBuf.putInt(NODE_OUT_DEGREE_OFFSET+i*NODE_BYTE_SIZE,outLength); // number of outward connecting edges/nodes
-			nodeBuf.putInt(NODE_WEIGHT_OFFSET+i*NODE_BYTE_SIZE,weight); // weight
-			nodeBuf.put(NODE_TYPE_OFFSET+i*NODE_BYTE_SIZE,type); // type
-			nodeBuf.put(NODE_AGE_OFFSET+i*NODE_BYTE_SIZE,age); // age
+			nodeBuf.putLong(NODE_IN_CONNECTION_START_OFFSET+(long)i*NODE_BYTE_SIZE,inStart); // offset for inward connecting edges/nodes
+			nodeBuf.putInt(NODE_IN_DEGREE_OFFSET+(long)i*NODE_BYTE_SIZE,inLength); // number of inward connecting edges/nodes
+			nodeBuf.putLong(NODE_OUT_CONNECTION_START_OFFSET+(long)i*NODE_BYTE_SIZE,outStart); // offset for outward connecting edges/nodes
+			nodeBuf.putInt(NODE_OUT_DEGREE_OFFSET+(long)i*NODE_BYTE_SIZE,outLength); // number of outward connecting edges/nodes
+			nodeBuf.putInt(NODE_WEIGHT_OFFSET+(long)i*NODE_BYTE_SIZE,weight); // weight
+			nodeBuf.put(NODE_TYPE_OFFSET+(long)i*NODE_BYTE_SIZE,type); // type
+			nodeBuf.put(NODE_AGE_OFFSET+(long)i*NODE_BYTE_SIZE,age); // age
 
 			// save labels for later
 			String label = nodeIndexToSnapIdMap.get(i);
@@ -1934,11 +3034,11 @@ if(edgeIndex%1000000==0 ) {
 		for(int i = 0; i < numberOfEdges; i++) {
 			node1 = edgeNode1Map.get(i);
 			node2 = edgeNode2Map.get(i);
-			edgeBuf.putInt(EDGE_NODE1_OFFSET+i*EDGE_BYTE_SIZE,node1); // one end of edge
-			edgeBuf.putInt(EDGE_NODE2_OFFSET+i*EDGE_BYTE_SIZE,node2); // other end of edge
-			edgeBuf.putInt(EDGE_WEIGHT_OFFSET+i*EDGE_BYTE_SIZE,weight); // weight
-			edgeBuf.put(EDGE_TYPE_OFFSET+i*EDGE_BYTE_SIZE,type); // type
-			edgeBuf.put(EDGE_AGE_OFFSET+i*EDGE_BYTE_SIZE,age); // age
+			edgeBuf.putInt(EDGE_NODE1_OFFSET+(long)i*EDGE_BYTE_SIZE,node1); // one end of edge
+			edgeBuf.putInt(EDGE_NODE2_OFFSET+(long)i*EDGE_BYTE_SIZE,node2); // other end of edge
+			edgeBuf.putInt(EDGE_WEIGHT_OFFSET+(long)i*EDGE_BYTE_SIZE,weight); // weight
+			edgeBuf.put(EDGE_TYPE_OFFSET+(long)i*EDGE_BYTE_SIZE,type); // type
+			edgeBuf.put(EDGE_AGE_OFFSET+(long)i*EDGE_BYTE_SIZE,age); // age
 			
 			// store labels for later
 			String label = "e"+i;
@@ -1957,19 +3057,19 @@ if(edgeIndex%1000000==0 ) {
 
 		// Initialise the connection buffer, modifying the node buffer connection data
 		//time = Debugger.createTime();
-		int offset = 0;
+		long offset = 0;
 		for(int i = 0; i < numberOfNodes; i++) {
 			// setting the in connection offset and length
 			ArrayList<Integer> inEdges = nodeIn.get(i);
 			int inEdgeLength = inEdges.size();
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_IN_CONNECTION_START_OFFSET,offset);
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_IN_DEGREE_OFFSET,inEdgeLength);
+			nodeBuf.putLong((long)i*NODE_BYTE_SIZE+NODE_IN_CONNECTION_START_OFFSET,offset);
+			nodeBuf.putInt((long)i*NODE_BYTE_SIZE+NODE_IN_DEGREE_OFFSET,inEdgeLength);
 		
 			// now put the in edge/node pairs
 			for(int e : inEdges) {
 				int n = -1;
-				int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+e*EDGE_BYTE_SIZE);
-				int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+e*EDGE_BYTE_SIZE);
+				int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+(long)e*EDGE_BYTE_SIZE);
+				int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+(long)e*EDGE_BYTE_SIZE);
 				if(n1 == i) {
 					n = n2;
 				} else if(n2 == i) {
@@ -1985,14 +3085,14 @@ if(edgeIndex%1000000==0 ) {
 			// setting the out connection offset and length
 			ArrayList<Integer> outEdges = nodeOut.get(i);
 			int outEdgeLength = outEdges.size();
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_OUT_CONNECTION_START_OFFSET,offset);
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_OUT_DEGREE_OFFSET,outEdgeLength);
+			nodeBuf.putLong((long)i*NODE_BYTE_SIZE+NODE_OUT_CONNECTION_START_OFFSET,offset);
+			nodeBuf.putInt((long)i*NODE_BYTE_SIZE+NODE_OUT_DEGREE_OFFSET,outEdgeLength);
 		
 			// now put the out edge/node pairs
 			for(int e : outEdges) {
 				int n = -1;
-				int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+e*EDGE_BYTE_SIZE);
-				int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+e*EDGE_BYTE_SIZE);
+				int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+(long)e*EDGE_BYTE_SIZE);
+				int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+(long)e*EDGE_BYTE_SIZE);
 				if(n1 == i) {
 					n = n2;
 				} else if(n2 == i) {
@@ -2152,13 +3252,13 @@ if(edgeIndex%1000000==0 ) {
 				throw new IOException("Problem parsing node age in line "+nodeLine);
 			}
 			
-			nodeBuf.putInt(NODE_IN_CONNECTION_START_OFFSET+index*NODE_BYTE_SIZE,inStart); // offset for inward connecting edges/nodes
-			nodeBuf.putInt(NODE_IN_DEGREE_OFFSET+index*NODE_BYTE_SIZE,inLength); // number of inward connecting edges/nodes
-			nodeBuf.putInt(NODE_OUT_CONNECTION_START_OFFSET+index*NODE_BYTE_SIZE,outStart); // offset for outward connecting edges/nodes
-			nodeBuf.putInt(NODE_OUT_DEGREE_OFFSET+index*NODE_BYTE_SIZE,outLength); // number of outward connecting edges/nodes
-			nodeBuf.putInt(NODE_WEIGHT_OFFSET+index*NODE_BYTE_SIZE,weight); // weight
-			nodeBuf.put(NODE_TYPE_OFFSET+index*NODE_BYTE_SIZE,type); // type
-			nodeBuf.put(NODE_AGE_OFFSET+index*NODE_BYTE_SIZE,age); // age
+			nodeBuf.putLong(NODE_IN_CONNECTION_START_OFFSET+(long)index*NODE_BYTE_SIZE,inStart); // offset for inward connecting edges/nodes
+			nodeBuf.putInt(NODE_IN_DEGREE_OFFSET+(long)index*NODE_BYTE_SIZE,inLength); // number of inward connecting edges/nodes
+			nodeBuf.putLong(NODE_OUT_CONNECTION_START_OFFSET+(long)index*NODE_BYTE_SIZE,outStart); // offset for outward connecting edges/nodes
+			nodeBuf.putInt(NODE_OUT_DEGREE_OFFSET+(long)index*NODE_BYTE_SIZE,outLength); // number of outward connecting edges/nodes
+			nodeBuf.putInt(NODE_WEIGHT_OFFSET+(long)index*NODE_BYTE_SIZE,weight); // weight
+			nodeBuf.put(NODE_TYPE_OFFSET+(long)index*NODE_BYTE_SIZE,type); // type
+			nodeBuf.put(NODE_AGE_OFFSET+(long)index*NODE_BYTE_SIZE,age); // age
 
 			// save labels for later
 			nodeLabels[index] = label;
@@ -2261,11 +3361,11 @@ if(edgeIndex%1000000==0 ) {
 				throw new IOException("Problem parsing edge age in line "+edgeLine);
 			}
 
-			edgeBuf.putInt(EDGE_NODE1_OFFSET+index*EDGE_BYTE_SIZE,node1); // one end of edge
-			edgeBuf.putInt(EDGE_NODE2_OFFSET+index*EDGE_BYTE_SIZE,node2); // other end of edge
-			edgeBuf.putInt(EDGE_WEIGHT_OFFSET+index*EDGE_BYTE_SIZE,weight); // weight
-			edgeBuf.put(EDGE_TYPE_OFFSET+index*EDGE_BYTE_SIZE,type); // type
-			edgeBuf.put(EDGE_AGE_OFFSET+index*EDGE_BYTE_SIZE,age); // age
+			edgeBuf.putInt(EDGE_NODE1_OFFSET+(long)index*EDGE_BYTE_SIZE,node1); // one end of edge
+			edgeBuf.putInt(EDGE_NODE2_OFFSET+(long)index*EDGE_BYTE_SIZE,node2); // other end of edge
+			edgeBuf.putInt(EDGE_WEIGHT_OFFSET+(long)index*EDGE_BYTE_SIZE,weight); // weight
+			edgeBuf.put(EDGE_TYPE_OFFSET+(long)index*EDGE_BYTE_SIZE,type); // type
+			edgeBuf.put(EDGE_AGE_OFFSET+(long)index*EDGE_BYTE_SIZE,age); // age
 
 			// save labels for later
 			edgeLabels[index] = label;
@@ -2285,19 +3385,19 @@ if(edgeIndex%1000000==0 ) {
 
 		// Initialise the connection buffer, modifying the node buffer connection data
 		//time = Debugger.createTime();
-		int offset = 0;
+		long offset = 0;
 		for(int i = 0; i < numberOfNodes; i++) {
 			// setting the in connection offset and length
 			ArrayList<Integer> inEdges = nodeIn.get(i);
 			int inEdgeLength = inEdges.size();
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_IN_CONNECTION_START_OFFSET,offset);
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_IN_DEGREE_OFFSET,inEdgeLength);
+			nodeBuf.putLong((long)i*NODE_BYTE_SIZE+NODE_IN_CONNECTION_START_OFFSET,offset);
+			nodeBuf.putInt((long)i*NODE_BYTE_SIZE+NODE_IN_DEGREE_OFFSET,inEdgeLength);
 		
 			// now put the in edge/node pairs
 			for(int e : inEdges) {
 				int n = -1;
-				int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+e*EDGE_BYTE_SIZE);
-				int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+e*EDGE_BYTE_SIZE);
+				int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+(long)e*EDGE_BYTE_SIZE);
+				int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+(long)e*EDGE_BYTE_SIZE);
 				if(n1 == i) {
 					n = n2;
 				} else if(n2 == i) {
@@ -2313,14 +3413,14 @@ if(edgeIndex%1000000==0 ) {
 			// setting the out connection offset and length
 			ArrayList<Integer> outEdges = nodeOut.get(i);
 			int outEdgeLength = outEdges.size();
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_OUT_CONNECTION_START_OFFSET,offset);
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_OUT_DEGREE_OFFSET,outEdgeLength);
+			nodeBuf.putLong((long)i*NODE_BYTE_SIZE+NODE_OUT_CONNECTION_START_OFFSET,offset);
+			nodeBuf.putInt((long)i*NODE_BYTE_SIZE+NODE_OUT_DEGREE_OFFSET,outEdgeLength);
 		
 			// now put the out edge/node pairs
 			for(int e : outEdges) {
 				int n = -1;
-				int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+e*EDGE_BYTE_SIZE);
-				int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+e*EDGE_BYTE_SIZE);
+				int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+(long)e*EDGE_BYTE_SIZE);
+				int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+(long)e*EDGE_BYTE_SIZE);
 				if(n1 == i) {
 					n = n2;
 				} else if(n2 == i) {
@@ -2344,11 +3444,11 @@ if(edgeIndex%1000000==0 ) {
 	 * 
 	 * @param directory where the files are held, or if null fileBaseName under data under the current working directory
 	 * @param fileBaseName the name of the files, to which extensions are added
+	 * @param mapped if true the buffer files are memory mapped read only, if false they are read into new ByteBuffers
 	 * @return the created FastGraph
 	 * @throws IOException If the buffers cannot be loaded
 	 */
-	@SuppressWarnings("resource")
-	private static FastGraph loadBuffers(String directory, String fileBaseName) throws IOException {
+	private static FastGraph loadBuffers(String directory, String fileBaseName, boolean mapped) throws IOException {
 		String directoryAndBaseName = Launcher.startingWorkingDirectory+File.separatorChar+"data"+File.separatorChar+fileBaseName+File.separatorChar+fileBaseName;
 		if(directory != null) {
 			if(directory.charAt(directory.length()-1)== File.separatorChar) {
@@ -2360,8 +3460,6 @@ if(edgeIndex%1000000==0 ) {
 		
 		FastGraph g = null;
 		
-		File file;
-		FileChannel rChannel;
 		String line;
 		String[] splitLine;
 
@@ -2382,10 +3480,10 @@ if(edgeIndex%1000000==0 ) {
 		int inEdgeTotal = Integer.parseInt(splitLine[1]);
 		line = br.readLine();
 		splitLine = line.split(INFO_SPLIT_STRING);
-		int inNodeLabelSize = Integer.parseInt(splitLine[1]);
+		long inNodeLabelSize = Long.parseLong(splitLine[1]);
 		line = br.readLine();
 		splitLine = line.split(INFO_SPLIT_STRING);
-		int inEdgeLabelSize = Integer.parseInt(splitLine[1]);
+		long inEdgeLabelSize = Long.parseLong(splitLine[1]);
 		line = br.readLine();
 		splitLine = line.split(INFO_SPLIT_STRING);
 		String directValue = splitLine[1];
@@ -2393,45 +3491,115 @@ if(edgeIndex%1000000==0 ) {
 		if(directValue.equals("false")) {
 			inDirect = false;
 		}
+		boolean inCompressed = false;
+		line = br.readLine(); // not present in files saved before compression was added
+		if(line != null) {
+			splitLine = line.split(INFO_SPLIT_STRING);
+			inCompressed = splitLine[1].equals("true");
+		}
+		boolean inSorted = inCompressed;
+		line = br.readLine(); // not present in files saved before sorting was added
+		if(line != null) {
+			splitLine = line.split(INFO_SPLIT_STRING);
+			inSorted = splitLine[1].equals("true");
+		}
+		boolean inLongOffsets = false;
+		line = br.readLine(); // not present in files saved with 32 bit label and connection offsets
+		if(line != null) {
+			splitLine = line.split(INFO_SPLIT_STRING);
+			inLongOffsets = splitLine[1].equals("true");
+		}
 		br.close();
+		
+		if(mapped) {
+			// mapped buffers are off heap, so anything later generated from this graph should be too
+			g = new FastGraph(inNodeTotal, inEdgeTotal, true, false);
+			if(inLongOffsets) {
+				g.nodeBuf = mapBuf(directoryAndBaseName+".nodeBuf");
+				g.edgeBuf = mapBuf(directoryAndBaseName+".edgeBuf");
+			} else { // older node and edge records are converted, so are not mapped
+				g.nodeBuf = widenNodeRecords(mapBuf(directoryAndBaseName+".nodeBuf"), inNodeTotal, true);
+				g.edgeBuf = widenEdgeRecords(mapBuf(directoryAndBaseName+".edgeBuf"), inEdgeTotal, true);
+			}
+			g.connectionBuf = mapBuf(directoryAndBaseName+".connectionBuf");
+			g.nodeLabelBuf = mapBuf(directoryAndBaseName+".nodeLabelBuf");
+			g.edgeLabelBuf = mapBuf(directoryAndBaseName+".edgeLabelBuf");
+			g.compressedConnections = inCompressed;
+			g.sortedConnections = inSorted;
+			g.setName(name);
+			return g;
+		}
+		
 		g = new FastGraph(inNodeTotal, inEdgeTotal, inDirect);
 		if(!inDirect) {
-			g.nodeLabelBuf = ByteBuffer.allocate(inNodeLabelSize);
-			g.edgeLabelBuf = ByteBuffer.allocate(inEdgeLabelSize);
+			g.nodeLabelBuf = SegmentedBuffer.allocate(inNodeLabelSize);
+			g.edgeLabelBuf = SegmentedBuffer.allocate(inEdgeLabelSize);
 		} else {
-			g.nodeLabelBuf = ByteBuffer.allocateDirect(inNodeLabelSize);
-			g.edgeLabelBuf = ByteBuffer.allocateDirect(inEdgeLabelSize);
+			g.nodeLabelBuf = SegmentedBuffer.allocateDirect(inNodeLabelSize);
+			g.edgeLabelBuf = SegmentedBuffer.allocateDirect(inEdgeLabelSize);
+		}
+		
+		if(inCompressed) {
+			g.connectionBuf = SegmentedBuffer.allocate(new File(directoryAndBaseName+".connectionBuf").length(),inDirect);
+			g.compressedConnections = true;
 		}
+		g.sortedConnections = inSorted;
 		
 		g.setName(name);
 
-		file = new File(directoryAndBaseName+".nodeBuf");
-		rChannel = new FileInputStream(file).getChannel();
-		rChannel.read(g.nodeBuf);
-		rChannel.close();
+		if(inLongOffsets) {
+			readBuf(directoryAndBaseName+".nodeBuf",g.nodeBuf);
+			readBuf(directoryAndBaseName+".edgeBuf",g.edgeBuf);
+		} else {
+			g.nodeBuf = widenNodeRecords(mapBuf(directoryAndBaseName+".nodeBuf"), inNodeTotal, inDirect);
+			g.edgeBuf = widenEdgeRecords(mapBuf(directoryAndBaseName+".edgeBuf"), inEdgeTotal, inDirect);
+		}
+		readBuf(directoryAndBaseName+".connectionBuf",g.connectionBuf);
+		readBuf(directoryAndBaseName+".nodeLabelBuf",g.nodeLabelBuf);
+		readBuf(directoryAndBaseName+".edgeLabelBuf",g.edgeLabelBuf);
+		
+		return g;
+	}
 
-		file = new File(directoryAndBaseName+".edgeBuf");
-		rChannel = new FileInputStream(file).getChannel();
-		rChannel.read(g.edgeBuf);
-		rChannel.close();
+
+	/**
+	 * Read a file into an already allocated buffer.
+	 * 
+	 * @param fileName name to read from
+	 * @param buf buffer to be populated
+	 * @throws IOException if the file read fails
+	 */
+	private static void readBuf(String fileName, SegmentedBuffer buf) throws IOException {
 		
-		file = new File(directoryAndBaseName+".connectionBuf");
-		rChannel = new FileInputStream(file).getChannel();
-		rChannel.read(g.connectionBuf);
+		File file = new File(fileName);
+		FileInputStream fis = new FileInputStream(file);
+		FileChannel rChannel = fis.getChannel();
+		buf.readFrom(rChannel);
 		rChannel.close();
+		fis.close();
+		
+	}
 
-		file = new File(directoryAndBaseName+".nodeLabelBuf");
-		rChannel = new FileInputStream(file).getChannel();
-		rChannel.read(g.nodeLabelBuf);
-		rChannel.close();
+
+	/**
+	 * Memory map a file read only. The mapping remains valid after the channel is closed,
+	 * and is released when the returned buffer is garbage collected. Files over the
+	 * maximum ByteBuffer size are mapped in several segments.
+	 * 
+	 * @param fileName name to map
+	 * @return a read only buffer backed by the file
+	 * @throws IOException if the file cannot be mapped
+	 */
+	private static SegmentedBuffer mapBuf(String fileName) throws IOException {
 		
-		file = new File(directoryAndBaseName+".edgeLabelBuf");
-		rChannel = new FileInputStream(file).getChannel();
-		rChannel.read(g.edgeLabelBuf);
+		File file = new File(fileName);
+		FileInputStream fis = new FileInputStream(file);
+		FileChannel rChannel = fis.getChannel();
+		SegmentedBuffer buf = SegmentedBuffer.map(rChannel, FileChannel.MapMode.READ_ONLY, 0, rChannel.size());
 		rChannel.close();
-
+		fis.close();
+		return buf;
 		
-		return g;
 	}
 
 
@@ -2471,13 +3639,13 @@ if(edgeIndex%1000000==0 ) {
 		//generate the nodes
 		for(int i = 0; i < numberOfNodes; i++) {
 			weight = r.nextInt(100);
-			nodeBuf.putInt(NODE_IN_CONNECTION_START_OFFSET+i*NODE_BYTE_SIZE,inStart); // offset for inward connecting edges/nodes
-			nodeBuf.putInt(NODE_IN_DEGREE_OFFSET+i*NODE_BYTE_SIZE,inLength); // number of inward connecting edges/nodes
-			nodeBuf.putInt(NODE_OUT_CONNECTION_START_OFFSET+i*NODE_BYTE_SIZE,outStart); // offset for outward connecting edges/nodes
-			nodeBuf.putInt(NODE_OUT_DEGREE_OFFSET+i*NODE_BYTE_SIZE,outLength); // number of outward connecting edges/nodes
-			nodeBuf.putInt(NODE_WEIGHT_OFFSET+i*NODE_BYTE_SIZE,weight); // weight
-			nodeBuf.put(NODE_TYPE_OFFSET+i*NODE_BYTE_SIZE,type); // type
-			nodeBuf.put(NODE_AGE_OFFSET+i*NODE_BYTE_SIZE,age); // age
+			nodeBuf.putLong(NODE_IN_CONNECTION_START_OFFSET+(long)i*NODE_BYTE_SIZE,inStart); // offset for inward connecting edges/nodes
+			nodeBuf.putInt(NODE_IN_DEGREE_OFFSET+(long)i*NODE_BYTE_SIZE,inLength); // number of inward connecting edges/nodes
+			nodeBuf.putLong(NODE_OUT_CONNECTION_START_OFFSET+(long)i*NODE_BYTE_SIZE,outStart); // offset for outward connecting edges/nodes
+			nodeBuf.putInt(NODE_OUT_DEGREE_OFFSET+(long)i*NODE_BYTE_SIZE,outLength); // number of outward connecting edges/nodes
+			nodeBuf.putInt(NODE_WEIGHT_OFFSET+(long)i*NODE_BYTE_SIZE,weight); // weight
+			nodeBuf.put(NODE_TYPE_OFFSET+(long)i*NODE_BYTE_SIZE,type); // type
+			nodeBuf.put(NODE_AGE_OFFSET+(long)i*NODE_BYTE_SIZE,age); // age
 			
 			// store labels for later
 			String label = "n"+i;
@@ -2536,11 +3704,11 @@ if(edgeIndex%1000000==0 ) {
 				nodePairs.add(pairString1);
 			}
 			
-			edgeBuf.putInt(EDGE_NODE1_OFFSET+i*EDGE_BYTE_SIZE,node1); // one end of edge
-			edgeBuf.putInt(EDGE_NODE2_OFFSET+i*EDGE_BYTE_SIZE,node2); // other end of edge
-			edgeBuf.putInt(EDGE_WEIGHT_OFFSET+i*EDGE_BYTE_SIZE,weight); // weight
-			edgeBuf.put(EDGE_TYPE_OFFSET+i*EDGE_BYTE_SIZE,type); // type
-			edgeBuf.put(EDGE_AGE_OFFSET+i*EDGE_BYTE_SIZE,age); // age
+			edgeBuf.putInt(EDGE_NODE1_OFFSET+(long)i*EDGE_BYTE_SIZE,node1); // one end of edge
+			edgeBuf.putInt(EDGE_NODE2_OFFSET+(long)i*EDGE_BYTE_SIZE,node2); // other end of edge
+			edgeBuf.putInt(EDGE_WEIGHT_OFFSET+(long)i*EDGE_BYTE_SIZE,weight); // weight
+			edgeBuf.put(EDGE_TYPE_OFFSET+(long)i*EDGE_BYTE_SIZE,type); // type
+			edgeBuf.put(EDGE_AGE_OFFSET+(long)i*EDGE_BYTE_SIZE,age); // age
 			
 			// label
 			String label = "e"+i;
@@ -2557,19 +3725,19 @@ if(edgeIndex%1000000==0 ) {
 		setAllEdgeLabels(edgeLabels);
 		
 		// Initialise the connection buffer, modifying the node buffer connection data
-		int offset = 0;
+		long offset = 0;
 		for(int i = 0; i < numberOfNodes; i++) {
 			// setting the in connection offset and length
 			ArrayList<Integer> inEdges = nodeIn.get(i);
 			int inEdgeLength = inEdges.size();
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_IN_CONNECTION_START_OFFSET,offset);
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_IN_DEGREE_OFFSET,inEdgeLength);
+			nodeBuf.putLong((long)i*NODE_BYTE_SIZE+NODE_IN_CONNECTION_START_OFFSET,offset);
+			nodeBuf.putInt((long)i*NODE_BYTE_SIZE+NODE_IN_DEGREE_OFFSET,inEdgeLength);
 		
 			// now put the in edge/node pairs
 			for(int e : inEdges) {
 				int n = -1;
-				int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+e*EDGE_BYTE_SIZE);
-				int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+e*EDGE_BYTE_SIZE);
+				int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+(long)e*EDGE_BYTE_SIZE);
+				int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+(long)e*EDGE_BYTE_SIZE);
 				if(n1 == i) {
 					n = n2;
 				} else if(n2 == i) {
@@ -2585,14 +3753,14 @@ if(edgeIndex%1000000==0 ) {
 			// setting the out connection offset and length
 			ArrayList<Integer> outEdges = nodeOut.get(i);
 			int outEdgeLength = outEdges.size();
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_OUT_CONNECTION_START_OFFSET,offset);
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_OUT_DEGREE_OFFSET,outEdgeLength);
+			nodeBuf.putLong((long)i*NODE_BYTE_SIZE+NODE_OUT_CONNECTION_START_OFFSET,offset);
+			nodeBuf.putInt((long)i*NODE_BYTE_SIZE+NODE_OUT_DEGREE_OFFSET,outEdgeLength);
 		
 			// now put the out edge/node pairs
 			for(int e : outEdges) {
 				int n = -1;
-				int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+e*EDGE_BYTE_SIZE);
-				int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+e*EDGE_BYTE_SIZE);
+				int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+(long)e*EDGE_BYTE_SIZE);
+				int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+(long)e*EDGE_BYTE_SIZE);
 				if(n1 == i) {
 					n = n2;
 				} else if(n2 == i) {
@@ -2607,6 +3775,7 @@ if(edgeIndex%1000000==0 ) {
 			
 		
 		}
+		ageIndex = null;
 		//Debugger.outputTime("connection put time, direct "+edgeBuf.isDirect());
 
 	}
@@ -2665,13 +3834,13 @@ if(edgeIndex%1000000==0 ) {
 				type = -1;
 			}
 			
-			nodeBuf.putInt(NODE_IN_CONNECTION_START_OFFSET+i*NODE_BYTE_SIZE,inStart); // offset for inward connecting edges/nodes
-			nodeBuf.putInt(NODE_IN_DEGREE_OFFSET+i*NODE_BYTE_SIZE,inLength); // number of inward connecting edges/nodes
-			nodeBuf.putInt(NODE_OUT_CONNECTION_START_OFFSET+i*NODE_BYTE_SIZE,outStart); // offset for outward connecting edges/nodes
-			nodeBuf.putInt(NODE_OUT_DEGREE_OFFSET+i*NODE_BYTE_SIZE,outLength); // number of outward connecting edges/nodes
-			nodeBuf.putInt(NODE_WEIGHT_OFFSET+i*NODE_BYTE_SIZE,weight); // weight
-			nodeBuf.put(NODE_TYPE_OFFSET+i*NODE_BYTE_SIZE,type); // type
-			nodeBuf.put(NODE_AGE_OFFSET+i*NODE_BYTE_SIZE,age); // age
+			nodeBuf.putLong(NODE_IN_CONNECTION_START_OFFSET+(long)i*NODE_BYTE_SIZE,inStart); // offset for inward connecting edges/nodes
+			nodeBuf.putInt(NODE_IN_DEGREE_OFFSET+(long)i*NODE_BYTE_SIZE,inLength); // number of inward connecting edges/nodes
+			nodeBuf.putLong(NODE_OUT_CONNECTION_START_OFFSET+(long)i*NODE_BYTE_SIZE,outStart); // offset for outward connecting edges/nodes
+			nodeBuf.putInt(NODE_OUT_DEGREE_OFFSET+(long)i*NODE_BYTE_SIZE,outLength); // number of outward connecting edges/nodes
+			nodeBuf.putInt(NODE_WEIGHT_OFFSET+(long)i*NODE_BYTE_SIZE,weight); // weight
+			nodeBuf.put(NODE_TYPE_OFFSET+(long)i*NODE_BYTE_SIZE,type); // type
+			nodeBuf.put(NODE_AGE_OFFSET+(long)i*NODE_BYTE_SIZE,age); // age
 
 			// store labels for later
 			String label = dgn.getLabel();
@@ -2718,11 +3887,11 @@ if(edgeIndex%1000000==0 ) {
 				type = -1;
 			}
 			
-			edgeBuf.putInt(EDGE_NODE1_OFFSET+i*EDGE_BYTE_SIZE,node1); // one end of edge
-			edgeBuf.putInt(EDGE_NODE2_OFFSET+i*EDGE_BYTE_SIZE,node2); // other end of edge
-			edgeBuf.putInt(EDGE_WEIGHT_OFFSET+i*EDGE_BYTE_SIZE,weight); // weight
-			edgeBuf.put(EDGE_TYPE_OFFSET+i*EDGE_BYTE_SIZE,type); // type
-			edgeBuf.put(EDGE_AGE_OFFSET+i*EDGE_BYTE_SIZE,age); // age
+			edgeBuf.putInt(EDGE_NODE1_OFFSET+(long)i*EDGE_BYTE_SIZE,node1); // one end of edge
+			edgeBuf.putInt(EDGE_NODE2_OFFSET+(long)i*EDGE_BYTE_SIZE,node2); // other end of edge
+			edgeBuf.putInt(EDGE_WEIGHT_OFFSET+(long)i*EDGE_BYTE_SIZE,weight); // weight
+			edgeBuf.put(EDGE_TYPE_OFFSET+(long)i*EDGE_BYTE_SIZE,type); // type
+			edgeBuf.put(EDGE_AGE_OFFSET+(long)i*EDGE_BYTE_SIZE,age); // age
 			
 			// store labels for later
 			String label = dge.getLabel();
@@ -2740,19 +3909,19 @@ if(edgeIndex%1000000==0 ) {
 
 		// Initialise the connection buffer, modifying the node buffer connection data
 		//time = Debugger.createTime();
-		int offset = 0;
+		long offset = 0;
 		for(int i = 0; i < numberOfNodes; i++) {
 			// setting the in connection offset and length
 			ArrayList<Integer> inEdges = nodeIn.get(i);
 			int inEdgeLength = inEdges.size();
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_IN_CONNECTION_START_OFFSET,offset);
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_IN_DEGREE_OFFSET,inEdgeLength);
+			nodeBuf.putLong((long)i*NODE_BYTE_SIZE+NODE_IN_CONNECTION_START_OFFSET,offset);
+			nodeBuf.putInt((long)i*NODE_BYTE_SIZE+NODE_IN_DEGREE_OFFSET,inEdgeLength);
 		
 			// now put the in edge/node pairs
 			for(int edgeIndex : inEdges) {
 				int nodeIndex = -1;
-				int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
-				int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
+				int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE);
+				int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE);
 				if(n1 == i) {
 					nodeIndex = n2;
 				} else if(n2 == i) {
@@ -2768,14 +3937,14 @@ if(edgeIndex%1000000==0 ) {
 			// setting the out connection offset and length
 			ArrayList<Integer> outEdges = nodeOut.get(i);
 			int outEdgeLength = outEdges.size();
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_OUT_CONNECTION_START_OFFSET,offset);
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_OUT_DEGREE_OFFSET,outEdgeLength);
+			nodeBuf.putLong((long)i*NODE_BYTE_SIZE+NODE_OUT_CONNECTION_START_OFFSET,offset);
+			nodeBuf.putInt((long)i*NODE_BYTE_SIZE+NODE_OUT_DEGREE_OFFSET,outEdgeLength);
 		
 			// now put the out edge/node pairs
 			for(int edgeIndex : outEdges) {
 				int nodeIndex = -1;
-				int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
-				int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
+				int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE);
+				int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE);
 				if(n1 == i) {
 					nodeIndex = n2;
 				} else if(n2 == i) {
@@ -2891,13 +4060,13 @@ time = Debugger.createTime();
 		int index = 0;
 		for(int n : subgraphNodes) {
 
-			weight = nodeBuf.getInt(NODE_WEIGHT_OFFSET+n*NODE_BYTE_SIZE);
-			type = nodeBuf.get(NODE_TYPE_OFFSET+n*NODE_BYTE_SIZE);
-			age = nodeBuf.get(NODE_AGE_OFFSET+n*NODE_BYTE_SIZE);
+			weight = nodeBuf.getInt(NODE_WEIGHT_OFFSET+(long)n*NODE_BYTE_SIZE);
+			type = nodeBuf.get(NODE_TYPE_OFFSET+(long)n*NODE_BYTE_SIZE);
+			age = nodeBuf.get(NODE_AGE_OFFSET+(long)n*NODE_BYTE_SIZE);
 
-			g.nodeBuf.putInt(NODE_WEIGHT_OFFSET+index*NODE_BYTE_SIZE,weight);
-			g.nodeBuf.put(NODE_TYPE_OFFSET+index*NODE_BYTE_SIZE,type);
-			g.nodeBuf.put(NODE_AGE_OFFSET+index*NODE_BYTE_SIZE,age);
+			g.nodeBuf.putInt(NODE_WEIGHT_OFFSET+(long)index*NODE_BYTE_SIZE,weight);
+			g.nodeBuf.put(NODE_TYPE_OFFSET+(long)index*NODE_BYTE_SIZE,type);
+			g.nodeBuf.put(NODE_AGE_OFFSET+(long)index*NODE_BYTE_SIZE,age);
 			
 			// store labels for later
 			nodeLabels[index] = getNodeLabel(n);
@@ -2938,23 +4107,23 @@ time = Debugger.createTime();
 		g.edgeBuf.position(0);
 		for(int e : subgraphEdges) {
 			
-			weight = edgeBuf.getInt(EDGE_WEIGHT_OFFSET+e*EDGE_BYTE_SIZE);
-			type = edgeBuf.get(EDGE_TYPE_OFFSET+e*EDGE_BYTE_SIZE);
-			age = edgeBuf.get(EDGE_AGE_OFFSET+e*EDGE_BYTE_SIZE);
+			weight = edgeBuf.getInt(EDGE_WEIGHT_OFFSET+(long)e*EDGE_BYTE_SIZE);
+			type = edgeBuf.get(EDGE_TYPE_OFFSET+(long)e*EDGE_BYTE_SIZE);
+			age = edgeBuf.get(EDGE_AGE_OFFSET+(long)e*EDGE_BYTE_SIZE);
 
-			g.edgeBuf.putInt(EDGE_WEIGHT_OFFSET+index*EDGE_BYTE_SIZE,weight);
-			g.edgeBuf.put(EDGE_TYPE_OFFSET+index*EDGE_BYTE_SIZE,type);
-			g.edgeBuf.put(EDGE_AGE_OFFSET+index*EDGE_BYTE_SIZE,age);
+			g.edgeBuf.putInt(EDGE_WEIGHT_OFFSET+(long)index*EDGE_BYTE_SIZE,weight);
+			g.edgeBuf.put(EDGE_TYPE_OFFSET+(long)index*EDGE_BYTE_SIZE,type);
+			g.edgeBuf.put(EDGE_AGE_OFFSET+(long)index*EDGE_BYTE_SIZE,age);
 			
-			int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+e*EDGE_BYTE_SIZE);
-			int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+e*EDGE_BYTE_SIZE);
+			int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+(long)e*EDGE_BYTE_SIZE);
+			int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+(long)e*EDGE_BYTE_SIZE);
 			
 			
 			int gn1 = oldNodesToNew.get(n1);
 			int gn2 = oldNodesToNew.get(n2);
 			
-			g.edgeBuf.putInt(EDGE_NODE1_OFFSET+index*EDGE_BYTE_SIZE,gn1); // one end of edge
-			g.edgeBuf.putInt(EDGE_NODE2_OFFSET+index*EDGE_BYTE_SIZE,gn2); // other end of edge
+			g.edgeBuf.putInt(EDGE_NODE1_OFFSET+(long)index*EDGE_BYTE_SIZE,gn1); // one end of edge
+			g.edgeBuf.putInt(EDGE_NODE2_OFFSET+(long)index*EDGE_BYTE_SIZE,gn2); // other end of edge
 			
 			// store labels for later
 			edgeLabels[index] = getEdgeLabel(e);
@@ -2975,7 +4144,7 @@ time = Debugger.createTime();
 		
 		// Initialise the connection buffer, modifying the node buffer connection data
 		//time = Debugger.createTime();
-		int offset = 0;
+		long offset = 0;
 		for(int node = 0; node < subgraphNodes.length; node++) {
 if(node%100000 == 0) {
 	//Debugger.outputTime("H populated "+node+" nodes in connection buffer ");
@@ -2985,14 +4154,14 @@ if(node%100000 == 0) {
 			// setting the in connection offset and length
 			ArrayList<Integer> inEdges = nodeIn.get(node);
 			int inEdgeLength = inEdges.size();
-			g.nodeBuf.putInt(node*NODE_BYTE_SIZE+NODE_IN_CONNECTION_START_OFFSET,offset);
-			g.nodeBuf.putInt(node*NODE_BYTE_SIZE+NODE_IN_DEGREE_OFFSET,inEdgeLength);
+			g.nodeBuf.putLong((long)node*NODE_BYTE_SIZE+NODE_IN_CONNECTION_START_OFFSET,offset);
+			g.nodeBuf.putInt((long)node*NODE_BYTE_SIZE+NODE_IN_DEGREE_OFFSET,inEdgeLength);
 			
 			// now put the in edge/node pairs
 			for(int edgeIndex : inEdges) {
 				int nodeIndex = -1;
-				int n1 = g.edgeBuf.getInt(EDGE_NODE1_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
-				int n2 = g.edgeBuf.getInt(EDGE_NODE2_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
+				int n1 = g.edgeBuf.getInt(EDGE_NODE1_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE);
+				int n2 = g.edgeBuf.getInt(EDGE_NODE2_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE);
 				if(n1 == node) {
 					nodeIndex = n2;
 				} else if(n2 == node) {
@@ -3008,14 +4177,14 @@ if(node%100000 == 0) {
 			// setting the out connection offset and length
 			ArrayList<Integer> outEdges = nodeOut.get(node);
 			int outEdgeLength = outEdges.size();
-			g.nodeBuf.putInt(node*NODE_BYTE_SIZE+NODE_OUT_CONNECTION_START_OFFSET,offset);
-			g.nodeBuf.putInt(node*NODE_BYTE_SIZE+NODE_OUT_DEGREE_OFFSET,outEdgeLength);
+			g.nodeBuf.putLong((long)node*NODE_BYTE_SIZE+NODE_OUT_CONNECTION_START_OFFSET,offset);
+			g.nodeBuf.putInt((long)node*NODE_BYTE_SIZE+NODE_OUT_DEGREE_OFFSET,outEdgeLength);
 			
 			// now put the out edge/node pairs
 			for(int edgeIndex : outEdges) {
 				int nodeIndex = -1;
-				int n1 = g.edgeBuf.getInt(EDGE_NODE1_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
-				int n2 = g.edgeBuf.getInt(EDGE_NODE2_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
+				int n1 = g.edgeBuf.getInt(EDGE_NODE1_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE);
+				int n2 = g.edgeBuf.getInt(EDGE_NODE2_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE);
 
 				if(n1 == node) {
 					nodeIndex = n2;
@@ -3046,10 +4215,10 @@ if(node%100000 == 0) {
 
 		FastGraph g = new FastGraph(getNumberOfNodes(), getNumberOfEdges(), getDirect());
 		
-		g.nodeBuf = Util.cloneByteBuffer(nodeBuf);
-		g.nodeLabelBuf = Util.cloneByteBuffer(nodeLabelBuf);
-		g.edgeBuf = Util.cloneByteBuffer(edgeBuf);
-		g.edgeLabelBuf = Util.cloneByteBuffer(edgeLabelBuf);
+		g.nodeBuf = nodeBuf.copy();
+		g.nodeLabelBuf = nodeLabelBuf.copy();
+		g.edgeBuf = edgeBuf.copy();
+		g.edgeLabelBuf = edgeLabelBuf.copy();
 
 		ArrayList<ArrayList<Integer>> nodeIn = new ArrayList<ArrayList<Integer>>(g.getNumberOfNodes()); // temporary store of inward edges
 		for(int nodeIndex = 0; nodeIndex < g.getNumberOfNodes(); nodeIndex++) {
@@ -3078,8 +4247,8 @@ if(node%100000 == 0) {
 			int gn2 = eArray[2];
 			
 			
-			g.edgeBuf.putInt(EDGE_NODE1_OFFSET+e*EDGE_BYTE_SIZE,gn1); // one end of edge
-			g.edgeBuf.putInt(EDGE_NODE2_OFFSET+e*EDGE_BYTE_SIZE,gn2); // other end of edge
+			g.edgeBuf.putInt(EDGE_NODE1_OFFSET+(long)e*EDGE_BYTE_SIZE,gn1); // one end of edge
+			g.edgeBuf.putInt(EDGE_NODE2_OFFSET+(long)e*EDGE_BYTE_SIZE,gn2); // other end of edge
 		}
 //Debugger.outputTime("A Changed the edge connections");
 			
@@ -3097,20 +4266,20 @@ if(node%100000 == 0) {
 		}
 		
 		// Initialise the connection buffer, modifying the node buffer connection data
-		int offset = 0;
+		long offset = 0;
 		for(int node = 0; node < g.getNumberOfNodes(); node++) {
 			
 			// setting the in connection offset and length
 			ArrayList<Integer> inEdges = nodeIn.get(node);
 			int inEdgeLength = inEdges.size();
-			g.nodeBuf.putInt(node*NODE_BYTE_SIZE+NODE_IN_CONNECTION_START_OFFSET,offset);
-			g.nodeBuf.putInt(node*NODE_BYTE_SIZE+NODE_IN_DEGREE_OFFSET,inEdgeLength);
+			g.nodeBuf.putLong((long)node*NODE_BYTE_SIZE+NODE_IN_CONNECTION_START_OFFSET,offset);
+			g.nodeBuf.putInt((long)node*NODE_BYTE_SIZE+NODE_IN_DEGREE_OFFSET,inEdgeLength);
 			
 			// now put the in edge/node pairs
 			for(int edgeIndex : inEdges) {
 				int nodeIndex = -1;
-				int n1 = g.edgeBuf.getInt(EDGE_NODE1_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
-				int n2 = g.edgeBuf.getInt(EDGE_NODE2_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
+				int n1 = g.edgeBuf.getInt(EDGE_NODE1_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE);
+				int n2 = g.edgeBuf.getInt(EDGE_NODE2_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE);
 				if(n1 == node) {
 					nodeIndex = n2;
 				} else if(n2 == node) {
@@ -3125,14 +4294,14 @@ if(node%100000 == 0) {
 			// setting the out connection offset and length
 			ArrayList<Integer> outEdges = nodeOut.get(node);
 			int outEdgeLength = outEdges.size();
-			g.nodeBuf.putInt(node*NODE_BYTE_SIZE+NODE_OUT_CONNECTION_START_OFFSET,offset);
-			g.nodeBuf.putInt(node*NODE_BYTE_SIZE+NODE_OUT_DEGREE_OFFSET,outEdgeLength);
+			g.nodeBuf.putLong((long)node*NODE_BYTE_SIZE+NODE_OUT_CONNECTION_START_OFFSET,offset);
+			g.nodeBuf.putInt((long)node*NODE_BYTE_SIZE+NODE_OUT_DEGREE_OFFSET,outEdgeLength);
 			
 			// now put the out edge/node pairs
 			for(int edgeIndex : outEdges) {
 				int nodeIndex = -1;
-				int n1 = g.edgeBuf.getInt(EDGE_NODE1_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
-				int n2 = g.edgeBuf.getInt(EDGE_NODE2_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
+				int n1 = g.edgeBuf.getInt(EDGE_NODE1_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE);
+				int n2 = g.edgeBuf.getInt(EDGE_NODE2_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE);
 
 				if(n1 == node) {
 					nodeIndex = n2;
@@ -3151,6 +4320,94 @@ if(node%100000 == 0) {
 	}
 	
 
+	/**
+	 * A copy of this graph with the ends of every edge replaced, for rewiring engines that work on
+	 * plain edge arrays. Labels are shared with this graph, which is not changed. The connection lists
+	 * are built with a counting sort, each in edge order as {@link #generateRewiredGraph(List)}.
+	 * 
+	 * @param node1 the new first node of each edge
+	 * @param node2 the new second node of each edge
+	 * @param newName the name of the new graph
+	 * @return the rewired graph, with uncompressed and unsorted connections
+	 */
+	FastGraph generateGraphWithEdgeEnds(int[] node1, int[] node2, String newName) {
+		FastGraph g = new FastGraph(numberOfNodes, numberOfEdges, direct, false);
+		g.nodeBuf = nodeBuf.copy();
+		g.edgeBuf = edgeBuf.copy();
+		g.nodeLabelBuf = nodeLabelBuf;
+		g.edgeLabelBuf = edgeLabelBuf;
+		g.setLabelDictionaries(nodeLabelDictionary, nodeLabelIdBuf, edgeLabelDictionary, edgeLabelIdBuf);
+		g.setLabelIndexes(nodeLabelIndex, edgeLabelIndex);
+		g.name = newName;
+		g.generation = generation;
+
+		for(int e = 0; e < numberOfEdges; e++) {
+			g.edgeBuf.putInt(EDGE_NODE1_OFFSET+(long)e*EDGE_BYTE_SIZE,node1[e]);
+			g.edgeBuf.putInt(EDGE_NODE2_OFFSET+(long)e*EDGE_BYTE_SIZE,node2[e]);
+		}
+		g.connectionBuf = buildConnections(g.nodeBuf, g.edgeBuf, numberOfNodes, numberOfEdges, direct);
+		
+		return g;
+	}
+	
+
+	/**
+	 * Generates a graph with the nodes renumbered, so node n of this graph is node
+	 * reordering.getNewNode(n) of the new graph. Node and edge labels, weights, types and
+	 * ages go with their node or edge, and edges keep their index. Label buffers and the edge
+	 * label dictionary are shared with this graph, which is not changed. Numbering neighbouring
+	 * nodes close together puts their records and connection lists near each other, see {@link NodeReordering}.
+	 * 
+	 * @param reordering the new numbering, for the same number of nodes as this graph
+	 * @return the reordered graph, with uncompressed connections in edge order, named after this graph with "-reordered" appended
+	 * @throws FastGraphException if the reordering is for a different number of nodes
+	 */
+	public FastGraph generateReorderedGraph(NodeReordering reordering) throws FastGraphException {
+		if(reordering.getNumberOfNodes() != numberOfNodes) {
+			throw new FastGraphException("Reordering is for "+reordering.getNumberOfNodes()+" nodes, graph has "+numberOfNodes);
+		}
+long time = Debugger.createTime();
+		FastGraph g = new FastGraph(numberOfNodes, numberOfEdges, direct, false);
+		g.name = name+"-reordered";
+		g.generation = generation;
+		g.nodeLabelBuf = nodeLabelBuf;
+		g.edgeLabelBuf = edgeLabelBuf;
+		
+		// node records move to their new position, the connection fields are written by buildConnections
+		g.nodeBuf = SegmentedBuffer.allocate((long)numberOfNodes*NODE_BYTE_SIZE, direct);
+		for(int n = 0; n < numberOfNodes; n++) {
+			long oldOffset = (long)reordering.getOriginalNode(n)*NODE_BYTE_SIZE;
+			long newOffset = (long)n*NODE_BYTE_SIZE;
+			g.nodeBuf.putLong(NODE_LABEL_START_OFFSET+newOffset, nodeBuf.getLong(NODE_LABEL_START_OFFSET+oldOffset));
+			g.nodeBuf.putShort(NODE_LABEL_LENGTH_OFFSET+newOffset, nodeBuf.getShort(NODE_LABEL_LENGTH_OFFSET+oldOffset));
+			g.nodeBuf.putInt(NODE_WEIGHT_OFFSET+newOffset, nodeBuf.getInt(NODE_WEIGHT_OFFSET+oldOffset));
+			g.nodeBuf.put(NODE_TYPE_OFFSET+newOffset, nodeBuf.get(NODE_TYPE_OFFSET+oldOffset));
+			g.nodeBuf.put(NODE_AGE_OFFSET+newOffset, nodeBuf.get(NODE_AGE_OFFSET+oldOffset));
+		}
+		
+		g.edgeBuf = edgeBuf.copy();
+		for(int e = 0; e < numberOfEdges; e++) {
+			long edgeOffset = (long)e*EDGE_BYTE_SIZE;
+			g.edgeBuf.putInt(EDGE_NODE1_OFFSET+edgeOffset, reordering.getNewNode(edgeBuf.getInt(EDGE_NODE1_OFFSET+edgeOffset)));
+			g.edgeBuf.putInt(EDGE_NODE2_OFFSET+edgeOffset, reordering.getNewNode(edgeBuf.getInt(EDGE_NODE2_OFFSET+edgeOffset)));
+		}
+		g.connectionBuf = buildConnections(g.nodeBuf, g.edgeBuf, numberOfNodes, numberOfEdges, direct);
+		
+		synchronized(this) {
+			if(nodeLabelDictionary != null) {
+				SegmentedBuffer nodeIds = SegmentedBuffer.allocate((long)numberOfNodes*LabelDictionary.ID_BYTE_SIZE, direct);
+				for(int n = 0; n < numberOfNodes; n++) {
+					nodeIds.putInt((long)n*LabelDictionary.ID_BYTE_SIZE, nodeLabelIdBuf.getInt((long)reordering.getOriginalNode(n)*LabelDictionary.ID_BYTE_SIZE));
+				}
+				g.setLabelDictionaries(nodeLabelDictionary, nodeIds, edgeLabelDictionary, edgeLabelIdBuf);
+				g.setLabelIndexes(null, edgeLabelIndex); // edge ids are not changed by a reordering
+			}
+		}
+Debugger.outputTime("reordered "+numberOfNodes+" nodes", time);
+		return g;
+	}
+
+
 	/**
 	 * Create an integer array, length of maximum degree in the graph. Each element arr[i] of the array contains a count of the number
 	 * of nodes with degree i.
@@ -3232,8 +4489,8 @@ if(node%100000 == 0) {
 		
 		int max = 0;
 		for(int i = 0; i < numberOfNodes; i++) {
-			int inDegree = nodeBuf.getInt(NODE_IN_DEGREE_OFFSET+i*NODE_BYTE_SIZE);
-			int outDegree = nodeBuf.getInt(NODE_OUT_DEGREE_OFFSET+i*NODE_BYTE_SIZE);
+			int inDegree = nodeBuf.getInt(NODE_IN_DEGREE_OFFSET+(long)i*NODE_BYTE_SIZE);
+			int outDegree = nodeBuf.getInt(NODE_OUT_DEGREE_OFFSET+(long)i*NODE_BYTE_SIZE);
 			int degree = inDegree+outDegree;
 			if(degree > max) {
 				max = degree;
@@ -3250,7 +4507,7 @@ if(node%100000 == 0) {
 		
 		int max = 0;
 		for(int i = 0; i < numberOfNodes; i++) {
-			int inDegree = nodeBuf.getInt(NODE_IN_DEGREE_OFFSET+i*NODE_BYTE_SIZE);
+			int inDegree = nodeBuf.getInt(NODE_IN_DEGREE_OFFSET+(long)i*NODE_BYTE_SIZE);
 			if(inDegree > max) {
 				max = inDegree;
 			}
@@ -3266,7 +4523,7 @@ if(node%100000 == 0) {
 		
 		int max = 0;
 		for(int i = 0; i < numberOfNodes; i++) {
-			int outDegree = nodeBuf.getInt(NODE_OUT_DEGREE_OFFSET+i*NODE_BYTE_SIZE);
+			int outDegree = nodeBuf.getInt(NODE_OUT_DEGREE_OFFSET+(long)i*NODE_BYTE_SIZE);
 			if(outDegree > max) {
 				max = outDegree;
 			}
@@ -3432,14 +4689,14 @@ if(node%100000 == 0) {
 			}
 			
 			// orientation and position of node connections
-			int inConnectionOffset = nodeBuf.getInt(NODE_IN_CONNECTION_START_OFFSET+n*NODE_BYTE_SIZE);
-			int outConnectionOffset = nodeBuf.getInt(NODE_OUT_CONNECTION_START_OFFSET+n*NODE_BYTE_SIZE);
+			long inConnectionOffset = nodeBuf.getLong(NODE_IN_CONNECTION_START_OFFSET+(long)n*NODE_BYTE_SIZE);
+			long outConnectionOffset = nodeBuf.getLong(NODE_OUT_CONNECTION_START_OFFSET+(long)n*NODE_BYTE_SIZE);
 			
 			if(inConnectionOffset > outConnectionOffset) {
 				Debugger.log("INCONSISTENT. node "+n+" inConnectionOffset must be less than or equal to outConnectionOffset");
 				return false;
 			}
-			if(outConnectionOffset != inConnectionOffset+getNodeInDegree(n)*8) {
+			if(!compressedConnections && outConnectionOffset != inConnectionOffset+getNodeInDegree(n)*8) {
 				Debugger.log("INCONSISTENT. node "+n+" outConnectionOffset must straight after inConnectionOffset");
 				return false;
 			}
@@ -3454,7 +4711,9 @@ if(node%100000 == 0) {
 
 	/**
 	 * This generates a new random graph based on the existing graph, but with rewired edges. The node degrees are maintained.
-	 * It performs multiple rewrites 
+	 * It performs multiple rewrites, each one from the last, so it runs on one thread. Rewires that do not need
+	 * to follow each other, such as the reference set of {@link ExactMotifFinder}, are made on several threads
+	 * by {@link DegreePreservingRewirer}.
 	 * 
 	 * @param iterations the number of times to rewire, more means better chance of a truly random graph
 	 * @param seed random number generator seed
@@ -3498,10 +4757,15 @@ Debugger.outputTime("time for rewiring");
 		final int ITERATIONS_TIME_OUT = 10000;
 
 		Random r = new Random(seed);
+		CsrGraph csr = toCsr();
+		int[] outOffsets = csr.getOutOffsets();
+		int[] outEdgeIds = csr.getOutEdgeIds();
+		int[] inOffsets = csr.getInOffsets();
+		int[] inEdgeIds = csr.getInEdgeIds();
 
 		// rewiring the node1 of edges
 
-		HashSet<Integer> removedEdges = new HashSet<Integer>(getNumberOfEdges()*2);
+		boolean[] removedEdges = new boolean[getNumberOfEdges()];
 		// don't rewire node1 of edges more than once
 		int[] remainingEdgeArray = new int[getNumberOfEdges()];
 		int remainingEdgeCount = getNumberOfEdges();
@@ -3509,25 +4773,32 @@ Debugger.outputTime("time for rewiring");
 			remainingEdgeArray[i] = i;
 		}
 		// keep track of nodes that have unvisited out edges
-		ArrayList<Integer> candidateNodes = new ArrayList<Integer>(getNumberOfNodes()*2);
+		int[] candidateNodes = new int[getNumberOfNodes()];
+		int candidateNodeCount = 0;
+		int maxConnections = 0;
 		for(int i = 0; i < getNumberOfNodes(); i++) {
-			if(getNodeOutDegree(i) > 0) {
-				candidateNodes.add(i);
+			if(outOffsets[i+1] > outOffsets[i]) {
+				candidateNodes[candidateNodeCount] = i;
+				candidateNodeCount++;
 			}
+			maxConnections = Math.max(maxConnections, Math.max(outOffsets[i+1]-outOffsets[i], inOffsets[i+1]-inOffsets[i]));
 		}
+		// the untried edges of the node being tried, reused for each node
+		int[] candidateEdges = new int[maxConnections];
 
 		// this removes an edge from remainingEdgeArray
 		// by replacing the edge with the last edge in the array, and reducing the elements in the array that will be searched next time by one
 		Debugger.log("number of edges "+getNumberOfEdges());
 		Debugger.log("remaining edge count "+remainingEdgeCount);
 		int startEdge = r.nextInt(remainingEdgeCount);
-		int startNode = getEdgeNode1(startEdge);
+		int startNode = csr.getEdgeNode1s()[startEdge];
 		remainingEdgeArray[startEdge] = remainingEdgeArray[remainingEdgeCount-1];
 		remainingEdgeCount--;
-		removedEdges.add(startEdge);
+		removedEdges[startEdge] = true;
 
 		int nextEdge = startEdge;
-		HashMap<Integer,Integer> rewireNode1 = new HashMap<Integer,Integer>(getNumberOfEdges()*2); // edge then new node1 for the edge
+		int[] rewireNode1 = new int[getNumberOfEdges()]; // new node1 for each edge, -1 if not rewired
+		Arrays.fill(rewireNode1, -1);
 		int nextNode = -1;
 		while(remainingEdgeCount > 0) {
 			// find another node and an in edge to swap
@@ -3540,28 +4811,29 @@ Debugger.outputTime("time for rewiring");
 					break;
 				}
 
-				int nodeIndex = r.nextInt(candidateNodes.size());
-				int tryNode = candidateNodes.get(nodeIndex);
+				int nodeIndex = r.nextInt(candidateNodeCount);
+				int tryNode = candidateNodes[nodeIndex];
 				
 				// need to find an unused edge, connecting to tryNode, randomly
-				ArrayList<Integer> candidateEdges = new ArrayList<Integer>(Util.convertArray(getNodeConnectingOutEdges(tryNode)));
-				while(candidateEdges.size() > 0 && foundEdge == -1) {
-					int edgeIndex = r.nextInt(candidateEdges.size());
-					int tryEdge = candidateEdges.get(edgeIndex);
-					if(!removedEdges.contains(tryEdge)) {
+				int candidateEdgeCount = outOffsets[tryNode+1]-outOffsets[tryNode];
+				System.arraycopy(outEdgeIds, outOffsets[tryNode], candidateEdges, 0, candidateEdgeCount);
+				while(candidateEdgeCount > 0 && foundEdge == -1) {
+					int edgeIndex = r.nextInt(candidateEdgeCount);
+					int tryEdge = candidateEdges[edgeIndex];
+					if(!removedEdges[tryEdge]) {
 						foundEdge = tryEdge;
 						// these commands remove tryEdge
 						remainingEdgeArray[tryEdge] = remainingEdgeArray[remainingEdgeCount-1];
 						remainingEdgeCount--;
-						removedEdges.add(tryEdge);
+						removedEdges[tryEdge] = true;
 
 						nextNode = tryNode;
 					}
-					candidateEdges.remove(edgeIndex);
+					candidateEdgeCount = removeAt(candidateEdges, candidateEdgeCount, edgeIndex);
 				}
 				
 				if(foundEdge == -1) { // if there is no suitable edge, node is no longer a candidate as all its out edges have been used up
-					candidateNodes.remove(nodeIndex);
+					candidateNodeCount = removeAt(candidateNodes, candidateNodeCount, nodeIndex);
 				}
 			}
 			
@@ -3569,43 +4841,45 @@ Debugger.outputTime("time for rewiring");
 				break;
 			}
 			
-			rewireNode1.put(nextEdge, nextNode);
+			rewireNode1[nextEdge] = nextNode;
 			nextEdge = foundEdge; // the next edge to be rewired attaches to nextNode
 			
 		}
 		// rewire the current edge to the start node, making the start node degree correct
 		if(nextNode != -1) {
-			rewireNode1.put(nextEdge, startNode);
+			rewireNode1[nextEdge] = startNode;
 		}
 		
 		
 		// rewiring the node2 of edges
 
 		// don't rewire node2 of edges more than once
-		removedEdges.clear();
+		Arrays.fill(removedEdges, false);
 		remainingEdgeCount = getNumberOfEdges();
 		for(int i = 0; i < getNumberOfEdges(); i++) {
 			remainingEdgeArray[i] = i;
 		}
 		
 		// keep track of nodes that have unvisited in edges
-		candidateNodes = new ArrayList<Integer>(getNumberOfNodes()*2);
+		candidateNodeCount = 0;
 		for(int i = 0; i < getNumberOfNodes(); i++) {
-			if(getNodeInDegree(i) > 0) {
-				candidateNodes.add(i);
+			if(inOffsets[i+1] > inOffsets[i]) {
+				candidateNodes[candidateNodeCount] = i;
+				candidateNodeCount++;
 			}
 		}
 		
 		startEdge = r.nextInt(getNumberOfEdges());
-		startNode = getEdgeNode2(startEdge);
+		startNode = csr.getEdgeNode2s()[startEdge];
 		// this code removes startEdge
 		remainingEdgeArray[startEdge] = remainingEdgeArray[remainingEdgeCount-1];
 		remainingEdgeCount--;
-		removedEdges.add(startEdge);
+		removedEdges[startEdge] = true;
 
 		nextEdge = startEdge;
 		
-		HashMap<Integer,Integer> rewireNode2 = new HashMap<Integer,Integer>(getNumberOfEdges()*2); // edge then new node1 for the edge
+		int[] rewireNode2 = new int[getNumberOfEdges()]; // new node2 for each edge, -1 if not rewired
+		Arrays.fill(rewireNode2, -1);
 		nextNode = -1;
 		while(remainingEdgeCount > 0) {
 			
@@ -3619,28 +4893,29 @@ Debugger.outputTime("time for rewiring");
 					break;
 				}
 				
-				int nodeIndex = r.nextInt(candidateNodes.size());
-				int tryNode = candidateNodes.get(nodeIndex);
+				int nodeIndex = r.nextInt(candidateNodeCount);
+				int tryNode = candidateNodes[nodeIndex];
 				
 				// need to find an unused edge, connecting to tryNode, randomly
-				ArrayList<Integer> candidateEdges = new ArrayList<Integer>(Util.convertArray(getNodeConnectingInEdges(tryNode)));
-				while(candidateEdges.size() > 0 && foundEdge == -1) {
-					int edgeIndex = r.nextInt(candidateEdges.size());
-					int tryEdge = candidateEdges.get(edgeIndex);
-					if(!removedEdges.contains(tryEdge)) {
+				int candidateEdgeCount = inOffsets[tryNode+1]-inOffsets[tryNode];
+				System.arraycopy(inEdgeIds, inOffsets[tryNode], candidateEdges, 0, candidateEdgeCount);
+				while(candidateEdgeCount > 0 && foundEdge == -1) {
+					int edgeIndex = r.nextInt(candidateEdgeCount);
+					int tryEdge = candidateEdges[edgeIndex];
+					if(!removedEdges[tryEdge]) {
 						foundEdge = tryEdge;
 						// these commands remove tryEdge
 						remainingEdgeArray[tryEdge] = remainingEdgeArray[remainingEdgeCount-1];
 						remainingEdgeCount--;
-						removedEdges.add(tryEdge);
+						removedEdges[tryEdge] = true;
 						
 						nextNode = tryNode;
 					}
-					candidateEdges.remove(edgeIndex);
+					candidateEdgeCount = removeAt(candidateEdges, candidateEdgeCount, edgeIndex);
 				}
 
 				if(foundEdge == -1) { // if there is no suitable edge, node is no longer a candidate as all its in edges have been used up
-					candidateNodes.remove(nodeIndex);
+					candidateNodeCount = removeAt(candidateNodes, candidateNodeCount, nodeIndex);
 				}
 			}
 			
@@ -3648,34 +4923,34 @@ Debugger.outputTime("time for rewiring");
 				break;
 			}
 			
-			rewireNode2.put(nextEdge, nextNode);
+			rewireNode2[nextEdge] = nextNode;
 			nextEdge = foundEdge; // the next edge to be rewired attaches to nextNode
 			
 		}
 		// rewire the current edge to the end node, making the start node degree correct
 		if(nextNode != -1) {
-			rewireNode2.put(nextEdge, startNode);
+			rewireNode2[nextEdge] = startNode;
 		}
 		
 		// populate the rewiring
 		LinkedList<int[]> rewireEdges = new LinkedList<int[]>();
 		for(int i = 0; i < getNumberOfEdges(); i++) {
-			Integer node1 = rewireNode1.get(i);
-			Integer node2 = rewireNode2.get(i);
+			int node1 = rewireNode1[i];
+			int node2 = rewireNode2[i];
 			int[] rewiring = new int[3];
-			if(node1 != null && node2 != null) { // both ends are rewired
+			if(node1 != -1 && node2 != -1) { // both ends are rewired
 				rewiring[0] = i;
 				rewiring[1] = node1;
 				rewiring[2] = node2;
 				rewireEdges.add(rewiring);
 			}
-			if(node1 != null && node2 == null) { // only node1 is rewired
+			if(node1 != -1 && node2 == -1) { // only node1 is rewired
 				rewiring[0] = i;
 				rewiring[1] = node1;
 				rewiring[2] = getEdgeNode2(i);
 				rewireEdges.add(rewiring);
 			}
-			if(node1 == null && node2 != null) { // only node2 is rewired
+			if(node1 == -1 && node2 != -1) { // only node2 is rewired
 				rewiring[0] = i;
 				rewiring[1] = getEdgeNode1(i);
 				rewiring[2] = node2;
@@ -3694,6 +4969,21 @@ Debugger.outputTime("time for rewiring");
 	}
 
 	
+	/**
+	 * Removes an element from the first count elements of an array, moving the later elements down one place
+	 * so the order is kept.
+	 * 
+	 * @param array the array holding the elements
+	 * @param count the number of elements in use
+	 * @param index the position of the element to remove
+	 * @return the new number of elements in use
+	 */
+	private static int removeAt(int[] array, int count, int index) {
+		System.arraycopy(array, index+1, array, index, count-index-1);
+		return count-1;
+	}
+
+	
 	/**
 	 * Displays a FastGraph onscreen for the user
 	 */
@@ -3770,13 +5060,7 @@ Debugger.outputTime("time for rewiring");
 	 * @return the largest node age in the graph
 	 */
 	public byte findMaximumNodeAge() {
-		byte ret = 0;
-		for(int i = 0; i < this.getNumberOfNodes(); i++) {
-			if(this.getNodeAge(i) > ret) {
-				ret = this.getNodeAge(i);
-			}
-		}
-		return ret;
+		return (byte)Math.max(0, getAgeIndex().getMaximumNodeAge());
 	}
 	
 	
@@ -3784,13 +5068,7 @@ Debugger.outputTime("time for rewiring");
 	 * @return the smallest node age in the graph
 	 */
 	public byte findMinimumNodeAge() {
-		byte ret = Byte.MAX_VALUE;
-		for(int i = 0; i < this.getNumberOfNodes(); i++) {
-			if(this.getNodeAge(i) < ret) {
-				ret = this.getNodeAge(i);
-			}
-		}
-		return ret;
+		return getAgeIndex().getMinimumNodeAge();
 	}
 	
 	/**
@@ -3799,39 +5077,21 @@ Debugger.outputTime("time for rewiring");
 	 * @return The number of nodes at this age
 	 */
 	public int countNodesOfAge(int age) {
-		int ret = 0;
-		for(int i = 0; i < this.getNumberOfNodes(); i++) {
-			if(this.getNodeAge(i) == age) {
-				ret++;
-			}
-		}
-		return ret;		
+		return getAgeIndex().countNodesOfAge(age);
 	}
 	
 	/**
 	 * @return the largest node age in the graph
 	 */
 	public byte findMaximumEdgeAge() {
-		byte ret = Byte.MIN_VALUE;
-		for(int i = 0; i < this.getNumberOfEdges(); i++) {
-			if(this.getEdgeAge(i) > ret) {
-				ret = this.getEdgeAge(i);
-			}
-		}
-		return ret;
+		return getAgeIndex().getMaximumEdgeAge();
 	}
 	
 	/**
 	 * @return the smallest node age in the graph
 	 */
 	public byte findMinimumEdgeAge() {
-		byte ret = Byte.MAX_VALUE;
-		for(int i = 0; i < this.getNumberOfEdges(); i++) {
-			if(this.getEdgeAge(i) < ret) {
-				ret = this.getEdgeAge(i);
-			}
-		}
-		return ret;
+		return getAgeIndex().getMinimumEdgeAge();
 	}
 	
 
@@ -4038,13 +5298,10 @@ Debugger.outputTime("time for rewiring");
 		LinkedList<EdgeStructure> edges = new LinkedList<EdgeStructure>();
 
 
+		AgeIndex index = getAgeIndex();
 		HashMap<Integer,Integer> oldToNewNodeIds = new HashMap<Integer,Integer>();
 		int nodeId = 0;
-		for(int i = 0; i < getNumberOfNodes();i++) {
-			
-			if(getNodeAge(i) != inGeneration) {
-				continue;
-			}
+		for(int i : index.getNodesOfAge(inGeneration)) {
 			
 			NodeStructure ns = new NodeStructure(nodeId, getNodeLabel(i), getNodeWeight(i), getNodeType(i), getNodeAge(i));
 			nodes.add(ns);
@@ -4054,11 +5311,8 @@ Debugger.outputTime("time for rewiring");
 		}
 		
 		int edgeId = 0;
-		for(int i = 0; i < getNumberOfEdges();i++) {
+		for(int i : index.getEdgesOfAge(inGeneration)) {
 			
-			if(getEdgeAge(i) != inGeneration) {
-				continue;
-			}
 			if(getEdgeType(i) == FastGraphEdgeType.TIME.getValue()) {
 				continue;
 			}
@@ -4103,13 +5357,13 @@ Debugger.outputTime("time for rewiring");
 		int nodeId = 0;
 		for(NodeStructure ns : nodes) {
 			ns.setId(nodeId);
-			g.nodeBuf.putInt(NODE_IN_CONNECTION_START_OFFSET+nodeId*NODE_BYTE_SIZE,-1); // offset for inward connecting edges/nodes
-			g.nodeBuf.putInt(NODE_IN_DEGREE_OFFSET+nodeId*NODE_BYTE_SIZE,-1); // number of inward connecting edges/nodes
-			g.nodeBuf.putInt(NODE_OUT_CONNECTION_START_OFFSET+nodeId*NODE_BYTE_SIZE,-1); // offset for outward connecting edges/nodes
-			g.nodeBuf.putInt(NODE_OUT_DEGREE_OFFSET+nodeId*NODE_BYTE_SIZE,-1); // number of outward connecting edges/nodes
-			g.nodeBuf.putInt(NODE_WEIGHT_OFFSET+nodeId*NODE_BYTE_SIZE,ns.getWeight()); // weight
-			g.nodeBuf.put(NODE_TYPE_OFFSET+nodeId*NODE_BYTE_SIZE,ns.getType()); // type
-			g.nodeBuf.put(NODE_AGE_OFFSET+nodeId*NODE_BYTE_SIZE,ns.getAge()); // age
+			g.nodeBuf.putLong(NODE_IN_CONNECTION_START_OFFSET+(long)nodeId*NODE_BYTE_SIZE,-1); // offset for inward connecting edges/nodes
+			g.nodeBuf.putInt(NODE_IN_DEGREE_OFFSET+(long)nodeId*NODE_BYTE_SIZE,-1); // number of inward connecting edges/nodes
+			g.nodeBuf.putLong(NODE_OUT_CONNECTION_START_OFFSET+(long)nodeId*NODE_BYTE_SIZE,-1); // offset for outward connecting edges/nodes
+			g.nodeBuf.putInt(NODE_OUT_DEGREE_OFFSET+(long)nodeId*NODE_BYTE_SIZE,-1); // number of outward connecting edges/nodes
+			g.nodeBuf.putInt(NODE_WEIGHT_OFFSET+(long)nodeId*NODE_BYTE_SIZE,ns.getWeight()); // weight
+			g.nodeBuf.put(NODE_TYPE_OFFSET+(long)nodeId*NODE_BYTE_SIZE,ns.getType()); // type
+			g.nodeBuf.put(NODE_AGE_OFFSET+(long)nodeId*NODE_BYTE_SIZE,ns.getAge()); // age
 
 			// save labels for later
 			nodeLabels[nodeId] = ns.getLabel();
@@ -4135,11 +5389,11 @@ Debugger.outputTime("time for rewiring");
 		int edgeId = 0;
 		for(EdgeStructure es : edges) {
 			es.setId(edgeId);
-			g.edgeBuf.putInt(EDGE_NODE1_OFFSET+edgeId*EDGE_BYTE_SIZE,es.getNode1()); // one end of edge
-			g.edgeBuf.putInt(EDGE_NODE2_OFFSET+edgeId*EDGE_BYTE_SIZE,es.getNode2()); // other end of edge
-			g.edgeBuf.putInt(EDGE_WEIGHT_OFFSET+edgeId*EDGE_BYTE_SIZE,es.getWeight()); // weight
-			g.edgeBuf.put(EDGE_TYPE_OFFSET+edgeId*EDGE_BYTE_SIZE,es.getType()); // type
-			g.edgeBuf.put(EDGE_AGE_OFFSET+edgeId*EDGE_BYTE_SIZE,es.getAge()); // age
+			g.edgeBuf.putInt(EDGE_NODE1_OFFSET+(long)edgeId*EDGE_BYTE_SIZE,es.getNode1()); // one end of edge
+			g.edgeBuf.putInt(EDGE_NODE2_OFFSET+(long)edgeId*EDGE_BYTE_SIZE,es.getNode2()); // other end of edge
+			g.edgeBuf.putInt(EDGE_WEIGHT_OFFSET+(long)edgeId*EDGE_BYTE_SIZE,es.getWeight()); // weight
+			g.edgeBuf.put(EDGE_TYPE_OFFSET+(long)edgeId*EDGE_BYTE_SIZE,es.getType()); // type
+			g.edgeBuf.put(EDGE_AGE_OFFSET+(long)edgeId*EDGE_BYTE_SIZE,es.getAge()); // age
 			
 			// store labels for later
 			edgeLabels[edgeId] = es.getLabel();
@@ -4158,19 +5412,19 @@ Debugger.outputTime("time for rewiring");
 
 		// Initialise the connection buffer, modifying the node buffer connection data
 		//time = Debugger.createTime();
-		int offset = 0;
+		long offset = 0;
 		for(int i = 0; i < nodeCount; i++) {
 			// setting the in connection offset and length
 			ArrayList<Integer> inEdges = nodeIn.get(i);
 			int inEdgeLength = inEdges.size();
-			g.nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_IN_CONNECTION_START_OFFSET,offset);
-			g.nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_IN_DEGREE_OFFSET,inEdgeLength);
+			g.nodeBuf.putLong((long)i*NODE_BYTE_SIZE+NODE_IN_CONNECTION_START_OFFSET,offset);
+			g.nodeBuf.putInt((long)i*NODE_BYTE_SIZE+NODE_IN_DEGREE_OFFSET,inEdgeLength);
 		
 			// now put the in edge/node pairs
 			for(int e : inEdges) {
 				int n = -1;
-				int n1 = g.edgeBuf.getInt(EDGE_NODE1_OFFSET+e*EDGE_BYTE_SIZE);
-				int n2 = g.edgeBuf.getInt(EDGE_NODE2_OFFSET+e*EDGE_BYTE_SIZE);
+				int n1 = g.edgeBuf.getInt(EDGE_NODE1_OFFSET+(long)e*EDGE_BYTE_SIZE);
+				int n2 = g.edgeBuf.getInt(EDGE_NODE2_OFFSET+(long)e*EDGE_BYTE_SIZE);
 				if(n1 == i) {
 					n = n2;
 				} else if(n2 == i) {
@@ -4186,14 +5440,14 @@ Debugger.outputTime("time for rewiring");
 			// setting the out connection offset and length
 			ArrayList<Integer> outEdges = nodeOut.get(i);
 			int outEdgeLength = outEdges.size();
-			g.nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_OUT_CONNECTION_START_OFFSET,offset);
-			g.nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_OUT_DEGREE_OFFSET,outEdgeLength);
+			g.nodeBuf.putLong((long)i*NODE_BYTE_SIZE+NODE_OUT_CONNECTION_START_OFFSET,offset);
+			g.nodeBuf.putInt((long)i*NODE_BYTE_SIZE+NODE_OUT_DEGREE_OFFSET,outEdgeLength);
 		
 			// now put the out edge/node pairs
 			for(int e : outEdges) {
 				int n = -1;
-				int n1 = g.edgeBuf.getInt(EDGE_NODE1_OFFSET+e*EDGE_BYTE_SIZE);
-				int n2 = g.edgeBuf.getInt(EDGE_NODE2_OFFSET+e*EDGE_BYTE_SIZE);
+				int n1 = g.edgeBuf.getInt(EDGE_NODE1_OFFSET+(long)e*EDGE_BYTE_SIZE);
+				int n2 = g.edgeBuf.getInt(EDGE_NODE2_OFFSET+(long)e*EDGE_BYTE_SIZE);
 				if(n1 == i) {
 					n = n2;
 				} else if(n2 == i) {
@@ -4235,7 +5489,7 @@ Debugger.outputTime("time for rewiring");
 		//int edgeSize = this.getNumberOfEdges();
 		
 		
-		Random r = new Random(this.getNodeBuf().getLong(0));
+		Random r = new Random(this.getRandomSeed(0));
 		//create Name Picker class
 		NamePicker np = null;
 		if(sensibleLabels) {
@@ -4318,11 +5572,10 @@ Debugger.outputTime("time to create new time slice total nodes "+g2.getNumberOfN
 	 * @return a list of all nodes of the given age
 	 */
 	public ArrayList<Integer> findAllNodesOfAge(int age){
-		ArrayList<Integer> ret = new ArrayList<Integer>();
-		for(int i = 0; i < this.getNumberOfNodes(); i++) {
-			if(age == this.getNodeAge(i)) {
-				ret.add(i);
-			}
+		int[] nodes = getAgeIndex().getNodesOfAge(age);
+		ArrayList<Integer> ret = new ArrayList<Integer>(nodes.length);
+		for(int n : nodes) {
+			ret.add(n);
 		}
 		return ret;
 	}
@@ -4333,11 +5586,10 @@ Debugger.outputTime("time to create new time slice total nodes "+g2.getNumberOfN
 	 * @return a list of all edges of the given age
 	 */
 	public ArrayList<Integer> findAllEdgesOfAge(int age){
-		ArrayList<Integer> ret = new ArrayList<Integer>();
-		for(int i = 0; i < this.getNumberOfEdges(); i++) {
-			if(age == this.getEdgeAge(i)) {
-				ret.add(i);
-			}
+		int[] edges = getAgeIndex().getEdgesOfAge(age);
+		ArrayList<Integer> ret = new ArrayList<Integer>(edges.length);
+		for(int e : edges) {
+			ret.add(e);
 		}
 		return ret;
 	}
@@ -4396,13 +5648,11 @@ Debugger.outputTime("time to create new time slice total nodes "+g2.getNumberOfN
 	 * @return the degree profile at the given age
 	 */
 	public int[] findDegreeProfileAtAge(int age) {
-		int[] degrees = new int[maximumDegree()+1];
-		Arrays.fill(degrees, 0);
-		for(int i = 0; i < getNumberOfNodes(); i++) {
-			if(getNodeAge(i) == age) {
-				int degree = getNodeDegree(i);
-				degrees[degree]++;
-			}
+		AgeIndex index = getAgeIndex();
+		int[] degrees = new int[index.getMaximumDegree()+1];
+		for(int i : index.getNodesOfAge(age)) {
+			int degree = getNodeDegree(i);
+			degrees[degree]++;
 		}
 		return degrees;
 	}
@@ -4416,13 +5666,11 @@ Debugger.outputTime("time to create new time slice total nodes "+g2.getNumberOfN
 	 * @return the indegree profile at the given age
 	 */
 	public int[] findInDegreeProfileAtAge(int age) {
-		int[] degrees = new int[maximumInDegree()+1];
-		Arrays.fill(degrees, 0);
-		for(int i = 0; i < getNumberOfNodes(); i++) {
-			if(getNodeAge(i) == age) {
-				int degree = getNodeInDegree(i);
-				degrees[degree]++;
-			}
+		AgeIndex index = getAgeIndex();
+		int[] degrees = new int[index.getMaximumInDegree()+1];
+		for(int i : index.getNodesOfAge(age)) {
+			int degree = getNodeInDegree(i);
+			degrees[degree]++;
 		}
 		return degrees;
 	}
@@ -4436,13 +5684,11 @@ Debugger.outputTime("time to create new time slice total nodes "+g2.getNumberOfN
 	 * @return the outdegree profile at the given age
 	 */
 	public int[] findOutDegreeProfileAtAge(int age) {
-		int[] degrees = new int[maximumOutDegree()+1];
-		Arrays.fill(degrees, 0);
-		for(int i = 0; i < getNumberOfNodes(); i++) {
-			if(getNodeAge(i) == age) {
-				int degree = getNodeOutDegree(i);
-				degrees[degree]++;
-			}
+		AgeIndex index = getAgeIndex();
+		int[] degrees = new int[index.getMaximumOutDegree()+1];
+		for(int i : index.getNodesOfAge(age)) {
+			int degree = getNodeOutDegree(i);
+			degrees[degree]++;
 		}
 		return degrees;
 	}
@@ -4509,24 +5755,27 @@ Debugger.outputTime("time to create new time slice total nodes "+g2.getNumberOfN
 	 * @return if successful, the new fast graph or null if n is connected
 	 */
 	public FastGraph generateGraphByDeletingSingletonNode(int n) {
+		if(compressedConnections) {
+			return uncompressedCopy().generateGraphByDeletingSingletonNode(n);
+		}
 		if(this.getNodeDegree(n) != 0) {
 			return null;
 		}
 		
 		FastGraph g = new FastGraph(this.numberOfNodes-1,this.numberOfEdges,this.direct);
 		// nodeLabelBuf and edgeLabelBuf no longer allocated in init 
-		int nodeLabelBufSize = this.nodeLabelBuf.capacity();
-		int edgeLabelBufSize = this.edgeLabelBuf.capacity();
+		long nodeLabelBufSize = this.nodeLabelBuf.capacity();
+		long edgeLabelBufSize = this.edgeLabelBuf.capacity();
 		if(!direct) {
-			g.nodeLabelBuf = ByteBuffer.allocate(nodeLabelBufSize);
-			g.edgeLabelBuf = ByteBuffer.allocate(edgeLabelBufSize);
+			g.nodeLabelBuf = SegmentedBuffer.allocate(nodeLabelBufSize);
+			g.edgeLabelBuf = SegmentedBuffer.allocate(edgeLabelBufSize);
 			// connectionBuf could be set to wrong size in init()
-			g.connectionBuf = ByteBuffer.allocate(this.connectionBuf.capacity());
+			g.connectionBuf = SegmentedBuffer.allocate(this.connectionBuf.capacity());
 		} else {
-			g.nodeLabelBuf = ByteBuffer.allocateDirect(nodeLabelBufSize);
-			g.edgeLabelBuf = ByteBuffer.allocateDirect(edgeLabelBufSize);
+			g.nodeLabelBuf = SegmentedBuffer.allocateDirect(nodeLabelBufSize);
+			g.edgeLabelBuf = SegmentedBuffer.allocateDirect(edgeLabelBufSize);
 			// connectionBuf could be set to wrong size in init()
-			g.connectionBuf = ByteBuffer.allocate(this.connectionBuf.capacity());
+			g.connectionBuf = SegmentedBuffer.allocate(this.connectionBuf.capacity());
 		}
 
 		this.connectionBuf.rewind();
@@ -4540,46 +5789,34 @@ Debugger.outputTime("time to create new time slice total nodes "+g2.getNumberOfN
 		g.nodeLabelBuf.put(this.nodeLabelBuf); 
 		g.edgeLabelBuf.put(this.edgeLabelBuf);
 
-		this.nodeBuf.rewind();
 		// first bit of the nodeBuf remains the same
-		int uptoDeletedNodeEnd = n*NODE_BYTE_SIZE;
-		byte[] nodes1 = new byte[uptoDeletedNodeEnd];
-		this.nodeBuf.get(nodes1, 0, uptoDeletedNodeEnd);
-
-		// this because the offset in get seems to fail for the bulk get
-		// it is a way to move the position past the deleted node
-		byte[] throwAway = new byte[NODE_BYTE_SIZE];
-		this.nodeBuf.get(throwAway, 0, NODE_BYTE_SIZE);
+		long uptoDeletedNodeEnd = (long)n*NODE_BYTE_SIZE;
+		g.nodeBuf.put(0, this.nodeBuf, 0, uptoDeletedNodeEnd);
 		
 		// second bit of the nodeBuf moves down by one node
-		int afterDeletedNodeSize = (this.numberOfNodes-(n+1))*NODE_BYTE_SIZE;
-		byte[] nodes2 = new byte[afterDeletedNodeSize];
-		this.nodeBuf.get(nodes2, 0, afterDeletedNodeSize);
-		this.nodeBuf.rewind();
-		
-		g.nodeBuf.put(nodes1);
-		g.nodeBuf.put(nodes2);
+		long afterDeletedNodeSize = (long)(this.numberOfNodes-(n+1))*NODE_BYTE_SIZE;
+		g.nodeBuf.put(uptoDeletedNodeEnd, this.nodeBuf, uptoDeletedNodeEnd+NODE_BYTE_SIZE, afterDeletedNodeSize);
 		g.nodeBuf.rewind();
 
 		// recalculate connections to nodes that have moved id down by one
 		this.edgeBuf.rewind();
 		g.edgeBuf.put(this.edgeBuf);
 		for(int i = 0; i < g.getNumberOfEdges(); i+= 1) {
-			int n1 = g.edgeBuf.getInt(EDGE_NODE1_OFFSET+i*EDGE_BYTE_SIZE);
-			int n2 = g.edgeBuf.getInt(EDGE_NODE2_OFFSET+i*EDGE_BYTE_SIZE);
+			int n1 = g.edgeBuf.getInt(EDGE_NODE1_OFFSET+(long)i*EDGE_BYTE_SIZE);
+			int n2 = g.edgeBuf.getInt(EDGE_NODE2_OFFSET+(long)i*EDGE_BYTE_SIZE);
 			if(n1 > n) {
 				n1--;
-				g.edgeBuf.putInt(EDGE_NODE1_OFFSET+i*EDGE_BYTE_SIZE,n1);
+				g.edgeBuf.putInt(EDGE_NODE1_OFFSET+(long)i*EDGE_BYTE_SIZE,n1);
 			}
 			if(n2 > n) {
 				n2--;
-				g.edgeBuf.putInt(EDGE_NODE2_OFFSET+i*EDGE_BYTE_SIZE,n2);
+				g.edgeBuf.putInt(EDGE_NODE2_OFFSET+(long)i*EDGE_BYTE_SIZE,n2);
 			}
 		}
 		
 		// recalculate node connections to nodes that have moved id down by one
 		g.connectionBuf.rewind();
-		int i = 4; // start on nodes, the second in the pair
+		long i = 4; // start on nodes, the second in the pair
 		while(i < g.connectionBuf.capacity()) {
 			int node = g.connectionBuf.getInt(i);
 			if(node > n) {
@@ -4606,25 +5843,24 @@ Debugger.outputTime("time to create new time slice total nodes "+g2.getNumberOfN
 	 * @return the new fast graph
 	 */
 	public FastGraph generateGraphByAddingNode(NodeStructure ns) {
+		if(compressedConnections) {
+			return uncompressedCopy().generateGraphByAddingNode(ns);
+		}
 		
 		FastGraph g = new FastGraph(this.numberOfNodes+1,this.numberOfEdges,this.direct);
 		// nodeLabelBuf and edgeLabelBuf no longer allocated in init 
-		int nodeLabelBufSize = this.nodeLabelBuf.capacity()+(ns.getLabel().length()*2);
-		if(nodeLabelBufSize*2 > MAX_BYTE_BUFFER_SIZE) {
-			throw new OutOfMemoryError("Tried to create a nodeLabelBuf with too many chars");
-		}
-
-		int edgeLabelBufSize = this.edgeLabelBuf.capacity();
+		long nodeLabelBufSize = this.nodeLabelBuf.capacity()+(ns.getLabel().length()*2L);
+		long edgeLabelBufSize = this.edgeLabelBuf.capacity();
 		if(!direct) {
-			g.nodeLabelBuf = ByteBuffer.allocate(nodeLabelBufSize);
-			g.edgeLabelBuf = ByteBuffer.allocate(edgeLabelBufSize);
+			g.nodeLabelBuf = SegmentedBuffer.allocate(nodeLabelBufSize);
+			g.edgeLabelBuf = SegmentedBuffer.allocate(edgeLabelBufSize);
 			// connectionBuf could be set to wrong size in init()
-			g.connectionBuf = ByteBuffer.allocate(this.connectionBuf.capacity());
+			g.connectionBuf = SegmentedBuffer.allocate(this.connectionBuf.capacity());
 		} else {
-			g.nodeLabelBuf = ByteBuffer.allocateDirect(nodeLabelBufSize);
-			g.edgeLabelBuf = ByteBuffer.allocateDirect(edgeLabelBufSize);
+			g.nodeLabelBuf = SegmentedBuffer.allocateDirect(nodeLabelBufSize);
+			g.edgeLabelBuf = SegmentedBuffer.allocateDirect(edgeLabelBufSize);
 			// connectionBuf could be set to wrong size in init()
-			g.connectionBuf = ByteBuffer.allocateDirect(this.connectionBuf.capacity());
+			g.connectionBuf = SegmentedBuffer.allocateDirect(this.connectionBuf.capacity());
 		}
 
 		this.connectionBuf.rewind();
@@ -4642,13 +5878,13 @@ Debugger.outputTime("time to create new time slice total nodes "+g2.getNumberOfN
 		g.nodeLabelBuf.put(this.nodeLabelBuf);
 		
 		// place the new label
-		int labelStart = this.nodeLabelBuf.capacity();
+		long labelStart = this.nodeLabelBuf.capacity();
 		String label = ns.getLabel();
 		char[] labelArray = label.toCharArray();
 		short labelLength = (short)(labelArray.length);
 	
 		g.nodeLabelBuf.rewind();
-		int labelOffset = labelStart;
+		long labelOffset = labelStart;
 		for(int j = 0; j < labelArray.length; j++) {
 			char c = labelArray[j];
 			g.nodeLabelBuf.putChar(labelOffset,c);
@@ -4659,15 +5895,15 @@ Debugger.outputTime("time to create new time slice total nodes "+g2.getNumberOfN
 		this.nodeBuf.rewind();
 		g.nodeBuf.put(this.nodeBuf);
 		int nodeId = this.numberOfNodes; // the new node is at the end of node list
-		g.nodeBuf.putInt(NODE_LABEL_START_OFFSET+nodeId*NODE_BYTE_SIZE,labelStart); // label start
-		g.nodeBuf.putShort(NODE_LABEL_LENGTH_OFFSET+nodeId*NODE_BYTE_SIZE,labelLength); // label size
-		g.nodeBuf.putInt(NODE_IN_CONNECTION_START_OFFSET+nodeId*NODE_BYTE_SIZE,0); // offset for inward connecting edges/nodes
-		g.nodeBuf.putInt(NODE_IN_DEGREE_OFFSET+nodeId*NODE_BYTE_SIZE,0); // number of inward connecting edges/nodes
-		g.nodeBuf.putInt(NODE_OUT_CONNECTION_START_OFFSET+nodeId*NODE_BYTE_SIZE,0); // offset for outward connecting edges/nodes
-		g.nodeBuf.putInt(NODE_OUT_DEGREE_OFFSET+nodeId*NODE_BYTE_SIZE,0); // number of outward connecting edges/nodes
-		g.nodeBuf.putInt(NODE_WEIGHT_OFFSET+nodeId*NODE_BYTE_SIZE,ns.getWeight()); // weight
-		g.nodeBuf.put(NODE_TYPE_OFFSET+nodeId*NODE_BYTE_SIZE,ns.getType()); // type
-		g.nodeBuf.put(NODE_AGE_OFFSET+nodeId*NODE_BYTE_SIZE,ns.getAge()); // age
+		g.nodeBuf.putLong(NODE_LABEL_START_OFFSET+(long)nodeId*NODE_BYTE_SIZE,labelStart); // label start
+		g.nodeBuf.putShort(NODE_LABEL_LENGTH_OFFSET+(long)nodeId*NODE_BYTE_SIZE,labelLength); // label size
+		g.nodeBuf.putLong(NODE_IN_CONNECTION_START_OFFSET+(long)nodeId*NODE_BYTE_SIZE,0); // offset for inward connecting edges/nodes
+		g.nodeBuf.putInt(NODE_IN_DEGREE_OFFSET+(long)nodeId*NODE_BYTE_SIZE,0); // number of inward connecting edges/nodes
+		g.nodeBuf.putLong(NODE_OUT_CONNECTION_START_OFFSET+(long)nodeId*NODE_BYTE_SIZE,0); // offset for outward connecting edges/nodes
+		g.nodeBuf.putInt(NODE_OUT_DEGREE_OFFSET+(long)nodeId*NODE_BYTE_SIZE,0); // number of outward connecting edges/nodes
+		g.nodeBuf.putInt(NODE_WEIGHT_OFFSET+(long)nodeId*NODE_BYTE_SIZE,ns.getWeight()); // weight
+		g.nodeBuf.put(NODE_TYPE_OFFSET+(long)nodeId*NODE_BYTE_SIZE,ns.getType()); // type
+		g.nodeBuf.put(NODE_AGE_OFFSET+(long)nodeId*NODE_BYTE_SIZE,ns.getAge()); // age
 
 		g.name = this.name;
 		
@@ -4684,21 +5920,24 @@ Debugger.outputTime("time to create new time slice total nodes "+g2.getNumberOfN
 	 * @return the new fast graph
 	 */
 	public FastGraph generateGraphByDeletingEdge(int e) {
+		if(compressedConnections) {
+			return uncompressedCopy().generateGraphByDeletingEdge(e);
+		}
 		
 		FastGraph g = new FastGraph(this.numberOfNodes,this.numberOfEdges-1,this.direct);
 		// nodeLabelBuf and edgeLabelBuf no longer allocated in init 
-		int nodeLabelBufSize = this.nodeLabelBuf.capacity();
-		int edgeLabelBufSize = this.edgeLabelBuf.capacity();
+		long nodeLabelBufSize = this.nodeLabelBuf.capacity();
+		long edgeLabelBufSize = this.edgeLabelBuf.capacity();
 		if(!direct) {
-			g.nodeLabelBuf = ByteBuffer.allocate(nodeLabelBufSize);
-			g.edgeLabelBuf = ByteBuffer.allocate(edgeLabelBufSize);
+			g.nodeLabelBuf = SegmentedBuffer.allocate(nodeLabelBufSize);
+			g.edgeLabelBuf = SegmentedBuffer.allocate(edgeLabelBufSize);
 			// connectionBuf may be set to wrong size in init()
-			g.connectionBuf = ByteBuffer.allocate(this.connectionBuf.capacity());
+			g.connectionBuf = SegmentedBuffer.allocate(this.connectionBuf.capacity());
 		} else {
-			g.nodeLabelBuf = ByteBuffer.allocateDirect(nodeLabelBufSize);
-			g.edgeLabelBuf = ByteBuffer.allocateDirect(edgeLabelBufSize);
+			g.nodeLabelBuf = SegmentedBuffer.allocateDirect(nodeLabelBufSize);
+			g.edgeLabelBuf = SegmentedBuffer.allocateDirect(edgeLabelBufSize);
 			// connectionBuf may be set to wrong size in init()
-			g.connectionBuf = ByteBuffer.allocateDirect(this.connectionBuf.capacity());
+			g.connectionBuf = SegmentedBuffer.allocateDirect(this.connectionBuf.capacity());
 		}
 
 		this.nodeBuf.rewind();
@@ -4712,26 +5951,13 @@ Debugger.outputTime("time to create new time slice total nodes "+g2.getNumberOfN
 		// buffer and reassign all the offsets after the deleted node in the nodeBuf
 		g.edgeLabelBuf.put(this.edgeLabelBuf);
 		
-		this.edgeBuf.rewind();
 		// first bit of edgeBuf remains the same
-		int uptoDeletedEdgeEnd = e*EDGE_BYTE_SIZE;
-		byte[] edges1 = new byte[uptoDeletedEdgeEnd];
-		this.edgeBuf.get(edges1, 0, uptoDeletedEdgeEnd);
-
-		// this because the offset in get seems to fail for the bulk get
-		// it is a way to move the position past the deleted edge
-		byte[] throwAway = new byte[EDGE_BYTE_SIZE];
-		this.edgeBuf.get(throwAway, 0, EDGE_BYTE_SIZE);
+		long uptoDeletedEdgeEnd = (long)e*EDGE_BYTE_SIZE;
+		g.edgeBuf.put(0, this.edgeBuf, 0, uptoDeletedEdgeEnd);
 		
 		// second bit of edgeBuf moves down by one
-		int afterDeletedEdgeSize = (this.numberOfEdges-(e+1))*EDGE_BYTE_SIZE;
-		byte[] edges2 = new byte[afterDeletedEdgeSize];
-		this.edgeBuf.get(edges2, 0, afterDeletedEdgeSize);
-		this.edgeBuf.rewind();
-
-		g.edgeBuf.rewind();
-		g.edgeBuf.put(edges1);
-		g.edgeBuf.put(edges2);
+		long afterDeletedEdgeSize = (long)(this.numberOfEdges-(e+1))*EDGE_BYTE_SIZE;
+		g.edgeBuf.put(uptoDeletedEdgeEnd, this.edgeBuf, uptoDeletedEdgeEnd+EDGE_BYTE_SIZE, afterDeletedEdgeSize);
 		g.edgeBuf.rewind();
 		
 		// change the connections of the nodes at either end of the edge
@@ -4748,38 +5974,38 @@ Debugger.outputTime("time to create new time slice total nodes "+g2.getNumberOfN
 		int n2 = this.getEdgeNode2(e);
 
 		int outDegree1 = this.getNodeOutDegree(n1);
-		int outConnectionOffset1 = g.nodeBuf.getInt(NODE_OUT_CONNECTION_START_OFFSET+n1*NODE_BYTE_SIZE);
+		long outConnectionOffset1 = g.nodeBuf.getLong(NODE_OUT_CONNECTION_START_OFFSET+(long)n1*NODE_BYTE_SIZE);
 		boolean foundEdge = false;
 		for(int i = 0; i < outDegree1; i++) { // just outDegrees, as out is after in
-			int edge = g.connectionBuf.getInt(outConnectionOffset1+i*CONNECTION_PAIR_SIZE);
-			int node = g.connectionBuf.getInt(outConnectionOffset1+i*CONNECTION_PAIR_SIZE+4);
+			int edge = g.connectionBuf.getInt(outConnectionOffset1+(long)i*CONNECTION_PAIR_SIZE);
+			int node = g.connectionBuf.getInt(outConnectionOffset1+(long)i*CONNECTION_PAIR_SIZE+4);
 			if(foundEdge) { // delete the edge and move all other connecting edges down by an edge
-				g.connectionBuf.putInt(outConnectionOffset1+(i-1)*CONNECTION_PAIR_SIZE,edge); // edge is first in pair
-				g.connectionBuf.putInt(outConnectionOffset1+(i-1)*CONNECTION_PAIR_SIZE+4,node); // node is second in pair
+				g.connectionBuf.putInt(outConnectionOffset1+(long)(i-1)*CONNECTION_PAIR_SIZE,edge); // edge is first in pair
+				g.connectionBuf.putInt(outConnectionOffset1+(long)(i-1)*CONNECTION_PAIR_SIZE+4,node); // node is second in pair
 			}
 			if(e == edge) {
 				foundEdge = true;
 			}
 		}
 		// change out degrees length only as in degree starts list
-		g.nodeBuf.putInt(n1*NODE_BYTE_SIZE+NODE_OUT_DEGREE_OFFSET,outDegree1-1);
+		g.nodeBuf.putInt((long)n1*NODE_BYTE_SIZE+NODE_OUT_DEGREE_OFFSET,outDegree1-1);
 		
 		// in edges for node2
 		int inDegree2 = this.getNodeInDegree(n2);
 		int outDegree2 = this.getNodeOutDegree(n2);
 		int degree2 = inDegree2+outDegree2;
-		int inConnectionOffset2 = g.nodeBuf.getInt(NODE_IN_CONNECTION_START_OFFSET+n2*NODE_BYTE_SIZE);
-		int outConnectionOffset2 = g.nodeBuf.getInt(NODE_OUT_CONNECTION_START_OFFSET+n2*NODE_BYTE_SIZE);
+		long inConnectionOffset2 = g.nodeBuf.getLong(NODE_IN_CONNECTION_START_OFFSET+(long)n2*NODE_BYTE_SIZE);
+		long outConnectionOffset2 = g.nodeBuf.getLong(NODE_OUT_CONNECTION_START_OFFSET+(long)n2*NODE_BYTE_SIZE);
 		foundEdge = false;
 
 //this.outputInternalData();
 		for(int i = 0; i < degree2; i++) {
-			int edge = g.connectionBuf.getInt(inConnectionOffset2+i*CONNECTION_PAIR_SIZE);
-			int node = g.connectionBuf.getInt(inConnectionOffset2+i*CONNECTION_PAIR_SIZE+4);
+			int edge = g.connectionBuf.getInt(inConnectionOffset2+(long)i*CONNECTION_PAIR_SIZE);
+			int node = g.connectionBuf.getInt(inConnectionOffset2+(long)i*CONNECTION_PAIR_SIZE+4);
 
 			if(foundEdge) { // delete the edge and move all other connecting edges down by an edge, this moves all out edge,node pairs
-				g.connectionBuf.putInt(inConnectionOffset2+(i-1)*CONNECTION_PAIR_SIZE,edge); // edge is first in pair
-				g.connectionBuf.putInt(inConnectionOffset2+(i-1)*CONNECTION_PAIR_SIZE+4,node); // node is second in pair
+				g.connectionBuf.putInt(inConnectionOffset2+(long)(i-1)*CONNECTION_PAIR_SIZE,edge); // edge is first in pair
+				g.connectionBuf.putInt(inConnectionOffset2+(long)(i-1)*CONNECTION_PAIR_SIZE+4,node); // node is second in pair
 			}
 			if(e == edge) {
 				foundEdge = true;
@@ -4787,14 +6013,14 @@ Debugger.outputTime("time to create new time slice total nodes "+g2.getNumberOfN
 		}
 
 		// change in degree
-		g.nodeBuf.putInt(n2*NODE_BYTE_SIZE+NODE_IN_DEGREE_OFFSET,inDegree2-1);
+		g.nodeBuf.putInt((long)n2*NODE_BYTE_SIZE+NODE_IN_DEGREE_OFFSET,inDegree2-1);
 		// length of in degree has changed so out degree start position has changed
-		g.nodeBuf.putInt(NODE_OUT_CONNECTION_START_OFFSET+n2*NODE_BYTE_SIZE,outConnectionOffset2-CONNECTION_PAIR_SIZE);
+		g.nodeBuf.putLong(NODE_OUT_CONNECTION_START_OFFSET+(long)n2*NODE_BYTE_SIZE,outConnectionOffset2-CONNECTION_PAIR_SIZE);
 
 		// recalculate node connections to edges that have moved id down by one
 		this.connectionBuf.rewind();
 		g.connectionBuf.put(this.nodeBuf);
-		int i = 0;
+		long i = 0;
 		while(i < g.connectionBuf.capacity()) {
 			int edge = g.connectionBuf.getInt(i);
 			if(edge > e) {
@@ -4821,6 +6047,9 @@ Debugger.outputTime("time to create new time slice total nodes "+g2.getNumberOfN
 	 * @throws Exception Throws if the new FastGraph does not build correctly. Most likely out of memory error.
 	 */
 	public FastGraph generateGraphByAddingEdge(EdgeStructure es) throws Exception {
+		if(compressedConnections) {
+			return uncompressedCopy().generateGraphByAddingEdge(es);
+		}
 		
 		if(es.getNode1() >= this.getNumberOfNodes()) {
 			throw new FastGraphException("node n1 is greater than the number of nodes");
@@ -4831,25 +6060,22 @@ Debugger.outputTime("time to create new time slice total nodes "+g2.getNumberOfN
 		
 		FastGraph g = new FastGraph(this.numberOfNodes,this.numberOfEdges+1,this.direct);
 		// nodeLabelBuf and edgeLabelBuf no longer allocated in init 
-		int edgeLabelBufSize = this.edgeLabelBuf.capacity()+(es.getLabel().length()*2);
-		if(edgeLabelBufSize*2 > MAX_BYTE_BUFFER_SIZE) {
-			throw new OutOfMemoryError("Tried to create an edgeLabelBuf with too many chars");
-		}
+		long edgeLabelBufSize = this.edgeLabelBuf.capacity()+(es.getLabel().length()*2L);
 
 		int n1 = es.getNode1(); // the source node
 		int n2 = es.getNode2(); // the target node
-		int nodeLabelBufSize = this.nodeLabelBuf.capacity();
-		int connectionBufSize = this.connectionBuf.capacity()+(this.getNodeDegree(n1)+1)*CONNECTION_PAIR_SIZE+(this.getNodeDegree(n2)+1)*CONNECTION_PAIR_SIZE;
+		long nodeLabelBufSize = this.nodeLabelBuf.capacity();
+		long connectionBufSize = this.connectionBuf.capacity()+(this.getNodeDegree(n1)+1L)*CONNECTION_PAIR_SIZE+(this.getNodeDegree(n2)+1L)*CONNECTION_PAIR_SIZE;
 		if(!direct) {
-			g.nodeLabelBuf = ByteBuffer.allocate(nodeLabelBufSize);
-			g.edgeLabelBuf = ByteBuffer.allocate(edgeLabelBufSize);
+			g.nodeLabelBuf = SegmentedBuffer.allocate(nodeLabelBufSize);
+			g.edgeLabelBuf = SegmentedBuffer.allocate(edgeLabelBufSize);
 			// connectionBuf is set to wrong size in init(), it needs extra edges
-			g.connectionBuf = ByteBuffer.allocate(connectionBufSize);
+			g.connectionBuf = SegmentedBuffer.allocate(connectionBufSize);
 		} else {
-			g.nodeLabelBuf = ByteBuffer.allocateDirect(nodeLabelBufSize);
-			g.edgeLabelBuf = ByteBuffer.allocateDirect(edgeLabelBufSize);
+			g.nodeLabelBuf = SegmentedBuffer.allocateDirect(nodeLabelBufSize);
+			g.edgeLabelBuf = SegmentedBuffer.allocateDirect(edgeLabelBufSize);
 			// connectionBuf is set to wrong size in init(), it needs extra edges
-			g.connectionBuf = ByteBuffer.allocate(connectionBufSize);
+			g.connectionBuf = SegmentedBuffer.allocate(connectionBufSize);
 		}
 
 		this.nodeLabelBuf.rewind();
@@ -4862,13 +6088,13 @@ Debugger.outputTime("time to create new time slice total nodes "+g2.getNumberOfN
 		g.edgeLabelBuf.put(this.edgeLabelBuf);
 		
 		// place the new label
-		int labelStart = this.edgeLabelBuf.capacity();
+		long labelStart = this.edgeLabelBuf.capacity();
 		String label = es.getLabel();
 		char[] labelArray = label.toCharArray();
 		short labelLength = (short)(labelArray.length);
 	
 		g.edgeLabelBuf.rewind();
-		int labelOffset = labelStart;
+		long labelOffset = labelStart;
 		for(int j = 0; j < labelArray.length; j++) {
 			char c = labelArray[j];
 			g.edgeLabelBuf.putChar(labelOffset,c);
@@ -4881,13 +6107,13 @@ Debugger.outputTime("time to create new time slice total nodes "+g2.getNumberOfN
 		this.edgeBuf.rewind();
 		g.edgeBuf.rewind();
 		g.edgeBuf.put(this.edgeBuf);
-		g.edgeBuf.putInt(EDGE_LABEL_START_OFFSET+edgeId*EDGE_BYTE_SIZE,labelStart); // label start
-		g.edgeBuf.putShort(EDGE_LABEL_LENGTH_OFFSET+edgeId*EDGE_BYTE_SIZE,labelLength); // label size
-		g.edgeBuf.putInt(EDGE_NODE1_OFFSET+edgeId*EDGE_BYTE_SIZE,n1); // one end of edge
-		g.edgeBuf.putInt(EDGE_NODE2_OFFSET+edgeId*EDGE_BYTE_SIZE,n2); // other end of edge
-		g.edgeBuf.putInt(EDGE_WEIGHT_OFFSET+edgeId*EDGE_BYTE_SIZE,es.getWeight()); // weight
-		g.edgeBuf.put(EDGE_TYPE_OFFSET+edgeId*EDGE_BYTE_SIZE,es.getType()); // type
-		g.edgeBuf.put(EDGE_AGE_OFFSET+edgeId*EDGE_BYTE_SIZE,es.getAge()); // age
+		g.edgeBuf.putLong(EDGE_LABEL_START_OFFSET+(long)edgeId*EDGE_BYTE_SIZE,labelStart); // label start
+		g.edgeBuf.putShort(EDGE_LABEL_LENGTH_OFFSET+(long)edgeId*EDGE_BYTE_SIZE,labelLength); // label size
+		g.edgeBuf.putInt(EDGE_NODE1_OFFSET+(long)edgeId*EDGE_BYTE_SIZE,n1); // one end of edge
+		g.edgeBuf.putInt(EDGE_NODE2_OFFSET+(long)edgeId*EDGE_BYTE_SIZE,n2); // other end of edge
+		g.edgeBuf.putInt(EDGE_WEIGHT_OFFSET+(long)edgeId*EDGE_BYTE_SIZE,es.getWeight()); // weight
+		g.edgeBuf.put(EDGE_TYPE_OFFSET+(long)edgeId*EDGE_BYTE_SIZE,es.getType()); // type
+		g.edgeBuf.put(EDGE_AGE_OFFSET+(long)edgeId*EDGE_BYTE_SIZE,es.getAge()); // age
 
 		g.name = this.name;
 		
@@ -4900,39 +6126,39 @@ Debugger.outputTime("time to create new time slice total nodes "+g2.getNumberOfN
 		// this leaves the old connections as redundant data
 		// but its better than attempting to insert a new edge node pair
 		// and changing a large number of node connection offsets
-		int connectionOffset = this.nodeBuf.getInt(NODE_IN_CONNECTION_START_OFFSET+n1*NODE_BYTE_SIZE);
+		long connectionOffset = this.nodeBuf.getLong(NODE_IN_CONNECTION_START_OFFSET+(long)n1*NODE_BYTE_SIZE);
 		int degree = this.getNodeInDegree(n1);
 		int[] n1In = new int[degree*2]; // for the edge node pairs
 		for(int i = 0; i < degree*2; i++) {
-			int offset = connectionOffset+(i*4);
+			long offset = connectionOffset+(i*4L);
 			int id = this.connectionBuf.getInt(offset);
 			n1In[i] = id;
 		}
-		connectionOffset = this.nodeBuf.getInt(NODE_OUT_CONNECTION_START_OFFSET+n1*NODE_BYTE_SIZE);
+		connectionOffset = this.nodeBuf.getLong(NODE_OUT_CONNECTION_START_OFFSET+(long)n1*NODE_BYTE_SIZE);
 		degree = this.getNodeOutDegree(n1);
 		int[] n1Out = new int[degree*2+2]; // for the edge node pairs, plus the new one
 		for(int i = 0; i < degree*2; i++) {
-			int offset = connectionOffset+(i*4);
+			long offset = connectionOffset+(i*4L);
 			int id = this.connectionBuf.getInt(offset);
 			n1Out[i] = id;
 		}
 		n1Out[n1Out.length-2] = edgeId;
 		n1Out[n1Out.length-1] = n2;
-		connectionOffset = this.nodeBuf.getInt(NODE_IN_CONNECTION_START_OFFSET+n2*NODE_BYTE_SIZE);
+		connectionOffset = this.nodeBuf.getLong(NODE_IN_CONNECTION_START_OFFSET+(long)n2*NODE_BYTE_SIZE);
 		degree = this.getNodeInDegree(n2);
 		int[] n2In = new int[degree*2+2]; // for the edge node pairs, plus the new one
 		for(int i = 0; i < degree*2; i++) {
-			int offset = connectionOffset+(i*4);
+			long offset = connectionOffset+(i*4L);
 			int id = this.connectionBuf.getInt(offset);
 			n2In[i] = id;
 		}
 		n2In[n2In.length-2] = edgeId;
 		n2In[n2In.length-1] = n1;
-		connectionOffset = this.nodeBuf.getInt(NODE_OUT_CONNECTION_START_OFFSET+n2*NODE_BYTE_SIZE);
+		connectionOffset = this.nodeBuf.getLong(NODE_OUT_CONNECTION_START_OFFSET+(long)n2*NODE_BYTE_SIZE);
 		degree = this.getNodeOutDegree(n2);
 		int[] n2Out = new int[degree*2]; // for the edge node pairs
 		for(int i = 0; i < degree*2; i++) {
-			int offset = connectionOffset+(i*4);
+			long offset = connectionOffset+(i*4L);
 			int id = this.connectionBuf.getInt(offset);
 			n2Out[i] = id;
 		}
@@ -4941,55 +6167,55 @@ Debugger.outputTime("time to create new time slice total nodes "+g2.getNumberOfN
 
 		
 		if(n1 != n2) {
-			int n1InStart = this.connectionBuf.capacity();
+			long n1InStart = this.connectionBuf.capacity();
 			for(int i = 0; i < n1In.length; i++) {
-				g.connectionBuf.putInt(n1InStart+i*4,n1In[i]);
+				g.connectionBuf.putInt(n1InStart+i*4L,n1In[i]);
 			}
-			int n1OutStart = n1InStart+n1In.length*4;
+			long n1OutStart = n1InStart+n1In.length*4L;
 			for(int i = 0; i < n1Out.length; i++) {
-				g.connectionBuf.putInt(n1OutStart+i*4,n1Out[i]);
+				g.connectionBuf.putInt(n1OutStart+i*4L,n1Out[i]);
 			}
-			int n2InStart = n1OutStart+n1Out.length*4;
+			long n2InStart = n1OutStart+n1Out.length*4L;
 			for(int i = 0; i < n2In.length; i++) {
-				g.connectionBuf.putInt(n2InStart+i*4,n2In[i]);
+				g.connectionBuf.putInt(n2InStart+i*4L,n2In[i]);
 			}
-			int n2OutStart = n2InStart+n2In.length*4;
+			long n2OutStart = n2InStart+n2In.length*4L;
 			for(int i = 0; i < n2Out.length; i++) {
-				g.connectionBuf.putInt(n2OutStart+i*4,n2Out[i]);
+				g.connectionBuf.putInt(n2OutStart+i*4L,n2Out[i]);
 			}
 
 			int n1InDegree = this.getNodeInDegree(n1);
 			int n1OutDegree = this.getNodeOutDegree(n1)+1;
 			int n2InDegree = this.getNodeInDegree(n2)+1;
 			int n2OutDegree = this.getNodeOutDegree(n2);
-			g.nodeBuf.putInt(NODE_IN_CONNECTION_START_OFFSET+n1*NODE_BYTE_SIZE,n1InStart); // offset for inward connecting edges/nodes
-			g.nodeBuf.putInt(NODE_IN_DEGREE_OFFSET+n1*NODE_BYTE_SIZE,n1InDegree); // number of inward connecting edges/nodes
-			g.nodeBuf.putInt(NODE_OUT_CONNECTION_START_OFFSET+n1*NODE_BYTE_SIZE,n1OutStart); // offset for outward connecting edges/nodes
-			g.nodeBuf.putInt(NODE_OUT_DEGREE_OFFSET+n1*NODE_BYTE_SIZE,n1OutDegree); // number of outward connecting edges/nodes
-			g.nodeBuf.putInt(NODE_IN_CONNECTION_START_OFFSET+n2*NODE_BYTE_SIZE,n2InStart); // offset for inward connecting edges/nodes
-			g.nodeBuf.putInt(NODE_IN_DEGREE_OFFSET+n2*NODE_BYTE_SIZE,n2InDegree); // number of inward connecting edges/nodes
-			g.nodeBuf.putInt(NODE_OUT_CONNECTION_START_OFFSET+n2*NODE_BYTE_SIZE,n2OutStart); // offset for outward connecting edges/nodes
-			g.nodeBuf.putInt(NODE_OUT_DEGREE_OFFSET+n2*NODE_BYTE_SIZE,n2OutDegree); // number of outward connecting edges/nodes
+			g.nodeBuf.putLong(NODE_IN_CONNECTION_START_OFFSET+(long)n1*NODE_BYTE_SIZE,n1InStart); // offset for inward connecting edges/nodes
+			g.nodeBuf.putInt(NODE_IN_DEGREE_OFFSET+(long)n1*NODE_BYTE_SIZE,n1InDegree); // number of inward connecting edges/nodes
+			g.nodeBuf.putLong(NODE_OUT_CONNECTION_START_OFFSET+(long)n1*NODE_BYTE_SIZE,n1OutStart); // offset for outward connecting edges/nodes
+			g.nodeBuf.putInt(NODE_OUT_DEGREE_OFFSET+(long)n1*NODE_BYTE_SIZE,n1OutDegree); // number of outward connecting edges/nodes
+			g.nodeBuf.putLong(NODE_IN_CONNECTION_START_OFFSET+(long)n2*NODE_BYTE_SIZE,n2InStart); // offset for inward connecting edges/nodes
+			g.nodeBuf.putInt(NODE_IN_DEGREE_OFFSET+(long)n2*NODE_BYTE_SIZE,n2InDegree); // number of inward connecting edges/nodes
+			g.nodeBuf.putLong(NODE_OUT_CONNECTION_START_OFFSET+(long)n2*NODE_BYTE_SIZE,n2OutStart); // offset for outward connecting edges/nodes
+			g.nodeBuf.putInt(NODE_OUT_DEGREE_OFFSET+(long)n2*NODE_BYTE_SIZE,n2OutDegree); // number of outward connecting edges/nodes
 		} else { // self sourcing edge
 
 			// recall n1 and n2 are the same
 			// as we are adding one to both in and out lists of the node
 			// the new information is in n2In and n1Out, so use those
-			int n1InStart = this.connectionBuf.capacity();
+			long n1InStart = this.connectionBuf.capacity();
 			for(int i = 0; i < n2In.length; i++) {
-				g.connectionBuf.putInt(n1InStart+i*4,n2In[i]);
+				g.connectionBuf.putInt(n1InStart+i*4L,n2In[i]);
 			}
-			int n1OutStart = n1InStart+n2In.length*4;
+			long n1OutStart = n1InStart+n2In.length*4L;
 			for(int i = 0; i < n1Out.length; i++) {
-				g.connectionBuf.putInt(n1OutStart+i*4,n1Out[i]);
+				g.connectionBuf.putInt(n1OutStart+i*4L,n1Out[i]);
 			}
 
 			int n1InDegree = this.getNodeInDegree(n1)+1;
 			int n1OutDegree = this.getNodeOutDegree(n1)+1;
-			g.nodeBuf.putInt(NODE_IN_CONNECTION_START_OFFSET+n1*NODE_BYTE_SIZE,n1InStart); 
-			g.nodeBuf.putInt(NODE_IN_DEGREE_OFFSET+n1*NODE_BYTE_SIZE,n1InDegree); 
-			g.nodeBuf.putInt(NODE_OUT_CONNECTION_START_OFFSET+n1*NODE_BYTE_SIZE,n1OutStart); 
-			g.nodeBuf.putInt(NODE_OUT_DEGREE_OFFSET+n1*NODE_BYTE_SIZE,n1OutDegree); 
+			g.nodeBuf.putLong(NODE_IN_CONNECTION_START_OFFSET+(long)n1*NODE_BYTE_SIZE,n1InStart); 
+			g.nodeBuf.putInt(NODE_IN_DEGREE_OFFSET+(long)n1*NODE_BYTE_SIZE,n1InDegree); 
+			g.nodeBuf.putLong(NODE_OUT_CONNECTION_START_OFFSET+(long)n1*NODE_BYTE_SIZE,n1OutStart); 
+			g.nodeBuf.putInt(NODE_OUT_DEGREE_OFFSET+(long)n1*NODE_BYTE_SIZE,n1OutDegree); 
 		}
 
 		return g;
@@ -5007,24 +6233,27 @@ Debugger.outputTime("time to create new time slice total nodes "+g2.getNumberOfN
 	 * @throws Exception Throws if the new FastGraph does not build correctly. Most likely out of memory error.
 	 */
 	public FastGraph generateGraphByRelabellingNode(int id, String label) throws Exception {
+		if(compressedConnections) {
+			return uncompressedCopy().generateGraphByRelabellingNode(id,label);
+		}
 		FastGraph g = new FastGraph(this.numberOfNodes,this.numberOfEdges,this.direct);
 		// nodeLabelBuf and edgeLabelBuf no longer allocated in init
-		int nodeLabelBufSize = this.nodeLabelBuf.capacity();
+		long nodeLabelBufSize = this.nodeLabelBuf.capacity();
 		String originalLabel = this.getNodeLabel(id);
 		
 		if(label.length() > originalLabel.length()) { // if the label is bigger, a new label is needed at the end of the buffer
-			nodeLabelBufSize += label.length()*2;
+			nodeLabelBufSize += label.length()*2L;
 		}
 		if(!direct) {
-			g.nodeLabelBuf = ByteBuffer.allocate(nodeLabelBufSize);
-			g.edgeLabelBuf = ByteBuffer.allocate(edgeLabelBuf.capacity());
+			g.nodeLabelBuf = SegmentedBuffer.allocate(nodeLabelBufSize);
+			g.edgeLabelBuf = SegmentedBuffer.allocate(edgeLabelBuf.capacity());
 			// connectionBuf may be set to wrong size in init()
-			g.connectionBuf = ByteBuffer.allocate(this.connectionBuf.capacity());
+			g.connectionBuf = SegmentedBuffer.allocate(this.connectionBuf.capacity());
 		} else {
-			g.nodeLabelBuf = ByteBuffer.allocateDirect(nodeLabelBufSize);
-			g.edgeLabelBuf = ByteBuffer.allocateDirect(edgeLabelBuf.capacity());
+			g.nodeLabelBuf = SegmentedBuffer.allocateDirect(nodeLabelBufSize);
+			g.edgeLabelBuf = SegmentedBuffer.allocateDirect(edgeLabelBuf.capacity());
 			// connectionBuf may be set to wrong size in init()
-			g.connectionBuf = ByteBuffer.allocate(this.connectionBuf.capacity());
+			g.connectionBuf = SegmentedBuffer.allocate(this.connectionBuf.capacity());
 		}
 
 		this.nodeBuf.rewind();
@@ -5045,18 +6274,18 @@ Debugger.outputTime("time to create new time slice total nodes "+g2.getNumberOfN
 		g.edgeLabelBuf.put(this.edgeLabelBuf);
 		g.connectionBuf.put(this.connectionBuf);
 
-		int labelStart = 0;		if(label.length() > originalLabel.length()) { // if the new offset needed, it is the end of the old buffer
+		long labelStart = 0;		if(label.length() > originalLabel.length()) { // if the new offset needed, it is the end of the old buffer
 			labelStart = this.nodeLabelBuf.capacity();
-			g.nodeBuf.putInt(NODE_LABEL_START_OFFSET+id*NODE_BYTE_SIZE,labelStart);
+			g.nodeBuf.putLong(NODE_LABEL_START_OFFSET+(long)id*NODE_BYTE_SIZE,labelStart);
 		} else { // label start offset not changed
-			labelStart = this.nodeBuf.getInt(NODE_LABEL_START_OFFSET+id*NODE_BYTE_SIZE);
+			labelStart = this.nodeBuf.getLong(NODE_LABEL_START_OFFSET+(long)id*NODE_BYTE_SIZE);
 		}
 
 		short labelLength = (short)(label.length());		
-		g.nodeBuf.putShort(NODE_LABEL_LENGTH_OFFSET+id*NODE_BYTE_SIZE,labelLength); // label size
+		g.nodeBuf.putShort(NODE_LABEL_LENGTH_OFFSET+(long)id*NODE_BYTE_SIZE,labelLength); // label size
 		
 		for(int i = 0; i < label.length(); i++) {
-			int offset = labelStart+i*2;
+			long offset = labelStart+i*2L;
 			g.nodeLabelBuf.putChar(offset,label.charAt(i));
 		}
 		
@@ -5066,85 +6295,18 @@ Debugger.outputTime("time to create new time slice total nodes "+g2.getNumberOfN
 
 
 	/**
-	 * @return a list of connected components
+	 * Components are found in one pass with {@link ConnectedComponents}, use that directly
+	 * for the component of each node, or to build only some of the components.
+	 * 
+	 * @return a list of connected components, in order of their lowest node, each with its nodes in
+	 * breadth first order from that node, see {@link ConnectedComponents#getComponentGraph(int)}
 	 */
 	public ArrayList<FastGraph> breakIntoConnectedComponents() {
-		ArrayList<FastGraph> ret = new ArrayList<>();
-		Connected c = new Connected();
-		
-		FastGraph g = this;
-		int i = 0;
-		while(g.getNumberOfNodes() > 0) {
-			
-			// first build the new connected component
-			c.connected(g);
-			LinkedList<Integer> connectedNodes = c.getVisitedNodes();
-			
-			HashSet<Integer> connectedNodeSet = new HashSet(connectedNodes.size()*3); // to speed up contains test
-			ArrayList<NodeStructure> nsList = new ArrayList<>();
-			ArrayList<EdgeStructure> esList = new ArrayList<>();
-			HashMap<Integer,Integer> nodeMapping = new HashMap<>(); // mapping from old to new node ids
-
-			int id = 0;
-			for(Integer n : connectedNodes) {
-				NodeStructure ns = g.generateNodeStructure(n);
-				ns.setId(id);
-				nsList.add(ns);
-
-				nodeMapping.put(n, id);
-				connectedNodeSet.add(n);
-				id++;
-			}
-
-			// this could be done through running through connected edges of connectedNodes
-			// but this will do for now
-			for(int e = 0; e < g.getNumberOfEdges(); e++) {
-				int node1 = g.getEdgeNode1(e);
-				int node2 = g.getEdgeNode2(e);
-				if(connectedNodeSet.contains(node1)) {
-					EdgeStructure es = g.generateEdgeStructure(e);
-					es.setNode1(nodeMapping.get(node1));
-					es.setNode2(nodeMapping.get(node2));
-					esList.add(es);
-				}
-			}
-			FastGraph gSub = structureFactory(g.getName()+"-"+i,g.getGeneration(),nsList,esList,g.getDirect());
-			ret.add(gSub);
-			
-			// now take the rest of the graph and form the subgraph
-			
-			nsList = new ArrayList<>();
-			esList = new ArrayList<>();
-			nodeMapping = new HashMap<>(); // mapping from old to new node ids
-			id = 0;
-			for(int n = 0; n < g.getNumberOfNodes(); n++) {
-				if(connectedNodeSet.contains(n)) {
-					continue;
-				}
-				NodeStructure ns = g.generateNodeStructure(n);
-				ns.setId(id);
-				nsList.add(ns);
-
-				nodeMapping.put(n, id);
-				id++;
-			}
-
-			for(int e = 0; e < g.getNumberOfEdges(); e++) {
-				int node1 = g.getEdgeNode1(e);
-				int node2 = g.getEdgeNode2(e);
-				if(!connectedNodeSet.contains(node1)) {
-					EdgeStructure es = g.generateEdgeStructure(e);
-					es.setNode1(nodeMapping.get(node1));
-					es.setNode2(nodeMapping.get(node2));
-					esList.add(es);
-				}
-			}
-
-			g = structureFactory(g.getName(),g.getGeneration(),nsList,esList,g.getDirect());
-			
-			i++;
+		ConnectedComponents components = new ConnectedComponents(this);
+		ArrayList<FastGraph> ret = new ArrayList<>(components.getNumberOfComponents());
+		for(int i = 0; i < components.getNumberOfComponents(); i++) {
+			ret.add(components.getComponentGraph(i));
 		}
-
 		return ret;
 	}
 	
@@ -0,0 +1,470 @@
+package uk.ac.kent.dover.fastGraph;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+/**
+ * Saves and loads a FastGraph as a single file, an alternative to the six files of
+ * {@link FastGraph#saveBuffers(String, String)}.
+ * <p>
+ * Layout, all values big endian:
+ * </p>
+ * <ul>
+ * <li>header, one page: magic (long), format version (int), flags (int, bit 0 direct, bit 1 compressed connections, bit 2 sorted connections),
+ * number of nodes (int), number of edges (int), generation (int), number of sections (int),
+ * then a section table with an entry of type (int), reserved (int), offset (long), length (long), CRC-32 (long)
+ * for each section, then a CRC-32 (int) of the header up to that point.</li>
+ * <li>sections: the graph name in UTF-8, then the node, edge, connection, node label and edge label buffers.
+ * From version 2 these are followed by the node and edge label id buffers and the node and edge
+ * {@link LabelDictionary} sections, and then the optional node and edge {@link LabelIndex} sections. Each section starts on a page boundary, so can be memory mapped
+ * straight from the file.</li>
+ * </ul>
+ * <p>
+ * Sections are found by their type in the section table, so a reader ignores section types it does
+ * not know, and version 1 files, which only have the first six sections, still load. Before version 3 the
+ * label and connection start offsets in the node and edge records were 32 bit values, those records are
+ * converted to the current layout when loaded, so are not mapped. The label
+ * dictionary and label index sections are only written if the graph already has them, saving does not
+ * build them. Files without them load with the dictionaries and indexes built when first used.
+ * </p>
+ * <p>
+ * The file is written to a temporary file in the same directory, which is then moved over the target,
+ * so readers never see a partly written graph. The temporary file is deleted if writing fails. Loading checks the magic number, version and header
+ * checksum. Section checksums are checked when the buffers are read into memory, but not when they are
+ * mapped, as that would touch every page; use {@link #verify(String)} to check a file before mapping.
+ * </p>
+ *
+ * @author Peter Rodgers
+ *
+ */
+public class GraphContainer {
+
+	public static final long MAGIC = 0x4641535447524150L; // "FASTGRAP"
+	public static final int VERSION = 3;
+	public static final int PAGE_SIZE = 4096;
+	public static final String EXTENSION = ".fastgraph";
+
+	public static final int FLAG_DIRECT = 1;
+	public static final int FLAG_COMPRESSED_CONNECTIONS = 2;
+	public static final int FLAG_SORTED_CONNECTIONS = 4;
+
+	public static final int SECTION_NAME = 0;
+	public static final int SECTION_NODE = 1;
+	public static final int SECTION_EDGE = 2;
+	public static final int SECTION_CONNECTION = 3;
+	public static final int SECTION_NODE_LABEL = 4;
+	public static final int SECTION_EDGE_LABEL = 5;
+	public static final int SECTION_NODE_LABEL_ID = 6;
+	public static final int SECTION_EDGE_LABEL_ID = 7;
+	public static final int SECTION_NODE_LABEL_DICTIONARY = 8;
+	public static final int SECTION_EDGE_LABEL_DICTIONARY = 9;
+	public static final int SECTION_NODE_LABEL_INDEX = 10;
+	public static final int SECTION_EDGE_LABEL_INDEX = 11;
+	public static final int NUMBER_OF_SECTIONS = 12; // the most written by this version
+	public static final int REQUIRED_SECTIONS = 6; // sections 0 to 5 must be in every container
+	private static final int MAXIMUM_SECTIONS = 64;
+
+	private static final int SECTION_TABLE_OFFSET = 32;
+	private static final int SECTION_ENTRY_SIZE = 32;
+
+
+	/**
+	 * No instances, static methods only.
+	 */
+	private GraphContainer() {
+	}
+
+
+	/**
+	 * Save a graph to a single container file. Label dictionaries and indexes are saved if the graph
+	 * has them, but are not built, so the graph is not changed.
+	 *
+	 * @param g the graph to save
+	 * @param fileName the file to create or replace
+	 * @param parallel if true the sections are checksummed and written by several threads, if false
+	 * everything is written in order by the calling thread
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(FastGraph g, String fileName, boolean parallel) throws IOException {
+
+		// only the sections the graph already has, the section table records which are present
+		int numberOfSections = REQUIRED_SECTIONS;
+		boolean labelDictionaries = g.hasLabelDictionaries();
+		boolean labelIndexes = labelDictionaries && g.hasLabelIndexes();
+		if(labelIndexes) {
+			numberOfSections = NUMBER_OF_SECTIONS;
+		} else if(labelDictionaries) {
+			numberOfSections = SECTION_NODE_LABEL_INDEX;
+		}
+		SegmentedBuffer[] sections = new SegmentedBuffer[numberOfSections];
+		sections[SECTION_NAME] = SegmentedBuffer.wrap(ByteBuffer.wrap(g.getName().getBytes(StandardCharsets.UTF_8)));
+		sections[SECTION_NODE] = g.getSegmentedNodeBuf();
+		sections[SECTION_EDGE] = g.getSegmentedEdgeBuf();
+		sections[SECTION_CONNECTION] = g.getSegmentedConnectionBuf();
+		sections[SECTION_NODE_LABEL] = g.getSegmentedNodeLabelBuf();
+		sections[SECTION_EDGE_LABEL] = g.getSegmentedEdgeLabelBuf();
+		if(labelDictionaries) {
+			sections[SECTION_NODE_LABEL_ID] = g.getSegmentedNodeLabelIdBuf();
+			sections[SECTION_EDGE_LABEL_ID] = g.getSegmentedEdgeLabelIdBuf();
+			sections[SECTION_NODE_LABEL_DICTIONARY] = g.getNodeLabelDictionary().toBuffer(false);
+			sections[SECTION_EDGE_LABEL_DICTIONARY] = g.getEdgeLabelDictionary().toBuffer(false);
+		}
+		if(labelIndexes) {
+			sections[SECTION_NODE_LABEL_INDEX] = g.getNodeLabelIndex().getBuffer();
+			sections[SECTION_EDGE_LABEL_INDEX] = g.getEdgeLabelIndex().getBuffer();
+		}
+
+		long[] offsets = new long[numberOfSections];
+		long fileSize = PAGE_SIZE;
+		for(int i = 0; i < numberOfSections; i++) {
+			offsets[i] = fileSize;
+			fileSize = pageAlign(fileSize+sections[i].capacity());
+		}
+
+		int flags = 0;
+		if(g.getDirect()) {
+			flags |= FLAG_DIRECT;
+		}
+		if(g.isConnectionsCompressed()) {
+			flags |= FLAG_COMPRESSED_CONNECTIONS;
+		}
+		if(g.isConnectionsSorted()) {
+			flags |= FLAG_SORTED_CONNECTIONS;
+		}
+
+		Path target = new File(fileName).getAbsoluteFile().toPath();
+		if(target.getParent() != null) {
+			Files.createDirectories(target.getParent());
+		}
+		Path temp = target.resolveSibling(target.getFileName()+".tmp");
+
+		try {
+			FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			try {
+				long[] crcs;
+				if(parallel) {
+					crcs = writeSectionsInParallel(channel, sections, offsets);
+					writeFully(channel, header(g, flags, sections, offsets, crcs), 0);
+				} else {
+					crcs = new long[numberOfSections];
+					for(int i = 0; i < numberOfSections; i++) {
+						crcs[i] = sections[i].crc32();
+					}
+					writeFully(channel, header(g, flags, sections, offsets, crcs), 0);
+					for(int i = 0; i < numberOfSections; i++) {
+						sections[i].writeTo(channel, offsets[i]);
+					}
+				}
+				if(channel.size() < fileSize) {
+					// pad to a whole page, so every section, even an empty one, lies within the file for mapping
+					writeFully(channel, ByteBuffer.allocate(1), fileSize-1);
+				}
+				channel.force(true);
+			} finally {
+				channel.close();
+			}
+
+			try {
+				Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch(AtomicMoveNotSupportedException e) {
+				Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch(IOException | RuntimeException e) {
+			// the target is untouched, so leave nothing else behind
+			try {
+				Files.deleteIfExists(temp);
+			} catch(IOException deleteFailure) {
+				e.addSuppressed(deleteFailure);
+			}
+			throw e;
+		}
+	}
+
+
+	/**
+	 * Checksum and write each section in its own task.
+	 *
+	 * @param channel the file, positional writes are safe from several threads
+	 * @param sections the sections to write
+	 * @param offsets where each section goes
+	 * @return the section checksums
+	 * @throws IOException if a write fails
+	 */
+	private static long[] writeSectionsInParallel(final FileChannel channel, final SegmentedBuffer[] sections, final long[] offsets) throws IOException {
+		int threads = Math.min(sections.length, Runtime.getRuntime().availableProcessors());
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Long>> futures = new ArrayList<Future<Long>>(sections.length);
+			for(int i = 0; i < sections.length; i++) {
+				final int section = i;
+				futures.add(executor.submit(() -> {
+					sections[section].writeTo(channel, offsets[section]);
+					return sections[section].crc32();
+				}));
+			}
+			long[] crcs = new long[sections.length];
+			for(int i = 0; i < sections.length; i++) {
+				crcs[i] = futures.get(i).get();
+			}
+			return crcs;
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while writing sections", e);
+		} catch(ExecutionException e) {
+			if(e.getCause() instanceof IOException) {
+				throw (IOException)e.getCause();
+			}
+			throw new IOException("Failed writing sections", e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+
+	/**
+	 * Load a graph from a container file.
+	 *
+	 * @param fileName the container file
+	 * @param mapped if true the sections are memory mapped read only, if false they are read into new buffers and checksummed
+	 * @return the loaded graph
+	 * @throws IOException if the file cannot be read, is not a container, is a newer version, or fails a checksum
+	 */
+	public static FastGraph read(String fileName, boolean mapped) throws IOException {
+
+		FileChannel channel = FileChannel.open(new File(fileName).toPath(), StandardOpenOption.READ);
+		try {
+			ByteBuffer header = readHeader(channel, fileName);
+			if(!headerChecksumMatches(header)) {
+				throw new IOException("Header checksum failed: "+fileName);
+			}
+			int version = header.getInt(8);
+			int flags = header.getInt(12);
+			byte generation = (byte)header.getInt(24);
+			int numberOfNodes = header.getInt(16);
+			int numberOfEdges = header.getInt(20);
+			boolean direct = (flags & FLAG_DIRECT) != 0;
+			boolean compressed = (flags & FLAG_COMPRESSED_CONNECTIONS) != 0;
+			if(mapped) {
+				direct = true; // as for loadBuffers, anything later generated from a mapped graph is off heap too
+			}
+
+			SegmentedBuffer[] sections = new SegmentedBuffer[MAXIMUM_SECTIONS];
+			int numberOfSections = header.getInt(28);
+			for(int i = 0; i < numberOfSections; i++) {
+				int entry = SECTION_TABLE_OFFSET+i*SECTION_ENTRY_SIZE;
+				int type = header.getInt(entry);
+				long offset = header.getLong(entry+8);
+				long length = header.getLong(entry+16);
+				long crc = header.getLong(entry+24);
+				if(type < 0 || type >= NUMBER_OF_SECTIONS) {
+					continue; // from a later version, not needed to load the graph
+				}
+				boolean heapOnly = type == SECTION_NAME || type == SECTION_NODE_LABEL_DICTIONARY || type == SECTION_EDGE_LABEL_DICTIONARY;
+				if(mapped && !heapOnly) {
+					sections[type] = SegmentedBuffer.map(channel, FileChannel.MapMode.READ_ONLY, offset, length);
+				} else {
+					sections[type] = SegmentedBuffer.allocate(length, direct && !heapOnly);
+					sections[type].readFrom(channel, offset);
+					if(sections[type].crc32() != crc) {
+						throw new IOException("Checksum failed for section "+type+" of "+fileName);
+					}
+				}
+			}
+			for(int i = 0; i < REQUIRED_SECTIONS; i++) {
+				if(sections[i] == null) {
+					throw new IOException("Graph container is missing section "+i+": "+fileName);
+				}
+			}
+			if(version < 3) {
+				sections[SECTION_NODE] = FastGraph.widenNodeRecords(sections[SECTION_NODE], numberOfNodes, direct);
+				sections[SECTION_EDGE] = FastGraph.widenEdgeRecords(sections[SECTION_EDGE], numberOfEdges, direct);
+			}
+
+			byte[] nameBytes = new byte[(int)sections[SECTION_NAME].capacity()];
+			sections[SECTION_NAME].get(nameBytes, 0, nameBytes.length);
+			String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+			FastGraph g = FastGraph.buffersGraphFactory(name, generation, numberOfNodes, numberOfEdges, direct, compressed,
+					sections[SECTION_NODE], sections[SECTION_EDGE], sections[SECTION_CONNECTION],
+					sections[SECTION_NODE_LABEL], sections[SECTION_EDGE_LABEL]);
+			g.setConnectionsSorted((flags & FLAG_SORTED_CONNECTIONS) != 0 || compressed);
+			if(sections[SECTION_NODE_LABEL_ID] != null && sections[SECTION_EDGE_LABEL_ID] != null
+					&& sections[SECTION_NODE_LABEL_DICTIONARY] != null && sections[SECTION_EDGE_LABEL_DICTIONARY] != null) {
+				LabelDictionary nodeDictionary = LabelDictionary.fromBuffer(sections[SECTION_NODE_LABEL_DICTIONARY]);
+				LabelDictionary edgeDictionary = LabelDictionary.fromBuffer(sections[SECTION_EDGE_LABEL_DICTIONARY]);
+				g.setLabelDictionaries(nodeDictionary, sections[SECTION_NODE_LABEL_ID], edgeDictionary, sections[SECTION_EDGE_LABEL_ID]);
+				// older containers have no label indexes, the graph builds them when first needed
+				if(sections[SECTION_NODE_LABEL_INDEX] != null && sections[SECTION_EDGE_LABEL_INDEX] != null) {
+					LabelIndex nodeIndex = LabelIndex.fromBuffer(sections[SECTION_NODE_LABEL_INDEX]);
+					LabelIndex edgeIndex = LabelIndex.fromBuffer(sections[SECTION_EDGE_LABEL_INDEX]);
+					checkLabelIndex(nodeIndex, numberOfNodes, nodeDictionary, fileName);
+					checkLabelIndex(edgeIndex, numberOfEdges, edgeDictionary, fileName);
+					g.setLabelIndexes(nodeIndex, edgeIndex);
+				}
+			}
+			return g;
+		} finally {
+			channel.close();
+		}
+	}
+
+
+	/**
+	 * @param index a loaded label index
+	 * @param count the number of nodes or edges in the graph
+	 * @param dictionary the loaded dictionary the index is for
+	 * @param fileName for error messages
+	 * @throws IOException if the index does not fit the graph and dictionary
+	 */
+	private static void checkLabelIndex(LabelIndex index, int count, LabelDictionary dictionary, String fileName) throws IOException {
+		if(index.getNumberOfElements() != count || index.getNumberOfLabels() != dictionary.size()) {
+			throw new IOException("Label index of "+index.getNumberOfElements()+" elements and "+index.getNumberOfLabels()+" labels does not match the graph: "+fileName);
+		}
+	}
+
+
+	/**
+	 * Checks the header and every section checksum of a container file.
+	 *
+	 * @param fileName the container file
+	 * @return true if all checksums match, false otherwise
+	 * @throws IOException if the file cannot be read or is not a container of a known version
+	 */
+	public static boolean verify(String fileName) throws IOException {
+		FileChannel channel = FileChannel.open(new File(fileName).toPath(), StandardOpenOption.READ);
+		try {
+			ByteBuffer header = readHeader(channel, fileName);
+			if(!headerChecksumMatches(header)) {
+				Debugger.log("Header checksum failed for "+fileName);
+				return false;
+			}
+			int numberOfSections = header.getInt(28);
+			for(int i = 0; i < numberOfSections; i++) {
+				int entry = SECTION_TABLE_OFFSET+i*SECTION_ENTRY_SIZE;
+				SegmentedBuffer section = SegmentedBuffer.map(channel, FileChannel.MapMode.READ_ONLY, header.getLong(entry+8), header.getLong(entry+16));
+				if(section.crc32() != header.getLong(entry+24)) {
+					Debugger.log("Checksum failed for section "+i+" of "+fileName);
+					return false;
+				}
+			}
+			return true;
+		} finally {
+			channel.close();
+		}
+	}
+
+
+	/**
+	 * Read the header page and check it is a container this version can load.
+	 *
+	 * @param channel the file
+	 * @param fileName for error messages
+	 * @return the header
+	 * @throws IOException if the header is missing, not a container or a newer version
+	 */
+	private static ByteBuffer readHeader(FileChannel channel, String fileName) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(PAGE_SIZE);
+		while(header.hasRemaining()) {
+			if(channel.read(header, header.position()) == -1) {
+				throw new IOException("File too short for a graph container header: "+fileName);
+			}
+		}
+		if(header.getLong(0) != MAGIC) {
+			throw new IOException("Not a graph container file: "+fileName);
+		}
+		int version = header.getInt(8);
+		if(version > VERSION) {
+			throw new IOException("Graph container version "+version+" is newer than the supported version "+VERSION+": "+fileName);
+		}
+		int numberOfSections = header.getInt(28);
+		if(numberOfSections < REQUIRED_SECTIONS || numberOfSections > MAXIMUM_SECTIONS) {
+			throw new IOException("Graph container has "+numberOfSections+" sections, expected between "+REQUIRED_SECTIONS+" and "+MAXIMUM_SECTIONS+": "+fileName);
+		}
+		return header;
+	}
+
+
+	/**
+	 * @param header the header page
+	 * @return true if the header checksum matches the header contents
+	 */
+	private static boolean headerChecksumMatches(ByteBuffer header) {
+		int crcOffset = SECTION_TABLE_OFFSET+header.getInt(28)*SECTION_ENTRY_SIZE;
+		CRC32 crc = new CRC32();
+		crc.update(header.array(), 0, crcOffset);
+		return (int)crc.getValue() == header.getInt(crcOffset);
+	}
+
+
+	/**
+	 * Build the header page.
+	 *
+	 * @param g the graph
+	 * @param flags the flag bits
+	 * @param sections the section contents, in type order
+	 * @param offsets the section file offsets
+	 * @param crcs the section checksums
+	 * @return the header, ready to write
+	 */
+	private static ByteBuffer header(FastGraph g, int flags, SegmentedBuffer[] sections, long[] offsets, long[] crcs) {
+		ByteBuffer header = ByteBuffer.allocate(PAGE_SIZE);
+		header.putLong(0, MAGIC);
+		header.putInt(8, VERSION);
+		header.putInt(12, flags);
+		header.putInt(16, g.getNumberOfNodes());
+		header.putInt(20, g.getNumberOfEdges());
+		header.putInt(24, g.getGeneration());
+		header.putInt(28, sections.length);
+		for(int i = 0; i < sections.length; i++) {
+			int entry = SECTION_TABLE_OFFSET+i*SECTION_ENTRY_SIZE;
+			header.putInt(entry, i);
+			header.putLong(entry+8, offsets[i]);
+			header.putLong(entry+16, sections[i].capacity());
+			header.putLong(entry+24, crcs[i]);
+		}
+		int crcOffset = SECTION_TABLE_OFFSET+sections.length*SECTION_ENTRY_SIZE;
+		CRC32 crc = new CRC32();
+		crc.update(header.array(), 0, crcOffset);
+		header.putInt(crcOffset, (int)crc.getValue());
+		return header;
+	}
+
+
+	/**
+	 * @param buf written from position 0 to its limit
+	 * @param channel the file
+	 * @param filePosition where to write
+	 * @throws IOException if the write fails
+	 */
+	private static void writeFully(FileChannel channel, ByteBuffer buf, long filePosition) throws IOException {
+		buf.clear();
+		while(buf.hasRemaining()) {
+			filePosition += channel.write(buf, filePosition);
+		}
+	}
+
+
+	/**
+	 * @param offset a file offset
+	 * @return the smallest page boundary not less than offset
+	 */
+	private static long pageAlign(long offset) {
+		return (offset+PAGE_SIZE-1) & ~(long)(PAGE_SIZE-1);
+	}
+
+}
@@ -45,7 +45,7 @@ public class InducedSubgraph {
 		//don't do this in a constructor, as the node buffer might not have been built or populated yet
 		//Random r = g.getRandomGen();
 		if (r == null) {
-			long seed = g.getNodeBuf().getLong(1); //used to ensure the random is the same for each graph
+			long seed = g.getRandomSeed(1); //used to ensure the random is the same for each graph
 			r = new Random(seed);
 			//g.setRandomGen(r);
 		}		
@@ -0,0 +1,58 @@
+package uk.ac.kent.dover.fastGraph;
+
+/**
+ * Hashes a graph to a value that is equal for isomorphic graphs, for putting graphs into buckets
+ * before an exact isomorphism test. Graphs that are not isomorphic can share a hash, which only
+ * costs extra exact tests, so hashers trade speed against how well they separate graphs.
+ *
+ * @author Peter Rodgers
+ *
+ */
+public abstract class InvariantHasher {
+
+	/**
+	 * @param g the graph to hash, as a subgraph so no FastGraph needs to be built
+	 * @return the hash, equal for isomorphic graphs
+	 */
+	public abstract long hash(SubgraphView g);
+
+
+	/**
+	 * @param g the graph to hash
+	 * @return the hash, equal for isomorphic graphs
+	 */
+	public long hash(FastGraph g) {
+		return hash(SubgraphView.whole(g));
+	}
+
+
+	/**
+	 * The 64 bit finaliser of MurmurHash3, which spreads nearby values to unrelated values, so every
+	 * bit of the result depends on every bit of the input. Used to combine values into hashes and
+	 * to spread seeds.
+	 *
+	 * @param z the value to mix
+	 * @return the mixed value
+	 */
+	static long mix64(long z) {
+		z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+		z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return z ^ (z >>> 33);
+	}
+
+
+	/**
+	 * @param hash a hash from this hasher
+	 * @return the hash as a fixed width hexadecimal String, for use in keys and file names
+	 */
+	public static String toKey(long hash) {
+		String hex = Long.toHexString(hash);
+		StringBuilder sb = new StringBuilder(16);
+		for(int i = hex.length(); i < 16; i++) {
+			sb.append('0');
+		}
+		sb.append(hex);
+		return sb.toString();
+	}
+
+}
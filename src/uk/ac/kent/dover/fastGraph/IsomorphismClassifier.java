@@ -0,0 +1,293 @@
+package uk.ac.kent.dover.fastGraph;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Partitions a collection of graphs into isomorphism classes. Every graph is hashed with a
+ * {@link WeisfeilerLehmanHasher}, and a graph alone in its bucket is alone in its class. Graphs sharing
+ * a bucket are given a {@link CanonicalLabelling}, and grouped by canonical form, so no pairwise tests are made.
+ * Both stages split the graphs between the threads of a ForkJoinPool, so that a few large buckets are
+ * shared between threads.
+ * <p>
+ * Classes are in the order of their first graph in the collection, and their members in collection order,
+ * so the result does not depend on the number of threads. The graphs must not change while being partitioned.
+ * Node ages are ignored by the exact test, but graphs are only put in the same bucket if they have the
+ * same numbers of nodes at each relative age.
+ * </p>
+ *
+ * @author Peter Rodgers
+ *
+ */
+public class IsomorphismClassifier {
+
+	private static final int PARALLEL_THRESHOLD = 1000; // fewer graphs are done on the calling thread
+	private static final int TASKS_PER_THREAD = 8; // more tasks than threads, so threads that finish early take more work
+
+	private final boolean directed;
+	private final boolean nodeLabels;
+	private final int threads;
+	private final WeisfeilerLehmanHasher hasher;
+
+
+	/**
+	 * Classify undirected graphs, ignoring node labels, using a thread for each processor.
+	 */
+	public IsomorphismClassifier() {
+		this(false, false, Runtime.getRuntime().availableProcessors());
+	}
+
+
+	/**
+	 * @param directed true if the graphs are treated as directed, false if undirected
+	 * @param nodeLabels if true node labels must be equal for nodes to match, if false they are ignored
+	 * @param threads the most threads to use, the calling thread is used alone if this is 1 or there are few graphs
+	 */
+	public IsomorphismClassifier(boolean directed, boolean nodeLabels, int threads) {
+		this.directed = directed;
+		this.nodeLabels = nodeLabels;
+		this.threads = Math.max(1, threads);
+		hasher = new WeisfeilerLehmanHasher(directed, nodeLabels);
+	}
+
+
+	/**
+	 * @param graphs the graphs to partition
+	 * @return the isomorphism classes, in order of their first graph
+	 */
+	public ArrayList<IsomorphismClass<FastGraph>> partition(Collection<FastGraph> graphs) {
+		List<FastGraph> items = new ArrayList<FastGraph>(graphs);
+		SubgraphView[] views = new SubgraphView[items.size()];
+		for(int i = 0; i < views.length; i++) {
+			views[i] = SubgraphView.whole(items.get(i));
+		}
+		return partition(items, views);
+	}
+
+
+	/**
+	 * Partition subgraphs without building a FastGraph for each.
+	 *
+	 * @param views the subgraphs to partition
+	 * @return the isomorphism classes, in order of their first subgraph
+	 */
+	public ArrayList<IsomorphismClass<SubgraphView>> partitionViews(Collection<SubgraphView> views) {
+		List<SubgraphView> items = new ArrayList<SubgraphView>(views);
+		return partition(items, items.toArray(new SubgraphView[items.size()]));
+	}
+
+
+	/**
+	 * @param items the graphs as given
+	 * @param views a view of each graph
+	 * @return the isomorphism classes, in order of their first graph
+	 */
+	private <G> ArrayList<IsomorphismClass<G>> partition(List<G> items, SubgraphView[] views) {
+long time = Debugger.createTime();
+		int count = views.length;
+		boolean parallel = threads > 1 && count >= PARALLEL_THRESHOLD;
+
+		// hash every graph
+		final long[][] hashes = new long[count][];
+		final SubgraphView[] finalViews = views;
+		run(count, parallel, (start, end) -> {
+			for(int i = start; i < end; i++) {
+				hashes[i] = hasher.hash128(finalViews[i]);
+			}
+		});
+
+		// bucket on the hash, buckets in order of their first graph
+		HashMap<String,Integer> bucketIds = new HashMap<String,Integer>();
+		int[] bucketOf = new int[count];
+		ArrayList<int[]> bucketSizes = new ArrayList<int[]>();
+		for(int i = 0; i < count; i++) {
+			String key = InvariantHasher.toKey(hashes[i][0])+InvariantHasher.toKey(hashes[i][1]);
+			Integer bucket = bucketIds.get(key);
+			if(bucket == null) {
+				bucket = bucketIds.size();
+				bucketIds.put(key, bucket);
+				bucketSizes.add(new int[1]);
+			}
+			bucketOf[i] = bucket;
+			bucketSizes.get(bucket)[0]++;
+		}
+Debugger.outputTime("hashed "+count+" graphs into "+bucketIds.size()+" buckets",time);
+
+		// canonical forms only for graphs that share a bucket
+		int shared = 0;
+		for(int i = 0; i < count; i++) {
+			if(bucketSizes.get(bucketOf[i])[0] > 1) {
+				shared++;
+			}
+		}
+		final int[] toLabel = new int[shared];
+		shared = 0;
+		for(int i = 0; i < count; i++) {
+			if(bucketSizes.get(bucketOf[i])[0] > 1) {
+				toLabel[shared] = i;
+				shared++;
+			}
+		}
+		final String[] forms = new String[count];
+		run(toLabel.length, parallel && toLabel.length >= PARALLEL_THRESHOLD, (start, end) -> {
+			for(int j = start; j < end; j++) {
+				int i = toLabel[j];
+				forms[i] = new CanonicalLabelling(finalViews[i], directed, nodeLabels, false).getCanonicalString();
+			}
+		});
+
+		// group, classes in order of their first graph
+		HashMap<String,Integer> classIds = new HashMap<String,Integer>();
+		int[] classOf = new int[count];
+		ArrayList<int[]> classSizes = new ArrayList<int[]>();
+		ArrayList<Integer> representatives = new ArrayList<Integer>();
+		for(int i = 0; i < count; i++) {
+			Integer c = null;
+			String key = null;
+			if(forms[i] != null) {
+				key = bucketOf[i]+":"+forms[i];
+				c = classIds.get(key);
+			}
+			if(c == null) {
+				c = representatives.size();
+				representatives.add(i);
+				classSizes.add(new int[1]);
+				if(key != null) {
+					classIds.put(key, c);
+				}
+			}
+			classOf[i] = c;
+			classSizes.get(c)[0]++;
+		}
+
+		ArrayList<int[]> members = new ArrayList<int[]>(representatives.size());
+		for(int c = 0; c < representatives.size(); c++) {
+			members.add(new int[classSizes.get(c)[0]]);
+		}
+		int[] filled = new int[representatives.size()];
+		for(int i = 0; i < count; i++) {
+			int c = classOf[i];
+			members.get(c)[filled[c]] = i;
+			filled[c]++;
+		}
+		ArrayList<IsomorphismClass<G>> ret = new ArrayList<IsomorphismClass<G>>(representatives.size());
+		for(int c = 0; c < representatives.size(); c++) {
+			ret.add(new IsomorphismClass<G>(items.get(representatives.get(c)), members.get(c)));
+		}
+Debugger.outputTime("found "+ret.size()+" isomorphism classes, "+toLabel.length+" canonical labellings",time);
+		return ret;
+	}
+
+
+	/**
+	 * Run work over a range of indexes, split into chunks on a ForkJoinPool if parallel.
+	 *
+	 * @param count the number of indexes
+	 * @param parallel true to use the pool, false to run on the calling thread
+	 * @param work the work for a chunk of indexes
+	 */
+	private void run(int count, boolean parallel, RangeTask work) {
+		if(!parallel) {
+			work.run(0, count);
+			return;
+		}
+		int numberOfTasks = Math.min(count, threads*TASKS_PER_THREAD);
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(numberOfTasks);
+		long chunk = (count+numberOfTasks-1)/numberOfTasks;
+		for(int t = 0; t < numberOfTasks; t++) {
+			final int start = (int)Math.min(count, t*chunk);
+			final int end = (int)Math.min(count, (t+1)*chunk);
+			tasks.add(() -> {
+				work.run(start, end);
+				return null;
+			});
+		}
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			for(Future<Void> f : pool.invokeAll(tasks)) {
+				f.get();
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			// each index is worked on alone, so finish on this thread
+			work.run(0, count);
+		} catch(ExecutionException e) {
+			if(e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException)e.getCause();
+			}
+			throw new IllegalStateException("Failed partitioning graphs", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+
+	/**
+	 * Work on the indexes from start to end-1.
+	 */
+	private interface RangeTask {
+		void run(int start, int end);
+	}
+
+
+	/**
+	 * One isomorphism class of a partition.
+	 *
+	 * @param <G> the type of graph partitioned
+	 */
+	public static class IsomorphismClass<G> {
+
+		private final G representative;
+		private final int[] members;
+
+
+		/**
+		 * @param representative the first graph in the class
+		 * @param members the positions in the partitioned collection of the graphs in the class
+		 */
+		private IsomorphismClass(G representative, int[] members) {
+			this.representative = representative;
+			this.members = members;
+		}
+
+
+		/**
+		 * @return the first graph of the class in the partitioned collection
+		 */
+		public G getRepresentative() {
+			return representative;
+		}
+
+
+		/**
+		 * @return the position of the representative in the partitioned collection
+		 */
+		public int getRepresentativeIndex() {
+			return members[0];
+		}
+
+
+		/**
+		 * @return the number of graphs in the class
+		 */
+		public int getCount() {
+			return members.length;
+		}
+
+
+		/**
+		 * @return the positions in the partitioned collection of the graphs in the class, in increasing order, a new array
+		 */
+		public int[] getMembers() {
+			return members.clone();
+		}
+
+	}
+
+}
@@ -0,0 +1,349 @@
+package uk.ac.kent.dover.fastGraph;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Counts and times of {@link ExactIsomorphism} tests: how many tests were made, the filter stage
+ * that rejected each failed test, and the time spent in tests, in each stage and in the brute force search. The counters
+ * are LongAdders, so any number of threads can test isomorphism against one set of stats without losing
+ * counts. Reading while tests run gives a recent value rather than an exact snapshot.
+ * <p>
+ * Each test is also a Java Flight Recorder event, with the stage that decided it and the time of each stage, and each brute force search
+ * a second event, so a recording shows where the time goes. Events cost almost nothing unless a recording
+ * has them enabled.
+ * </p>
+ *
+ * @author Peter Rodgers
+ *
+ */
+public class IsomorphismStats {
+
+	/**
+	 * The filter stages of a test, in the order they are tried. A test that fails is counted against
+	 * the stage that rejected it.
+	 */
+	public enum Stage {
+		CONNECTEDNESS("Connectedness"),
+		NODE_COUNT("Node Count"),
+		EDGE_COUNT("Edge Count"),
+		DEGREES("Degree Comparison"),
+		EIGENVALUES("Eigenvalues"),
+		NODE_MATCHES("Node Matches"),
+		BRUTE_FORCE("Brute Force");
+
+		private final String description;
+
+		Stage(String description) {
+			this.description = description;
+		}
+
+		/**
+		 * @return the name of the stage for reports
+		 */
+		public String getDescription() {
+			return description;
+		}
+	}
+
+
+	/**
+	 * A test of one graph against the graph of an ExactIsomorphism, covering the whole test.
+	 */
+	@Name("uk.ac.kent.dover.fastGraph.IsomorphismTest")
+	@Label("Isomorphism Test")
+	@Category({"FastGraph", "Isomorphism"})
+	@Description("A test for an exact isomorphism, with the filter stage that decided it")
+	static class TestEvent extends Event {
+		@Label("Stage")
+		@Description("The stage that rejected the graph, or Isomorphic")
+		String stage;
+
+		@Label("Isomorphic")
+		boolean isomorphic;
+
+		@Label("Directed")
+		boolean directed;
+
+		@Label("Nodes")
+		int nodes;
+
+		@Label("Edges")
+		int edges;
+
+		@Label("Connectedness Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long connectednessTime;
+
+		@Label("Count Time")
+		@Description("Comparing the numbers of nodes and edges")
+		@Timespan(Timespan.NANOSECONDS)
+		long countTime;
+
+		@Label("Degree Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long degreeTime;
+
+		@Label("Eigenvalue Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long eigenvalueTime;
+
+		@Label("Node Match Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long nodeMatchTime;
+
+		@Label("Brute Force Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long bruteForceTime;
+
+		/**
+		 * @param stage a stage of the test
+		 * @param nanos the time the stage took
+		 */
+		void addStageTime(Stage stage, long nanos) {
+			switch(stage) {
+			case CONNECTEDNESS:
+				connectednessTime += nanos;
+				break;
+			case NODE_COUNT:
+			case EDGE_COUNT:
+				countTime += nanos;
+				break;
+			case DEGREES:
+				degreeTime += nanos;
+				break;
+			case EIGENVALUES:
+				eigenvalueTime += nanos;
+				break;
+			case NODE_MATCHES:
+				nodeMatchTime += nanos;
+				break;
+			case BRUTE_FORCE:
+				bruteForceTime += nanos;
+				break;
+			}
+		}
+	}
+
+
+	/**
+	 * The backtracking search of a test, reached when no filter rejected the graph.
+	 */
+	@Name("uk.ac.kent.dover.fastGraph.IsomorphismBruteForce")
+	@Label("Isomorphism Brute Force")
+	@Category({"FastGraph", "Isomorphism"})
+	@Description("The backtracking search for a node mapping in an exact isomorphism test")
+	static class BruteForceEvent extends Event {
+		@Label("Isomorphic")
+		boolean isomorphic;
+
+		@Label("Directed")
+		boolean directed;
+
+		@Label("Nodes")
+		int nodes;
+	}
+
+
+	private final LongAdder numberOfTests = new LongAdder();
+	private final LongAdder succeeded = new LongAdder();
+	private final LongAdder[] failures = new LongAdder[Stage.values().length];
+	private final LongAdder testNanos = new LongAdder();
+	private final LongAdder[] stageNanos = new LongAdder[Stage.values().length];
+	private final LongAdder numberOfBruteForceSearches = new LongAdder();
+	private final LongAdder bruteForceNanos = new LongAdder();
+
+
+	/**
+	 * All counts start at zero.
+	 */
+	public IsomorphismStats() {
+		for(int i = 0; i < failures.length; i++) {
+			failures[i] = new LongAdder();
+			stageNanos[i] = new LongAdder();
+		}
+	}
+
+
+	/**
+	 * Count the start of a test of a connected graph.
+	 */
+	void testStarted() {
+		numberOfTests.increment();
+	}
+
+
+	/**
+	 * @param stage the stage that rejected the graph
+	 * @param nanos the time taken by the test
+	 */
+	void failed(Stage stage, long nanos) {
+		failures[stage.ordinal()].increment();
+		testNanos.add(nanos);
+	}
+
+
+	/**
+	 * @param nanos the time taken by the test
+	 */
+	void succeeded(long nanos) {
+		succeeded.increment();
+		testNanos.add(nanos);
+	}
+
+
+	/**
+	 * @param stage a stage of a test, which may have passed or rejected the graph
+	 * @param nanos the time taken by the stage
+	 */
+	void stageFinished(Stage stage, long nanos) {
+		stageNanos[stage.ordinal()].add(nanos);
+	}
+
+
+	/**
+	 * @param nanos the time taken by the brute force search
+	 */
+	void bruteForceFinished(long nanos) {
+		numberOfBruteForceSearches.increment();
+		bruteForceNanos.add(nanos);
+	}
+
+
+	/**
+	 * @return the number of tests of connected graphs started, components of disconnected graphs are tested separately
+	 */
+	public long getNumberOfTests() {
+		return numberOfTests.sum();
+	}
+
+
+	/**
+	 * @return the number of tests that found an isomorphism
+	 */
+	public long getNumberOfSucceeded() {
+		return succeeded.sum();
+	}
+
+
+	/**
+	 * @param stage a filter stage
+	 * @return the number of tests rejected by the stage
+	 */
+	public long getNumberOfFailures(Stage stage) {
+		return failures[stage.ordinal()].sum();
+	}
+
+
+	/**
+	 * @return the number of tests that succeeded or were rejected
+	 */
+	public long getNumberOfOutcomes() {
+		long ret = succeeded.sum();
+		for(LongAdder failure : failures) {
+			ret += failure.sum();
+		}
+		return ret;
+	}
+
+
+	/**
+	 * @return the number of brute force searches made
+	 */
+	public long getNumberOfBruteForceSearches() {
+		return numberOfBruteForceSearches.sum();
+	}
+
+
+	/**
+	 * @return the total time of the tests, in milliseconds
+	 */
+	public long getTimeForTests() {
+		return TimeUnit.NANOSECONDS.toMillis(testNanos.sum());
+	}
+
+
+	/**
+	 * @param stage a stage of the tests
+	 * @return the total time spent in the stage, in nanoseconds, as stages are often much shorter than a millisecond
+	 */
+	public long getStageNanos(Stage stage) {
+		return stageNanos[stage.ordinal()].sum();
+	}
+
+
+	/**
+	 * @return the total time of the brute force searches, in milliseconds
+	 */
+	public long getTimeForBruteForce() {
+		return TimeUnit.NANOSECONDS.toMillis(bruteForceNanos.sum());
+	}
+
+
+	/**
+	 * Set all the counts and times to zero. Tests running at the same time may be partly counted.
+	 */
+	public void reset() {
+		numberOfTests.reset();
+		succeeded.reset();
+		for(int i = 0; i < failures.length; i++) {
+			failures[i].reset();
+			stageNanos[i].reset();
+		}
+		testNanos.reset();
+		numberOfBruteForceSearches.reset();
+		bruteForceNanos.reset();
+	}
+
+
+	/**
+	 * Output timing
+	 */
+	public void reportTimes() {
+		long tests = getNumberOfTests();
+		if(tests > 0) {
+			double time = testNanos.sum()/1000000000.0;
+			System.out.println("Isomorphism test average "+(time/tests)+" seconds total tests "+tests+" total time "+time+" seconds");
+			for(Stage stage : Stage.values()) {
+				System.out.println("time in "+stage.getDescription()+" "+(getStageNanos(stage)/1000000000.0)+" seconds");
+			}
+		} else {
+			System.out.println("Isomorphism total tests "+tests);
+		}
+	}
+
+
+	/**
+	 * Output counts
+	 */
+	public void reportFailRatios() {
+		double total = getNumberOfOutcomes();
+		for(Stage stage : Stage.values()) {
+			long count = getNumberOfFailures(stage);
+			System.out.println("fail on "+stage.getDescription()+" "+count+" "+(100.0*count/total)+" % of calls");
+		}
+		long count = getNumberOfSucceeded();
+		System.out.println("succeed "+count+" "+(100.0*count/total)+" "+" % of calls");
+	}
+
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("tests ").append(getNumberOfTests());
+		for(Stage stage : Stage.values()) {
+			sb.append(", fail on ").append(stage.getDescription()).append(" ").append(getNumberOfFailures(stage));
+		}
+		sb.append(", succeed ").append(getNumberOfSucceeded());
+		sb.append(", time ").append(getTimeForTests()).append("ms, brute force time ").append(getTimeForBruteForce()).append("ms");
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,469 @@
+package uk.ac.kent.dover.fastGraph;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.json.JSONWriter;
+
+/**
+ * Reads and writes the json graph format of {@link FastGraph#jsonStringGraphFactory(String, boolean)}
+ * as a stream, without holding the text as a String or building a JSONObject tree.
+ * <p>
+ * Reading pulls tokens from a {@link JSONTokener} and writes each node and edge straight into
+ * the buffers, so the only per element objects are the short lived label and value Strings.
+ * The node and edge counts are not known until the end of the stream, so the buffers grow by
+ * doubling and are trimmed at the end; passing size hints avoids the copies. Keys can come in
+ * any order, values can be numbers or quoted numbers, and unknown keys are skipped. Nodes and edges
+ * can come in any order, but their indexes must run from zero with no gaps or repeats. The
+ * connection lists are built at the end with a counting sort, so each list is in edge index order.
+ * </p>
+ * <p>
+ * Writing uses a {@link JSONWriter}, one node or edge object at a time.
+ * </p>
+ *
+ * @author Peter Rodgers
+ *
+ */
+public class JsonGraphStream {
+
+	private static final long MINIMUM_BUFFER_SIZE = 1024;
+
+	private JSONTokener tokener;
+	private boolean direct;
+
+	private String name = "";
+	private int numberOfNodes = 0;
+	private int numberOfEdges = 0;
+	private SegmentedBuffer nodeBuf;
+	private SegmentedBuffer edgeBuf;
+	private SegmentedBuffer nodeLabelBuf;
+	private SegmentedBuffer edgeLabelBuf;
+	private long nodeLabelSize = 0;
+	private long edgeLabelSize = 0;
+	private BitSet nodesSeen = new BitSet(); // the node indexes read so far
+	private BitSet edgesSeen = new BitSet();
+
+
+	/**
+	 * No public instances, use the static methods.
+	 *
+	 * @param in the json source
+	 * @param nodeHint expected number of nodes
+	 * @param edgeHint expected number of edges
+	 * @param direct if true then off heap buffers, if false then on heap buffers
+	 */
+	private JsonGraphStream(InputStream in, int nodeHint, int edgeHint, boolean direct) {
+		this.tokener = new JSONTokener(new InputStreamReader(in, StandardCharsets.UTF_8));
+		this.direct = direct;
+		nodeBuf = SegmentedBuffer.allocate(Math.max(MINIMUM_BUFFER_SIZE, (long)nodeHint*FastGraph.NODE_BYTE_SIZE), direct);
+		edgeBuf = SegmentedBuffer.allocate(Math.max(MINIMUM_BUFFER_SIZE, (long)edgeHint*FastGraph.EDGE_BYTE_SIZE), direct);
+		nodeLabelBuf = SegmentedBuffer.allocate(Math.max(MINIMUM_BUFFER_SIZE, (long)nodeHint*2), direct);
+		edgeLabelBuf = SegmentedBuffer.allocate(Math.max(MINIMUM_BUFFER_SIZE, (long)edgeHint*2), direct);
+	}
+
+
+	/**
+	 * Build a graph from a json stream. The stream is read to the end of the graph object but not closed.
+	 *
+	 * @param in the json source
+	 * @param direct if true then off heap buffers, if false then on heap buffers
+	 * @return the new graph
+	 * @throws IOException if the stream cannot be read, has too many elements for a FastGraph, or a node or edge index is missing or repeated
+	 * @throws JSONException if the json is badly formed or a node or edge is missing a value
+	 */
+	public static FastGraph read(InputStream in, boolean direct) throws IOException {
+		return read(in, 0, 0, direct);
+	}
+
+
+	/**
+	 * Build a graph from a json stream. The stream is read to the end of the graph object but not closed.
+	 *
+	 * @param in the json source
+	 * @param nodeHint expected number of nodes, buffers are sized for this before reading
+	 * @param edgeHint expected number of edges, buffers are sized for this before reading
+	 * @param direct if true then off heap buffers, if false then on heap buffers
+	 * @return the new graph
+	 * @throws IOException if the stream cannot be read, has too many elements for a FastGraph, or a node or edge index is missing or repeated
+	 * @throws JSONException if the json is badly formed or a node or edge is missing a value
+	 */
+	public static FastGraph read(InputStream in, int nodeHint, int edgeHint, boolean direct) throws IOException {
+		JsonGraphStream reader = new JsonGraphStream(in, nodeHint, edgeHint, direct);
+		try {
+			return reader.readGraph();
+		} catch(JSONException e) {
+			if(e.getCause() instanceof IOException) {
+				throw (IOException)e.getCause();
+			}
+			throw e;
+		}
+	}
+
+
+	/**
+	 * Write a graph as json in the format read by {@link #read(InputStream, boolean)} and
+	 * {@link FastGraph#jsonStringGraphFactory(String, boolean)}. The stream is flushed but not closed.
+	 *
+	 * @param g the graph to write
+	 * @param out the destination
+	 * @throws IOException if the stream cannot be written
+	 */
+	public static void write(FastGraph g, OutputStream out) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		try {
+			JSONWriter json = new JSONWriter(writer);
+			json.object();
+			json.key("name").value(g.getName());
+
+			json.key("nodes").array();
+			for(int n = 0; n < g.getNumberOfNodes(); n++) {
+				json.object();
+				json.key("nodeIndex").value(n);
+				json.key("nodeLabel").value(g.getNodeLabel(n));
+				json.key("nodeWeight").value(g.getNodeWeight(n));
+				json.key("nodeType").value(g.getNodeType(n));
+				json.key("nodeAge").value(g.getNodeAge(n));
+				json.endObject();
+			}
+			json.endArray();
+
+			json.key("edges").array();
+			for(int e = 0; e < g.getNumberOfEdges(); e++) {
+				json.object();
+				json.key("edgeIndex").value(e);
+				json.key("node1").value(g.getEdgeNode1(e));
+				json.key("node2").value(g.getEdgeNode2(e));
+				json.key("edgeLabel").value(g.getEdgeLabel(e));
+				json.key("edgeWeight").value(g.getEdgeWeight(e));
+				json.key("edgeType").value(g.getEdgeType(e));
+				json.key("edgeAge").value(g.getEdgeAge(e));
+				json.endObject();
+			}
+			json.endArray();
+
+			json.endObject();
+		} catch(JSONException e) {
+			if(e.getCause() instanceof IOException) {
+				throw (IOException)e.getCause();
+			}
+			throw e;
+		}
+		writer.flush();
+	}
+
+
+	/**
+	 * Parse the top level object and assemble the graph.
+	 *
+	 * @return the new graph
+	 * @throws IOException if there are too many elements for a FastGraph, or a node or edge index is missing or repeated
+	 */
+	private FastGraph readGraph() throws IOException {
+
+long time = Debugger.createTime();
+		expect('{');
+		char c = tokener.nextClean();
+		while(c != '}') {
+			String key = readKey(c);
+			if(key.equals("nodes")) {
+				readArray(true);
+			} else if(key.equals("edges")) {
+				readArray(false);
+			} else if(key.equals("name")) {
+				name = tokener.nextValue().toString();
+			} else {
+				tokener.nextValue(); // not part of the graph
+			}
+			c = afterValue('}');
+		}
+Debugger.outputTime("read "+numberOfNodes+" nodes and "+numberOfEdges+" edges", time);
+
+		if(nodesSeen.cardinality() != numberOfNodes) {
+			throw new IOException("No node with nodeIndex "+nodesSeen.nextClearBit(0)+" but there are "+numberOfNodes+" nodes");
+		}
+		if(edgesSeen.cardinality() != numberOfEdges) {
+			throw new IOException("No edge with edgeIndex "+edgesSeen.nextClearBit(0)+" but there are "+numberOfEdges+" edges");
+		}
+
+		for(int e = 0; e < numberOfEdges; e++) {
+			long edgeOffset = (long)e*FastGraph.EDGE_BYTE_SIZE;
+			int node1 = edgeBuf.getInt(FastGraph.EDGE_NODE1_OFFSET+edgeOffset);
+			int node2 = edgeBuf.getInt(FastGraph.EDGE_NODE2_OFFSET+edgeOffset);
+			if(node1 < 0 || node1 >= numberOfNodes || node2 < 0 || node2 >= numberOfNodes) {
+				throw new JSONException("Edge "+e+" connects node "+node1+" to node "+node2+" but there are "+numberOfNodes+" nodes");
+			}
+		}
+
+		nodeBuf = trim(nodeBuf, (long)numberOfNodes*FastGraph.NODE_BYTE_SIZE);
+		edgeBuf = trim(edgeBuf, (long)numberOfEdges*FastGraph.EDGE_BYTE_SIZE);
+		nodeLabelBuf = trim(nodeLabelBuf, nodeLabelSize);
+		edgeLabelBuf = trim(edgeLabelBuf, edgeLabelSize);
+		SegmentedBuffer connectionBuf = FastGraph.buildConnections(nodeBuf, edgeBuf, numberOfNodes, numberOfEdges, direct);
+Debugger.outputTime("built connections, import complete", time);
+
+		return FastGraph.buffersGraphFactory(name, (byte)0, numberOfNodes, numberOfEdges, direct, false, nodeBuf, edgeBuf, connectionBuf, nodeLabelBuf, edgeLabelBuf);
+	}
+
+
+	/**
+	 * Read an array of node or edge objects.
+	 *
+	 * @param nodes true for the nodes array, false for the edges array
+	 * @throws IOException if there are too many elements for a FastGraph, or an index is repeated
+	 */
+	private void readArray(boolean nodes) throws IOException {
+		expect('[');
+		char c = tokener.nextClean();
+		while(c != ']') {
+			if(c != '{') {
+				throw tokener.syntaxError("A JSONArray of "+(nodes ? "nodes" : "edges")+" must contain objects");
+			}
+			if(nodes) {
+				readNode();
+			} else {
+				readEdge();
+			}
+			c = afterValue(']');
+		}
+	}
+
+
+	/**
+	 * Read the fields of a node object, the opening brace has been consumed, and store the node.
+	 *
+	 * @throws IOException if the nodeIndex has already been read
+	 */
+	private void readNode() throws IOException {
+		int index = -1;
+		int weight = 0;
+		byte type = 0;
+		byte age = 0;
+		String label = null;
+		int found = 0;
+		char c = tokener.nextClean();
+		while(c != '}') {
+			String key = readKey(c);
+			Object value = tokener.nextValue();
+			if(key.equals("nodeIndex")) {
+				index = intValue(key, value);
+				found |= 1;
+			} else if(key.equals("nodeWeight")) {
+				weight = intValue(key, value);
+				found |= 2;
+			} else if(key.equals("nodeType")) {
+				type = (byte)intValue(key, value);
+				found |= 4;
+			} else if(key.equals("nodeAge")) {
+				age = (byte)intValue(key, value);
+				found |= 8;
+			} else if(key.equals("nodeLabel")) {
+				label = value.toString();
+				found |= 16;
+			}
+			c = afterValue('}');
+		}
+		if(found != 31) {
+			throw tokener.syntaxError("Node needs nodeIndex, nodeWeight, nodeType, nodeAge and nodeLabel");
+		}
+		if(index < 0) {
+			throw tokener.syntaxError("Negative nodeIndex "+index);
+		}
+		if(nodesSeen.get(index)) {
+			throw new IOException("Repeated nodeIndex "+index);
+		}
+		nodesSeen.set(index);
+
+		if(index >= numberOfNodes) {
+			nodeBuf = ensureCapacity(nodeBuf, (long)(index+1)*FastGraph.NODE_BYTE_SIZE);
+			numberOfNodes = index+1;
+		}
+		long nodeOffset = (long)index*FastGraph.NODE_BYTE_SIZE;
+		nodeBuf.putInt(FastGraph.NODE_WEIGHT_OFFSET+nodeOffset, weight);
+		nodeBuf.put(FastGraph.NODE_TYPE_OFFSET+nodeOffset, type);
+		nodeBuf.put(FastGraph.NODE_AGE_OFFSET+nodeOffset, age);
+		nodeBuf.putLong(FastGraph.NODE_LABEL_START_OFFSET+nodeOffset, nodeLabelSize);
+		nodeBuf.putShort(FastGraph.NODE_LABEL_LENGTH_OFFSET+nodeOffset, (short)label.length());
+		nodeLabelBuf = ensureCapacity(nodeLabelBuf, nodeLabelSize+label.length()*2L);
+		nodeLabelSize = putLabel(nodeLabelBuf, nodeLabelSize, label);
+	}
+
+
+	/**
+	 * Read the fields of an edge object, the opening brace has been consumed, and store the edge.
+	 *
+	 * @throws IOException if the edgeIndex has already been read
+	 */
+	private void readEdge() throws IOException {
+		int index = -1;
+		int node1 = -1;
+		int node2 = -1;
+		int weight = 0;
+		byte type = 0;
+		byte age = 0;
+		String label = null;
+		int found = 0;
+		char c = tokener.nextClean();
+		while(c != '}') {
+			String key = readKey(c);
+			Object value = tokener.nextValue();
+			if(key.equals("edgeIndex")) {
+				index = intValue(key, value);
+				found |= 1;
+			} else if(key.equals("node1")) {
+				node1 = intValue(key, value);
+				found |= 2;
+			} else if(key.equals("node2")) {
+				node2 = intValue(key, value);
+				found |= 4;
+			} else if(key.equals("edgeWeight")) {
+				weight = intValue(key, value);
+				found |= 8;
+			} else if(key.equals("edgeType")) {
+				type = (byte)intValue(key, value);
+				found |= 16;
+			} else if(key.equals("edgeAge")) {
+				age = (byte)intValue(key, value);
+				found |= 32;
+			} else if(key.equals("edgeLabel")) {
+				label = value.toString();
+				found |= 64;
+			}
+			c = afterValue('}');
+		}
+		if(found != 127) {
+			throw tokener.syntaxError("Edge needs edgeIndex, node1, node2, edgeWeight, edgeType, edgeAge and edgeLabel");
+		}
+		if(index < 0) {
+			throw tokener.syntaxError("Negative edgeIndex "+index);
+		}
+		if(edgesSeen.get(index)) {
+			throw new IOException("Repeated edgeIndex "+index);
+		}
+		edgesSeen.set(index);
+
+		if(index >= numberOfEdges) {
+			edgeBuf = ensureCapacity(edgeBuf, (long)(index+1)*FastGraph.EDGE_BYTE_SIZE);
+			numberOfEdges = index+1;
+		}
+		long edgeOffset = (long)index*FastGraph.EDGE_BYTE_SIZE;
+		edgeBuf.putInt(FastGraph.EDGE_NODE1_OFFSET+edgeOffset, node1);
+		edgeBuf.putInt(FastGraph.EDGE_NODE2_OFFSET+edgeOffset, node2);
+		edgeBuf.putInt(FastGraph.EDGE_WEIGHT_OFFSET+edgeOffset, weight);
+		edgeBuf.put(FastGraph.EDGE_TYPE_OFFSET+edgeOffset, type);
+		edgeBuf.put(FastGraph.EDGE_AGE_OFFSET+edgeOffset, age);
+		edgeBuf.putLong(FastGraph.EDGE_LABEL_START_OFFSET+edgeOffset, edgeLabelSize);
+		edgeBuf.putShort(FastGraph.EDGE_LABEL_LENGTH_OFFSET+edgeOffset, (short)label.length());
+		edgeLabelBuf = ensureCapacity(edgeLabelBuf, edgeLabelSize+label.length()*2L);
+		edgeLabelSize = putLabel(edgeLabelBuf, edgeLabelSize, label);
+	}
+
+
+	/**
+	 * @param c the character before the key, already read
+	 * @return the key, with the following colon consumed
+	 */
+	private String readKey(char c) {
+		if(c != '"' && c != '\'') {
+			throw tokener.syntaxError("Expected a quoted key");
+		}
+		String key = tokener.nextString(c);
+		expect(':');
+		return key;
+	}
+
+
+	/**
+	 * Consume the separator after a value.
+	 *
+	 * @param close the closing character of the current object or array
+	 * @return the character after a comma, or close
+	 */
+	private char afterValue(char close) {
+		char c = tokener.nextClean();
+		if(c == ',') {
+			return tokener.nextClean();
+		}
+		if(c != close) {
+			throw tokener.syntaxError("Expected a ',' or '"+close+"'");
+		}
+		return c;
+	}
+
+
+	/**
+	 * @param expected the next non space character that must appear
+	 */
+	private void expect(char expected) {
+		if(tokener.nextClean() != expected) {
+			throw tokener.syntaxError("Expected a '"+expected+"'");
+		}
+	}
+
+
+	/**
+	 * @param key the key of the value, for the error message
+	 * @param value a number, or a string holding a number
+	 * @return the value as an int
+	 */
+	private int intValue(String key, Object value) {
+		if(value instanceof String) {
+			value = JSONObject.stringToValue(((String)value).trim());
+		}
+		if(value instanceof Number) {
+			return ((Number)value).intValue();
+		}
+		throw tokener.syntaxError("Value of "+key+" is not a number");
+	}
+
+
+	/**
+	 * @param buf the buffer
+	 * @param needed the number of bytes needed
+	 * @return buf if it is big enough, otherwise a copy with at least double the capacity
+	 */
+	private static SegmentedBuffer ensureCapacity(SegmentedBuffer buf, long needed) {
+		if(needed <= buf.capacity()) {
+			return buf;
+		}
+		return buf.resize(Math.max(needed, buf.capacity()*2));
+	}
+
+
+	/**
+	 * @param buf the buffer
+	 * @param size the number of bytes used
+	 * @return buf if it is exactly size, otherwise a copy of the first size bytes
+	 */
+	private static SegmentedBuffer trim(SegmentedBuffer buf, long size) {
+		if(buf.capacity() == size) {
+			return buf;
+		}
+		return buf.resize(size);
+	}
+
+
+	/**
+	 * @param buf the label buffer
+	 * @param offset where to write the first char
+	 * @param label the label
+	 * @return the offset after the label
+	 */
+	private static long putLabel(SegmentedBuffer buf, long offset, String label) {
+		for(int i = 0; i < label.length(); i++) {
+			buf.putChar(offset, label.charAt(i));
+			offset += 2;
+		}
+		return offset;
+	}
+
+}
@@ -51,7 +51,7 @@ public class KMedoids {
 		this.numberOfClusters = numberOfClusters;
 		this.maxIterations = maxIterations;
 		this.targetGraph = targetGraph;
-		r = new Random(targetGraph.getNodeBuf().getLong(1));
+		r = new Random(targetGraph.getRandomSeed(1));
 		similarityMeasure = measure;
 	}
 	
@@ -0,0 +1,195 @@
+package uk.ac.kent.dover.fastGraph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.function.IntFunction;
+
+/**
+ * The distinct labels of the nodes or of the edges of a FastGraph, in String order.
+ * The id of a label is its position in that order, so ids from the same dictionary
+ * compare in the same way as the labels. Graphs usually reuse a small vocabulary of
+ * labels, so comparing ids avoids creating and comparing Strings.
+ * <p>
+ * Ids from different graphs are not comparable directly, use {@link #idsIn(LabelDictionary)}
+ * to test for equal labels and {@link #positionsIn(LabelDictionary)} to order labels
+ * across two graphs.
+ * </p>
+ * Immutable once built.
+ *
+ * @author Peter Rodgers
+ *
+ */
+public class LabelDictionary {
+
+	public static final int ID_BYTE_SIZE = 4; // size of a label id in the FastGraph id buffers
+
+	private final String[] labels;
+	private final HashMap<String,Integer> idMap;
+
+
+	/**
+	 * @param labels the distinct labels, already sorted
+	 */
+	private LabelDictionary(String[] labels) {
+		this.labels = labels;
+		idMap = new HashMap<String,Integer>(labels.length*2+16);
+		for(int i = 0; i < labels.length; i++) {
+			idMap.put(labels[i], i);
+		}
+	}
+
+
+	/**
+	 * Find the distinct labels of some elements, and write the id of each element's label to ids.
+	 *
+	 * @param count the number of elements
+	 * @param labelOf gives the label of an element
+	 * @param ids populated with an int id for each element, must have space for count ids
+	 * @return the dictionary for the ids
+	 */
+	public static LabelDictionary build(int count, IntFunction<String> labelOf, SegmentedBuffer ids) {
+		// ids in order of first appearance, then remapped to sorted order
+		HashMap<String,Integer> firstSeen = new HashMap<String,Integer>();
+		for(int i = 0; i < count; i++) {
+			String label = labelOf.apply(i);
+			Integer id = firstSeen.get(label);
+			if(id == null) {
+				id = firstSeen.size();
+				firstSeen.put(label, id);
+			}
+			ids.putInt((long)i*ID_BYTE_SIZE, id);
+		}
+		String[] sorted = firstSeen.keySet().toArray(new String[firstSeen.size()]);
+		Arrays.sort(sorted);
+		int[] remap = new int[sorted.length];
+		for(int i = 0; i < sorted.length; i++) {
+			remap[firstSeen.get(sorted[i])] = i;
+		}
+		for(int i = 0; i < count; i++) {
+			long offset = (long)i*ID_BYTE_SIZE;
+			ids.putInt(offset, remap[ids.getInt(offset)]);
+		}
+		return new LabelDictionary(sorted);
+	}
+
+
+	/**
+	 * @return the number of distinct labels
+	 */
+	public int size() {
+		return labels.length;
+	}
+
+
+	/**
+	 * @param id a label id
+	 * @return the label with the id
+	 */
+	public String getLabel(int id) {
+		return labels[id];
+	}
+
+
+	/**
+	 * @param label the label to find
+	 * @return the id of the label, or -1 if it is not in the dictionary
+	 */
+	public int getId(String label) {
+		Integer ret = idMap.get(label);
+		if(ret == null) {
+			return -1;
+		}
+		return ret;
+	}
+
+
+	/**
+	 * Translation of ids in this dictionary to ids in another, for testing labels of two graphs for equality.
+	 *
+	 * @param other the other dictionary
+	 * @return for each id in this dictionary, the id of the same label in other, or -1 if other does not have the label
+	 */
+	public int[] idsIn(LabelDictionary other) {
+		int[] ret = new int[labels.length];
+		for(int i = 0; i < labels.length; i++) {
+			ret[i] = other.getId(labels[i]);
+		}
+		return ret;
+	}
+
+
+	/**
+	 * Where the labels of this dictionary would fall in another, for ordering labels of two graphs.
+	 * A label in other with id j is at position 2*j. A label that is not in other is at the odd
+	 * position between its neighbours in other. So, for an id i in this dictionary and an id j in
+	 * other, the sign of (2*j - positionsIn(other)[i]) is the sign of other.getLabel(j).compareTo(getLabel(i)).
+	 *
+	 * @param other the other dictionary
+	 * @return the position in other of each label in this dictionary
+	 */
+	public int[] positionsIn(LabelDictionary other) {
+		int[] ret = new int[labels.length];
+		int j = 0;
+		for(int i = 0; i < labels.length; i++) { // merge, as both are sorted
+			while(j < other.labels.length && other.labels[j].compareTo(labels[i]) < 0) {
+				j++;
+			}
+			if(j < other.labels.length && other.labels[j].equals(labels[i])) {
+				ret[i] = 2*j;
+			} else {
+				ret[i] = 2*j-1;
+			}
+		}
+		return ret;
+	}
+
+
+	/**
+	 * Store the dictionary: the number of labels (int), the char offset of each label and of the
+	 * end of the last label (int each), then the label chars.
+	 *
+	 * @param direct if true then off heap, if false then on heap
+	 * @return a new buffer holding the dictionary
+	 */
+	public SegmentedBuffer toBuffer(boolean direct) {
+		long chars = 0;
+		for(String label : labels) {
+			chars += label.length();
+		}
+		long charStart = 4+(labels.length+1)*4L;
+		SegmentedBuffer ret = SegmentedBuffer.allocate(charStart+chars*2, direct);
+		ret.putInt(0, labels.length);
+		long charOffset = 0;
+		for(int i = 0; i < labels.length; i++) {
+			ret.putInt(4+i*4L, (int)charOffset);
+			for(int c = 0; c < labels[i].length(); c++) {
+				ret.putChar(charStart+(charOffset+c)*2, labels[i].charAt(c));
+			}
+			charOffset += labels[i].length();
+		}
+		ret.putInt(4+labels.length*4L, (int)charOffset);
+		return ret;
+	}
+
+
+	/**
+	 * @param buf a dictionary stored by {@link #toBuffer(boolean)}
+	 * @return the dictionary
+	 */
+	public static LabelDictionary fromBuffer(SegmentedBuffer buf) {
+		int size = buf.getInt(0);
+		long charStart = 4+(size+1)*4L;
+		String[] labels = new String[size];
+		for(int i = 0; i < size; i++) {
+			int start = buf.getInt(4+i*4L);
+			int end = buf.getInt(4+(i+1)*4L);
+			char[] label = new char[end-start];
+			for(int c = 0; c < label.length; c++) {
+				label[c] = buf.getChar(charStart+(start+c)*2L);
+			}
+			labels[i] = new String(label);
+		}
+		return new LabelDictionary(labels);
+	}
+
+}
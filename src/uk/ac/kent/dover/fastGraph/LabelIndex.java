@@ -0,0 +1,144 @@
+package uk.ac.kent.dover.fastGraph;
+
+import java.io.IOException;
+
+/**
+ * An inverted index of the node or edge labels of a FastGraph, listing for each label id of a
+ * {@link LabelDictionary} the nodes or edges with that label, in increasing order. Finding the elements
+ * with a label is then a lookup rather than a scan that creates a String for every element.
+ * <p>
+ * Held in one SegmentedBuffer, so it can be saved in a {@link GraphContainer} and memory mapped
+ * when loaded. Layout, all ints: the number of labels, the start of each label's list in the element
+ * ids and the end of the last list, then the element ids.
+ * </p>
+ * Immutable once built.
+ *
+ * @author Peter Rodgers
+ *
+ */
+public class LabelIndex {
+
+	private final SegmentedBuffer buf;
+	private final int numberOfLabels;
+	private final long elementStart; // byte offset of the element ids
+
+
+	/**
+	 * @param buf the index, already checked
+	 */
+	private LabelIndex(SegmentedBuffer buf) {
+		this.buf = buf;
+		numberOfLabels = buf.getInt(0);
+		elementStart = 4+(numberOfLabels+1)*4L;
+	}
+
+
+	/**
+	 * @param count the number of elements
+	 * @param numberOfLabels the number of distinct labels
+	 * @return the number of bytes needed for the index
+	 */
+	public static long byteSize(int count, int numberOfLabels) {
+		return 4+(numberOfLabels+1)*4L+count*4L;
+	}
+
+
+	/**
+	 * Counting sort of the elements on label id, so each list is in element order.
+	 *
+	 * @param count the number of elements
+	 * @param numberOfLabels the number of distinct labels
+	 * @param ids the label id of each element, as built by {@link LabelDictionary#build}
+	 * @param buf populated with the index, must be at least {@link #byteSize(int, int)} bytes
+	 * @return the index
+	 */
+	public static LabelIndex build(int count, int numberOfLabels, SegmentedBuffer ids, SegmentedBuffer buf) {
+		int[] start = new int[numberOfLabels+1];
+		for(int i = 0; i < count; i++) {
+			start[ids.getInt((long)i*LabelDictionary.ID_BYTE_SIZE)+1]++;
+		}
+		for(int l = 0; l < numberOfLabels; l++) {
+			start[l+1] += start[l];
+		}
+		buf.putInt(0, numberOfLabels);
+		for(int l = 0; l <= numberOfLabels; l++) {
+			buf.putInt(4+l*4L, start[l]);
+		}
+		long elementStart = 4+(numberOfLabels+1)*4L;
+		for(int i = 0; i < count; i++) {
+			int id = ids.getInt((long)i*LabelDictionary.ID_BYTE_SIZE);
+			buf.putInt(elementStart+start[id]*4L, i);
+			start[id]++;
+		}
+		return new LabelIndex(buf);
+	}
+
+
+	/**
+	 * @param buf an index stored by {@link #build(int, int, SegmentedBuffer, SegmentedBuffer)}, used directly not copied
+	 * @return the index
+	 * @throws IOException if the buffer does not hold an index
+	 */
+	public static LabelIndex fromBuffer(SegmentedBuffer buf) throws IOException {
+		if(buf.capacity() < 8) {
+			throw new IOException("Buffer too short for a label index");
+		}
+		int labels = buf.getInt(0);
+		if(labels < 0 || 4+(labels+1)*4L > buf.capacity()) {
+			throw new IOException("Label index with "+labels+" labels does not fit its buffer");
+		}
+		int elements = buf.getInt(4+labels*4L);
+		if(byteSize(elements, labels) != buf.capacity()) {
+			throw new IOException("Label index with "+labels+" labels and "+elements+" elements does not match its buffer size "+buf.capacity());
+		}
+		return new LabelIndex(buf);
+	}
+
+
+	/**
+	 * @return the buffer holding the index, for saving
+	 */
+	public SegmentedBuffer getBuffer() {
+		return buf;
+	}
+
+
+	/**
+	 * @return the number of label ids indexed
+	 */
+	public int getNumberOfLabels() {
+		return numberOfLabels;
+	}
+
+
+	/**
+	 * @return the number of elements indexed
+	 */
+	public int getNumberOfElements() {
+		return buf.getInt(4+numberOfLabels*4L);
+	}
+
+
+	/**
+	 * @param labelId a label id
+	 * @return the number of elements with the label
+	 */
+	public int count(int labelId) {
+		return buf.getInt(4+(labelId+1)*4L)-buf.getInt(4+labelId*4L);
+	}
+
+
+	/**
+	 * @param labelId a label id
+	 * @return the elements with the label, in increasing order, a new array
+	 */
+	public int[] getElements(int labelId) {
+		int start = buf.getInt(4+labelId*4L);
+		int[] ret = new int[count(labelId)];
+		for(int i = 0; i < ret.length; i++) {
+			ret[i] = buf.getInt(elementStart+(start+i)*4L);
+		}
+		return ret;
+	}
+
+}
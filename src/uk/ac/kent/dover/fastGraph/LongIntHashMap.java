@@ -0,0 +1,155 @@
+package uk.ac.kent.dover.fastGraph;
+
+import java.util.Arrays;
+
+/**
+ * A map from long keys to int values with open addressing and linear probing, held in two
+ * primitive arrays so there is no boxing and no per entry object. Used where a HashMap of
+ * Long to Integer would spend most of its time in the garbage collector, such as mapping
+ * external node ids to node indexes when importing a large graph. Values should not be
+ * negative, as -1 is returned for a missing key. No removal.
+ *
+ * @author Peter Rodgers
+ *
+ */
+public class LongIntHashMap {
+
+	private static final long FREE = Long.MIN_VALUE; // marks an empty slot, the key itself is held separately
+	private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+	private long[] keys;
+	private int[] values;
+	private int mask;
+	private int size = 0;
+	private boolean hasFreeKey = false; // true if Long.MIN_VALUE is a key
+	private int freeKeyValue;
+
+
+	/**
+	 * @param expectedSize the number of keys expected, the map grows if this is exceeded
+	 */
+	public LongIntHashMap(int expectedSize) {
+		int capacity = 16;
+		while(capacity < MAXIMUM_CAPACITY && capacity < (long)expectedSize*2) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+
+	/**
+	 * @return the number of keys in the map
+	 */
+	public int size() {
+		return size;
+	}
+
+
+	/**
+	 * @param key the key to find
+	 * @return the value for the key, or -1 if the key is not present
+	 */
+	public int get(long key) {
+		if(key == FREE) {
+			if(hasFreeKey) {
+				return freeKeyValue;
+			}
+			return -1;
+		}
+		int slot = slot(key);
+		while(true) {
+			long k = keys[slot];
+			if(k == key) {
+				return values[slot];
+			}
+			if(k == FREE) {
+				return -1;
+			}
+			slot = (slot+1) & mask;
+		}
+	}
+
+
+	/**
+	 * Add the key with the value if the key is not already present.
+	 *
+	 * @param key the key
+	 * @param value the value to add, must not be negative
+	 * @return the existing value if the key was present, or -1 if the key was added
+	 */
+	public int putIfAbsent(long key, int value) {
+		if(key == FREE) {
+			if(hasFreeKey) {
+				return freeKeyValue;
+			}
+			hasFreeKey = true;
+			freeKeyValue = value;
+			size++;
+			return -1;
+		}
+		int slot = slot(key);
+		while(true) {
+			long k = keys[slot];
+			if(k == key) {
+				return values[slot];
+			}
+			if(k == FREE) {
+				keys[slot] = key;
+				values[slot] = value;
+				size++;
+				if(size*2L > keys.length) {
+					grow();
+				}
+				return -1;
+			}
+			slot = (slot+1) & mask;
+		}
+	}
+
+
+	/**
+	 * @param key the key
+	 * @return the start slot for the key
+	 */
+	private int slot(long key) {
+		long h = key*0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32)) & mask;
+	}
+
+
+	/**
+	 * @param capacity power of two number of slots
+	 */
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		Arrays.fill(keys, FREE);
+		values = new int[capacity];
+		mask = capacity-1;
+	}
+
+
+	/**
+	 * Double the number of slots and reinsert everything.
+	 */
+	private void grow() {
+		if(keys.length >= MAXIMUM_CAPACITY) {
+			throw new IllegalStateException("LongIntHashMap cannot hold more than "+MAXIMUM_CAPACITY/2+" keys");
+		}
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(keys.length*2);
+		for(int i = 0; i < oldKeys.length; i++) {
+			long key = oldKeys[i];
+			if(key == FREE) {
+				continue;
+			}
+			int slot = slot(key);
+			while(keys[slot] != FREE) {
+				slot = (slot+1) & mask;
+			}
+			keys[slot] = key;
+			values[slot] = oldValues[i];
+		}
+	}
+
+}
@@ -0,0 +1,339 @@
+package uk.ac.kent.dover.fastGraph;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * A renumbering of the nodes of a graph, held as the permutation and its inverse. Node ids of a
+ * FastGraph follow input order, so the records and connection lists of neighbouring nodes can be far
+ * apart in the buffers. Numbering nodes in the order of a traversal puts neighbours close together,
+ * so traversals touch fewer cache lines and pages. Apply with {@link FastGraph#generateReorderedGraph(NodeReordering)},
+ * and translate results on the new graph back to the original node ids with {@link #getOriginalNode(int)}
+ * or {@link #toOriginalNodes(int[])}. Edge ids are not changed by a reordering.
+ * <p>
+ * The orders available are breadth first, reverse Cuthill-McKee, which tends to give the smallest
+ * distance between the ids of neighbours, and descending degree, which packs the busiest nodes together.
+ * A reordering can be saved next to the graph's buffer files, so results can be translated
+ * back in a later run. Immutable.
+ * </p>
+ *
+ * @author Peter Rodgers
+ *
+ */
+public class NodeReordering {
+
+	public static final String EXTENSION = ".permutation";
+
+	private final int[] newToOriginal; // the original id of each new node
+	private final int[] originalToNew; // the new id of each original node
+
+
+	/**
+	 * @param order the original node ids in their new order, so original node order[i] becomes node i. Copied
+	 * @throws FastGraphException if order is not a permutation of 0 to order.length-1
+	 */
+	public NodeReordering(int[] order) throws FastGraphException {
+		newToOriginal = order.clone();
+		originalToNew = new int[order.length];
+		Arrays.fill(originalToNew, -1);
+		for(int i = 0; i < order.length; i++) {
+			int n = order[i];
+			if(n < 0 || n >= order.length || originalToNew[n] != -1) {
+				throw new FastGraphException("Node order is not a permutation, problem with node "+n+" at position "+i);
+			}
+			originalToNew[n] = i;
+		}
+	}
+
+
+	/**
+	 * Numbers the nodes in breadth first order, ignoring edge direction. Each component is started from
+	 * its lowest numbered node, and neighbours are visited in connection list order.
+	 *
+	 * @param g the graph
+	 * @return the breadth first reordering
+	 */
+	public static NodeReordering breadthFirst(FastGraph g) {
+long time = Debugger.createTime();
+		CsrGraph csr = g.toCsr();
+		int numberOfNodes = csr.getNumberOfNodes();
+		int[] offsets = csr.getOffsets();
+		int[] targets = csr.getTargets();
+		int[] order = new int[numberOfNodes];
+		boolean[] visited = new boolean[numberOfNodes];
+		int tail = 0;
+		for(int start = 0; start < numberOfNodes; start++) {
+			if(visited[start]) {
+				continue;
+			}
+			visited[start] = true;
+			int head = tail;
+			order[tail++] = start;
+			while(head < tail) { // order is also the queue
+				int n = order[head++];
+				for(int i = offsets[n]; i < offsets[n+1]; i++) {
+					int m = targets[i];
+					if(!visited[m]) {
+						visited[m] = true;
+						order[tail++] = m;
+					}
+				}
+			}
+		}
+Debugger.outputTime("breadth first reordering of "+numberOfNodes+" nodes", time);
+		return new NodeReordering(order, true);
+	}
+
+
+	/**
+	 * Numbers the nodes in reverse Cuthill-McKee order, ignoring edge direction. Each component is started
+	 * from its unvisited node of least degree, a breadth first search visits the unvisited neighbours of a node
+	 * in order of increasing degree, and the whole order is then reversed. Ties are broken on node id.
+	 *
+	 * @param g the graph
+	 * @return the reverse Cuthill-McKee reordering
+	 */
+	public static NodeReordering reverseCuthillMcKee(FastGraph g) {
+long time = Debugger.createTime();
+		CsrGraph csr = g.toCsr();
+		int numberOfNodes = csr.getNumberOfNodes();
+		int[] offsets = csr.getOffsets();
+		int[] targets = csr.getTargets();
+		int[] degrees = csr.getDegrees();
+		int[] byDegree = degreeOrder(degrees, false);
+		int[] order = new int[numberOfNodes];
+		boolean[] visited = new boolean[numberOfNodes];
+		long[] neighbours = new long[16]; // degree in the high half, node in the low half, so sorting orders by degree then id
+		int tail = 0;
+		for(int start : byDegree) {
+			if(visited[start]) {
+				continue;
+			}
+			visited[start] = true;
+			int head = tail;
+			order[tail++] = start;
+			while(head < tail) {
+				int n = order[head++];
+				int count = 0;
+				for(int i = offsets[n]; i < offsets[n+1]; i++) {
+					int m = targets[i];
+					if(!visited[m]) {
+						visited[m] = true;
+						if(count == neighbours.length) {
+							neighbours = Arrays.copyOf(neighbours, count*2);
+						}
+						neighbours[count++] = ((long)degrees[m] << 32) | m;
+					}
+				}
+				Arrays.sort(neighbours, 0, count);
+				for(int i = 0; i < count; i++) {
+					order[tail++] = (int)neighbours[i];
+				}
+			}
+		}
+		for(int i = 0, j = numberOfNodes-1; i < j; i++, j--) {
+			int temp = order[i];
+			order[i] = order[j];
+			order[j] = temp;
+		}
+Debugger.outputTime("reverse Cuthill-McKee reordering of "+numberOfNodes+" nodes", time);
+		return new NodeReordering(order, true);
+	}
+
+
+	/**
+	 * Numbers the nodes in order of descending degree, ties broken on node id.
+	 *
+	 * @param g the graph
+	 * @return the degree sorted reordering
+	 */
+	public static NodeReordering degreeSorted(FastGraph g) {
+		int numberOfNodes = g.getNumberOfNodes();
+		int[] degrees = new int[numberOfNodes];
+		for(int n = 0; n < numberOfNodes; n++) {
+			degrees[n] = g.getNodeDegree(n);
+		}
+		int[] order = degreeOrder(degrees, true);
+		return new NodeReordering(order, true);
+	}
+
+
+	/**
+	 * Counting sort of the nodes on degree, so ties stay in id order.
+	 *
+	 * @param degrees the degree of each node
+	 * @param descending if true the highest degree first, if false the lowest degree first
+	 * @return the nodes in order of degree
+	 */
+	private static int[] degreeOrder(int[] degrees, boolean descending) {
+		int maxDegree = 0;
+		for(int d : degrees) {
+			maxDegree = Math.max(maxDegree, d);
+		}
+		int[] start = new int[maxDegree+2];
+		for(int d : degrees) {
+			start[sortKey(d, maxDegree, descending)+1]++;
+		}
+		for(int k = 0; k <= maxDegree; k++) {
+			start[k+1] += start[k];
+		}
+		int[] ret = new int[degrees.length];
+		for(int n = 0; n < degrees.length; n++) {
+			ret[start[sortKey(degrees[n], maxDegree, descending)]++] = n;
+		}
+		return ret;
+	}
+
+
+	/**
+	 * @param degree a node degree
+	 * @param maxDegree the largest degree
+	 * @param descending if true the highest degree has the lowest key
+	 * @return the position of the degree in the counting sort
+	 */
+	private static int sortKey(int degree, int maxDegree, boolean descending) {
+		if(descending) {
+			return maxDegree-degree;
+		}
+		return degree;
+	}
+
+
+	/**
+	 * For orders built by this class, which are known to be permutations.
+	 *
+	 * @param order the original node ids in their new order, not copied
+	 * @param trusted marks this constructor, not used
+	 */
+	private NodeReordering(int[] order, boolean trusted) {
+		newToOriginal = order;
+		originalToNew = new int[order.length];
+		for(int i = 0; i < order.length; i++) {
+			originalToNew[order[i]] = i;
+		}
+	}
+
+
+	/**
+	 * @return the number of nodes renumbered
+	 */
+	public int getNumberOfNodes() {
+		return newToOriginal.length;
+	}
+
+
+	/**
+	 * @param originalNode a node id in the original graph
+	 * @return the id of the node in the reordered graph
+	 */
+	public int getNewNode(int originalNode) {
+		return originalToNew[originalNode];
+	}
+
+
+	/**
+	 * @param newNode a node id in the reordered graph
+	 * @return the id of the node in the original graph
+	 */
+	public int getOriginalNode(int newNode) {
+		return newToOriginal[newNode];
+	}
+
+
+	/**
+	 * @param newNodes node ids in the reordered graph
+	 * @return the ids of the nodes in the original graph, in the same order
+	 */
+	public int[] toOriginalNodes(int[] newNodes) {
+		int[] ret = new int[newNodes.length];
+		for(int i = 0; i < newNodes.length; i++) {
+			ret[i] = newToOriginal[newNodes[i]];
+		}
+		return ret;
+	}
+
+
+	/**
+	 * @param originalNodes node ids in the original graph
+	 * @return the ids of the nodes in the reordered graph, in the same order
+	 */
+	public int[] toNewNodes(int[] originalNodes) {
+		int[] ret = new int[originalNodes.length];
+		for(int i = 0; i < originalNodes.length; i++) {
+			ret[i] = originalToNew[originalNodes[i]];
+		}
+		return ret;
+	}
+
+
+	/**
+	 * @return the original node ids in their new order, a copy
+	 */
+	public int[] getOrder() {
+		return newToOriginal.clone();
+	}
+
+
+	/**
+	 * Saves the order as a file of ints, in directory given to base name given, with {@link #EXTENSION} added,
+	 * so it can sit beside the files written by {@link FastGraph#saveBuffers(String, String)}.
+	 * If directory is null, then to a directory named data under current working directory.
+	 *
+	 * @param directory where the file is to be stored, or if null fileBaseName under data under the current working directory
+	 * @param fileBaseName the name of the file, to which the extension is added
+	 * @throws IOException If the file cannot be written
+	 */
+	public void save(String directory, String fileBaseName) throws IOException {
+		String fileName = FastGraph.directoryAndBaseName(directory, fileBaseName)+EXTENSION;
+		new File(fileName).getAbsoluteFile().getParentFile().mkdirs();
+		SegmentedBuffer buf = SegmentedBuffer.allocate((long)newToOriginal.length*4);
+		for(int i = 0; i < newToOriginal.length; i++) {
+			buf.putInt((long)i*4, newToOriginal[i]);
+		}
+		FileOutputStream fos = new FileOutputStream(new File(fileName), false);
+		FileChannel wChannel = fos.getChannel();
+		buf.writeTo(wChannel);
+		fos.flush();
+		wChannel.close();
+		fos.close();
+	}
+
+
+	/**
+	 * Loads an order saved by {@link #save(String, String)}.
+	 *
+	 * @param directory where the file is held, or if null fileBaseName under data under the current working directory
+	 * @param fileBaseName the name of the file, without the extension
+	 * @return the reordering
+	 * @throws IOException If the file cannot be read, or does not hold a permutation
+	 */
+	public static NodeReordering load(String directory, String fileBaseName) throws IOException {
+		File file = new File(FastGraph.directoryAndBaseName(directory, fileBaseName)+EXTENSION);
+		FileInputStream fis = new FileInputStream(file);
+		FileChannel rChannel = fis.getChannel();
+		long size = rChannel.size();
+		if(size % 4 != 0 || size/4 > Integer.MAX_VALUE) {
+			rChannel.close();
+			fis.close();
+			throw new IOException("Not a node permutation file: "+file);
+		}
+		SegmentedBuffer buf = SegmentedBuffer.allocate(size);
+		buf.readFrom(rChannel);
+		rChannel.close();
+		fis.close();
+		int[] order = new int[(int)(size/4)];
+		for(int i = 0; i < order.length; i++) {
+			order[i] = buf.getInt((long)i*4);
+		}
+		try {
+			return new NodeReordering(order);
+		} catch(FastGraphException e) {
+			throw new IOException("Not a node permutation file: "+file, e);
+		}
+	}
+
+}
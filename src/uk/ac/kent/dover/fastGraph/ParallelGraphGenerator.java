@@ -0,0 +1,799 @@
+package uk.ac.kent.dover.fastGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generates large random graphs on several threads, writing the buffers directly rather than through
+ * {@link FastGraph#structureFactory(String, byte, List, List, boolean)}. The work is split into chunks of a
+ * fixed size, and each chunk draws from its own {@link SplittableRandom}, split in order from the seed, so a
+ * seed always gives the same graph whatever the number of threads. The connection lists are built with a
+ * parallel counting sort, and each list is in edge order, as {@link FastGraph#buildConnections(SegmentedBuffer, SegmentedBuffer, int, int, boolean)}.
+ * <p>
+ * Nodes are labelled "n" followed by the node index and edges "e" followed by the edge index, as
+ * {@link FastGraph#randomGraphFactory(int, int, long, boolean, boolean)}. Weights, types and ages are 0, where the
+ * factory gives random weights from 0 to 99 and fixed types. The random streams differ from the factory's, so the
+ * same seed gives a different graph.
+ * </p>
+ *
+ * @author Peter Rodgers
+ *
+ */
+public class ParallelGraphGenerator {
+
+	private static final int CHUNK_SIZE = 1 << 16; // edges, stubs or node pairs per chunk
+	private static final long PAIRS_PER_CHUNK = 1L << 22; // for G(n,p)
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private final int threads;
+
+
+	/**
+	 * Generate with one thread per available processor.
+	 */
+	public ParallelGraphGenerator() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+
+	/**
+	 * @param threads the number of threads used to generate graphs
+	 */
+	public ParallelGraphGenerator(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+
+	/**
+	 * A random graph with a given number of edges, each joining two nodes chosen evenly at random.
+	 * Self sourcing edges and parallel edges may exist, as with a non simple
+	 * {@link FastGraph#randomGraphFactory(int, int, long, boolean, boolean)}.
+	 *
+	 * @param numberOfNodes the number of nodes
+	 * @param numberOfEdges the number of edges
+	 * @param seed random number generator seed
+	 * @param direct if true then off heap ByteBuffers, if false then on heap ByteBuffers
+	 * @return the new graph
+	 * @throws FastGraphException if there are edges but no nodes, or the graph is too large for a FastGraph
+	 */
+	public FastGraph randomGraph(int numberOfNodes, int numberOfEdges, long seed, boolean direct) throws FastGraphException {
+		return randomGraph(numberOfNodes, numberOfEdges, seed, false, direct);
+	}
+
+
+	/**
+	 * A random graph with a given number of edges, each joining two nodes chosen evenly at random. If simple is
+	 * false self sourcing edges and parallel edges may exist. If simple is true each edge joins two different nodes,
+	 * and an edge that joins the same pair as a lower numbered edge, in either direction, is drawn again, in rounds
+	 * until no pair repeats. The pairs are found with a {@link LongIntHashMap} for each thread, each holding the pairs
+	 * with a share of the hash values and visiting the edges in order, so the graph does not depend on the number of threads.
+	 *
+	 * @param numberOfNodes the number of nodes
+	 * @param numberOfEdges the number of edges
+	 * @param seed random number generator seed
+	 * @param simple if true then no self sourcing edges or parallel edges
+	 * @param direct if true then off heap ByteBuffers, if false then on heap ByteBuffers
+	 * @return the new graph
+	 * @throws FastGraphException if there are edges but no nodes, simple is true and there are more edges than pairs of nodes,
+	 * or the graph is too large for a FastGraph
+	 */
+	public FastGraph randomGraph(final int numberOfNodes, int numberOfEdges, long seed, final boolean simple, boolean direct) throws FastGraphException {
+		if(numberOfNodes == 0 && numberOfEdges > 0) {
+			throw new FastGraphException("Cannot add edges to a graph with no nodes");
+		}
+		if(simple && ((long)numberOfNodes*(numberOfNodes-1))/2 < numberOfEdges) {
+			throw new FastGraphException("Too many edges to generate a simple graph.");
+		}
+long time = Debugger.createTime();
+		final int[] node1 = new int[numberOfEdges];
+		final int[] node2 = new int[numberOfEdges];
+		SplittableRandom[] randoms = chunkRandoms(seed, chunks(numberOfEdges));
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(randoms.length);
+		for(int c = 0; c < randoms.length; c++) {
+			final int start = c*CHUNK_SIZE;
+			final int end = (int)Math.min(numberOfEdges, (long)start+CHUNK_SIZE);
+			final SplittableRandom random = randoms[c];
+			tasks.add(() -> {
+				for(int e = start; e < end; e++) {
+					drawEdge(random, numberOfNodes, simple, node1, node2, e);
+				}
+				return null;
+			});
+		}
+		runAll(tasks);
+		if(simple) {
+			redrawParallelEdges(node1, node2, numberOfNodes, seed);
+		}
+Debugger.outputTime("generated "+numberOfEdges+" random edges", time);
+		return build("random-n-"+numberOfNodes+"-e-"+numberOfEdges, numberOfNodes, node1, node2, direct);
+	}
+
+
+	/**
+	 * Choose the nodes of an edge.
+	 *
+	 * @param random the random stream of the edge's chunk
+	 * @param numberOfNodes the number of nodes
+	 * @param simple if true the two nodes are different
+	 * @param node1 populated with the first node of the edge
+	 * @param node2 populated with the second node of the edge
+	 * @param edge the edge
+	 */
+	private static void drawEdge(SplittableRandom random, int numberOfNodes, boolean simple, int[] node1, int[] node2, int edge) {
+		node1[edge] = random.nextInt(numberOfNodes);
+		if(simple) {
+			int other = random.nextInt(numberOfNodes-1); // any node but node1
+			if(other >= node1[edge]) {
+				other++;
+			}
+			node2[edge] = other;
+		} else {
+			node2[edge] = random.nextInt(numberOfNodes);
+		}
+	}
+
+
+	/**
+	 * Draw again each edge that joins the same pair of nodes as a lower numbered edge, until no pair repeats.
+	 * Each round has its own random streams, derived from the seed and the round, split over the edges drawn again.
+	 *
+	 * @param node1 the first node of each edge, with no self sourcing edges
+	 * @param node2 the second node of each edge
+	 * @param numberOfNodes the number of nodes
+	 * @param seed random number generator seed
+	 * @throws FastGraphException if a task fails or the thread is interrupted
+	 */
+	private void redrawParallelEdges(final int[] node1, final int[] node2, final int numberOfNodes, long seed) throws FastGraphException {
+		final int shards = threads;
+		final LongIntHashMap[] seen = new LongIntHashMap[shards]; // the pairs already joined, for each shard of the hash values
+		for(int s = 0; s < shards; s++) {
+			seen[s] = new LongIntHashMap(node1.length/shards+1);
+		}
+		int[] redraw = null; // the edges to test, null for all of them in the first round
+		int round = 0;
+		while(true) {
+			final int[] edges = redraw;
+			final int count = edges == null ? node1.length : edges.length;
+			final boolean[] repeated = new boolean[count];
+			List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(shards);
+			for(int s = 0; s < shards; s++) {
+				final int shard = s;
+				tasks.add(() -> {
+					for(int i = 0; i < count; i++) {
+						int e = edges == null ? i : edges[i];
+						long pair = pairKey(node1[e], node2[e]);
+						if(shard(pair, shards) == shard && seen[shard].putIfAbsent(pair, e) != -1) {
+							repeated[i] = true;
+						}
+					}
+					return null;
+				});
+			}
+			runAll(tasks);
+
+			int repeats = 0;
+			for(int i = 0; i < count; i++) {
+				if(repeated[i]) {
+					repeats++;
+				}
+			}
+			if(repeats == 0) {
+				return;
+			}
+			final int[] next = new int[repeats];
+			int position = 0;
+			for(int i = 0; i < count; i++) {
+				if(repeated[i]) {
+					next[position++] = edges == null ? i : edges[i];
+				}
+			}
+
+			round++;
+			SplittableRandom[] randoms = chunkRandoms(InvariantHasher.mix64(seed+round*GOLDEN_GAMMA), chunks(repeats));
+			tasks.clear();
+			for(int c = 0; c < randoms.length; c++) {
+				final int start = c*CHUNK_SIZE;
+				final int end = (int)Math.min(repeats, (long)start+CHUNK_SIZE);
+				final SplittableRandom random = randoms[c];
+				tasks.add(() -> {
+					for(int i = start; i < end; i++) {
+						drawEdge(random, numberOfNodes, true, node1, node2, next[i]);
+					}
+					return null;
+				});
+			}
+			runAll(tasks);
+			redraw = next;
+		}
+	}
+
+
+	/**
+	 * @param n1 one node
+	 * @param n2 another node
+	 * @return the unordered pair of nodes as a long, the lower node in the high half
+	 */
+	private static long pairKey(int n1, int n2) {
+		if(n1 < n2) {
+			return ((long)n1 << 32) | n2;
+		}
+		return ((long)n2 << 32) | n1;
+	}
+
+
+	/**
+	 * @param pair a pair key
+	 * @param shards the number of shards
+	 * @return the shard that holds the pair
+	 */
+	private static int shard(long pair, int shards) {
+		return (int)((InvariantHasher.mix64(pair) >>> 1) % shards);
+	}
+
+
+	/**
+	 * An Erd&#337;s-R&eacute;nyi G(n,p) graph, where each unordered pair of distinct nodes is joined with probability p,
+	 * so the graph is simple. Each edge leaves the lower numbered node. Pairs that are not joined are skipped with
+	 * geometrically distributed jumps, so the time taken is in proportion to the number of edges rather than pairs.
+	 *
+	 * @param numberOfNodes the number of nodes
+	 * @param p the probability that a pair of nodes is joined, from 0 to 1
+	 * @param seed random number generator seed
+	 * @param direct if true then off heap ByteBuffers, if false then on heap ByteBuffers
+	 * @return the new graph
+	 * @throws FastGraphException if p is not a probability, or the graph is too large for a FastGraph
+	 */
+	public FastGraph erdosRenyi(final int numberOfNodes, final double p, long seed, boolean direct) throws FastGraphException {
+		if(!(p >= 0.0 && p <= 1.0)) {
+			throw new FastGraphException("Edge probability "+p+" is not between 0 and 1");
+		}
+long time = Debugger.createTime();
+		// rows of the upper triangle of the adjacency matrix, grouped into chunks of about the same number of pairs
+		ArrayList<Integer> rowStarts = new ArrayList<Integer>();
+		rowStarts.add(0);
+		long pairs = 0;
+		for(int row = 0; row < numberOfNodes; row++) {
+			pairs += numberOfNodes-1-row;
+			if(pairs >= PAIRS_PER_CHUNK) {
+				rowStarts.add(row+1);
+				pairs = 0;
+			}
+		}
+		if(rowStarts.get(rowStarts.size()-1) < numberOfNodes) {
+			rowStarts.add(numberOfNodes);
+		}
+		final int chunks = rowStarts.size()-1;
+
+		// count pass, then a fill pass replaying the same random streams
+		final int[] chunkEdges = new int[chunks];
+		SplittableRandom[] randoms = chunkRandoms(seed, chunks);
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(chunks);
+		for(int c = 0; c < chunks; c++) {
+			final int chunk = c;
+			final int startRow = rowStarts.get(c);
+			final int endRow = rowStarts.get(c+1);
+			final SplittableRandom random = randoms[c];
+			tasks.add(() -> {
+				long count = skipPairs(random, p, numberOfNodes, startRow, endRow, null, null, 0);
+				if(count > Integer.MAX_VALUE) {
+					throw new FastGraphException("Too many edges for a FastGraph");
+				}
+				chunkEdges[chunk] = (int)count;
+				return null;
+			});
+		}
+		runAll(tasks);
+
+		long totalEdges = 0;
+		final int[] chunkEdgeStart = new int[chunks];
+		for(int c = 0; c < chunks; c++) {
+			if(totalEdges+chunkEdges[c] > Integer.MAX_VALUE) {
+				throw new FastGraphException("Too many edges for a FastGraph");
+			}
+			chunkEdgeStart[c] = (int)totalEdges;
+			totalEdges += chunkEdges[c];
+		}
+		final int[] node1 = new int[(int)totalEdges];
+		final int[] node2 = new int[(int)totalEdges];
+		randoms = chunkRandoms(seed, chunks);
+		tasks.clear();
+		for(int c = 0; c < chunks; c++) {
+			final int startRow = rowStarts.get(c);
+			final int endRow = rowStarts.get(c+1);
+			final int edgeStart = chunkEdgeStart[c];
+			final SplittableRandom random = randoms[c];
+			tasks.add(() -> {
+				skipPairs(random, p, numberOfNodes, startRow, endRow, node1, node2, edgeStart);
+				return null;
+			});
+		}
+		runAll(tasks);
+Debugger.outputTime("generated G(n,p) with "+totalEdges+" edges", time);
+		return build("gnp-n-"+numberOfNodes+"-p-"+p, numberOfNodes, node1, node2, direct);
+	}
+
+
+	/**
+	 * Visit the pairs (v,w) with v in the given rows and v &lt; w, jumping over the pairs that are not joined.
+	 *
+	 * @param random the random stream of the rows
+	 * @param p the probability a pair is joined
+	 * @param numberOfNodes the number of nodes
+	 * @param startRow the first row
+	 * @param endRow one past the last row
+	 * @param node1 populated with the lower node of each joined pair, or null to count only
+	 * @param node2 populated with the higher node of each joined pair, or null to count only
+	 * @param edgeStart the index in the node arrays of the first joined pair
+	 * @return the number of joined pairs
+	 */
+	private static long skipPairs(SplittableRandom random, double p, int numberOfNodes, int startRow, int endRow, int[] node1, int[] node2, int edgeStart) {
+		if(p <= 0.0) {
+			return 0;
+		}
+		double logOneMinusP = Math.log(1.0-p);
+		long count = 0;
+		int v = startRow;
+		long w = v; // the last column visited in row v
+		while(v < endRow) {
+			long skip = 0;
+			if(p < 1.0) {
+				skip = (long)Math.floor(Math.log(1.0-random.nextDouble())/logOneMinusP);
+			}
+			w += 1+skip;
+			while(w >= numberOfNodes && v < endRow) { // carry the jump on into the next row, which starts after the diagonal
+				long overflow = w-numberOfNodes;
+				v++;
+				w = v+1+overflow;
+			}
+			if(v < endRow) {
+				if(node1 != null) {
+					node1[edgeStart+(int)count] = v;
+					node2[edgeStart+(int)count] = (int)w;
+				}
+				count++;
+			}
+		}
+		return count;
+	}
+
+
+	/**
+	 * A Barab&aacute;si-Albert preferential attachment graph, in the linearised chord diagram form of Bollob&aacute;s and
+	 * Riordan. Node v adds edgesPerNode edges, each leaving v, and each edge goes to an end of an earlier edge
+	 * end chosen evenly at random, including the new edge's own first end, so nodes are chosen in proportion to
+	 * their degree and self sourcing and parallel edges can occur. Following Sanders and Schulz, each end is
+	 * found from a random number fixed by its position, so edges are generated independently on any thread.
+	 *
+	 * @param numberOfNodes the number of nodes
+	 * @param edgesPerNode the number of edges added with each node
+	 * @param seed random number generator seed
+	 * @param direct if true then off heap ByteBuffers, if false then on heap ByteBuffers
+	 * @return the new graph
+	 * @throws FastGraphException if edgesPerNode is negative, or the graph is too large for a FastGraph
+	 */
+	public FastGraph barabasiAlbert(int numberOfNodes, final int edgesPerNode, final long seed, boolean direct) throws FastGraphException {
+		if(edgesPerNode < 0) {
+			throw new FastGraphException("Negative number of edges per node");
+		}
+		long totalEdges = (long)numberOfNodes*edgesPerNode;
+		if(totalEdges > Integer.MAX_VALUE/2) { // edge ends are numbered in an int
+			throw new FastGraphException("Too many edges for a FastGraph");
+		}
+long time = Debugger.createTime();
+		final int numberOfEdges = (int)totalEdges;
+		final int[] node1 = new int[numberOfEdges];
+		final int[] node2 = new int[numberOfEdges];
+		int chunks = chunks(numberOfEdges);
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(chunks);
+		for(int c = 0; c < chunks; c++) {
+			final int start = c*CHUNK_SIZE;
+			final int end = (int)Math.min(numberOfEdges, (long)start+CHUNK_SIZE);
+			tasks.add(() -> {
+				for(int e = start; e < end; e++) {
+					node1[e] = e/edgesPerNode;
+					node2[e] = attachedNode(seed, e, edgesPerNode);
+				}
+				return null;
+			});
+		}
+		runAll(tasks);
+Debugger.outputTime("generated Barabasi-Albert graph with "+numberOfEdges+" edges", time);
+		return build("ba-n-"+numberOfNodes+"-m-"+edgesPerNode, numberOfNodes, node1, node2, direct);
+	}
+
+
+	/**
+	 * Edge ends are numbered 2e for the first end of edge e and 2e+1 for the second. The second end of edge e
+	 * copies an end chosen from 0 to 2e, and a copied second end is followed back until a first end is found.
+	 *
+	 * @param seed random number generator seed
+	 * @param edge the edge
+	 * @param edgesPerNode the number of edges added with each node
+	 * @return the node at the second end of the edge
+	 */
+	private static int attachedNode(long seed, int edge, int edgesPerNode) {
+		int e = edge;
+		while(true) {
+			SplittableRandom random = new SplittableRandom(InvariantHasher.mix64(seed+(long)e*GOLDEN_GAMMA));
+			int end = random.nextInt(2*e+1);
+			if((end & 1) == 0) {
+				return (end >>> 1)/edgesPerNode;
+			}
+			e = end >>> 1;
+		}
+	}
+
+
+	/**
+	 * A configuration model graph with the given node degrees. Each node has a stub for each unit of its degree,
+	 * the stubs are put in a random order by sorting them on random keys, and consecutive stubs are joined. Self
+	 * sourcing and parallel edges may exist. A self sourcing edge counts two to the degree of its node, as
+	 * {@link FastGraph#getNodeDegree(int)}.
+	 *
+	 * @param degrees the degree of each node, which must add up to an even number
+	 * @param seed random number generator seed
+	 * @param direct if true then off heap ByteBuffers, if false then on heap ByteBuffers
+	 * @return the new graph
+	 * @throws FastGraphException if a degree is negative, the degrees add up to an odd number, or the graph is too large for a FastGraph
+	 */
+	public FastGraph configurationModel(final int[] degrees, long seed, boolean direct) throws FastGraphException {
+long time = Debugger.createTime();
+		int numberOfNodes = degrees.length;
+		final int[] stubStart = new int[numberOfNodes+1];
+		long totalStubs = 0;
+		for(int n = 0; n < numberOfNodes; n++) {
+			if(degrees[n] < 0) {
+				throw new FastGraphException("Negative degree for node "+n);
+			}
+			totalStubs += degrees[n];
+			if(totalStubs > Integer.MAX_VALUE-8) {
+				throw new FastGraphException("Too many edges for a FastGraph");
+			}
+			stubStart[n+1] = (int)totalStubs;
+		}
+		if((totalStubs & 1) == 1) {
+			throw new FastGraphException("The degrees add up to an odd number");
+		}
+		final int stubs = (int)totalStubs;
+
+		// the node of each stub
+		final int[] stubNode = new int[stubs];
+		int nodeChunks = chunks(numberOfNodes);
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for(int c = 0; c < nodeChunks; c++) {
+			final int start = c*CHUNK_SIZE;
+			final int end = (int)Math.min(numberOfNodes, (long)start+CHUNK_SIZE);
+			tasks.add(() -> {
+				for(int n = start; n < end; n++) {
+					Arrays.fill(stubNode, stubStart[n], stubStart[n+1], n);
+				}
+				return null;
+			});
+		}
+		runAll(tasks);
+
+		// random keys in the high half, the stub in the low half, so the keys are unique and the order is fixed by the seed
+		final long[] keys = new long[stubs];
+		SplittableRandom[] randoms = chunkRandoms(seed, chunks(stubs));
+		tasks.clear();
+		for(int c = 0; c < randoms.length; c++) {
+			final int start = c*CHUNK_SIZE;
+			final int end = (int)Math.min(stubs, (long)start+CHUNK_SIZE);
+			final SplittableRandom random = randoms[c];
+			tasks.add(() -> {
+				for(int s = start; s < end; s++) {
+					keys[s] = (random.nextLong() & 0xffffffff00000000L) | s;
+				}
+				return null;
+			});
+		}
+		runAll(tasks);
+		Arrays.parallelSort(keys);
+
+		final int numberOfEdges = stubs/2;
+		final int[] node1 = new int[numberOfEdges];
+		final int[] node2 = new int[numberOfEdges];
+		tasks.clear();
+		for(int c = 0; c < chunks(numberOfEdges); c++) {
+			final int start = c*CHUNK_SIZE;
+			final int end = (int)Math.min(numberOfEdges, (long)start+CHUNK_SIZE);
+			tasks.add(() -> {
+				for(int e = start; e < end; e++) {
+					node1[e] = stubNode[(int)keys[2*e]];
+					node2[e] = stubNode[(int)keys[2*e+1]];
+				}
+				return null;
+			});
+		}
+		runAll(tasks);
+Debugger.outputTime("generated configuration model with "+numberOfEdges+" edges", time);
+		return build("configuration-n-"+numberOfNodes+"-e-"+numberOfEdges, numberOfNodes, node1, node2, direct);
+	}
+
+
+	/**
+	 * @param size the number of items
+	 * @return the number of chunks of CHUNK_SIZE needed for the items
+	 */
+	private static int chunks(int size) {
+		return (int)(((long)size+CHUNK_SIZE-1)/CHUNK_SIZE);
+	}
+
+
+	/**
+	 * @param seed random number generator seed
+	 * @param chunks the number of chunks
+	 * @return a random stream for each chunk, split in order from the seed
+	 */
+	private static SplittableRandom[] chunkRandoms(long seed, int chunks) {
+		SplittableRandom root = new SplittableRandom(seed);
+		SplittableRandom[] ret = new SplittableRandom[chunks];
+		for(int c = 0; c < chunks; c++) {
+			ret[c] = root.split();
+		}
+		return ret;
+	}
+
+
+	/**
+	 * Write the node, edge, label and connection buffers for the edges, and wrap them as a graph.
+	 *
+	 * @param name the name of the new graph
+	 * @param numberOfNodes the number of nodes
+	 * @param node1 the first node of each edge
+	 * @param node2 the second node of each edge
+	 * @param direct if true then off heap ByteBuffers, if false then on heap ByteBuffers
+	 * @return the new graph
+	 * @throws FastGraphException if a task fails or the thread is interrupted
+	 */
+	private FastGraph build(String name, final int numberOfNodes, final int[] node1, final int[] node2, boolean direct) throws FastGraphException {
+long time = Debugger.createTime();
+		final int numberOfEdges = node1.length;
+		long nodeLabelSize = labelCharsBefore(numberOfNodes)*2;
+		long edgeLabelSize = labelCharsBefore(numberOfEdges)*2;
+		final SegmentedBuffer nodeBuf = SegmentedBuffer.allocate((long)numberOfNodes*FastGraph.NODE_BYTE_SIZE, direct);
+		final SegmentedBuffer edgeBuf = SegmentedBuffer.allocate((long)numberOfEdges*FastGraph.EDGE_BYTE_SIZE, direct);
+		final SegmentedBuffer nodeLabelBuf = SegmentedBuffer.allocate(nodeLabelSize, direct);
+		final SegmentedBuffer edgeLabelBuf = SegmentedBuffer.allocate(edgeLabelSize, direct);
+
+		// new buffers are zero, so only the labels and edge ends need writing. Label offsets are found from the index, so chunks are independent
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for(int c = 0; c < chunks(numberOfNodes); c++) {
+			final int start = c*CHUNK_SIZE;
+			final int end = (int)Math.min(numberOfNodes, (long)start+CHUNK_SIZE);
+			tasks.add(() -> {
+				long labelOffset = labelCharsBefore(start)*2;
+				for(int n = start; n < end; n++) {
+					long nodeOffset = (long)n*FastGraph.NODE_BYTE_SIZE;
+					nodeBuf.putLong(FastGraph.NODE_LABEL_START_OFFSET+nodeOffset, labelOffset);
+					nodeBuf.putShort(FastGraph.NODE_LABEL_LENGTH_OFFSET+nodeOffset, (short)(AdjacencyListImporter.decimalLength(n)+1));
+					nodeLabelBuf.putChar(labelOffset, 'n');
+					labelOffset = AdjacencyListImporter.putDecimal(nodeLabelBuf, labelOffset+2, n);
+				}
+				return null;
+			});
+		}
+		for(int c = 0; c < chunks(numberOfEdges); c++) {
+			final int start = c*CHUNK_SIZE;
+			final int end = (int)Math.min(numberOfEdges, (long)start+CHUNK_SIZE);
+			tasks.add(() -> {
+				long labelOffset = labelCharsBefore(start)*2;
+				for(int e = start; e < end; e++) {
+					long edgeOffset = (long)e*FastGraph.EDGE_BYTE_SIZE;
+					edgeBuf.putInt(FastGraph.EDGE_NODE1_OFFSET+edgeOffset, node1[e]);
+					edgeBuf.putInt(FastGraph.EDGE_NODE2_OFFSET+edgeOffset, node2[e]);
+					edgeBuf.putLong(FastGraph.EDGE_LABEL_START_OFFSET+edgeOffset, labelOffset);
+					edgeBuf.putShort(FastGraph.EDGE_LABEL_LENGTH_OFFSET+edgeOffset, (short)(AdjacencyListImporter.decimalLength(e)+1));
+					edgeLabelBuf.putChar(labelOffset, 'e');
+					labelOffset = AdjacencyListImporter.putDecimal(edgeLabelBuf, labelOffset+2, e);
+				}
+				return null;
+			});
+		}
+		runAll(tasks);
+		SegmentedBuffer connectionBuf = buildConnections(node1, node2, nodeBuf, numberOfNodes, direct);
+Debugger.outputTime("built buffers for "+numberOfNodes+" nodes and "+numberOfEdges+" edges", time);
+		return FastGraph.buffersGraphFactory(name, (byte)0, numberOfNodes, numberOfEdges, direct, false, nodeBuf, edgeBuf, connectionBuf, nodeLabelBuf, edgeLabelBuf);
+	}
+
+
+	/**
+	 * The number of label characters before an index, where each label is one letter then the decimal index.
+	 *
+	 * @param index a node or edge index
+	 * @return the total length of the labels of the indexes below index
+	 */
+	static long labelCharsBefore(long index) {
+		long ret = index; // the letters
+		long bandStart = 0;
+		long bandEnd = 10;
+		int digits = 1;
+		while(bandStart < index) {
+			ret += (Math.min(index, bandEnd)-bandStart)*digits;
+			bandStart = bandEnd;
+			bandEnd *= 10;
+			digits++;
+		}
+		return ret;
+	}
+
+
+	/**
+	 * Build the connection lists with a parallel counting sort. Nodes are split into ranges, edges are
+	 * split into chunks, and each chunk counts its edges for each node range. The counts place every
+	 * chunk's edges for a range after those of earlier chunks, so after the edges are scattered into their
+	 * ranges each range holds its edges in edge order. Each range then has its own counting sort over its
+	 * nodes, so every list is in edge order, as the single threaded {@link FastGraph#buildConnections(SegmentedBuffer, SegmentedBuffer, int, int, boolean)}.
+	 * The in and out connection starts and degrees are written to nodeBuf.
+	 *
+	 * @param node1 the first node of each edge
+	 * @param node2 the second node of each edge
+	 * @param nodeBuf the node records, other fields are not changed
+	 * @param numberOfNodes the number of nodes
+	 * @param direct if true then off heap ByteBuffers, if false then on heap ByteBuffers
+	 * @return the new connectionBuf
+	 * @throws FastGraphException if the thread is interrupted
+	 */
+	SegmentedBuffer buildConnections(final int[] node1, final int[] node2, final SegmentedBuffer nodeBuf, final int numberOfNodes, boolean direct) throws FastGraphException {
+		final int numberOfEdges = node1.length;
+		final SegmentedBuffer ret = SegmentedBuffer.allocate((long)numberOfEdges*2*FastGraph.CONNECTION_PAIR_SIZE, direct);
+		if(numberOfNodes == 0) {
+			return ret;
+		}
+		int ranges = Math.min(numberOfNodes, threads*4);
+		final int rangeWidth = (numberOfNodes+ranges-1)/ranges;
+		final int numberOfRanges = (numberOfNodes+rangeWidth-1)/rangeWidth;
+		final int edgeChunks = Math.max(1, chunks(numberOfEdges));
+
+		// count the out and in edges of each chunk in each range
+		final int[][] outCounts = new int[edgeChunks][numberOfRanges];
+		final int[][] inCounts = new int[edgeChunks][numberOfRanges];
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(edgeChunks);
+		for(int c = 0; c < edgeChunks; c++) {
+			final int chunk = c;
+			final int start = c*CHUNK_SIZE;
+			final int end = (int)Math.min(numberOfEdges, (long)start+CHUNK_SIZE);
+			tasks.add(() -> {
+				for(int e = start; e < end; e++) {
+					outCounts[chunk][node1[e]/rangeWidth]++;
+					inCounts[chunk][node2[e]/rangeWidth]++;
+				}
+				return null;
+			});
+		}
+		runAll(tasks);
+
+		// turn the counts into the position of each chunk's first edge in each range
+		final int[] rangeStart = new int[numberOfRanges+1];
+		final int[] inRangeStart = new int[numberOfRanges+1];
+		int outPosition = 0;
+		int inPosition = 0;
+		for(int r = 0; r < numberOfRanges; r++) {
+			rangeStart[r] = outPosition;
+			inRangeStart[r] = inPosition;
+			for(int c = 0; c < edgeChunks; c++) {
+				int count = outCounts[c][r];
+				outCounts[c][r] = outPosition;
+				outPosition += count;
+				count = inCounts[c][r];
+				inCounts[c][r] = inPosition;
+				inPosition += count;
+			}
+		}
+		rangeStart[numberOfRanges] = outPosition;
+		inRangeStart[numberOfRanges] = inPosition;
+
+		final int[] outEdges = new int[numberOfEdges];
+		final int[] inEdges = new int[numberOfEdges];
+		tasks.clear();
+		for(int c = 0; c < edgeChunks; c++) {
+			final int chunk = c;
+			final int start = c*CHUNK_SIZE;
+			final int end = (int)Math.min(numberOfEdges, (long)start+CHUNK_SIZE);
+			tasks.add(() -> {
+				int[] outCursor = outCounts[chunk];
+				int[] inCursor = inCounts[chunk];
+				for(int e = start; e < end; e++) {
+					outEdges[outCursor[node1[e]/rangeWidth]++] = e;
+					inEdges[inCursor[node2[e]/rangeWidth]++] = e;
+				}
+				return null;
+			});
+		}
+		runAll(tasks);
+
+		// each node has its in list then its out list, and a range has all its nodes' lists, so range r starts after the connections of earlier ranges
+		tasks.clear();
+		for(int r = 0; r < numberOfRanges; r++) {
+			final int firstNode = r*rangeWidth;
+			final int lastNode = Math.min(numberOfNodes, firstNode+rangeWidth);
+			final int outStart = rangeStart[r];
+			final int outEnd = rangeStart[r+1];
+			final int inStart = inRangeStart[r];
+			final int inEnd = inRangeStart[r+1];
+			final long rangeOffset = ((long)outStart+inStart)*FastGraph.CONNECTION_PAIR_SIZE;
+			tasks.add(() -> {
+				int width = lastNode-firstNode;
+				int[] outDegree = new int[width];
+				int[] inDegree = new int[width];
+				for(int i = outStart; i < outEnd; i++) {
+					outDegree[node1[outEdges[i]]-firstNode]++;
+				}
+				for(int i = inStart; i < inEnd; i++) {
+					inDegree[node2[inEdges[i]]-firstNode]++;
+				}
+				long[] outCursor = new long[width];
+				long[] inCursor = new long[width];
+				long offset = rangeOffset;
+				for(int n = 0; n < width; n++) {
+					long nodeOffset = (long)(firstNode+n)*FastGraph.NODE_BYTE_SIZE;
+					inCursor[n] = offset;
+					nodeBuf.putLong(FastGraph.NODE_IN_CONNECTION_START_OFFSET+nodeOffset, offset);
+					nodeBuf.putInt(FastGraph.NODE_IN_DEGREE_OFFSET+nodeOffset, inDegree[n]);
+					offset += (long)inDegree[n]*FastGraph.CONNECTION_PAIR_SIZE;
+					outCursor[n] = offset;
+					nodeBuf.putLong(FastGraph.NODE_OUT_CONNECTION_START_OFFSET+nodeOffset, offset);
+					nodeBuf.putInt(FastGraph.NODE_OUT_DEGREE_OFFSET+nodeOffset, outDegree[n]);
+					offset += (long)outDegree[n]*FastGraph.CONNECTION_PAIR_SIZE;
+				}
+				for(int i = outStart; i < outEnd; i++) {
+					int e = outEdges[i];
+					int n = node1[e]-firstNode;
+					ret.putInt(FastGraph.CONNECTION_EDGE_OFFSET+outCursor[n], e);
+					ret.putInt(FastGraph.CONNECTION_NODE_OFFSET+outCursor[n], node2[e]);
+					outCursor[n] += FastGraph.CONNECTION_PAIR_SIZE;
+				}
+				for(int i = inStart; i < inEnd; i++) {
+					int e = inEdges[i];
+					int n = node2[e]-firstNode;
+					ret.putInt(FastGraph.CONNECTION_EDGE_OFFSET+inCursor[n], e);
+					ret.putInt(FastGraph.CONNECTION_NODE_OFFSET+inCursor[n], node1[e]);
+					inCursor[n] += FastGraph.CONNECTION_PAIR_SIZE;
+				}
+				return null;
+			});
+		}
+		runAll(tasks);
+		return ret;
+	}
+
+
+	/**
+	 * Run the tasks on the thread pool and wait for them all.
+	 *
+	 * @param tasks the work
+	 * @throws FastGraphException if a task fails or the thread is interrupted
+	 */
+	private void runAll(List<Callable<Void>> tasks) throws FastGraphException {
+		if(tasks.isEmpty()) {
+			return;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, tasks.size()));
+		try {
+			for(Future<Void> f : executor.invokeAll(tasks)) {
+				f.get();
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new FastGraphException("Interrupted while generating", e);
+		} catch(ExecutionException e) {
+			if(e.getCause() instanceof FastGraphException) {
+				throw (FastGraphException)e.getCause();
+			}
+			if(e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException)e.getCause();
+			}
+			throw new FastGraphException("Failed generating", e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,738 @@
+package uk.ac.kent.dover.fastGraph;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * A byte store addressed with long offsets, held as a list of ByteBuffer segments so that
+ * it is not limited to the 2GB maximum size of a single ByteBuffer. The accessors mirror
+ * the absolute and relative methods of ByteBuffer that FastGraph uses, so the store can be
+ * used in place of a ByteBuffer. Values are big endian, as with ByteBuffer.
+ * <p>
+ * Segments are a fixed power of two in size, so finding the segment for an offset is a shift.
+ * Records in the FastGraph buffers are not aligned to segments, so a value that crosses a
+ * segment boundary is assembled byte by byte. Buffers that fit in one segment take a fast
+ * path straight to the single ByteBuffer.
+ * </p>
+ *
+ * @author Peter Rodgers
+ *
+ */
+public class SegmentedBuffer {
+
+	public static final int SEGMENT_SHIFT = 30;
+	public static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT; // 1GB
+	private static final long SEGMENT_MASK = SEGMENT_SIZE-1;
+
+	private final ByteBuffer[] segments;
+	private final ByteBuffer first; // segments[0], the only segment for most graphs
+	private final boolean single; // true if there is only one segment
+	private final long capacity;
+
+	private long position = 0; // for the relative get and put methods
+
+
+	/**
+	 * Use the factory methods to create.
+	 *
+	 * @param segments the backing buffers, all but the last must be SEGMENT_SIZE in capacity
+	 * @param capacity the total number of bytes
+	 */
+	private SegmentedBuffer(ByteBuffer[] segments, long capacity) {
+		this.segments = segments;
+		this.first = segments[0];
+		this.single = segments.length == 1;
+		this.capacity = capacity;
+	}
+
+
+	/**
+	 * Create an on heap store.
+	 *
+	 * @param capacity the number of bytes
+	 * @return the new store, filled with zeros
+	 */
+	public static SegmentedBuffer allocate(long capacity) {
+		return allocate(capacity, false);
+	}
+
+
+	/**
+	 * Create an off heap store.
+	 *
+	 * @param capacity the number of bytes
+	 * @return the new store, filled with zeros
+	 */
+	public static SegmentedBuffer allocateDirect(long capacity) {
+		return allocate(capacity, true);
+	}
+
+
+	/**
+	 * Create a store. Small off heap stores are carved from the current thread's
+	 * {@link BufferArena} if one is open.
+	 *
+	 * @param capacity the number of bytes
+	 * @param direct if true then off heap ByteBuffers, if false then on heap ByteBuffers
+	 * @return the new store, filled with zeros
+	 */
+	public static SegmentedBuffer allocate(long capacity, boolean direct) {
+		if(capacity < 0) {
+			throw new IllegalArgumentException("Negative capacity: "+capacity);
+		}
+		if(direct && capacity <= BufferArena.MAX_ARENA_ALLOCATION) {
+			BufferArena arena = BufferArena.current();
+			if(arena != null) {
+				return new SegmentedBuffer(new ByteBuffer[] {arena.allocate((int)capacity)}, capacity);
+			}
+		}
+		ByteBuffer[] segments = new ByteBuffer[numberOfSegments(capacity)];
+		for(int s = 0; s < segments.length; s++) {
+			int size = segmentCapacity(capacity, s);
+			if(direct) {
+				segments[s] = ByteBuffer.allocateDirect(size);
+			} else {
+				segments[s] = ByteBuffer.allocate(size);
+			}
+		}
+		return new SegmentedBuffer(segments, capacity);
+	}
+
+
+	/**
+	 * Wrap an existing ByteBuffer, which must be no bigger than SEGMENT_SIZE. The ByteBuffer
+	 * is shared, not copied.
+	 *
+	 * @param buf the buffer to wrap
+	 * @return a single segment store backed by buf
+	 */
+	public static SegmentedBuffer wrap(ByteBuffer buf) {
+		if(buf.capacity() > SEGMENT_SIZE) {
+			throw new IllegalArgumentException("ByteBuffer larger than a segment: "+buf.capacity());
+		}
+		return new SegmentedBuffer(new ByteBuffer[] {buf}, buf.capacity());
+	}
+
+
+	/**
+	 * Memory map a region of a file, one mapping per segment, so files larger than 2GB can be mapped.
+	 *
+	 * @param channel the channel of the file to map
+	 * @param mode the map mode, usually FileChannel.MapMode.READ_ONLY
+	 * @param start the file position of the first byte to map
+	 * @param size the number of bytes to map
+	 * @return a store backed by the file
+	 * @throws IOException if the mapping fails
+	 */
+	public static SegmentedBuffer map(FileChannel channel, FileChannel.MapMode mode, long start, long size) throws IOException {
+		ByteBuffer[] segments = new ByteBuffer[numberOfSegments(size)];
+		for(int s = 0; s < segments.length; s++) {
+			segments[s] = channel.map(mode, start+s*SEGMENT_SIZE, segmentCapacity(size, s));
+		}
+		return new SegmentedBuffer(segments, size);
+	}
+
+
+	/**
+	 * @param capacity total bytes
+	 * @return the number of segments needed, at least one so that empty stores still have a backing buffer
+	 */
+	private static int numberOfSegments(long capacity) {
+		long ret = (capacity+SEGMENT_SIZE-1) >>> SEGMENT_SHIFT;
+		if(ret == 0) {
+			return 1;
+		}
+		if(ret > Integer.MAX_VALUE) {
+			throw new OutOfMemoryError("Tried to create a SegmentedBuffer with too many segments");
+		}
+		return (int)ret;
+	}
+
+
+	/**
+	 * @param capacity total bytes
+	 * @param segment the segment index
+	 * @return the number of bytes in the given segment
+	 */
+	private static int segmentCapacity(long capacity, int segment) {
+		long remaining = capacity-segment*SEGMENT_SIZE;
+		return (int)Math.min(remaining, SEGMENT_SIZE);
+	}
+
+
+	/**
+	 * @return the number of bytes in the store
+	 */
+	public long capacity() {
+		return capacity;
+	}
+
+
+	/**
+	 * @return true if the bytes are held off heap or memory mapped
+	 */
+	public boolean isDirect() {
+		return first.isDirect();
+	}
+
+
+	/**
+	 * @return true if the store is read only, for instance when it is memory mapped read only
+	 */
+	public boolean isReadOnly() {
+		return first.isReadOnly();
+	}
+
+
+	/**
+	 * @return the number of ByteBuffer segments
+	 */
+	public int numberOfSegments() {
+		return segments.length;
+	}
+
+
+	/**
+	 * @param segment the segment index
+	 * @return the ByteBuffer backing the given segment, which is shared, not copied
+	 */
+	public ByteBuffer getSegment(int segment) {
+		return segments[segment];
+	}
+
+
+	/**
+	 * @param index byte offset
+	 * @return the byte at index
+	 */
+	public byte get(long index) {
+		if(single) {
+			return first.get((int)index);
+		}
+		return segments[(int)(index >>> SEGMENT_SHIFT)].get((int)(index & SEGMENT_MASK));
+	}
+
+
+	/**
+	 * @param index byte offset
+	 * @param value the byte to store
+	 */
+	public void put(long index, byte value) {
+		if(single) {
+			first.put((int)index, value);
+			return;
+		}
+		segments[(int)(index >>> SEGMENT_SHIFT)].put((int)(index & SEGMENT_MASK), value);
+	}
+
+
+	/**
+	 * @param index byte offset
+	 * @return the short starting at index
+	 */
+	public short getShort(long index) {
+		if(single) {
+			return first.getShort((int)index);
+		}
+		int p = (int)(index & SEGMENT_MASK);
+		if(p <= SEGMENT_SIZE-2) {
+			return segments[(int)(index >>> SEGMENT_SHIFT)].getShort(p);
+		}
+		return (short)readAcross(index, 2);
+	}
+
+
+	/**
+	 * @param index byte offset
+	 * @param value the short to store
+	 */
+	public void putShort(long index, short value) {
+		if(single) {
+			first.putShort((int)index, value);
+			return;
+		}
+		int p = (int)(index & SEGMENT_MASK);
+		if(p <= SEGMENT_SIZE-2) {
+			segments[(int)(index >>> SEGMENT_SHIFT)].putShort(p, value);
+			return;
+		}
+		writeAcross(index, 2, value);
+	}
+
+
+	/**
+	 * @param index byte offset
+	 * @return the char starting at index
+	 */
+	public char getChar(long index) {
+		return (char)getShort(index);
+	}
+
+
+	/**
+	 * @param index byte offset
+	 * @param value the char to store
+	 */
+	public void putChar(long index, char value) {
+		putShort(index, (short)value);
+	}
+
+
+	/**
+	 * @param index byte offset
+	 * @return the int starting at index
+	 */
+	public int getInt(long index) {
+		if(single) {
+			return first.getInt((int)index);
+		}
+		int p = (int)(index & SEGMENT_MASK);
+		if(p <= SEGMENT_SIZE-4) {
+			return segments[(int)(index >>> SEGMENT_SHIFT)].getInt(p);
+		}
+		return (int)readAcross(index, 4);
+	}
+
+
+	/**
+	 * Reads an int and treats it as unsigned, used for the 32 bit offsets of node and edge records saved before they were widened to longs.
+	 *
+	 * @param index byte offset
+	 * @return the int starting at index, as an unsigned value
+	 */
+	public long getUnsignedInt(long index) {
+		return getInt(index) & 0xFFFFFFFFL;
+	}
+
+
+	/**
+	 * @param index byte offset
+	 * @param value the int to store
+	 */
+	public void putInt(long index, int value) {
+		if(single) {
+			first.putInt((int)index, value);
+			return;
+		}
+		int p = (int)(index & SEGMENT_MASK);
+		if(p <= SEGMENT_SIZE-4) {
+			segments[(int)(index >>> SEGMENT_SHIFT)].putInt(p, value);
+			return;
+		}
+		writeAcross(index, 4, value);
+	}
+
+
+	/**
+	 * @param index byte offset
+	 * @return the long starting at index
+	 */
+	public long getLong(long index) {
+		if(single) {
+			return first.getLong((int)index);
+		}
+		int p = (int)(index & SEGMENT_MASK);
+		if(p <= SEGMENT_SIZE-8) {
+			return segments[(int)(index >>> SEGMENT_SHIFT)].getLong(p);
+		}
+		return readAcross(index, 8);
+	}
+
+
+	/**
+	 * @param index byte offset
+	 * @param value the long to store
+	 */
+	public void putLong(long index, long value) {
+		if(single) {
+			first.putLong((int)index, value);
+			return;
+		}
+		int p = (int)(index & SEGMENT_MASK);
+		if(p <= SEGMENT_SIZE-8) {
+			segments[(int)(index >>> SEGMENT_SHIFT)].putLong(p, value);
+			return;
+		}
+		writeAcross(index, 8, value);
+	}
+
+
+	/**
+	 * Big endian read of a value that crosses a segment boundary.
+	 *
+	 * @param index byte offset of the first byte
+	 * @param size number of bytes in the value
+	 * @return the value
+	 */
+	private long readAcross(long index, int size) {
+		long ret = 0;
+		for(int i = 0; i < size; i++) {
+			ret = (ret << 8) | (get(index+i) & 0xFF);
+		}
+		return ret;
+	}
+
+
+	/**
+	 * Big endian write of a value that crosses a segment boundary.
+	 *
+	 * @param index byte offset of the first byte
+	 * @param size number of bytes in the value
+	 * @param value the value
+	 */
+	private void writeAcross(long index, int size, long value) {
+		for(int i = size-1; i >= 0; i--) {
+			put(index+i, (byte)value);
+			value >>>= 8;
+		}
+	}
+
+
+	/**
+	 * @return the position used by the relative methods
+	 */
+	public long position() {
+		return position;
+	}
+
+
+	/**
+	 * @param newPosition the position used by the relative methods
+	 * @return this store
+	 */
+	public SegmentedBuffer position(long newPosition) {
+		if(newPosition < 0 || newPosition > capacity) {
+			throw new IllegalArgumentException("Position out of range: "+newPosition);
+		}
+		position = newPosition;
+		return this;
+	}
+
+
+	/**
+	 * Sets the position to zero.
+	 *
+	 * @return this store
+	 */
+	public SegmentedBuffer rewind() {
+		position = 0;
+		return this;
+	}
+
+
+	/**
+	 * Sets the position to zero. There is no limit or mark, so this is the same as rewind.
+	 *
+	 * @return this store
+	 */
+	public SegmentedBuffer clear() {
+		position = 0;
+		return this;
+	}
+
+
+	/**
+	 * @return the number of bytes between the position and the capacity
+	 */
+	public long remaining() {
+		return capacity-position;
+	}
+
+
+	/**
+	 * Relative get.
+	 *
+	 * @return the byte at the position, which is then incremented
+	 */
+	public byte get() {
+		checkRemaining(1, false);
+		byte ret = get(position);
+		position++;
+		return ret;
+	}
+
+
+	/**
+	 * Relative get.
+	 *
+	 * @return the char at the position, which is then incremented
+	 */
+	public char getChar() {
+		checkRemaining(2, false);
+		char ret = getChar(position);
+		position += 2;
+		return ret;
+	}
+
+
+	/**
+	 * Relative get.
+	 *
+	 * @return the int at the position, which is then incremented
+	 */
+	public int getInt() {
+		checkRemaining(4, false);
+		int ret = getInt(position);
+		position += 4;
+		return ret;
+	}
+
+
+	/**
+	 * Relative bulk get.
+	 *
+	 * @param dst the array to copy into
+	 * @param offset the first index in dst to copy to
+	 * @param length the number of bytes to copy
+	 * @return this store
+	 */
+	public SegmentedBuffer get(byte[] dst, int offset, int length) {
+		checkRemaining(length, false);
+		int done = 0;
+		while(done < length) {
+			ByteBuffer seg = segments[(int)(position >>> SEGMENT_SHIFT)].duplicate();
+			int p = (int)(position & SEGMENT_MASK);
+			int n = Math.min(length-done, seg.capacity()-p);
+			seg.position(p);
+			seg.get(dst, offset+done, n);
+			done += n;
+			position += n;
+		}
+		return this;
+	}
+
+
+	/**
+	 * Relative bulk put.
+	 *
+	 * @param src the bytes to copy in
+	 * @return this store
+	 */
+	public SegmentedBuffer put(byte[] src) {
+		checkRemaining(src.length, true);
+		int done = 0;
+		while(done < src.length) {
+			ByteBuffer seg = segments[(int)(position >>> SEGMENT_SHIFT)].duplicate();
+			int p = (int)(position & SEGMENT_MASK);
+			int n = Math.min(src.length-done, seg.capacity()-p);
+			seg.position(p);
+			seg.put(src, done, n);
+			done += n;
+			position += n;
+		}
+		return this;
+	}
+
+
+	/**
+	 * Relative bulk put. Copies the remaining bytes of src into this store at the current position,
+	 * incrementing the position of both.
+	 *
+	 * @param src the store to copy from
+	 * @return this store
+	 */
+	public SegmentedBuffer put(SegmentedBuffer src) {
+		long length = src.remaining();
+		checkRemaining(length, true);
+		while(src.position < src.capacity) {
+			ByteBuffer srcSeg = src.segments[(int)(src.position >>> SEGMENT_SHIFT)].duplicate();
+			int srcP = (int)(src.position & SEGMENT_MASK);
+			ByteBuffer dstSeg = segments[(int)(position >>> SEGMENT_SHIFT)].duplicate();
+			int dstP = (int)(position & SEGMENT_MASK);
+			int n = Math.min(srcSeg.capacity()-srcP, dstSeg.capacity()-dstP);
+			srcSeg.position(srcP);
+			srcSeg.limit(srcP+n);
+			dstSeg.position(dstP);
+			dstSeg.put(srcSeg);
+			src.position += n;
+			position += n;
+		}
+		return this;
+	}
+
+
+	/**
+	 * Absolute bulk put. Copies bytes from src into this store, the positions of both are not used or changed.
+	 *
+	 * @param index the byte offset in this store to copy to
+	 * @param src the store to copy from, may be this store if the regions do not overlap
+	 * @param srcIndex the byte offset in src to copy from
+	 * @param length the number of bytes to copy
+	 * @return this store
+	 * @throws IndexOutOfBoundsException if either region is outside its store
+	 */
+	public SegmentedBuffer put(long index, SegmentedBuffer src, long srcIndex, long length) {
+		if(index < 0 || srcIndex < 0 || length < 0 || length > capacity-index || length > src.capacity-srcIndex) {
+			throw new IndexOutOfBoundsException("Copy of "+length+" bytes from "+srcIndex+" to "+index+" is out of range");
+		}
+		long done = 0;
+		while(done < length) {
+			ByteBuffer srcSeg = src.segments[(int)((srcIndex+done) >>> SEGMENT_SHIFT)].duplicate();
+			int srcP = (int)((srcIndex+done) & SEGMENT_MASK);
+			ByteBuffer dstSeg = segments[(int)((index+done) >>> SEGMENT_SHIFT)].duplicate();
+			int dstP = (int)((index+done) & SEGMENT_MASK);
+			int n = (int)Math.min(length-done, Math.min(srcSeg.capacity()-srcP, dstSeg.capacity()-dstP));
+			srcSeg.clear();
+			srcSeg.position(srcP);
+			srcSeg.limit(srcP+n);
+			dstSeg.clear();
+			dstSeg.position(dstP);
+			dstSeg.put(srcSeg);
+			done += n;
+		}
+		return this;
+	}
+
+
+	/**
+	 * @param length the number of bytes needed
+	 * @param put true for a put, false for a get, to decide the exception type
+	 */
+	private void checkRemaining(long length, boolean put) {
+		if(length > capacity-position) {
+			if(put) {
+				throw new BufferOverflowException();
+			}
+			throw new BufferUnderflowException();
+		}
+	}
+
+
+	/**
+	 * Deep copy, on or off heap matching this store. A memory mapped store is copied off heap.
+	 *
+	 * @return new store with a copy of the content of this one.
+	 */
+	public SegmentedBuffer copy() {
+		SegmentedBuffer ret = allocate(capacity, isDirect());
+		long oldPosition = position;
+		position = 0;
+		ret.put(this);
+		position = oldPosition;
+		ret.position = 0;
+		return ret;
+	}
+
+
+	/**
+	 * Copy into a new store of a different size, on or off heap matching this store. If the
+	 * new store is smaller the content is truncated, if it is bigger the end is zero filled.
+	 *
+	 * @param newCapacity the size of the new store in bytes
+	 * @return new store with a copy of the content of this one.
+	 */
+	public SegmentedBuffer resize(long newCapacity) {
+		SegmentedBuffer ret = allocate(newCapacity, isDirect());
+		long length = Math.min(capacity, newCapacity);
+		long copied = 0;
+		while(copied < length) {
+			int segment = (int)(copied >>> SEGMENT_SHIFT);
+			ByteBuffer src = segments[segment].duplicate();
+			src.clear();
+			src.limit((int)Math.min(length-copied, src.capacity()));
+			ByteBuffer dst = ret.segments[segment].duplicate();
+			dst.clear();
+			copied += src.remaining();
+			dst.put(src);
+		}
+		return ret;
+	}
+
+
+	/**
+	 * Write the whole store to a channel, segment by segment. The position is not used or changed.
+	 *
+	 * @param channel the channel to write to
+	 * @throws IOException if the write fails
+	 */
+	public void writeTo(FileChannel channel) throws IOException {
+		for(ByteBuffer segment : segments) {
+			ByteBuffer buf = segment.duplicate();
+			buf.clear();
+			while(buf.hasRemaining()) {
+				channel.write(buf);
+			}
+		}
+	}
+
+
+	/**
+	 * Write the whole store to a channel starting at a given file position. The channel position
+	 * and the store position are not used or changed, so several stores can be written
+	 * to different parts of the same channel at once.
+	 *
+	 * @param channel the channel to write to
+	 * @param filePosition where in the file the first byte goes
+	 * @throws IOException if the write fails
+	 */
+	public void writeTo(FileChannel channel, long filePosition) throws IOException {
+		for(ByteBuffer segment : segments) {
+			ByteBuffer buf = segment.duplicate();
+			buf.clear();
+			while(buf.hasRemaining()) {
+				filePosition += channel.write(buf, filePosition);
+			}
+		}
+	}
+
+
+	/**
+	 * Fill the whole store from a channel starting at a given file position. The channel position
+	 * and the store position are not used or changed.
+	 *
+	 * @param channel the channel to read from
+	 * @param filePosition where in the file the first byte is
+	 * @throws IOException if the read fails or the channel has too few bytes
+	 */
+	public void readFrom(FileChannel channel, long filePosition) throws IOException {
+		for(ByteBuffer segment : segments) {
+			ByteBuffer buf = segment.duplicate();
+			buf.clear();
+			while(buf.hasRemaining()) {
+				int read = channel.read(buf, filePosition);
+				if(read == -1) {
+					throw new IOException("Unexpected end of file, expected "+capacity+" bytes");
+				}
+				filePosition += read;
+			}
+		}
+	}
+
+
+	/**
+	 * @return the CRC-32 checksum of the whole store, the position is not used or changed
+	 */
+	public long crc32() {
+		CRC32 crc = new CRC32();
+		for(ByteBuffer segment : segments) {
+			ByteBuffer buf = segment.duplicate();
+			buf.clear();
+			crc.update(buf);
+		}
+		return crc.getValue();
+	}
+
+
+	/**
+	 * Fill the whole store from a channel, segment by segment. The position is not used or changed.
+	 *
+	 * @param channel the channel to read from
+	 * @throws IOException if the read fails or the channel has fewer bytes than the store
+	 */
+	public void readFrom(FileChannel channel) throws IOException {
+		for(ByteBuffer segment : segments) {
+			ByteBuffer buf = segment.duplicate();
+			buf.clear();
+			while(buf.hasRemaining()) {
+				if(channel.read(buf) == -1) {
+					throw new IOException("Unexpected end of file, expected "+capacity+" bytes");
+				}
+			}
+		}
+	}
+
+}
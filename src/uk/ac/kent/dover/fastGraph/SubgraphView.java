@@ -0,0 +1,683 @@
+package uk.ac.kent.dover.fastGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A subgraph of a FastGraph that refers to the parent graph rather than copying it.
+ * The nodes and edges of the view are indexed from 0, with an array giving the parent
+ * index of each. The structure is held as compact in and out lists of view indexes,
+ * and labels, weights, types and ages are read from the parent. This makes a view
+ * much cheaper to create than {@link FastGraph#generateGraphFromSubgraph(int[], int[])},
+ * so motif and subgraph enumeration can test many small samples, and only build a
+ * FastGraph with {@link #toFastGraph()} for the ones that need to be kept.
+ * <p>
+ * Connections of a node are in edge order, in edges before out edges.
+ * The parent must not be changed while the view is in use. Immutable once built.
+ * </p>
+ *
+ * @author Peter Rodgers
+ *
+ */
+public class SubgraphView {
+
+	private final FastGraph parent;
+	private final int[] nodes; // parent index of each view node
+	private final int[] edges; // parent index of each view edge
+	private final int[] edgeNode1; // view index of the first node of each edge
+	private final int[] edgeNode2; // view index of the second node of each edge
+
+	private final int[] inStart; // start of each node's list in inNodes and inEdges, with a final entry for the end
+	private final int[] inNodes;
+	private final int[] inEdges;
+	private final int[] outStart; // start of each node's list in outNodes and outEdges, with a final entry for the end
+	private final int[] outNodes;
+	private final int[] outEdges;
+
+
+	/**
+	 * @param parent the graph the view refers to
+	 * @param nodes parent index of each view node, not copied
+	 * @param edges parent index of each view edge, not copied
+	 * @param edgeNode1 view index of the first node of each edge, not copied
+	 * @param edgeNode2 view index of the second node of each edge, not copied
+	 */
+	private SubgraphView(FastGraph parent, int[] nodes, int[] edges, int[] edgeNode1, int[] edgeNode2) {
+		this.parent = parent;
+		this.nodes = nodes;
+		this.edges = edges;
+		this.edgeNode1 = edgeNode1;
+		this.edgeNode2 = edgeNode2;
+
+		inStart = new int[nodes.length+1];
+		outStart = new int[nodes.length+1];
+		for(int e = 0; e < edges.length; e++) {
+			outStart[edgeNode1[e]+1]++;
+			inStart[edgeNode2[e]+1]++;
+		}
+		for(int n = 0; n < nodes.length; n++) {
+			outStart[n+1] += outStart[n];
+			inStart[n+1] += inStart[n];
+		}
+		inNodes = new int[edges.length];
+		inEdges = new int[edges.length];
+		outNodes = new int[edges.length];
+		outEdges = new int[edges.length];
+		int[] inPosition = Arrays.copyOf(inStart, nodes.length);
+		int[] outPosition = Arrays.copyOf(outStart, nodes.length);
+		for(int e = 0; e < edges.length; e++) {
+			int n1 = edgeNode1[e];
+			int n2 = edgeNode2[e];
+			outNodes[outPosition[n1]] = n2;
+			outEdges[outPosition[n1]] = e;
+			outPosition[n1]++;
+			inNodes[inPosition[n2]] = n1;
+			inEdges[inPosition[n2]] = e;
+			inPosition[n2]++;
+		}
+	}
+
+
+	/**
+	 * A view of a whole graph, with the same node and edge indexes as the graph.
+	 *
+	 * @param g the graph
+	 * @return the view
+	 */
+	public static SubgraphView whole(FastGraph g) {
+		int[] nodes = new int[g.getNumberOfNodes()];
+		for(int n = 0; n < nodes.length; n++) {
+			nodes[n] = n;
+		}
+		int[] edges = new int[g.getNumberOfEdges()];
+		int[] edgeNode1 = new int[edges.length];
+		int[] edgeNode2 = new int[edges.length];
+		for(int e = 0; e < edges.length; e++) {
+			edges[e] = e;
+			edgeNode1[e] = g.getEdgeNode1(e);
+			edgeNode2[e] = g.getEdgeNode2(e);
+		}
+		return new SubgraphView(g, nodes, edges, edgeNode1, edgeNode2);
+	}
+
+
+	/**
+	 * The subgraph of the given nodes and edges, as {@link FastGraph#generateGraphFromSubgraph(int[], int[])}
+	 * would create it. View node i is nodes[i] and view edge j is edges[j].
+	 *
+	 * @param parent the graph the view refers to
+	 * @param nodes nodes of the parent in the view
+	 * @param edges edges of the parent in the view, must connect only to the given nodes
+	 * @return the view
+	 * @throws IllegalArgumentException if an edge connects to a node that is not in the view
+	 */
+	public static SubgraphView of(FastGraph parent, int[] nodes, int[] edges) {
+		long[] lookup = buildLookup(nodes);
+		int[] edgeNode1 = new int[edges.length];
+		int[] edgeNode2 = new int[edges.length];
+		for(int i = 0; i < edges.length; i++) {
+			edgeNode1[i] = findLocal(lookup, parent.getEdgeNode1(edges[i]));
+			edgeNode2[i] = findLocal(lookup, parent.getEdgeNode2(edges[i]));
+			if(edgeNode1[i] == -1 || edgeNode2[i] == -1) {
+				throw new IllegalArgumentException("Edge "+edges[i]+" connects to a node not in the subgraph");
+			}
+		}
+		return new SubgraphView(parent, nodes.clone(), edges.clone(), edgeNode1, edgeNode2);
+	}
+
+
+	/**
+	 * The subgraph induced by the given nodes, that is the nodes with all the edges of the parent
+	 * between them. View node i is nodes[i], edges are in the order found from the out
+	 * connections of each node.
+	 *
+	 * @param parent the graph the view refers to
+	 * @param nodes nodes of the parent in the view
+	 * @return the view
+	 */
+	public static SubgraphView induced(FastGraph parent, int[] nodes) {
+		long[] lookup = buildLookup(nodes);
+		int[] edges = new int[16];
+		int[] edgeNode1 = new int[16];
+		int[] edgeNode2 = new int[16];
+		int edgeCount = 0;
+		ConnectionIterator connections = parent.getConnectionIterator();
+		for(int i = 0; i < nodes.length; i++) {
+			if(findLocal(lookup, nodes[i]) != i) { // only add the edges of a repeated node once
+				continue;
+			}
+			connections.resetOut(nodes[i]);
+			while(connections.hasNext()) {
+				connections.next();
+				int other = findLocal(lookup, connections.getNode());
+				if(other == -1) {
+					continue;
+				}
+				if(edgeCount == edges.length) {
+					edges = Arrays.copyOf(edges, edgeCount*2);
+					edgeNode1 = Arrays.copyOf(edgeNode1, edgeCount*2);
+					edgeNode2 = Arrays.copyOf(edgeNode2, edgeCount*2);
+				}
+				edges[edgeCount] = connections.getEdge();
+				edgeNode1[edgeCount] = i;
+				edgeNode2[edgeCount] = other;
+				edgeCount++;
+			}
+		}
+		edges = Arrays.copyOf(edges, edgeCount);
+		edgeNode1 = Arrays.copyOf(edgeNode1, edgeCount);
+		edgeNode2 = Arrays.copyOf(edgeNode2, edgeCount);
+		return new SubgraphView(parent, nodes.clone(), edges, edgeNode1, edgeNode2);
+	}
+
+
+	/**
+	 * @param nodes parent node indexes
+	 * @return each parent index in the top half of a long and its position in nodes in the bottom, sorted
+	 */
+	private static long[] buildLookup(int[] nodes) {
+		long[] ret = new long[nodes.length];
+		for(int i = 0; i < nodes.length; i++) {
+			ret[i] = ((long)nodes[i] << 32) | i;
+		}
+		Arrays.sort(ret);
+		return ret;
+	}
+
+
+	/**
+	 * If a parent node appears more than once the last position is returned, which matches the node
+	 * the edges are attached to in {@link FastGraph#generateGraphFromSubgraph(int[], int[])}.
+	 *
+	 * @param lookup from buildLookup
+	 * @param parentNode a node of the parent
+	 * @return the view index of the node, or -1 if it is not in the view
+	 */
+	private static int findLocal(long[] lookup, int parentNode) {
+		long key = ((long)parentNode << 32) | 0xFFFFFFFFL;
+		int pos = -Arrays.binarySearch(lookup, key)-2; // the key is never present, so this is the last entry less than it
+		if(pos < 0 || (int)(lookup[pos] >>> 32) != parentNode) {
+			return -1;
+		}
+		return (int)lookup[pos];
+	}
+
+
+	/**
+	 * @return the graph the view refers to
+	 */
+	public FastGraph getParent() {
+		return parent;
+	}
+
+
+	/**
+	 * @return the number of nodes in the view
+	 */
+	public int getNumberOfNodes() {
+		return nodes.length;
+	}
+
+
+	/**
+	 * @return the number of edges in the view
+	 */
+	public int getNumberOfEdges() {
+		return edges.length;
+	}
+
+
+	/**
+	 * @param nodeIndex a node of the view
+	 * @return the index of the node in the parent
+	 */
+	public int getParentNode(int nodeIndex) {
+		return nodes[nodeIndex];
+	}
+
+
+	/**
+	 * @param edgeIndex an edge of the view
+	 * @return the index of the edge in the parent
+	 */
+	public int getParentEdge(int edgeIndex) {
+		return edges[edgeIndex];
+	}
+
+
+	/**
+	 * @return the parent index of each node of the view
+	 */
+	public int[] getParentNodes() {
+		return nodes.clone();
+	}
+
+
+	/**
+	 * @return the parent index of each edge of the view
+	 */
+	public int[] getParentEdges() {
+		return edges.clone();
+	}
+
+
+	/**
+	 * @param nodeIndex a node of the view
+	 * @return the label of the node
+	 */
+	public String getNodeLabel(int nodeIndex) {
+		return parent.getNodeLabel(nodes[nodeIndex]);
+	}
+
+
+	/**
+	 * @param nodeIndex a node of the view
+	 * @return the weight of the node
+	 */
+	public int getNodeWeight(int nodeIndex) {
+		return parent.getNodeWeight(nodes[nodeIndex]);
+	}
+
+
+	/**
+	 * @param nodeIndex a node of the view
+	 * @return the type of the node
+	 */
+	public byte getNodeType(int nodeIndex) {
+		return parent.getNodeType(nodes[nodeIndex]);
+	}
+
+
+	/**
+	 * @param nodeIndex a node of the view
+	 * @return the age of the node
+	 */
+	public byte getNodeAge(int nodeIndex) {
+		return parent.getNodeAge(nodes[nodeIndex]);
+	}
+
+
+	/**
+	 * @param edgeIndex an edge of the view
+	 * @return the label of the edge
+	 */
+	public String getEdgeLabel(int edgeIndex) {
+		return parent.getEdgeLabel(edges[edgeIndex]);
+	}
+
+
+	/**
+	 * @param edgeIndex an edge of the view
+	 * @return the view index of the first node of the edge
+	 */
+	public int getEdgeNode1(int edgeIndex) {
+		return edgeNode1[edgeIndex];
+	}
+
+
+	/**
+	 * @param edgeIndex an edge of the view
+	 * @return the view index of the second node of the edge
+	 */
+	public int getEdgeNode2(int edgeIndex) {
+		return edgeNode2[edgeIndex];
+	}
+
+
+	/**
+	 * @param nodeIndex a node of the view
+	 * @return the number of view edges entering the node
+	 */
+	public int getNodeInDegree(int nodeIndex) {
+		return inStart[nodeIndex+1]-inStart[nodeIndex];
+	}
+
+
+	/**
+	 * @param nodeIndex a node of the view
+	 * @return the number of view edges leaving the node
+	 */
+	public int getNodeOutDegree(int nodeIndex) {
+		return outStart[nodeIndex+1]-outStart[nodeIndex];
+	}
+
+
+	/**
+	 * @param nodeIndex a node of the view
+	 * @return the number of view edges connecting to the node, self sourcing edges count twice
+	 */
+	public int getNodeDegree(int nodeIndex) {
+		return getNodeInDegree(nodeIndex)+getNodeOutDegree(nodeIndex);
+	}
+
+
+	/**
+	 * @param nodeIndex a node of the view
+	 * @return the view nodes at the other end of edges entering the node
+	 */
+	public int[] getNodeConnectingInNodes(int nodeIndex) {
+		return Arrays.copyOfRange(inNodes, inStart[nodeIndex], inStart[nodeIndex+1]);
+	}
+
+
+	/**
+	 * @param nodeIndex a node of the view
+	 * @return the view nodes at the other end of edges leaving the node
+	 */
+	public int[] getNodeConnectingOutNodes(int nodeIndex) {
+		return Arrays.copyOfRange(outNodes, outStart[nodeIndex], outStart[nodeIndex+1]);
+	}
+
+
+	/**
+	 * @param nodeIndex a node of the view
+	 * @return the view nodes at the other end of all the edges of the node, in then out
+	 */
+	public int[] getNodeConnectingNodes(int nodeIndex) {
+		return concatenate(inNodes, inStart[nodeIndex], inStart[nodeIndex+1], outNodes, outStart[nodeIndex], outStart[nodeIndex+1]);
+	}
+
+
+	/**
+	 * @param nodeIndex a node of the view
+	 * @return the view edges entering the node
+	 */
+	public int[] getNodeConnectingInEdges(int nodeIndex) {
+		return Arrays.copyOfRange(inEdges, inStart[nodeIndex], inStart[nodeIndex+1]);
+	}
+
+
+	/**
+	 * @param nodeIndex a node of the view
+	 * @return the view edges leaving the node
+	 */
+	public int[] getNodeConnectingOutEdges(int nodeIndex) {
+		return Arrays.copyOfRange(outEdges, outStart[nodeIndex], outStart[nodeIndex+1]);
+	}
+
+
+	/**
+	 * @param nodeIndex a node of the view
+	 * @return the view edges connecting to the node, in then out
+	 */
+	public int[] getNodeConnectingEdges(int nodeIndex) {
+		return concatenate(inEdges, inStart[nodeIndex], inStart[nodeIndex+1], outEdges, outStart[nodeIndex], outStart[nodeIndex+1]);
+	}
+
+
+	/**
+	 * @return the two ranges, one after the other
+	 */
+	private static int[] concatenate(int[] a, int aStart, int aEnd, int[] b, int bStart, int bEnd) {
+		int[] ret = new int[aEnd-aStart+bEnd-bStart];
+		System.arraycopy(a, aStart, ret, 0, aEnd-aStart);
+		System.arraycopy(b, bStart, ret, aEnd-aStart, bEnd-bStart);
+		return ret;
+	}
+
+
+	/**
+	 * @return the degree of each node
+	 */
+	public int[] findDegrees() {
+		int[] ret = new int[nodes.length];
+		for(int n = 0; n < nodes.length; n++) {
+			ret[n] = getNodeDegree(n);
+		}
+		return ret;
+	}
+
+
+	/**
+	 * @return the indegree of each node
+	 */
+	public int[] findInDegrees() {
+		int[] ret = new int[nodes.length];
+		for(int n = 0; n < nodes.length; n++) {
+			ret[n] = getNodeInDegree(n);
+		}
+		return ret;
+	}
+
+
+	/**
+	 * @return the outdegree of each node
+	 */
+	public int[] findOutDegrees() {
+		int[] ret = new int[nodes.length];
+		for(int n = 0; n < nodes.length; n++) {
+			ret[n] = getNodeOutDegree(n);
+		}
+		return ret;
+	}
+
+
+	/**
+	 * @param degrees from one of the find degree methods
+	 * @return the largest value in degrees, 0 if it is empty
+	 */
+	public static int maximum(int[] degrees) {
+		int ret = 0;
+		for(int degree : degrees) {
+			if(degree > ret) {
+				ret = degree;
+			}
+		}
+		return ret;
+	}
+
+
+	/**
+	 * Adjacency matrix treating the view as undirected, as {@link AdjacencyMatrix#buildIntAdjacencyMatrix()},
+	 * so a self sourcing edge adds two to the diagonal.
+	 *
+	 * @return the number of edges between each pair of nodes
+	 */
+	public int[][] buildIntAdjacencyMatrix() {
+		int[][] matrix = new int[nodes.length][nodes.length];
+		for(int e = 0; e < edges.length; e++) {
+			matrix[edgeNode1[e]][edgeNode2[e]]++;
+			matrix[edgeNode2[e]][edgeNode1[e]]++;
+		}
+		return matrix;
+	}
+
+
+	/**
+	 * As {@link AdjacencyMatrix#buildIntInAdjacencyMatrix()}.
+	 *
+	 * @return for each node n and node i, the number of edges from i to n
+	 */
+	public int[][] buildIntInAdjacencyMatrix() {
+		int[][] matrix = new int[nodes.length][nodes.length];
+		for(int e = 0; e < edges.length; e++) {
+			matrix[edgeNode2[e]][edgeNode1[e]]++;
+		}
+		return matrix;
+	}
+
+
+	/**
+	 * As {@link AdjacencyMatrix#buildIntOutAdjacencyMatrix()}.
+	 *
+	 * @return for each node n and node i, the number of edges from n to i
+	 */
+	public int[][] buildIntOutAdjacencyMatrix() {
+		int[][] matrix = new int[nodes.length][nodes.length];
+		for(int e = 0; e < edges.length; e++) {
+			matrix[edgeNode1[e]][edgeNode2[e]]++;
+		}
+		return matrix;
+	}
+
+
+	/**
+	 * Label each node with the connected component it is in, ignoring edge direction.
+	 *
+	 * @param component populated with the component of each node, numbered in order of the lowest node in each
+	 * @param order populated with the nodes in breadth first order from the lowest node in each component
+	 * @return the number of components
+	 */
+	private int findComponents(int[] component, int[] order) {
+		Arrays.fill(component, -1);
+		int components = 0;
+		int tail = 0;
+		for(int start = 0; start < nodes.length; start++) {
+			if(component[start] != -1) {
+				continue;
+			}
+			int head = tail;
+			order[tail++] = start;
+			component[start] = components;
+			while(head < tail) {
+				int n = order[head++];
+				for(int i = inStart[n]; i < inStart[n+1]; i++) {
+					if(component[inNodes[i]] == -1) {
+						component[inNodes[i]] = components;
+						order[tail++] = inNodes[i];
+					}
+				}
+				for(int i = outStart[n]; i < outStart[n+1]; i++) {
+					if(component[outNodes[i]] == -1) {
+						component[outNodes[i]] = components;
+						order[tail++] = outNodes[i];
+					}
+				}
+			}
+			components++;
+		}
+		return components;
+	}
+
+
+	/**
+	 * @return true if the view is connected, ignoring edge direction, or empty
+	 */
+	public boolean isConnected() {
+		if(nodes.length == 0) {
+			return true;
+		}
+		return findComponents(new int[nodes.length], new int[nodes.length]) == 1;
+	}
+
+
+	/**
+	 * Split the view into its connected components, each a view of the same parent.
+	 * Nodes of a component are in breadth first order from its lowest node, edges are in view order.
+	 *
+	 * @return the components, in order of their lowest node
+	 */
+	public ArrayList<SubgraphView> breakIntoConnectedComponents() {
+		int[] component = new int[nodes.length];
+		int[] order = new int[nodes.length];
+		int components = findComponents(component, order);
+
+		int[] nodeCount = new int[components];
+		int[] edgeCount = new int[components];
+		int[] position = new int[nodes.length]; // view index of each node in its component
+		for(int n : order) {
+			position[n] = nodeCount[component[n]]++;
+		}
+		for(int e = 0; e < edges.length; e++) {
+			edgeCount[component[edgeNode1[e]]]++;
+		}
+
+		int[][] componentNodes = new int[components][];
+		int[][] componentEdges = new int[components][];
+		int[][] componentNode1 = new int[components][];
+		int[][] componentNode2 = new int[components][];
+		for(int c = 0; c < components; c++) {
+			componentNodes[c] = new int[nodeCount[c]];
+			componentEdges[c] = new int[edgeCount[c]];
+			componentNode1[c] = new int[edgeCount[c]];
+			componentNode2[c] = new int[edgeCount[c]];
+		}
+		for(int n = 0; n < nodes.length; n++) {
+			componentNodes[component[n]][position[n]] = nodes[n];
+		}
+		Arrays.fill(edgeCount, 0);
+		for(int e = 0; e < edges.length; e++) {
+			int c = component[edgeNode1[e]];
+			int i = edgeCount[c]++;
+			componentEdges[c][i] = edges[e];
+			componentNode1[c][i] = position[edgeNode1[e]];
+			componentNode2[c][i] = position[edgeNode2[e]];
+		}
+
+		ArrayList<SubgraphView> ret = new ArrayList<SubgraphView>(components);
+		for(int c = 0; c < components; c++) {
+			ret.add(new SubgraphView(parent, componentNodes[c], componentEdges[c], componentNode1[c], componentNode2[c]));
+		}
+		return ret;
+	}
+
+
+	/**
+	 * @return the largest node age in the view, at least 0, as {@link FastGraph#findMaximumNodeAge()}
+	 */
+	public byte findMaximumNodeAge() {
+		byte ret = 0;
+		for(int n = 0; n < nodes.length; n++) {
+			byte age = getNodeAge(n);
+			if(age > ret) {
+				ret = age;
+			}
+		}
+		return ret;
+	}
+
+
+	/**
+	 * @return the smallest node age in the view
+	 */
+	public byte findMinimumNodeAge() {
+		byte ret = Byte.MAX_VALUE;
+		for(int n = 0; n < nodes.length; n++) {
+			byte age = getNodeAge(n);
+			if(age < ret) {
+				ret = age;
+			}
+		}
+		return ret;
+	}
+
+
+	/**
+	 * @param age the age to count
+	 * @return the number of nodes in the view with the age
+	 */
+	public int countNodesOfAge(int age) {
+		int ret = 0;
+		for(int n = 0; n < nodes.length; n++) {
+			if(getNodeAge(n) == age) {
+				ret++;
+			}
+		}
+		return ret;
+	}
+
+
+	/**
+	 * Counts the nodes of every age in one pass, rather than a pass for each age.
+	 *
+	 * @return the number of nodes in the view with age a at a-Byte.MIN_VALUE
+	 */
+	public int[] countNodesAtEachAge() {
+		int[] ret = new int[Byte.MAX_VALUE-Byte.MIN_VALUE+1];
+		for(int n = 0; n < nodes.length; n++) {
+			ret[getNodeAge(n)-Byte.MIN_VALUE]++;
+		}
+		return ret;
+	}
+
+
+	/**
+	 * Copy the view into a new FastGraph, with the same node and edge indexes as the view.
+	 *
+	 * @return the new graph
+	 */
+	public FastGraph toFastGraph() {
+		return parent.generateGraphFromSubgraph(nodes, edges);
+	}
+
+}
@@ -0,0 +1,687 @@
+package uk.ac.kent.dover.fastGraph;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * An append only store for a graph that grows a time slice at a time. Each new generation is written as a
+ * small {@link TimeSliceSegment} that refers back to the nodes and edges of earlier generations rather than
+ * copying them, with tombstones for the nodes and edges that are not carried forward, so appending takes
+ * time in the size of the latest generation rather than the whole graph. Compaction merges the segments
+ * into a standard FastGraph snapshot, and can run in the background while further generations are appended.
+ * <p>
+ * The numbering of nodes and edges, and the graph produced by compaction, are the same as calling
+ * {@link FastGraph#addNewTimeSlice(Collection, Collection, Collection, Collection, boolean)} once for each
+ * generation, so ids stay valid across compaction. The snapshot graph must not be changed while the store
+ * is in use.
+ * </p>
+ * Appends and compactions may be made from different threads. Reads see the graph as at the last
+ * completed append.
+ *
+ * @author Peter Rodgers
+ *
+ */
+public class TemporalGraph {
+
+	private volatile State state;
+
+
+	/**
+	 * A store starting from a graph, whose generation is the latest in the store.
+	 *
+	 * @param snapshot the graph to append to, this is not changed
+	 */
+	public TemporalGraph(FastGraph snapshot) {
+		AgeIndex index = snapshot.getAgeIndex();
+		byte generation = snapshot.getGeneration();
+		int[] latestNodes = index.getNodesOfAge(generation);
+		int[] edges = index.getEdgesOfAge(generation);
+		int[] latestEdges = new int[edges.length];
+		int count = 0;
+		for(int e : edges) {
+			if(snapshot.getEdgeType(e) != FastGraphEdgeType.TIME.getValue()) {
+				latestEdges[count] = e;
+				count++;
+			}
+		}
+		state = new State(snapshot, new TimeSliceSegment[0], snapshot.getName(), generation, latestNodes, Arrays.copyOf(latestEdges, count));
+	}
+
+
+	/**
+	 * @return the most recent compacted graph, which holds the nodes and edges below those of the segments
+	 */
+	public FastGraph getSnapshot() {
+		return state.snapshot;
+	}
+
+
+	/**
+	 * @return the number of generations appended since the last compaction
+	 */
+	public int getNumberOfSegments() {
+		return state.segments.length;
+	}
+
+
+	/**
+	 * @return the name the graph would have if compacted now
+	 */
+	public String getName() {
+		return state.name;
+	}
+
+
+	/**
+	 * @return the latest generation
+	 */
+	public byte getGeneration() {
+		return state.generation;
+	}
+
+
+	/**
+	 * @return the number of nodes in all generations
+	 */
+	public int getNumberOfNodes() {
+		return state.numberOfNodes;
+	}
+
+
+	/**
+	 * @return the number of edges in all generations, including time edges
+	 */
+	public int getNumberOfEdges() {
+		return state.numberOfEdges;
+	}
+
+
+	/**
+	 * @return the nodes of the latest generation, in node order
+	 */
+	public int[] getLatestNodes() {
+		return state.latestNodes.clone();
+	}
+
+
+	/**
+	 * @return the edges of the latest generation, not including time edges, in edge order
+	 */
+	public int[] getLatestEdges() {
+		return state.latestEdges.clone();
+	}
+
+
+	/**
+	 * @param generation a generation appended since the last compaction
+	 * @return the nodes of the previous generation that were not carried forward into the generation
+	 */
+	public int[] getDeletedNodes(byte generation) {
+		return findSegment(state, generation).deletedNodes.clone();
+	}
+
+
+	/**
+	 * @param generation a generation appended since the last compaction
+	 * @return the edges of the previous generation that were not carried forward into the generation
+	 */
+	public int[] getDeletedEdges(byte generation) {
+		return findSegment(state, generation).deletedEdges.clone();
+	}
+
+
+	/**
+	 * @param s the state
+	 * @param generation the generation
+	 * @return the segment of the generation
+	 */
+	private static TimeSliceSegment findSegment(State s, byte generation) {
+		for(TimeSliceSegment segment : s.segments) {
+			if(segment.generation == generation) {
+				return segment;
+			}
+		}
+		throw new IllegalArgumentException("Generation "+generation+" is not in a segment");
+	}
+
+
+	/**
+	 * @param nodeIndex the node
+	 * @return the node label
+	 */
+	public String getNodeLabel(int nodeIndex) {
+		return state.getNodeLabel(nodeIndex);
+	}
+
+
+	/**
+	 * @param nodeIndex the node
+	 * @return the node weight
+	 */
+	public int getNodeWeight(int nodeIndex) {
+		return state.getNodeWeight(nodeIndex);
+	}
+
+
+	/**
+	 * @param nodeIndex the node
+	 * @return the node type
+	 */
+	public byte getNodeType(int nodeIndex) {
+		return state.getNodeType(nodeIndex);
+	}
+
+
+	/**
+	 * @param nodeIndex the node
+	 * @return the node age
+	 */
+	public byte getNodeAge(int nodeIndex) {
+		return state.getNodeAge(nodeIndex);
+	}
+
+
+	/**
+	 * @param edgeIndex the edge
+	 * @return the edge label
+	 */
+	public String getEdgeLabel(int edgeIndex) {
+		return state.getEdgeLabel(edgeIndex);
+	}
+
+
+	/**
+	 * @param edgeIndex the edge
+	 * @return the edge weight
+	 */
+	public int getEdgeWeight(int edgeIndex) {
+		return state.getEdgeWeight(edgeIndex);
+	}
+
+
+	/**
+	 * @param edgeIndex the edge
+	 * @return the edge type
+	 */
+	public byte getEdgeType(int edgeIndex) {
+		return state.getEdgeType(edgeIndex);
+	}
+
+
+	/**
+	 * @param edgeIndex the edge
+	 * @return the edge age
+	 */
+	public byte getEdgeAge(int edgeIndex) {
+		return state.getEdgeAge(edgeIndex);
+	}
+
+
+	/**
+	 * @param edgeIndex the edge
+	 * @return the first connecting node (the node the edge leaves)
+	 */
+	public int getEdgeNode1(int edgeIndex) {
+		return state.getEdgeNode1(edgeIndex);
+	}
+
+
+	/**
+	 * @param edgeIndex the edge
+	 * @return the second connecting node (the node the edge enters)
+	 */
+	public int getEdgeNode2(int edgeIndex) {
+		return state.getEdgeNode2(edgeIndex);
+	}
+
+
+	/**
+	 * Appends a new generation, with the same meaning of the parameters as
+	 * {@link FastGraph#addNewTimeSlice(Collection, Collection, Collection, Collection, boolean)}. The nodes and
+	 * edges of the latest generation are carried forward unless deleted, with a time edge from each carried
+	 * forward node to its copy, and edges of deleted nodes are also deleted. The ends of added edges are
+	 * nodes of the latest generation or the ids of added nodes. Takes time in the size of the latest generation
+	 * and the edits.
+	 *
+	 * @param deleteNodes the nodes of the latest generation that are not carried forward
+	 * @param deleteEdges the edges of the latest generation that are not carried forward
+	 * @param addNodes the nodes to add, ids are referred to by addEdges, ages are ignored
+	 * @param addEdges the edges to add, ages are ignored
+	 * @return the new generation
+	 * @throws FastGraphException if an edge to carry forward or add connects a node not in the new generation
+	 */
+	public synchronized byte appendTimeSlice(Collection<Integer> deleteNodes, Collection<Integer> deleteEdges, Collection<NodeStructure> addNodes, Collection<EdgeStructure> addEdges) throws FastGraphException {
+		State s = state;
+		byte newGeneration = (byte)(s.generation+1);
+		HashSet<Integer> deleteNodeSet = new HashSet<Integer>(deleteNodes);
+		HashSet<Integer> deleteEdgeSet = new HashSet<Integer>(deleteEdges);
+		HashMap<Integer,Integer> oldToNewNodeMapping = new HashMap<Integer,Integer>();
+
+		int nodeId = s.numberOfNodes;
+		int[] previousNodes = new int[s.latestNodes.length];
+		int[] nodeRoots = new int[s.latestNodes.length];
+		int[] deletedNodes = new int[s.latestNodes.length];
+		int copiedNodeCount = 0;
+		int deletedNodeCount = 0;
+		for(int n : s.latestNodes) {
+			if(deleteNodeSet.contains(n)) {
+				deletedNodes[deletedNodeCount] = n;
+				deletedNodeCount++;
+				continue;
+			}
+			previousNodes[copiedNodeCount] = n;
+			nodeRoots[copiedNodeCount] = s.nodeRoot(n);
+			oldToNewNodeMapping.put(n, nodeId);
+			copiedNodeCount++;
+			nodeId++;
+		}
+
+		String[] addedNodeLabels = new String[addNodes.size()];
+		int[] addedNodeWeights = new int[addNodes.size()];
+		byte[] addedNodeTypes = new byte[addNodes.size()];
+		int i = 0;
+		for(NodeStructure ns : addNodes) {
+			addedNodeLabels[i] = ns.getLabel();
+			addedNodeWeights[i] = ns.getWeight();
+			addedNodeTypes[i] = ns.getType();
+			oldToNewNodeMapping.put(ns.getId(), nodeId);
+			nodeId++;
+			i++;
+		}
+
+		int sliceEdges = s.latestEdges.length+addEdges.size();
+		int[] edgeRoots = new int[s.latestEdges.length];
+		int[] edgeNode1 = new int[sliceEdges];
+		int[] edgeNode2 = new int[sliceEdges];
+		int[] deletedEdges = new int[s.latestEdges.length];
+		int copiedEdgeCount = 0;
+		int deletedEdgeCount = 0;
+		for(int e : s.latestEdges) {
+			int node1 = s.getEdgeNode1(e);
+			int node2 = s.getEdgeNode2(e);
+			if(deleteEdgeSet.contains(e) || deleteNodeSet.contains(node1) || deleteNodeSet.contains(node2)) {
+				deletedEdges[deletedEdgeCount] = e;
+				deletedEdgeCount++;
+				continue;
+			}
+			edgeRoots[copiedEdgeCount] = s.edgeRoot(e);
+			edgeNode1[copiedEdgeCount] = mapNode(oldToNewNodeMapping, node1, e);
+			edgeNode2[copiedEdgeCount] = mapNode(oldToNewNodeMapping, node2, e);
+			copiedEdgeCount++;
+		}
+
+		String[] addedEdgeLabels = new String[addEdges.size()];
+		int[] addedEdgeWeights = new int[addEdges.size()];
+		byte[] addedEdgeTypes = new byte[addEdges.size()];
+		i = 0;
+		for(EdgeStructure es : addEdges) {
+			addedEdgeLabels[i] = es.getLabel();
+			addedEdgeWeights[i] = es.getWeight();
+			addedEdgeTypes[i] = es.getType();
+			edgeNode1[copiedEdgeCount+i] = mapNode(oldToNewNodeMapping, es.getNode1(), es.getId());
+			edgeNode2[copiedEdgeCount+i] = mapNode(oldToNewNodeMapping, es.getNode2(), es.getId());
+			i++;
+		}
+
+		TimeSliceSegment segment = new TimeSliceSegment(newGeneration, s.numberOfNodes, s.numberOfEdges,
+				Arrays.copyOf(previousNodes, copiedNodeCount), Arrays.copyOf(nodeRoots, copiedNodeCount),
+				addedNodeLabels, addedNodeWeights, addedNodeTypes,
+				Arrays.copyOf(edgeRoots, copiedEdgeCount), Arrays.copyOf(edgeNode1, copiedEdgeCount+addEdges.size()), Arrays.copyOf(edgeNode2, copiedEdgeCount+addEdges.size()),
+				addedEdgeLabels, addedEdgeWeights, addedEdgeTypes,
+				Arrays.copyOf(deletedNodes, deletedNodeCount), Arrays.copyOf(deletedEdges, deletedEdgeCount));
+
+		TimeSliceSegment[] segments = Arrays.copyOf(s.segments, s.segments.length+1);
+		segments[s.segments.length] = segment;
+		state = s.withSegments(segments, s.name+"-"+newGeneration, newGeneration);
+		return newGeneration;
+	}
+
+
+	/**
+	 * @param oldToNewNodeMapping the new id of each carried forward and added node
+	 * @param node a node of the latest generation, or the id of an added node
+	 * @param edge the edge, for the error message
+	 * @return the id of node in the new generation
+	 * @throws FastGraphException if the node is not in the new generation
+	 */
+	private static int mapNode(HashMap<Integer,Integer> oldToNewNodeMapping, int node, int edge) throws FastGraphException {
+		Integer ret = oldToNewNodeMapping.get(node);
+		if(ret == null) {
+			throw new FastGraphException("Edge "+edge+" connects node "+node+" which is not in the new generation");
+		}
+		return ret;
+	}
+
+
+	/**
+	 * Merges all the segments into a new snapshot, which then replaces them. Generations appended while
+	 * compacting are kept as segments on the new snapshot. If another compaction finishes first, the
+	 * graph is still returned, but the store is left as the other compaction made it.
+	 *
+	 * @param direct if true then off heap ByteBuffers, if false then on heap ByteBuffers
+	 * @return the graph of all generations up to the start of compaction
+	 */
+	public FastGraph compact(boolean direct) {
+		State s = state;
+		if(s.segments.length == 0) {
+			return s.snapshot;
+		}
+long time = Debugger.createTime();
+		ArrayList<NodeStructure> nodes = new ArrayList<NodeStructure>(s.numberOfNodes);
+		for(int n = 0; n < s.numberOfNodes; n++) {
+			nodes.add(new NodeStructure(n, s.getNodeLabel(n), s.getNodeWeight(n), s.getNodeType(n), s.getNodeAge(n)));
+		}
+		ArrayList<EdgeStructure> edges = new ArrayList<EdgeStructure>(s.numberOfEdges);
+		for(int e = 0; e < s.numberOfEdges; e++) {
+			edges.add(new EdgeStructure(e, s.getEdgeLabel(e), s.getEdgeWeight(e), s.getEdgeType(e), s.getEdgeAge(e), s.getEdgeNode1(e), s.getEdgeNode2(e)));
+		}
+		FastGraph g = FastGraph.structureFactory(s.name, s.generation, nodes, edges, direct);
+Debugger.outputTime("compacted "+s.segments.length+" time slices into "+g.getNumberOfNodes()+" nodes and "+g.getNumberOfEdges()+" edges",time);
+
+		synchronized(this) {
+			State current = state;
+			if(current.snapshot == s.snapshot) {
+				TimeSliceSegment[] remaining = Arrays.copyOfRange(current.segments, s.segments.length, current.segments.length);
+				state = new State(g, remaining, current.name, current.generation, current.latestNodes, current.latestEdges);
+			}
+		}
+		return g;
+	}
+
+
+	/**
+	 * Runs {@link #compact(boolean)} on its own thread, so appends can continue.
+	 *
+	 * @param direct if true then off heap ByteBuffers, if false then on heap ByteBuffers
+	 * @return the result of the compaction
+	 */
+	public Future<FastGraph> compactInBackground(boolean direct) {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			return executor.submit(() -> compact(direct));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+
+	/**
+	 * The snapshot and segments at one time. Never changed, so reads and compaction work on a
+	 * consistent store while appends make a new state.
+	 */
+	private static class State {
+
+		final FastGraph snapshot;
+		final TimeSliceSegment[] segments;
+		final String name;
+		final byte generation;
+		final int[] latestNodes;
+		final int[] latestEdges;
+		final int snapshotNodes;
+		final int snapshotEdges;
+		final int numberOfNodes;
+		final int numberOfEdges;
+
+
+		State(FastGraph snapshot, TimeSliceSegment[] segments, String name, byte generation, int[] latestNodes, int[] latestEdges) {
+			this.snapshot = snapshot;
+			this.segments = segments;
+			this.name = name;
+			this.generation = generation;
+			this.latestNodes = latestNodes;
+			this.latestEdges = latestEdges;
+			snapshotNodes = snapshot.getNumberOfNodes();
+			snapshotEdges = snapshot.getNumberOfEdges();
+			if(segments.length == 0) {
+				numberOfNodes = snapshotNodes;
+				numberOfEdges = snapshotEdges;
+			} else {
+				TimeSliceSegment last = segments[segments.length-1];
+				numberOfNodes = last.nodeStart+last.getNumberOfNodes();
+				numberOfEdges = last.edgeStart+last.getNumberOfEdges();
+			}
+		}
+
+
+		/**
+		 * The latest generation of the new state is the last segment, and any snapshot nodes and
+		 * edges of the same age.
+		 *
+		 * @param newSegments the segments, ending with a new one
+		 * @param newName the name of the graph
+		 * @param newGeneration the generation of the last segment
+		 * @return the state with the new segments
+		 */
+		State withSegments(TimeSliceSegment[] newSegments, String newName, byte newGeneration) {
+			TimeSliceSegment last = newSegments[newSegments.length-1];
+			AgeIndex index = snapshot.getAgeIndex();
+			int[] oldNodes = index.getNodesOfAge(newGeneration);
+			int[] nodes = Arrays.copyOf(oldNodes, oldNodes.length+last.getNumberOfNodes());
+			for(int i = 0; i < last.getNumberOfNodes(); i++) {
+				nodes[oldNodes.length+i] = last.nodeStart+i;
+			}
+
+			int[] oldEdges = index.getEdgesOfAge(newGeneration);
+			int[] edges = new int[oldEdges.length+last.edgeNode1.length];
+			int count = 0;
+			for(int e : oldEdges) {
+				if(snapshot.getEdgeType(e) != FastGraphEdgeType.TIME.getValue()) {
+					edges[count] = e;
+					count++;
+				}
+			}
+			int firstSliceEdge = last.edgeStart+last.getNumberOfTimeEdges();
+			for(int i = 0; i < last.edgeNode1.length; i++) {
+				if(i < last.getNumberOfCopiedEdges() || last.addedEdgeTypes[i-last.getNumberOfCopiedEdges()] != FastGraphEdgeType.TIME.getValue()) {
+					edges[count] = firstSliceEdge+i;
+					count++;
+				}
+			}
+			return new State(snapshot, newSegments, newName, newGeneration, nodes, Arrays.copyOf(edges, count));
+		}
+
+
+		/**
+		 * @param n a node not in the snapshot
+		 * @return the segment containing the node
+		 */
+		TimeSliceSegment nodeSegment(int n) {
+			int low = 0;
+			int high = segments.length-1;
+			while(low < high) {
+				int mid = (low+high+1) >>> 1;
+				if(segments[mid].nodeStart <= n) {
+					low = mid;
+				} else {
+					high = mid-1;
+				}
+			}
+			return segments[low];
+		}
+
+
+		/**
+		 * @param e an edge not in the snapshot
+		 * @return the segment containing the edge
+		 */
+		TimeSliceSegment edgeSegment(int e) {
+			int low = 0;
+			int high = segments.length-1;
+			while(low < high) {
+				int mid = (low+high+1) >>> 1;
+				if(segments[mid].edgeStart <= e) {
+					low = mid;
+				} else {
+					high = mid-1;
+				}
+			}
+			return segments[low];
+		}
+
+
+		/**
+		 * @param n a node
+		 * @return the snapshot or added node holding the label, weight and type of n
+		 */
+		int nodeRoot(int n) {
+			if(n < snapshotNodes) {
+				return n;
+			}
+			TimeSliceSegment segment = nodeSegment(n);
+			int local = n-segment.nodeStart;
+			if(local < segment.previousNodes.length) {
+				return segment.nodeRoots[local];
+			}
+			return n;
+		}
+
+
+		/**
+		 * @param e an edge that is not a time edge
+		 * @return the snapshot or added edge holding the label, weight and type of e
+		 */
+		int edgeRoot(int e) {
+			if(e < snapshotEdges) {
+				return e;
+			}
+			TimeSliceSegment segment = edgeSegment(e);
+			int local = e-segment.edgeStart-segment.getNumberOfTimeEdges();
+			if(local >= 0 && local < segment.getNumberOfCopiedEdges()) {
+				return segment.edgeRoots[local];
+			}
+			return e;
+		}
+
+
+		String getNodeLabel(int n) {
+			int root = nodeRoot(n);
+			if(root < snapshotNodes) {
+				return snapshot.getNodeLabel(root);
+			}
+			TimeSliceSegment segment = nodeSegment(root);
+			return segment.addedNodeLabels[root-segment.nodeStart-segment.previousNodes.length];
+		}
+
+
+		int getNodeWeight(int n) {
+			int root = nodeRoot(n);
+			if(root < snapshotNodes) {
+				return snapshot.getNodeWeight(root);
+			}
+			TimeSliceSegment segment = nodeSegment(root);
+			return segment.addedNodeWeights[root-segment.nodeStart-segment.previousNodes.length];
+		}
+
+
+		byte getNodeType(int n) {
+			int root = nodeRoot(n);
+			if(root < snapshotNodes) {
+				return snapshot.getNodeType(root);
+			}
+			TimeSliceSegment segment = nodeSegment(root);
+			return segment.addedNodeTypes[root-segment.nodeStart-segment.previousNodes.length];
+		}
+
+
+		byte getNodeAge(int n) {
+			if(n < snapshotNodes) {
+				return snapshot.getNodeAge(n);
+			}
+			return nodeSegment(n).generation;
+		}
+
+
+		/**
+		 * @param e an edge not in the snapshot
+		 * @return true if e is the time edge of a carried forward node
+		 */
+		boolean isTimeEdge(int e) {
+			TimeSliceSegment segment = edgeSegment(e);
+			return e-segment.edgeStart < segment.getNumberOfTimeEdges();
+		}
+
+
+		/**
+		 * @param e an added edge
+		 * @return the position of the edge in the added arrays of its segment
+		 */
+		int addedEdgePosition(int e) {
+			TimeSliceSegment segment = edgeSegment(e);
+			return e-segment.edgeStart-segment.getNumberOfTimeEdges()-segment.getNumberOfCopiedEdges();
+		}
+
+
+		String getEdgeLabel(int e) {
+			if(e >= snapshotEdges && isTimeEdge(e)) {
+				return "";
+			}
+			int root = edgeRoot(e);
+			if(root < snapshotEdges) {
+				return snapshot.getEdgeLabel(root);
+			}
+			return edgeSegment(root).addedEdgeLabels[addedEdgePosition(root)];
+		}
+
+
+		int getEdgeWeight(int e) {
+			if(e >= snapshotEdges && isTimeEdge(e)) {
+				return 0;
+			}
+			int root = edgeRoot(e);
+			if(root < snapshotEdges) {
+				return snapshot.getEdgeWeight(root);
+			}
+			return edgeSegment(root).addedEdgeWeights[addedEdgePosition(root)];
+		}
+
+
+		byte getEdgeType(int e) {
+			if(e >= snapshotEdges && isTimeEdge(e)) {
+				return FastGraphEdgeType.TIME.getValue();
+			}
+			int root = edgeRoot(e);
+			if(root < snapshotEdges) {
+				return snapshot.getEdgeType(root);
+			}
+			return edgeSegment(root).addedEdgeTypes[addedEdgePosition(root)];
+		}
+
+
+		byte getEdgeAge(int e) {
+			if(e < snapshotEdges) {
+				return snapshot.getEdgeAge(e);
+			}
+			return edgeSegment(e).generation;
+		}
+
+
+		int getEdgeNode1(int e) {
+			if(e < snapshotEdges) {
+				return snapshot.getEdgeNode1(e);
+			}
+			TimeSliceSegment segment = edgeSegment(e);
+			int local = e-segment.edgeStart;
+			if(local < segment.getNumberOfTimeEdges()) {
+				return segment.previousNodes[local];
+			}
+			return segment.edgeNode1[local-segment.getNumberOfTimeEdges()];
+		}
+
+
+		int getEdgeNode2(int e) {
+			if(e < snapshotEdges) {
+				return snapshot.getEdgeNode2(e);
+			}
+			TimeSliceSegment segment = edgeSegment(e);
+			int local = e-segment.edgeStart;
+			if(local < segment.getNumberOfTimeEdges()) {
+				return segment.nodeStart+local;
+			}
+			return segment.edgeNode2[local-segment.getNumberOfTimeEdges()];
+		}
+
+	}
+
+}
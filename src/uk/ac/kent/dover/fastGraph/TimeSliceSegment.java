@@ -0,0 +1,97 @@
+package uk.ac.kent.dover.fastGraph;
+
+/**
+ * One generation appended to a {@link TemporalGraph}. Holds only what is new in the generation:
+ * the node carried forward from the previous generation for each copied node, the node and edge of an
+ * earlier generation that each copied node and edge takes its label, weight and type from, the added
+ * nodes and edges, and tombstones for the nodes and edges of the previous generation that were not
+ * carried forward.
+ * <p>
+ * Numbering follows {@link FastGraph#addNewTimeSlice(java.util.Collection, java.util.Collection, java.util.Collection, java.util.Collection, boolean)}.
+ * The nodes of the generation start at nodeStart, copied nodes first then added nodes. The edges start at
+ * edgeStart, a time edge for each copied node first, then copied edges, then added edges. Immutable.
+ * </p>
+ *
+ * @author Peter Rodgers
+ *
+ */
+class TimeSliceSegment {
+
+	final byte generation;
+	final int nodeStart;
+	final int edgeStart;
+
+	final int[] previousNodes; // the previous generation node that each copied node carries forward
+	final int[] nodeRoots; // the node with the label, weight and type of each copied node
+
+	final String[] addedNodeLabels;
+	final int[] addedNodeWeights;
+	final byte[] addedNodeTypes;
+
+	final int[] edgeRoots; // the edge with the label, weight and type of each copied edge
+
+	final int[] edgeNode1; // for copied then added edges
+	final int[] edgeNode2; // for copied then added edges
+
+	final String[] addedEdgeLabels;
+	final int[] addedEdgeWeights;
+	final byte[] addedEdgeTypes;
+
+	final int[] deletedNodes; // previous generation nodes not carried forward, in node order
+	final int[] deletedEdges; // previous generation edges not carried forward, in edge order
+
+
+	TimeSliceSegment(byte generation, int nodeStart, int edgeStart, int[] previousNodes, int[] nodeRoots,
+			String[] addedNodeLabels, int[] addedNodeWeights, byte[] addedNodeTypes, int[] edgeRoots, int[] edgeNode1, int[] edgeNode2,
+			String[] addedEdgeLabels, int[] addedEdgeWeights, byte[] addedEdgeTypes, int[] deletedNodes, int[] deletedEdges) {
+		this.generation = generation;
+		this.nodeStart = nodeStart;
+		this.edgeStart = edgeStart;
+		this.previousNodes = previousNodes;
+		this.nodeRoots = nodeRoots;
+		this.addedNodeLabels = addedNodeLabels;
+		this.addedNodeWeights = addedNodeWeights;
+		this.addedNodeTypes = addedNodeTypes;
+		this.edgeRoots = edgeRoots;
+		this.edgeNode1 = edgeNode1;
+		this.edgeNode2 = edgeNode2;
+		this.addedEdgeLabels = addedEdgeLabels;
+		this.addedEdgeWeights = addedEdgeWeights;
+		this.addedEdgeTypes = addedEdgeTypes;
+		this.deletedNodes = deletedNodes;
+		this.deletedEdges = deletedEdges;
+	}
+
+
+	/**
+	 * @return the number of nodes in the generation
+	 */
+	int getNumberOfNodes() {
+		return previousNodes.length+addedNodeLabels.length;
+	}
+
+
+	/**
+	 * @return the number of edges in the generation, including the time edges
+	 */
+	int getNumberOfEdges() {
+		return previousNodes.length+edgeNode1.length;
+	}
+
+
+	/**
+	 * @return the number of time edges, which is also the number of copied nodes
+	 */
+	int getNumberOfTimeEdges() {
+		return previousNodes.length;
+	}
+
+
+	/**
+	 * @return the number of edges copied from the previous generation
+	 */
+	int getNumberOfCopiedEdges() {
+		return edgeRoots.length;
+	}
+
+}
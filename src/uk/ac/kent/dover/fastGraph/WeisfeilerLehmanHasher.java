@@ -0,0 +1,209 @@
+package uk.ac.kent.dover.fastGraph;
+
+import java.util.Arrays;
+
+/**
+ * Hashes graphs by Weisfeiler-Lehman colour refinement. Each node starts with a colour from its
+ * number of self sourcing edges, and its label if labels are used. In each round a node's new colour is
+ * a hash of its colour and the sorted colours of its neighbours, one for each edge, until the number of
+ * distinct colours stops growing. The graph hash combines the sorted final colours with the number of nodes
+ * and edges and the relative node age counts, as the eigenvalue hash does. Each round takes time
+ * O((n+m) log n) and no adjacency matrix is built.
+ * <p>
+ * Colour refinement cannot tell apart some non isomorphic graphs, such as regular graphs with the same
+ * number of nodes and degree, which then share a bucket and are separated by the exact test.
+ * </p>
+ *
+ * @author Peter Rodgers
+ *
+ */
+public class WeisfeilerLehmanHasher extends InvariantHasher {
+
+	private static final long SELF_SEED = 0x243f6a8885a308d3L;
+	private static final long OUT_SEED = 0x13198a2e03707344L;
+	private static final long IN_SEED = 0xa4093822299f31d0L;
+	private static final long GRAPH_SEED = 0x082efa98ec4e6c89L;
+	private static final long SECOND_SEED = 0x452821e638d01377L;
+
+	private final boolean directed;
+	private final boolean nodeLabels;
+
+
+	/**
+	 * Hashes undirected graphs, ignoring node labels, as used to find motifs.
+	 */
+	public WeisfeilerLehmanHasher() {
+		this(false, false);
+	}
+
+
+	/**
+	 * @param directed true if the graphs are treated as directed, false if undirected
+	 * @param nodeLabels if true node labels are hashed, if false they are ignored
+	 */
+	public WeisfeilerLehmanHasher(boolean directed, boolean nodeLabels) {
+		this.directed = directed;
+		this.nodeLabels = nodeLabels;
+	}
+
+
+	@Override
+	public long hash(SubgraphView g) {
+		return hash128(g)[0];
+	}
+
+
+	/**
+	 * Two independent 64 bit hashes of the final colours, for fewer chance collisions than {@link #hash(SubgraphView)}.
+	 *
+	 * @param g the graph to hash
+	 * @return the 128 bit hash as two longs, the first equal to {@link #hash(SubgraphView)}
+	 */
+	public long[] hash128(SubgraphView g) {
+		int numberOfNodes = g.getNumberOfNodes();
+		int numberOfEdges = g.getNumberOfEdges();
+
+		// neighbours, one entry per edge, self sourcing edges counted separately
+		int[] selfSourcing = new int[numberOfNodes];
+		int[] outStart = new int[numberOfNodes+1];
+		int[] inStart = new int[numberOfNodes+1];
+		for(int e = 0; e < numberOfEdges; e++) {
+			int n1 = g.getEdgeNode1(e);
+			int n2 = g.getEdgeNode2(e);
+			if(n1 == n2) {
+				selfSourcing[n1]++;
+			} else if(directed) {
+				outStart[n1+1]++;
+				inStart[n2+1]++;
+			} else {
+				outStart[n1+1]++;
+				outStart[n2+1]++;
+			}
+		}
+		for(int n = 0; n < numberOfNodes; n++) {
+			outStart[n+1] += outStart[n];
+			inStart[n+1] += inStart[n];
+		}
+		int[] outNeighbours = new int[outStart[numberOfNodes]];
+		int[] inNeighbours = new int[inStart[numberOfNodes]];
+		int[] outPosition = Arrays.copyOf(outStart, numberOfNodes);
+		int[] inPosition = Arrays.copyOf(inStart, numberOfNodes);
+		for(int e = 0; e < numberOfEdges; e++) {
+			int n1 = g.getEdgeNode1(e);
+			int n2 = g.getEdgeNode2(e);
+			if(n1 == n2) {
+				continue;
+			}
+			outNeighbours[outPosition[n1]++] = n2;
+			if(directed) {
+				inNeighbours[inPosition[n2]++] = n1;
+			} else {
+				outNeighbours[outPosition[n2]++] = n1;
+			}
+		}
+
+		long[] colours = new long[numberOfNodes];
+		for(int n = 0; n < numberOfNodes; n++) {
+			long colour = mix64(SELF_SEED+selfSourcing[n]);
+			if(nodeLabels) {
+				colour = mix64(colour+g.getNodeLabel(n).hashCode());
+			}
+			colours[n] = colour;
+		}
+
+		long[] next = new long[numberOfNodes];
+		long[] neighbourColours = new long[Math.max(outNeighbours.length, inNeighbours.length)];
+		long[] sorted = new long[numberOfNodes];
+		int distinct = countDistinct(colours, sorted);
+		for(int round = 0; round < numberOfNodes; round++) {
+			for(int n = 0; n < numberOfNodes; n++) {
+				long colour = mix64(colours[n]^OUT_SEED);
+				colour = foldNeighbours(colour, outNeighbours, outStart[n], outStart[n+1], colours, neighbourColours);
+				if(directed) {
+					colour = mix64(colour^IN_SEED);
+					colour = foldNeighbours(colour, inNeighbours, inStart[n], inStart[n+1], colours, neighbourColours);
+				}
+				next[n] = colour;
+			}
+			long[] temp = colours;
+			colours = next;
+			next = temp;
+			int nextDistinct = countDistinct(colours, sorted);
+			if(nextDistinct == distinct) {
+				break; // stable, later rounds only rename the colours
+			}
+			distinct = nextDistinct;
+		}
+
+		// sorted holds the final colours in order
+		long first = mix64(GRAPH_SEED+numberOfNodes);
+		first = mix64(first+numberOfEdges);
+		first = mix64(first+ageProfile(g));
+		long second = mix64(first^SECOND_SEED);
+		for(int i = 0; i < numberOfNodes; i++) {
+			first = mix64(first+sorted[i]);
+			second = mix64((second^sorted[i])*0x9e3779b97f4a7c15L);
+		}
+		return new long[] {first, second};
+	}
+
+
+	/**
+	 * @param colour the starting value
+	 * @param neighbours the neighbour lists
+	 * @param start the start of the node's list
+	 * @param end the end of the node's list
+	 * @param colours the colour of each node
+	 * @param workspace space for the neighbour colours
+	 * @return the starting value combined with the sorted neighbour colours
+	 */
+	private static long foldNeighbours(long colour, int[] neighbours, int start, int end, long[] colours, long[] workspace) {
+		int size = end-start;
+		for(int i = 0; i < size; i++) {
+			workspace[i] = colours[neighbours[start+i]];
+		}
+		Arrays.sort(workspace, 0, size);
+		for(int i = 0; i < size; i++) {
+			colour = mix64(colour+workspace[i]);
+		}
+		return colour;
+	}
+
+
+	/**
+	 * @param colours the colour of each node
+	 * @param sorted populated with the colours in order
+	 * @return the number of distinct colours
+	 */
+	private static int countDistinct(long[] colours, long[] sorted) {
+		System.arraycopy(colours, 0, sorted, 0, colours.length);
+		Arrays.sort(sorted);
+		int ret = 0;
+		for(int i = 0; i < sorted.length; i++) {
+			if(i == 0 || sorted[i] != sorted[i-1]) {
+				ret++;
+			}
+		}
+		return ret;
+	}
+
+
+	/**
+	 * @param g the graph
+	 * @return a hash of the number of nodes of each age, relative to the smallest age, as in {@link ExactIsomorphism#generateTimeString()}
+	 */
+	private static long ageProfile(SubgraphView g) {
+		if(g.getNumberOfNodes() == 0) {
+			return 0;
+		}
+		int minAge = g.findMinimumNodeAge();
+		int maxAge = g.findMaximumNodeAge();
+		int[] ageCounts = g.countNodesAtEachAge();
+		long ret = 0;
+		for(int age = minAge; age <= maxAge; age++) {
+			ret = mix64(ret+ageCounts[age-Byte.MIN_VALUE]);
+		}
+		return ret;
+	}
+
+}
@@ -1,6 +1,7 @@
 package uk.ac.kent.dover.fastGraph.comparators;
 
 import uk.ac.kent.dover.fastGraph.FastGraph;
+import uk.ac.kent.dover.fastGraph.LabelDictionary;
 
 
 /**
@@ -11,24 +12,37 @@ import uk.ac.kent.dover.fastGraph.FastGraph;
  */
 public class SimpleNodeLabelComparator extends NodeComparator {
 
+	private int[] positions; // the position of each g2 label in the g1 label dictionary
+	private int emptyId; // the g2 id of the empty label, -1 if no node has an empty label
+
+	
+	/**
+	 * Label ids are compared rather than label Strings, so the graph labels should not change while the comparator is in use.
+	 * 
+	 * @param g1 the first FastGraph, containing n1 in compare(n1,n2)
+	 * @param g2 the second FastGraph, containing n2 in compare(n1,n2)
+	 */
 	public SimpleNodeLabelComparator(FastGraph g1, FastGraph g2) {
 		super(g1, g2);
+		LabelDictionary dictionary2 = g2.getNodeLabelDictionary();
+		positions = dictionary2.positionsIn(g1.getNodeLabelDictionary());
+		emptyId = dictionary2.getId("");
 	}
 
 	
 	/**
-	 * Just compares the labels via standard string comparateTo, except returns equal (0) if the pattern label is empty. 
+	 * Compares the labels as standard string compareTo would, except returns equal (0) if the pattern label is empty.
+	 * Uses the label ids, so no Strings are created.
 	 * 
 	 * @return comparison of node label strings by standard Java compareTo: a negative integer, zero, or a positive integer as the first argument is less than, equal to, or greater than the second
 	 */
 	@Override
 	public int compare(Integer n1, Integer n2) {
-		String label1 = g1.getNodeLabel(n1);
-		String label2 = g2.getNodeLabel(n2);
-		if(label2.equals("")) {
+		int id2 = g2.getNodeLabelId(n2);
+		if(id2 == emptyId) {
 			return 0;
 		}
-		int ret = label1.compareTo(label2);
+		int ret = Integer.compare(2*g1.getNodeLabelId(n1), positions[id2]);
 		return ret;
 	}
 
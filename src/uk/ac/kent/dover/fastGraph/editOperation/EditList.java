@@ -151,22 +151,38 @@ System.out.println("original: "+el.getCost()+" simple: "+simpleSimilarity+" bipa
 	}
  	
  	/**
- 	 * Apply the list in sequence.
+ 	 * Apply the list in sequence. The edits are recorded in a {@link DeltaGraph} and the
+ 	 * result compacted once at the end, rather than copying the graph for every edit.
  	 * 
- 	 * @param g the graph to edit.
+ 	 * @param g the graph to edit, this is not changed.
  	 * @return the new FastGraph, or null if any of the operation fail.
  	 */
  	public FastGraph applyOperations(FastGraph g) {
  		
- 		FastGraph ret = g;
+ 		DeltaGraph delta = new DeltaGraph(g);
+ 		if(!applyOperations(delta)) {
+ 			return null;
+ 		}
+ 		
+ 		return delta.toFastGraph();
+ 	}
+ 	
+ 	
+ 	/**
+ 	 * Apply the list in sequence to an overlay.
+ 	 * 
+ 	 * @param g the overlay to edit.
+ 	 * @return true if all the operations succeed, false if one fails, when later operations are not applied.
+ 	 */
+ 	public boolean applyOperations(DeltaGraph g) {
+ 		
  		for(EditOperation eo : editList) {
- 			ret = eo.edit(ret);
- 			if(ret == null) {
- 				return null;
+ 			if(!eo.edit(g)) {
+ 				return false;
  			}
  		}
  		
- 		return ret;
+ 		return true;
  	}
  	
 
@@ -180,6 +180,45 @@ public class EditOperation {
 		return null;
 	}
 
+	/**
+	 * Call this to apply the edit to an overlay, which records the change rather than copying the graph.
+	 * 
+	 * @param g overlay to edit
+	 * @return true if the edit was made, false if the edit fails
+	 */
+	public boolean edit(DeltaGraph g) {
+		
+		try {
+			if(operationCode == DELETE_NODE) {
+				return g.deleteSingletonNode(id);
+			}
+			
+			if(operationCode == ADD_NODE) {
+				g.addNode(new NodeStructure(-1, label, 0, (byte)0, (byte)0));
+				return true;
+			}
+			
+			if(operationCode == DELETE_EDGE) {
+				g.deleteEdge(id);
+				return true;
+			}
+			
+			if(operationCode == ADD_EDGE) {
+				g.addEdge(new EdgeStructure(-1, label, 0, (byte)0, (byte)0, n1, n2));
+				return true;
+			}
+			
+			if(operationCode == RELABEL_NODE) {
+				g.relabelNode(id, label);
+				return true;
+			}
+		} catch (FastGraphException e) {
+			return false; // the element does not exist or cannot be changed
+		}
+		
+		return false;
+	}
+
 	/**
 	 * @return a hash code based on class members
 	 */
@@ -38,6 +38,7 @@ public class ApproximateGEDBipartite extends GraphEditDistance {
 	
 	private double[][] costMatrix;
 	private int[] mapping;
+	private int[] labelIds2In1; // g2 node label ids translated to g1 ids, set for each similarity call
 
 	
 	private long approximationTime;
@@ -189,6 +190,9 @@ public class ApproximateGEDBipartite extends GraphEditDistance {
 		int size = nodes1+nodes2;
 		
 		costMatrix = new double[size][size];
+		if(nodeLabels) {
+			labelIds2In1 = g2.getNodeLabelDictionary().idsIn(g1.getNodeLabelDictionary());
+		}
 		
 		for(int y = 0; y < size; y++) { // g1 nodes
 			for(int x = 0; x < size; x++) { // g2 nodes
@@ -442,9 +446,7 @@ public class ApproximateGEDBipartite extends GraphEditDistance {
 		double ret = 0.0;
 		
 		if(nodeLabels) {
-			String n1Label = g1.getNodeLabel(n1);
-			String n2Label = g2.getNodeLabel(n2);
-			if(!n1Label.equals(n2Label)) {
+			if(labelIds2In1[g2.getNodeLabelId(n2)] != g1.getNodeLabelId(n1)) {
 				ret += relabelNodeCost;
 			}
 		}
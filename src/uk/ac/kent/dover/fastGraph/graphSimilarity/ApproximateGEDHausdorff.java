@@ -153,8 +153,10 @@ public class ApproximateGEDHausdorff extends GraphEditDistance {
 		}
 		
 		double relabelCost = 0.0;
+		int[] labelIds2In1 = null; // g2 node label ids translated to g1 ids, so labels are compared without Strings
 		if(nodeLabels) {
 			relabelCost = relabelNodeCost;
+			labelIds2In1 = g2.getNodeLabelDictionary().idsIn(g1.getNodeLabelDictionary());
 		}
 		
 		for(int n1 = 0; n1 < nodes1; n1++) {
@@ -164,7 +166,7 @@ public class ApproximateGEDHausdorff extends GraphEditDistance {
 				double ce = lowerNodeBound(n1, n2, g1, g2);
 
 				double subsitutionCost = relabelCost;
-				if(g1.getNodeLabel(n1).equals(g2.getNodeLabel(n2))) {
+				if(!nodeLabels || labelIds2In1[g2.getNodeLabelId(n2)] == g1.getNodeLabelId(n1)) {
 					subsitutionCost = 0.0;
 				}
 				double param = (subsitutionCost+ce/2)/2;
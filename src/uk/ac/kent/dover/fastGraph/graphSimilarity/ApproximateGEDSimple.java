@@ -596,16 +596,7 @@ public class ApproximateGEDSimple extends GraphEditDistance {
 				// if connecting node in n2 does not exist, then there is no edge
 				found = false;
 			} else {
-
-				int[] connecting = g2.getNodeConnectingEdges(node1Map);
-				for(int connectingIndex = 0; connectingIndex < connecting.length; connectingIndex++) {
-					int connectingE = connecting[connectingIndex];
-					int connectingN = g2.oppositeEnd(connectingE, node1Map);
-					if(connectingN == node2Map) {
-						found = true;
-						break;
-					}
-				}
+				found = g2.hasEdge(node1Map, node2Map);
 			}
 			if(found == false) {
 				deleteEdges.add(e);
@@ -643,15 +634,7 @@ public class ApproximateGEDSimple extends GraphEditDistance {
 				found = false;
 			} else {
 				// both nodes are in g1, so check for a corresponding edge in g1
-				int[] connecting = g1.getNodeConnectingEdges(g1Node1Map);
-				for(int connectingIndex = 0; connectingIndex < connecting.length; connectingIndex++) {
-					int connectingE = connecting[connectingIndex];
-					int connectingN = g1.oppositeEnd(connectingE, g1Node1Map);
-					if(connectingN == g1Node2Map) {
-						found = true;
-						break;
-					}
-				}
+				found = g1.hasEdge(g1Node1Map, g1Node2Map);
 			}
 			// no edge, so add one
 			if(found == false) {
@@ -663,6 +646,7 @@ public class ApproximateGEDSimple extends GraphEditDistance {
 		}
 		// check for multiple edge entries without sufficient g2 edges to match
 		// this is potentially quite slow if there are a lot of multiedges
+		ConnectionIterator connections = g2.getConnectionIterator();
 		for(String pairEntry : pairToMultipleEdgeMapping.keySet()) {
 
 			LinkedList<Integer> edges = pairToMultipleEdgeMapping.get(pairEntry);
@@ -672,15 +656,7 @@ public class ApproximateGEDSimple extends GraphEditDistance {
 			Integer node1Map = nodeMapping.get(node1);
 			Integer node2Map = nodeMapping.get(node2);
 			// we know there is at least one edge in g1. Lets see if there is the same number in g2
-			int count = 0;
-			int[] connecting = g2.getNodeConnectingEdges(node1Map);
-			for(int connectingIndex = 0; connectingIndex < connecting.length; connectingIndex++) {
-				int connectingE = connecting[connectingIndex];
-				int connectingN = g2.oppositeEnd(connectingE, node1Map);
-				if(connectingN == node2Map) {
-					count++;
-				}
-			}
+			int count = connections.resetBetween(node1Map, node2Map).countRemaining();
 			
 			// don't want to count self sourcing twice
 			if(node1 == node2) {
@@ -1,6 +1,7 @@
 package uk.ac.kent.dover.fastGraph.graphSimilarity;
 
 import uk.ac.kent.dover.fastGraph.FastGraph;
+import uk.ac.kent.dover.fastGraph.SubgraphView;
 
 /**
  * Base graph for all similarity measures.
@@ -42,4 +43,17 @@ public abstract class GraphSimilarity {
 	 */
 	abstract public double similarity(FastGraph g1, FastGraph g2);
 
+
+	/**
+	 * The difference between two subgraphs. The measures work on the FastGraph
+	 * buffers, so the views are built as FastGraphs first.
+	 * 
+	 * @param g1 the first subgraph to be compared.
+	 * @param g2 the second subgraph to be compared.
+	 * @return the similarity of the two subgraphs.
+	 */
+	public double similarity(SubgraphView g1, SubgraphView g2) {
+		return similarity(g1.toFastGraph(), g2.toFastGraph());
+	}
+
 }
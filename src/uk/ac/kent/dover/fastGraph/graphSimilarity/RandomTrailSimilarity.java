@@ -26,6 +26,9 @@ import uk.ac.kent.dover.fastGraph.profiling.ProfileGED;
 public class RandomTrailSimilarity extends GraphSimilarity {
 
 	private boolean nodeLabels;
+	private FastGraph labelGraph1 = null; // the graphs labelIds2In1 was made for
+	private FastGraph labelGraph2 = null;
+	private int[] labelIds2In1; // g2 node label ids translated to g1 ids
 	private boolean directed;
 	
 	private long randomSeed;
@@ -795,10 +798,12 @@ public class RandomTrailSimilarity extends GraphSimilarity {
 			return true;
 		}
 		
-		String label1 = g1.getNodeLabel(tn1.getNode());
-		String label2 = g2.getNodeLabel(tn2.getNode());
-		
-		if(label1.equals(label2)) {
+		if(labelGraph1 != g1 || labelGraph2 != g2) {
+			labelIds2In1 = g2.getNodeLabelDictionary().idsIn(g1.getNodeLabelDictionary());
+			labelGraph1 = g1;
+			labelGraph2 = g2;
+		}
+		if(labelIds2In1[g2.getNodeLabelId(tn2.getNode())] == g1.getNodeLabelId(tn1.getNode())) {
 			return true;
 		}
 		
@@ -10,6 +10,8 @@ import uk.ac.kent.dover.fastGraph.graphSimilarity.*;
 
 public class ProfileGED {
 
+	private static ParallelGraphGenerator generator = new ParallelGraphGenerator(); // random graphs, on every processor
+
 	public static void main(String [] args) {
 		
 		Debugger.enabled = false;
@@ -90,7 +92,7 @@ public class ProfileGED {
 						
 						r = new Random(seed3);
 						
-						FastGraph g1 = FastGraph.randomGraphFactory(nodes, edges, seed1, simple, false);
+						FastGraph g1 = generator.randomGraph(nodes, edges, seed1, simple, false);
 						
 						if(labelled) {
 							for(int n = 0; n < g1.getNumberOfNodes(); n++) {
@@ -102,7 +104,7 @@ public class ProfileGED {
 						int g2Nodes = nodes+(nodes/20-(r.nextInt(1+nodes/10)));
 						int g2Edges = edges+(edges/20-(r.nextInt(1+edges/10)));
 	
-						FastGraph g2 = FastGraph.randomGraphFactory(g2Nodes, g2Edges, seed1*7447, simple, false);
+						FastGraph g2 = generator.randomGraph(g2Nodes, g2Edges, seed1*7447, simple, false);
 						
 						if(labelled) {
 							for(int n = 0; n < g2.getNumberOfNodes(); n++) {
@@ -295,7 +297,7 @@ public class ProfileGED {
 					
 					r = new Random(seed3);
 					
-					FastGraph g1 = FastGraph.randomGraphFactory(nodes, edges, seed1, simple, false);
+					FastGraph g1 = generator.randomGraph(nodes, edges, seed1, simple, false);
 					
 					if(labelled) {
 						for(int n = 0; n < g1.getNumberOfNodes(); n++) {
@@ -307,7 +309,7 @@ public class ProfileGED {
 					int g2Nodes = nodes+(nodes/20-(r.nextInt(1+nodes/10)));
 					int g2Edges = edges+(edges/20-(r.nextInt(1+edges/10)));
 
-					FastGraph g2 = FastGraph.randomGraphFactory(g2Nodes, g2Edges, seed1*7447, simple, false);
+					FastGraph g2 = generator.randomGraph(g2Nodes, g2Edges, seed1*7447, simple, false);
 					
 					if(labelled) {
 						for(int n = 0; n < g2.getNumberOfNodes(); n++) {
@@ -533,8 +535,8 @@ public class ProfileGED {
 					editCosts.put(EditOperation.ADD_EDGE,4.0);
 					editCosts.put(EditOperation.RELABEL_NODE,5.0);
 					
-					g1 = FastGraph.randomGraphFactory(g1Nodes, g1Edges, seed*17, simple, false);
-					g2 = FastGraph.randomGraphFactory(g2Nodes, g2Edges, seed*13, simple, false);
+					g1 = generator.randomGraph(g1Nodes, g1Edges, seed*17, simple, false);
+					g2 = generator.randomGraph(g2Nodes, g2Edges, seed*13, simple, false);
 					
 					if(labelled) {
 						el = new EditList();
@@ -0,0 +1,78 @@
+package uk.ac.kent.dover.fastGraph.profiling;
+
+import java.util.*;
+
+import uk.ac.kent.dover.fastGraph.*;
+
+/**
+ * Compares the motif bucket hashers. Subgraphs are enumerated from every node of a random graph, as
+ * {@link ExactMotifFinder} does, then each hasher is timed over the same subgraphs. The number of buckets
+ * is reported against the number of isomorphism classes, found by canonical form, so the number of exact
+ * tests a hasher leaves can be seen.
+ *
+ * @author Peter Rodgers
+ *
+ */
+public class ProfileInvariantHashers {
+
+	public static void main(String [] args) {
+
+		Debugger.enabled = false;
+
+		try {
+			int nodes = 20000;
+			if(args.length > 0) {
+				nodes = Integer.parseInt(args[0]);
+			}
+			FastGraph g = new ParallelGraphGenerator().barabasiAlbert(nodes, 2, 1L, false);
+			for(int size = 4; size <= 6; size++) {
+				profileHashers(g, size);
+			}
+		} catch(Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+
+	/**
+	 * @param g the graph to take subgraphs from
+	 * @param size the number of nodes in each subgraph
+	 */
+	private static void profileHashers(FastGraph g, int size) {
+		EnumerateSubgraphNeighbourhood esn = new EnumerateSubgraphNeighbourhood(g);
+		Random r = new Random(size);
+		ArrayList<SubgraphView> views = new ArrayList<>();
+		for(int n = 0; n < g.getNumberOfNodes(); n++) {
+			esn.enumerateSubgraphViewsFromNode(size, 5, 10, n, r, views);
+		}
+
+		HashSet<String> classes = new HashSet<>();
+		for(SubgraphView view : views) {
+			classes.add(new CanonicalLabelling(view, false, false, false).getCanonicalString());
+		}
+		System.out.println("size "+size+" subgraphs "+views.size()+" isomorphism classes "+classes.size());
+		System.out.println("hasher\tms\tbuckets");
+		profileHasher("wl", new WeisfeilerLehmanHasher(), views);
+		profileHasher("eigenvalue", new EigenvalueHasher(), views);
+		System.out.println();
+	}
+
+
+	/**
+	 * Time one hasher and print a line of results.
+	 *
+	 * @param name the name of the hasher
+	 * @param hasher the hasher
+	 * @param views the subgraphs to hash
+	 */
+	private static void profileHasher(String name, InvariantHasher hasher, List<SubgraphView> views) {
+		HashSet<Long> buckets = new HashSet<>();
+		long startTime = System.nanoTime();
+		for(SubgraphView view : views) {
+			buckets.add(hasher.hash(view));
+		}
+		long time = System.nanoTime()-startTime;
+		System.out.println(name+"\t"+time/1000000+"\t"+buckets.size());
+	}
+
+}
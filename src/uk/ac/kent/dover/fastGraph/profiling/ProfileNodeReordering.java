@@ -0,0 +1,191 @@
+package uk.ac.kent.dover.fastGraph.profiling;
+
+import java.util.*;
+
+import uk.ac.kent.dover.fastGraph.*;
+
+/**
+ * Measures the effect of node reordering on traversal times. A graph with strong locality, a grid, is
+ * numbered at random, as input order often is, then renumbered with each {@link NodeReordering} order.
+ * The same traversals are timed on every numbering, and the best of several runs is reported.
+ *
+ * @author Peter Rodgers
+ *
+ */
+public class ProfileNodeReordering {
+
+	private static final int RUNS = 5;
+
+	public static void main(String [] args) {
+
+		Debugger.enabled = false;
+
+		try {
+			int side = 700;
+			if(args.length > 0) {
+				side = Integer.parseInt(args[0]);
+			}
+			FastGraph grid = gridGraph(side);
+			profileReorderings(grid, 1L);
+
+			FastGraph ba = new ParallelGraphGenerator().barabasiAlbert(side*side, 2, 1L, false);
+			profileReorderings(ba, 2L);
+		} catch(Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+
+	/**
+	 * Scramble the graph, then time traversals on the scrambled numbering and each reordering.
+	 *
+	 * @param g the graph
+	 * @param seed the seed for the scrambling and the enumeration
+	 * @throws FastGraphException if the reordering fails
+	 */
+	private static void profileReorderings(FastGraph g, long seed) throws FastGraphException {
+		int[] scramble = new int[g.getNumberOfNodes()];
+		for(int i = 0; i < scramble.length; i++) {
+			scramble[i] = i;
+		}
+		Random r = new Random(seed);
+		for(int i = scramble.length-1; i > 0; i--) {
+			int j = r.nextInt(i+1);
+			int temp = scramble[i];
+			scramble[i] = scramble[j];
+			scramble[j] = temp;
+		}
+		FastGraph scrambled = g.generateReorderedGraph(new NodeReordering(scramble));
+
+		System.out.println(g.getName()+" nodes "+g.getNumberOfNodes()+" edges "+g.getNumberOfEdges());
+		System.out.println("order\treorder ms\ttwo hop ms\tcomponents ms\tenumerate ms\tmean edge span");
+		profileTraversals("random", scrambled, 0, seed);
+
+		long startTime = System.currentTimeMillis();
+		NodeReordering bfs = NodeReordering.breadthFirst(scrambled);
+		FastGraph bfsGraph = scrambled.generateReorderedGraph(bfs);
+		profileTraversals("bfs", bfsGraph, System.currentTimeMillis()-startTime, seed);
+
+		startTime = System.currentTimeMillis();
+		NodeReordering rcm = NodeReordering.reverseCuthillMcKee(scrambled);
+		FastGraph rcmGraph = scrambled.generateReorderedGraph(rcm);
+		profileTraversals("rcm", rcmGraph, System.currentTimeMillis()-startTime, seed);
+
+		startTime = System.currentTimeMillis();
+		NodeReordering degree = NodeReordering.degreeSorted(scrambled);
+		FastGraph degreeGraph = scrambled.generateReorderedGraph(degree);
+		profileTraversals("degree", degreeGraph, System.currentTimeMillis()-startTime, seed);
+		System.out.println();
+	}
+
+
+	/**
+	 * Time the traversals on one numbering and print a line of results.
+	 *
+	 * @param order the name of the numbering
+	 * @param g the graph
+	 * @param reorderTime the time taken to make the numbering
+	 * @param seed the enumeration seed
+	 */
+	private static void profileTraversals(String order, FastGraph g, long reorderTime, long seed) {
+		long twoHopTime = Long.MAX_VALUE;
+		long componentsTime = Long.MAX_VALUE;
+		long enumerateTime = Long.MAX_VALUE;
+		long check = 0;
+		for(int run = 0; run < RUNS; run++) {
+			long startTime = System.nanoTime();
+			check += twoHopSweep(g);
+			twoHopTime = Math.min(twoHopTime, System.nanoTime()-startTime);
+
+			startTime = System.nanoTime();
+			check += new ConnectedComponents(g).getNumberOfComponents();
+			componentsTime = Math.min(componentsTime, System.nanoTime()-startTime);
+
+			startTime = System.nanoTime();
+			check += enumerate(g, seed);
+			enumerateTime = Math.min(enumerateTime, System.nanoTime()-startTime);
+		}
+
+		long span = 0;
+		for(int e = 0; e < g.getNumberOfEdges(); e++) {
+			span += Math.abs(g.getEdgeNode1(e)-g.getEdgeNode2(e));
+		}
+		double meanSpan = span/(double)Math.max(1, g.getNumberOfEdges());
+
+		System.out.println(order+"\t"+reorderTime+"\t"+twoHopTime/1000000+"\t"+componentsTime/1000000+"\t"+enumerateTime/1000000+"\t"+String.format("%.1f", meanSpan)+"\t(check "+check+")");
+	}
+
+
+	/**
+	 * Visit the neighbours of the neighbours of every node, in node order.
+	 *
+	 * @param g the graph
+	 * @return a sum of the visited nodes, so the work is not optimised away
+	 */
+	private static long twoHopSweep(FastGraph g) {
+		ConnectionIterator outer = g.getConnectionIterator();
+		ConnectionIterator inner = g.getConnectionIterator();
+		long ret = 0;
+		for(int n = 0; n < g.getNumberOfNodes(); n++) {
+			outer.reset(n);
+			while(outer.hasNext()) {
+				outer.next();
+				inner.reset(outer.getNode());
+				while(inner.hasNext()) {
+					inner.next();
+					ret += inner.getNode();
+				}
+			}
+		}
+		return ret;
+	}
+
+
+	/**
+	 * Enumerate a small connected subgraph from each node, in node order.
+	 *
+	 * @param g the graph
+	 * @param seed the random number generator seed
+	 * @return the number of subgraphs found
+	 */
+	private static long enumerate(FastGraph g, long seed) {
+		EnumerateSubgraphNeighbourhood esn = new EnumerateSubgraphNeighbourhood(g);
+		Random r = new Random(seed);
+		ArrayList<SubgraphView> views = new ArrayList<>();
+		long ret = 0;
+		for(int n = 0; n < g.getNumberOfNodes(); n++) {
+			esn.enumerateSubgraphViewsFromNode(4, 1, 10, n, r, views);
+			ret += views.size();
+			views.clear();
+		}
+		return ret;
+	}
+
+
+	/**
+	 * A square grid, numbered row by row.
+	 *
+	 * @param side the number of nodes along each side
+	 * @return the grid graph
+	 */
+	private static FastGraph gridGraph(int side) {
+		List<NodeStructure> nodes = new ArrayList<>();
+		List<EdgeStructure> edges = new ArrayList<>();
+		for(int i = 0; i < side*side; i++) {
+			nodes.add(new NodeStructure(i, "n"+i, 0, (byte)0, (byte)0));
+		}
+		for(int y = 0; y < side; y++) {
+			for(int x = 0; x < side; x++) {
+				int n = y*side+x;
+				if(x+1 < side) {
+					edges.add(new EdgeStructure(edges.size(), "e"+edges.size(), 0, (byte)0, (byte)0, n, n+1));
+				}
+				if(y+1 < side) {
+					edges.add(new EdgeStructure(edges.size(), "e"+edges.size(), 0, (byte)0, (byte)0, n, n+side));
+				}
+			}
+		}
+		return FastGraph.structureFactory("grid-"+side, (byte)0, nodes, edges, false);
+	}
+
+}